@@ -30,6 +30,7 @@ import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
 import com.linkedin.pinot.core.query.reduce.BrokerReduceService;
 import com.linkedin.pinot.core.util.DataTableCustomSerDe;
 import com.linkedin.pinot.requestHandler.BrokerRequestHandler;
+import com.linkedin.pinot.requestHandler.BrokerResultCache;
 import com.linkedin.pinot.routing.CfgBasedRouting;
 import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
 import com.linkedin.pinot.routing.RoutingTable;
@@ -170,6 +171,10 @@ public class BrokerServerBuilder {
     ReduceServiceRegistry reduceServiceRegistry = buildReduceServiceRegistry();
     _requestHandler = new BrokerRequestHandler(_routingTable, _timeBoundaryService, _scatterGather,
         reduceServiceRegistry, _brokerMetrics, _config);
+    BrokerResultCache resultCache = _requestHandler.getResultCache();
+    if (resultCache != null && _routingTable instanceof HelixExternalViewBasedRouting) {
+      ((HelixExternalViewBasedRouting) _routingTable).addRoutingTableChangeListener(resultCache);
+    }
 
     // Register SerDe for data-table.
     DataTableSerDeRegistry.getInstance().register(new DataTableCustomSerDe(_brokerMetrics));
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.broker.helix;
+
+import com.linkedin.pinot.common.messages.SegmentRefreshMessage;
+import com.linkedin.pinot.requestHandler.BrokerResultCache;
+import javax.annotation.Nullable;
+import org.apache.helix.NotificationContext;
+import org.apache.helix.messaging.handling.HelixTaskResult;
+import org.apache.helix.messaging.handling.MessageHandler;
+import org.apache.helix.messaging.handling.MessageHandlerFactory;
+import org.apache.helix.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Handles the segment refresh messages sent by the controller to the brokers. A refreshed segment keeps the same
+ * external view, so the cached server responses of its table must be invalidated explicitly.
+ */
+public class BrokerMessageHandlerFactory implements MessageHandlerFactory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerMessageHandlerFactory.class);
+  private final BrokerResultCache _resultCache;
+
+  /**
+   * @param resultCache broker result cache, or null if it is disabled in which case the messages are simply consumed
+   */
+  public BrokerMessageHandlerFactory(@Nullable BrokerResultCache resultCache) {
+    _resultCache = resultCache;
+  }
+
+  // Called each time a message is received.
+  @Override
+  public MessageHandler createHandler(Message message, NotificationContext context) {
+    try {
+      SegmentRefreshMessage refreshMessage = new SegmentRefreshMessage(message);
+      return new SegmentRefreshMessageHandler(refreshMessage, context);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Unrecognized message subtype {}", message.getMsgSubType());
+      return null;
+    }
+  }
+
+  // Gets called once during start up. We must return the same message type that this factory is registered for.
+  @Override
+  public String getMessageType() {
+    return Message.MessageType.USER_DEFINE_MSG.toString();
+  }
+
+  @Override
+  public void reset() {
+    LOGGER.info("Reset called");
+  }
+
+  private class SegmentRefreshMessageHandler extends MessageHandler {
+    private final String _tableName;
+    private final String _segmentName;
+
+    public SegmentRefreshMessageHandler(SegmentRefreshMessage refreshMessage, NotificationContext context) {
+      super(refreshMessage, context);
+      _tableName = refreshMessage.getResourceName();
+      _segmentName = refreshMessage.getPartitionName();
+    }
+
+    @Override
+    public HelixTaskResult handleMessage() throws InterruptedException {
+      HelixTaskResult result = new HelixTaskResult();
+      if (_resultCache != null) {
+        LOGGER.info("Invalidating cached results of table {} on refresh of segment {}", _tableName, _segmentName);
+        _resultCache.invalidateTable(_tableName);
+      }
+      result.setSuccess(true);
+      return result;
+    }
+
+    @Override
+    public void onError(Exception e, ErrorCode code, ErrorType type) {
+      LOGGER.error("onError: {}, {}", type, code, e);
+    }
+  }
+}
@@ -72,6 +72,8 @@ predicate:
   | inClause                              # InPredicate
   | betweenClause                         # BetweenPredicate
   | isClause                              # IsPredicate
+  | regexpLikeClause                      # RegexpLikePredicate
+  | likeClause                            # LikePredicate
   ;
 
 inClause:
@@ -80,6 +82,12 @@ inClause:
 isClause:
   expression IS NOT? NULL;
 
+regexpLikeClause:
+  REGEXP_LIKE '(' expression ',' literal ')';
+
+likeClause:
+  expression LIKE literal;
+
 comparisonClause:
   expression comparisonOperator expression;
 comparisonOperator: '<' | '>' | '<>' | '<=' | '>=' | '=';
@@ -115,11 +123,13 @@ GROUP: G R O U P;
 HAVING: H A V I N G;
 IN: I N;
 IS: I S;
+LIKE: L I K E;
 NULL: N U L L;
 LIMIT: L I M I T;
 NOT : N O T;
 OR: O R;
 ORDER: O R D E R;
+REGEXP_LIKE: R E G E X P '_' L I K E;
 SELECT: S E L E C T;
 TOP: T O P;
 WHERE: W H E R E;
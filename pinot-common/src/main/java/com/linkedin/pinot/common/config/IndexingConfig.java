@@ -30,12 +30,16 @@ public class IndexingConfig {
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexingConfig.class);
 
   private List<String> invertedIndexColumns;
+  private List<String> rangeIndexColumns;
+  private List<String> bloomFilterColumns;
   private List<String> sortedColumn = new ArrayList<String>();
   private String loadMode;
   private String lazyLoad;
   private Map<String, String> streamConfigs = new HashMap<String, String>();
   private String segmentFormatVersion;
   private String starTreeFormat;
+  private boolean offHeapDictionary = false;
+  private SegmentPartitionConfig segmentPartitionConfig;
 
   public IndexingConfig() {
 
@@ -65,6 +69,30 @@ public class IndexingConfig {
     this.invertedIndexColumns = invertedIndexColumns;
   }
 
+  public List<String> getRangeIndexColumns() {
+    return rangeIndexColumns;
+  }
+
+  public void setRangeIndexColumns(List<String> rangeIndexColumns) {
+    this.rangeIndexColumns = rangeIndexColumns;
+  }
+
+  public SegmentPartitionConfig getSegmentPartitionConfig() {
+    return segmentPartitionConfig;
+  }
+
+  public void setSegmentPartitionConfig(SegmentPartitionConfig segmentPartitionConfig) {
+    this.segmentPartitionConfig = segmentPartitionConfig;
+  }
+
+  public List<String> getBloomFilterColumns() {
+    return bloomFilterColumns;
+  }
+
+  public void setBloomFilterColumns(List<String> bloomFilterColumns) {
+    this.bloomFilterColumns = bloomFilterColumns;
+  }
+
   public String getLoadMode() {
     return loadMode;
   }
@@ -128,4 +156,16 @@ public class IndexingConfig {
   public void setStarTreeFormat(String starTreeFormat) {
     this.starTreeFormat = starTreeFormat;
   }
+
+  /**
+   * Whether realtime segments keep the dictionaries of INT, LONG, FLOAT and DOUBLE columns off-heap. The dictionaries
+   * of STRING and BOOLEAN columns always stay on-heap, whatever this setting.
+   */
+  public boolean isOffHeapDictionary() {
+    return offHeapDictionary;
+  }
+
+  public void setOffHeapDictionary(boolean offHeapDictionary) {
+    this.offHeapDictionary = offHeapDictionary;
+  }
 }
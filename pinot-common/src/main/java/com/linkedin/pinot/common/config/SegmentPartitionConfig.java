@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.config;
+
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+
+/**
+ * Describes how the data of a table is partitioned: the column the data is partitioned on, the partition function and
+ * the number of partitions. Segments record the partitions they contain so that the broker can skip the segments that
+ * cannot match a query on the partition column.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SegmentPartitionConfig {
+  private String columnName;
+  private String functionName;
+  private int numPartitions;
+
+  public String getColumnName() {
+    return columnName;
+  }
+
+  public void setColumnName(String columnName) {
+    this.columnName = columnName;
+  }
+
+  public String getFunctionName() {
+    return functionName;
+  }
+
+  public void setFunctionName(String functionName) {
+    this.functionName = functionName;
+  }
+
+  public int getNumPartitions() {
+    return numPartitions;
+  }
+
+  public void setNumPartitions(int numPartitions) {
+    this.numPartitions = numPartitions;
+  }
+
+  @Override
+  public String toString() {
+    return "SegmentPartitionConfig{columnName=" + columnName + ", functionName=" + functionName + ", numPartitions="
+        + numPartitions + "}";
+  }
+}
@@ -121,7 +121,11 @@ public final class MetricFieldSpec extends FieldSpec {
    */
   public enum DerivedMetricType {
     // HLL derived metric type.
-    HLL
+    HLL,
+    // HLL derived metric type compatible with 'distinctcounthll' (values hashed the same way, fixed log2m).
+    DISTINCTCOUNTHLL,
+    // T-digest derived metric type, for 'percentileest' and 'percentiletdigest'.
+    TDIGEST
   }
 
   @Override
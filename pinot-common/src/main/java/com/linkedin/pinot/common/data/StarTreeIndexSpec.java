@@ -24,6 +24,7 @@ import java.util.Set;
 public class StarTreeIndexSpec {
   public static final Integer DEFAULT_MAX_LEAF_RECORDS = 100000; // TODO: determine a good number via experiment
   public static final int DEFAULT_SKIP_MATERIALIZATION_CARDINALITY_THRESHOLD = 10000;
+  public static final int DEFAULT_NUM_BUILD_THREADS = 1;
 
   /** The upper bound on the number of leaf records to be scanned for any query */
   private Integer maxLeafRecords = DEFAULT_MAX_LEAF_RECORDS;
@@ -38,6 +39,9 @@ public class StarTreeIndexSpec {
 
   private boolean enableOffHeapFormat = false;
 
+  /** Number of threads used to build the star tree, values greater than 1 build independent sub-trees in parallel */
+  private int numBuildThreads = DEFAULT_NUM_BUILD_THREADS;
+
   public StarTreeIndexSpec() {}
 
   public Integer getMaxLeafRecords() {
@@ -118,4 +122,12 @@ public class StarTreeIndexSpec {
   public void setEnableOffHeapFormat(boolean enableOffHeapFormat) {
     this.enableOffHeapFormat = enableOffHeapFormat;
   }
+
+  public int getNumBuildThreads() {
+    return numBuildThreads;
+  }
+
+  public void setNumBuildThreads(int numBuildThreads) {
+    this.numBuildThreads = numBuildThreads;
+  }
 }
@@ -25,6 +25,8 @@ public class QueryException {
   public static final int JSON_COMPILATION_ERROR_CODE = 101;
   public static final int PQL_PARSING_ERROR_CODE = 150;
   public static final int QUERY_EXECUTION_ERROR_CODE = 200;
+  public static final int SERVER_OUT_OF_CAPACITY_ERROR_CODE = 210;
+  public static final int QUERY_SCHEDULING_TIMEOUT_ERROR_CODE = 240;
   public static final int EXECUTION_TIMEOUT_ERROR_CODE = 250;
   public static final int BROKER_GATHER_ERROR_CODE = 300;
   public static final int FUTURE_CALL_ERROR_CODE = 350;
@@ -43,6 +45,10 @@ public class QueryException {
   public static final ProcessingException JSON_COMPILATION_ERROR = new ProcessingException(JSON_COMPILATION_ERROR_CODE);
   public static final ProcessingException PQL_PARSING_ERROR = new ProcessingException(PQL_PARSING_ERROR_CODE);
   public static final ProcessingException QUERY_EXECUTION_ERROR = new ProcessingException(QUERY_EXECUTION_ERROR_CODE);
+  public static final ProcessingException SERVER_OUT_OF_CAPACITY_ERROR =
+      new ProcessingException(SERVER_OUT_OF_CAPACITY_ERROR_CODE);
+  public static final ProcessingException QUERY_SCHEDULING_TIMEOUT_ERROR =
+      new ProcessingException(QUERY_SCHEDULING_TIMEOUT_ERROR_CODE);
   public static final ProcessingException EXECUTION_TIMEOUT_ERROR =
       new ProcessingException(EXECUTION_TIMEOUT_ERROR_CODE);
   public static final ProcessingException BROKER_GATHER_ERROR = new ProcessingException(BROKER_GATHER_ERROR_CODE);
@@ -69,6 +75,8 @@ public class QueryException {
     JSON_COMPILATION_ERROR.setMessage("JsonCompilationError");
     PQL_PARSING_ERROR.setMessage(" PQLParsingError");
     QUERY_EXECUTION_ERROR.setMessage("QueryExecutionError");
+    SERVER_OUT_OF_CAPACITY_ERROR.setMessage("ServerOutOfCapacity");
+    QUERY_SCHEDULING_TIMEOUT_ERROR.setMessage("QuerySchedulingTimeout");
     EXECUTION_TIMEOUT_ERROR.setMessage("ExecutionTimeout");
     BROKER_GATHER_ERROR.setMessage("BrokerGatherError");
     FUTURE_CALL_ERROR.setMessage("FutureCallError");
@@ -30,11 +30,15 @@ import org.apache.commons.configuration.Configuration;
 public class IndexLoadingConfigMetadata {
 
   public static final String KEY_OF_LOADING_INVERTED_INDEX = "metadata.loading.inverted.index.columns";
+  public static final String KEY_OF_LOADING_RANGE_INDEX = "metadata.loading.range.index.columns";
+  public static final String KEY_OF_LOADING_BLOOM_FILTER = "metadata.loading.bloom.filter.columns";
   public static final String KEY_OF_SEGMENT_FORMAT_VERSION = "segment.format.version";
   public static final String KEY_OF_ENABLE_DEFAULT_COLUMNS = "enable.default.columns";
   public static final String KEY_OF_STAR_TREE_FORMAT_VERSION = "startree.format.version";
 
   private final Set<String> _loadingInvertedIndexColumnSet = new HashSet<String>();
+  private final Set<String> _loadingRangeIndexColumnSet = new HashSet<String>();
+  private final Set<String> _loadingBloomFilterColumnSet = new HashSet<String>();
   private final String DEFAULT_SEGMENT_FORMAT = "v1";
   private static final String DEFAULT_STAR_TREE_FORMAT = "ON_HEAP";
   private String segmentVersionToLoad;
@@ -46,6 +50,14 @@ public class IndexLoadingConfigMetadata {
     if ((valueOfLoadingInvertedIndexConfig != null) && (!valueOfLoadingInvertedIndexConfig.isEmpty())) {
       initLoadingInvertedIndexColumnSet(valueOfLoadingInvertedIndexConfig.toArray(new String[0]));
     }
+    List<String> valueOfLoadingRangeIndexConfig = tableDataManagerConfig.getList(KEY_OF_LOADING_RANGE_INDEX, null);
+    if ((valueOfLoadingRangeIndexConfig != null) && (!valueOfLoadingRangeIndexConfig.isEmpty())) {
+      initLoadingRangeIndexColumnSet(valueOfLoadingRangeIndexConfig.toArray(new String[0]));
+    }
+    List<String> valueOfLoadingBloomFilterConfig = tableDataManagerConfig.getList(KEY_OF_LOADING_BLOOM_FILTER, null);
+    if ((valueOfLoadingBloomFilterConfig != null) && (!valueOfLoadingBloomFilterConfig.isEmpty())) {
+      initLoadingBloomFilterColumnSet(valueOfLoadingBloomFilterConfig.toArray(new String[0]));
+    }
 
     segmentVersionToLoad = tableDataManagerConfig.getString(KEY_OF_SEGMENT_FORMAT_VERSION, DEFAULT_SEGMENT_FORMAT);
     enableDefaultColumns = tableDataManagerConfig.getBoolean(KEY_OF_ENABLE_DEFAULT_COLUMNS, false);
@@ -64,6 +76,26 @@ public class IndexLoadingConfigMetadata {
     return _loadingInvertedIndexColumnSet.contains(columnName);
   }
 
+  public void initLoadingRangeIndexColumnSet(String[] columnCollections) {
+    _loadingRangeIndexColumnSet.addAll(Arrays.asList(columnCollections));
+  }
+
+  public Set<String> getLoadingRangeIndexColumns() {
+    return _loadingRangeIndexColumnSet;
+  }
+
+  public boolean isLoadingRangeIndexForColumn(String columnName) {
+    return _loadingRangeIndexColumnSet.contains(columnName);
+  }
+
+  public void initLoadingBloomFilterColumnSet(String[] columnCollections) {
+    _loadingBloomFilterColumnSet.addAll(Arrays.asList(columnCollections));
+  }
+
+  public Set<String> getLoadingBloomFilterColumns() {
+    return _loadingBloomFilterColumnSet;
+  }
+
   public String segmentVersionToLoad() {
     return segmentVersionToLoad;
   }
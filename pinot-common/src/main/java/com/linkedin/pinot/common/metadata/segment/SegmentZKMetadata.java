@@ -15,12 +15,17 @@
  */
 package com.linkedin.pinot.common.metadata.segment;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 
+import com.google.common.base.Joiner;
 import com.linkedin.pinot.common.metadata.ZKMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
@@ -44,6 +49,10 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
   private long _totalRawDocs = -1;
   private long _crc = -1;
   private long _creationTime = -1;
+  private String _partitionColumn = null;
+  private String _partitionFunction = null;
+  private int _numPartitions = -1;
+  private Set<Integer> _partitionIds = null;
 
   public SegmentZKMetadata() {
   }
@@ -62,6 +71,16 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     _totalRawDocs = znRecord.getLongField(CommonConstants.Segment.TOTAL_DOCS, -1);
     _crc = znRecord.getLongField(CommonConstants.Segment.CRC, -1);
     _creationTime = znRecord.getLongField(CommonConstants.Segment.CREATION_TIME, -1);
+    _partitionColumn = znRecord.getSimpleField(CommonConstants.Segment.PARTITION_COLUMN);
+    _partitionFunction = znRecord.getSimpleField(CommonConstants.Segment.PARTITION_FUNCTION);
+    _numPartitions = znRecord.getIntField(CommonConstants.Segment.NUM_PARTITIONS, -1);
+    List<String> partitionIds = znRecord.getListField(CommonConstants.Segment.PARTITION_IDS);
+    if (partitionIds != null) {
+      _partitionIds = new TreeSet<Integer>();
+      for (String partitionId : partitionIds) {
+        _partitionIds.add(Integer.valueOf(partitionId));
+      }
+    }
   }
 
   public String getSegmentName() {
@@ -144,6 +163,42 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     _creationTime = creationTime;
   }
 
+  public String getPartitionColumn() {
+    return _partitionColumn;
+  }
+
+  public void setPartitionColumn(String partitionColumn) {
+    _partitionColumn = partitionColumn;
+  }
+
+  public String getPartitionFunction() {
+    return _partitionFunction;
+  }
+
+  public void setPartitionFunction(String partitionFunction) {
+    _partitionFunction = partitionFunction;
+  }
+
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  public void setNumPartitions(int numPartitions) {
+    _numPartitions = numPartitions;
+  }
+
+  /**
+   * Returns the ids of the partitions the values of the partition column in this segment belong to, or null if the
+   * segment has no partition information.
+   */
+  public Set<Integer> getPartitionIds() {
+    return _partitionIds;
+  }
+
+  public void setPartitionIds(Set<Integer> partitionIds) {
+    _partitionIds = partitionIds;
+  }
+
   @Override
   public boolean equals(Object segmentMetadata) {
     if (isSameReference(this, segmentMetadata)) {
@@ -164,7 +219,11 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
         isEqual(_segmentType, metadata._segmentType) &&
         isEqual(_totalRawDocs, metadata._totalRawDocs) &&
         isEqual(_crc, metadata._crc) &&
-        isEqual(_creationTime, metadata._creationTime);
+        isEqual(_creationTime, metadata._creationTime) &&
+        isEqual(_partitionColumn, metadata._partitionColumn) &&
+        isEqual(_partitionFunction, metadata._partitionFunction) &&
+        isEqual(_numPartitions, metadata._numPartitions) &&
+        isEqual(_partitionIds, metadata._partitionIds);
   }
 
   @Override
@@ -179,6 +238,10 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     result = hashCodeOf(result, _totalRawDocs);
     result = hashCodeOf(result, _crc);
     result = hashCodeOf(result, _creationTime);
+    result = hashCodeOf(result, _partitionColumn);
+    result = hashCodeOf(result, _partitionFunction);
+    result = hashCodeOf(result, _numPartitions);
+    result = hashCodeOf(result, _partitionIds);
     return result;
   }
 
@@ -200,6 +263,16 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     znRecord.setLongField(CommonConstants.Segment.TOTAL_DOCS, _totalRawDocs);
     znRecord.setLongField(CommonConstants.Segment.CRC, _crc);
     znRecord.setLongField(CommonConstants.Segment.CREATION_TIME, _creationTime);
+    if (_partitionIds != null) {
+      znRecord.setSimpleField(CommonConstants.Segment.PARTITION_COLUMN, _partitionColumn);
+      znRecord.setSimpleField(CommonConstants.Segment.PARTITION_FUNCTION, _partitionFunction);
+      znRecord.setIntField(CommonConstants.Segment.NUM_PARTITIONS, _numPartitions);
+      List<String> partitionIds = new ArrayList<String>(_partitionIds.size());
+      for (Integer partitionId : _partitionIds) {
+        partitionIds.add(partitionId.toString());
+      }
+      znRecord.setListField(CommonConstants.Segment.PARTITION_IDS, partitionIds);
+    }
     return znRecord;
   }
 
@@ -220,6 +293,12 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     configMap.put(CommonConstants.Segment.TOTAL_DOCS, Long.toString(_totalRawDocs));
     configMap.put(CommonConstants.Segment.CRC, Long.toString(_crc));
     configMap.put(CommonConstants.Segment.CREATION_TIME, Long.toString(_creationTime));
+    if (_partitionIds != null) {
+      configMap.put(CommonConstants.Segment.PARTITION_COLUMN, _partitionColumn);
+      configMap.put(CommonConstants.Segment.PARTITION_FUNCTION, _partitionFunction);
+      configMap.put(CommonConstants.Segment.NUM_PARTITIONS, Integer.toString(_numPartitions));
+      configMap.put(CommonConstants.Segment.PARTITION_IDS, Joiner.on(',').join(_partitionIds));
+    }
     return configMap;
   }
 }
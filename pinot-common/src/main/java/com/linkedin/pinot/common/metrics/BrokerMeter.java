@@ -45,6 +45,19 @@ public enum BrokerMeter implements AbstractMetrics.Meter {
   // basis.
   REQUEST_DROPPED_DUE_TO_CONNECTION_ERROR("requestDropped", false),
 
+  // This metric tracks the number of server responses that did not arrive before the broker timeout. The query is
+  // answered with the responses merged so far, and the late servers are reported in the response. The metric is
+  // counted on a per-table basis.
+  REQUEST_TIMED_OUT_SERVERS("servers", false),
+
+  // These metrics track the lookups in the broker result cache, counted on a per-table basis. For hybrid tables only
+  // the offline part of the query is looked up.
+  RESULT_CACHE_HITS("queries", false),
+  RESULT_CACHE_MISSES("queries", false),
+
+  // This metric tracks the number of entries evicted from the broker result cache because it was full.
+  RESULT_CACHE_EVICTIONS("entries", true),
+
 
   // This metric is emitted when DataTableCustomSerDe falls back to Java based de-serialization.
   // This implies that we have identified an object for which we have not implemented custom ser/de.
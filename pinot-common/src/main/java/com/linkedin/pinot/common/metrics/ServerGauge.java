@@ -24,7 +24,12 @@ import com.linkedin.pinot.common.Utils;
 */
 public enum ServerGauge implements AbstractMetrics.Gauge {
   DOCUMENT_COUNT("documents", false),
-  SEGMENT_COUNT("segments", false);
+  SEGMENT_COUNT("segments", false),
+  SCHEDULER_PENDING_QUERIES("queries", false),
+  SCHEDULER_RUNNING_QUERIES("queries", false),
+  // Per kafka partition consumed by low level consumers
+  KAFKA_PARTITION_OFFSET_LAG("messages", false),
+  KAFKA_PARTITION_CONSUMPTION_RATE("messages", false);
 
   private final String gaugeName;
   private final String unit;
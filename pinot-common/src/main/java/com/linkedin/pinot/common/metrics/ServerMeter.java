@@ -38,7 +38,16 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   ROWS_WITH_ERRORS("rows", false),
   ROWS_NEEDING_CONVERSIONS("rows", false),
   ROWS_WITH_NULL_VALUES("rows", false),
-  COLUMNS_WITH_NULL_VALUES("columns", false);
+  COLUMNS_WITH_NULL_VALUES("columns", false),
+  SEGMENT_RESULT_CACHE_HITS("segments", false),
+  SEGMENT_RESULT_CACHE_MISSES("segments", false),
+  SEGMENT_RESULT_CACHE_EVICTIONS("entries", true),
+  QUERY_THREAD_CPU_TIME_NS("nanoseconds", false),
+  QUERY_ALLOCATED_BYTES("bytes", false),
+  QUERY_QUEUE_WAIT_TIME_NS("nanoseconds", false),
+  NUM_SEGMENTS_PRUNED("segments", false),
+  SCHEDULER_REJECTED_QUERIES("queries", false),
+  SCHEDULER_TIMED_OUT_QUERIES("queries", false);
 
   private final String meterName;
   private final String unit;
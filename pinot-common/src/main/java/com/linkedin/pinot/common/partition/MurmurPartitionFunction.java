@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+import com.google.common.base.Preconditions;
+import java.nio.charset.Charset;
+import org.apache.kafka.common.utils.Utils;
+
+
+/**
+ * Partition function based on the murmur2 hash of the UTF-8 bytes of the value. This is the same function the Kafka
+ * default partitioner applies to message keys, so segments consumed from a topic keyed on the partition column line up
+ * with the topic partitions.
+ */
+public class MurmurPartitionFunction implements PartitionFunction {
+  public static final String NAME = "murmur";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final int _numPartitions;
+
+  public MurmurPartitionFunction(int numPartitions) {
+    Preconditions.checkArgument(numPartitions > 0, "Number of partitions must be positive: %s", numPartitions);
+    _numPartitions = numPartitions;
+  }
+
+  @Override
+  public int getPartition(String value) {
+    return (Utils.murmur2(value.getBytes(UTF_8)) & 0x7fffffff) % _numPartitions;
+  }
+
+  @Override
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+}
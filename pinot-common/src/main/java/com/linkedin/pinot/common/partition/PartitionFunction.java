@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+/**
+ * Maps a column value to the partition it belongs to. Implementations must be deterministic, as the partition ids
+ * computed while building a segment are used by the broker to route queries on the partition column.
+ */
+public interface PartitionFunction {
+
+  /**
+   * Returns the partition id, in the range [0, numPartitions), for the given value.
+   *
+   * @param value String representation of the column value
+   * @return partition id of the value
+   */
+  int getPartition(String value);
+
+  /**
+   * Returns the number of partitions this function maps values to.
+   */
+  int getNumPartitions();
+}
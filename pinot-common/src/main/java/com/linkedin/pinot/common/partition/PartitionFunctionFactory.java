@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.partition;
+
+/**
+ * Factory for {@link PartitionFunction}s, looked up by (case insensitive) name.
+ */
+public class PartitionFunctionFactory {
+  private PartitionFunctionFactory() {
+  }
+
+  /**
+   * Returns the partition function for the given name.
+   *
+   * @param functionName Name of the partition function
+   * @param numPartitions Number of partitions
+   * @return Partition function
+   * @throws IllegalArgumentException if the function name is not supported
+   */
+  public static PartitionFunction getPartitionFunction(String functionName, int numPartitions) {
+    switch (functionName.toLowerCase()) {
+      case ModuloPartitionFunction.NAME:
+        return new ModuloPartitionFunction(numPartitions);
+      case MurmurPartitionFunction.NAME:
+        return new MurmurPartitionFunction(numPartitions);
+      case HashCodePartitionFunction.NAME:
+        return new HashCodePartitionFunction(numPartitions);
+      default:
+        throw new IllegalArgumentException("Unsupported partition function: " + functionName);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.query;
+
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Reducer that merges server responses into a running result one at a time, so that the broker can merge each
+ * response as soon as it arrives instead of waiting for all servers to respond.
+ * Implementations are not thread safe, all calls are expected to come from the thread gathering the responses.
+ *
+ * @param <T>
+ */
+public interface IncrementalReducer<T extends BrokerResponse> {
+  /**
+   * Set the number of servers the query was sent to.
+   *
+   * @param numServersQueried
+   */
+  void setNumServersQueried(int numServersQueried);
+
+  /**
+   * Merge the response of one server into the running result.
+   *
+   * @param serverInstance
+   * @param dataTable
+   */
+  void add(ServerInstance serverInstance, DataTable dataTable);
+
+  /**
+   * Record a server whose response is not part of the result, because it failed or did not respond in time.
+   *
+   * @param serverInstance
+   * @param errorCode
+   * @param message
+   */
+  void addMissingServer(ServerInstance serverInstance, int errorCode, String message);
+
+  /**
+   * Build the final response out of everything merged so far. Must be called once, after the last response is added.
+   *
+   * @return T extends BrokerResponse
+   */
+  T getResult();
+}
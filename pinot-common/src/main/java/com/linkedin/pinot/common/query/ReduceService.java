@@ -54,4 +54,13 @@ public interface ReduceService<T extends BrokerResponse> {
   public T reduceOnDataTable(BrokerRequest brokerRequest,
       Map<ServerInstance, DataTable> instanceResponseMap);
 
+  /**
+   * Create a reducer that merges instance responses one at a time as they arrive.
+   * The returned reducer is not thread safe and is only meant to be used for a single query.
+   *
+   * @param brokerRequest
+   * @return reducer producing T extends BrokerResponse
+   */
+  public IncrementalReducer<T> createIncrementalReducer(BrokerRequest brokerRequest);
+
 }
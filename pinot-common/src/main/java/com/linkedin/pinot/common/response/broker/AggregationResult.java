@@ -33,6 +33,7 @@ public class AggregationResult {
 
   List<GroupByResult> _groupByResults;
   List<String> _groupByColumns;
+  private String _groupByErrorBound;
 
   /**
    * Default constructor, required by JSON de-serializer.
@@ -139,4 +140,24 @@ public class AggregationResult {
   public void setGroupByColumns(List<String> groupByColumns) {
     _groupByColumns = groupByColumns;
   }
+
+  /**
+   * Returns the maximum amount by which the group values may be under-estimated because servers trimmed their group by
+   * results, null if no server trimmed them or the bound is not known for the aggregation function.
+   * @return
+   */
+  @JsonProperty("groupByErrorBound")
+  @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+  public String getGroupByErrorBound() {
+    return _groupByErrorBound;
+  }
+
+  /**
+   * Set the error bound of the group values.
+   * @param groupByErrorBound
+   */
+  @JsonProperty("groupByErrorBound")
+  public void setGroupByErrorBound(String groupByErrorBound) {
+    _groupByErrorBound = groupByErrorBound;
+  }
 }
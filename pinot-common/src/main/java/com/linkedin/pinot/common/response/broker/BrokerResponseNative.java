@@ -39,13 +39,21 @@ import org.json.JSONObject;
  *
  * Supports serialization via JSON.
  */
-@JsonPropertyOrder({"selectionResults", "traceInfo", "numDocsScanned", "aggregationResults", "timeUsedMs", "segmentStatistics", "exceptions", "totalDocs"})
+@JsonPropertyOrder({"selectionResults", "traceInfo", "numDocsScanned", "aggregationResults", "timeUsedMs", "segmentStatistics", "exceptions", "totalDocs", "numServersQueried", "numServersResponded", "threadCpuTimeNs", "allocatedBytes", "queueWaitTimeNs", "numSegmentsQueried", "numSegmentsPruned", "numGroupsTrimmed"})
 public class BrokerResponseNative implements BrokerResponse {
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
   private long _numDocsScanned = 0;
   private long _totalDocs = 0;
   private long _timeUsedMs = 0;
+  private int _numServersQueried = 0;
+  private int _numServersResponded = 0;
+  private long _threadCpuTimeNs = 0;
+  private long _allocatedBytes = 0;
+  private long _queueWaitTimeNs = 0;
+  private long _numSegmentsQueried = 0;
+  private long _numSegmentsPruned = 0;
+  private long _numGroupsTrimmed = 0;
 
   private SelectionResults _selectionResults;
   private List<AggregationResult> _aggregationResults;
@@ -109,6 +117,86 @@ public class BrokerResponseNative implements BrokerResponse {
     _timeUsedMs = timeUsedMs;
   }
 
+  @JsonProperty("numServersQueried")
+  public int getNumServersQueried() {
+    return _numServersQueried;
+  }
+
+  @JsonProperty("numServersQueried")
+  public void setNumServersQueried(int numServersQueried) {
+    _numServersQueried = numServersQueried;
+  }
+
+  @JsonProperty("numServersResponded")
+  public int getNumServersResponded() {
+    return _numServersResponded;
+  }
+
+  @JsonProperty("numServersResponded")
+  public void setNumServersResponded(int numServersResponded) {
+    _numServersResponded = numServersResponded;
+  }
+
+  @JsonProperty("threadCpuTimeNs")
+  public long getThreadCpuTimeNs() {
+    return _threadCpuTimeNs;
+  }
+
+  @JsonProperty("threadCpuTimeNs")
+  public void setThreadCpuTimeNs(long threadCpuTimeNs) {
+    _threadCpuTimeNs = threadCpuTimeNs;
+  }
+
+  @JsonProperty("allocatedBytes")
+  public long getAllocatedBytes() {
+    return _allocatedBytes;
+  }
+
+  @JsonProperty("allocatedBytes")
+  public void setAllocatedBytes(long allocatedBytes) {
+    _allocatedBytes = allocatedBytes;
+  }
+
+  @JsonProperty("queueWaitTimeNs")
+  public long getQueueWaitTimeNs() {
+    return _queueWaitTimeNs;
+  }
+
+  @JsonProperty("queueWaitTimeNs")
+  public void setQueueWaitTimeNs(long queueWaitTimeNs) {
+    _queueWaitTimeNs = queueWaitTimeNs;
+  }
+
+  @JsonProperty("numSegmentsQueried")
+  public long getNumSegmentsQueried() {
+    return _numSegmentsQueried;
+  }
+
+  @JsonProperty("numSegmentsQueried")
+  public void setNumSegmentsQueried(long numSegmentsQueried) {
+    _numSegmentsQueried = numSegmentsQueried;
+  }
+
+  @JsonProperty("numSegmentsPruned")
+  public long getNumSegmentsPruned() {
+    return _numSegmentsPruned;
+  }
+
+  @JsonProperty("numSegmentsPruned")
+  public void setNumSegmentsPruned(long numSegmentsPruned) {
+    _numSegmentsPruned = numSegmentsPruned;
+  }
+
+  @JsonProperty("numGroupsTrimmed")
+  public long getNumGroupsTrimmed() {
+    return _numGroupsTrimmed;
+  }
+
+  @JsonProperty("numGroupsTrimmed")
+  public void setNumGroupsTrimmed(long numGroupsTrimmed) {
+    _numGroupsTrimmed = numGroupsTrimmed;
+  }
+
   @JsonProperty("selectionResults")
   public void setSelectionResults(SelectionResults selectionResults) {
     _selectionResults = selectionResults;
@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.common.segment;
 
+import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -33,6 +35,9 @@ public class StarTreeMetadata {
   private long _skipMaterializationCardinality;
 
   private Map<String, String> _hllOriginToDerivedColumnMap;
+  // Origin to derived column maps of the derived metric types other than HLL (pre-aggregated sketches).
+  private final Map<DerivedMetricType, Map<String, String>> _sketchOriginToDerivedColumnMaps =
+      new EnumMap<>(DerivedMetricType.class);
 
   public StarTreeMetadata() {
   }
@@ -85,4 +90,25 @@ public class StarTreeMetadata {
   public void setHllOriginToDerivedColumnMap(Map<String, String> hllOriginToDerivedColumnMap) {
     _hllOriginToDerivedColumnMap = hllOriginToDerivedColumnMap;
   }
+
+  /**
+   * Returns the derived column of the given type pre-aggregated from the origin column, or null if there is none.
+   */
+  @Nullable
+  public String getDerivedColumnFromOrigin(String originColumn, DerivedMetricType derivedMetricType) {
+    if (derivedMetricType == DerivedMetricType.HLL) {
+      return getDerivedHllColumnFromOrigin(originColumn);
+    }
+    Map<String, String> originToDerivedColumnMap = _sketchOriginToDerivedColumnMaps.get(derivedMetricType);
+    return (originToDerivedColumnMap == null) ? null : originToDerivedColumnMap.get(originColumn);
+  }
+
+  public void setOriginToDerivedColumnMap(DerivedMetricType derivedMetricType,
+      Map<String, String> originToDerivedColumnMap) {
+    if (derivedMetricType == DerivedMetricType.HLL) {
+      setHllOriginToDerivedColumnMap(originToDerivedColumnMap);
+    } else {
+      _sketchOriginToDerivedColumnMaps.put(derivedMetricType, originToDerivedColumnMap);
+    }
+  }
 }
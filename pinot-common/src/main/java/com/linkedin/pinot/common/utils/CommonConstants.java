@@ -131,6 +131,13 @@ public class CommonConstants {
             public static final String ZK_CONNECTION_STRING = "kafka.hlc.zk.connect.string";
             public static final String GROUP_ID = "kafka.hlc.group.id";
           }
+
+          public static class LowLevelConsumer {
+            // Number of decoders decoding the messages of a partition in parallel, while the next batch is
+            // prefetched. Fetches and decodes run on thread pools shared by all the partitions of the server.
+            // When not set (or 0), messages are fetched, decoded and indexed one at a time by the consuming thread.
+            public static final String DECODER_THREADS = "kafka.llc.decoder.threads";
+          }
         }
       }
 
@@ -239,6 +246,10 @@ public class CommonConstants {
     public static final String TOTAL_DOCS = "segment.total.docs";
     public static final String CRC = "segment.crc";
     public static final String CREATION_TIME = "segment.creation.time";
+    public static final String PARTITION_COLUMN = "segment.partition.column";
+    public static final String PARTITION_FUNCTION = "segment.partition.function";
+    public static final String NUM_PARTITIONS = "segment.partition.num.partitions";
+    public static final String PARTITION_IDS = "segment.partition.ids";
 
     public static enum SegmentType {
       OFFLINE,
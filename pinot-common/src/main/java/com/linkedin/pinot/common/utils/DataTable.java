@@ -15,24 +15,15 @@
  */
 package com.linkedin.pinot.common.utils;
 
-import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,12 +36,29 @@ public class DataTable {
   private static final Logger LOGGER = LoggerFactory.getLogger(DataTable.class);
 
   public static final String EXCEPTION_METADATA_KEY = "Exception";
+  // Resources used by all the threads working on the query, in nanoseconds and bytes
+  public static final String THREAD_CPU_TIME_NS_METADATA_KEY = "threadCpuTimeNs";
+  public static final String ALLOCATED_BYTES_METADATA_KEY = "allocatedBytes";
+  public static final String QUEUE_WAIT_TIME_NS_METADATA_KEY = "queueWaitTimeNs";
+  // Segments requested by the broker that the server acquired, and how many of them were pruned before planning
+  public static final String NUM_SEGMENTS_QUERIED_METADATA_KEY = "numSegmentsQueried";
+  public static final String NUM_SEGMENTS_PRUNED_METADATA_KEY = "numSegmentsPruned";
+  // Groups dropped by the server when trimming group by results, and the value of the last group kept for each
+  // aggregation function (comma separated)
+  public static final String NUM_GROUPS_TRIMMED_METADATA_KEY = "numGroupsTrimmed";
+  public static final String GROUP_BY_TRIM_BOUNDS_METADATA_KEY = "groupByTrimBounds";
   private static final Charset UTF8 = Charset.forName("UTF-8");
 
+  // VERSION|NUM_ROW|NUM_COL|(START|SIZE) -- START|SIZE 5 PAIRS FOR DICTIONARY, METADATA, SCHEMA, DATATABLE,
+  // VARIABLE DATA BUFFER --> 4 + 4 + 4 + 5*8 = 52 bytes
+  private static final int HEADER_SIZE = 52;
+  private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
   // Data Table version
   public enum Version {
     V1(1), // Keep the value of '1' for backward compatibility
-    V2(2);
+    V2(2),
+    V3(3); // Dictionary values are stored by dictionary id, without the ids.
 
     private int value;
 
@@ -59,7 +67,7 @@ public class DataTable {
     }
 
     public static Version valueOf(int versionNum) {
-      // Only two elements, so OK to linear search, v.s. overhead of maintaining & looking up map.
+      // Only a few elements, so OK to linear search, v.s. overhead of maintaining & looking up map.
       for (Version version : values()) {
         if (version.value == versionNum) {
           return version;
@@ -82,9 +90,18 @@ public class DataTable {
 
   DataSchema schema;
 
-  private Map<String, Map<Integer, String>> dictionary;
+  // Column name to dictionary values, indexed by dictionary id.
+  // Dictionary and metadata received over the wire are only de-serialized when first accessed, which may happen from
+  // several threads, hence volatile fields set with double-checked locking.
+  private volatile Map<String, String[]> dictionary;
+
+  private volatile Map<String, String> metadata;
 
-  private Map<String, String> metadata;
+  // Serialized dictionary and metadata received over the wire, kept after they are de-serialized so that readers
+  // racing with the de-serialization never see both the map and the buffer as null.
+  private ByteBuffer dictionaryBuffer;
+
+  private ByteBuffer metadataBuffer;
 
   private ByteBuffer fixedSizeData;
 
@@ -94,10 +111,6 @@ public class DataTable {
 
   private int rowSizeInBytes;
 
-  private byte[] fixedSizeDataBytes;
-
-  private byte[] variableSizeDataBytes;
-
   /**
    *
    * @param numRows
@@ -114,11 +127,9 @@ public class DataTable {
     this.dataTableSerDe = DataTableSerDeRegistry.getInstance().get();
     this.version = version;
     this.numRows = numRows;
-    this.dictionary = dictionary;
+    this.dictionary = toDictionaryArrays(dictionary);
     this.metadata = metadata;
     this.schema = schema;
-    this.fixedSizeDataBytes = fixedSizeDataBytes;
-    this.variableSizeDataBytes = variableSizeDataBytes;
     numCols = schema.columnNames.length;
     fixedSizeData = ByteBuffer.wrap(fixedSizeDataBytes);
     variableSizeData = ByteBuffer.wrap(variableSizeDataBytes);
@@ -202,7 +213,18 @@ public class DataTable {
    * @param buffer
    */
   public DataTable(byte[] buffer) {
-    final ByteBuffer input = ByteBuffer.wrap(buffer);
+    this(ByteBuffer.wrap(buffer));
+  }
+
+  /**
+   * De-serializes a data table from the remaining bytes of the given buffer, without copying them. The data table
+   * keeps views on the buffer, which must therefore not be modified or released while the data table is in use.
+   * Metadata and dictionary are only de-serialized when first accessed.
+   *
+   * @param buffer Buffer holding the serialized data table, e.g. the NIO view of a Netty response
+   */
+  public DataTable(ByteBuffer buffer) {
+    final ByteBuffer input = buffer.slice();
     dataTableSerDe = DataTableSerDeRegistry.getInstance().get();
 
     // Assert that version can be de-serialized.
@@ -225,25 +247,15 @@ public class DataTable {
     final int variableDataStart = input.getInt();
     final int variableDataLength = input.getInt();
 
-    // READ DICTIONARY
-
-    byte[] dictionaryBytes = null;
+    // DICTIONARY AND METADATA ARE DE-SERIALIZED LAZILY
     if (dictionaryLength != 0) {
-      dictionaryBytes = new byte[dictionaryLength];
-      input.position(dictionaryStart);
-      input.get(dictionaryBytes);
-      dictionary = (Map<String, Map<Integer, String>>) deserializeDictionary(dictionaryBytes);
+      dictionaryBuffer = sliceOf(input, dictionaryStart, dictionaryLength);
     } else {
-      dictionary = new HashMap<String, Map<Integer, String>>(1);
+      dictionary = new HashMap<String, String[]>(1);
     }
 
-    // READ METADATA
-    byte[] metadataBytes;
     if (metadataLength != 0) {
-      metadataBytes = new byte[metadataLength];
-      input.position(metadataStart);
-      input.get(metadataBytes);
-      metadata = (Map<String, String>) deserializeMetadata(metadataBytes);
+      metadataBuffer = sliceOf(input, metadataStart, metadataLength);
     } else {
       metadata = new HashMap<String, String>();
     }
@@ -259,23 +271,23 @@ public class DataTable {
       columnOffsets = computeColumnOffsets(schema);
     }
 
-    // READ FIXED SIZE DATA BYTES
+    // FIXED AND VARIABLE SIZE DATA ARE READ IN PLACE
     if (fixedDataLength != 0) {
-      fixedSizeDataBytes = new byte[fixedDataLength];
-      input.position(fixedDataStart);
-      input.get(fixedSizeDataBytes);
-      fixedSizeData = ByteBuffer.wrap(fixedSizeDataBytes);
+      fixedSizeData = sliceOf(input, fixedDataStart, fixedDataLength);
     }
 
-    // READ VARIABLE SIZE DATA BYTES
     if (variableDataLength != 0) {
-      variableSizeDataBytes = new byte[variableDataLength];
-      input.position(variableDataStart);
-      input.get(variableSizeDataBytes);
-      variableSizeData = ByteBuffer.wrap(variableSizeDataBytes);
+      variableSizeData = sliceOf(input, variableDataStart, variableDataLength);
     }
   }
 
+  private static ByteBuffer sliceOf(ByteBuffer input, int start, int length) {
+    ByteBuffer duplicate = input.duplicate();
+    duplicate.position(start);
+    duplicate.limit(start + length);
+    return duplicate.slice();
+  }
+
   public DataTable() {
     // Used for empty results.
     dataTableSerDe = DataTableSerDeRegistry.getInstance().get();
@@ -289,17 +301,18 @@ public class DataTable {
   /**
    * Helper method to derive version based on the registered DataTableSer/de.
    * <p> - Version is derived to be V1 if DataTableJavaSerDe is registered.</p>
+   * <p> - Otherwise the version set in {@link DataTableSerDeRegistry} is used, V2 by default.</p>
    * <p> - Checks for class equality instead of 'instanceof' as other ser/de's can be derived
    *       from {@link DataTableJavaSerDe}</p>
    * @return
    */
   public static Version deriveVersionFromDataTableSerDe(DataTableSerDe dataTableSerDe) {
     return (dataTableSerDe.getClass().equals(DataTableJavaSerDe.class)) ? Version.V1
-        : Version.V2;
+        : DataTableSerDeRegistry.getInstance().getVersion();
   }
 
   /**
-   * Serialize the data table into a byte-array, using {@ref #Version.V1}
+   * Serialize the data table into a byte-array, using the version it was built or de-serialized with.
    *
    * @return Serialized byte-array
    * @throws Exception
@@ -316,154 +329,177 @@ public class DataTable {
    * @throws Exception
    */
   public byte[] toBytes(Version version) throws Exception {
-    final byte[] dictionaryBytes = serializeDictionary();
+    final byte[] dictionaryBytes = serializeDictionary(version);
     final byte[] metadataBytes = serializeMetadata();
     byte[] schemaBytes = new byte[0];
     if (schema != null) {
       schemaBytes = schema.toBytes();
     }
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    final DataOutputStream out = new DataOutputStream(baos);
+    final int fixedSizeDataLength = (fixedSizeData == null) ? 0 : fixedSizeData.limit();
+    final int variableSizeDataLength = (variableSizeData == null) ? 0 : variableSizeData.limit();
+
     // TODO: convert this format into a proper class
-    // VERSION|NUM_ROW|NUM_COL|(START|SIZE) -- START|SIZE 5 PAIRS FOR
-    // DICTIONARY, METADATA,
-    // SCHEMA, DATATABLE, VARIABLE DATA BUFFER --> 4 + 4 + 4 + 5*8 = 52
-    // bytes
-
-    out.writeInt(version.getValue());
-    out.writeInt(numRows);
-    out.writeInt(numCols);
+    final ByteBuffer out = ByteBuffer.allocate(
+        HEADER_SIZE + dictionaryBytes.length + metadataBytes.length + schemaBytes.length + fixedSizeDataLength
+            + variableSizeDataLength);
+
+    out.putInt(version.getValue());
+    out.putInt(numRows);
+    out.putInt(numCols);
     // dictionary
-    int baseOffset = 52;
-    out.writeInt(baseOffset);
-    out.writeInt(dictionaryBytes.length);
+    int baseOffset = HEADER_SIZE;
+    out.putInt(baseOffset);
+    out.putInt(dictionaryBytes.length);
     baseOffset += dictionaryBytes.length;
 
     // metadata
-    out.writeInt(baseOffset);
-    out.writeInt(metadataBytes.length);
+    out.putInt(baseOffset);
+    out.putInt(metadataBytes.length);
     baseOffset += metadataBytes.length;
 
     // schema
-    out.writeInt(baseOffset);
-    out.writeInt(schemaBytes.length);
+    out.putInt(baseOffset);
+    out.putInt(schemaBytes.length);
     baseOffset += schemaBytes.length;
 
     // datatable
-    out.writeInt(baseOffset);
-    if (fixedSizeDataBytes == null) {
-      out.writeInt(0);
-    } else {
-      out.writeInt(fixedSizeDataBytes.length);
-      baseOffset += fixedSizeDataBytes.length;
-    }
+    out.putInt(baseOffset);
+    out.putInt(fixedSizeDataLength);
+    baseOffset += fixedSizeDataLength;
 
     // variable data
-    out.writeInt(baseOffset);
-    if (variableSizeDataBytes == null) {
-      out.writeInt(0);
-    } else {
-      out.writeInt(variableSizeDataBytes.length);
-    }
+    out.putInt(baseOffset);
+    out.putInt(variableSizeDataLength);
 
     // write them
-    out.write(dictionaryBytes);
-    out.write(metadataBytes);
-    out.write(schemaBytes);
-    if (fixedSizeDataBytes != null) {
-      out.write(fixedSizeDataBytes);
+    out.put(dictionaryBytes);
+    out.put(metadataBytes);
+    out.put(schemaBytes);
+    if (fixedSizeData != null) {
+      ByteBuffer duplicate = fixedSizeData.duplicate();
+      duplicate.clear();
+      out.put(duplicate);
     }
-    if (variableSizeDataBytes != null) {
-      out.write(variableSizeDataBytes);
+    if (variableSizeData != null) {
+      ByteBuffer duplicate = variableSizeData.duplicate();
+      duplicate.clear();
+      out.put(duplicate);
     }
-    byte[] byteArray = baos.toByteArray();
-    long end = System.currentTimeMillis();
-    return byteArray;
+    return out.array();
   }
 
   private byte[] serializeMetadata() throws Exception {
+    final Map<String, String> metadata = this.metadata;
+    if (metadata == null && metadataBuffer != null) {
+      // Not accessed since it was received, the layout is the same for all versions.
+      return toByteArray(metadataBuffer);
+    }
     if (metadata != null) {
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      final DataOutputStream out = new DataOutputStream(baos);
-      out.writeInt(metadata.size());
+      final byte[][] keyValueBytes = new byte[2 * metadata.size()][];
+      int size = 4;
+      int i = 0;
       for (Entry<String, String> entry : metadata.entrySet()) {
-        byte[] keyBytes = entry.getKey().getBytes(UTF8);
-        out.writeInt(keyBytes.length);
-        out.write(keyBytes);
-        byte[] valueBytes = entry.getValue().getBytes(UTF8);
-        out.writeInt(valueBytes.length);
-        out.write(valueBytes);
+        keyValueBytes[i] = entry.getKey().getBytes(UTF8);
+        keyValueBytes[i + 1] = entry.getValue().getBytes(UTF8);
+        size += 8 + keyValueBytes[i].length + keyValueBytes[i + 1].length;
+        i += 2;
+      }
+
+      final ByteBuffer out = ByteBuffer.allocate(size);
+      out.putInt(metadata.size());
+      for (byte[] bytes : keyValueBytes) {
+        out.putInt(bytes.length);
+        out.put(bytes);
       }
-      return baos.toByteArray();
+      return out.array();
     }
     return new byte[0];
   }
 
-  private Map<String, String> deserializeMetadata(byte[] buffer) {
+  private Map<String, String> deserializeMetadata(ByteBuffer buffer) {
     Map<String, String> map = new HashMap<String, String>();
     try {
-      final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-      final DataInputStream in = new DataInputStream(bais);
-      int size = in.readInt();
+      final ByteBuffer in = buffer.duplicate();
+      int size = in.getInt();
       for (int i = 0; i < size; i++) {
-        Integer keyLength = in.readInt();
-        byte[] keyBytes = new byte[keyLength];
-        in.read(keyBytes);
-        int valueLength = in.readInt();
-        byte[] valueBytes = new byte[valueLength];
-        in.read(valueBytes);
-        map.put(new String(keyBytes, UTF8), new String(valueBytes, UTF8));
+        String key = readString(in);
+        String value = readString(in);
+        map.put(key, value);
       }
     } catch (Exception e) {
-      LOGGER.error("Exception while deserializing dictionary", e);
+      LOGGER.error("Exception while deserializing metadata", e);
     }
     return map;
   }
 
-  private byte[] serializeDictionary() throws Exception {
+  /**
+   * Serializes the dictionary.
+   * <p> - V1/V2: for each column, the name followed by (dictionary id, value) pairs.</p>
+   * <p> - V3: for each column, the name followed by the values in dictionary id order.</p>
+   * <p> Strings are stored as their length in bytes followed by their UTF-8 bytes.</p>
+   */
+  private byte[] serializeDictionary(Version version) throws Exception {
+    if (this.dictionary == null && dictionaryBuffer != null) {
+      if (version == this.version || (version != Version.V3 && this.version != Version.V3)) {
+        // Not accessed since it was received, and no conversion is needed.
+        return toByteArray(dictionaryBuffer);
+      }
+    }
+    final Map<String, String[]> dictionary = getDictionary();
     if (dictionary != null) {
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      final DataOutputStream out = new DataOutputStream(baos);
-      out.writeInt(dictionary.size());
-      for (String key : dictionary.keySet()) {
-        byte[] bytes = key.getBytes(UTF8);
-        out.writeInt(bytes.length);
-        out.write(bytes);
-        Map<Integer, String> map = dictionary.get(key);
-        out.writeInt(map.size());
-        for (Entry<Integer, String> entry : map.entrySet()) {
-          out.writeInt(entry.getKey());
-          byte[] valueBytes = entry.getValue().getBytes(UTF8);
-          out.writeInt(valueBytes.length);
-          out.write(valueBytes);
+      final int idSize = (version == Version.V3) ? 0 : 4;
+      final byte[][][] valueBytes = new byte[dictionary.size()][][];
+      final byte[][] keyBytes = new byte[dictionary.size()][];
+      int size = 4;
+      int i = 0;
+      for (Entry<String, String[]> entry : dictionary.entrySet()) {
+        keyBytes[i] = entry.getKey().getBytes(UTF8);
+        size += 8 + keyBytes[i].length;
+        String[] values = entry.getValue();
+        valueBytes[i] = new byte[values.length][];
+        for (int j = 0; j < values.length; j++) {
+          valueBytes[i][j] = values[j].getBytes(UTF8);
+          size += idSize + 4 + valueBytes[i][j].length;
         }
+        i++;
       }
-      return baos.toByteArray();
+
+      final ByteBuffer out = ByteBuffer.allocate(size);
+      out.putInt(keyBytes.length);
+      for (i = 0; i < keyBytes.length; i++) {
+        out.putInt(keyBytes[i].length);
+        out.put(keyBytes[i]);
+        out.putInt(valueBytes[i].length);
+        for (int j = 0; j < valueBytes[i].length; j++) {
+          if (idSize != 0) {
+            out.putInt(j);
+          }
+          out.putInt(valueBytes[i][j].length);
+          out.put(valueBytes[i][j]);
+        }
+      }
+      return out.array();
     }
     return new byte[0];
   }
 
-  private Map<String, Map<Integer, String>> deserializeDictionary(byte[] buffer) {
-    Map<String, Map<Integer, String>> map = new HashMap<String, Map<Integer, String>>();
+  private Map<String, String[]> deserializeDictionary(ByteBuffer buffer) {
+    Map<String, String[]> map = new HashMap<String, String[]>();
     try {
-      final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-      final DataInputStream in = new DataInputStream(bais);
-      int size = in.readInt();
-      byte[] temp;
+      final ByteBuffer in = buffer.duplicate();
+      int size = in.getInt();
       for (int i = 0; i < size; i++) {
-        int readLength = in.readInt();
-        temp = new byte[readLength];
-        in.read(temp);
-        Map<Integer, String> childMap = new HashMap<Integer, String>();
-        map.put(new String(temp, UTF8), childMap);
-        int childMapSize = in.readInt();
-        for (int j = 0; j < childMapSize; j++) {
-          Integer key = in.readInt();
-          int valueLength = in.readInt();
-          temp = new byte[valueLength];
-          in.read(temp);
-          childMap.put(key, new String(temp, UTF8));
+        String column = readString(in);
+        int numValues = in.getInt();
+        String[] values = new String[numValues];
+        for (int j = 0; j < numValues; j++) {
+          int id = (version == Version.V3) ? j : in.getInt();
+          if (id >= values.length) {
+            values = Arrays.copyOf(values, id + 1);
+          }
+          values[id] = readString(in);
         }
+        map.put(column, values);
       }
     } catch (Exception e) {
       LOGGER.error("Exception while deserializing dictionary", e);
@@ -471,36 +507,62 @@ public class DataTable {
     return map;
   }
 
-  /**
-   *
-   * @param value
-   * @return
-   */
-  private byte[] serializeObject(Object value) {
-    long start = System.nanoTime();
-
-    byte[] bytes;
-    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutput out = null;
-
-    try {
-      try {
-        out = new ObjectOutputStream(bos);
-        out.writeObject(value);
-      } catch (final IOException e) {
-        LOGGER.error("Caught exception", e);
-        Utils.rethrowException(e);
+  private static Map<String, String[]> toDictionaryArrays(Map<String, Map<Integer, String>> dictionary) {
+    if (dictionary == null) {
+      return null;
+    }
+    Map<String, String[]> map = new HashMap<String, String[]>(dictionary.size());
+    for (Entry<String, Map<Integer, String>> entry : dictionary.entrySet()) {
+      String[] values = EMPTY_STRING_ARRAY;
+      for (Entry<Integer, String> idToValue : entry.getValue().entrySet()) {
+        int id = idToValue.getKey();
+        if (id >= values.length) {
+          values = Arrays.copyOf(values, Math.max(id + 1, entry.getValue().size()));
+        }
+        values[id] = idToValue.getValue();
       }
-      bytes = bos.toByteArray();
+      map.put(entry.getKey(), values);
+    }
+    return map;
+  }
 
-    } finally {
-      IOUtils.closeQuietly((Closeable) out);
-      IOUtils.closeQuietly(bos);
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    String value;
+    if (in.hasArray()) {
+      value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+    } else {
+      byte[] bytes = new byte[length];
+      in.duplicate().get(bytes);
+      value = new String(bytes, UTF8);
     }
-    long end = System.nanoTime();
+    in.position(in.position() + length);
+    return value;
+  }
+
+  private static byte[] toByteArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.limit()];
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.clear();
+    duplicate.get(bytes);
     return bytes;
   }
 
+  private Map<String, String[]> getDictionary() {
+    Map<String, String[]> dictionary = this.dictionary;
+    if (dictionary == null && dictionaryBuffer != null) {
+      synchronized (this) {
+        dictionary = this.dictionary;
+        if (dictionary == null) {
+          dictionary = deserializeDictionary(dictionaryBuffer);
+          this.dictionary = dictionary;
+        }
+      }
+    }
+    return dictionary;
+  }
+
+
   /**
    *
    * @return
@@ -622,8 +684,7 @@ public class DataTable {
   public String getString(int rowId, int colId) {
     fixedSizeData.position(rowId * rowSizeInBytes + columnOffsets[colId]);
     final int id = fixedSizeData.getInt();
-    final Map<Integer, String> map = dictionary.get(schema.columnNames[colId]);
-    return map.get(id);
+    return getDictionary().get(schema.columnNames[colId])[id];
   }
 
   /**
@@ -740,10 +801,10 @@ public class DataTable {
   public String[] getStringArray(int rowId, int colId) {
     final int size = positionCursorInVariableBuffer(rowId, colId);
     String[] ret = new String[size];
-    final Map<Integer, String> map = dictionary.get(schema.columnNames[colId]);
+    final String[] values = getDictionary().get(schema.columnNames[colId]);
 
     for (int i = 0; i < size; i++) {
-      ret[i] = map.get(variableSizeData.getInt());
+      ret[i] = values[variableSizeData.getInt()];
     }
     return ret;
   }
@@ -774,7 +835,7 @@ public class DataTable {
     final int length = positionCursorInVariableBuffer(rowId, colId);
 
     DataTableSerDe.DataType dataType = DataTableSerDe.DataType.Object;
-    if (version == Version.V2) {
+    if (version != Version.V1) {
       dataType = DataTableSerDe.DataType.valueOf(variableSizeData.getInt());
     }
 
@@ -788,6 +849,16 @@ public class DataTable {
    * @return
    */
   public Map<String, String> getMetadata() {
+    Map<String, String> metadata = this.metadata;
+    if (metadata == null && metadataBuffer != null) {
+      synchronized (this) {
+        metadata = this.metadata;
+        if (metadata == null) {
+          metadata = deserializeMetadata(metadataBuffer);
+          this.metadata = metadata;
+        }
+      }
+    }
     return metadata;
   }
 
@@ -798,7 +869,7 @@ public class DataTable {
   @Override
   public String toString() {
     if (schema == null) {
-      return metadata.toString();
+      return getMetadata().toString();
     }
     final StringBuilder b = new StringBuilder();
     b.append(schema.toString());
@@ -861,7 +932,7 @@ public class DataTable {
   }
 
   public void addException(ProcessingException exception) {
-    if (metadata == null) {
+    if (getMetadata() == null) {
       metadata = new HashMap<String, String>();
     }
     metadata.put("Exception" + exception.getErrorCode(), exception.getMessage());
@@ -333,7 +333,7 @@ public class DataTableBuilder {
     currentRowData.putInt(variableSizeDataHolder.position());
 
     // For custom serialization, we need to write the object type as well.
-    if (version == DataTable.Version.V2) {
+    if (version != DataTable.Version.V1) {
       variableSizeDataHolder.add(dataTableSerDe.getObjectType(value).getValue());
     }
 
@@ -32,6 +32,7 @@ public class DataTableSerDeRegistry {
   DataTableSerDe _dataTableSerDe;
   DataTableSerDe _defaultDataTableSerDe;
   boolean _registered;
+  volatile DataTable.Version _version = DataTable.Version.V2;
 
   public static DataTableSerDeRegistry getInstance() {
     return _instance;
@@ -72,4 +73,29 @@ public class DataTableSerDeRegistry {
   public DataTableSerDe get() {
     return (_dataTableSerDe != null) ? _dataTableSerDe : _defaultDataTableSerDe;
   }
+
+  /**
+   * Sets the data table version to use for serialization when a ser/de other than {@link DataTableJavaSerDe} is
+   * registered. Data tables of all versions can always be de-serialized, so brokers should be upgraded before
+   * servers start sending a newer version.
+   *
+   * @param version Data table version to serialize with.
+   */
+  public void setVersion(DataTable.Version version) {
+    if (version == DataTable.Version.V1) {
+      throw new IllegalArgumentException("Version V1 is only used with " + DataTableJavaSerDe.class.getName());
+    }
+    LOGGER.info("Setting data table version to {}", version);
+    _version = version;
+  }
+
+  /**
+   * Returns the data table version to use for serialization when a ser/de other than {@link DataTableJavaSerDe} is
+   * registered, V2 unless set otherwise.
+   *
+   * @return Data table version to serialize with.
+   */
+  public DataTable.Version getVersion() {
+    return _version;
+  }
 }
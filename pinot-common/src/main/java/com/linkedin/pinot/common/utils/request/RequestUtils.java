@@ -17,6 +17,9 @@ package com.linkedin.pinot.common.utils.request;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
@@ -31,7 +34,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -109,13 +116,59 @@ public class RequestUtils {
     return q2;
   }
 
+  /**
+   * Returns a fingerprint of the query, that is equal for two requests which produce the same result on the same data.
+   * Fields that do not affect the result (tracing, response format, bucket hash key and the table name, which is part
+   * of the cache key anyways) are cleared, and the generated filter query ids are renumbered, before the request is
+   * serialized.
+   */
+  public static byte[] getFingerprint(BrokerRequest brokerRequest) {
+    BrokerRequest normalizedRequest = brokerRequest.deepCopy();
+    normalizedRequest.unsetQuerySource();
+    normalizedRequest.unsetBucketHashKey();
+    normalizedRequest.unsetEnableTrace();
+    normalizedRequest.unsetResponseFormat();
+    if (normalizedRequest.isSetFilterQuery() && normalizedRequest.isSetFilterSubQueryMap()) {
+      // Filter query ids are generated by the compiler, renumber them in tree order and serialize the filter
+      // sub-queries in id order
+      Map<Integer, FilterQuery> normalizedFilterQueryMap = new TreeMap<>();
+      normalizedRequest.setFilterQuery(normalizeFilterQuery(normalizedRequest.getFilterQuery(),
+          normalizedRequest.getFilterSubQueryMap().getFilterQueryMap(), normalizedFilterQueryMap));
+      normalizedRequest.getFilterSubQueryMap().setFilterQueryMap(normalizedFilterQueryMap);
+    }
+    try {
+      return new TSerializer(new TCompactProtocol.Factory()).serialize(normalizedRequest);
+    } catch (TException e) {
+      throw new RuntimeException("Caught exception while computing fingerprint of broker request", e);
+    }
+  }
+
+  private static FilterQuery normalizeFilterQuery(FilterQuery filterQuery, Map<Integer, FilterQuery> filterQueryMap,
+      Map<Integer, FilterQuery> normalizedFilterQueryMap) {
+    FilterQuery normalizedFilterQuery = filterQuery.deepCopy();
+    normalizedFilterQuery.setId(normalizedFilterQueryMap.size());
+    normalizedFilterQueryMap.put(normalizedFilterQuery.getId(), normalizedFilterQuery);
+    List<Integer> nestedFilterQueryIds = filterQuery.getNestedFilterQueryIds();
+    if (nestedFilterQueryIds != null) {
+      List<Integer> normalizedNestedFilterQueryIds = new ArrayList<>(nestedFilterQueryIds.size());
+      for (Integer nestedFilterQueryId : nestedFilterQueryIds) {
+        FilterQuery nestedFilterQuery = filterQueryMap.get(nestedFilterQueryId);
+        normalizedNestedFilterQueryIds.add(
+            normalizeFilterQuery(nestedFilterQuery, filterQueryMap, normalizedFilterQueryMap).getId());
+      }
+      normalizedFilterQuery.setNestedFilterQueryIds(normalizedNestedFilterQueryIds);
+    }
+    return normalizedFilterQuery;
+  }
+
   public static final Set<String> ALLOWED_AGGREGATION_FUNCTIONS = ImmutableSet.of("sum", "fasthll");
 
   /**
    * Returns true for the following, false otherwise:
    * - Query is not aggregation/group-by
    * - Segment does not contain star tree
-   * - The only aggregation function in the query should be in {@link #ALLOWED_AGGREGATION_FUNCTIONS}
+   * - The only aggregation function in the query should be in {@link #ALLOWED_AGGREGATION_FUNCTIONS}, or be performed on
+   *   a derived column pre-aggregated for it in the star tree documents (see {@link #getStarTreeSketchType})
    * - All group by columns and predicate columns are materialized
    * - Predicates do not contain any metric columns
    * - Query consists only of simple predicates, conjoined by AND.
@@ -159,7 +212,8 @@ public class RequestUtils {
     // We currently support only limited aggregations
     for (AggregationInfo aggregationInfo : aggregationsInfo) {
       String aggregationFunctionName = aggregationInfo.getAggregationType().toLowerCase();
-      if (!ALLOWED_AGGREGATION_FUNCTIONS.contains(aggregationFunctionName)) {
+      if (!ALLOWED_AGGREGATION_FUNCTIONS.contains(aggregationFunctionName)
+          && !isOnStarTreeSketchColumn(aggregationFunctionName, aggregationInfo, segmentMetadata)) {
         return false;
       }
     }
@@ -243,12 +297,95 @@ public class RequestUtils {
     return true;
   }
 
+  /**
+   * Returns a copy of the broker request where the 'distinctcounthll', 'percentileest' and 'percentiletdigest'
+   * aggregations are performed on the derived columns pre-aggregated for them in the star tree documents of the
+   * segment, or the given broker request if the star tree cannot be used.
+   * The broker request is shared by all the segments of the query, so it is never modified.
+   */
+  public static BrokerRequest performStarTreeSketchRewriting(SegmentMetadata segmentMetadata,
+      BrokerRequest brokerRequest) {
+    StarTreeMetadata starTreeMetadata = segmentMetadata.getStarTreeMetadata();
+    if (!segmentMetadata.hasStarTree() || starTreeMetadata == null || !brokerRequest.isSetAggregationsInfo()) {
+      return brokerRequest;
+    }
+
+    List<AggregationInfo> aggregationsInfo = brokerRequest.getAggregationsInfo();
+    Map<Integer, String> aggregationIndexToDerivedColumnMap = new HashMap<>();
+    for (int i = 0; i < aggregationsInfo.size(); i++) {
+      AggregationInfo aggregationInfo = aggregationsInfo.get(i);
+      DerivedMetricType derivedMetricType = getStarTreeSketchType(aggregationInfo.getAggregationType());
+      if (derivedMetricType != null) {
+        String derivedColumn = extractDerivedColumn(aggregationInfo, starTreeMetadata, derivedMetricType);
+        if (derivedColumn == null) {
+          // The aggregation has to be performed on the raw documents.
+          return brokerRequest;
+        }
+        aggregationIndexToDerivedColumnMap.put(i, derivedColumn);
+      }
+    }
+    if (aggregationIndexToDerivedColumnMap.isEmpty()) {
+      return brokerRequest;
+    }
+
+    BrokerRequest rewrittenBrokerRequest = brokerRequest.deepCopy();
+    for (Map.Entry<Integer, String> entry : aggregationIndexToDerivedColumnMap.entrySet()) {
+      rewrittenBrokerRequest.getAggregationsInfo().get(entry.getKey()).getAggregationParams()
+          .put("column", entry.getValue());
+    }
+    // Aggregating the derived columns over the raw documents gives the same results, but is slower than on the raw
+    // columns, so only use them when the star tree can be used.
+    if (!isFitForStarTreeIndex(segmentMetadata, generateFilterQueryTree(rewrittenBrokerRequest),
+        rewrittenBrokerRequest)) {
+      return brokerRequest;
+    }
+    LOGGER.debug("Performed star tree sketch rewriting for segment: {}", segmentMetadata.getName());
+    return rewrittenBrokerRequest;
+  }
+
+  /**
+   * Returns the type of the derived column that is pre-aggregated in the star tree documents for the given aggregation
+   * function, or null if the aggregation function cannot be answered from a derived column.
+   */
+  @Nullable
+  public static DerivedMetricType getStarTreeSketchType(String aggregationFunctionName) {
+    String functionName = aggregationFunctionName.toLowerCase();
+    if (functionName.equals("distinctcounthll")) {
+      return DerivedMetricType.DISTINCTCOUNTHLL;
+    }
+    if (functionName.startsWith("percentileest") || functionName.startsWith("percentiletdigest")) {
+      return DerivedMetricType.TDIGEST;
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if the aggregation is performed on a derived column pre-aggregated for it, false otherwise.
+   */
+  private static boolean isOnStarTreeSketchColumn(String aggregationFunctionName, AggregationInfo aggregationInfo,
+      SegmentMetadata segmentMetadata) {
+    DerivedMetricType derivedMetricType = getStarTreeSketchType(aggregationFunctionName);
+    if (derivedMetricType == null) {
+      return false;
+    }
+    String column = aggregationInfo.getAggregationParams().get("column").trim();
+    FieldSpec fieldSpec = segmentMetadata.getSchema().getFieldSpecFor(column);
+    return fieldSpec instanceof MetricFieldSpec
+        && ((MetricFieldSpec) fieldSpec).getDerivedMetricType() == derivedMetricType;
+  }
+
   @Nullable
   private static String extractDerivedColumn(AggregationInfo aggregationInfo, StarTreeMetadata starTreeMetadata) {
+    return extractDerivedColumn(aggregationInfo, starTreeMetadata, DerivedMetricType.HLL);
+  }
+
+  @Nullable
+  private static String extractDerivedColumn(AggregationInfo aggregationInfo, StarTreeMetadata starTreeMetadata,
+      DerivedMetricType derivedMetricType) {
     String[] columns = aggregationInfo.getAggregationParams().get("column").trim().split(",");
     Preconditions.checkArgument(columns.length == 1);
     String aggrColumn = columns[0];
-    return starTreeMetadata.getDerivedHllColumnFromOrigin(aggrColumn);
+    return starTreeMetadata.getDerivedColumnFromOrigin(aggrColumn, derivedMetricType);
   }
 
 }
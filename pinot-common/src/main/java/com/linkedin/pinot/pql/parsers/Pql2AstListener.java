@@ -29,6 +29,7 @@ import com.linkedin.pinot.pql.parsers.pql2.ast.IdentifierAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.InPredicateAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.IntegerLiteralAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.IsPredicateAstNode;
+import com.linkedin.pinot.pql.parsers.pql2.ast.LikePredicateAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.LimitAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.OrderByAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.OrderByExpressionAstNode;
@@ -36,6 +37,7 @@ import com.linkedin.pinot.pql.parsers.pql2.ast.OutputColumnAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.OutputColumnListAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.PredicateListAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.PredicateParenthesisGroupAstNode;
+import com.linkedin.pinot.pql.parsers.pql2.ast.RegexpLikePredicateAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.SelectAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.StarColumnListAstNode;
 import com.linkedin.pinot.pql.parsers.pql2.ast.StarExpressionAstNode;
@@ -268,6 +270,26 @@ public class Pql2AstListener extends PQL2BaseListener {
     popNode();
   }
 
+  @Override
+  public void enterRegexpLikePredicate(@NotNull PQL2Parser.RegexpLikePredicateContext ctx) {
+    pushNode(new RegexpLikePredicateAstNode());
+  }
+
+  @Override
+  public void exitRegexpLikePredicate(@NotNull PQL2Parser.RegexpLikePredicateContext ctx) {
+    popNode();
+  }
+
+  @Override
+  public void enterLikePredicate(@NotNull PQL2Parser.LikePredicateContext ctx) {
+    pushNode(new LikePredicateAstNode());
+  }
+
+  @Override
+  public void exitLikePredicate(@NotNull PQL2Parser.LikePredicateContext ctx) {
+    popNode();
+  }
+
   @Override
   public void enterHaving(@NotNull PQL2Parser.HavingContext ctx) {
     pushNode(new HavingAstNode());
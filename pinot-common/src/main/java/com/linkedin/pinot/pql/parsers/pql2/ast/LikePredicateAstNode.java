@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers.pql2.ast;
+
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.pql.parsers.Pql2CompilationException;
+
+
+/**
+ * AST node for LIKE predicates (foo LIKE 'bar%'). The SQL pattern is translated into an anchored regular expression,
+ * so it is evaluated the same way as REGEXP_LIKE.
+ */
+public class LikePredicateAstNode extends PredicateAstNode {
+  private String _identifier;
+
+  @Override
+  public void addChild(AstNode childNode) {
+    if (childNode instanceof IdentifierAstNode) {
+      if (_identifier == null) {
+        IdentifierAstNode node = (IdentifierAstNode) childNode;
+        _identifier = node.getName();
+      } else {
+        throw new Pql2CompilationException("LIKE predicate has more than one identifier.");
+      }
+    } else {
+      super.addChild(childNode);
+    }
+  }
+
+  public String getIdentifier() {
+    return _identifier;
+  }
+
+  @Override
+  public String toString() {
+    return "LikePredicateAstNode{" + "_identifier='" + _identifier + '\'' + '}';
+  }
+
+  @Override
+  public FilterQueryTree buildFilterQueryTree() {
+    if (_identifier == null) {
+      throw new Pql2CompilationException("LIKE predicate has no identifier");
+    }
+    if (getChildren().size() != 1 || !(getChildren().get(0) instanceof StringLiteralAstNode)) {
+      throw new Pql2CompilationException("LIKE predicate was expecting a string literal pattern");
+    }
+    String likePattern = ((StringLiteralAstNode) getChildren().get(0)).getValueAsString();
+    return RegexpLikePredicateAstNode.buildRegexFilterQueryTree(_identifier, likeToRegex(likePattern));
+  }
+
+  /**
+   * Translates a SQL LIKE pattern into an anchored regular expression: % matches any sequence of characters, _
+   * matches a single character and everything else matches itself.
+   */
+  public static String likeToRegex(String likePattern) {
+    StringBuilder regex = new StringBuilder(likePattern.length() + 2);
+    regex.append('^');
+    for (int i = 0; i < likePattern.length(); i++) {
+      char c = likePattern.charAt(i);
+      if (c == '%') {
+        regex.append(".*");
+      } else if (c == '_') {
+        regex.append('.');
+      } else {
+        if (!Character.isLetterOrDigit(c)) {
+          regex.append('\\');
+        }
+        regex.append(c);
+      }
+    }
+    regex.append('$');
+    return regex.toString();
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers.pql2.ast;
+
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.pql.parsers.Pql2CompilationException;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * AST node for REGEXP_LIKE predicates (REGEXP_LIKE(foo, 'bar.*')). A value matches if the regular expression matches
+ * any part of it; use ^ and $ to anchor the expression.
+ */
+public class RegexpLikePredicateAstNode extends PredicateAstNode {
+  private String _identifier;
+
+  @Override
+  public void addChild(AstNode childNode) {
+    if (childNode instanceof IdentifierAstNode) {
+      if (_identifier == null) {
+        IdentifierAstNode node = (IdentifierAstNode) childNode;
+        _identifier = node.getName();
+      } else {
+        throw new Pql2CompilationException("REGEXP_LIKE predicate has more than one identifier.");
+      }
+    } else {
+      super.addChild(childNode);
+    }
+  }
+
+  public String getIdentifier() {
+    return _identifier;
+  }
+
+  @Override
+  public String toString() {
+    return "RegexpLikePredicateAstNode{" + "_identifier='" + _identifier + '\'' + '}';
+  }
+
+  @Override
+  public FilterQueryTree buildFilterQueryTree() {
+    if (_identifier == null) {
+      throw new Pql2CompilationException("REGEXP_LIKE predicate has no identifier");
+    }
+    if (getChildren().size() != 1 || !(getChildren().get(0) instanceof StringLiteralAstNode)) {
+      throw new Pql2CompilationException("REGEXP_LIKE predicate was expecting a string literal pattern");
+    }
+    String regex = ((StringLiteralAstNode) getChildren().get(0)).getValueAsString();
+    return buildRegexFilterQueryTree(_identifier, regex);
+  }
+
+  static FilterQueryTree buildRegexFilterQueryTree(String identifier, String regex) {
+    try {
+      Pattern.compile(regex);
+    } catch (PatternSyntaxException e) {
+      throw new Pql2CompilationException("Invalid regular expression " + regex + ": " + e.getDescription());
+    }
+    return new FilterQueryTree(identifier, Collections.singletonList(regex), FilterOperator.REGEX, null);
+  }
+}
@@ -18,6 +18,7 @@ package com.linkedin.pinot.pql.parsers;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.GroupBy;
 import com.linkedin.pinot.pql.parsers.pql2.ast.TopAstNode;
 
@@ -48,6 +49,32 @@ public class Pql2CompilerTest {
     Assert.assertEquals(brokerRequest.getFilterQuery().getValue().get(0), "Martha''s Vineyard");
   }
 
+  @Test
+  public void testRegexpLikeAndLike() {
+    Pql2Compiler compiler = new Pql2Compiler();
+
+    BrokerRequest brokerRequest = compiler.compileToBrokerRequest(
+        "select * from pages where regexp_like(url, '^https?://.*\\.com/')");
+    Assert.assertEquals(brokerRequest.getFilterQuery().getOperator(), FilterOperator.REGEX);
+    Assert.assertEquals(brokerRequest.getFilterQuery().getColumn(), "url");
+    Assert.assertEquals(brokerRequest.getFilterQuery().getValue().get(0), "^https?://.*\\.com/");
+
+    brokerRequest = compiler.compileToBrokerRequest("select * from pages where url like 'http://a_b.com/%'");
+    Assert.assertEquals(brokerRequest.getFilterQuery().getOperator(), FilterOperator.REGEX);
+    Assert.assertEquals(brokerRequest.getFilterQuery().getValue().get(0), "^http\\:\\/\\/a.b\\.com\\/.*$");
+
+    brokerRequest = compiler.compileToBrokerRequest(
+        "select count(*) from pages where country = 'us' and url LIKE 'a%' group by browser");
+    Assert.assertEquals(brokerRequest.getFilterQuery().getOperator(), FilterOperator.AND);
+
+    try {
+      compiler.compileToBrokerRequest("select * from pages where regexp_like(url, 'a[')");
+      Assert.fail("Invalid regular expression should not compile");
+    } catch (Pql2CompilationException e) {
+      // Expected
+    }
+  }
+
   @Test
   public void testTopZero() throws Exception {
     Pql2Compiler compiler  = new Pql2Compiler();
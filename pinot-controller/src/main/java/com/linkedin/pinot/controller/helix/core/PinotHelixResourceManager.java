@@ -1297,6 +1297,16 @@ public class PinotHelixResourceManager {
       // new version of the segment.
       LOGGER.warn("Unable to send segment refresh message for {} of table {}, nMsgs={}", segmentName, tableName, nMsgsSent);
     }
+
+    // Also notify the brokers serving the table, so that they drop the cached results of the table
+    Criteria brokerRecipientCriteria = new Criteria();
+    brokerRecipientCriteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+    brokerRecipientCriteria.setInstanceName("%");
+    brokerRecipientCriteria.setResource(CommonConstants.Helix.BROKER_RESOURCE_INSTANCE);
+    brokerRecipientCriteria.setPartition(tableName);
+    brokerRecipientCriteria.setSessionSpecific(true);
+    nMsgsSent = messagingService.send(brokerRecipientCriteria, refreshMessage, null, timeoutMs);
+    LOGGER.info("Sent {} msgs to brokers for refresh of segment {} of table {}", nMsgsSent, segmentName, rawTableName);
   }
 
   /**
@@ -40,6 +40,8 @@ import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
 import com.linkedin.pinot.common.config.TableNameBuilder;
 import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
 import com.linkedin.pinot.common.metadata.segment.LLCRealtimeSegmentZKMetadata;
@@ -219,6 +221,7 @@ public class PinotLLCRealtimeSegmentManager {
     List<ZNRecord> records = new ArrayList<>(nPartitions);
     final long now = System.currentTimeMillis();
     final int seqNum = 0; // Initial seq number for the segments
+    final SegmentPartitionConfig partitionConfig = getSegmentPartitionConfig(realtimeTableName, nPartitions);
 
     for (int i = 0; i < nPartitions; i++) {
       SimpleConsumerWrapper kafkaConsumer = SimpleConsumerWrapper.forPartitionConsumption(new KafkaSimpleConsumerFactoryImpl(),
@@ -242,6 +245,12 @@ public class PinotLLCRealtimeSegmentManager {
         metadata.setTableName(rawTableName);
         metadata.setSegmentName(segName);
         metadata.setStatus(CommonConstants.Segment.Realtime.Status.IN_PROGRESS);
+        if (partitionConfig != null) {
+          metadata.setPartitionColumn(partitionConfig.getColumnName());
+          metadata.setPartitionFunction(partitionConfig.getFunctionName());
+          metadata.setNumPartitions(nPartitions);
+          metadata.setPartitionIds(Collections.singleton(i));
+        }
 
         ZNRecord record = metadata.toZNRecord();
         final String znodePath = ZKMetadataProvider.constructPropertyStorePathForSegment(realtimeTableName, segName);
@@ -260,6 +269,25 @@ public class PinotLLCRealtimeSegmentManager {
   }
 
   // Update the helix idealstate when a new table is added.
+  /**
+   * Returns the partition config of the table if the kafka topic is partitioned on a column of the table, so that
+   * the segments consumed from a kafka partition can be tagged with the partition id. The partition config is only
+   * honored if its number of partitions matches the number of kafka partitions.
+   */
+  private SegmentPartitionConfig getSegmentPartitionConfig(String realtimeTableName, int nPartitions) {
+    AbstractTableConfig tableConfig = ZKMetadataProvider.getRealtimeTableConfig(_propertyStore, realtimeTableName);
+    if (tableConfig == null || tableConfig.getIndexingConfig().getSegmentPartitionConfig() == null) {
+      return null;
+    }
+    SegmentPartitionConfig partitionConfig = tableConfig.getIndexingConfig().getSegmentPartitionConfig();
+    if (partitionConfig.getNumPartitions() != nPartitions) {
+      LOGGER.warn("Ignoring partition config {} for table {}, the kafka topic has {} partitions", partitionConfig,
+          realtimeTableName, nPartitions);
+      return null;
+    }
+    return partitionConfig;
+  }
+
   protected void updateHelixIdealState(final IdealState idealState, String realtimeTableName, final Map<String, List<String>> idealStateEntries,
       boolean create, final int nReplicas) {
     if (create) {
@@ -399,6 +427,11 @@ public class PinotLLCRealtimeSegmentManager {
     newSegMetadata.setTableName(rawTableName);
     newSegMetadata.setSegmentName(newSegmentNameStr);
     newSegMetadata.setStatus(CommonConstants.Segment.Realtime.Status.IN_PROGRESS);
+    // The next segment consumes from the same kafka partition
+    newSegMetadata.setPartitionColumn(oldSegMetadata.getPartitionColumn());
+    newSegMetadata.setPartitionFunction(oldSegMetadata.getPartitionFunction());
+    newSegMetadata.setNumPartitions(oldSegMetadata.getNumPartitions());
+    newSegMetadata.setPartitionIds(oldSegMetadata.getPartitionIds());
     final ZNRecord newZnRecord = newSegMetadata.toZNRecord();
     final String newZnodePath = ZKMetadataProvider.constructPropertyStorePathForSegment(realtimeTableName, newSegmentNameStr);
 
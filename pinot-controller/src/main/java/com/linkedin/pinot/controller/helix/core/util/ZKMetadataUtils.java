@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.controller.helix.core.util;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.joda.time.Duration;
@@ -22,6 +23,8 @@ import org.joda.time.Duration;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 
 
 public class ZKMetadataUtils {
@@ -45,9 +48,36 @@ public class ZKMetadataUtils {
     offlineSegmentZKMetadata.setTotalRawDocs(segmentMetadata.getTotalRawDocs());
     offlineSegmentZKMetadata.setCreationTime(segmentMetadata.getIndexCreationTime());
     offlineSegmentZKMetadata.setCrc(Long.parseLong(segmentMetadata.getCrc()));
+    updatePartitionMetadata(offlineSegmentZKMetadata, segmentMetadata);
     return offlineSegmentZKMetadata;
   }
 
+  /**
+   * Copies the partition information of the partitioned column of the segment, if any, into the segment ZK metadata
+   * so that the broker can route queries on the partition column to the matching segments only.
+   */
+  private static void updatePartitionMetadata(OfflineSegmentZKMetadata offlineSegmentZKMetadata,
+      SegmentMetadata segmentMetadata) {
+    offlineSegmentZKMetadata.setPartitionColumn(null);
+    offlineSegmentZKMetadata.setPartitionFunction(null);
+    offlineSegmentZKMetadata.setNumPartitions(-1);
+    offlineSegmentZKMetadata.setPartitionIds(null);
+    if (!(segmentMetadata instanceof SegmentMetadataImpl)) {
+      return;
+    }
+    for (Map.Entry<String, ColumnMetadata> entry : ((SegmentMetadataImpl) segmentMetadata).getColumnMetadataMap()
+        .entrySet()) {
+      ColumnMetadata columnMetadata = entry.getValue();
+      if (columnMetadata.getPartitionFunction() != null) {
+        offlineSegmentZKMetadata.setPartitionColumn(entry.getKey());
+        offlineSegmentZKMetadata.setPartitionFunction(columnMetadata.getPartitionFunction());
+        offlineSegmentZKMetadata.setNumPartitions(columnMetadata.getNumPartitions());
+        offlineSegmentZKMetadata.setPartitionIds(columnMetadata.getPartitions());
+        return;
+      }
+    }
+  }
+
   private static TimeUnit extractTimeUnitFromDuration(Duration timeGranularity) {
     if (timeGranularity == null) {
       return null;
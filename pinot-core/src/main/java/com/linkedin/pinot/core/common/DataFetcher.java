@@ -45,6 +45,17 @@ public class DataFetcher {
     _indexSegment = indexSegment;
   }
 
+  /**
+   * Constructor for DataFetcher with a pre-resolved column to data source map. Only the columns inside the map can be
+   * fetched.
+   *
+   * @param columnToDataSourceMap column name to data source map.
+   */
+  public DataFetcher(Map<String, DataSource> columnToDataSourceMap) {
+    _indexSegment = null;
+    _columnToDataSourceMap.putAll(columnToDataSourceMap);
+  }
+
   /**
    * Given a column, fetch its data source.
    *
@@ -54,6 +65,9 @@ public class DataFetcher {
   public DataSource getDataSourceForColumn(String column) {
     DataSource dataSource = _columnToDataSourceMap.get(column);
     if (dataSource == null) {
+      if (_indexSegment == null) {
+        throw new IllegalArgumentException("Column " + column + " is not available in the data fetcher");
+      }
       dataSource = _indexSegment.getDataSource(column);
       _columnToDataSourceMap.put(column, dataSource);
     }
@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.common;
 
 import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.segment.index.readers.BitmapRangeIndexReader;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
@@ -28,4 +29,11 @@ public abstract class DataSource extends BaseOperator {
   public abstract InvertedIndexReader getInvertedIndex();
 
   public abstract Dictionary getDictionary();
+
+  /**
+   * Returns the range index of the column, or null if the column does not have one.
+   */
+  public BitmapRangeIndexReader getRangeIndex() {
+    return null;
+  }
 }
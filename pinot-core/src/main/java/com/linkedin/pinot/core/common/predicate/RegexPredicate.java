@@ -24,8 +24,15 @@ import com.linkedin.pinot.core.common.Predicate.Type;
 
 public class RegexPredicate extends Predicate {
 
+  private final String regex;
+
   public RegexPredicate(String lhs, List<String> rhs) {
     super(lhs, Type.REGEX, rhs);
+    regex = rhs.get(0);
+  }
+
+  public String getRegex() {
+    return regex;
   }
 
   @Override
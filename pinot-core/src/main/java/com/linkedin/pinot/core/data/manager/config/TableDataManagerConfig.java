@@ -115,6 +115,10 @@ public class TableDataManagerConfig {
     _tableDataManagerConfig.setProperty(TABLE_DATA_MANAGER_NAME, tableConfig.getTableName());
     _tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.getKeyOfLoadingInvertedIndex(),
         indexingConfig.getInvertedIndexColumns());
+    _tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_LOADING_RANGE_INDEX,
+        indexingConfig.getRangeIndexColumns());
+    _tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_LOADING_BLOOM_FILTER,
+        indexingConfig.getBloomFilterColumns());
     _tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_STAR_TREE_FORMAT_VERSION,
         indexingConfig.getStarTreeFormat());
     String segmentVersionKey = IndexLoadingConfigMetadata.KEY_OF_SEGMENT_FORMAT_VERSION;
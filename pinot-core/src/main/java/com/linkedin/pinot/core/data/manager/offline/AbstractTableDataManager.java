@@ -36,6 +36,7 @@ import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import javax.annotation.Nonnull;
 
 
@@ -159,6 +160,7 @@ public abstract  class AbstractTableDataManager implements TableDataManager {
       LOGGER.info("Added new segment {} for table {}", segmentName, _tableName);
     } else {
       LOGGER.info("Replaced segment {}(refCnt {}) with new segment for table {}", segmentName, refCnt, _tableName);
+      invalidateCachedSegmentResults(segmentName);
     }
     if (refCnt == 0) {  // oldSegmentManager must be non-null.
       closeSegment(oldSegmentManager);
@@ -191,11 +193,24 @@ public abstract  class AbstractTableDataManager implements TableDataManager {
     } finally {
       _rwLock.writeLock().unlock();
     }
+    if (segmentDataManager != null) {
+      invalidateCachedSegmentResults(segmentName);
+    }
     if (refCnt == 0) {  // segmentDataManager must be non-null.
       closeSegment(segmentDataManager);
     }
   }
 
+  /**
+   * Drops the cached query results of a segment that got replaced or removed.
+   */
+  protected void invalidateCachedSegmentResults(String segmentName) {
+    SegmentResultCache segmentResultCache = TableDataManagerProvider.getSegmentResultCache();
+    if (segmentResultCache != null) {
+      segmentResultCache.invalidateSegment(_tableName, segmentName);
+    }
+  }
+
   protected void closeSegment(SegmentDataManager segmentDataManager) {
     final String segmentName = segmentDataManager.getSegmentName();
     LOGGER.info("Closing segment {} for table {}", segmentName, _tableName);
@@ -21,6 +21,7 @@ import com.google.common.base.Preconditions;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.data.manager.realtime.RealtimeTableDataManager;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 
 
 /**
@@ -29,6 +30,7 @@ import com.linkedin.pinot.core.data.manager.realtime.RealtimeTableDataManager;
  */
 public class TableDataManagerProvider {
   private static ServerMetrics SERVER_METRICS;
+  private static SegmentResultCache SEGMENT_RESULT_CACHE;
 
   private static Map<String, Class<? extends TableDataManager>> keyToFunction =
       new ConcurrentHashMap<String, Class<? extends TableDataManager>>();
@@ -61,4 +63,15 @@ public class TableDataManagerProvider {
   public static void setServerMetrics(ServerMetrics serverMetrics) {
     SERVER_METRICS = serverMetrics;
   }
+
+  public static void setSegmentResultCache(SegmentResultCache segmentResultCache) {
+    SEGMENT_RESULT_CACHE = segmentResultCache;
+  }
+
+  /**
+   * Returns the cache of segment level query results, or null if the cache is disabled.
+   */
+  public static SegmentResultCache getSegmentResultCache() {
+    return SEGMENT_RESULT_CACHE;
+  }
 }
@@ -19,15 +19,22 @@ package com.linkedin.pinot.core.data.manager.realtime;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.config.IndexingConfig;
@@ -57,6 +64,7 @@ import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
 import com.linkedin.pinot.core.realtime.impl.kafka.KafkaSimpleConsumerFactoryImpl;
 import com.linkedin.pinot.core.realtime.impl.kafka.SimpleConsumerWrapper;
 import com.linkedin.pinot.server.realtime.ServerSegmentCompletionProtocolHandler;
+import kafka.message.Message;
 import kafka.message.MessageAndOffset;
 
 
@@ -123,6 +131,8 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
   private static final long TIME_THRESHOLD_FOR_LOG_MINUTES = 1;
   private static final long TIME_EXTENSION_ON_EMPTY_SEGMENT_HOURS = 1;
   private static final int MSG_COUNT_THRESHOLD_FOR_LOG = 100000;
+  // Smallest number of messages handed to a decoder thread, so that small batches are not spread over all threads
+  private static final int MIN_MESSAGES_PER_DECODE_TASK = 100;
 
   private final LLCRealtimeSegmentZKMetadata _segmentZKMetadata;
   private final AbstractTableConfig _tableConfig;
@@ -170,6 +180,23 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
 
   private long _lastLogTime = 0;
   private int _lastConsumedCount = 0;
+  private long _lastRateUpdateTime = 0;
+  private int _lastRateUpdateCount = 0;
+  private final String _partitionMetricName;
+
+  // Pipelined consumption runs on thread pools shared by all the consuming segments of the server. A segment has at
+  // most one fetch in flight, and waits for the decode tasks of a batch before indexing it, so the decode pool is
+  // sized to the number of cores rather than to the number of partitions.
+  private static final ExecutorService FETCH_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("llc-fetcher-%d").setDaemon(true).build());
+  private static final ExecutorService DECODE_EXECUTOR =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder().setNameFormat("llc-decoder-%d").setDaemon(true).build());
+
+  // Pipelined consumption, only set up when decoder threads are configured. Batches are fetched one ahead of the
+  // batch being decoded (one decoder per decode task) and indexed in order by the consuming thread.
+  private final KafkaMessageDecoder[] _messageDecoders;
+  private GenericRow[] _decodedRows = new GenericRow[0];
 
 
   // TODO each time this method is called, we print reason for stop. Good to print only once.
@@ -233,6 +260,10 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
   }
 
   protected void consumeLoop() {
+    if (_messageDecoders != null) {
+      pipelinedConsumeLoop();
+      return;
+    }
     final long _endOffset = Long.MAX_VALUE; // No upper limit on Kafka offset
     segmentLogger.info("Starting consumption loop start offset {}, finalOffset {}", _currentOffset, _finalOffset);
     while(!_receivedStop && !endCriteriaReached()) {
@@ -361,6 +392,122 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  /**
+   * Same as the sequential consume loop, except that the next batch of messages is fetched while the current one is
+   * decoded on the shared decode pool. Rows are still indexed by the consuming thread, in offset order, and the end
+   * criteria are checked before each message.
+   */
+  private void pipelinedConsumeLoop() {
+    segmentLogger.info("Starting pipelined consumption loop start offset {}, finalOffset {}", _currentOffset,
+        _finalOffset);
+    Future<List<MessageAndOffset>> nextBatch = null;
+    try {
+      while (!_receivedStop && !endCriteriaReached()) {
+        if (nextBatch == null) {
+          nextBatch = prefetchMessages(_currentOffset);
+        }
+        List<MessageAndOffset> messages = getUninterruptibly(nextBatch);
+        nextBatch = null;
+        int numMessages = messages.size();
+        if (numMessages == 0) {
+          updateCurrentDocumentCountMetrics();
+          // If there were no messages to be fetched from Kafka, wait for a little bit as to avoid hammering the
+          // Kafka broker
+          Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+          continue;
+        }
+
+        // Fetch the next batch while this one is decoded and indexed. It is discarded if we stop within this batch.
+        nextBatch = prefetchMessages(messages.get(numMessages - 1).nextOffset());
+        GenericRow[] rows = decodeMessages(messages);
+
+        int batchSize = 0;
+        for (int i = 0; i < numMessages && !_receivedStop && !endCriteriaReached(); i++) {
+          GenericRow row = rows[i];
+          rows[i] = null;
+          if (row != null) {
+            row = _fieldExtractor.transform(row);
+            if (!_realtimeSegment.index(row)) {
+              // See consumeLoop() on when this can happen
+              segmentLogger.warn("We got full during indexing");
+            }
+            batchSize++;
+          }
+          _currentOffset = messages.get(i).nextOffset();
+          _numRowsConsumed++;
+        }
+        updateCurrentDocumentCountMetrics();
+        segmentLogger.debug("Indexed {} messages current offset {}", batchSize, _currentOffset);
+      }
+    } finally {
+      if (nextBatch != null) {
+        nextBatch.cancel(false);
+      }
+    }
+  }
+
+  private Future<List<MessageAndOffset>> prefetchMessages(final long startOffset) {
+    return FETCH_EXECUTOR.submit(new Callable<List<MessageAndOffset>>() {
+      @Override
+      public List<MessageAndOffset> call() throws Exception {
+        List<MessageAndOffset> messages = new ArrayList<>();
+        for (MessageAndOffset messageAndOffset : _consumerWrapper.fetchMessages(startOffset, Long.MAX_VALUE,
+            KAFKA_MAX_FETCH_TIME_MILLIS)) {
+          messages.add(messageAndOffset);
+        }
+        return messages;
+      }
+    });
+  }
+
+  /**
+   * Decodes the messages in parallel, each decoder thread taking a contiguous range of the batch. Returns an array
+   * (reused across batches) with the decoded row for each message, or null if the message could not be decoded.
+   */
+  private GenericRow[] decodeMessages(final List<MessageAndOffset> messages) {
+    final int numMessages = messages.size();
+    if (_decodedRows.length < numMessages) {
+      _decodedRows = new GenericRow[numMessages];
+    }
+    final GenericRow[] rows = _decodedRows;
+    int numTasks = Math.min(_messageDecoders.length,
+        (numMessages + MIN_MESSAGES_PER_DECODE_TASK - 1) / MIN_MESSAGES_PER_DECODE_TASK);
+    int numMessagesPerTask = (numMessages + numTasks - 1) / numTasks;
+
+    List<Future<?>> futures = new ArrayList<>(numTasks);
+    for (int task = 0; task < numTasks; task++) {
+      final KafkaMessageDecoder decoder = _messageDecoders[task];
+      final int start = task * numMessagesPerTask;
+      final int end = Math.min(start + numMessagesPerTask, numMessages);
+      futures.add(DECODE_EXECUTOR.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = start; i < end; i++) {
+            Message message = messages.get(i).message();
+            rows[i] = decoder.decode(message.payload().array(), message.payload().arrayOffset(),
+                message.payloadSize());
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      getUninterruptibly(future);
+    }
+    return rows;
+  }
+
+  private static <T> T getUninterruptibly(Future<T> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
   private File makeSegmentDirPath() {
     return new File(_resourceDataDir, _segmentZKMetadata.getSegmentName());
   }
@@ -632,6 +779,7 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     //inverted index columns
     _invertedIndexColumns = indexingConfig.getInvertedIndexColumns();
     _tableStreamName = _tableName + "_" + kafkaStreamProviderConfig.getStreamName();
+    _partitionMetricName = _tableName + "-" + _kafkaTopic + "-" + _kafkaPartitionId;
 
 
     List<String> invertedIndexColumns = indexingConfig.getInvertedIndexColumns();
@@ -640,11 +788,27 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
     // Start new realtime segment
     _realtimeSegment = new RealtimeSegmentImpl(schema, _segmentMaxRowCount, tableConfig.getTableName(),
-        segmentZKMetadata.getSegmentName(), _kafkaTopic, _serverMetrics, invertedIndexColumns);
+        segmentZKMetadata.getSegmentName(), _kafkaTopic, _serverMetrics, invertedIndexColumns,
+        indexingConfig.isOffHeapDictionary());
     _realtimeSegment.setSegmentMetadata(segmentZKMetadata, schema);
 
     // Create message decoder
     _messageDecoder = kafkaStreamProviderConfig.getDecoder();
+    String decoderThreads = indexingConfig.getStreamConfigs()
+        .get(CommonConstants.Helix.DataSource.STREAM_PREFIX + "."
+            + CommonConstants.Helix.DataSource.Realtime.Kafka.LowLevelConsumer.DECODER_THREADS);
+    int numDecoderThreads = decoderThreads == null ? 0 : Integer.parseInt(decoderThreads);
+    if (numDecoderThreads > 0) {
+      segmentLogger.info("Using pipelined consumption with {} decoders", numDecoderThreads);
+      // Decoders are not thread-safe, each decoder thread gets its own
+      _messageDecoders = new KafkaMessageDecoder[numDecoderThreads];
+      _messageDecoders[0] = _messageDecoder;
+      for (int i = 1; i < numDecoderThreads; i++) {
+        _messageDecoders[i] = kafkaStreamProviderConfig.getDecoder();
+      }
+    } else {
+      _messageDecoders = null;
+    }
     _clientId = _kafkaPartitionId + "-" + NetUtil.getHostnameOrAddress();
 
     // Create field extractor
@@ -701,6 +865,7 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
         .get()));
     _lastUpdatedRawDocuments.set(currentRawDocs);
     final long now = now();
+    updatePartitionConsumptionMetrics(now);
     final int rowsConsumed = _numRowsConsumed - _lastConsumedCount;
     final long prevTime = _lastConsumedCount == 0 ? _consumeStartTime : _lastLogTime;
     // Log every minute or 100k events
@@ -712,6 +877,22 @@ public class LLRealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  private void updatePartitionConsumptionMetrics(long now) {
+    long highWatermark = _consumerWrapper.getHighWatermark();
+    if (highWatermark >= 0) {
+      _serverMetrics.setValueOfTableGauge(_partitionMetricName, ServerGauge.KAFKA_PARTITION_OFFSET_LAG,
+          Math.max(highWatermark - _currentOffset, 0L));
+    }
+    // Messages consumed per second, updated at most once a second
+    final long prevTime = _lastRateUpdateTime == 0 ? _consumeStartTime : _lastRateUpdateTime;
+    if (now - prevTime >= TimeUnit.SECONDS.toMillis(1)) {
+      _serverMetrics.setValueOfTableGauge(_partitionMetricName, ServerGauge.KAFKA_PARTITION_CONSUMPTION_RATE,
+          (_numRowsConsumed - _lastRateUpdateCount) * 1000L / (now - prevTime));
+      _lastRateUpdateCount = _numRowsConsumed;
+      _lastRateUpdateTime = now;
+    }
+  }
+
   @Override
   public IndexSegment getSegment() {
     return _realtimeSegment;
@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.indexsegment.generator;
 
 import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.FieldSpec.FieldType;
 import com.linkedin.pinot.common.data.Schema;
@@ -27,6 +28,7 @@ import com.linkedin.pinot.core.data.readers.RecordReaderConfig;
 import com.linkedin.pinot.core.indexsegment.utils.AvroUtils;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.startree.hll.HllConfig;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -52,6 +54,8 @@ public class SegmentGeneratorConfig {
 
   private Map<String, String> _customProperties = new HashMap<>();
   private List<String> _invertedIndexCreationColumns = new ArrayList<>();
+  private List<String> _rangeIndexCreationColumns = new ArrayList<>();
+  private List<String> _bloomFilterCreationColumns = new ArrayList<>();
   private String _dataDir = null;
   private String _inputFilePath = null;
   private FileFormat _format = FileFormat.AVRO;
@@ -76,6 +80,8 @@ public class SegmentGeneratorConfig {
   private String _creatorVersion = null;
   private char _paddingCharacter = V1Constants.Str.DEFAULT_STRING_PAD_CHAR;
   private HllConfig _hllConfig = null;
+  private StarTreeSketchConfig _starTreeSketchConfig = null;
+  private SegmentPartitionConfig _segmentPartitionConfig = null;
 
   public SegmentGeneratorConfig() {
   }
@@ -84,6 +90,8 @@ public class SegmentGeneratorConfig {
     Preconditions.checkNotNull(config);
     _customProperties.putAll(config._customProperties);
     _invertedIndexCreationColumns.addAll(config._invertedIndexCreationColumns);
+    _rangeIndexCreationColumns.addAll(config._rangeIndexCreationColumns);
+    _bloomFilterCreationColumns.addAll(config._bloomFilterCreationColumns);
     _dataDir = config._dataDir;
     _inputFilePath = config._inputFilePath;
     _format = config._format;
@@ -108,6 +116,8 @@ public class SegmentGeneratorConfig {
     _creatorVersion = config._creatorVersion;
     _paddingCharacter = config._paddingCharacter;
     _hllConfig = config._hllConfig;
+    _starTreeSketchConfig = config._starTreeSketchConfig;
+    _segmentPartitionConfig = config._segmentPartitionConfig;
   }
 
   public SegmentGeneratorConfig(Schema schema) {
@@ -159,6 +169,36 @@ public class SegmentGeneratorConfig {
     }
   }
 
+  public List<String> getRangeIndexCreationColumns() {
+    return _rangeIndexCreationColumns;
+  }
+
+  public void setRangeIndexCreationColumns(List<String> rangeIndexCreationColumns) {
+    Preconditions.checkNotNull(rangeIndexCreationColumns);
+    _rangeIndexCreationColumns.addAll(rangeIndexCreationColumns);
+  }
+
+  public List<String> getBloomFilterCreationColumns() {
+    return _bloomFilterCreationColumns;
+  }
+
+  public void setBloomFilterCreationColumns(List<String> bloomFilterCreationColumns) {
+    Preconditions.checkNotNull(bloomFilterCreationColumns);
+    _bloomFilterCreationColumns.addAll(bloomFilterCreationColumns);
+  }
+
+  public SegmentPartitionConfig getSegmentPartitionConfig() {
+    return _segmentPartitionConfig;
+  }
+
+  /**
+   * Sets the partitioning of the input data. The ids of the partitions the values of the partition column belong to
+   * are recorded in the segment metadata, and used by the broker to route queries on the partition column.
+   */
+  public void setSegmentPartitionConfig(SegmentPartitionConfig segmentPartitionConfig) {
+    _segmentPartitionConfig = segmentPartitionConfig;
+  }
+
   public String getDataDir() {
     return _dataDir;
   }
@@ -338,6 +378,22 @@ public class SegmentGeneratorConfig {
         }
       }
     }
+    Iterator<String> iterator = _rangeIndexCreationColumns.iterator();
+    while (iterator.hasNext()) {
+      String column = iterator.next();
+      if (_schema.getFieldSpecFor(column) == null) {
+        LOGGER.warn("Cannot find column {} in schema, will not create range index.", column);
+        iterator.remove();
+      }
+    }
+    iterator = _bloomFilterCreationColumns.iterator();
+    while (iterator.hasNext()) {
+      String column = iterator.next();
+      if (_schema.getFieldSpecFor(column) == null) {
+        LOGGER.warn("Cannot find column {} in schema, will not create bloom filter.", column);
+        iterator.remove();
+      }
+    }
   }
 
   public String getReaderConfigFile() {
@@ -388,6 +444,14 @@ public class SegmentGeneratorConfig {
     _hllConfig = hllConfig;
   }
 
+  public StarTreeSketchConfig getStarTreeSketchConfig() {
+    return _starTreeSketchConfig;
+  }
+
+  public void setStarTreeSketchConfig(StarTreeSketchConfig starTreeSketchConfig) {
+    _starTreeSketchConfig = starTreeSketchConfig;
+  }
+
   @JsonIgnore
   public String getMetrics() {
     return getQualifyingDimensions(FieldType.METRIC);
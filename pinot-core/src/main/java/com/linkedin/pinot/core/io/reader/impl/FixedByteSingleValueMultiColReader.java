@@ -183,6 +183,17 @@ public class FixedByteSingleValueMultiColReader implements Closeable {
     return dst;
   }
 
+  /**
+   * Generic method to read the raw bytes into the given buffer, which should be at least as large as the column size
+   *
+   * @param row
+   * @param col
+   * @param dst
+   */
+  public void getBytes(int row, int col, byte[] dst) {
+    indexDataBuffer.copyTo(computeOffset(row, col), dst, 0, getColumnSizes()[col]);
+  }
+
   public int getNumberOfRows() {
     return rows;
   }
@@ -20,22 +20,23 @@ import com.linkedin.pinot.core.io.readerwriter.BaseSingleColumnMultiValueReaderW
 import com.linkedin.pinot.core.io.writer.impl.FixedByteSingleValueMultiColWriter;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 
 /**
  * Supports both reads and writes using the same data structure.<br>
- * Writes must be strictly sequential, while reads can be random <br>
+ * Writes must be strictly sequential and done by a single thread, while reads can be random and concurrent with the
+ * writes.<br>
  * It is very similar to the SingleColumnMultiValue format representation <br>
  * except that the variable size data buffer size is not known up front in case FixedByteSingleColumnMultiValueReaderWriter
- * This class allocates extra memory in chunks as needed.
+ * This class allocates extra memory in chunks as needed, both for the header (a fixed number of rows per chunk) and
+ * for the values, so the memory used is proportional to the number of rows and values written.
  * Data format
  * <code>
  *  HEADER SECTION
- *    bufferId startIndex EndIndex
- *    bufferId startIndex EndIndex
- *    bufferId startIndex EndIndex
+ *    bufferId startIndex length
+ *    bufferId startIndex length
+ *    bufferId startIndex length
  *  Data BUFFER SECTION 0
  *    [set of values of row 0] [set of values of row 1]
  *     .....
@@ -55,61 +56,56 @@ import java.util.List;
 public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColumnMultiValueReaderWriter {
 
   public static final int DEFAULT_MAX_NUMBER_OF_MULTIVALUES = 1000;
-  /**
-   * number of columns is 1, column size is variable but less than maxNumberOfMultiValuesPerRow
-   * @param rows
-   */
 
   private static final int SIZE_OF_INT = 4;
-  private static final int NUM_COLS_IN_HEADER = 3;
+  private static final int[] HEADER_COLUMN_SIZES = new int[]{SIZE_OF_INT, SIZE_OF_INT, SIZE_OF_INT};
+  private static final Chunk[] NO_CHUNKS = new Chunk[0];
 
   private static final int AVERAGE_NUM_VALUES_PER_ROW = 10;//used to compute the initial size
   private static final int INCREMENT_PERCENTAGE = 100;//Increments the Initial size by 100% of initial capacity every time we runs out of capacity
 
-  private PinotDataBuffer headerBuffer;
-  private List<PinotDataBuffer> dataBuffers = new ArrayList<>();
-  private FixedByteSingleValueMultiColWriter headerWriter;
-  private FixedByteSingleValueMultiColReader headerReader;
-  private List<FixedByteSingleValueMultiColWriter> dataWriters = new ArrayList<FixedByteSingleValueMultiColWriter>();
-  private List<FixedByteSingleValueMultiColReader> dataReaders = new ArrayList<FixedByteSingleValueMultiColReader>();
+  private final int[] dataColumnSizes;
+  private final int maxNumberOfMultiValuesPerRow;
+  private final int incrementalCapacity;
+  private final int numRowsPerHeaderChunk;
+  private final int headerChunkShift;
+  private final int headerChunkMask;
+
+  // Chunks are published to the readers by replacing the volatile arrays, after they are fully initialized.
+  private volatile Chunk[] headerChunks = NO_CHUNKS;
+  private volatile Chunk[] dataChunks = NO_CHUNKS;
+
+  // Writer state, only accessed by the writing thread.
   private FixedByteSingleValueMultiColWriter currentDataWriter;
   private int currentDataWriterIndex = -1;
   private int currentCapacity = 0;
-  private int headerSize;
-  private int incrementalCapacity;
-  private int columnSizeInBytes;
-  private int maxNumberOfMultiValuesPerRow;
-
-  public FixedByteSingleColumnMultiValueReaderWriter(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow)
-      throws IOException {
-    int initialCapacity = Math.max(maxNumberOfMultiValuesPerRow, rows * AVERAGE_NUM_VALUES_PER_ROW);
-    int incrementalCapacity =
-        Math.max(maxNumberOfMultiValuesPerRow, (int) (initialCapacity * 1.0f * INCREMENT_PERCENTAGE / 100));
-    init(rows, columnSizeInBytes, maxNumberOfMultiValuesPerRow, initialCapacity, incrementalCapacity);
-  }
+  private int nextStartIndex = 0;
 
-  public FixedByteSingleColumnMultiValueReaderWriter(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow,
-      int initialCapacity, int incrementalCapacity) throws IOException {
-    init(rows, columnSizeInBytes, maxNumberOfMultiValuesPerRow, initialCapacity, incrementalCapacity);
+  /**
+   * number of columns is 1, column size is variable but less than maxNumberOfMultiValuesPerRow
+   * @param numRowsPerChunk number of rows per chunk of header memory allocated
+   */
+  public FixedByteSingleColumnMultiValueReaderWriter(int numRowsPerChunk, int columnSizeInBytes,
+      int maxNumberOfMultiValuesPerRow) throws IOException {
+    this(numRowsPerChunk, columnSizeInBytes, maxNumberOfMultiValuesPerRow,
+        getInitialCapacity(numRowsPerChunk, maxNumberOfMultiValuesPerRow),
+        (int) (getInitialCapacity(numRowsPerChunk, maxNumberOfMultiValuesPerRow) * 1.0f * INCREMENT_PERCENTAGE / 100));
+  }
 
+  private static int getInitialCapacity(int numRowsPerChunk, int maxNumberOfMultiValuesPerRow) {
+    return Math.max(maxNumberOfMultiValuesPerRow, numRowsPerChunk * AVERAGE_NUM_VALUES_PER_ROW);
   }
 
-  private void init(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow, int initialCapacity,
-      int incrementalCapacity) throws IOException {
-    this.columnSizeInBytes = columnSizeInBytes;
+  public FixedByteSingleColumnMultiValueReaderWriter(int numRowsPerChunk, int columnSizeInBytes,
+      int maxNumberOfMultiValuesPerRow, int initialCapacity, int incrementalCapacity) throws IOException {
+    this.dataColumnSizes = new int[]{columnSizeInBytes};
     this.maxNumberOfMultiValuesPerRow = maxNumberOfMultiValuesPerRow;
-    headerSize = rows * SIZE_OF_INT * NUM_COLS_IN_HEADER;
-    headerBuffer = PinotDataBuffer.allocateDirect(headerSize);
-//    headerBuffer.order(ByteOrder.nativeOrder());
+    this.incrementalCapacity = Math.max(incrementalCapacity, maxNumberOfMultiValuesPerRow);
+    this.headerChunkShift = 32 - Integer.numberOfLeadingZeros(Math.max(numRowsPerChunk, 1) - 1);
+    this.numRowsPerHeaderChunk = 1 << headerChunkShift;
+    this.headerChunkMask = numRowsPerHeaderChunk - 1;
     //dataBufferId, startIndex, length
-    headerWriter =
-        new FixedByteSingleValueMultiColWriter(headerBuffer, rows, 3,
-            new int[] { SIZE_OF_INT, SIZE_OF_INT, SIZE_OF_INT });
-    headerReader =
-        new FixedByteSingleValueMultiColReader(headerBuffer, rows, 3,
-            new int[] { SIZE_OF_INT, SIZE_OF_INT, SIZE_OF_INT });
-    //at least create space for million entries, which for INT translates into 4mb buffer
-    this.incrementalCapacity = incrementalCapacity;
+    headerChunks = new Chunk[]{new Chunk(numRowsPerHeaderChunk, HEADER_COLUMN_SIZES)};
     addCapacity(initialCapacity);
   }
 
@@ -119,55 +115,61 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
    * @throws RuntimeException
    */
   private void addCapacity(int rowCapacity) throws RuntimeException {
-    PinotDataBuffer dataBuffer;
     try {
-      dataBuffer = PinotDataBuffer.allocateDirect(rowCapacity * columnSizeInBytes);
-      //dataBuffer.order(ByteOrder.nativeOrder());
-      dataBuffers.add(dataBuffer);
-      currentDataWriter =
-          new FixedByteSingleValueMultiColWriter(dataBuffer, rowCapacity, 1, new int[] { columnSizeInBytes });
-      dataWriters.add(currentDataWriter);
-
-      FixedByteSingleValueMultiColReader dataFileReader =
-          new FixedByteSingleValueMultiColReader(dataBuffer, rowCapacity, 1, new int[] { columnSizeInBytes });
-      dataReaders.add(dataFileReader);
+      Chunk dataChunk = new Chunk(rowCapacity, dataColumnSizes);
+      Chunk[] newDataChunks = Arrays.copyOf(dataChunks, dataChunks.length + 1);
+      newDataChunks[dataChunks.length] = dataChunk;
+      dataChunks = newDataChunks;
+      currentDataWriter = dataChunk.writer;
       //update the capacity
       currentCapacity = rowCapacity;
       currentDataWriterIndex = currentDataWriterIndex + 1;
+      nextStartIndex = 0;
     } catch (Exception e) {
       throw new RuntimeException("Error while expanding the capacity by allocating additional buffer with capacity:"
           + rowCapacity, e);
     }
   }
 
+  private FixedByteSingleValueMultiColWriter getHeaderWriter(int row) {
+    int chunkId = row >>> headerChunkShift;
+    Chunk[] chunks = headerChunks;
+    while (chunkId >= chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunks.length + 1);
+      try {
+        chunks[chunks.length - 1] = new Chunk(numRowsPerHeaderChunk, HEADER_COLUMN_SIZES);
+      } catch (IOException e) {
+        throw new RuntimeException("Error while allocating header chunk of " + numRowsPerHeaderChunk + " rows", e);
+      }
+      headerChunks = chunks;
+    }
+    return chunks[chunkId].writer;
+  }
+
   @Override
-  public void close() {
-    for (PinotDataBuffer dataBuffer : dataBuffers) {
-      dataBuffer.close();
+  public void close() throws IOException {
+    for (Chunk chunk : headerChunks) {
+      chunk.close();
     }
-    dataBuffers.clear();
-    headerBuffer.close();
-    headerBuffer = null;
+    headerChunks = NO_CHUNKS;
+    for (Chunk chunk : dataChunks) {
+      chunk.close();
+    }
+    dataChunks = NO_CHUNKS;
   }
 
   private int updateHeader(int row, int length) {
-    assert (length < maxNumberOfMultiValuesPerRow);
-    int prevRowStartIndex = 0;
-    int prevRowLength = 0;
-    if (row > 0) {
-      prevRowStartIndex = headerReader.getInt(row - 1, 1);
-      prevRowLength = headerReader.getInt(row - 1, 2);
-    }
-    int newStartIndex = prevRowStartIndex + prevRowLength;
-    if (newStartIndex + length > currentCapacity) {
+    assert (length <= maxNumberOfMultiValuesPerRow);
+    if (nextStartIndex + length > currentCapacity) {
       addCapacity(incrementalCapacity);
-      prevRowStartIndex = 0;
-      prevRowLength = 0;
-      newStartIndex = prevRowStartIndex + prevRowLength;
     }
-    headerWriter.setInt(row, 0, currentDataWriterIndex);
-    headerWriter.setInt(row, 1, newStartIndex);
-    headerWriter.setInt(row, 2, length);
+    int newStartIndex = nextStartIndex;
+    nextStartIndex += length;
+    FixedByteSingleValueMultiColWriter headerWriter = getHeaderWriter(row);
+    int headerRow = row & headerChunkMask;
+    headerWriter.setInt(headerRow, 0, currentDataWriterIndex);
+    headerWriter.setInt(headerRow, 1, newStartIndex);
+    headerWriter.setInt(headerRow, 2, length);
     return newStartIndex;
   }
 
@@ -181,7 +183,6 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public void setShortArray(int row, short[] shortsArray) {
-
     int newStartIndex = updateHeader(row, shortsArray.length);
     for (int i = 0; i < shortsArray.length; i++) {
       currentDataWriter.setShort(newStartIndex + i, 0, shortsArray[i]);
@@ -238,10 +239,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getCharArray(int row, char[] charArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       charArray[i] = dataReader.getChar(startIndex + i, 0);
     }
@@ -250,10 +253,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getShortArray(int row, short[] shortsArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       shortsArray[i] = dataReader.getShort(startIndex + i, 0);
     }
@@ -262,10 +267,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getIntArray(int row, int[] intArray) {
-    int bufferIndex = headerReader.getInt(row, 0);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       intArray[i] = dataReader.getInt(startIndex + i, 0);
     }
@@ -274,10 +281,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getLongArray(int row, long[] longArray) {
-    int bufferIndex = headerReader.getInt(row, 0);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       longArray[i] = dataReader.getLong(startIndex + i, 0);
     }
@@ -286,10 +295,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getFloatArray(int row, float[] floatArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       floatArray[i] = dataReader.getFloat(startIndex + i, 0);
     }
@@ -298,10 +309,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getDoubleArray(int row, double[] doubleArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       doubleArray[i] = dataReader.getDouble(startIndex + i, 0);
     }
@@ -310,10 +323,12 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getStringArray(int row, String[] stringArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       stringArray[i] = dataReader.getString(startIndex + i, 0);
     }
@@ -322,14 +337,37 @@ public class FixedByteSingleColumnMultiValueReaderWriter extends BaseSingleColum
 
   @Override
   public int getBytesArray(int row, byte[][] bytesArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteSingleValueMultiColReader dataReader = dataReaders.get(bufferIndex);
+    FixedByteSingleValueMultiColReader headerReader = headerChunks[row >>> headerChunkShift].reader;
+    int headerRow = row & headerChunkMask;
+    int bufferIndex = headerReader.getInt(headerRow, 0);
+    int startIndex = headerReader.getInt(headerRow, 1);
+    int length = headerReader.getInt(headerRow, 2);
+    FixedByteSingleValueMultiColReader dataReader = dataChunks[bufferIndex].reader;
     for (int i = 0; i < length; i++) {
       bytesArray[i] = dataReader.getBytes(startIndex + i, 0);
     }
     return length;
   }
 
+  private static class Chunk {
+    private final PinotDataBuffer buffer;
+    private final FixedByteSingleValueMultiColReader reader;
+    private final FixedByteSingleValueMultiColWriter writer;
+
+    Chunk(int numRows, int[] columnSizes) throws IOException {
+      int rowSize = 0;
+      for (int columnSize : columnSizes) {
+        rowSize += columnSize;
+      }
+      buffer = PinotDataBuffer.allocateDirect(numRows * rowSize);
+      reader = new FixedByteSingleValueMultiColReader(buffer, numRows, columnSizes.length, columnSizes);
+      writer = new FixedByteSingleValueMultiColWriter(buffer, numRows, columnSizes.length, columnSizes);
+    }
+
+    void close() throws IOException {
+      reader.close();
+      writer.close();
+      buffer.close();
+    }
+  }
 }
@@ -20,137 +20,189 @@ import com.linkedin.pinot.core.io.readerwriter.BaseSingleColumnSingleValueReader
 import com.linkedin.pinot.core.io.writer.impl.FixedByteSingleValueMultiColWriter;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.io.IOException;
+import java.util.Arrays;
 
 
+/**
+ * Supports both reads and writes using the same data structure.<br>
+ * Writes must be done by a single thread, while reads can be random and concurrent with the writes.<br>
+ * The values are stored off-heap in chunks of a fixed number of rows (rounded up to a power of 2). Chunks are
+ * allocated as rows are written, so the memory used is proportional to the number of rows written rather than to the
+ * maximum number of rows.
+ */
 public class FixedByteSingleColumnSingleValueReaderWriter extends BaseSingleColumnSingleValueReaderWriter {
+  private static final Chunk[] NO_CHUNKS = new Chunk[0];
 
-  FixedByteSingleValueMultiColReader reader;
-  FixedByteSingleValueMultiColWriter writer;
-  private int cols;
-  private int[] colOffSets;
-  private int rowSize;
-  private PinotDataBuffer _buffer;
+  private final int[] columnSizesInBytes;
+  private final int rowSize;
+  private final int numRowsPerChunk;
+  private final int chunkShift;
+  private final int chunkMask;
+  private volatile Chunk[] chunks = NO_CHUNKS;
 
-  public FixedByteSingleColumnSingleValueReaderWriter(int rows, int columnSizesInBytes) throws IOException {
-    this(rows, new int[]{columnSizesInBytes});
+  public FixedByteSingleColumnSingleValueReaderWriter(int numRowsPerChunk, int columnSizesInBytes) throws IOException {
+    this(numRowsPerChunk, new int[]{columnSizesInBytes});
   }
+
   /**
    *
-   * @param rows
+   * @param numRowsPerChunk number of rows per chunk of memory allocated
    * @param columnSizesInBytes
    */
-  public FixedByteSingleColumnSingleValueReaderWriter(int rows, int[] columnSizesInBytes) throws IOException {
-    this.cols = 1;
-    colOffSets = new int[columnSizesInBytes.length];
-    rowSize = 0;
-    for (int i = 0; i < columnSizesInBytes.length; i++) {
-      colOffSets[i] = rowSize;
-      rowSize += columnSizesInBytes[i];
+  public FixedByteSingleColumnSingleValueReaderWriter(int numRowsPerChunk, int[] columnSizesInBytes)
+      throws IOException {
+    this.columnSizesInBytes = columnSizesInBytes;
+    int rowSize = 0;
+    for (int columnSizeInBytes : columnSizesInBytes) {
+      rowSize += columnSizeInBytes;
     }
-    final int totalSize = rowSize * rows;
-    _buffer = PinotDataBuffer.allocateDirect(totalSize);
-    //_buffer.order(ByteOrder.nativeOrder());
-    reader = new FixedByteSingleValueMultiColReader(_buffer, rows, cols, columnSizesInBytes);
-    writer = new FixedByteSingleValueMultiColWriter(_buffer, rows, cols, columnSizesInBytes);
+    this.rowSize = rowSize;
+    this.chunkShift = 32 - Integer.numberOfLeadingZeros(Math.max(numRowsPerChunk, 1) - 1);
+    this.numRowsPerChunk = 1 << chunkShift;
+    this.chunkMask = this.numRowsPerChunk - 1;
+    addChunk();
+  }
+
+  /**
+   * Allocates a new chunk, and publishes it to the readers.
+   */
+  private Chunk[] addChunk() {
+    Chunk[] newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+    try {
+      newChunks[chunks.length] = new Chunk(numRowsPerChunk, rowSize, columnSizesInBytes);
+    } catch (IOException e) {
+      throw new RuntimeException("Error while allocating chunk of " + numRowsPerChunk + " rows", e);
+    }
+    chunks = newChunks;
+    return newChunks;
+  }
+
+  private FixedByteSingleValueMultiColWriter getWriter(int row) {
+    int chunkId = row >>> chunkShift;
+    Chunk[] chunks = this.chunks;
+    while (chunkId >= chunks.length) {
+      chunks = addChunk();
+    }
+    return chunks[chunkId].writer;
+  }
+
+  private FixedByteSingleValueMultiColReader getReader(int row) {
+    return chunks[row >>> chunkShift].reader;
   }
 
   @Override
   public void close() throws IOException {
-    reader.close();
-    reader = null;
-    writer.close();
-    writer = null;
-    _buffer.close();
-    _buffer = null;
+    for (Chunk chunk : chunks) {
+      chunk.close();
+    }
+    chunks = NO_CHUNKS;
   }
 
   @Override
   public void setChar(int row, char ch) {
-    writer.setChar(row, 0, ch);
+    getWriter(row).setChar(row & chunkMask, 0, ch);
   }
 
   @Override
   public void setInt(int row, int i) {
-    writer.setInt(row, 0, i);
-
+    getWriter(row).setInt(row & chunkMask, 0, i);
   }
 
   @Override
   public void setShort(int row, short s) {
-    writer.setShort(row, 0, s);
-
+    getWriter(row).setShort(row & chunkMask, 0, s);
   }
 
   @Override
   public void setLong(int row, long l) {
-    writer.setLong(row, 0, l);
-
+    getWriter(row).setLong(row & chunkMask, 0, l);
   }
 
   @Override
   public void setFloat(int row, float f) {
-    writer.setFloat(row, 0, f);
-
+    getWriter(row).setFloat(row & chunkMask, 0, f);
   }
 
   @Override
   public void setDouble(int row, double d) {
-    writer.setDouble(row, 0, d);
-
+    getWriter(row).setDouble(row & chunkMask, 0, d);
   }
 
   @Override
   public void setString(int row, String string) throws Exception {
-    writer.setString(row, 0, string);
+    getWriter(row).setString(row & chunkMask, 0, string);
   }
 
   @Override
   public void setBytes(int row, byte[] bytes) {
-    writer.setBytes(row, 0, bytes);
+    getWriter(row).setBytes(row & chunkMask, 0, bytes);
   }
 
   @Override
   public char getChar(int row) {
-    return reader.getChar(row, 0);
+    return getReader(row).getChar(row & chunkMask, 0);
   }
 
   @Override
   public short getShort(int row) {
-    return reader.getShort(row, 0);
+    return getReader(row).getShort(row & chunkMask, 0);
   }
 
   @Override
   public int getInt(int row) {
-    return reader.getInt(row, 0);
+    return getReader(row).getInt(row & chunkMask, 0);
   }
 
   @Override
   public long getLong(int row) {
-    return reader.getLong(row, 0);
+    return getReader(row).getLong(row & chunkMask, 0);
   }
 
   @Override
   public float getFloat(int row) {
-    return reader.getFloat(row, 0);
+    return getReader(row).getFloat(row & chunkMask, 0);
   }
 
   @Override
   public double getDouble(int row) {
-    return reader.getDouble(row, 0);
+    return getReader(row).getDouble(row & chunkMask, 0);
   }
 
   @Override
   public String getString(int row) {
-    return reader.getString(row, 0);
+    return getReader(row).getString(row & chunkMask, 0);
   }
 
   @Override
   public byte[] getBytes(int row) {
-    return reader.getBytes(row, 0);
+    return getReader(row).getBytes(row & chunkMask, 0);
   }
 
   @Override
   public void readValues(int[] rows, int rowStartPos, int rowSize, int[] values, int valuesStartPos) {
-    reader.readIntValues(rows, 0, rowStartPos, rowSize, values, valuesStartPos);
+    Chunk[] chunks = this.chunks;
+    int rowEndPos = rowStartPos + rowSize;
+    for (int i = rowStartPos; i < rowEndPos; i++) {
+      int row = rows[i];
+      values[valuesStartPos++] = chunks[row >>> chunkShift].reader.getInt(row & chunkMask, 0);
+    }
+  }
+
+  private static class Chunk {
+    private final PinotDataBuffer buffer;
+    private final FixedByteSingleValueMultiColReader reader;
+    private final FixedByteSingleValueMultiColWriter writer;
+
+    Chunk(int numRows, int rowSize, int[] columnSizesInBytes) throws IOException {
+      buffer = PinotDataBuffer.allocateDirect(numRows * rowSize);
+      reader = new FixedByteSingleValueMultiColReader(buffer, numRows, 1, columnSizesInBytes);
+      writer = new FixedByteSingleValueMultiColWriter(buffer, numRows, 1, columnSizesInBytes);
+    }
+
+    void close() throws IOException {
+      reader.close();
+      writer.close();
+      buffer.close();
+    }
   }
 }
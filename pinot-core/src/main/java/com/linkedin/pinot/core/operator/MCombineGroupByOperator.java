@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.operator;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
@@ -25,6 +26,7 @@ import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.aggregation.groupby.AggregationGroupByResult;
 import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyTuple;
 import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
@@ -32,14 +34,16 @@ import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
 import com.linkedin.pinot.core.util.trace.TraceRunnable;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,26 +66,18 @@ import org.slf4j.LoggerFactory;
 public class MCombineGroupByOperator extends BaseOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(MCombineGroupByOperator.class);
 
-  // Choose a proper prime number for the number of locks.
-  // Use prime number to reduce the conflict rate of different hashcodes.
-  // Too small number of locks will cause high conflict rate.
-  // Too large number of locks will consume too much memory.
-  private static final int NUM_LOCKS = 10007;
-  private static final Object[] LOCKS = new Object[NUM_LOCKS];
-  static {
-    for (int i = 0; i < NUM_LOCKS; i++) {
-      LOCKS[i] = new Object();
-    }
-  }
+  // Maximum number of partitions the group-by results are split into to be merged concurrently.
+  private static final int MAX_NUM_PARTITIONS = Runtime.getRuntime().availableProcessors();
 
   private final List<Operator> _operators;
   private final ExecutorService _executorService;
   private final BrokerRequest _brokerRequest;
   private final long _timeOutMs;
+  private final int _trimSizeFactor;
+  private final int _minTrimSize;
 
   /**
    * Constructor for the class.
-   * - Initializes lock objects to synchronize updating aggregation group-by results.
    *
    * @param operators List of operators, whose result needs to be combined.
    * @param executorService Executor service to use for multi-threaded portions of combine.
@@ -90,12 +86,32 @@ public class MCombineGroupByOperator extends BaseOperator {
    */
   public MCombineGroupByOperator(List<Operator> operators, ExecutorService executorService, long timeOutMs,
       BrokerRequest brokerRequest) {
+    this(operators, executorService, timeOutMs, brokerRequest,
+        AggregationGroupByOperatorService.DEFAULT_TRIM_SIZE_FACTOR,
+        AggregationGroupByOperatorService.DEFAULT_MIN_TRIM_SIZE);
+  }
+
+  /**
+   * Constructor for the class, with the configuration of the trim of the combined results: the larger of
+   * trimSizeFactor times 'TOP N' or minTrimSize groups are kept for each aggregation function.
+   *
+   * @param operators List of operators, whose result needs to be combined.
+   * @param executorService Executor service to use for multi-threaded portions of combine.
+   * @param timeOutMs Timeout for combine.
+   * @param brokerRequest BrokerRequest corresponding to the query.
+   * @param trimSizeFactor Safety factor applied to 'TOP N'.
+   * @param minTrimSize Minimum number of groups kept.
+   */
+  public MCombineGroupByOperator(List<Operator> operators, ExecutorService executorService, long timeOutMs,
+      BrokerRequest brokerRequest, int trimSizeFactor, int minTrimSize) {
     Preconditions.checkArgument(brokerRequest.isSetAggregationsInfo() && brokerRequest.isSetGroupBy());
 
     _operators = operators;
     _executorService = executorService;
     _brokerRequest = brokerRequest;
     _timeOutMs = timeOutMs;
+    _trimSizeFactor = trimSizeFactor;
+    _minTrimSize = minTrimSize;
   }
 
   /**
@@ -135,22 +151,28 @@ public class MCombineGroupByOperator extends BaseOperator {
   /**
    * This method combines the result blocks from underlying operators and builds a
    * merged, sorted and trimmed result block.
-   * 1. Result blocks from underlying operators are merged concurrently into a
-   *   HashMap, with appropriate synchronizations. Result blocks themselves are stored
-   *   in the specified blocks[].
-   *   - The key in this concurrent map is the group-by key, and value is an array of
-   *     Serializables (one for each aggregation function).
-   *   - Synchronization is provided by locking the group-key that is to be modified.
+   * 1. Underlying operators are run concurrently. Each of them splits its group-by
+   *   results into partitions, based on the hash of the group key. Result blocks
+   *   themselves are stored in the specified blocks[].
+   *   - Group keys are typed tuples of the group-by values ({@link GroupKeyTuple}),
+   *     so no string key is built per segment.
    *
-   * 2. The result of the concurrent map is then translated into what is expected by
-   *    the broker (Map<String, Serializable>).
+   * 2. Partitions are then merged concurrently, one map per partition. As a group key
+   *   always falls into the same partition, the merge needs no synchronization.
+   *   - The key in each map is the group-by key, and value is an array of
+   *     Serializables (one for each aggregation function).
    *
-   * 3. This result is then sorted and then trimmed as per 'TOP N' in the brokerRequest.
+   * 3. The merged partitions are then sorted and trimmed as per 'TOP N' in the brokerRequest,
+   *    and translated into what is expected by the broker (Map<String, Serializable>). String
+   *    keys are only built for the groups that are kept. When groups are dropped, the value of
+   *    the last group kept for each aggregation function is reported to the broker, which uses
+   *    it to bound the error of the group values.
    *
    * @return IntermediateResultBlock containing the final results from combine operation.
    */
   private IntermediateResultsBlock combineBlocks()
       throws InterruptedException {
+    final long queryEndTime = System.currentTimeMillis() + _timeOutMs;
     final int numOperators = _operators.size();
     final IntermediateResultsBlock[] blocks = new IntermediateResultsBlock[numOperators];
     final CountDownLatch operatorLatch = new CountDownLatch(numOperators);
@@ -161,7 +183,11 @@ public class MCombineGroupByOperator extends BaseOperator {
     final List<AggregationFunction> aggregationFunctions =
         AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
 
-    final Map<String, Serializable[]> resultsMap = new ConcurrentHashMap<>();
+    final int numPartitions = Math.min(numOperators, MAX_NUM_PARTITIONS);
+    final GroupByPartition[][] operatorPartitions = new GroupByPartition[numOperators][];
+    // Results served from the segment result cache have string group keys, which cannot be merged with group key
+    // tuples by partition.
+    final AtomicBoolean hasStringGroupKeys = new AtomicBoolean();
 
     for (int i = 0; i < numOperators; i++) {
       final int index = i;
@@ -176,32 +202,11 @@ public class MCombineGroupByOperator extends BaseOperator {
             groupByResult = blocks[index].getAggregationGroupByResult();
 
             if (groupByResult != null) {
-              // Iterate over the group-by keys, for each key, update the group-by result in the resultsMap.
-              Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = groupByResult.getGroupKeyIterator();
-
-              while (groupKeyIterator.hasNext()) {
-                GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
-                String groupKeyString = groupKey.getStringKey();
-
-                // HashCode method might return negative value, make it non-negative
-                int lockIndex = (groupKeyString.hashCode() & Integer.MAX_VALUE) % NUM_LOCKS;
-                synchronized (LOCKS[lockIndex]) {
-                  Serializable[] results = resultsMap.get(groupKeyString);
-
-                  if (results == null) {
-                    results = new Serializable[numAggrFunctions];
-                    for (int j = 0; j < numAggrFunctions; j++) {
-                      results[j] = groupByResult.getResultForKey(groupKey, j);
-                    }
-                    resultsMap.put(groupKeyString, results);
-                  } else {
-                    for (int j = 0; j < numAggrFunctions; j++) {
-                      results[j] = aggregationFunctions.get(j)
-                          .combineTwoValues(results[j], groupByResult.getResultForKey(groupKey, j));
-                    }
-                  }
-                }
-              }
+              operatorPartitions[index] = partitionGroupByResult(groupByResult, numAggrFunctions, numPartitions);
+            } else if (blocks[index].getAggregationGroupByOperatorResult() != null) {
+              hasStringGroupKeys.set(true);
+              operatorPartitions[index] =
+                  partitionGroupByMaps(blocks[index].getAggregationGroupByOperatorResult(), numAggrFunctions);
             }
           } catch (Exception e) {
             LOGGER.error("Exception processing CombineGroupBy for index {}, operator {}",
@@ -214,20 +219,191 @@ public class MCombineGroupByOperator extends BaseOperator {
       });
     }
 
-    boolean opCompleted = operatorLatch.await(_timeOutMs, TimeUnit.SECONDS);
+    boolean opCompleted = operatorLatch.await(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     if (!opCompleted) {
       // If this happens, the broker side should already timed out, just log the error in server side.
       LOGGER.error("Timed out while combining group-by results, after {}ms.", _timeOutMs);
       return new IntermediateResultsBlock(new TimeoutException("CombineGroupBy timed out."));
     }
 
-    // Use aggregationGroupByOperatorService to trim the resultsMap
+    // Merge each partition of all operators into one map, string group keys being all merged into the same map.
+    final boolean toStringKeys = hasStringGroupKeys.get();
+    final int numMergeTasks = toStringKeys ? 1 : numPartitions;
+    final List<Map<Object, Serializable[]>> mergedPartitions = new ArrayList<>(numMergeTasks);
+    for (int i = 0; i < numMergeTasks; i++) {
+      // The number of groups in a merged partition is at least the number of groups of the largest partition merged
+      int minNumGroups = 0;
+      for (GroupByPartition[] partitions : operatorPartitions) {
+        if (partitions != null) {
+          minNumGroups = Math.max(minNumGroups, toStringKeys ? getNumGroups(partitions) : partitions[i].size());
+        }
+      }
+      mergedPartitions.add(Maps.<Object, Serializable[]>newHashMapWithExpectedSize(minNumGroups));
+    }
+    final CountDownLatch mergeLatch = new CountDownLatch(numMergeTasks);
+    final AtomicReference<Exception> mergeException = new AtomicReference<>();
+    for (int i = 0; i < numMergeTasks; i++) {
+      final int mergeIndex = i;
+
+      _executorService.execute(new TraceRunnable() {
+        @Override
+        public void runJob() {
+          try {
+            Map<Object, Serializable[]> resultsMap = mergedPartitions.get(mergeIndex);
+            for (GroupByPartition[] partitions : operatorPartitions) {
+              if (partitions == null) {
+                continue;
+              }
+              if (toStringKeys) {
+                for (GroupByPartition partition : partitions) {
+                  mergePartition(partition, resultsMap, aggregationFunctions, true);
+                }
+              } else {
+                mergePartition(partitions[mergeIndex], resultsMap, aggregationFunctions, false);
+              }
+            }
+          } catch (Exception e) {
+            LOGGER.error("Exception merging CombineGroupBy partition {}", mergeIndex, e);
+            mergeException.set(e);
+          }
+
+          mergeLatch.countDown();
+        }
+      });
+    }
+
+    // The merge only gets the time left from the query timeout.
+    boolean mergeCompleted = mergeLatch.await(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    if (!mergeCompleted) {
+      LOGGER.error("Timed out while merging group-by results, after {}ms.", _timeOutMs);
+      return new IntermediateResultsBlock(new TimeoutException("CombineGroupBy timed out."));
+    }
+    if (mergeException.get() != null) {
+      return new IntermediateResultsBlock(QueryException.COMBINE_GROUP_BY_EXCEPTION_ERROR, mergeException.get());
+    }
+
+    // Use aggregationGroupByOperatorService to trim the merged results
     AggregationGroupByOperatorService aggregationGroupByOperatorService =
-        new AggregationGroupByOperatorService(_brokerRequest.getAggregationsInfo(), _brokerRequest.getGroupBy());
+        new AggregationGroupByOperatorService(_brokerRequest.getAggregationsInfo(), _brokerRequest.getGroupBy(),
+            _trimSizeFactor, _minTrimSize);
     List<Map<String, Serializable>> trimmedResults =
-        aggregationGroupByOperatorService.trimToSize(resultsMap, numAggrFunctions);
+        aggregationGroupByOperatorService.trimToSize(mergedPartitions, numAggrFunctions);
 
-    return buildResultBlock(aggregationFunctions, trimmedResults, blocks);
+    IntermediateResultsBlock resultBlock = buildResultBlock(aggregationFunctions, trimmedResults, blocks);
+    if (aggregationGroupByOperatorService.getTrimBounds() != null) {
+      resultBlock.setGroupByTrimStats(aggregationGroupByOperatorService.getNumGroupsTrimmed(),
+          aggregationGroupByOperatorService.getTrimBounds());
+    }
+    return resultBlock;
+  }
+
+  /**
+   * Helper method to split the group-by results of a segment into partitions, based on the hash of the group key
+   * tuples.
+   *
+   * @param groupByResult Group-by results to split.
+   * @param numAggrFunctions Number of aggregation functions.
+   * @param numPartitions Number of partitions.
+   * @return Array of partitions.
+   */
+  private static GroupByPartition[] partitionGroupByResult(AggregationGroupByResult groupByResult,
+      int numAggrFunctions, int numPartitions) {
+    GroupByPartition[] partitions = new GroupByPartition[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      partitions[i] = new GroupByPartition();
+    }
+
+    Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = groupByResult.getGroupKeyIterator();
+    while (groupKeyIterator.hasNext()) {
+      GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+      GroupKeyTuple groupKeyTuple = groupKey.getKeyTuple();
+      Serializable[] results = new Serializable[numAggrFunctions];
+      for (int j = 0; j < numAggrFunctions; j++) {
+        results[j] = groupByResult.getResultForKey(groupKey, j);
+      }
+      // HashCode method might return negative value, make it non-negative
+      partitions[(groupKeyTuple.hashCode() & Integer.MAX_VALUE) % numPartitions].add(groupKeyTuple, results);
+    }
+    return partitions;
+  }
+
+  /**
+   * Helper method to convert group-by results in the form of one map (from string group key to result) per
+   * aggregation function into a single partition.
+   *
+   * @param groupByMaps Group-by results to convert.
+   * @param numAggrFunctions Number of aggregation functions.
+   * @return Array containing the single partition.
+   */
+  private static GroupByPartition[] partitionGroupByMaps(List<Map<String, Serializable>> groupByMaps,
+      int numAggrFunctions) {
+    GroupByPartition partition = new GroupByPartition();
+    if (numAggrFunctions > 0) {
+      // All the maps share the same group keys.
+      for (String groupKeyString : groupByMaps.get(0).keySet()) {
+        Serializable[] results = new Serializable[numAggrFunctions];
+        for (int j = 0; j < numAggrFunctions; j++) {
+          results[j] = groupByMaps.get(j).get(groupKeyString);
+        }
+        partition.add(groupKeyString, results);
+      }
+    }
+    return new GroupByPartition[]{partition};
+  }
+
+  /**
+   * Helper method to merge a partition into the map holding the combined results of that partition.
+   *
+   * @param partition Partition to merge.
+   * @param resultsMap Map holding the combined results.
+   * @param aggregationFunctions List of aggregation functions.
+   * @param toStringKeys Whether to convert the group keys to string group keys.
+   */
+  private static void mergePartition(GroupByPartition partition, Map<Object, Serializable[]> resultsMap,
+      List<AggregationFunction> aggregationFunctions, boolean toStringKeys) {
+    int numAggrFunctions = aggregationFunctions.size();
+    int numGroups = partition._groupKeys.size();
+    for (int i = 0; i < numGroups; i++) {
+      Object groupKey = partition._groupKeys.get(i);
+      if (toStringKeys) {
+        groupKey = groupKey.toString();
+      }
+      Serializable[] newResults = partition._results.get(i);
+      Serializable[] results = resultsMap.get(groupKey);
+
+      if (results == null) {
+        resultsMap.put(groupKey, newResults);
+      } else {
+        for (int j = 0; j < numAggrFunctions; j++) {
+          results[j] = aggregationFunctions.get(j).combineTwoValues(results[j], newResults[j]);
+        }
+      }
+    }
+  }
+
+  private static int getNumGroups(GroupByPartition[] partitions) {
+    int numGroups = 0;
+    for (GroupByPartition partition : partitions) {
+      numGroups += partition.size();
+    }
+    return numGroups;
+  }
+
+  /**
+   * Group-by results of one segment that fall into the same partition.
+   */
+  private static class GroupByPartition {
+    private final List<Object> _groupKeys = new ArrayList<>();
+    private final List<Serializable[]> _results = new ArrayList<>();
+
+    private void add(Object groupKey, Serializable[] results) {
+      _groupKeys.add(groupKey);
+      _results.add(results);
+    }
+
+    private int size() {
+      return _groupKeys.size();
+    }
   }
 
   /**
@@ -21,17 +21,25 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
 import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.DataFetcher;
 import com.linkedin.pinot.core.common.DataSource;
-import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.aggregation.SingleValueBlockCache;
 import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
+import com.linkedin.pinot.core.operator.docidsets.DocIdSetBlock;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
 
 
 /**
  * MProjectionOperator will call nextBlock then return a ProjectionBlock.
  *
- *
+ * The returned ProjectionBlock is backed by a block cache owned by this operator, so the column values for the whole
+ * doc id block can be fetched in batch into reusable primitive arrays.
  */
 public class MProjectionOperator extends BaseOperator {
 
@@ -41,11 +49,28 @@ public class MProjectionOperator extends BaseOperator {
   private final Map<String, DataSource> _columnToDataSourceMap;
   private ProjectionBlock _currentBlock = null;
   private Map<String, Block> _blockMap;
+  private final SingleValueBlockCache _blockCache;
+  private int[] _reusableDocIds;
 
   public MProjectionOperator(Map<String, DataSource> dataSourceMap, BReusableFilteredDocIdSetOperator docIdSetOperator) {
+    this(dataSourceMap, docIdSetOperator, null);
+  }
+
+  /**
+   * Constructor for the class. When the index segment is provided, the batch accessors of the returned blocks can also
+   * fetch columns outside the projected ones (e.g. derived columns introduced by query rewriting).
+   *
+   * @param dataSourceMap column name to data source map.
+   * @param docIdSetOperator doc id set operator.
+   * @param indexSegment index segment, can be null.
+   */
+  public MProjectionOperator(Map<String, DataSource> dataSourceMap, BReusableFilteredDocIdSetOperator docIdSetOperator,
+      IndexSegment indexSegment) {
     _docIdSetOperator = docIdSetOperator;
     _columnToDataSourceMap = dataSourceMap;
     _blockMap = new HashMap<>();
+    DataFetcher dataFetcher = (indexSegment == null) ? new DataFetcher(dataSourceMap) : new DataFetcher(indexSegment);
+    _blockCache = new SingleValueBlockCache(dataFetcher);
   }
 
   @Override
@@ -73,13 +98,41 @@ public class MProjectionOperator extends BaseOperator {
     for (String column : _columnToDataSourceMap.keySet()) {
       _blockMap.put(column, _columnToDataSourceMap.get(column).nextBlock(new BlockId(0)));
     }
-    _currentBlock = new ProjectionBlock(_blockMap, docIdSetBlock);
+    _currentBlock = new ProjectionBlock(_blockMap, docIdSetBlock, _blockCache);
     if (_currentBlock.getDocIdSetBlock() == null) {
       return null;
     }
+    initBlockCache(docIdSetBlock);
     return _currentBlock;
   }
 
+  /**
+   * Point the block cache to the doc ids of the given doc id set block. A {@link DocIdSetBlock} already holds an
+   * array of doc ids; for any other block the doc ids are copied into a reusable array, which holds at most
+   * {@link DocIdSetPlanNode#MAX_DOC_PER_CALL} doc ids.
+   *
+   * @param docIdSetBlock doc id set block.
+   */
+  private void initBlockCache(Block docIdSetBlock) {
+    if (docIdSetBlock instanceof DocIdSetBlock) {
+      DocIdSetBlock block = (DocIdSetBlock) docIdSetBlock;
+      _blockCache.initNewBlock(block.getDocIdSet(), 0, block.getSearchableLength());
+    } else {
+      if (_reusableDocIds == null) {
+        _reusableDocIds = new int[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+      }
+      BlockDocIdIterator iterator = docIdSetBlock.getBlockDocIdSet().iterator();
+      int docId;
+      int length = 0;
+      while ((docId = iterator.next()) != Constants.EOF) {
+        Preconditions.checkState(length < DocIdSetPlanNode.MAX_DOC_PER_CALL,
+            "Doc id set block contains more than " + DocIdSetPlanNode.MAX_DOC_PER_CALL + " documents");
+        _reusableDocIds[length++] = docId;
+      }
+      _blockCache.initNewBlock(_reusableDocIds, 0, length);
+    }
+  }
+
   @Override
   public Block getNextBlock(BlockId BlockId) {
     throw new UnsupportedOperationException("Not supported in MProjectionOperator!");
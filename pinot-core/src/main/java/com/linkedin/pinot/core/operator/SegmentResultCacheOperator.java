@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.aggregation.groupby.AggregationGroupByResult;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Operator serving the result of a segment from the {@link SegmentResultCache}.
+ *
+ * <p>On a cache hit, the result block is rebuilt from the cached {@link DataTable} and the segment is not scanned.
+ * On a miss, the result block of the underlying operator is returned as is, and its serialized form is added to the
+ * cache. Results with exceptions, group-by results with more than {@link #MAX_NUM_GROUPS_TO_CACHE} groups and
+ * aggregation results with column types that cannot be rebuilt are never cached.
+ */
+public class SegmentResultCacheOperator extends BaseOperator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCacheOperator.class);
+  private static final String OPERATOR_NAME = "SegmentResultCacheOperator";
+
+  private static final String NUM_DOCS_SCANNED = "numDocsScanned";
+  private static final String TOTAL_DOCS = "totalDocs";
+
+  // Group-by results above this size are not worth converting and serializing for the cache
+  public static final int MAX_NUM_GROUPS_TO_CACHE = 10000;
+
+  private final BrokerRequest _brokerRequest;
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _key;
+  private final byte[] _cachedResult;
+  private final Operator _operator;
+  private int _nextBlockCallCounter = 0;
+
+  /**
+   * @param brokerRequest query being executed
+   * @param segmentResultCache cache to add the result to on a miss
+   * @param key key of the segment result in the cache
+   * @param cachedResult serialized result found in the cache, or <code>null</code> on a miss
+   * @param operator operator computing the segment result, or <code>null</code> on a hit
+   */
+  public SegmentResultCacheOperator(BrokerRequest brokerRequest, SegmentResultCache segmentResultCache,
+      SegmentResultCache.Key key, @Nullable byte[] cachedResult, @Nullable Operator operator) {
+    _brokerRequest = brokerRequest;
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+    _cachedResult = cachedResult;
+    _operator = operator;
+  }
+
+  @Override
+  public boolean open() {
+    if (_operator != null) {
+      _operator.open();
+    }
+    return true;
+  }
+
+  @Override
+  public Block getNextBlock() {
+    return getNextBlock(new BlockId(_nextBlockCallCounter++));
+  }
+
+  @Override
+  public Block getNextBlock(BlockId blockId) {
+    if (blockId.getId() > 0) {
+      return null;
+    }
+    if (_cachedResult != null) {
+      long startTimeMillis = System.currentTimeMillis();
+      IntermediateResultsBlock resultBlock = toResultBlock(_brokerRequest, new DataTable(_cachedResult));
+      resultBlock.setTimeUsedMs(System.currentTimeMillis() - startTimeMillis);
+      return resultBlock;
+    }
+
+    IntermediateResultsBlock resultBlock = (IntermediateResultsBlock) _operator.nextBlock();
+    try {
+      // Serialize right away, the combine phase merges into the result blocks
+      DataTable dataTable = toDataTable(_brokerRequest, resultBlock);
+      if (dataTable != null) {
+        _segmentResultCache.put(_key, dataTable.toBytes());
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while adding segment result to the cache", e);
+    }
+    return resultBlock;
+  }
+
+  /**
+   * Returns the {@link DataTable} to cache for the given result block, or <code>null</code> if the result should not
+   * be cached.
+   */
+  @Nullable
+  static DataTable toDataTable(BrokerRequest brokerRequest, @Nullable IntermediateResultsBlock resultBlock)
+      throws Exception {
+    if (resultBlock == null || (resultBlock.getExceptions() != null && !resultBlock.getExceptions().isEmpty())) {
+      return null;
+    }
+
+    AggregationGroupByResult aggregationGroupByResult = resultBlock.getAggregationGroupByResult();
+    if (aggregationGroupByResult != null) {
+      // Convert the group-by result to the map based format that can be serialized
+      int numAggregationFunctions = brokerRequest.getAggregationsInfoSize();
+      List<Map<String, Serializable>> groupByResults = new ArrayList<>(numAggregationFunctions);
+      for (int i = 0; i < numAggregationFunctions; i++) {
+        groupByResults.add(new HashMap<String, Serializable>());
+      }
+      Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
+      int numGroups = 0;
+      while (groupKeyIterator.hasNext()) {
+        if (++numGroups > MAX_NUM_GROUPS_TO_CACHE) {
+          return null;
+        }
+        GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+        String groupKeyString = groupKey.getStringKey();
+        for (int i = 0; i < numAggregationFunctions; i++) {
+          groupByResults.get(i).put(groupKeyString, aggregationGroupByResult.getResultForKey(groupKey, i));
+        }
+      }
+      IntermediateResultsBlock groupByBlock =
+          new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+              groupByResults, true);
+      groupByBlock.setNumDocsScanned(resultBlock.getNumDocsScanned());
+      groupByBlock.setTotalRawDocs(resultBlock.getTotalRawDocs());
+      return groupByBlock.getDataTable();
+    }
+
+    if (resultBlock.getAggregationResult() == null && resultBlock.getAggregationGroupByOperatorResult() == null
+        && (resultBlock.getSelectionResult() == null || resultBlock.getSelectionDataSchema() == null)) {
+      return null;
+    }
+    DataTable dataTable = resultBlock.getDataTable();
+    if (resultBlock.getAggregationResult() != null) {
+      // Only cache aggregation results that toResultBlock() can rebuild as is
+      DataSchema dataSchema = dataTable.getDataSchema();
+      int numColumns = dataSchema.size();
+      for (int i = 0; i < numColumns; i++) {
+        if (!isSupportedAggregationColumnType(dataSchema.getColumnType(i))) {
+          return null;
+        }
+      }
+    }
+    return dataTable;
+  }
+
+  private static boolean isSupportedAggregationColumnType(FieldSpec.DataType columnType) {
+    return columnType == FieldSpec.DataType.LONG || columnType == FieldSpec.DataType.DOUBLE
+        || columnType == FieldSpec.DataType.OBJECT;
+  }
+
+  /**
+   * Rebuilds a result block, in the same shape as the one produced by the segment level operators, from a cached
+   * {@link DataTable}.
+   */
+  static IntermediateResultsBlock toResultBlock(BrokerRequest brokerRequest, DataTable dataTable) {
+    IntermediateResultsBlock resultBlock;
+    if (brokerRequest.isSetAggregationsInfo()) {
+      List<AggregationFunction> aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(brokerRequest);
+      if (brokerRequest.isSetGroupBy()) {
+        resultBlock = new IntermediateResultsBlock(aggregationFunctions,
+            AggregationGroupByOperatorService.transformDataTableToGroupByResult(dataTable), true);
+      } else {
+        DataSchema dataSchema = dataTable.getDataSchema();
+        int numColumns = dataSchema.size();
+        List<Serializable> aggregationResults = new ArrayList<>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+          switch (dataSchema.getColumnType(i)) {
+            case LONG:
+              aggregationResults.add(dataTable.getLong(0, i));
+              break;
+            case DOUBLE:
+              aggregationResults.add(dataTable.getDouble(0, i));
+              break;
+            case OBJECT:
+              aggregationResults.add(dataTable.getObject(0, i));
+              break;
+            default:
+              throw new IllegalStateException(
+                  "Unsupported column type: " + dataSchema.getColumnType(i) + " in cached aggregation result");
+          }
+        }
+        resultBlock = new IntermediateResultsBlock(aggregationFunctions, aggregationResults);
+      }
+    } else {
+      DataSchema dataSchema = dataTable.getDataSchema();
+      resultBlock = new IntermediateResultsBlock();
+      resultBlock.setSelectionDataSchema(dataSchema);
+      if (brokerRequest.getSelections().isSetSelectionSortSequence()) {
+        resultBlock.setSelectionResult(
+            new SelectionOperatorService(brokerRequest.getSelections(), dataSchema).reduceWithOrdering(dataTable));
+      } else {
+        int numRows = dataTable.getNumberOfRows();
+        List<Serializable[]> rows = new ArrayList<>(numRows);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          rows.add(SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId));
+        }
+        resultBlock.setSelectionResult(rows);
+      }
+    }
+
+    Map<String, String> metadata = dataTable.getMetadata();
+    resultBlock.setNumDocsScanned(Long.parseLong(metadata.get(NUM_DOCS_SCANNED)));
+    resultBlock.setTotalRawDocs(Long.parseLong(metadata.get(TOTAL_DOCS)));
+    return resultBlock;
+  }
+
+  @Override
+  public String getOperatorName() {
+    return OPERATOR_NAME;
+  }
+
+  @Override
+  public boolean close() {
+    if (_operator != null) {
+      _operator.close();
+    }
+    return true;
+  }
+}
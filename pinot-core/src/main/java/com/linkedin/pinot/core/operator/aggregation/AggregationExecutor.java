@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.core.operator.aggregation;
 
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +44,15 @@ public interface AggregationExecutor {
    */
   void aggregate(int[] docIdSet, int startIndex, int length);
 
+  /**
+   * Performs the actual aggregation on all docId's of the given projection block, reading the column values in batch
+   * from the block.
+   * Asserts that 'init' has been called before calling this method.
+   *
+   * @param projectionBlock projection block.
+   */
+  void aggregate(ProjectionBlock projectionBlock);
+
   /**
    * Post processing (if any) to be done after all docIdSets have been processed, and
    * before getResult can be called.
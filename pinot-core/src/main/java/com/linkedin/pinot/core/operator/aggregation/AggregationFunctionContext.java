@@ -15,9 +15,16 @@
  */
 package com.linkedin.pinot.core.operator.aggregation;
 
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 
 
 /**
@@ -38,6 +45,27 @@ public class AggregationFunctionContext {
     _aggrColumns = aggrColumns;
   }
 
+  /**
+   * Constructor for the class, which picks the dictionary based aggregation function when the aggregation can be
+   * performed on the dictionary ids of the aggregation column.
+   *
+   * @param aggFuncName
+   * @param aggrColumns
+   * @param indexSegment
+   */
+  public AggregationFunctionContext(String aggFuncName, String[] aggrColumns, IndexSegment indexSegment) {
+    Dictionary sortedDictionary = getSortedDictionary(aggFuncName, aggrColumns, indexSegment);
+    if (sortedDictionary != null) {
+      _aggregationFunction =
+          AggregationFunctionFactory.getDictionaryBasedAggregationFunction(aggFuncName, sortedDictionary,
+          indexSegment.getSegmentMetadata());
+    } else {
+      _aggregationFunction =
+          AggregationFunctionFactory.getAggregationFunction(aggFuncName, indexSegment.getSegmentMetadata());
+    }
+    _aggrColumns = aggrColumns;
+  }
+
   /**
    * Returns the aggregation function object.
    * @return
@@ -53,4 +81,43 @@ public class AggregationFunctionContext {
   public String[] getAggregationColumns() {
     return _aggrColumns;
   }
+
+  /**
+   * Helper method to get the sorted dictionary of the aggregation column if the aggregation function can be performed
+   * on its dictionary ids, null otherwise.
+   * Only single-value columns with an immutable dictionary (where dictionary id order is the same as value order) are
+   * supported.
+   *
+   * @param aggFuncName
+   * @param aggrColumns
+   * @param indexSegment
+   * @return
+   */
+  private static Dictionary getSortedDictionary(String aggFuncName, String[] aggrColumns, IndexSegment indexSegment) {
+    if (aggrColumns.length != 1) {
+      return null;
+    }
+    String column = aggrColumns[0];
+    if (!indexSegment.getSegmentMetadata().getSchema().hasColumn(column)) {
+      return null;
+    }
+    DataSource dataSource = indexSegment.getDataSource(column);
+    if (dataSource == null) {
+      return null;
+    }
+    DataSourceMetadata dataSourceMetadata = dataSource.getDataSourceMetadata();
+    FieldSpec fieldSpec = indexSegment.getSegmentMetadata().getSchema().getFieldSpecFor(column);
+    MetricFieldSpec.DerivedMetricType derivedMetricType =
+        (fieldSpec instanceof MetricFieldSpec) ? ((MetricFieldSpec) fieldSpec).getDerivedMetricType() : null;
+    if (!dataSourceMetadata.isSingleValue() || !dataSourceMetadata.hasDictionary()
+        || !AggregationFunctionFactory.isDictionaryBasedAggregationSupported(aggFuncName,
+        dataSourceMetadata.getDataType(), derivedMetricType)) {
+      return null;
+    }
+    Dictionary dictionary = dataSource.getDictionary();
+    if (dictionary instanceof ImmutableDictionaryReader) {
+      return dictionary;
+    }
+    return null;
+  }
 }
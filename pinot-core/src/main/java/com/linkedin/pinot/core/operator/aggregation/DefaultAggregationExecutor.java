@@ -24,7 +24,10 @@ import com.linkedin.pinot.core.common.DataFetcher;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedAggregationFunction;
 import com.linkedin.pinot.core.operator.aggregation.function.PercentileestAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.SketchAggregationFunction;
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
@@ -66,7 +69,7 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
       AggregationInfo aggregationInfo = aggregationInfoList.get(i);
       String[] columns = aggregationInfo.getAggregationParams().get("column").trim().split(",");
       _aggrFuncContextArray[i] = new AggregationFunctionContext(
-          aggregationInfo.getAggregationType(), columns, _segmentMetadata);
+          aggregationInfo.getAggregationType(), columns, indexSegment);
     }
     _resultHolderArray = new AggregationResultHolder[_numAggrFunc];
   }
@@ -105,7 +108,26 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
     _singleValueBlockCache.initNewBlock(docIdSet, startIndex, length);
 
     for (int i = 0; i < _numAggrFunc; i++) {
-      aggregateColumn(_aggrFuncContextArray[i], _resultHolderArray[i], length);
+      aggregateColumn(_aggrFuncContextArray[i], _resultHolderArray[i], _singleValueBlockCache, length);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * Perform aggregation on all documents of the given projection block, using the value arrays cached in the block.
+   * Asserts that 'init' has be called before calling this method.
+   *
+   * @param projectionBlock projection block.
+   */
+  @Override
+  public void aggregate(ProjectionBlock projectionBlock) {
+    Preconditions
+        .checkState(_inited, "Method 'aggregate' cannot be called before 'init' for class " + getClass().getName());
+
+    SingleValueBlockCache blockCache = projectionBlock.getBlockCache();
+    int length = projectionBlock.getNumDocs();
+    for (int i = 0; i < _numAggrFunc; i++) {
+      aggregateColumn(_aggrFuncContextArray[i], _resultHolderArray[i], blockCache, length);
     }
   }
 
@@ -114,10 +136,11 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
    *
    * @param aggrFuncContext aggregation function context.
    * @param resultHolder result holder.
+   * @param blockCache block cache to fetch the column values from.
    * @param length length of the block.
    */
   private void aggregateColumn(AggregationFunctionContext aggrFuncContext, AggregationResultHolder resultHolder,
-      int length) {
+      SingleValueBlockCache blockCache, int length) {
     AggregationFunction aggregationFunction = aggrFuncContext.getAggregationFunction();
     String[] aggrColumns = aggrFuncContext.getAggregationColumns();
     String aggrFuncName = aggregationFunction.getName();
@@ -125,6 +148,12 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
     Preconditions.checkState(aggrColumns.length == 1);
     String aggrColumn = aggrColumns[0];
 
+    // Dictionary based aggregation functions work on the dictionary ids directly.
+    if (aggregationFunction instanceof DictionaryBasedAggregationFunction) {
+      aggregationFunction.aggregate(length, resultHolder, (Object) blockCache.getDictIdArrayForColumn(aggrColumn));
+      return;
+    }
+
     switch (aggrFuncName) {
       case AggregationFunctionFactory.COUNT_AGGREGATION_FUNCTION:
         aggregationFunction.aggregate(length, resultHolder);
@@ -133,17 +162,18 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
       case AggregationFunctionFactory.DISTINCTCOUNT_AGGREGATION_FUNCTION:
       case AggregationFunctionFactory.DISTINCTCOUNTHLL_AGGREGATION_FUNCTION:
         aggregationFunction.aggregate(length, resultHolder,
-            (Object) _singleValueBlockCache.getHashCodeArrayForColumn(aggrColumn));
+            (Object) blockCache.getHashCodeArrayForColumn(aggrColumn));
         break;
 
       case AggregationFunctionFactory.FASTHLL_AGGREGATION_FUNCTION:
+      case AggregationFunctionFactory.DISTINCTCOUNTTHETA_AGGREGATION_FUNCTION:
         aggregationFunction.aggregate(length, resultHolder,
-            (Object) _singleValueBlockCache.getStringValueArrayForColumn(aggrColumn));
+            (Object) blockCache.getStringValueArrayForColumn(aggrColumn));
         break;
 
       default:
         aggregationFunction.aggregate(length, resultHolder,
-            (Object) _singleValueBlockCache.getDoubleValueArrayForColumn(aggrColumn));
+            (Object) blockCache.getDoubleValueArrayForColumn(aggrColumn));
         break;
     }
   }
@@ -175,7 +205,12 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
 
     for (int i = 0; i < _numAggrFunc; i++) {
       AggregationFunction aggregationFunction = _aggrFuncContextArray[i].getAggregationFunction();
-      Serializable result = getAggregationResult(_resultHolderArray[i], aggregationFunction.getResultDataType());
+      Serializable result;
+      if (aggregationFunction instanceof DictionaryBasedAggregationFunction) {
+        result = ((DictionaryBasedAggregationFunction) aggregationFunction).getAggregationResult(_resultHolderArray[i]);
+      } else {
+        result = getAggregationResult(_resultHolderArray[i], aggregationFunction);
+      }
       aggregationResults.add(result);
     }
 
@@ -186,11 +221,12 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
    * Helper method to get the aggregation result.
    *
    * @param resultHolder result holder.
-   * @param resultDataType result data type.
+   * @param aggregationFunction aggregation function.
    * @return aggregation result.
    */
   private Serializable getAggregationResult(AggregationResultHolder resultHolder,
-      AggregationFunction.ResultDataType resultDataType) {
+      AggregationFunction aggregationFunction) {
+    AggregationFunction.ResultDataType resultDataType = aggregationFunction.getResultDataType();
 
     switch (resultDataType) {
       case LONG:
@@ -256,6 +292,9 @@ public class DefaultAggregationExecutor implements AggregationExecutor {
           return quantileDigest;
         }
 
+      case SKETCH:
+        return ((SketchAggregationFunction) aggregationFunction).getAggregationResult(resultHolder);
+
       default:
         throw new RuntimeException(
             "Unsupported result data type " + resultDataType + " in class " + getClass().getName());
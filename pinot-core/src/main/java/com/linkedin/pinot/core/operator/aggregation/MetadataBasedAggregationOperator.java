@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation;
+
+import static com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory.COUNT_AGGREGATION_FUNCTION;
+import static com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory.DISTINCTCOUNT_AGGREGATION_FUNCTION;
+import static com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory.MAX_AGGREGATION_FUNCTION;
+import static com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory.MINMAXRANGE_AGGREGATION_FUNCTION;
+import static com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory.MIN_AGGREGATION_FUNCTION;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.utils.primitive.MutableLongValue;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Aggregation operator computing COUNT, MIN, MAX, MINMAXRANGE and DISTINCTCOUNT from the segment metadata and the
+ * sorted dictionaries of the segment, without scanning any document.
+ *
+ * <p>Only valid if all the documents of the segment match the filter, and the aggregated columns are single valued
+ * with a sorted dictionary, see {@link com.linkedin.pinot.core.plan.MetadataBasedAggregationPlanNode}. The
+ * intermediate results are the same as the ones of {@link AggregationOperator}.
+ */
+public class MetadataBasedAggregationOperator extends BaseOperator {
+  private static final String OPERATOR_NAME = "MetadataBasedAggregationOperator";
+
+  private final IndexSegment _indexSegment;
+  private final List<AggregationInfo> _aggregationInfoList;
+  private int _nextBlockCallCounter = 0;
+
+  public MetadataBasedAggregationOperator(IndexSegment indexSegment, List<AggregationInfo> aggregationsInfoList) {
+    Preconditions.checkNotNull(indexSegment);
+    Preconditions.checkArgument((aggregationsInfoList != null) && (aggregationsInfoList.size() > 0));
+
+    _indexSegment = indexSegment;
+    _aggregationInfoList = aggregationsInfoList;
+  }
+
+  @Override
+  public Block getNextBlock() {
+    return getNextBlock(new BlockId(_nextBlockCallCounter++));
+  }
+
+  @Override
+  public Block getNextBlock(BlockId blockId) {
+    if (blockId.getId() > 0) {
+      return null;
+    }
+    final long startTimeMillis = System.currentTimeMillis();
+    int totalRawDocs = _indexSegment.getSegmentMetadata().getTotalRawDocs();
+
+    List<Serializable> aggregationResults = new ArrayList<>(_aggregationInfoList.size());
+    for (AggregationInfo aggregationInfo : _aggregationInfoList) {
+      aggregationResults.add(getAggregationResult(aggregationInfo, totalRawDocs));
+    }
+    final IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(_aggregationInfoList),
+            aggregationResults);
+
+    // All the documents of the segment match the filter
+    resultBlock.setNumDocsScanned(totalRawDocs);
+    resultBlock.setTotalRawDocs(totalRawDocs);
+    resultBlock.setTimeUsedMs(System.currentTimeMillis() - startTimeMillis);
+    return resultBlock;
+  }
+
+  private Serializable getAggregationResult(AggregationInfo aggregationInfo, int totalRawDocs) {
+    String aggregationType = aggregationInfo.getAggregationType().toLowerCase();
+    if (aggregationType.equals(COUNT_AGGREGATION_FUNCTION)) {
+      return new MutableLongValue(totalRawDocs);
+    }
+
+    String column = aggregationInfo.getAggregationParams().get("column").trim();
+    Dictionary dictionary = _indexSegment.getDataSource(column).getDictionary();
+    switch (aggregationType) {
+      case MIN_AGGREGATION_FUNCTION:
+        return dictionary.getDoubleValue(0);
+      case MAX_AGGREGATION_FUNCTION:
+        return dictionary.getDoubleValue(dictionary.length() - 1);
+      case MINMAXRANGE_AGGREGATION_FUNCTION:
+        return new MinMaxRangeAggregationFunction.MinMaxRangePair(dictionary.getDoubleValue(0),
+            dictionary.getDoubleValue(dictionary.length() - 1));
+      case DISTINCTCOUNT_AGGREGATION_FUNCTION:
+        int length = dictionary.length();
+        IntOpenHashSet valueSet = new IntOpenHashSet(length);
+        for (int dictId = 0; dictId < length; dictId++) {
+          valueSet.add(dictionary.get(dictId).hashCode());
+        }
+        return valueSet;
+      default:
+        throw new UnsupportedOperationException(
+            "Unsupported aggregation function " + aggregationType + " in class " + getClass().getName());
+    }
+  }
+
+  @Override
+  public String getOperatorName() {
+    return OPERATOR_NAME;
+  }
+
+  @Override
+  public boolean open() {
+    return true;
+  }
+
+  @Override
+  public boolean close() {
+    return true;
+  }
+}
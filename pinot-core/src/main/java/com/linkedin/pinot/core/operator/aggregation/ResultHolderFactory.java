@@ -17,9 +17,11 @@ package com.linkedin.pinot.core.operator.aggregation;
 
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.operator.aggregation.function.SketchAggregationFunction;
 import com.linkedin.pinot.core.operator.aggregation.groupby.DoubleGroupByResultHolder;
 import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
 import com.linkedin.pinot.core.operator.aggregation.groupby.ObjectGroupByResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.OffHeapSketchGroupByResultHolder;
 
 
 /**
@@ -68,6 +70,11 @@ public class ResultHolderFactory {
     int capacityCap = maxNumResults > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) maxNumResults;
     int initialCapacity = Math.min(capacityCap, MAX_INITIAL_RESULT_HOLDER_CAPACITY);
 
+    // Per-group sketches are kept serialized off-heap.
+    if (function instanceof SketchAggregationFunction) {
+      return new OffHeapSketchGroupByResultHolder((SketchAggregationFunction) function, initialCapacity, capacityCap);
+    }
+
     switch (functionName.toLowerCase()) {
       case AggregationFunctionFactory.COUNT_AGGREGATION_FUNCTION:
       case AggregationFunctionFactory.MAX_AGGREGATION_FUNCTION:
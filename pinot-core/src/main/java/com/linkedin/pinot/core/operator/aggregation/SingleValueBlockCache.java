@@ -33,12 +33,14 @@ public class SingleValueBlockCache {
 
   /** _columnXXLoaded must be cleared in initNewBlock */
   private final Set<String> _columnDictIdLoaded = new HashSet<>();
+  private final Set<String> _columnLongValueLoaded = new HashSet<>();
   private final Set<String> _columnValueLoaded = new HashSet<>();
   private final Set<String> _columnHashCodeLoaded = new HashSet<>();
   private final Set<String> _columnStringLoaded = new HashSet<>();
 
   /** _columnToXXsMap must be defined accordingly */
   private final Map<String, int[]> _columnToDictIdsMap = new HashMap<>();
+  private final Map<String, long[]> _columnToLongValuesMap = new HashMap<>();
   private final Map<String, double[]> _columnToValuesMap = new HashMap<>();
   private final Map<String, double[]> _columnToHashCodesMap = new HashMap<>();
   private final Map<String, String[]> _columnToStringsMap = new HashMap<>();
@@ -66,6 +68,7 @@ public class SingleValueBlockCache {
    */
   public void initNewBlock(int[] docIds, int startPos, int length) {
     _columnDictIdLoaded.clear();
+    _columnLongValueLoaded.clear();
     _columnValueLoaded.clear();
     _columnHashCodeLoaded.clear();
     _columnStringLoaded.clear();
@@ -75,13 +78,40 @@ public class SingleValueBlockCache {
     _length = length;
   }
 
+  /**
+   * Get the doc id array for the block initialized in the initNewBlock.
+   *
+   * @return doc id array.
+   */
+  public int[] getDocIds() {
+    return _docIds;
+  }
+
+  /**
+   * Get the start position inside the doc id array for the block initialized in the initNewBlock.
+   *
+   * @return start position.
+   */
+  public int getStartPos() {
+    return _startPos;
+  }
+
+  /**
+   * Get the number of documents inside the block initialized in the initNewBlock.
+   *
+   * @return number of documents.
+   */
+  public int getLength() {
+    return _length;
+  }
+
   /**
    * Get dictionary id array for a given column for the specific block initialized in the initNewBlock.
    *
    * @param column column name.
    * @return dictionary id array associated with this column.
    */
-  private int[] getDictIdArrayForColumn(String column) {
+  public int[] getDictIdArrayForColumn(String column) {
     int[] dictIds = _columnToDictIdsMap.get(column);
     if (!_columnDictIdLoaded.contains(column)) {
       if (dictIds == null) {
@@ -94,6 +124,26 @@ public class SingleValueBlockCache {
     return dictIds;
   }
 
+  /**
+   * Get long value array for a given column for the specific block initialized in the initNewBlock.
+   *
+   * @param column column name.
+   * @return value array associated with this column.
+   */
+  public long[] getLongValueArrayForColumn(String column) {
+    long[] longValues = _columnToLongValuesMap.get(column);
+    if (!_columnLongValueLoaded.contains(column)) {
+      if (longValues == null) {
+        longValues = new long[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+        _columnToLongValuesMap.put(column, longValues);
+      }
+      int[] dictIds = getDictIdArrayForColumn(column);
+      _dataFetcher.fetchSingleLongValues(column, dictIds, 0, _length, longValues, 0);
+      _columnLongValueLoaded.add(column);
+    }
+    return longValues;
+  }
+
   /**
    * Get double value array for a given column for the specific block initialized in the initNewBlock.
    *
@@ -108,7 +158,7 @@ public class SingleValueBlockCache {
         _columnToValuesMap.put(column, doubleValues);
       }
       int[] dictIds = getDictIdArrayForColumn(column);
-      _dataFetcher.fetchSingleDoubleValues(column, dictIds, _startPos, _length, doubleValues, 0);
+      _dataFetcher.fetchSingleDoubleValues(column, dictIds, 0, _length, doubleValues, 0);
       _columnValueLoaded.add(column);
     }
     return doubleValues;
@@ -128,7 +178,7 @@ public class SingleValueBlockCache {
         _columnToHashCodesMap.put(column, hashCodes);
       }
       int[] dictIds = getDictIdArrayForColumn(column);
-      _dataFetcher.fetchSingleHashCodes(column, dictIds, _startPos, _length, hashCodes, 0);
+      _dataFetcher.fetchSingleHashCodes(column, dictIds, 0, _length, hashCodes, 0);
       _columnHashCodeLoaded.add(column);
     }
     return hashCodes;
@@ -148,7 +198,7 @@ public class SingleValueBlockCache {
         _columnToStringsMap.put(column, stringValues);
       }
       int[] dictIds = getDictIdArrayForColumn(column);
-      _dataFetcher.fetchSingleStringValues(column, dictIds, _startPos, _length, stringValues, 0);
+      _dataFetcher.fetchSingleStringValues(column, dictIds, 0, _length, stringValues, 0);
       _columnStringLoaded.add(column);
     }
     return stringValues;
@@ -34,7 +34,8 @@ public interface AggregationFunction {
     DISTINCTCOUNTHLL_HYPERLOGLOG,
     HLL_PREAGGREGATED,
     PERCENTILE_LIST,
-    PERCENTILEEST_QUANTILEDIGEST
+    PERCENTILEEST_QUANTILEDIGEST,
+    SKETCH
   }
 
   /**
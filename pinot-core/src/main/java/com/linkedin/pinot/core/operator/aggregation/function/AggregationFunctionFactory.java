@@ -15,7 +15,12 @@
  */
 package com.linkedin.pinot.core.operator.aggregation.function;
 
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import javax.annotation.Nullable;
 
 
 /**
@@ -39,6 +44,11 @@ public class AggregationFunctionFactory {
   public static final String PERCENTILEEST90_AGGREGATION_FUNCTION = "percentileest90";
   public static final String PERCENTILEEST95_AGGREGATION_FUNCTION = "percentileest95";
   public static final String PERCENTILEEST99_AGGREGATION_FUNCTION = "percentileest99";
+  public static final String PERCENTILETDIGEST50_AGGREGATION_FUNCTION = "percentiletdigest50";
+  public static final String PERCENTILETDIGEST90_AGGREGATION_FUNCTION = "percentiletdigest90";
+  public static final String PERCENTILETDIGEST95_AGGREGATION_FUNCTION = "percentiletdigest95";
+  public static final String PERCENTILETDIGEST99_AGGREGATION_FUNCTION = "percentiletdigest99";
+  public static final String DISTINCTCOUNTTHETA_AGGREGATION_FUNCTION = "distinctcounttheta";
 
   /**
    * Given the name of aggregation function, create and return a new instance
@@ -100,8 +110,126 @@ public class AggregationFunctionFactory {
       case PERCENTILEEST99_AGGREGATION_FUNCTION:
         return new PercentileestAggregationFunction(99);
 
+      case PERCENTILETDIGEST50_AGGREGATION_FUNCTION:
+        return new PercentileTDigestAggregationFunction(50);
+
+      case PERCENTILETDIGEST90_AGGREGATION_FUNCTION:
+        return new PercentileTDigestAggregationFunction(90);
+
+      case PERCENTILETDIGEST95_AGGREGATION_FUNCTION:
+        return new PercentileTDigestAggregationFunction(95);
+
+      case PERCENTILETDIGEST99_AGGREGATION_FUNCTION:
+        return new PercentileTDigestAggregationFunction(99);
+
+      case DISTINCTCOUNTTHETA_AGGREGATION_FUNCTION:
+        return new DistinctCountThetaAggregationFunction();
+
       default:
         throw new RuntimeException("Unsupported aggregation function: " + functionName);
     }
   }
+
+  /**
+   * Returns true if the given aggregation function can be performed on the dictionary ids of a column with sorted
+   * dictionary and the given data type.
+   * 'distinctcounthll', 'percentileest' and 'percentiletdigest' are only performed on the dictionary ids of the derived
+   * columns holding the sketches pre-aggregated for them.
+   *
+   * @param functionName
+   * @param dataType
+   * @param derivedMetricType derived metric type of the column, or null if the column is not derived
+   * @return
+   */
+  public static boolean isDictionaryBasedAggregationSupported(String functionName, FieldSpec.DataType dataType,
+      @Nullable DerivedMetricType derivedMetricType) {
+    switch (functionName.toLowerCase()) {
+      case MIN_AGGREGATION_FUNCTION:
+      case MAX_AGGREGATION_FUNCTION:
+      case MINMAXRANGE_AGGREGATION_FUNCTION:
+        return dataType.isNumber();
+
+      case DISTINCTCOUNT_AGGREGATION_FUNCTION:
+        return true;
+
+      case FASTHLL_AGGREGATION_FUNCTION:
+        return dataType == FieldSpec.DataType.STRING;
+
+      case DISTINCTCOUNTHLL_AGGREGATION_FUNCTION:
+        return derivedMetricType == DerivedMetricType.DISTINCTCOUNTHLL;
+
+      case PERCENTILEEST50_AGGREGATION_FUNCTION:
+      case PERCENTILEEST90_AGGREGATION_FUNCTION:
+      case PERCENTILEEST95_AGGREGATION_FUNCTION:
+      case PERCENTILEEST99_AGGREGATION_FUNCTION:
+      case PERCENTILETDIGEST50_AGGREGATION_FUNCTION:
+      case PERCENTILETDIGEST90_AGGREGATION_FUNCTION:
+      case PERCENTILETDIGEST95_AGGREGATION_FUNCTION:
+      case PERCENTILETDIGEST99_AGGREGATION_FUNCTION:
+        return derivedMetricType == DerivedMetricType.TDIGEST;
+
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Given the name of aggregation function and the sorted dictionary of the aggregation column, create and return a
+   * new instance of the corresponding dictionary based aggregation function.
+   *
+   * @param functionName
+   * @param dictionary
+   * @param segmentMetadata
+   * @return
+   */
+  public static DictionaryBasedAggregationFunction getDictionaryBasedAggregationFunction(String functionName,
+      Dictionary dictionary, SegmentMetadata segmentMetadata) {
+    switch (functionName.toLowerCase()) {
+      case MIN_AGGREGATION_FUNCTION:
+        return new DictionaryBasedMinAggregationFunction(dictionary);
+
+      case MAX_AGGREGATION_FUNCTION:
+        return new DictionaryBasedMaxAggregationFunction(dictionary);
+
+      case MINMAXRANGE_AGGREGATION_FUNCTION:
+        return new DictionaryBasedMinMaxRangeAggregationFunction(dictionary);
+
+      case DISTINCTCOUNT_AGGREGATION_FUNCTION:
+        return new DictionaryBasedDistinctCountAggregationFunction(dictionary);
+
+      case FASTHLL_AGGREGATION_FUNCTION:
+        return new DictionaryBasedFastHllAggregationFunction((StringDictionary) dictionary,
+            segmentMetadata.getHllLog2m());
+
+      case DISTINCTCOUNTHLL_AGGREGATION_FUNCTION:
+        return new DictionaryBasedDistinctCountHLLAggregationFunction((StringDictionary) dictionary);
+
+      case PERCENTILEEST50_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileestAggregationFunction((StringDictionary) dictionary, 50);
+
+      case PERCENTILEEST90_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileestAggregationFunction((StringDictionary) dictionary, 90);
+
+      case PERCENTILEEST95_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileestAggregationFunction((StringDictionary) dictionary, 95);
+
+      case PERCENTILEEST99_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileestAggregationFunction((StringDictionary) dictionary, 99);
+
+      case PERCENTILETDIGEST50_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileTDigestAggregationFunction((StringDictionary) dictionary, 50);
+
+      case PERCENTILETDIGEST90_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileTDigestAggregationFunction((StringDictionary) dictionary, 90);
+
+      case PERCENTILETDIGEST95_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileTDigestAggregationFunction((StringDictionary) dictionary, 95);
+
+      case PERCENTILETDIGEST99_AGGREGATION_FUNCTION:
+        return new DictionaryBasedPercentileTDigestAggregationFunction((StringDictionary) dictionary, 99);
+
+      default:
+        throw new RuntimeException("Unsupported dictionary based aggregation function: " + functionName);
+    }
+  }
 }
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import java.io.Serializable;
+
+
+/**
+ * Interface for aggregation functions that aggregate on dictionary ids instead of values.
+ *
+ * These functions are only used for columns with a sorted dictionary, where the dictionary id order is the same as
+ * the value order. The value arrays passed into the aggregate methods are int[] of dictionary ids, and the result
+ * holders keep dictionary ids (or sets of them). The dictionary ids are translated into the values only when the
+ * final results are fetched, so the values are never read while aggregating. The exceptions are the functions on the
+ * columns of pre-aggregated sketches ('fasthll', and 'distinctcounthll', 'percentileest' and 'percentiletdigest' on
+ * the derived sketch columns), which merge the serialized sketch of every dictionary id while aggregating, but read it
+ * from the raw dictionary bytes.
+ */
+public interface DictionaryBasedAggregationFunction extends AggregationFunction {
+
+  /**
+   * Translate the dictionary id based result kept in the aggregation result holder into the value based result, of
+   * the same type as the one returned by the value based function.
+   *
+   * @param resultHolder
+   * @return
+   */
+  Serializable getAggregationResult(AggregationResultHolder resultHolder);
+
+  /**
+   * Translate the dictionary id based result kept for the given group key into the value based result, of the same
+   * type as the one returned by the value based function.
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey);
+}
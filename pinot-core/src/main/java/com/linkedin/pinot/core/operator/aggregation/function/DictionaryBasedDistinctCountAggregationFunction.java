@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.io.Serializable;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+
+/**
+ * Class to implement the 'distinctcount' aggregation function on the dictionary ids of a column with dictionary.
+ * The result holder keeps a {@link RoaringBitmap} of the dictionary ids seen, which is translated into the
+ * {@link IntOpenHashSet} of value hash codes expected by the broker at the end. Each distinct value is thus looked up
+ * once per group instead of once per document.
+ */
+public class DictionaryBasedDistinctCountAggregationFunction extends DistinctCountAggregationFunction
+    implements DictionaryBasedAggregationFunction {
+  private final Dictionary _dictionary;
+
+  public DictionaryBasedDistinctCountAggregationFunction(Dictionary dictionary) {
+    _dictionary = dictionary;
+  }
+
+  /**
+   * Performs 'distinctcount' aggregation on the input dictionary id array.
+   *
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregate(int length, AggregationResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    RoaringBitmap dictIdBitmap = resultHolder.getResult();
+    if (dictIdBitmap == null) {
+      dictIdBitmap = new RoaringBitmap();
+      resultHolder.setValue(dictIdBitmap);
+    }
+    for (int i = 0; i < length; i++) {
+      dictIdBitmap.add(dictIds[i]);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param groupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupBySV(int length, int[] groupKeys, GroupByResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      getDictIdBitmap(groupKeys[i], resultHolder).add(dictIds[i]);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param docIdToGroupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupByMV(int length, int[][] docIdToGroupKeys, GroupByResultHolder resultHolder,
+      Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      int dictId = dictIds[i];
+      for (int groupKey : docIdToGroupKeys[i]) {
+        getDictIdBitmap(groupKey, resultHolder).add(dictId);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @return
+   */
+  @Override
+  public Serializable getAggregationResult(AggregationResultHolder resultHolder) {
+    return getValueHashCodeSet((RoaringBitmap) resultHolder.getResult());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  @Override
+  public Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey) {
+    return getValueHashCodeSet((RoaringBitmap) resultHolder.getResult(groupKey));
+  }
+
+  private static RoaringBitmap getDictIdBitmap(int groupKey, GroupByResultHolder resultHolder) {
+    RoaringBitmap dictIdBitmap = resultHolder.getResult(groupKey);
+    if (dictIdBitmap == null) {
+      dictIdBitmap = new RoaringBitmap();
+      resultHolder.setValueForKey(groupKey, dictIdBitmap);
+    }
+    return dictIdBitmap;
+  }
+
+  private IntOpenHashSet getValueHashCodeSet(RoaringBitmap dictIdBitmap) {
+    if (dictIdBitmap == null) {
+      return new IntOpenHashSet();
+    }
+    IntOpenHashSet valueSet = new IntOpenHashSet(dictIdBitmap.getCardinality());
+    IntIterator iterator = dictIdBitmap.getIntIterator();
+    while (iterator.hasNext()) {
+      valueSet.add(_dictionary.get(iterator.next()).hashCode());
+    }
+    return valueSet;
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
+
+
+/**
+ * Class to implement the 'distinctcounthll' aggregation function on the dictionary ids of a derived DISTINCTCOUNTHLL
+ * column (see {@link com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig}), e.g. from the star tree
+ * aggregated documents.
+ * The entries are hlls of the origin column values hashed the same way as {@link DistinctCountHLLAggregationFunction},
+ * so merging them the same way as 'fasthll' gives the same result as 'distinctcounthll' on the origin column.
+ */
+public class DictionaryBasedDistinctCountHLLAggregationFunction extends DictionaryBasedFastHllAggregationFunction {
+  private static final String FUNCTION_NAME = AggregationFunctionFactory.DISTINCTCOUNTHLL_AGGREGATION_FUNCTION;
+  private static final ResultDataType RESULT_DATA_TYPE = ResultDataType.DISTINCTCOUNTHLL_HYPERLOGLOG;
+
+  public DictionaryBasedDistinctCountHLLAggregationFunction(StringDictionary dictionary) {
+    super(dictionary, StarTreeSketchUtil.DISTINCTCOUNTHLL_LOG2M);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return
+   */
+  @Override
+  public String getName() {
+    return FUNCTION_NAME;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return
+   */
+  @Override
+  public ResultDataType getResultDataType() {
+    return RESULT_DATA_TYPE;
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.clearspring.analytics.stream.cardinality.RegisterSet;
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import com.linkedin.pinot.core.startree.hll.HllUtil;
+import java.io.Serializable;
+
+
+/**
+ * Class to implement the 'fasthll' aggregation function on the dictionary ids of a pre-aggregated hll column (e.g. the
+ * derived hll columns of the star-tree aggregated documents).
+ * The serialized hll entries have a fixed size in the dictionary, so the registers are decoded straight from the raw
+ * bytes of the dictionary entry into a reused register set and merged into the result, instead of decoding the entry
+ * into a string and then building a new {@link HyperLogLog} from it for every document.
+ *
+ * This class keeps the decoding buffers, so an instance must not be shared across threads.
+ */
+public class DictionaryBasedFastHllAggregationFunction extends FastHllAggregationFunction
+    implements DictionaryBasedAggregationFunction {
+  private final StringDictionary _dictionary;
+  private final byte[] _entryBytes;
+  private final int[] _registerWords;
+  private final HyperLogLog _entryHll;
+
+  public DictionaryBasedFastHllAggregationFunction(StringDictionary dictionary, int hllLog2m) {
+    super(hllLog2m);
+    _dictionary = dictionary;
+    _entryBytes = new byte[dictionary.getMaxEntryLengthInBytes()];
+    _registerWords = new int[RegisterSet.getSizeForCount(1 << hllLog2m)];
+    _entryHll = new HyperLogLog(hllLog2m, new RegisterSet(1 << hllLog2m, _registerWords));
+  }
+
+  /**
+   * Performs 'fasthll' aggregation on the input dictionary id array.
+   *
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregate(int length, AggregationResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    HyperLogLog hll = resultHolder.getResult();
+    if (hll == null) {
+      hll = new HyperLogLog(hllLog2m);
+      resultHolder.setValue(hll);
+    }
+    for (int i = 0; i < length; i++) {
+      merge(hll, dictIds[i]);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param groupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupBySV(int length, int[] groupKeys, GroupByResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      merge(getHll(groupKeys[i], resultHolder), dictIds[i]);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param docIdToGroupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupByMV(int length, int[][] docIdToGroupKeys, GroupByResultHolder resultHolder,
+      Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      decode(dictIds[i]);
+      for (int groupKey : docIdToGroupKeys[i]) {
+        mergeDecoded(getHll(groupKey, resultHolder));
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @return
+   */
+  @Override
+  public Serializable getAggregationResult(AggregationResultHolder resultHolder) {
+    HyperLogLog hll = resultHolder.getResult();
+    return (hll == null) ? new HyperLogLog(hllLog2m) : hll;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  @Override
+  public Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey) {
+    HyperLogLog hll = resultHolder.getResult(groupKey);
+    return (hll == null) ? new HyperLogLog(hllLog2m) : hll;
+  }
+
+  private HyperLogLog getHll(int groupKey, GroupByResultHolder resultHolder) {
+    HyperLogLog hll = resultHolder.getResult(groupKey);
+    if (hll == null) {
+      hll = new HyperLogLog(hllLog2m);
+      resultHolder.setValueForKey(groupKey, hll);
+    }
+    return hll;
+  }
+
+  private void merge(HyperLogLog hll, int dictId) {
+    decode(dictId);
+    mergeDecoded(hll);
+  }
+
+  /**
+   * Decode the registers of the dictionary entry into the register set of {@link #_entryHll}.
+   */
+  private void decode(int dictId) {
+    _dictionary.readPaddedBytes(dictId, _entryBytes);
+    HllUtil.decodeRegistersFromUtf8Bytes(_entryBytes, _registerWords);
+  }
+
+  private void mergeDecoded(HyperLogLog hll) {
+    try {
+      hll.addAll(_entryHll);
+    } catch (CardinalityMergeException e) {
+      Utils.rethrowException(e);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.io.Serializable;
+
+
+/**
+ * Class to implement the 'max' aggregation function on the dictionary ids of a column with sorted dictionary.
+ * The maximum dictionary id is kept in the result holder, and translated into the maximum value at the end.
+ */
+public class DictionaryBasedMaxAggregationFunction extends MaxAggregationFunction
+    implements DictionaryBasedAggregationFunction {
+  private static final double DEFAULT_DICT_ID = -1;
+
+  private final Dictionary _dictionary;
+
+  public DictionaryBasedMaxAggregationFunction(Dictionary dictionary) {
+    _dictionary = dictionary;
+  }
+
+  /**
+   * Performs 'max' aggregation on the input dictionary id array.
+   *
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregate(int length, AggregationResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    int max = -1;
+    for (int i = 0; i < length; i++) {
+      if (dictIds[i] > max) {
+        max = dictIds[i];
+      }
+    }
+    if (max > resultHolder.getDoubleResult()) {
+      resultHolder.setValue(max);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param groupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupBySV(int length, int[] groupKeys, GroupByResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      int groupKey = groupKeys[i];
+      if (dictIds[i] > resultHolder.getDoubleResult(groupKey)) {
+        resultHolder.setValueForKey(groupKey, dictIds[i]);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param docIdToGroupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupByMV(int length, int[][] docIdToGroupKeys, GroupByResultHolder resultHolder,
+      Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      int dictId = dictIds[i];
+      for (int groupKey : docIdToGroupKeys[i]) {
+        if (dictId > resultHolder.getDoubleResult(groupKey)) {
+          resultHolder.setValueForKey(groupKey, dictId);
+        }
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @return
+   */
+  @Override
+  public Serializable getAggregationResult(AggregationResultHolder resultHolder) {
+    return getValue(resultHolder.getDoubleResult());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  @Override
+  public Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey) {
+    return getValue(resultHolder.getDoubleResult(groupKey));
+  }
+
+  /**
+   * Result holders are initialized with a dictionary id smaller than any valid one.
+   *
+   * @return
+   */
+  @Override
+  public double getDefaultValue() {
+    return DEFAULT_DICT_ID;
+  }
+
+  private Double getValue(double dictId) {
+    if (dictId == DEFAULT_DICT_ID) {
+      return super.getDefaultValue();
+    }
+    return _dictionary.getDoubleValue((int) dictId);
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction.MinMaxRangePair;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.io.Serializable;
+
+
+/**
+ * Class to implement the 'minmaxrange' aggregation function on the dictionary ids of a column with sorted dictionary.
+ * The result holder keeps an int array of {min dictId, max dictId}, which is translated into a {@link MinMaxRangePair}
+ * at the end.
+ */
+public class DictionaryBasedMinMaxRangeAggregationFunction extends MinMaxRangeAggregationFunction
+    implements DictionaryBasedAggregationFunction {
+  private final Dictionary _dictionary;
+
+  public DictionaryBasedMinMaxRangeAggregationFunction(Dictionary dictionary) {
+    _dictionary = dictionary;
+  }
+
+  /**
+   * Performs 'minmaxrange' aggregation on the input dictionary id array.
+   *
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregate(int length, AggregationResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    if (length == 0) {
+      return;
+    }
+    int min = Integer.MAX_VALUE;
+    int max = -1;
+    for (int i = 0; i < length; i++) {
+      int dictId = dictIds[i];
+      if (dictId < min) {
+        min = dictId;
+      }
+      if (dictId > max) {
+        max = dictId;
+      }
+    }
+
+    int[] dictIdRange = resultHolder.getResult();
+    if (dictIdRange == null) {
+      resultHolder.setValue(new int[]{min, max});
+    } else {
+      updateDictIdRange(dictIdRange, min, max);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param groupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupBySV(int length, int[] groupKeys, GroupByResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      aggregateForGroupKey(groupKeys[i], dictIds[i], resultHolder);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param docIdToGroupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupByMV(int length, int[][] docIdToGroupKeys, GroupByResultHolder resultHolder,
+      Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      int dictId = dictIds[i];
+      for (int groupKey : docIdToGroupKeys[i]) {
+        aggregateForGroupKey(groupKey, dictId, resultHolder);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @return
+   */
+  @Override
+  public Serializable getAggregationResult(AggregationResultHolder resultHolder) {
+    return getMinMaxRangePair((int[]) resultHolder.getResult());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  @Override
+  public Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey) {
+    return getMinMaxRangePair((int[]) resultHolder.getResult(groupKey));
+  }
+
+  private static void aggregateForGroupKey(int groupKey, int dictId, GroupByResultHolder resultHolder) {
+    int[] dictIdRange = resultHolder.getResult(groupKey);
+    if (dictIdRange == null) {
+      resultHolder.setValueForKey(groupKey, new int[]{dictId, dictId});
+    } else {
+      updateDictIdRange(dictIdRange, dictId, dictId);
+    }
+  }
+
+  private static void updateDictIdRange(int[] dictIdRange, int min, int max) {
+    if (min < dictIdRange[0]) {
+      dictIdRange[0] = min;
+    }
+    if (max > dictIdRange[1]) {
+      dictIdRange[1] = max;
+    }
+  }
+
+  private MinMaxRangePair getMinMaxRangePair(int[] dictIdRange) {
+    if (dictIdRange == null) {
+      return new MinMaxRangePair(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+    }
+    return new MinMaxRangePair(_dictionary.getDoubleValue(dictIdRange[0]), _dictionary.getDoubleValue(dictIdRange[1]));
+  }
+}
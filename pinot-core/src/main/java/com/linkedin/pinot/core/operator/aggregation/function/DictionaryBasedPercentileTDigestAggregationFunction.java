@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import java.io.Serializable;
+
+
+/**
+ * Class to implement the 'percentiletdigestXX' aggregation function on the dictionary ids of a derived TDIGEST column
+ * (see {@link com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig}), e.g. from the star tree aggregated
+ * documents. The t-digest of every dictionary id is merged into the result from the raw dictionary bytes.
+ *
+ * This class keeps the decoding buffers, so an instance must not be shared across threads.
+ */
+public class DictionaryBasedPercentileTDigestAggregationFunction extends PercentileTDigestAggregationFunction
+    implements DictionaryBasedAggregationFunction {
+  private final TDigestDictionaryReader _reader;
+
+  public DictionaryBasedPercentileTDigestAggregationFunction(StringDictionary dictionary, int percentile) {
+    super(percentile);
+    _reader = new TDigestDictionaryReader(dictionary);
+  }
+
+  @Override
+  protected void updateSketch(Sketch sketch, Object valueArray, int index) {
+    sketch.merge(_reader.readBuffer(((int[]) valueArray)[index]));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  @Override
+  public Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey) {
+    return (Sketch) resultHolder.getResult(groupKey);
+  }
+}
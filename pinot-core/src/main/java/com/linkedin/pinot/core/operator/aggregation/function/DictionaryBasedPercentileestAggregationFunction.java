@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
+import java.io.Serializable;
+
+
+/**
+ * Class to implement the 'percentileestXX' aggregation function on the dictionary ids of a derived TDIGEST column
+ * (see {@link com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig}), e.g. from the star tree aggregated
+ * documents.
+ * The centroids of the t-digest of every dictionary id are added into the {@link QuantileDigest} result, so that it
+ * merges with the results of {@link PercentileestAggregationFunction} on the origin column of the other segments. The
+ * result is exact for the entries of the raw documents, and within the t-digest error for the aggregated ones.
+ *
+ * This class keeps the decoding buffers, so an instance must not be shared across threads.
+ */
+public class DictionaryBasedPercentileestAggregationFunction extends PercentileestAggregationFunction
+    implements DictionaryBasedAggregationFunction {
+  private final TDigestDictionaryReader _reader;
+
+  public DictionaryBasedPercentileestAggregationFunction(StringDictionary dictionary, int percentile) {
+    super(percentile);
+    _reader = new TDigestDictionaryReader(dictionary);
+  }
+
+  /**
+   * Performs 'percentileest' aggregation on the input dictionary id array.
+   *
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregate(int length, AggregationResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    QuantileDigest digest = resultHolder.getResult();
+    if (digest == null) {
+      digest = new QuantileDigest(DEFAULT_MAX_ERROR);
+      resultHolder.setValue(digest);
+    }
+    for (int i = 0; i < length; i++) {
+      StarTreeSketchUtil.mergeIntoQuantileDigest(_reader.readSketch(dictIds[i]), digest);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param groupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupBySV(int length, int[] groupKeys, GroupByResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      StarTreeSketchUtil.mergeIntoQuantileDigest(_reader.readSketch(dictIds[i]),
+          getQuantileDigest(groupKeys[i], resultHolder));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param docIdToGroupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupByMV(int length, int[][] docIdToGroupKeys, GroupByResultHolder resultHolder,
+      Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Preconditions.checkArgument(valueArray[0] instanceof int[]);
+    final int[] dictIds = (int[]) valueArray[0];
+    Preconditions.checkState(length <= dictIds.length);
+
+    for (int i = 0; i < length; i++) {
+      TDigestSketch sketch = _reader.readSketch(dictIds[i]);
+      for (int groupKey : docIdToGroupKeys[i]) {
+        StarTreeSketchUtil.mergeIntoQuantileDigest(sketch, getQuantileDigest(groupKey, resultHolder));
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @return
+   */
+  @Override
+  public Serializable getAggregationResult(AggregationResultHolder resultHolder) {
+    QuantileDigest digest = resultHolder.getResult();
+    return (digest == null) ? new QuantileDigest(DEFAULT_MAX_ERROR) : digest;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param resultHolder
+   * @param groupKey
+   * @return
+   */
+  @Override
+  public Serializable getGroupByResult(GroupByResultHolder resultHolder, int groupKey) {
+    return (QuantileDigest) resultHolder.getResult(groupKey);
+  }
+
+  private QuantileDigest getQuantileDigest(int groupKey, GroupByResultHolder resultHolder) {
+    QuantileDigest digest = resultHolder.getResult(groupKey);
+    if (digest == null) {
+      digest = new QuantileDigest(DEFAULT_MAX_ERROR);
+      resultHolder.setValueForKey(groupKey, digest);
+    }
+    return digest;
+  }
+}
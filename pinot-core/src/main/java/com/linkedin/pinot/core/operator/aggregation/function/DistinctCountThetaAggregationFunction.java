@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.ThetaSketch;
+
+
+/**
+ * Class to implement the 'distinctcounttheta' aggregation function, which estimates the distinct count with a theta
+ * sketch. The value array passed in is String[], so that all segments hash the same value the same way.
+ */
+public class DistinctCountThetaAggregationFunction extends SketchAggregationFunction {
+  private static final String FUNCTION_NAME = AggregationFunctionFactory.DISTINCTCOUNTTHETA_AGGREGATION_FUNCTION;
+
+  @Override
+  public Sketch createSketch() {
+    return new ThetaSketch();
+  }
+
+  @Override
+  protected void updateSketch(Sketch sketch, Object valueArray, int index) {
+    ((ThetaSketch) sketch).update(((String[]) valueArray)[index]);
+  }
+
+  @Override
+  protected double getFinalResult(Sketch sketch) {
+    return Math.round(((ThetaSketch) sketch).getEstimate());
+  }
+
+  @Override
+  public String getName() {
+    return FUNCTION_NAME;
+  }
+}
@@ -32,7 +32,7 @@ public class FastHllAggregationFunction implements AggregationFunction {
   private static final String FUNCTION_NAME = AggregationFunctionFactory.FASTHLL_AGGREGATION_FUNCTION;
   // TODO: change or not?
   private static final ResultDataType RESULT_DATA_TYPE = ResultDataType.HLL_PREAGGREGATED;
-  private final int hllLog2m;
+  protected final int hllLog2m;
 
   public FastHllAggregationFunction(int hllLog2m) {
     this.hllLog2m = hllLog2m;
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+
+
+/**
+ * Class to implement the 'percentiletdigestXX' aggregation function, which estimates the percentile with a t-digest.
+ * The value array passed in is double[].
+ */
+public class PercentileTDigestAggregationFunction extends SketchAggregationFunction {
+  private final String FUNCTION_NAME;
+  private final int _percentile;
+
+  public PercentileTDigestAggregationFunction(int percentile) {
+    switch (percentile) {
+      case 50:
+        FUNCTION_NAME = AggregationFunctionFactory.PERCENTILETDIGEST50_AGGREGATION_FUNCTION;
+        break;
+      case 90:
+        FUNCTION_NAME = AggregationFunctionFactory.PERCENTILETDIGEST90_AGGREGATION_FUNCTION;
+        break;
+      case 95:
+        FUNCTION_NAME = AggregationFunctionFactory.PERCENTILETDIGEST95_AGGREGATION_FUNCTION;
+        break;
+      case 99:
+        FUNCTION_NAME = AggregationFunctionFactory.PERCENTILETDIGEST99_AGGREGATION_FUNCTION;
+        break;
+      default:
+        throw new RuntimeException("Invalid percentile for PercentileTDigestAggregationFunction: " + percentile);
+    }
+    _percentile = percentile;
+  }
+
+  @Override
+  public Sketch createSketch() {
+    return new TDigestSketch();
+  }
+
+  @Override
+  protected void updateSketch(Sketch sketch, Object valueArray, int index) {
+    ((TDigestSketch) sketch).add(((double[]) valueArray)[index]);
+  }
+
+  @Override
+  protected double getFinalResult(Sketch sketch) {
+    if (sketch.isEmpty()) {
+      return 0.0;
+    }
+    return ((TDigestSketch) sketch).getQuantile(_percentile / 100.0);
+  }
+
+  @Override
+  public String getName() {
+    return FUNCTION_NAME;
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.OffHeapSketchGroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Base class for the approximate aggregation functions built on top of {@link Sketch}.
+ *
+ * For group-by, the (group key, doc index) pairs of each block are sorted by group key, so that the sketch of each
+ * group is fetched and stored back only once per block. This allows the sketches to be kept serialized in an
+ * {@link OffHeapSketchGroupByResultHolder}, where a single reusable sketch is loaded for each group.
+ */
+public abstract class SketchAggregationFunction implements AggregationFunction {
+  private static final ResultDataType RESULT_DATA_TYPE = ResultDataType.SKETCH;
+
+  // Reusable array of (group key << 32 | doc index) pairs for the current block.
+  private long[] _groupKeyIndexPairs = new long[0];
+  private Sketch _reusableSketch;
+
+  /**
+   * Creates a new empty sketch for this function.
+   */
+  public abstract Sketch createSketch();
+
+  /**
+   * Adds the value at the given index of the value array into the sketch.
+   *
+   * @param sketch
+   * @param valueArray
+   * @param index
+   */
+  protected abstract void updateSketch(Sketch sketch, Object valueArray, int index);
+
+  /**
+   * Returns the final result for the given merged sketch.
+   *
+   * @param sketch
+   * @return
+   */
+  protected abstract double getFinalResult(Sketch sketch);
+
+  /**
+   * Returns the sketch kept in the aggregation result holder, or an empty sketch if no value has been aggregated.
+   *
+   * @param resultHolder
+   * @return
+   */
+  public Sketch getAggregationResult(AggregationResultHolder resultHolder) {
+    Sketch sketch = resultHolder.getResult();
+    if (sketch == null) {
+      return createSketch();
+    }
+    return sketch;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregate(int length, AggregationResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+    Object values = valueArray[0];
+
+    Sketch sketch = resultHolder.getResult();
+    if (sketch == null) {
+      sketch = createSketch();
+      resultHolder.setValue(sketch);
+    }
+    for (int i = 0; i < length; i++) {
+      updateSketch(sketch, values, i);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param groupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupBySV(int length, int[] groupKeys, GroupByResultHolder resultHolder, Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+
+    long[] pairs = getGroupKeyIndexPairs(length);
+    for (int i = 0; i < length; i++) {
+      pairs[i] = ((long) groupKeys[i] << 32) | i;
+    }
+    aggregateSortedPairs(pairs, length, resultHolder, valueArray[0]);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param length
+   * @param docIdToGroupKeys
+   * @param resultHolder
+   * @param valueArray
+   */
+  @Override
+  public void aggregateGroupByMV(int length, int[][] docIdToGroupKeys, GroupByResultHolder resultHolder,
+      Object... valueArray) {
+    Preconditions.checkArgument(valueArray.length == 1);
+
+    int numPairs = 0;
+    for (int i = 0; i < length; i++) {
+      numPairs += docIdToGroupKeys[i].length;
+    }
+    long[] pairs = getGroupKeyIndexPairs(numPairs);
+    int pairIndex = 0;
+    for (int i = 0; i < length; i++) {
+      for (int groupKey : docIdToGroupKeys[i]) {
+        pairs[pairIndex++] = ((long) groupKey << 32) | i;
+      }
+    }
+    aggregateSortedPairs(pairs, numPairs, resultHolder, valueArray[0]);
+  }
+
+  /**
+   * Helper method to sort the (group key, doc index) pairs and update the sketch of each group once.
+   */
+  private void aggregateSortedPairs(long[] pairs, int numPairs, GroupByResultHolder resultHolder, Object values) {
+    Arrays.sort(pairs, 0, numPairs);
+
+    OffHeapSketchGroupByResultHolder offHeapResultHolder = null;
+    if (resultHolder instanceof OffHeapSketchGroupByResultHolder) {
+      offHeapResultHolder = (OffHeapSketchGroupByResultHolder) resultHolder;
+      if (_reusableSketch == null) {
+        _reusableSketch = createSketch();
+      }
+    }
+
+    int i = 0;
+    while (i < numPairs) {
+      int groupKey = (int) (pairs[i] >>> 32);
+      Sketch sketch;
+      if (offHeapResultHolder != null) {
+        sketch = _reusableSketch;
+        offHeapResultHolder.loadSketch(groupKey, sketch);
+      } else {
+        sketch = resultHolder.getResult(groupKey);
+        if (sketch == null) {
+          sketch = createSketch();
+          resultHolder.setValueForKey(groupKey, sketch);
+        }
+      }
+
+      do {
+        updateSketch(sketch, values, (int) pairs[i]);
+        i++;
+      } while (i < numPairs && (int) (pairs[i] >>> 32) == groupKey);
+
+      if (offHeapResultHolder != null) {
+        offHeapResultHolder.storeSketch(groupKey, sketch);
+      }
+    }
+  }
+
+  private long[] getGroupKeyIndexPairs(int numPairs) {
+    if (_groupKeyIndexPairs.length < numPairs) {
+      _groupKeyIndexPairs = new long[numPairs];
+    }
+    return _groupKeyIndexPairs;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param combinedResult
+   * @return
+   */
+  @Override
+  public Double reduce(List<Object> combinedResult) {
+    Sketch merged = createSketch();
+    for (Object object : combinedResult) {
+      merged.merge((Sketch) object);
+    }
+    return getFinalResult(merged);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return
+   */
+  @Override
+  public double getDefaultValue() {
+    throw new RuntimeException("Unsupported method getDefaultValue() for class " + getClass().getName());
+  }
+
+  /**
+   * {@inheritDoc}
+   * @return
+   */
+  @Override
+  public ResultDataType getResultDataType() {
+    return RESULT_DATA_TYPE;
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.function;
+
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Reads the serialized t-digests of a derived TDIGEST column (see
+ * {@link com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig}) straight from the raw bytes of its dictionary
+ * entries into reused buffers, without decoding the entries into strings.
+ *
+ * This class keeps the decoding buffers, so an instance must not be shared across threads.
+ */
+class TDigestDictionaryReader {
+  private final StringDictionary _dictionary;
+  private final byte[] _entryBytes;
+  private final byte[] _sketchBytes = new byte[StarTreeSketchUtil.TDIGEST_FIELD_SIZE];
+  private final ByteBuffer _sketchBuffer = ByteBuffer.wrap(_sketchBytes);
+  private final TDigestSketch _sketch = new TDigestSketch(StarTreeSketchUtil.TDIGEST_COMPRESSION);
+
+  TDigestDictionaryReader(StringDictionary dictionary) {
+    _dictionary = dictionary;
+    _entryBytes = new byte[dictionary.getMaxEntryLengthInBytes()];
+  }
+
+  /**
+   * Returns the buffer of the serialized t-digest of the dictionary entry, valid until the next read.
+   */
+  ByteBuffer readBuffer(int dictId) {
+    _dictionary.readPaddedBytes(dictId, _entryBytes);
+    HllUtil.SerializationConverter.utf8BytesToByteArray(_entryBytes, _sketchBytes);
+    _sketchBuffer.clear();
+    return _sketchBuffer;
+  }
+
+  /**
+   * Returns the t-digest of the dictionary entry, valid until the next read.
+   */
+  TDigestSketch readSketch(int dictId) {
+    _sketch.reset();
+    _sketch.merge(readBuffer(dictId));
+    return _sketch;
+  }
+}
@@ -19,17 +19,12 @@ import com.google.common.base.Preconditions;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.GroupBy;
 import com.linkedin.pinot.core.common.Block;
-import com.linkedin.pinot.core.common.BlockDocIdIterator;
-import com.linkedin.pinot.core.common.BlockDocIdSet;
 import com.linkedin.pinot.core.common.BlockId;
-import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.BaseOperator;
 import com.linkedin.pinot.core.operator.MProjectionOperator;
 import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
 import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
-import com.linkedin.pinot.core.operator.docidsets.DocIdSetBlock;
-import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
 import java.util.List;
 
@@ -47,8 +42,6 @@ public class AggregationGroupByOperator extends BaseOperator {
   private IndexSegment _indexSegment;
   private int _nextBlockCallCounter = 0;
 
-  private int[] _reusableDocIdSet;
-
   /**
    * Constructor for the class.
    *
@@ -94,8 +87,8 @@ public class AggregationGroupByOperator extends BaseOperator {
     _groupByExecutor.init();
     while (_projectionOperator.nextBlock() != null) {
       ProjectionBlock currentBlock = _projectionOperator.getCurrentBlock();
-      Block block = currentBlock.getDocIdSetBlock();
-      numDocsScanned = processBlock(numDocsScanned, currentBlock, block);
+      _groupByExecutor.process(currentBlock);
+      numDocsScanned += currentBlock.getNumDocs();
     }
     _groupByExecutor.finish();
 
@@ -111,50 +104,6 @@ public class AggregationGroupByOperator extends BaseOperator {
     return resultBlock;
   }
 
-  /**
-   * Process a block of docIdSets. If the passed in block is an instance of DocIdSetBlock,
-   * get the docIdSet array directly from it. Else, iterate over all docIds and call the
-   * groupByExecutor after each 5k docIds.
-   *
-   * @param numDocsScanned
-   * @param currentBlock
-   * @param block
-   * @return
-   */
-  private int processBlock(int numDocsScanned, ProjectionBlock currentBlock, Block block) {
-    if (block instanceof DocIdSetBlock) {
-      DocIdSetBlock docIdSetBlock = (DocIdSetBlock) block;
-      int length = docIdSetBlock.getSearchableLength();
-
-      _groupByExecutor.process(docIdSetBlock.getDocIdSet(), 0, length);
-      numDocsScanned += length;
-    } else {
-      if (_reusableDocIdSet == null) {
-        _reusableDocIdSet = new int[DocIdSetPlanNode.MAX_DOC_PER_CALL];
-      }
-
-      BlockDocIdSet blockDocIdSet = currentBlock.getBlockDocIdSet();
-      BlockDocIdIterator iterator = blockDocIdSet.iterator();
-
-      int docId;
-      int pos = 0;
-      while ((docId = iterator.next()) != Constants.EOF) {
-        _reusableDocIdSet[pos++] = docId;
-        if (pos == DocIdSetPlanNode.MAX_DOC_PER_CALL) {
-          numDocsScanned += pos;
-          _groupByExecutor.process(_reusableDocIdSet, 0, pos);
-          pos = 0;
-        }
-      }
-
-      if (pos > 0) {
-        _groupByExecutor.process(_reusableDocIdSet, 0, pos);
-        numDocsScanned += pos;
-      }
-    }
-    return numDocsScanned;
-  }
-
   @Override
   public String getOperatorName() {
     return "GroupByAggregationOperator";
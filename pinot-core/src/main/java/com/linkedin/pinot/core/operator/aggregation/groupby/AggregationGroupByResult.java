@@ -18,9 +18,11 @@ package com.linkedin.pinot.core.operator.aggregation.groupby;
 import com.clearspring.analytics.stream.cardinality.HyperLogLog;
 import com.linkedin.pinot.common.utils.primitive.MutableLongValue;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
 import com.linkedin.pinot.core.query.utils.Pair;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
@@ -37,15 +39,20 @@ public class AggregationGroupByResult {
 
   private final GroupKeyGenerator _groupKeyGenerator;
   private final GroupByResultHolder _resultHolder[];
+  private final AggregationFunction _aggregationFunction[];
   private AggregationFunction.ResultDataType _resultDataType[];
   Pair<String, Serializable> _retPair;
 
   public AggregationGroupByResult(GroupKeyGenerator keyGenerator, GroupByResultHolder resultHolder[],
-      AggregationFunction.ResultDataType resultDataType[]) {
+      AggregationFunction aggregationFunction[]) {
 
     _groupKeyGenerator = keyGenerator;
     _resultHolder = resultHolder;
-    _resultDataType = resultDataType;
+    _aggregationFunction = aggregationFunction;
+    _resultDataType = new AggregationFunction.ResultDataType[aggregationFunction.length];
+    for (int i = 0; i < aggregationFunction.length; i++) {
+      _resultDataType[i] = aggregationFunction[i].getResultDataType();
+    }
     _retPair = new Pair<>(null, null);
   }
 
@@ -75,7 +82,13 @@ public class AggregationGroupByResult {
    * @return
    */
   public Serializable getResultForKey(GroupKeyGenerator.GroupKey groupKey, int index) {
-    int groupId = groupKey.getFirst();
+    int groupId = groupKey.getGroupId();
+
+    // Dictionary based aggregation functions translate the dictionary ids kept in the result holder into values.
+    if (_aggregationFunction[index] instanceof DictionaryBasedAggregationFunction) {
+      return ((DictionaryBasedAggregationFunction) _aggregationFunction[index]).getGroupByResult(_resultHolder[index],
+          groupId);
+    }
 
     switch (_resultDataType[index]) {
       case LONG:
@@ -106,6 +119,9 @@ public class AggregationGroupByResult {
       case PERCENTILEEST_QUANTILEDIGEST:
         return (QuantileDigest) _resultHolder[index].getResult(groupId);
 
+      case SKETCH:
+        return (Sketch) _resultHolder[index].getResult(groupId);
+
       default:
         throw new RuntimeException(
             "Unsupported result data type " + _resultDataType[index] + " in class " + getClass().getName());
@@ -18,7 +18,6 @@ package com.linkedin.pinot.core.operator.aggregation.groupby;
 import com.google.common.base.Preconditions;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.GroupBy;
-import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.core.common.DataFetcher;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.aggregation.AggregationFunctionContext;
@@ -26,6 +25,8 @@ import com.linkedin.pinot.core.operator.aggregation.ResultHolderFactory;
 import com.linkedin.pinot.core.operator.aggregation.SingleValueBlockCache;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunction;
 import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedAggregationFunction;
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
 import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
 import java.util.List;
 
@@ -44,7 +45,6 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
   private final int _numAggrFunc;
   private final AggregationFunctionContext[] _aggrFuncContextArray;
   private final GroupByResultHolder[] _resultHolderArray;
-  private final SegmentMetadata _segmentMetadata;
 
   private int[] _docIdToSVGroupKey;
   private int[][] _docIdToMVGroupKey;
@@ -77,12 +77,11 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
     _numAggrFunc = aggregationInfoList.size();
     _aggrFuncContextArray = new AggregationFunctionContext[_numAggrFunc];
     _resultHolderArray = new GroupByResultHolder[_numAggrFunc];
-    _segmentMetadata = indexSegment.getSegmentMetadata();
     for (int i = 0; i < _numAggrFunc; i++) {
       AggregationInfo aggregationInfo = aggregationInfoList.get(i);
       String[] columns = aggregationInfo.getAggregationParams().get("column").trim().split(",");
       _aggrFuncContextArray[i] = new AggregationFunctionContext(
-          aggregationInfo.getAggregationType(), columns, _segmentMetadata);
+          aggregationInfo.getAggregationType(), columns, indexSegment);
       _resultHolderArray[i] = ResultHolderFactory.getGroupByResultHolder(
           _aggrFuncContextArray[i].getAggregationFunction(), maxNumResults);
     }
@@ -130,7 +129,34 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
 
     for (int i = 0; i < _numAggrFunc; i++) {
       _resultHolderArray[i].ensureCapacity(capacityNeeded);
-      aggregateColumn(_aggrFuncContextArray[i], _resultHolderArray[i], length);
+      aggregateColumn(_aggrFuncContextArray[i], _resultHolderArray[i], _singleValueBlockCache, length);
+    }
+  }
+
+  /**
+   * Process all documents of the given projection block to perform the requested aggregation-group-by-operation.
+   * Group-by column dictionary ids and aggregation column values are read from the arrays cached in the block, so a
+   * column used for both group-by and aggregation is only read once.
+   *
+   * @param projectionBlock
+   */
+  @Override
+  public void process(ProjectionBlock projectionBlock) {
+    Preconditions
+        .checkState(_inited, "Method 'process' cannot be called before 'init' for class " + getClass().getName());
+
+    if (_hasMultiValuedColumns) {
+      _groupKeyGenerator.generateKeysForBlock(projectionBlock, _docIdToMVGroupKey);
+    } else {
+      _groupKeyGenerator.generateKeysForBlock(projectionBlock, _docIdToSVGroupKey);
+    }
+    int capacityNeeded = _groupKeyGenerator.getCurrentGroupKeyUpperBound();
+
+    SingleValueBlockCache blockCache = projectionBlock.getBlockCache();
+    int length = projectionBlock.getNumDocs();
+    for (int i = 0; i < _numAggrFunc; i++) {
+      _resultHolderArray[i].ensureCapacity(capacityNeeded);
+      aggregateColumn(_aggrFuncContextArray[i], _resultHolderArray[i], blockCache, length);
     }
   }
 
@@ -139,10 +165,11 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
    *
    * @param aggrFuncContext
    * @param resultHolder
+   * @param blockCache
    * @param length
    */
   private void aggregateColumn(AggregationFunctionContext aggrFuncContext, GroupByResultHolder resultHolder,
-      int length) {
+      SingleValueBlockCache blockCache, int length) {
     AggregationFunction aggregationFunction = aggrFuncContext.getAggregationFunction();
     String[] aggrColumns = aggrFuncContext.getAggregationColumns();
     String aggrFuncName = aggregationFunction.getName();
@@ -150,6 +177,17 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
     Preconditions.checkState(aggrColumns.length == 1);
     String aggrColumn = aggrColumns[0];
 
+    // Dictionary based aggregation functions work on the dictionary ids directly.
+    if (aggregationFunction instanceof DictionaryBasedAggregationFunction) {
+      int[] dictIdArray = blockCache.getDictIdArrayForColumn(aggrColumn);
+      if (_hasMultiValuedColumns) {
+        aggregationFunction.aggregateGroupByMV(length, _docIdToMVGroupKey, resultHolder, (Object) dictIdArray);
+      } else {
+        aggregationFunction.aggregateGroupBySV(length, _docIdToSVGroupKey, resultHolder, (Object) dictIdArray);
+      }
+      return;
+    }
+
     switch (aggrFuncName) {
       case AggregationFunctionFactory.COUNT_AGGREGATION_FUNCTION:
         if (_hasMultiValuedColumns) {
@@ -161,7 +199,7 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
 
       case AggregationFunctionFactory.DISTINCTCOUNT_AGGREGATION_FUNCTION:
       case AggregationFunctionFactory.DISTINCTCOUNTHLL_AGGREGATION_FUNCTION:
-        double[] hashCodeArray = _singleValueBlockCache.getHashCodeArrayForColumn(aggrColumn);
+        double[] hashCodeArray = blockCache.getHashCodeArrayForColumn(aggrColumn);
         if (_hasMultiValuedColumns) {
           aggregationFunction.aggregateGroupByMV(length, _docIdToMVGroupKey, resultHolder, (Object) hashCodeArray);
         } else {
@@ -170,7 +208,8 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
         break;
 
       case AggregationFunctionFactory.FASTHLL_AGGREGATION_FUNCTION:
-        String[] stringArray = _singleValueBlockCache.getStringValueArrayForColumn(aggrColumn);
+      case AggregationFunctionFactory.DISTINCTCOUNTTHETA_AGGREGATION_FUNCTION:
+        String[] stringArray = blockCache.getStringValueArrayForColumn(aggrColumn);
         if (_hasMultiValuedColumns) {
           aggregationFunction.aggregateGroupByMV(length, _docIdToMVGroupKey, resultHolder, (Object) stringArray);
         } else {
@@ -179,7 +218,7 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
         break;
 
       default:
-        double[] valueArray = _singleValueBlockCache.getDoubleValueArrayForColumn(aggrColumn);
+        double[] valueArray = blockCache.getDoubleValueArrayForColumn(aggrColumn);
         if (_hasMultiValuedColumns) {
           aggregationFunction.aggregateGroupByMV(length, _docIdToMVGroupKey, resultHolder, (Object) valueArray);
         } else {
@@ -191,12 +230,21 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
 
   /**
    * {@inheritDoc}
+   *
+   * Releases the off-heap memory of the sketch result holders, whose results are kept on heap from now on.
    */
   @Override
   public void finish() {
     Preconditions
         .checkState(_inited, "Method 'finish' cannot be called before 'init' for class " + getClass().getName());
 
+    if (!_finished) {
+      for (GroupByResultHolder resultHolder : _resultHolderArray) {
+        if (resultHolder instanceof OffHeapSketchGroupByResultHolder) {
+          ((OffHeapSketchGroupByResultHolder) resultHolder).close();
+        }
+      }
+    }
     _finished = true;
   }
 
@@ -211,13 +259,12 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
     Preconditions
         .checkState(_finished, "Method 'getResult' cannot be called before 'finish' for class " + getClass().getName());
 
-    AggregationFunction.ResultDataType[] resultDataTypeArray = new AggregationFunction.ResultDataType[_numAggrFunc];
+    AggregationFunction[] aggregationFunctionArray = new AggregationFunction[_numAggrFunc];
 
     for (int i = 0; i < _numAggrFunc; i++) {
-      AggregationFunction aggregationFunction = _aggrFuncContextArray[i].getAggregationFunction();
-      resultDataTypeArray[i] = aggregationFunction.getResultDataType();
+      aggregationFunctionArray[i] = _aggrFuncContextArray[i].getAggregationFunction();
     }
-    return new AggregationGroupByResult(_groupKeyGenerator, _resultHolderArray, resultDataTypeArray);
+    return new AggregationGroupByResult(_groupKeyGenerator, _resultHolderArray, aggregationFunctionArray);
   }
 
   /**
@@ -22,6 +22,7 @@ import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.DataFetcher;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.operator.aggregation.ResultHolderFactory;
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
 import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
 import com.linkedin.pinot.core.query.aggregation.groupby.GroupByConstants;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
@@ -77,8 +78,11 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
   // For multi value columns.
   private final BlockMultiValIterator[] _multiValIterators;
 
+  private final String[] _groupByColumns;
   // Reusable arrays for single value columns.
   private final int[][] _reusableSingleDictIds;
+  // Dictionary id arrays shared from the current projection block for single value columns.
+  private final int[][] _blockSingleDictIds;
   // Reusable buffer for multi value columns.
   private final int[] _reusableMultiValDictIdBuffer;
 
@@ -99,12 +103,14 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
    */
   public DefaultGroupKeyGenerator(DataFetcher dataFetcher, String[] groupByColumns) {
     _numGroupByColumns = groupByColumns.length;
+    _groupByColumns = groupByColumns;
     _cardinalities = new int[_numGroupByColumns];
     _isSingleValueGroupByColumn = new boolean[_numGroupByColumns];
     _dictionaries = new Dictionary[_numGroupByColumns];
     _singleBlockValSets = new BlockValSet[_numGroupByColumns];
     _multiValIterators = new BlockMultiValIterator[_numGroupByColumns];
     _reusableSingleDictIds = new int[_numGroupByColumns][];
+    _blockSingleDictIds = new int[_numGroupByColumns][];
 
     // Track the max number of values among all multi value group-by columns.
     int maxNumMultiValues = 0;
@@ -194,39 +200,88 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
     for (int i = 0; i < _numGroupByColumns; i++) {
       _singleBlockValSets[i].readIntValues(docIdSet, startIndex, length, _reusableSingleDictIds[i], 0);
     }
+    generateKeysForSingleDictIds(_reusableSingleDictIds, length, docIdToGroupKey);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void generateKeysForDocIdSet(int[] docIdSet, int startIndex, int length, int[][] docIdToGroupKeys) {
+    // Fetch all dictionary ids according to the document id set for all single value group-by columns.
+    for (int i = 0; i < _numGroupByColumns; i++) {
+      if (_isSingleValueGroupByColumn[i]) {
+        _singleBlockValSets[i].readIntValues(docIdSet, startIndex, length, _reusableSingleDictIds[i], 0);
+      }
+    }
+    generateKeysForMultiDictIds(_reusableSingleDictIds, docIdSet, startIndex, length, docIdToGroupKeys);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void generateKeysForBlock(ProjectionBlock projectionBlock, int[] docIdToGroupKey) {
+    // Share the dictionary ids already fetched (or to be fetched) by other consumers of the block.
+    for (int i = 0; i < _numGroupByColumns; i++) {
+      _blockSingleDictIds[i] = projectionBlock.getDictIdsForSVColumn(_groupByColumns[i]);
+    }
+    generateKeysForSingleDictIds(_blockSingleDictIds, projectionBlock.getNumDocs(), docIdToGroupKey);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void generateKeysForBlock(ProjectionBlock projectionBlock, int[][] docIdToGroupKeys) {
+    // Share the dictionary ids already fetched (or to be fetched) by other consumers of the block.
+    for (int i = 0; i < _numGroupByColumns; i++) {
+      if (_isSingleValueGroupByColumn[i]) {
+        _blockSingleDictIds[i] = projectionBlock.getDictIdsForSVColumn(_groupByColumns[i]);
+      }
+    }
+    generateKeysForMultiDictIds(_blockSingleDictIds, projectionBlock.getDocIds(), 0, projectionBlock.getNumDocs(),
+        docIdToGroupKeys);
+  }
 
-    // Calculate the group key and store it into the result buffer.
-    int outIndex = 0;
-    int endIndex = startIndex + length;
+  /**
+   * Helper function to calculate the group keys from the dictionary ids of all single value group-by columns, and
+   * store them into the result buffer.
+   *
+   * @param singleDictIds dictionary ids for each group-by column, starting at index 0.
+   * @param length number of documents.
+   * @param docIdToGroupKey buffer to return the results.
+   */
+  private void generateKeysForSingleDictIds(int[][] singleDictIds, int length, int[] docIdToGroupKey) {
     switch (_storageType) {
       case ARRAY_BASED:
-        for (int i = startIndex; i < endIndex; i++) {
+        for (int i = 0; i < length; i++) {
           int groupKey = 0;
           for (int j = _numGroupByColumns - 1; j >= 0; j--) {
-            groupKey = groupKey * _cardinalities[j] + _reusableSingleDictIds[j][i];
+            groupKey = groupKey * _cardinalities[j] + singleDictIds[j][i];
           }
-          docIdToGroupKey[outIndex++] = groupKey;
+          docIdToGroupKey[i] = groupKey;
           _groupKeyFlags[groupKey] = true;
         }
         break;
       case LONG_MAP_BASED:
-        for (int i = startIndex; i < endIndex; i++) {
+        for (int i = 0; i < length; i++) {
           long rawKey = 0;
           for (int j = _numGroupByColumns - 1; j >= 0; j--) {
-            rawKey = rawKey * _cardinalities[j] + _reusableSingleDictIds[j][i];
+            rawKey = rawKey * _cardinalities[j] + singleDictIds[j][i];
           }
-          docIdToGroupKey[outIndex++] = updateRawKeyToGroupKeyMapping(rawKey);
+          docIdToGroupKey[i] = updateRawKeyToGroupKeyMapping(rawKey);
         }
         break;
       case ARRAY_MAP_BASED:
-        for (int i = startIndex; i < endIndex; i++) {
+        for (int i = 0; i < length; i++) {
           IntArrayList rawKey = new IntArrayList(_numGroupByColumns);
           rawKey.size(_numGroupByColumns);
           int[] rawKeyArray = rawKey.elements();
           for (int j = 0; j < _numGroupByColumns; j++) {
-            rawKeyArray[j] = _reusableSingleDictIds[j][i];
+            rawKeyArray[j] = singleDictIds[j][i];
           }
-          docIdToGroupKey[outIndex++] = updateRawKeyToGroupKeyMapping(rawKey);
+          docIdToGroupKey[i] = updateRawKeyToGroupKeyMapping(rawKey);
         }
         break;
       default:
@@ -235,37 +290,31 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
   }
 
   /**
-   * {@inheritDoc}
+   * Helper function to calculate the group keys(int[]) from the dictionary ids of the single value group-by columns
+   * and the multi value iterators, and store them into the result buffer.
+   *
+   * @param singleDictIds dictionary ids for each single value group-by column, starting at index 0.
+   * @param docIdSet document id set.
+   * @param startIndex start index.
+   * @param length length.
+   * @param docIdToGroupKeys buffer to return the results.
    */
-  @Override
-  public void generateKeysForDocIdSet(int[] docIdSet, int startIndex, int length, int[][] docIdToGroupKeys) {
-    // Fetch all dictionary ids according to the document id set for all single value group-by columns.
-    for (int i = 0; i < _numGroupByColumns; i++) {
-      if (_isSingleValueGroupByColumn[i]) {
-        _singleBlockValSets[i].readIntValues(docIdSet, startIndex, length, _reusableSingleDictIds[i], 0);
-      }
-    }
-
-    // Calculate the group keys(int[]) and store it into the result buffer.
-    int outIndex = 0;
-    int endIndex = startIndex + length;
+  private void generateKeysForMultiDictIds(int[][] singleDictIds, int[] docIdSet, int startIndex, int length,
+      int[][] docIdToGroupKeys) {
     switch (_storageType) {
       case ARRAY_BASED:
-        for (int i = startIndex; i < endIndex; i++) {
-          docIdToGroupKeys[outIndex] = generateKeysForDocIdArrayBased(outIndex, docIdSet[i]);
-          outIndex++;
+        for (int i = 0; i < length; i++) {
+          docIdToGroupKeys[i] = generateKeysForDocIdArrayBased(singleDictIds, i, docIdSet[startIndex + i]);
         }
         break;
       case LONG_MAP_BASED:
-        for (int i = startIndex; i < endIndex; i++) {
-          docIdToGroupKeys[outIndex] = generateKeysForDocIdLongMapBased(outIndex, docIdSet[i]);
-          outIndex++;
+        for (int i = 0; i < length; i++) {
+          docIdToGroupKeys[i] = generateKeysForDocIdLongMapBased(singleDictIds, i, docIdSet[startIndex + i]);
         }
         break;
       case ARRAY_MAP_BASED:
-        for (int i = startIndex; i < endIndex; i++) {
-          docIdToGroupKeys[outIndex] = generateKeysForDocIdArrayMapBased(outIndex, docIdSet[i]);
-          outIndex++;
+        for (int i = 0; i < length; i++) {
+          docIdToGroupKeys[i] = generateKeysForDocIdArrayMapBased(singleDictIds, i, docIdSet[startIndex + i]);
         }
         break;
       default:
@@ -341,18 +390,19 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
    * there are multi value group-by columns.
    * (ARRAY_BASED storage type)
    *
+   * @param singleDictIds dictionary ids for each single value group-by column.
    * @param index index of the docIdSet.
    * @param docId document id.
    * @return group keys.
    */
-  private int[] generateKeysForDocIdArrayBased(int index, int docId) {
+  private int[] generateKeysForDocIdArrayBased(int[][] singleDictIds, int index, int docId) {
     int[] groupKeys = {0};
     int length = 1;
 
     for (int i = _numGroupByColumns - 1; i >= 0; i--) {
       int cardinality = _cardinalities[i];
       if (_isSingleValueGroupByColumn[i]) {
-        int dictId = _reusableSingleDictIds[i][index];
+        int dictId = singleDictIds[i][index];
         for (int j = 0; j < length; j++) {
           groupKeys[j] = groupKeys[j] * cardinality + dictId;
         }
@@ -390,18 +440,19 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
    * there are multi value group-by columns.
    * (LONG_MAP_BASED storage type)
    *
+   * @param singleDictIds dictionary ids for each single value group-by column.
    * @param index index of the docIdSet.
    * @param docId document id.
    * @return group keys.
    */
-  private int[] generateKeysForDocIdLongMapBased(int index, int docId) {
+  private int[] generateKeysForDocIdLongMapBased(int[][] singleDictIds, int index, int docId) {
     long[] rawKeys = {0L};
     int length = 1;
 
     for (int i = _numGroupByColumns - 1; i >= 0; i--) {
       long cardinality = _cardinalities[i];
       if (_isSingleValueGroupByColumn[i]) {
-        long dictId = _reusableSingleDictIds[i][index];
+        long dictId = singleDictIds[i][index];
         for (int j = 0; j < length; j++) {
           rawKeys[j] = rawKeys[j] * cardinality + dictId;
         }
@@ -440,18 +491,19 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
    * there are multi value group-by columns.
    * (ARRAY_MAP_BASED storage type)
    *
+   * @param singleDictIds dictionary ids for each single value group-by column.
    * @param index index of the docIdSet.
    * @param docId document id.
    * @return group keys.
    */
-  private int[] generateKeysForDocIdArrayMapBased(int index, int docId) {
+  private int[] generateKeysForDocIdArrayMapBased(int[][] singleDictIds, int index, int docId) {
     IntArrayList[] rawKeys = {new IntArrayList(_numGroupByColumns)};
     rawKeys[0].size(_numGroupByColumns);
     int length = 1;
 
     for (int i = 0; i < _numGroupByColumns; i++) {
       if (_isSingleValueGroupByColumn[i]) {
-        int dictId = _reusableSingleDictIds[i][index];
+        int dictId = singleDictIds[i][index];
         for (IntArrayList rawKey : rawKeys) {
           rawKey.elements()[i] = dictId;
         }
@@ -495,7 +547,7 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
   private class ArrayBasedGroupKeyIterator implements Iterator<GroupKey> {
     final int _length = _groupKeyFlags.length;
     int _index = 0;
-    final GroupKey _groupKey = new GroupKey(INVALID_ID, null);
+    final DictIdBasedGroupKey _groupKey = new DictIdBasedGroupKey();
 
     @Override
     public boolean hasNext() {
@@ -510,9 +562,8 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
 
     @Override
     public GroupKey next() {
-      String stringGroupKey = groupKeyToStringGroupKey(_index);
-      _groupKey.setFirst(_index++);
-      _groupKey.setSecond(stringGroupKey);
+      _groupKey.setRawKey(_index, _index);
+      _index++;
       return _groupKey;
     }
 
@@ -527,7 +578,7 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
    */
   private class LongMapBasedGroupKeyIterator implements Iterator<GroupKey> {
     final ObjectIterator<Long2IntMap.Entry> _iterator = _groupKeyToId.long2IntEntrySet().fastIterator();
-    final GroupKey _groupKey = new GroupKey(INVALID_ID, null);
+    final DictIdBasedGroupKey _groupKey = new DictIdBasedGroupKey();
 
     @Override
     public boolean hasNext() {
@@ -537,10 +588,7 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
     @Override
     public GroupKey next() {
       Long2IntMap.Entry entry = _iterator.next();
-
-      String stringGroupKey = rawKeyToStringGroupKey(entry.getLongKey());
-      _groupKey.setFirst(entry.getIntValue());
-      _groupKey.setSecond(stringGroupKey);
+      _groupKey.setRawKey(entry.getIntValue(), entry.getLongKey());
       return _groupKey;
     }
 
@@ -556,7 +604,7 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
   private class ArrayMapBasedGroupKeyIterator implements  Iterator<GroupKey> {
     final ObjectIterator<Object2IntMap.Entry<IntArrayList>> _iterator =
         _arrayGroupKeyToId.object2IntEntrySet().fastIterator();
-    final GroupKey _groupKey = new GroupKey(INVALID_ID, null);
+    final DictIdBasedGroupKey _groupKey = new DictIdBasedGroupKey();
 
     @Override
     public boolean hasNext() {
@@ -566,10 +614,7 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
     @Override
     public GroupKey next() {
       Object2IntMap.Entry<IntArrayList> entry = _iterator.next();
-
-      String stringGroupKey = rawKeyToStringGroupKey(entry.getKey());
-      _groupKey.setFirst(entry.getIntValue());
-      _groupKey.setSecond(stringGroupKey);
+      _groupKey.setRawKey(entry.getIntValue(), entry.getKey());
       return _groupKey;
     }
 
@@ -580,74 +625,72 @@ public class DefaultGroupKeyGenerator implements GroupKeyGenerator {
   }
 
   /**
-   * With an integer group key, convert group key from dictId based to string based, using actually values corresponding
-   * to dictionary id's.
-   * (ARRAY_BASED storage type)
-   *
-   * @param groupKey integer group key.
-   * @return string group key.
+   * Group key holding the dictionary ids of the group-by columns, from which the string group key and the typed group
+   * key tuple are decoded on demand. This way callers only pay for the representation they use.
    */
-  private String groupKeyToStringGroupKey(int groupKey) {
-    if (_numGroupByColumns == 1) {
-      // Special case one group-by column for performance.
-      return _dictionaries[0].get(groupKey).toString();
-    } else {
-      // Decode the group key.
-      int cardinality = _cardinalities[0];
-      StringBuilder builder = new StringBuilder(_dictionaries[0].get(groupKey % cardinality).toString());
-      groupKey /= cardinality;
-      for (int i = 1; i < _numGroupByColumns; i++) {
-        builder.append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter);
-        cardinality = _cardinalities[i];
-        builder.append(_dictionaries[i].get(groupKey % cardinality));
-        groupKey /= cardinality;
+  private class DictIdBasedGroupKey extends GroupKey {
+    final int[] _dictIds = new int[_numGroupByColumns];
+
+    /**
+     * Set the group key from a raw key which is the cardinality based encoding of the dictionary ids.
+     * (ARRAY_BASED and LONG_MAP_BASED storage type)
+     *
+     * @param groupId integer group key.
+     * @param rawKey long raw key.
+     */
+    void setRawKey(int groupId, long rawKey) {
+      _groupId = groupId;
+      for (int i = 0; i < _numGroupByColumns; i++) {
+        int cardinality = _cardinalities[i];
+        _dictIds[i] = (int) (rawKey % cardinality);
+        rawKey /= cardinality;
       }
-      return builder.toString();
     }
-  }
 
-  /**
-   * With a long raw key, convert raw key from dictId based to string based group key, using actually values
-   * corresponding to dictionary id's.
-   * (LONG_BASED storage type)
-   *
-   * @param rawKey long raw key.
-   * @return string group key.
-   */
-  private String rawKeyToStringGroupKey(long rawKey) {
-    if (_numGroupByColumns == 1) {
-      // Special case one group-by column for performance.
-      return _dictionaries[0].get((int) rawKey).toString();
-    } else {
-      // Decode the raw key.
-      int cardinality = _cardinalities[0];
-      StringBuilder builder = new StringBuilder(_dictionaries[0].get((int) (rawKey % cardinality)).toString());
-      rawKey /= cardinality;
-      for (int i = 1; i < _numGroupByColumns; i++) {
-        builder.append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter);
-        cardinality = _cardinalities[i];
-        builder.append(_dictionaries[i].get((int) (rawKey % cardinality)));
-        rawKey /= cardinality;
+    /**
+     * Set the group key from a raw key holding the dictionary ids.
+     * (ARRAY_MAP_BASED storage type)
+     *
+     * @param groupId integer group key.
+     * @param rawKey IntArrayList raw key.
+     */
+    void setRawKey(int groupId, IntArrayList rawKey) {
+      _groupId = groupId;
+      System.arraycopy(rawKey.elements(), 0, _dictIds, 0, _numGroupByColumns);
+    }
+
+    /**
+     * Convert group key from dictId based to string based, using actually values corresponding to dictionary id's.
+     *
+     * @return string group key.
+     */
+    @Override
+    public String getStringKey() {
+      if (_numGroupByColumns == 1) {
+        // Special case one group-by column for performance.
+        return _dictionaries[0].get(_dictIds[0]).toString();
+      } else {
+        StringBuilder builder = new StringBuilder(_dictionaries[0].get(_dictIds[0]).toString());
+        for (int i = 1; i < _numGroupByColumns; i++) {
+          builder.append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter);
+          builder.append(_dictionaries[i].get(_dictIds[i]));
+        }
+        return builder.toString();
       }
-      return builder.toString();
     }
-  }
 
-  /**
-   * With a IntArrayList raw key, convert raw key from dictId based to string based group key, using actually values
-   * corresponding to dictionary id's.
-   * (ARRAY_MAP_BASED storage type)
-   *
-   * @param rawKey IntArrayList raw key.
-   * @return string group key.
-   */
-  private String rawKeyToStringGroupKey(IntArrayList rawKey) {
-    int[] rawKeyArray = rawKey.elements();
-    StringBuilder builder = new StringBuilder(_dictionaries[0].get(rawKeyArray[0]).toString());
-    for (int i = 1; i < _numGroupByColumns; i++) {
-      builder.append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter);
-      builder.append(_dictionaries[i].get(rawKeyArray[i]).toString());
-    }
-    return builder.toString();
+    /**
+     * Convert group key from dictId based to a tuple of the actual values corresponding to dictionary id's.
+     *
+     * @return group key tuple.
+     */
+    @Override
+    public GroupKeyTuple getKeyTuple() {
+      Object[] values = new Object[_numGroupByColumns];
+      for (int i = 0; i < _numGroupByColumns; i++) {
+        values[i] = _dictionaries[i].get(_dictIds[i]);
+      }
+      return new GroupKeyTuple(values);
+    }
   }
 }
@@ -15,6 +15,9 @@
  */
 package com.linkedin.pinot.core.operator.aggregation.groupby;
 
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
+
+
 /**
  * Interface class for executing the actual group-by operation.
  */
@@ -34,6 +37,14 @@ public interface GroupByExecutor {
    */
   void process(int[] docIdSet, int startIndex, int length);
 
+  /**
+   * Performs the actual group-by aggregation on all docId's of the given projection block, reading the column values
+   * in batch from the block.
+   *
+   * @param projectionBlock projection block.
+   */
+  void process(ProjectionBlock projectionBlock);
+
   /**
    * Post processing (if any) to be done after all docIdSets have been processed, and
    * before getResult can be called.
@@ -15,7 +15,7 @@
  */
 package com.linkedin.pinot.core.operator.aggregation.groupby;
 
-import com.linkedin.pinot.core.query.utils.Pair;
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
 import java.util.Iterator;
 
 
@@ -63,6 +63,26 @@ public interface GroupKeyGenerator {
    */
   void generateKeysForDocIdSet(int[] docIdSet, int startIndex, int length, int[][] docIdToGroupKeys);
 
+  /**
+   * Generate group keys for all documents inside the given projection block and return the mapping in the passed in
+   * docIdToGroupKey array. The dictionary ids of the group-by columns are read in batch from the block.
+   * This interface is for situation where all the group-by columns are single valued.
+   *
+   * @param projectionBlock projection block.
+   * @param docIdToGroupKey buffer to return the results.
+   */
+  void generateKeysForBlock(ProjectionBlock projectionBlock, int[] docIdToGroupKey);
+
+  /**
+   * Generate group keys for all documents inside the given projection block and return a mapping from docId to group
+   * keys(int[]) in the passed in docIdToGroupKeys array.
+   * This interface is for situation where at least one group-by columns are multi valued.
+   *
+   * @param projectionBlock projection block.
+   * @param docIdToGroupKeys buffer to return the results.
+   */
+  void generateKeysForBlock(ProjectionBlock projectionBlock, int[][] docIdToGroupKeys);
+
   /**
    * Get the current upper bound of the group key. All group keys already generated should be less than this value. This
    * interface can be called after generating some group keys and before processing them to determine whether to expand
@@ -80,16 +100,18 @@ public interface GroupKeyGenerator {
   Iterator<GroupKey> getUniqueGroupKeys();
 
   /**
-   * This class encapsulates the integer group key and the string group key.
+   * This class encapsulates the integer group key, and decodes the string group key or the typed group key tuple on
+   * demand. Iterators may reuse the same instance for all the group keys.
    */
-  class GroupKey extends Pair<Integer, String> {
+  abstract class GroupKey {
+    protected int _groupId;
 
-    public GroupKey(Integer first, String second) {
-      super(first, second);
+    public int getGroupId() {
+      return _groupId;
     }
 
-    public String getStringKey() {
-      return getSecond();
-    }
+    public abstract String getStringKey();
+
+    public abstract GroupKeyTuple getKeyTuple();
   }
 }
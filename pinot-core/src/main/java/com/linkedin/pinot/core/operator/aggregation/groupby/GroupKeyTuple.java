@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.groupby;
+
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByConstants;
+import java.util.Arrays;
+
+
+/**
+ * Group key made of the typed values of the group-by columns.
+ *
+ * Unlike dictionary id based group keys, tuples are comparable across segments, which makes them suitable to merge
+ * group-by results in the combine phase without building string keys for every group of every segment. The string
+ * group key expected by the upper layers is only built once per merged group, through {@link #toString()}.
+ */
+public final class GroupKeyTuple {
+  private final Object[] _values;
+  private final int _hashCode;
+
+  public GroupKeyTuple(Object[] values) {
+    _values = values;
+    _hashCode = Arrays.hashCode(values);
+  }
+
+  public Object[] getValues() {
+    return _values;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof GroupKeyTuple)) {
+      return false;
+    }
+    GroupKeyTuple that = (GroupKeyTuple) o;
+    return _hashCode == that._hashCode && Arrays.equals(_values, that._values);
+  }
+
+  @Override
+  public int hashCode() {
+    return _hashCode;
+  }
+
+  /**
+   * Returns the string group key, with the values separated by the group-by delimiter.
+   */
+  @Override
+  public String toString() {
+    if (_values.length == 1) {
+      return _values[0].toString();
+    }
+    StringBuilder builder = new StringBuilder(_values[0].toString());
+    for (int i = 1; i < _values.length; i++) {
+      builder.append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter);
+      builder.append(_values[i]);
+    }
+    return builder.toString();
+  }
+}
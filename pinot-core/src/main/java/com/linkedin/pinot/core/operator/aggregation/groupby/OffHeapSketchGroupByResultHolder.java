@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.aggregation.groupby;
+
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.core.operator.aggregation.function.SketchAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.SerializedSketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.SketchType;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+
+/**
+ * Result holder that keeps the per-group sketches serialized in off-heap memory, so that the heap usage of high
+ * cardinality group-bys on sketch based functions does not grow with the number of groups.
+ *
+ * Sketches are stored into slots allocated from direct memory chunks. Each slot is sized to the next power of two of
+ * the serialized sketch, and a new slot is allocated when a sketch outgrows its slot (the old slot is abandoned), so at
+ * most half of the slot memory is wasted. The first chunk is small and each new chunk doubles in size up to 1 MB, so
+ * that segments with few groups only reserve a few KB.
+ *
+ * Sketches are updated through {@link #loadSketch(int, Sketch)} and {@link #storeSketch(int, Sketch)} with a reusable
+ * sketch, while {@link #getResult(int)} returns a copy of the serialized sketch, so that the results handed over to the
+ * combine phase stay compact.
+ *
+ * The chunks are released by {@link #close()}, which the group-by executor calls once the segment is processed: the
+ * serialized sketches are copied on heap, and the result holder is read-only from then on. The chunks of a result
+ * holder that is never closed (e.g. when the query fails) are only released when it is garbage collected.
+ */
+public class OffHeapSketchGroupByResultHolder implements GroupByResultHolder {
+  private static final int MIN_CHUNK_SIZE = 16 * 1024;
+  private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+  private static final int NO_SLOT = -1;
+
+  private final SketchType _sketchType;
+  private final int _maxCapacity;
+  private int _resultHolderCapacity;
+
+  // Slot of each group key: chunk id, offset inside the chunk, slot size and serialized sketch size.
+  private int[] _chunkIds;
+  private int[] _offsets;
+  private int[] _slotSizes;
+  private int[] _sketchSizes;
+
+  private final List<PinotDataBuffer> _chunks = new ArrayList<>();
+  private final List<ByteBuffer> _chunkBuffers = new ArrayList<>();
+  private int _currentChunkSize = 0;
+  private int _currentChunkOffset = 0;
+  private int _currentChunkId = NO_SLOT;
+  private long _offHeapMemoryAllocated = 0;
+
+  // Serialized sketch of each group key, once the result holder is closed.
+  private byte[][] _closedResults;
+
+  /**
+   * Constructor for the class.
+   *
+   * @param function Sketch aggregation function to create the sketches
+   * @param initialCapacity Initial capacity of result holder
+   * @param maxCapacity Max capacity of result holder
+   */
+  public OffHeapSketchGroupByResultHolder(SketchAggregationFunction function, int initialCapacity, int maxCapacity) {
+    _sketchType = function.createSketch().getType();
+    _maxCapacity = maxCapacity;
+    _resultHolderCapacity = initialCapacity;
+    _chunkIds = new int[initialCapacity];
+    Arrays.fill(_chunkIds, NO_SLOT);
+    _offsets = new int[initialCapacity];
+    _slotSizes = new int[initialCapacity];
+    _sketchSizes = new int[initialCapacity];
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param capacity
+   */
+  @Override
+  public void ensureCapacity(int capacity) {
+    Preconditions.checkArgument(capacity <= _maxCapacity);
+    checkNotClosed();
+
+    if (capacity > _resultHolderCapacity) {
+      int copyLength = _resultHolderCapacity;
+      _resultHolderCapacity = Math.max(_resultHolderCapacity * 2, capacity);
+
+      // Cap the growth to maximum possible number of group keys
+      _resultHolderCapacity = Math.min(_resultHolderCapacity, _maxCapacity);
+
+      _chunkIds = Arrays.copyOf(_chunkIds, _resultHolderCapacity);
+      Arrays.fill(_chunkIds, copyLength, _resultHolderCapacity, NO_SLOT);
+      _offsets = Arrays.copyOf(_offsets, _resultHolderCapacity);
+      _slotSizes = Arrays.copyOf(_slotSizes, _resultHolderCapacity);
+      _sketchSizes = Arrays.copyOf(_sketchSizes, _resultHolderCapacity);
+    }
+  }
+
+  /**
+   * Resets the given sketch and loads the sketch for the given group key into it.
+   *
+   * @param groupKey
+   * @param sketch reusable sketch to load into.
+   * @return false if there is no sketch for the group key (the sketch is left empty), true otherwise.
+   */
+  public boolean loadSketch(int groupKey, Sketch sketch) {
+    checkNotClosed();
+    sketch.reset();
+    int chunkId = _chunkIds[groupKey];
+    if (chunkId == NO_SLOT) {
+      return false;
+    }
+    ByteBuffer chunk = _chunkBuffers.get(chunkId);
+    int offset = _offsets[groupKey];
+    chunk.limit(offset + _sketchSizes[groupKey]).position(offset);
+    sketch.merge(chunk);
+    return true;
+  }
+
+  /**
+   * Stores the given sketch for the given group key.
+   *
+   * @param groupKey
+   * @param sketch
+   */
+  public void storeSketch(int groupKey, Sketch sketch) {
+    checkNotClosed();
+    int sketchSize = sketch.getSerializedSizeInBytes();
+    if (_chunkIds[groupKey] == NO_SLOT || _slotSizes[groupKey] < sketchSize) {
+      allocateSlot(groupKey, sketchSize);
+    }
+    ByteBuffer chunk = _chunkBuffers.get(_chunkIds[groupKey]);
+    int offset = _offsets[groupKey];
+    chunk.limit(offset + _slotSizes[groupKey]).position(offset);
+    sketch.serialize(chunk);
+    _sketchSizes[groupKey] = sketchSize;
+  }
+
+  private void allocateSlot(int groupKey, int sketchSize) {
+    int slotSize = Math.max(Integer.highestOneBit(sketchSize - 1) << 1, 1);
+    if (slotSize > MAX_CHUNK_SIZE) {
+      // Sketch larger than a chunk gets a dedicated chunk.
+      _chunkIds[groupKey] = allocateChunk(sketchSize);
+      _offsets[groupKey] = 0;
+      _slotSizes[groupKey] = sketchSize;
+      return;
+    }
+    if (_currentChunkOffset + slotSize > _currentChunkSize) {
+      _currentChunkSize = Math.min(Math.max(_currentChunkSize * 2, Math.max(slotSize, MIN_CHUNK_SIZE)), MAX_CHUNK_SIZE);
+      _currentChunkId = allocateChunk(_currentChunkSize);
+      _currentChunkOffset = 0;
+    }
+    _chunkIds[groupKey] = _currentChunkId;
+    _offsets[groupKey] = _currentChunkOffset;
+    _slotSizes[groupKey] = slotSize;
+    _currentChunkOffset += slotSize;
+  }
+
+  private int allocateChunk(int chunkSize) {
+    PinotDataBuffer chunk = PinotDataBuffer.allocateDirect(chunkSize);
+    _chunks.add(chunk);
+    _chunkBuffers.add(chunk.toDirectByteBuffer(0, chunkSize));
+    _offHeapMemoryAllocated += chunkSize;
+    return _chunks.size() - 1;
+  }
+
+  private void checkNotClosed() {
+    Preconditions.checkState(_closedResults == null, "Result holder is closed, sketches cannot be updated");
+  }
+
+  /**
+   * Returns the number of bytes of off-heap memory currently allocated.
+   */
+  public long getOffHeapMemoryAllocated() {
+    return _offHeapMemoryAllocated;
+  }
+
+  /**
+   * Copies the serialized sketches on heap, and releases the off-heap memory. The results can still be read through
+   * {@link #getResult(int)}, but the sketches can no longer be updated. Closing a closed result holder is a no-op.
+   */
+  public void close() {
+    if (_closedResults != null) {
+      return;
+    }
+    _closedResults = new byte[_resultHolderCapacity][];
+    for (int groupKey = 0; groupKey < _resultHolderCapacity; groupKey++) {
+      _closedResults[groupKey] = readSerializedSketch(groupKey);
+    }
+    for (PinotDataBuffer chunk : _chunks) {
+      chunk.close();
+    }
+    _chunks.clear();
+    _chunkBuffers.clear();
+    _offHeapMemoryAllocated = 0;
+  }
+
+  @Nullable
+  private byte[] readSerializedSketch(int groupKey) {
+    int chunkId = _chunkIds[groupKey];
+    if (chunkId == NO_SLOT) {
+      return null;
+    }
+    ByteBuffer chunk = _chunkBuffers.get(chunkId);
+    int offset = _offsets[groupKey];
+    chunk.limit(offset + _sketchSizes[groupKey]).position(offset);
+    byte[] bytes = new byte[_sketchSizes[groupKey]];
+    chunk.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Returns a {@link SerializedSketch} holding a copy of the sketch for the given group key, or null if there is no
+   * sketch for the group key.
+   *
+   * @param groupKey
+   * @return
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T getResult(int groupKey) {
+    // Serialized sketches never write into their bytes, so the closed results can be shared.
+    byte[] bytes = (_closedResults != null) ? _closedResults[groupKey] : readSerializedSketch(groupKey);
+    if (bytes == null) {
+      return null;
+    }
+    return (T) new SerializedSketch(_sketchType, bytes);
+  }
+
+  @Override
+  public void setValueForKey(int groupKey, Object newValue) {
+    storeSketch(groupKey, (Sketch) newValue);
+  }
+
+  @Override
+  public double getDoubleResult(int groupKey) {
+    throw new RuntimeException(
+        "Unsupported method getDoubleResult (returning double) for class " + getClass().getName());
+  }
+
+  @Override
+  public void setValueForKey(int groupKey, double newValue) {
+    throw new RuntimeException(
+        "Unsupported method 'putValueForKey' (with double param) for class " + getClass().getName());
+  }
+}
@@ -58,6 +58,8 @@ public class IntermediateResultsBlock implements Block {
   private AggregationGroupByResult _aggregationGroupByResult;
   private DataSchema _dataSchema;
   private Collection<Serializable[]> _selectionResult;
+  private long _numGroupsTrimmed;
+  private double[] _groupByTrimBounds;
 
   private static String REQUEST_ID = "requestId";
   private static String NUM_DOCS_SCANNED = "numDocsScanned";
@@ -167,6 +169,17 @@ public class IntermediateResultsBlock implements Block {
     dataTable.getMetadata().put(NUM_DOCS_SCANNED, _numDocsScanned + "");
     dataTable.getMetadata().put(TIME_USED_MS, _timeUsedMs + "");
     dataTable.getMetadata().put(TOTAL_DOCS, _totalRawDocs + "");
+    if (_groupByTrimBounds != null) {
+      dataTable.getMetadata().put(DataTable.NUM_GROUPS_TRIMMED_METADATA_KEY, Long.toString(_numGroupsTrimmed));
+      StringBuilder trimBounds = new StringBuilder();
+      for (int i = 0; i < _groupByTrimBounds.length; i++) {
+        if (i > 0) {
+          trimBounds.append(',');
+        }
+        trimBounds.append(_groupByTrimBounds[i]);
+      }
+      dataTable.getMetadata().put(DataTable.GROUP_BY_TRIM_BOUNDS_METADATA_KEY, trimBounds.toString());
+    }
     if (_processingExceptions != null && _processingExceptions.size() > 0) {
       for (int i = 0; i < _processingExceptions.size(); ++i) {
         dataTable.addException(_processingExceptions.get(i));
@@ -311,4 +324,23 @@ public class IntermediateResultsBlock implements Block {
   public AggregationGroupByResult getAggregationGroupByResult() {
     return _aggregationGroupByResult;
   }
+
+  public long getNumGroupsTrimmed() {
+    return _numGroupsTrimmed;
+  }
+
+  public double[] getGroupByTrimBounds() {
+    return _groupByTrimBounds;
+  }
+
+  /**
+   * Set the statistics of the trim of the group by results, reported to the broker.
+   *
+   * @param numGroupsTrimmed Number of groups dropped.
+   * @param groupByTrimBounds Value of the last group kept for each aggregation function.
+   */
+  public void setGroupByTrimStats(long numGroupsTrimmed, double[] groupByTrimBounds) {
+    _numGroupsTrimmed = numGroupsTrimmed;
+    _groupByTrimBounds = groupByTrimBounds;
+  }
 }
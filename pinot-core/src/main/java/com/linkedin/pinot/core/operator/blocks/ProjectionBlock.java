@@ -24,20 +24,32 @@ import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.BlockMetadata;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.operator.aggregation.SingleValueBlockCache;
 
 /**
  * ProjectionBlock holds a column name to Block Map.
  * It provides DocIdSetBlock and DataBlock for a given column.
+ *
+ * When constructed with a {@link SingleValueBlockCache}, it also serves the values of the whole doc id block in batch,
+ * as primitive arrays that are shared by all consumers of the block (e.g. group key generation and aggregation on the
+ * same column only read the dictionary ids once). The arrays are owned by the projection operator and are overwritten
+ * when the next block is fetched, so consumers must not hold on to them.
  */
 public class ProjectionBlock implements Block {
 
   private final Map<String, Block> _blockMap;
   private final Block _docIdSetBlock;
+  private final SingleValueBlockCache _blockCache;
 
   public ProjectionBlock(Map<String, Block> blockMap, Block docIdSetBlock) {
+    this(blockMap, docIdSetBlock, null);
+  }
+
+  public ProjectionBlock(Map<String, Block> blockMap, Block docIdSetBlock, SingleValueBlockCache blockCache) {
     super();
     this._blockMap = blockMap;
     this._docIdSetBlock = docIdSetBlock;
+    this._blockCache = blockCache;
   }
 
   @Override
@@ -78,4 +90,81 @@ public class ProjectionBlock implements Block {
     return _docIdSetBlock;
   }
 
+  /**
+   * Get the doc id array for this block. Valid doc ids start at index 0 and the number of valid doc ids is given by
+   * {@link #getNumDocs()}.
+   *
+   * @return doc id array.
+   */
+  public int[] getDocIds() {
+    return _blockCache.getDocIds();
+  }
+
+  /**
+   * Get the number of documents in this block.
+   *
+   * @return number of documents.
+   */
+  public int getNumDocs() {
+    return _blockCache.getLength();
+  }
+
+  /**
+   * Get the dictionary ids of a single value column for all documents in this block.
+   *
+   * @param column column name.
+   * @return dictionary id array.
+   */
+  public int[] getDictIdsForSVColumn(String column) {
+    return _blockCache.getDictIdArrayForColumn(column);
+  }
+
+  /**
+   * Get the long values of a single value column for all documents in this block.
+   *
+   * @param column column name.
+   * @return long value array.
+   */
+  public long[] getLongValuesForSVColumn(String column) {
+    return _blockCache.getLongValueArrayForColumn(column);
+  }
+
+  /**
+   * Get the double values of a single value column for all documents in this block.
+   *
+   * @param column column name.
+   * @return double value array.
+   */
+  public double[] getDoubleValuesForSVColumn(String column) {
+    return _blockCache.getDoubleValueArrayForColumn(column);
+  }
+
+  /**
+   * Get the hash codes of the values of a single value column for all documents in this block.
+   *
+   * @param column column name.
+   * @return hash code array.
+   */
+  public double[] getHashCodesForSVColumn(String column) {
+    return _blockCache.getHashCodeArrayForColumn(column);
+  }
+
+  /**
+   * Get the string values of a single value column for all documents in this block.
+   *
+   * @param column column name.
+   * @return string value array.
+   */
+  public String[] getStringValuesForSVColumn(String column) {
+    return _blockCache.getStringValueArrayForColumn(column);
+  }
+
+  /**
+   * Get the block cache backing the batch accessors of this block.
+   *
+   * @return block cache.
+   */
+  public SingleValueBlockCache getBlockCache() {
+    return _blockCache;
+  }
 }
@@ -36,26 +36,27 @@ public final class AndDocIdIterator implements BlockDocIdIterator {
   private boolean hasScanBasedIterators;
 
   public AndDocIdIterator(BlockDocIdIterator[] blockDocIdIterators) {
-    int numIndexBasedIterators = 0;
     int numScanBasedIterators = 0;
     for (int i = 0; i < blockDocIdIterators.length; i++) {
-      if (blockDocIdIterators[i] instanceof IndexBasedDocIdIterator) {
-        numIndexBasedIterators = numIndexBasedIterators + 1;
-      } else if (blockDocIdIterators[i] instanceof ScanBasedDocIdIterator) {
+      if (blockDocIdIterators[i] instanceof ScanBasedDocIdIterator) {
         numScanBasedIterators = numScanBasedIterators + 1;
       }
     }
-    // if we have at least one index based then do intersection based on index based only, and then
-    // check if matching docs apply on scan based iterator
-    if (numIndexBasedIterators > 0 && numScanBasedIterators > 0) {
+    // do the intersection on the non scan based iterators only, and then check if the matching docs apply on the scan
+    // based iterators. If all iterators are scan based, the first one (the most selective one, as ordered by the
+    // plan) drives the intersection and the other ones are only probed.
+    if (numScanBasedIterators > 0 && blockDocIdIterators.length > 1) {
       hasScanBasedIterators = true;
-      int nonScanIteratorsSize = blockDocIdIterators.length - numScanBasedIterators;
+      int numDrivingScanBasedIterators = (numScanBasedIterators == blockDocIdIterators.length) ? 1 : 0;
+      int nonScanIteratorsSize = blockDocIdIterators.length - numScanBasedIterators + numDrivingScanBasedIterators;
       this.docIdIterators = new BlockDocIdIterator[nonScanIteratorsSize];
-      this.scanBasedDocIdIterators = new ScanBasedDocIdIterator[numScanBasedIterators];
+      this.scanBasedDocIdIterators =
+          new ScanBasedDocIdIterator[numScanBasedIterators - numDrivingScanBasedIterators];
       int nonScanBasedIndex = 0;
       int scanBasedIndex = 0;
       for (int i = 0; i < blockDocIdIterators.length; i++) {
-        if (blockDocIdIterators[i] instanceof ScanBasedDocIdIterator) {
+        boolean isDriving = numDrivingScanBasedIterators > 0 && i == 0;
+        if (blockDocIdIterators[i] instanceof ScanBasedDocIdIterator && !isDriving) {
           this.scanBasedDocIdIterators[scanBasedIndex++] =
               (ScanBasedDocIdIterator) blockDocIdIterators[i];
         } else {
@@ -205,11 +205,14 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
       // At this point, we must have 'answer' to be non-null.
       assert (answer != null) : "sortedRangeSets=" + sortedRangeSets.size() + ",childBitmaps=" + childBitmaps.size();
 
-      // handle raw iterators
+      // handle raw iterators, they are ordered from the most selective one and only probed for the docIds left, so
+      // once no docId is left the remaining scans are skipped
       for (FilterBlockDocIdSet scanBasedDocIdSet : scanBasedDocIdSets) {
+        if (answer.isEmpty()) {
+          break;
+        }
         ScanBasedDocIdIterator iterator = (ScanBasedDocIdIterator) scanBasedDocIdSet.iterator();
-        MutableRoaringBitmap scanAnswer = iterator.applyAnd(answer);
-        answer.and(scanAnswer);
+        answer = iterator.applyAnd(answer);
       }
       long end = System.currentTimeMillis();
       LOGGER.debug("Time to evaluate and Filter:{}", (end - start));
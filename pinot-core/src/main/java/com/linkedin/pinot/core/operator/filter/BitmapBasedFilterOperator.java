@@ -26,7 +26,6 @@ import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.operator.blocks.BaseFilterBlock;
 import com.linkedin.pinot.core.operator.blocks.BitmapBlock;
 import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
-import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
@@ -64,13 +63,14 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
     InvertedIndexReader invertedIndex = dataSource.getInvertedIndex();
     Block dataSourceBlock = dataSource.nextBlock();
     Dictionary dictionary = dataSource.getDictionary();
-    PredicateEvaluator evaluator = PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, dictionary);
+    PredicateEvaluator evaluator = getPredicateEvaluator(dictionary);
     int[] dictionaryIds;
     boolean exclusion = false;
     switch (predicate.getType()) {
       case EQ:
       case IN:
       case RANGE:
+      case REGEX:
         dictionaryIds = evaluator.getMatchingDictionaryIds();
         break;
 
@@ -79,9 +79,8 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
         exclusion = true;
         dictionaryIds = evaluator.getNonMatchingDictionaryIds();
         break;
-      case REGEX:
       default:
-        throw new UnsupportedOperationException("Regex is not supported");
+        throw new UnsupportedOperationException("Unsupported predicate type: " + predicate.getType());
     }
     ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[dictionaryIds.length];
     for (int i = 0; i < dictionaryIds.length; i++) {
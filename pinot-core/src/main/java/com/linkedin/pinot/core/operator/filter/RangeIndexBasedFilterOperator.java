@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockMetadata;
+import com.linkedin.pinot.core.common.BlockMultiValIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.operator.blocks.BaseFilterBlock;
+import com.linkedin.pinot.core.operator.blocks.BitmapBlock;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.RangeOfflineDictionaryPredicateEvaluator;
+import com.linkedin.pinot.core.segment.index.readers.BitmapRangeIndexReader;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Filter operator for RANGE predicates on columns with a range index. The buckets that lie entirely within the
+ * matching dictionary id range are OR-ed together, and only the docs of the (at most two) partially covered edge
+ * buckets are checked against the forward index.
+ */
+public class RangeIndexBasedFilterOperator extends BaseFilterOperator {
+  private final DataSource dataSource;
+  private final int startDocId;
+  private final int endDocId;
+
+  /**
+   * @param dataSource
+   * @param startDocId inclusive
+   * @param endDocId inclusive
+   */
+  public RangeIndexBasedFilterOperator(DataSource dataSource, int startDocId, int endDocId) {
+    this.dataSource = dataSource;
+    this.startDocId = startDocId;
+    this.endDocId = endDocId;
+  }
+
+  @Override
+  public boolean open() {
+    return true;
+  }
+
+  @Override
+  public BaseFilterBlock nextFilterBlock(BlockId blockId) {
+    Block dataSourceBlock = dataSource.nextBlock();
+    PredicateEvaluator evaluator = getPredicateEvaluator(dataSource.getDictionary());
+    MutableRoaringBitmap matchingDocIds = new MutableRoaringBitmap();
+
+    if (!evaluator.alwaysFalse()) {
+      int rangeStart;
+      int rangeEnd;
+      if (evaluator instanceof RangeOfflineDictionaryPredicateEvaluator) {
+        rangeStart = ((RangeOfflineDictionaryPredicateEvaluator) evaluator).getRangeStartIndex();
+        rangeEnd = ((RangeOfflineDictionaryPredicateEvaluator) evaluator).getRangeEndIndex();
+      } else {
+        int[] matchingDictIds = evaluator.getMatchingDictionaryIds();
+        rangeStart = matchingDictIds[0];
+        rangeEnd = matchingDictIds[matchingDictIds.length - 1];
+      }
+
+      BitmapRangeIndexReader rangeIndex = dataSource.getRangeIndex();
+      int startBucket = rangeIndex.getBucketId(rangeStart);
+      int endBucket = rangeIndex.getBucketId(rangeEnd);
+      int firstFullBucket = (rangeIndex.getBucketStart(startBucket) == rangeStart) ? startBucket : startBucket + 1;
+      int cardinality = dataSource.getDictionary().length();
+      int endBucketLastDictId = Math.min(rangeIndex.getBucketStart(endBucket + 1), cardinality) - 1;
+      int lastFullBucket = (endBucketLastDictId == rangeEnd) ? endBucket : endBucket - 1;
+
+      for (int bucketId = firstFullBucket; bucketId <= lastFullBucket; bucketId++) {
+        matchingDocIds.or(rangeIndex.getBucket(bucketId));
+      }
+      if (startBucket < firstFullBucket || (startBucket == endBucket && endBucket > lastFullBucket)) {
+        addMatchingDocsInBucket(rangeIndex.getBucket(startBucket), dataSourceBlock, evaluator, matchingDocIds);
+      }
+      if (endBucket > lastFullBucket && endBucket != startBucket) {
+        addMatchingDocsInBucket(rangeIndex.getBucket(endBucket), dataSourceBlock, evaluator, matchingDocIds);
+      }
+    }
+
+    return new BitmapBlock(dataSource.getOperatorName(), dataSourceBlock.getMetadata(), startDocId, endDocId,
+        new ImmutableRoaringBitmap[]{matchingDocIds}, false);
+  }
+
+  /**
+   * Checks each doc of a partially covered bucket against the forward index, and adds the matching ones.
+   */
+  private void addMatchingDocsInBucket(ImmutableRoaringBitmap bucket, Block dataSourceBlock,
+      PredicateEvaluator evaluator, MutableRoaringBitmap matchingDocIds) {
+    BlockMetadata blockMetadata = dataSourceBlock.getMetadata();
+    IntIterator docIdIterator = bucket.getIntIterator();
+    if (blockMetadata.isSingleValue()) {
+      BlockSingleValIterator valueIterator = (BlockSingleValIterator) dataSourceBlock.getBlockValueSet().iterator();
+      while (docIdIterator.hasNext()) {
+        int docId = docIdIterator.next();
+        valueIterator.skipTo(docId);
+        if (evaluator.apply(valueIterator.nextIntVal())) {
+          matchingDocIds.add(docId);
+        }
+      }
+    } else {
+      BlockMultiValIterator valueIterator = (BlockMultiValIterator) dataSourceBlock.getBlockValueSet().iterator();
+      int[] dictIds = new int[blockMetadata.getMaxNumberOfMultiValues()];
+      while (docIdIterator.hasNext()) {
+        int docId = docIdIterator.next();
+        // A multi-value doc may already have matched through another bucket.
+        if (matchingDocIds.contains(docId)) {
+          continue;
+        }
+        valueIterator.skipTo(docId);
+        int length = valueIterator.nextIntVal(dictIds);
+        if (evaluator.apply(dictIds, length)) {
+          matchingDocIds.add(docId);
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean close() {
+    return true;
+  }
+}
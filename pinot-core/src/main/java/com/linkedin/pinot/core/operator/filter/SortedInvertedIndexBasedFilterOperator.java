@@ -33,7 +33,6 @@ import com.linkedin.pinot.core.operator.blocks.BaseFilterBlock;
 import com.linkedin.pinot.core.operator.docidsets.FilterBlockDocIdSet;
 import com.linkedin.pinot.core.operator.docidsets.SortedDocIdSet;
 import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
-import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
 import com.linkedin.pinot.core.segment.index.readers.SortedInvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
@@ -73,12 +72,12 @@ public class SortedInvertedIndexBasedFilterOperator extends BaseFilterOperator {
     final SortedInvertedIndexReader invertedIndex = (SortedInvertedIndexReader) dataSource.getInvertedIndex();
     Dictionary dictionary = dataSource.getDictionary();
     List<IntPair> pairs = new ArrayList<IntPair>();
-    PredicateEvaluator evaluator = PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, dictionary);
+    PredicateEvaluator evaluator = getPredicateEvaluator(dictionary);
 
     // At this point, we need to create a list of matching docId ranges. There are two kinds of operators:
     //
-    // - "Additive" operators, such as EQ, IN and RANGE build up a list of ranges and merge overlapping/adjacent ones,
-    //   clipping the ranges to [startDocId; endDocId]
+    // - "Additive" operators, such as EQ, IN, RANGE and REGEX build up a list of ranges and merge overlapping/adjacent
+    //   ones, clipping the ranges to [startDocId; endDocId]
     //
     // - "Subtractive" operators, such as NEQ and NOT IN build up a list of ranges that do not match and build a list of
     //   matching intervals by subtracting a list of non-matching intervals from the given range of
@@ -96,6 +95,7 @@ public class SortedInvertedIndexBasedFilterOperator extends BaseFilterOperator {
       case EQ:
       case IN:
       case RANGE:
+      case REGEX:
         dictionaryIds = evaluator.getMatchingDictionaryIds();
         break;
       case NEQ:
@@ -103,8 +103,6 @@ public class SortedInvertedIndexBasedFilterOperator extends BaseFilterOperator {
         additiveRanges = false;
         dictionaryIds = evaluator.getNonMatchingDictionaryIds();
         break;
-      case REGEX:
-        throw new RuntimeException("Regex is not supported");
       default:
         throw new RuntimeException("Unimplemented!");
     }
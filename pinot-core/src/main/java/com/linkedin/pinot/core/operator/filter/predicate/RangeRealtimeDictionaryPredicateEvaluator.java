@@ -15,9 +15,7 @@
  */
 package com.linkedin.pinot.core.operator.filter.predicate;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.pinot.core.common.predicate.RangePredicate;
 import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
@@ -34,7 +32,6 @@ public class RangeRealtimeDictionaryPredicateEvaluator implements PredicateEvalu
 
   public RangeRealtimeDictionaryPredicateEvaluator(RangePredicate predicate, MutableDictionaryReader dictionary) {
     this.predicate = predicate;
-    List<Integer> ids = new ArrayList<Integer>();
     String rangeStart;
     String rangeEnd;
 
@@ -60,17 +57,8 @@ public class RangeRealtimeDictionaryPredicateEvaluator implements PredicateEvalu
       rangeEnd = upper;
     }
 
-    for (int dicId = 0; dicId < dictionary.length(); dicId++) {
-      if (dictionary.inRange(rangeStart, rangeEnd, dicId, incLower, incUpper)) {
-        ids.add(dicId);
-      }
-    }
-    matchingIds = new int[ids.size()];
-    dictIdSet = new IntOpenHashSet(ids.size());
-    for (int i = 0; i < matchingIds.length; i++) {
-      matchingIds[i] = ids.get(i);
-      dictIdSet.add(ids.get(i));
-    }
+    matchingIds = dictionary.getDictIdsInRange(rangeStart, rangeEnd, incLower, incUpper);
+    dictIdSet = new IntOpenHashSet(matchingIds);
   }
 
   @Override
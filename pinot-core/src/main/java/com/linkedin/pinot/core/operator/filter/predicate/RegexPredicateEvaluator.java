@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter.predicate;
+
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+import com.linkedin.pinot.core.common.predicate.RegexPredicate;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.BitSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Evaluates a regular expression once per dictionary value, so that the filter operators only have to deal with the
+ * matching dictionary ids, the same way as for an IN predicate.
+ * <p>For sorted string dictionaries, a regular expression anchored on a literal prefix (e.g. coming from a LIKE 'foo%'
+ * predicate) only needs to look at the range of values starting with that prefix.
+ */
+public class RegexPredicateEvaluator implements PredicateEvaluator {
+  private static final String META_CHARACTERS = ".[]()*+?{}|^$\\";
+  private static final String QUANTIFIERS = "*+?{";
+
+  private final RegexPredicate predicate;
+  private final int[] matchingIds;
+  private final BitSet matchingIdSet;
+
+  public RegexPredicateEvaluator(RegexPredicate predicate, Dictionary dictionary) {
+    this.predicate = predicate;
+
+    int startId = 0;
+    int endId = dictionary.length() - 1;
+    String prefix = getLiteralPrefix(predicate.getRegex());
+    if (!prefix.isEmpty() && dictionary instanceof StringDictionary) {
+      IntPair prefixRange = ((StringDictionary) dictionary).getPrefixRange(prefix);
+      startId = prefixRange.getLeft();
+      endId = prefixRange.getRight();
+    }
+
+    Matcher matcher = Pattern.compile(predicate.getRegex()).matcher("");
+    IntArrayList matchingIdList = new IntArrayList();
+    matchingIdSet = new BitSet();
+    for (int dictId = startId; dictId <= endId; dictId++) {
+      if (matcher.reset(dictionary.toString(dictId)).find()) {
+        matchingIdList.add(dictId);
+        matchingIdSet.set(dictId);
+      }
+    }
+    matchingIds = matchingIdList.toIntArray();
+  }
+
+  /**
+   * Returns the literal prefix every value matching the given regular expression starts with, or an empty string if
+   * the expression is not anchored or does not start with a literal.
+   */
+  public static String getLiteralPrefix(String regex) {
+    // Alternation applies to the whole expression, so a single '|' makes the prefix unreliable
+    if (regex.isEmpty() || regex.charAt(0) != '^' || regex.indexOf('|') >= 0) {
+      return "";
+    }
+
+    StringBuilder prefix = new StringBuilder();
+    int length = regex.length();
+    int i = 1;
+    while (i < length) {
+      char c = regex.charAt(i);
+      char literal;
+      int next;
+      if (c == '\\') {
+        // Escaped letters and digits are character classes or special constructs (\d, \w, \Q...)
+        if (i + 1 == length || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          break;
+        }
+        literal = regex.charAt(i + 1);
+        next = i + 2;
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        break;
+      } else {
+        literal = c;
+        next = i + 1;
+      }
+      // A quantified literal is not guaranteed to be in every match
+      if (next < length && QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+        break;
+      }
+      prefix.append(literal);
+      i = next;
+    }
+    return prefix.toString();
+  }
+
+  @Override
+  public boolean apply(int dictionaryId) {
+    return matchingIdSet.get(dictionaryId);
+  }
+
+  @Override
+  public boolean apply(int[] dictionaryIds) {
+    for (int dictId : dictionaryIds) {
+      if (matchingIdSet.get(dictId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean apply(int[] dictionaryIds, int length) {
+    for (int i = 0; i < length; i++) {
+      if (matchingIdSet.get(dictionaryIds[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int[] getMatchingDictionaryIds() {
+    return matchingIds;
+  }
+
+  @Override
+  public int[] getNonMatchingDictionaryIds() {
+    throw new UnsupportedOperationException(
+        "Returning non matching values is expensive for predicateType:" + predicate.getType());
+  }
+
+  @Override
+  public boolean alwaysFalse() {
+    return matchingIds.length == 0;
+  }
+}
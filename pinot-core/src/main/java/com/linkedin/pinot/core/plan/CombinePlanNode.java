@@ -20,6 +20,7 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.MCombineGroupByOperator;
 import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
 import com.linkedin.pinot.core.util.trace.TraceRunnable;
 import java.util.ArrayList;
 import java.util.List;
@@ -43,13 +44,35 @@ public class CombinePlanNode implements PlanNode {
   private final ExecutorService _executorService;
   private final long _timeOutMs;
   private final boolean _enableNewAggreagationGroupBy;
+  private final int _groupByTrimSizeFactor;
+  private final int _groupByMinTrimSize;
 
   public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs,
       boolean enableNewAggreagationGroupBy) {
+    this(brokerRequest, executorService, timeOutMs, enableNewAggreagationGroupBy,
+        AggregationGroupByOperatorService.DEFAULT_TRIM_SIZE_FACTOR,
+        AggregationGroupByOperatorService.DEFAULT_MIN_TRIM_SIZE);
+  }
+
+  /**
+   * Constructor with the configuration of the trim of the group-by results combined by the new implementation of
+   * aggregation group-by, see {@link MCombineGroupByOperator}.
+   *
+   * @param brokerRequest
+   * @param executorService
+   * @param timeOutMs
+   * @param enableNewAggreagationGroupBy
+   * @param groupByTrimSizeFactor
+   * @param groupByMinTrimSize
+   */
+  public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs,
+      boolean enableNewAggreagationGroupBy, int groupByTrimSizeFactor, int groupByMinTrimSize) {
     _brokerRequest = brokerRequest;
     _executorService = executorService;
     _timeOutMs = timeOutMs;
     _enableNewAggreagationGroupBy = enableNewAggreagationGroupBy;
+    _groupByTrimSizeFactor = groupByTrimSizeFactor;
+    _groupByMinTrimSize = groupByMinTrimSize;
   }
 
   public void addPlanNode(PlanNode planNode) {
@@ -115,7 +138,8 @@ public class CombinePlanNode implements PlanNode {
   private Operator getCombineOperator(List<Operator> retOperators) {
     if (_enableNewAggreagationGroupBy && _brokerRequest.isSetAggregationsInfo()
         && _brokerRequest.getGroupBy() != null) {
-      return new MCombineGroupByOperator(retOperators, _executorService, _timeOutMs, _brokerRequest);
+      return new MCombineGroupByOperator(retOperators, _executorService, _timeOutMs, _brokerRequest,
+          _groupByTrimSizeFactor, _groupByMinTrimSize);
     }
     return new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest);
   }
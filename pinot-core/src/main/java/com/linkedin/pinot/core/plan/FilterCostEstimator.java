@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.operator.filter.BaseFilterOperator;
+import com.linkedin.pinot.core.operator.filter.BitmapBasedFilterOperator;
+import com.linkedin.pinot.core.operator.filter.RangeIndexBasedFilterOperator;
+import com.linkedin.pinot.core.operator.filter.SortedInvertedIndexBasedFilterOperator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.RangeOfflineDictionaryPredicateEvaluator;
+import com.linkedin.pinot.core.segment.index.readers.BitmapRangeIndexReader;
+import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
+import java.util.List;
+
+
+/**
+ * Estimates how many documents of a segment a filter operator matches, so that the children of an AND operator can be
+ * evaluated from the most to the least selective one.
+ * <ul>
+ *   <li>Sorted inverted index: exact, from the doc id range of each dictionary id.</li>
+ *   <li>Bitmap inverted index: from the cardinality of the bitmap of each dictionary id (exact for single value
+ *   columns). When many dictionary ids match, only the bitmaps of an evenly spaced sample of them are looked up and
+ *   the average cardinality is extrapolated to all of them.</li>
+ *   <li>Range index: from the cardinality of the bitmap of each bucket, pro rata of the dictionary ids of the bucket
+ *   within the range.</li>
+ *   <li>Scan: assumes the values are uniformly distributed, i.e. the number of matching dictionary ids over the
+ *   cardinality of the column.</li>
+ * </ul>
+ * Children of an AND are assumed to be independent, children of an OR to be disjoint.
+ */
+final class FilterCostEstimator {
+  // Above this number of dictionary ids, bitmap cardinalities are sampled rather than all looked up
+  static final int MAX_BITMAPS_TO_COUNT = 16;
+
+  private FilterCostEstimator() {
+  }
+
+  /**
+   * Returns the estimated number of documents matched by a leaf filter operator.
+   */
+  static double estimateLeaf(BaseFilterOperator operator, DataSource dataSource, PredicateEvaluator evaluator,
+      int numDocs) {
+    if (evaluator.alwaysFalse()) {
+      return 0;
+    }
+    boolean exclusive;
+    Predicate.Type predicateType = operator.getPredicate().getType();
+    switch (predicateType) {
+      case EQ:
+      case IN:
+      case RANGE:
+      case REGEX:
+        exclusive = false;
+        break;
+      case NEQ:
+      case NOT_IN:
+        exclusive = true;
+        break;
+      default:
+        return numDocs;
+    }
+
+    // Offline range evaluators expose their matching dictionary ids as a range, the array of ids is only built when
+    // the bitmaps of the ids are looked up
+    RangeOfflineDictionaryPredicateEvaluator rangeEvaluator = null;
+    if (evaluator instanceof RangeOfflineDictionaryPredicateEvaluator) {
+      rangeEvaluator = (RangeOfflineDictionaryPredicateEvaluator) evaluator;
+    }
+
+    double numDocsForDictionaryIds;
+    InvertedIndexReader invertedIndex = dataSource.getInvertedIndex();
+    try {
+      if (operator instanceof SortedInvertedIndexBasedFilterOperator) {
+        numDocsForDictionaryIds = 0;
+        for (int dictionaryId : getDictionaryIds(evaluator, exclusive)) {
+          IntPair docIdRange = invertedIndex.getMinMaxRangeFor(dictionaryId);
+          numDocsForDictionaryIds += docIdRange.getRight() - docIdRange.getLeft() + 1;
+        }
+      } else if (operator instanceof BitmapBasedFilterOperator) {
+        numDocsForDictionaryIds = estimateBitmaps(invertedIndex, getDictionaryIds(evaluator, exclusive));
+      } else if (operator instanceof RangeIndexBasedFilterOperator) {
+        int rangeStart;
+        int rangeEnd;
+        if (rangeEvaluator != null) {
+          rangeStart = rangeEvaluator.getRangeStartIndex();
+          rangeEnd = rangeEvaluator.getRangeEndIndex();
+        } else {
+          int[] dictionaryIds = getDictionaryIds(evaluator, exclusive);
+          if (dictionaryIds.length == 0) {
+            return exclusive ? numDocs : 0;
+          }
+          rangeStart = dictionaryIds[0];
+          rangeEnd = dictionaryIds[dictionaryIds.length - 1];
+        }
+        numDocsForDictionaryIds =
+            estimateRange(dataSource.getRangeIndex(), rangeStart, rangeEnd, dataSource.getDictionary().length());
+      } else {
+        int numDictionaryIds;
+        if (rangeEvaluator != null) {
+          numDictionaryIds = rangeEvaluator.getRangeEndIndex() - rangeEvaluator.getRangeStartIndex() + 1;
+        } else {
+          numDictionaryIds = getDictionaryIds(evaluator, exclusive).length;
+        }
+        int cardinality = Math.max(dataSource.getDictionary().length(), 1);
+        numDocsForDictionaryIds = (double) numDocs * numDictionaryIds / cardinality;
+      }
+    } catch (UnsupportedOperationException e) {
+      return numDocs;
+    }
+    numDocsForDictionaryIds = Math.min(numDocsForDictionaryIds, numDocs);
+    return exclusive ? numDocs - numDocsForDictionaryIds : numDocsForDictionaryIds;
+  }
+
+  /**
+   * Returns the matching dictionary ids, or the non matching ones for exclusive predicates.
+   */
+  private static int[] getDictionaryIds(PredicateEvaluator evaluator, boolean exclusive) {
+    return exclusive ? evaluator.getNonMatchingDictionaryIds() : evaluator.getMatchingDictionaryIds();
+  }
+
+  private static double estimateBitmaps(InvertedIndexReader invertedIndex, int[] dictionaryIds) {
+    int numDictionaryIds = dictionaryIds.length;
+    if (numDictionaryIds <= MAX_BITMAPS_TO_COUNT) {
+      double estimate = 0;
+      for (int dictionaryId : dictionaryIds) {
+        estimate += invertedIndex.getImmutable(dictionaryId).getCardinality();
+      }
+      return estimate;
+    }
+    long sampledCardinality = 0;
+    for (int i = 0; i < MAX_BITMAPS_TO_COUNT; i++) {
+      int dictionaryId = dictionaryIds[(int) ((long) i * numDictionaryIds / MAX_BITMAPS_TO_COUNT)];
+      sampledCardinality += invertedIndex.getImmutable(dictionaryId).getCardinality();
+    }
+    return (double) sampledCardinality * numDictionaryIds / MAX_BITMAPS_TO_COUNT;
+  }
+
+  private static double estimateRange(BitmapRangeIndexReader rangeIndex, int rangeStart, int rangeEnd,
+      int cardinality) {
+    double estimate = 0;
+    int endBucket = rangeIndex.getBucketId(rangeEnd);
+    for (int bucketId = rangeIndex.getBucketId(rangeStart); bucketId <= endBucket; bucketId++) {
+      int bucketStart = rangeIndex.getBucketStart(bucketId);
+      int bucketEnd = Math.min(rangeIndex.getBucketStart(bucketId + 1), cardinality) - 1;
+      int numCovered = Math.min(rangeEnd, bucketEnd) - Math.max(rangeStart, bucketStart) + 1;
+      estimate += (double) rangeIndex.getBucket(bucketId).getCardinality() * numCovered / (bucketEnd - bucketStart + 1);
+    }
+    return estimate;
+  }
+
+  static double estimateAnd(List<Double> childEstimates, int numDocs) {
+    if (numDocs == 0) {
+      return 0;
+    }
+    double estimate = numDocs;
+    for (double childEstimate : childEstimates) {
+      estimate *= childEstimate / numDocs;
+    }
+    return estimate;
+  }
+
+  static double estimateOr(List<Double> childEstimates, int numDocs) {
+    double estimate = 0;
+    for (double childEstimate : childEstimates) {
+      estimate += childEstimate;
+    }
+    return Math.min(estimate, numDocs);
+  }
+}
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -40,9 +41,12 @@ import com.linkedin.pinot.core.operator.filter.BaseFilterOperator;
 import com.linkedin.pinot.core.operator.filter.BitmapBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.MatchEntireSegmentOperator;
 import com.linkedin.pinot.core.operator.filter.OrOperator;
+import com.linkedin.pinot.core.operator.filter.RangeIndexBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.ScanBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.SortedInvertedIndexBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.StarTreeIndexOperator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
 import com.linkedin.pinot.core.realtime.RealtimeSegment;
 
 
@@ -52,6 +56,8 @@ public class FilterPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(FilterPlanNode.class);
   private final BrokerRequest _brokerRequest;
   private final IndexSegment _segment;
+  // Estimated number of matching documents for each physical operator, used to order the children of AND operators
+  private final Map<Operator, Double> _estimatedNumDocs = new IdentityHashMap<>();
 
   public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest) {
     _segment = segment;
@@ -85,21 +91,26 @@ public class FilterPlanNode implements PlanNode {
     final List<FilterQueryTree> childFilters = filterQueryTree.getChildren();
     final boolean isLeaf = (childFilters == null) || childFilters.isEmpty();
 
+    final int numDocs = _segment.getSegmentMetadata().getTotalRawDocs();
     if (!isLeaf) {
       List<Operator> operators = new ArrayList<Operator>();
+      List<Double> childEstimates = new ArrayList<Double>();
       for (final FilterQueryTree query : childFilters) {
         Operator childOperator = constructPhysicalOperator(query);
         operators.add(childOperator);
+        childEstimates.add(_estimatedNumDocs.get(childOperator));
       }
       final FilterOperator filterType = filterQueryTree.getOperator();
       switch (filterType) {
         case AND:
-          reorder(operators);
+          reorderByEstimatedNumDocs(operators);
           ret = new AndOperator(operators);
+          _estimatedNumDocs.put(ret, FilterCostEstimator.estimateAnd(childEstimates, numDocs));
           break;
         case OR:
           reorder(operators);
           ret = new OrOperator(operators);
+          _estimatedNumDocs.put(ret, FilterCostEstimator.estimateOr(childEstimates, numDocs));
           break;
         default:
           throw new UnsupportedOperationException(
@@ -115,8 +126,10 @@ public class FilterPlanNode implements PlanNode {
       DataSourceMetadata dataSourceMetadata = ds.getDataSourceMetadata();
       BaseFilterOperator baseFilterOperator;
       int startDocId = 0;
-      int endDocId = _segment.getSegmentMetadata().getTotalRawDocs() - 1; //end is inclusive
-      if (dataSourceMetadata.hasInvertedIndex()) {
+      int endDocId = numDocs - 1; //end is inclusive
+      if (filterType.equals(FilterOperator.RANGE) && ds.getRangeIndex() != null) {
+        baseFilterOperator = new RangeIndexBasedFilterOperator(ds, startDocId, endDocId);
+      } else if (dataSourceMetadata.hasInvertedIndex()) {
         // range evaluation based on inv index is inefficient, so do this only if is NOT range.
         if (!filterType.equals(FilterOperator.RANGE)) {
           if (dataSourceMetadata.isSingleValue() && dataSourceMetadata.isSorted()) {
@@ -132,26 +145,66 @@ public class FilterPlanNode implements PlanNode {
         baseFilterOperator = new ScanBasedFilterOperator(ds, startDocId, endDocId);
       }
       baseFilterOperator.setPredicate(predicate);
+      // Build the predicate evaluator once, both for the estimate and for the operator
+      PredicateEvaluator evaluator = PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, ds.getDictionary());
+      baseFilterOperator.setPredicateEvaluator(evaluator);
+      _estimatedNumDocs.put(baseFilterOperator,
+          FilterCostEstimator.estimateLeaf(baseFilterOperator, ds, evaluator, numDocs));
       ret = baseFilterOperator;
     }
     return ret;
   }
 
   /**
-   * Re orders operators, puts Sorted -> Inverted and then Raw scan. TODO: With Inverted, we can
-   * further optimize based on cardinality
+   * Re orders operators, puts Sorted -> Inverted and then Raw scan.
    * @param operators
    */
   private void reorder(List<Operator> operators) {
+    final Map<Operator, Integer> operatorPriorityMap = getOperatorPriorities(operators);
+    Comparator<? super Operator> comparator = new Comparator<Operator>() {
+      @Override
+      public int compare(Operator o1, Operator o2) {
+        return Integer.compare(operatorPriorityMap.get(o1), operatorPriorityMap.get(o2));
+      }
+    };
+    Collections.sort(operators, comparator);
+  }
 
-    final Map<Operator, Integer> operatorPriorityMap = new HashMap<Operator, Integer>();
+  /**
+   * Re orders the children of an AND operator from the most to the least selective one. Scan based operators are
+   * put last: they are only probed for the documents matched by the other operators, so the most selective scan is
+   * probed first. Ties are broken with the fixed priorities of {@link #reorder(List)}.
+   * @param operators
+   */
+  private void reorderByEstimatedNumDocs(List<Operator> operators) {
+    final Map<Operator, Integer> operatorPriorityMap = getOperatorPriorities(operators);
+    Comparator<? super Operator> comparator = new Comparator<Operator>() {
+      @Override
+      public int compare(Operator o1, Operator o2) {
+        boolean isScan1 = o1 instanceof ScanBasedFilterOperator;
+        boolean isScan2 = o2 instanceof ScanBasedFilterOperator;
+        if (isScan1 != isScan2) {
+          return isScan1 ? 1 : -1;
+        }
+        int result = Double.compare(_estimatedNumDocs.get(o1), _estimatedNumDocs.get(o2));
+        if (result != 0) {
+          return result;
+        }
+        return Integer.compare(operatorPriorityMap.get(o1), operatorPriorityMap.get(o2));
+      }
+    };
+    Collections.sort(operators, comparator);
+  }
+
+  private static Map<Operator, Integer> getOperatorPriorities(List<Operator> operators) {
+    Map<Operator, Integer> operatorPriorityMap = new HashMap<Operator, Integer>();
     for (Operator operator : operators) {
       Integer priority = Integer.MAX_VALUE;
       if (operator instanceof SortedInvertedIndexBasedFilterOperator) {
         priority = 0;
       } else if (operator instanceof AndOperator) {
         priority = 1;
-      } else if (operator instanceof BitmapBasedFilterOperator) {
+      } else if (operator instanceof BitmapBasedFilterOperator || operator instanceof RangeIndexBasedFilterOperator) {
         priority = 2;
       } else if (operator instanceof ScanBasedFilterOperator) {
         priority = 3;
@@ -160,14 +213,7 @@ public class FilterPlanNode implements PlanNode {
       }
       operatorPriorityMap.put(operator, priority);
     }
-
-    Comparator<? super Operator> comparator = new Comparator<Operator>() {
-      @Override
-      public int compare(Operator o1, Operator o2) {
-        return Integer.compare(operatorPriorityMap.get(o1), operatorPriorityMap.get(o2));
-      }
-    };
-    Collections.sort(operators, comparator);
+    return operatorPriorityMap;
   }
 
   @Override
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.aggregation.MetadataBasedAggregationOperator;
+import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import com.linkedin.pinot.core.operator.filter.predicate.RangeOfflineDictionaryPredicateEvaluator;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Plan node for aggregation-only queries that can be answered from the segment metadata and dictionaries, see
+ * {@link MetadataBasedAggregationOperator}. Makes COUNT/MIN/MAX/MINMAXRANGE/DISTINCTCOUNT queries O(segments)
+ * instead of O(rows), when every document of the segment matches the filter.
+ */
+public class MetadataBasedAggregationPlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger("QueryPlanLog");
+
+  private final IndexSegment _indexSegment;
+  private final BrokerRequest _brokerRequest;
+
+  public MetadataBasedAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    _indexSegment = indexSegment;
+    _brokerRequest = brokerRequest;
+  }
+
+  /**
+   * Returns true if the aggregations (without group by) of the query can be answered from the metadata and dictionaries of the segment:
+   * <ul>
+   *   <li>The segment is an immutable segment without star tree, so its dictionaries are sorted and its documents are
+   *   raw documents.</li>
+   *   <li>All aggregation functions are COUNT, or MIN/MAX/MINMAXRANGE on a numeric column, or DISTINCTCOUNT, on single
+   *   value columns with a dictionary.</li>
+   *   <li>There is no filter, or every document of the segment matches the filter (e.g. a time range covering the
+   *   whole segment).</li>
+   * </ul>
+   */
+  public static boolean isFitForMetadataBasedPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    if (!brokerRequest.isSetAggregationsInfo() || brokerRequest.isSetGroupBy()) {
+      return false;
+    }
+    if (!(indexSegment instanceof IndexSegmentImpl) || indexSegment.getSegmentMetadata().hasStarTree()
+        || indexSegment.getSegmentMetadata().getTotalRawDocs() <= 0) {
+      return false;
+    }
+    for (AggregationInfo aggregationInfo : brokerRequest.getAggregationsInfo()) {
+      if (!isFitForMetadataBasedAggregation(indexSegment, aggregationInfo)) {
+        return false;
+      }
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    return filterQueryTree == null || matchesAllDocuments(indexSegment, filterQueryTree);
+  }
+
+  private static boolean isFitForMetadataBasedAggregation(IndexSegment indexSegment,
+      AggregationInfo aggregationInfo) {
+    String aggregationType = aggregationInfo.getAggregationType().toLowerCase();
+    if (aggregationType.equals(AggregationFunctionFactory.COUNT_AGGREGATION_FUNCTION)) {
+      return true;
+    }
+    boolean isMinMax;
+    switch (aggregationType) {
+      case AggregationFunctionFactory.MIN_AGGREGATION_FUNCTION:
+      case AggregationFunctionFactory.MAX_AGGREGATION_FUNCTION:
+      case AggregationFunctionFactory.MINMAXRANGE_AGGREGATION_FUNCTION:
+        isMinMax = true;
+        break;
+      case AggregationFunctionFactory.DISTINCTCOUNT_AGGREGATION_FUNCTION:
+        isMinMax = false;
+        break;
+      default:
+        return false;
+    }
+    String column = aggregationInfo.getAggregationParams().get("column").trim();
+    DataSource dataSource = indexSegment.getDataSource(column);
+    if (dataSource == null) {
+      return false;
+    }
+    DataSourceMetadata dataSourceMetadata = dataSource.getDataSourceMetadata();
+    return dataSourceMetadata.hasDictionary() && dataSourceMetadata.isSingleValue()
+        && (!isMinMax || dataSourceMetadata.getDataType().isNumber());
+  }
+
+  /**
+   * Returns true if every document of the segment matches the filter. A predicate matches all the documents if it
+   * matches all the values of the dictionary.
+   */
+  private static boolean matchesAllDocuments(IndexSegment indexSegment, FilterQueryTree filterQueryTree) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (!matchesAllDocuments(indexSegment, child)) {
+              return false;
+            }
+          }
+          return true;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (matchesAllDocuments(indexSegment, child)) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          return false;
+      }
+    }
+
+    DataSource dataSource = indexSegment.getDataSource(filterQueryTree.getColumn());
+    if (dataSource == null || !dataSource.getDataSourceMetadata().hasDictionary()) {
+      return false;
+    }
+    Dictionary dictionary = dataSource.getDictionary();
+    try {
+      PredicateEvaluator evaluator =
+          PredicateEvaluatorProvider.getPredicateFunctionFor(Predicate.newPredicate(filterQueryTree), dictionary);
+      if (evaluator instanceof RangeOfflineDictionaryPredicateEvaluator) {
+        RangeOfflineDictionaryPredicateEvaluator rangeEvaluator = (RangeOfflineDictionaryPredicateEvaluator) evaluator;
+        return rangeEvaluator.getRangeStartIndex() <= 0
+            && rangeEvaluator.getRangeEndIndex() >= dictionary.length() - 1;
+      }
+      return evaluator.getMatchingDictionaryIds().length == dictionary.length();
+    } catch (UnsupportedOperationException e) {
+      // Predicate evaluator cannot list the matching values, fall back to the filter
+      return false;
+    }
+  }
+
+  @Override
+  public Operator run() {
+    return new MetadataBasedAggregationOperator(_indexSegment, _brokerRequest.getAggregationsInfo());
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "Inner-Segment Plan Node :");
+    LOGGER.debug(prefix + "Operator: MetadataBasedAggregationOperator");
+    LOGGER.debug(prefix + "Argument 0: IndexSegment - " + _indexSegment.getSegmentName());
+    LOGGER.debug(prefix + "Argument 1: Aggregations - " + _brokerRequest.getAggregationsInfo());
+  }
+}
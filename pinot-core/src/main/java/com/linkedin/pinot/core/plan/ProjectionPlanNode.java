@@ -38,10 +38,12 @@ public class ProjectionPlanNode implements PlanNode {
   private final Map<String, ColumnarDataSourcePlanNode> _dataSourcePlanNodeMap =
       new HashMap<String, ColumnarDataSourcePlanNode>();
   private final DocIdSetPlanNode _docIdSetPlanNode;
+  private final IndexSegment _indexSegment;
   private MProjectionOperator _projectionOperator = null;
 
   public ProjectionPlanNode(IndexSegment indexSegment, String[] strings, DocIdSetPlanNode docIdSetPlanNode) {
     _docIdSetPlanNode = docIdSetPlanNode;
+    _indexSegment = indexSegment;
     for (String column : strings) {
       _dataSourcePlanNodeMap.put(column, new ColumnarDataSourcePlanNode(indexSegment, column, docIdSetPlanNode));
     }
@@ -49,6 +51,7 @@ public class ProjectionPlanNode implements PlanNode {
 
   public ProjectionPlanNode(IndexSegment indexSegment, DocIdSetPlanNode docIdSetPlanNode) {
     _docIdSetPlanNode = docIdSetPlanNode;
+    _indexSegment = indexSegment;
     for (String column : indexSegment.getColumnNames()) {
       _dataSourcePlanNodeMap.put(column, new ColumnarDataSourcePlanNode(indexSegment, column, docIdSetPlanNode));
     }
@@ -66,7 +69,7 @@ public class ProjectionPlanNode implements PlanNode {
       for (String column : _dataSourcePlanNodeMap.keySet()) {
         dataSourceMap.put(column, (DataSource) _dataSourcePlanNodeMap.get(column).run());
       }
-      _projectionOperator = new MProjectionOperator(dataSourceMap, docIdSetOperator);
+      _projectionOperator = new MProjectionOperator(dataSourceMap, docIdSetOperator, _indexSegment);
     }
     long end = System.currentTimeMillis();
     LOGGER.debug("Time take in ProjectionPlanNode: " + (end - start));
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.SegmentResultCacheOperator;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Plan node looking up the result of a segment in the {@link SegmentResultCache} before running the segment level
+ * plan. The underlying plan node is only run on a cache miss.
+ */
+public class SegmentResultCachePlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger("QueryPlanLog");
+
+  private final PlanNode _planNode;
+  private final BrokerRequest _brokerRequest;
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _key;
+
+  public SegmentResultCachePlanNode(PlanNode planNode, BrokerRequest brokerRequest,
+      SegmentResultCache segmentResultCache, SegmentResultCache.Key key) {
+    _planNode = planNode;
+    _brokerRequest = brokerRequest;
+    _segmentResultCache = segmentResultCache;
+    _key = key;
+  }
+
+  @Override
+  public Operator run() {
+    byte[] cachedResult = _segmentResultCache.get(_key);
+    if (cachedResult != null) {
+      return new SegmentResultCacheOperator(_brokerRequest, _segmentResultCache, _key, cachedResult, null);
+    }
+    return new SegmentResultCacheOperator(_brokerRequest, _segmentResultCache, _key, null, _planNode.run());
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "Segment Result Cache Plan Node :");
+    LOGGER.debug(prefix + "Operator: SegmentResultCacheOperator");
+    LOGGER.debug(prefix + "Argument 0: Inner Segment Plan -");
+    _planNode.showTree(prefix + "    ");
+  }
+}
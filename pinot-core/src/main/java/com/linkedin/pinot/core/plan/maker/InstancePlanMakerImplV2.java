@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.plan.maker;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.plan.AggregationGroupByImplementationType;
@@ -26,11 +27,16 @@ import com.linkedin.pinot.core.plan.AggregationPlanNode;
 import com.linkedin.pinot.core.plan.CombinePlanNode;
 import com.linkedin.pinot.core.plan.GlobalPlanImplV0;
 import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
+import com.linkedin.pinot.core.plan.MetadataBasedAggregationPlanNode;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.SegmentResultCachePlanNode;
 import com.linkedin.pinot.core.plan.SelectionPlanNode;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
 import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -47,7 +53,13 @@ import org.slf4j.LoggerFactory;
 public class InstancePlanMakerImplV2 implements PlanMaker {
   private static final Logger LOGGER = LoggerFactory.getLogger(InstancePlanMakerImplV2.class);
   private static final String ENABLE_NEW_AGGREGATION_GROUP_BY_CFG = "new.aggregation.groupby";
+  // Group-by results combined on the server are trimmed to the larger of factor * TOP N or min size groups.
+  private static final String GROUP_BY_TRIM_SIZE_FACTOR_CFG = "groupby.trim.size.factor";
+  private static final String GROUP_BY_MIN_TRIM_SIZE_CFG = "groupby.min.trim.size";
   private boolean _enableNewAggregationGroupByCfg = false;
+  private int _groupByTrimSizeFactor = AggregationGroupByOperatorService.DEFAULT_TRIM_SIZE_FACTOR;
+  private int _groupByMinTrimSize = AggregationGroupByOperatorService.DEFAULT_MIN_TRIM_SIZE;
+  private SegmentResultCache _segmentResultCache = null;
 
   /**
    * Default constructor.
@@ -66,6 +78,22 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     _enableNewAggregationGroupByCfg =
         queryExecutorConfig.getConfig().getBoolean(ENABLE_NEW_AGGREGATION_GROUP_BY_CFG, true);
     LOGGER.info("New AggregationGroupBy operator: {}", (_enableNewAggregationGroupByCfg) ? "Enabled" : "Disabled");
+    _groupByTrimSizeFactor = queryExecutorConfig.getConfig()
+        .getInt(GROUP_BY_TRIM_SIZE_FACTOR_CFG, AggregationGroupByOperatorService.DEFAULT_TRIM_SIZE_FACTOR);
+    _groupByMinTrimSize = queryExecutorConfig.getConfig()
+        .getInt(GROUP_BY_MIN_TRIM_SIZE_CFG, AggregationGroupByOperatorService.DEFAULT_MIN_TRIM_SIZE);
+    LOGGER.info("Group-by results trimmed to max({} * TOP N, {}) groups", _groupByTrimSizeFactor, _groupByMinTrimSize);
+  }
+
+  /**
+   * Constructor for usage when segment level results should be served from and added to the given cache.
+   *
+   * @param queryExecutorConfig
+   * @param segmentResultCache cache of segment level results, or null to disable caching.
+   */
+  public InstancePlanMakerImplV2(QueryExecutorConfig queryExecutorConfig, SegmentResultCache segmentResultCache) {
+    this(queryExecutorConfig);
+    _segmentResultCache = segmentResultCache;
   }
 
   @Override
@@ -77,8 +105,17 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
       boolean enableNewAggregationGroupBy) {
     // Aggregation
     if (brokerRequest.isSetAggregationsInfo()) {
+      if (enableNewAggregationGroupBy) {
+        // Answer 'distinctcounthll', 'percentileest' and 'percentiletdigest' from the sketches pre-aggregated in the
+        // star tree documents when possible, the rewritten request is specific to this segment.
+        brokerRequest = RequestUtils.performStarTreeSketchRewriting(indexSegment.getSegmentMetadata(), brokerRequest);
+      }
       if (!brokerRequest.isSetGroupBy()) {
         // Only Aggregation
+        if (MetadataBasedAggregationPlanNode.isFitForMetadataBasedPlan(indexSegment, brokerRequest)) {
+          // Answered from the segment metadata and dictionaries, without scanning
+          return new MetadataBasedAggregationPlanNode(indexSegment, brokerRequest);
+        }
         if (enableNewAggregationGroupBy) {
           return new AggregationPlanNode(indexSegment, brokerRequest);
         } else {
@@ -114,16 +151,34 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
 
     final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs,
-        _enableNewAggregationGroupByCfg);
+        _enableNewAggregationGroupByCfg, _groupByTrimSizeFactor, _groupByMinTrimSize);
     rootNode.setPlanNode(combinePlanNode);
 
+    byte[] fingerprint = null;
+    if (_segmentResultCache != null) {
+      fingerprint = RequestUtils.getFingerprint(brokerRequest);
+    }
     for (SegmentDataManager segmentDataManager : segmentDataManagers) {
       IndexSegment segment = segmentDataManager.getSegment();
-      combinePlanNode.addPlanNode(makeInnerSegmentPlan(segment, brokerRequest, _enableNewAggregationGroupByCfg));
+      PlanNode planNode = makeInnerSegmentPlan(segment, brokerRequest, _enableNewAggregationGroupByCfg);
+      if (fingerprint != null && isCacheable(segment)) {
+        SegmentResultCache.Key key =
+            new SegmentResultCache.Key(brokerRequest.getQuerySource().getTableName(), segment.getSegmentName(),
+                segment.getSegmentMetadata().getCrc(), fingerprint);
+        planNode = new SegmentResultCachePlanNode(planNode, brokerRequest, _segmentResultCache, key);
+      }
+      combinePlanNode.addPlanNode(planNode);
     }
     return new GlobalPlanImplV0(rootNode);
   }
 
+  /**
+   * Only results of immutable segments with a CRC can be cached, consuming realtime segments keep changing.
+   */
+  private static boolean isCacheable(IndexSegment indexSegment) {
+    return indexSegment instanceof IndexSegmentImpl && indexSegment.getSegmentMetadata().getCrc() != null;
+  }
+
   private boolean isGroupKeyFitForLong(IndexSegment indexSegment, BrokerRequest brokerRequest) {
     int totalBitSet = 0;
     for (final String column : brokerRequest.getGroupBy().getColumns()) {
@@ -34,6 +34,7 @@ import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregation
 import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.SumAggregationNoDictionaryFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountThetaAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.quantile.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +63,7 @@ public class AggregationFunctionRegistry {
     keyToFunctionWithDictionary.put("distinctcount", DistinctCountAggregationFunction.class);
     keyToFunctionWithDictionary.put("distinctcounthll", DistinctCountHLLAggregationFunction.class);
     keyToFunctionWithDictionary.put("fasthll", FastHllAggregationFunction.class);
+    keyToFunctionWithDictionary.put("distinctcounttheta", DistinctCountThetaAggregationFunction.class);
     // quantiles
     keyToFunctionWithDictionary.put("percentileest50", Percentileest50.class);
     keyToFunctionWithDictionary.put("percentileest90", Percentileest90.class);
@@ -71,6 +73,10 @@ public class AggregationFunctionRegistry {
     keyToFunctionWithDictionary.put("percentile90", Percentile90.class);
     keyToFunctionWithDictionary.put("percentile95", Percentile95.class);
     keyToFunctionWithDictionary.put("percentile99", Percentile99.class);
+    keyToFunctionWithDictionary.put("percentiletdigest50", PercentileTDigest50.class);
+    keyToFunctionWithDictionary.put("percentiletdigest90", PercentileTDigest90.class);
+    keyToFunctionWithDictionary.put("percentiletdigest95", PercentileTDigest95.class);
+    keyToFunctionWithDictionary.put("percentiletdigest99", PercentileTDigest99.class);
   }
 
   static {
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockMultiValIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.ThetaSketch;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.io.Serializable;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Distinct Count implemented using theta sketch estimation.
+ *
+ * The AggregateResult Type is ThetaSketch
+ * The ReduceResult Type is Long (estimation)
+ *
+ * Values are offered to the sketch as strings, so that all the segments hash the same value the same way regardless
+ * of how it is read. Unlike HyperLogLog, the intermediate theta sketches can be intersected and subtracted, see
+ * {@link ThetaSketch}.
+ */
+public class DistinctCountThetaAggregationFunction implements AggregationFunction<Sketch, Long> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DistinctCountThetaAggregationFunction.class);
+
+  private String _distinctCountThetaColumnName;
+
+  @Override
+  public void init(AggregationInfo aggregationInfo) {
+    _distinctCountThetaColumnName = aggregationInfo.getAggregationParams().get("column");
+  }
+
+  private void offerValueToThetaSketch(int docId, Block[] block, ThetaSketch sketch) {
+    Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
+
+    if (block[0].getMetadata().isSingleValue()) {
+      BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+      if (blockValIterator.skipTo(docId)) {
+        int dictionaryIndex = blockValIterator.nextIntVal();
+        if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
+          sketch.update(dictionaryReader.getStringValue(dictionaryIndex));
+        }
+      }
+    } else {
+      BlockMultiValIterator blockValIterator = (BlockMultiValIterator) block[0].getBlockValueSet().iterator();
+      int[] entries = new int[block[0].getMetadata().getMaxNumberOfMultiValues()];
+      if (blockValIterator.skipTo(docId)) {
+        int size = blockValIterator.nextIntVal(entries);
+        for (int i = 0; i < size; ++i) {
+          sketch.update(dictionaryReader.getStringValue(entries[i]));
+        }
+      }
+    }
+  }
+
+  @Override
+  public ThetaSketch aggregate(Block docIdSetBlock, Block[] block) {
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+
+    ThetaSketch ret = new ThetaSketch();
+    int docId;
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      offerValueToThetaSketch(docId, block, ret);
+    }
+    return ret;
+  }
+
+  @Override
+  public ThetaSketch aggregate(Sketch mergedResult, int docId, Block[] block) {
+    ThetaSketch sketch = (mergedResult == null) ? new ThetaSketch() : (ThetaSketch) mergedResult;
+    offerValueToThetaSketch(docId, block, sketch);
+    return sketch;
+  }
+
+  @Override
+  public List<Sketch> combine(List<Sketch> aggregationResultList, CombineLevel combineLevel) {
+    if ((aggregationResultList == null) || aggregationResultList.isEmpty()) {
+      return null;
+    }
+    Sketch merged = mergeToFirstInList(aggregationResultList);
+    aggregationResultList.clear();
+    aggregationResultList.add(merged);
+    return aggregationResultList;
+  }
+
+  @Override
+  public Sketch combineTwoValues(Sketch aggregationResult0, Sketch aggregationResult1) {
+    if (aggregationResult0 == null) {
+      return aggregationResult1;
+    }
+    if (aggregationResult1 == null) {
+      return aggregationResult0;
+    }
+    aggregationResult0.merge(aggregationResult1);
+    return aggregationResult0;
+  }
+
+  @Override
+  public Long reduce(List<Sketch> combinedResultList) {
+    if ((combinedResultList == null) || combinedResultList.isEmpty()) {
+      return 0L;
+    }
+    // The combined results may be serialized sketches, merge them into a new sketch.
+    ThetaSketch merged = new ThetaSketch();
+    for (Sketch sketch : combinedResultList) {
+      merged.merge(sketch);
+    }
+    return Math.round(merged.getEstimate());
+  }
+
+  @Override
+  public JSONObject render(Long finalAggregationResult) {
+    try {
+      return new JSONObject().put("value", finalAggregationResult.toString());
+    } catch (JSONException e) {
+      LOGGER.error("Caught exception while rendering aggregation result", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  @Override
+  public DataType aggregateResultDataType() {
+    return DataType.OBJECT;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return "distinctCountTheta_" + _distinctCountThetaColumnName;
+  }
+
+  @Override
+  public Serializable getDefaultValue() {
+    return new ThetaSketch();
+  }
+
+  private static Sketch mergeToFirstInList(List<Sketch> sketches) {
+    Sketch merged = sketches.get(0);
+    for (int i = 1; i < sketches.size(); i++) {
+      merged.merge(sketches.get(i));
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.quantile.tdigest;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Locale;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Percentile(Quantile) function implemented using t-digest estimation.
+ *
+ * Unlike the q-digest based percentileest functions, t-digest works on any numeric column, and keeps the extreme
+ * quantiles accurate with a small number of centroids.
+ */
+public class TDigestAggregationFunction implements AggregationFunction<Sketch, Double> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TDigestAggregationFunction.class);
+
+  private String _tDigestColumnName;
+  private final double _compression;
+  private final int _percentile;
+
+  public TDigestAggregationFunction(int percentile) {
+    this(percentile, TDigestSketch.DEFAULT_COMPRESSION);
+  }
+
+  public TDigestAggregationFunction(int percentile, double compression) {
+    _percentile = percentile;
+    _compression = compression;
+  }
+
+  @Override
+  public void init(AggregationInfo aggregationInfo) {
+    _tDigestColumnName = aggregationInfo.getAggregationParams().get("column");
+  }
+
+  private void offerValueToTDigest(int docId, Block[] block, TDigestSketch tDigest) {
+    Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+
+    if (blockValIterator.skipTo(docId)) {
+      int dictionaryIndex = blockValIterator.nextIntVal();
+      if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
+        tDigest.add(dictionaryReader.getDoubleValue(dictionaryIndex));
+      }
+    }
+  }
+
+  private static void checkDataType(Block[] block) {
+    DataType type = block[0].getMetadata().getDataType();
+    if (!type.isNumber()) {
+      throw new RuntimeException("Only numeric type columns can be used in percentiletdigest, get: " + type);
+    }
+  }
+
+  @Override
+  public TDigestSketch aggregate(Block docIdSetBlock, Block[] block) {
+    checkDataType(block);
+
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    TDigestSketch ret = new TDigestSketch(_compression);
+    int docId;
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      offerValueToTDigest(docId, block, ret);
+    }
+    return ret;
+  }
+
+  @Override
+  public TDigestSketch aggregate(Sketch mergedResult, int docId, Block[] block) {
+    checkDataType(block);
+
+    TDigestSketch tDigest = (mergedResult == null) ? new TDigestSketch(_compression) : (TDigestSketch) mergedResult;
+    offerValueToTDigest(docId, block, tDigest);
+    return tDigest;
+  }
+
+  @Override
+  public List<Sketch> combine(List<Sketch> aggregationResultList, CombineLevel combineLevel) {
+    if ((aggregationResultList == null) || aggregationResultList.isEmpty()) {
+      return null;
+    }
+
+    Sketch merged = mergeToFirstInList(aggregationResultList);
+    aggregationResultList.clear();
+    aggregationResultList.add(merged);
+    return aggregationResultList;
+  }
+
+  @Override
+  public Sketch combineTwoValues(Sketch aggregationResult0, Sketch aggregationResult1) {
+    if (aggregationResult0 == null) {
+      return aggregationResult1;
+    }
+    if (aggregationResult1 == null) {
+      return aggregationResult0;
+    }
+
+    aggregationResult0.merge(aggregationResult1);
+    return aggregationResult0;
+  }
+
+  @Override
+  public Double reduce(List<Sketch> combinedResultList) {
+    if ((combinedResultList == null) || combinedResultList.isEmpty()) {
+      return 0.0;
+    }
+
+    // The combined results may be serialized sketches, merge them into a new sketch.
+    TDigestSketch merged = new TDigestSketch(_compression);
+    for (Sketch sketch : combinedResultList) {
+      merged.merge(sketch);
+    }
+    if (merged.isEmpty()) {
+      return 0.0;
+    }
+    return merged.getQuantile(_percentile / 100.0);
+  }
+
+  @Override
+  public JSONObject render(Double finalAggregationResult) {
+    try {
+      return new JSONObject().put("value", String.format(Locale.US, "%1.5f", finalAggregationResult));
+    } catch (JSONException e) {
+      LOGGER.error("Caught exception while rendering aggregation result", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  @Override
+  public DataType aggregateResultDataType() {
+    return DataType.OBJECT;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return "percentileTDigest" + _percentile + "_" + _tDigestColumnName;
+  }
+
+  @Override
+  public Serializable getDefaultValue() {
+    return new TDigestSketch(_compression);
+  }
+
+  private static Sketch mergeToFirstInList(List<Sketch> tDigests) {
+    Sketch merged = tDigests.get(0);
+    for (int i = 1; i < tDigests.size(); i++) {
+      merged.merge(tDigests.get(i));
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.sketch;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Sketch kept in its serialized form, used for the per-group results of the sketch functions in the combine phase of
+ * group-by queries, so that the heap usage per group is the size of the serialized sketch.
+ *
+ * Merging into a serialized sketch loads it into a temporary sketch and serializes the result back, while merging a
+ * serialized sketch into another sketch goes through {@link Sketch#merge(ByteBuffer)}.
+ */
+public class SerializedSketch implements Sketch {
+  private final SketchType _type;
+  private byte[] _bytes;
+
+  /**
+   * @param type type of the sketch.
+   * @param bytes serialized sketch (without type), as written by {@link Sketch#serialize(ByteBuffer)}.
+   */
+  public SerializedSketch(SketchType type, byte[] bytes) {
+    _type = type;
+    _bytes = bytes;
+  }
+
+  /**
+   * Returns a read-only buffer over the serialized sketch (without type).
+   */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(_bytes).asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a new de-serialized sketch.
+   */
+  public Sketch toSketch() {
+    return _type.deserialize(ByteBuffer.wrap(_bytes));
+  }
+
+  private void store(Sketch sketch) {
+    ByteBuffer buffer = ByteBuffer.allocate(sketch.getSerializedSizeInBytes());
+    sketch.serialize(buffer);
+    _bytes = buffer.array();
+  }
+
+  @Override
+  public SketchType getType() {
+    return _type;
+  }
+
+  @Override
+  public void reset() {
+    Sketch sketch = toSketch();
+    sketch.reset();
+    store(sketch);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return toSketch().isEmpty();
+  }
+
+  @Override
+  public void merge(Sketch sketch) {
+    Sketch merged = toSketch();
+    merged.merge(sketch);
+    store(merged);
+  }
+
+  @Override
+  public void merge(ByteBuffer buffer) {
+    Sketch merged = toSketch();
+    merged.merge(buffer);
+    store(merged);
+  }
+
+  @Override
+  public int getSerializedSizeInBytes() {
+    return _bytes.length;
+  }
+
+  @Override
+  public void serialize(ByteBuffer buffer) {
+    buffer.put(_bytes);
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.sketch;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Interface for mergeable, serializable sketches used by the approximate aggregation functions.
+ *
+ * Sketches are designed to be reused: a single instance can be {@link #reset()} and loaded from its serialized form
+ * through {@link #merge(ByteBuffer)}, so that per-group sketches can be kept serialized (e.g. off-heap) and only one
+ * sketch object needs to live on heap at a time.
+ *
+ * The serialized form written by {@link #serialize(ByteBuffer)} does not include the sketch type, use
+ * {@link SketchSerDe} to get a self-describing byte array.
+ */
+public interface Sketch extends Serializable {
+
+  /**
+   * Returns the type of the sketch.
+   */
+  SketchType getType();
+
+  /**
+   * Resets the sketch to its empty state, keeping its parameters.
+   */
+  void reset();
+
+  /**
+   * Returns true if no value has been added into the sketch.
+   */
+  boolean isEmpty();
+
+  /**
+   * Merges the given sketch (of the same type) into this sketch in place.
+   *
+   * @param sketch sketch to merge.
+   */
+  void merge(Sketch sketch);
+
+  /**
+   * Merges the serialized sketch (of the same type) starting at the current position of the given buffer into this
+   * sketch in place, without materializing another sketch object. The buffer position is moved past the serialized
+   * sketch.
+   *
+   * @param buffer buffer containing the serialized sketch.
+   */
+  void merge(ByteBuffer buffer);
+
+  /**
+   * Returns the number of bytes needed by {@link #serialize(ByteBuffer)}.
+   */
+  int getSerializedSizeInBytes();
+
+  /**
+   * Serializes the sketch into the given buffer starting at its current position. The buffer position is moved past
+   * the serialized sketch.
+   *
+   * @param buffer buffer with at least {@link #getSerializedSizeInBytes()} remaining bytes.
+   */
+  void serialize(ByteBuffer buffer);
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.sketch;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Helper class to serialize/de-serialize sketches into self-describing byte arrays:
+ * [sketch type (1 byte)][serialized sketch].
+ */
+public class SketchSerDe {
+  private SketchSerDe() {
+  }
+
+  public static byte[] serialize(Sketch sketch) {
+    ByteBuffer buffer = ByteBuffer.allocate(1 + sketch.getSerializedSizeInBytes());
+    buffer.put(sketch.getType().getValue());
+    sketch.serialize(buffer);
+    return buffer.array();
+  }
+
+  public static Sketch deserialize(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    return SketchType.valueOf(buffer.get()).deserialize(buffer);
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.sketch;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Enum for the supported sketch types. The value of each type is written before the serialized sketch by
+ * {@link SketchSerDe}, so it must never change.
+ */
+public enum SketchType {
+  TDIGEST((byte) 1) {
+    @Override
+    public Sketch deserialize(ByteBuffer buffer) {
+      return TDigestSketch.fromByteBuffer(buffer);
+    }
+  },
+  THETA((byte) 2) {
+    @Override
+    public Sketch deserialize(ByteBuffer buffer) {
+      return ThetaSketch.fromByteBuffer(buffer);
+    }
+  };
+
+  private final byte _value;
+
+  SketchType(byte value) {
+    _value = value;
+  }
+
+  public byte getValue() {
+    return _value;
+  }
+
+  /**
+   * Creates a new sketch from the serialized sketch (without type) starting at the current position of the buffer.
+   *
+   * @param buffer buffer containing the serialized sketch.
+   * @return de-serialized sketch.
+   */
+  public abstract Sketch deserialize(ByteBuffer buffer);
+
+  public static SketchType valueOf(byte value) {
+    for (SketchType sketchType : values()) {
+      if (sketchType._value == value) {
+        return sketchType;
+      }
+    }
+    throw new IllegalArgumentException("Illegal sketch type: " + value);
+  }
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.sketch;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Merging t-digest sketch for quantile estimation.
+ *
+ * Values are added into a buffer, which is merged with the existing centroids (sorted by mean) whenever it is full.
+ * The size of the centroids is bounded with the k1 scale function: k(q) = compression / (2 * PI) * asin(2q - 1), where
+ * each centroid covers at most one unit of k. This keeps the centroids near the tails small, so extreme quantiles are
+ * accurate, while the number of centroids stays in the order of the compression.
+ * @see <a href="https://github.com/tdunning/t-digest/blob/master/docs/t-digest-paper/histo.pdf">
+ *     Computing extremely accurate quantiles using t-digests</a>
+ *
+ * Serialized form: [compression (double)][min (double)][max (double)][numCentroids (int)]
+ * [mean (double), weight (double)] * numCentroids
+ *
+ * As many sketches can be alive at once (one per group for group-by queries), the buffer is only allocated when values
+ * are added, and grows up to its maximum size, while the centroid arrays of de-serialized sketches are sized to the
+ * number of centroids.
+ */
+public class TDigestSketch implements Sketch {
+  public static final double DEFAULT_COMPRESSION = 100;
+
+  private static final int HEADER_SIZE = 3 * (Double.SIZE / Byte.SIZE) + Integer.SIZE / Byte.SIZE;
+  private static final int CENTROID_SIZE = 2 * (Double.SIZE / Byte.SIZE);
+  private static final int BUFFER_SIZE_MULTIPLIER = 5;
+  private static final int MIN_BUFFER_SIZE = 16;
+  private static final double[] EMPTY = new double[0];
+
+  private final double _compression;
+  private final double _normalizer;
+
+  private double[] _means;
+  private double[] _weights;
+  private int _numCentroids;
+
+  private final int _maxBufferSize;
+  private double[] _bufferedMeans;
+  private double[] _bufferedWeights;
+  private int _numBuffered;
+
+  private double _totalWeight;
+  private double _min;
+  private double _max;
+
+  public TDigestSketch() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  public TDigestSketch(double compression) {
+    Preconditions.checkArgument(compression >= 1, "Illegal compression: %s", compression);
+    _compression = compression;
+    _normalizer = compression / (2 * Math.PI);
+
+    _maxBufferSize = BUFFER_SIZE_MULTIPLIER * ((int) Math.ceil(compression) + 1);
+    _means = EMPTY;
+    _weights = EMPTY;
+    _bufferedMeans = EMPTY;
+    _bufferedWeights = EMPTY;
+    reset();
+  }
+
+  public static TDigestSketch fromByteBuffer(ByteBuffer buffer) {
+    TDigestSketch sketch = new TDigestSketch(buffer.getDouble(buffer.position()));
+    sketch.merge(buffer);
+    return sketch;
+  }
+
+  /**
+   * Returns the maximum serialized size in bytes of a sketch with the given compression.
+   * Each centroid covers at most one unit of k, and a centroid is only started when the previous one cannot take the
+   * next value, so every two consecutive centroids cover more than one unit of k. The range of k being compression / 2
+   * units, a sketch has at most ceil(compression) + 2 centroids.
+   */
+  public static int getMaxSerializedSizeInBytes(double compression) {
+    return HEADER_SIZE + ((int) Math.ceil(compression) + 2) * CENTROID_SIZE;
+  }
+
+  public double getCompression() {
+    return _compression;
+  }
+
+  /**
+   * Returns the number of centroids, after merging the buffered values.
+   */
+  public int getNumCentroids() {
+    compress();
+    return _numCentroids;
+  }
+
+  /**
+   * Returns the mean of the centroid at the given index (sorted by mean), must be called after
+   * {@link #getNumCentroids()}.
+   */
+  public double getCentroidMean(int index) {
+    return _means[index];
+  }
+
+  /**
+   * Returns the weight of the centroid at the given index (sorted by mean), must be called after
+   * {@link #getNumCentroids()}.
+   */
+  public double getCentroidWeight(int index) {
+    return _weights[index];
+  }
+
+  /**
+   * Returns the total weight (number of values) added into the sketch.
+   */
+  public double getTotalWeight() {
+    return _totalWeight;
+  }
+
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  public void add(double mean, double weight) {
+    if (Double.isNaN(mean) || weight <= 0) {
+      return;
+    }
+    if (_numBuffered == _bufferedMeans.length) {
+      if (_numBuffered < _maxBufferSize) {
+        int bufferSize = Math.min(Math.max(2 * _numBuffered, MIN_BUFFER_SIZE), _maxBufferSize);
+        _bufferedMeans = Arrays.copyOf(_bufferedMeans, bufferSize);
+        _bufferedWeights = Arrays.copyOf(_bufferedWeights, bufferSize);
+      } else {
+        compress();
+      }
+    }
+    _bufferedMeans[_numBuffered] = mean;
+    _bufferedWeights[_numBuffered] = weight;
+    _numBuffered++;
+    _totalWeight += weight;
+    if (mean < _min) {
+      _min = mean;
+    }
+    if (mean > _max) {
+      _max = mean;
+    }
+  }
+
+  /**
+   * Returns the estimated value at the given quantile (0.0-1.0), or NaN if the sketch is empty.
+   *
+   * @param quantile quantile between 0.0 and 1.0.
+   * @return estimated value at the quantile.
+   */
+  public double getQuantile(double quantile) {
+    Preconditions.checkArgument(quantile >= 0 && quantile <= 1, "Illegal quantile: %s", quantile);
+    compress();
+    if (_numCentroids == 0) {
+      return Double.NaN;
+    }
+    if (_numCentroids == 1) {
+      return _means[0];
+    }
+
+    // Each centroid covers the weight centered on its mean, interpolate between the neighbouring means, and between the
+    // min/max and the first/last means for the tails.
+    double index = quantile * _totalWeight;
+    double halfWeight = _weights[0] / 2;
+    if (index < halfWeight) {
+      return _min + (_means[0] - _min) * index / halfWeight;
+    }
+    double weightSoFar = halfWeight;
+    for (int i = 0; i < _numCentroids - 1; i++) {
+      double deltaWeight = (_weights[i] + _weights[i + 1]) / 2;
+      if (weightSoFar + deltaWeight > index) {
+        return _means[i] + (_means[i + 1] - _means[i]) * (index - weightSoFar) / deltaWeight;
+      }
+      weightSoFar += deltaWeight;
+    }
+    int last = _numCentroids - 1;
+    halfWeight = _weights[last] / 2;
+    return _means[last] + (_max - _means[last]) * Math.min(index - weightSoFar, halfWeight) / halfWeight;
+  }
+
+  @Override
+  public SketchType getType() {
+    return SketchType.TDIGEST;
+  }
+
+  @Override
+  public void reset() {
+    _numCentroids = 0;
+    _numBuffered = 0;
+    _totalWeight = 0;
+    _min = Double.POSITIVE_INFINITY;
+    _max = Double.NEGATIVE_INFINITY;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return _totalWeight == 0;
+  }
+
+  @Override
+  public void merge(Sketch sketch) {
+    if (sketch instanceof SerializedSketch) {
+      merge(((SerializedSketch) sketch).toByteBuffer());
+      return;
+    }
+    TDigestSketch other = (TDigestSketch) sketch;
+    other.compress();
+    for (int i = 0; i < other._numCentroids; i++) {
+      add(other._means[i], other._weights[i]);
+    }
+    _min = Math.min(_min, other._min);
+    _max = Math.max(_max, other._max);
+  }
+
+  @Override
+  public void merge(ByteBuffer buffer) {
+    // Skip the compression.
+    buffer.getDouble();
+    double min = buffer.getDouble();
+    double max = buffer.getDouble();
+    int numCentroids = buffer.getInt();
+    if (_numCentroids == 0 && _numBuffered == 0) {
+      // The serialized centroids are sorted and compressed, load them as is.
+      if (_means.length < numCentroids) {
+        _means = new double[numCentroids];
+        _weights = new double[numCentroids];
+      }
+      for (int i = 0; i < numCentroids; i++) {
+        _means[i] = buffer.getDouble();
+        _weights[i] = buffer.getDouble();
+        _totalWeight += _weights[i];
+      }
+      _numCentroids = numCentroids;
+    } else {
+      for (int i = 0; i < numCentroids; i++) {
+        double mean = buffer.getDouble();
+        add(mean, buffer.getDouble());
+      }
+    }
+    _min = Math.min(_min, min);
+    _max = Math.max(_max, max);
+  }
+
+  @Override
+  public int getSerializedSizeInBytes() {
+    compress();
+    return HEADER_SIZE + _numCentroids * CENTROID_SIZE;
+  }
+
+  @Override
+  public void serialize(ByteBuffer buffer) {
+    compress();
+    buffer.putDouble(_compression);
+    buffer.putDouble(_min);
+    buffer.putDouble(_max);
+    buffer.putInt(_numCentroids);
+    for (int i = 0; i < _numCentroids; i++) {
+      buffer.putDouble(_means[i]);
+      buffer.putDouble(_weights[i]);
+    }
+  }
+
+  /**
+   * Merges the buffered values into the centroids.
+   */
+  private void compress() {
+    if (_numBuffered == 0) {
+      return;
+    }
+
+    int numValues = _numCentroids + _numBuffered;
+    final double[] sortMeans = new double[numValues];
+    final double[] sortWeights = new double[numValues];
+    System.arraycopy(_means, 0, sortMeans, 0, _numCentroids);
+    System.arraycopy(_weights, 0, sortWeights, 0, _numCentroids);
+    System.arraycopy(_bufferedMeans, 0, sortMeans, _numCentroids, _numBuffered);
+    System.arraycopy(_bufferedWeights, 0, sortWeights, _numCentroids, _numBuffered);
+    it.unimi.dsi.fastutil.Arrays.quickSort(0, numValues, new AbstractIntComparator() {
+      @Override
+      public int compare(int i, int j) {
+        return Double.compare(sortMeans[i], sortMeans[j]);
+      }
+    }, new Swapper() {
+      @Override
+      public void swap(int i, int j) {
+        double mean = sortMeans[i];
+        sortMeans[i] = sortMeans[j];
+        sortMeans[j] = mean;
+        double weight = sortWeights[i];
+        sortWeights[i] = sortWeights[j];
+        sortWeights[j] = weight;
+      }
+    });
+
+    if (_means.length == 0) {
+      _means = new double[MIN_BUFFER_SIZE];
+      _weights = new double[MIN_BUFFER_SIZE];
+    }
+    int last = 0;
+    _means[0] = sortMeans[0];
+    _weights[0] = sortWeights[0];
+    double weightSoFar = 0;
+    double weightLimit = _totalWeight * getQuantileLimit(0);
+    for (int i = 1; i < numValues; i++) {
+      double proposedWeight = _weights[last] + sortWeights[i];
+      if (weightSoFar + proposedWeight <= weightLimit) {
+        _weights[last] = proposedWeight;
+        _means[last] += (sortMeans[i] - _means[last]) * sortWeights[i] / proposedWeight;
+      } else {
+        weightSoFar += _weights[last];
+        weightLimit = _totalWeight * getQuantileLimit(weightSoFar / _totalWeight);
+        last++;
+        if (last == _means.length) {
+          _means = Arrays.copyOf(_means, 2 * last);
+          _weights = Arrays.copyOf(_weights, 2 * last);
+        }
+        _means[last] = sortMeans[i];
+        _weights[last] = sortWeights[i];
+      }
+    }
+    _numCentroids = last + 1;
+    _numBuffered = 0;
+  }
+
+  /**
+   * Returns the largest quantile a centroid starting at the given quantile can cover: q(k(quantile) + 1).
+   */
+  private double getQuantileLimit(double quantile) {
+    double k = Math.asin(2 * Math.min(quantile, 1) - 1) + 1 / _normalizer;
+    return (Math.sin(Math.min(k, Math.PI / 2)) + 1) / 2;
+  }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function.sketch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Theta sketch (K minimum values) for distinct count estimation, which supports union, intersection and difference.
+ *
+ * Each value is hashed into a non-negative 63-bit long. The sketch keeps all the hashes smaller than theta, where theta
+ * is lowered to the (nominalEntries + 1)th smallest hash whenever too many hashes are retained. Since the retained
+ * hashes are a uniform sample of the hash space below theta, the distinct count is estimated as
+ * numRetained / (theta / 2^63). Set operations lower theta to the smaller one of the two sketches, and then apply the
+ * operation on the retained hashes.
+ *
+ * Serialized form: [nominalEntries (int)][theta (long)][numRetained (int)][hash (long)] * numRetained
+ */
+public class ThetaSketch implements Sketch {
+  public static final int DEFAULT_NOMINAL_ENTRIES = 4096;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static final int HEADER_SIZE = 2 * (Integer.SIZE / Byte.SIZE) + Long.SIZE / Byte.SIZE;
+  private static final int HASH_SIZE = Long.SIZE / Byte.SIZE;
+
+  private final int _nominalEntries;
+  private final LongOpenHashSet _hashes;
+  private long _theta;
+
+  public ThetaSketch() {
+    this(DEFAULT_NOMINAL_ENTRIES);
+  }
+
+  public ThetaSketch(int nominalEntries) {
+    Preconditions.checkArgument(nominalEntries > 0, "Illegal nominal entries: %s", nominalEntries);
+    _nominalEntries = nominalEntries;
+    _hashes = new LongOpenHashSet();
+    _theta = Long.MAX_VALUE;
+  }
+
+  public static ThetaSketch fromByteBuffer(ByteBuffer buffer) {
+    ThetaSketch sketch = new ThetaSketch(buffer.getInt(buffer.position()));
+    sketch.merge(buffer);
+    return sketch;
+  }
+
+  public int getNominalEntries() {
+    return _nominalEntries;
+  }
+
+  public void update(String value) {
+    updateHash(HASH_FUNCTION.hashString(value, Charsets.UTF_8).asLong());
+  }
+
+  public void update(long value) {
+    updateHash(HASH_FUNCTION.hashLong(value).asLong());
+  }
+
+  public void update(double value) {
+    update(Double.doubleToLongBits(value));
+  }
+
+  /**
+   * Returns the estimated number of distinct values.
+   */
+  public double getEstimate() {
+    if (_theta == Long.MAX_VALUE) {
+      return _hashes.size();
+    }
+    return _hashes.size() / ((double) _theta / Long.MAX_VALUE);
+  }
+
+  /**
+   * Intersects this sketch with the given sketch in place.
+   *
+   * @param other sketch to intersect with.
+   */
+  public void intersect(ThetaSketch other) {
+    lowerTheta(other._theta);
+    LongIterator iterator = _hashes.iterator();
+    while (iterator.hasNext()) {
+      if (!other._hashes.contains(iterator.nextLong())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes the values of the given sketch from this sketch in place (A and not B).
+   *
+   * @param other sketch to subtract.
+   */
+  public void subtract(ThetaSketch other) {
+    lowerTheta(other._theta);
+    LongIterator iterator = _hashes.iterator();
+    while (iterator.hasNext()) {
+      if (other._hashes.contains(iterator.nextLong())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  @Override
+  public SketchType getType() {
+    return SketchType.THETA;
+  }
+
+  @Override
+  public void reset() {
+    _hashes.clear();
+    _theta = Long.MAX_VALUE;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return _hashes.isEmpty() && _theta == Long.MAX_VALUE;
+  }
+
+  /**
+   * Unions the given sketch into this sketch in place.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public void merge(Sketch sketch) {
+    if (sketch instanceof SerializedSketch) {
+      merge(((SerializedSketch) sketch).toByteBuffer());
+      return;
+    }
+    ThetaSketch other = (ThetaSketch) sketch;
+    lowerTheta(other._theta);
+    LongIterator iterator = other._hashes.iterator();
+    while (iterator.hasNext()) {
+      addHash(iterator.nextLong());
+    }
+  }
+
+  /**
+   * Unions the serialized sketch into this sketch in place.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public void merge(ByteBuffer buffer) {
+    // Skip the nominal entries.
+    buffer.getInt();
+    lowerTheta(buffer.getLong());
+    int numRetained = buffer.getInt();
+    for (int i = 0; i < numRetained; i++) {
+      addHash(buffer.getLong());
+    }
+  }
+
+  @Override
+  public int getSerializedSizeInBytes() {
+    trim(_nominalEntries);
+    return HEADER_SIZE + _hashes.size() * HASH_SIZE;
+  }
+
+  @Override
+  public void serialize(ByteBuffer buffer) {
+    trim(_nominalEntries);
+    buffer.putInt(_nominalEntries);
+    buffer.putLong(_theta);
+    buffer.putInt(_hashes.size());
+    LongIterator iterator = _hashes.iterator();
+    while (iterator.hasNext()) {
+      buffer.putLong(iterator.nextLong());
+    }
+  }
+
+  private void updateHash(long hash) {
+    // Use the non-negative 63 bits of the hash.
+    addHash(hash >>> 1);
+  }
+
+  private void addHash(long hash) {
+    if (hash < _theta) {
+      _hashes.add(hash);
+      // Allow the retained hashes to grow to twice the nominal entries to amortize the trimming cost.
+      if (_hashes.size() >= 2 * _nominalEntries) {
+        trim(_nominalEntries);
+      }
+    }
+  }
+
+  private void lowerTheta(long theta) {
+    if (theta < _theta) {
+      _theta = theta;
+      LongIterator iterator = _hashes.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.nextLong() >= theta) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps only the given number of smallest hashes, and lowers theta to the smallest hash removed.
+   */
+  private void trim(int numToKeep) {
+    int numHashes = _hashes.size();
+    if (numHashes <= numToKeep) {
+      return;
+    }
+    long[] hashes = _hashes.toLongArray();
+    Arrays.sort(hashes);
+    _theta = hashes[numToKeep];
+    _hashes.clear();
+    for (int i = 0; i < numToKeep; i++) {
+      _hashes.add(hashes[i]);
+    }
+  }
+}
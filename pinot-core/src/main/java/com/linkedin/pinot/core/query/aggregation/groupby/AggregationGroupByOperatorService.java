@@ -29,6 +29,7 @@ import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -50,30 +51,56 @@ import org.slf4j.LoggerFactory;
 public class AggregationGroupByOperatorService {
   private static final Logger LOGGER = LoggerFactory.getLogger(AggregationGroupByOperatorService.class);
   private static final String MIN_PREFIX = "min_";
+  // Functions whose group values add up across servers, for which the trim bounds give an error bound.
+  private static final String[] ADDITIVE_PREFIXES = {"count_", "sum_"};
+
+  // By default, results are trimmed to the larger of 5 times TOP N or 5000 groups.
+  public static final int DEFAULT_TRIM_SIZE_FACTOR = 5;
+  public static final int DEFAULT_MIN_TRIM_SIZE = 5000;
+  // Results are only trimmed when they have more than 4 times the trim size groups.
+  private static final int TRIM_THRESHOLD_FACTOR = 4;
+
   private final List<String> _groupByColumns;
   private final int _groupByTopN;
   private final int _trimThreshold;
   private final int _trimSize;
   private final List<AggregationFunction> _aggregationFunctionList;
 
+  // Server side: number of groups dropped by the last trim, and the value of the last group kept for each function.
+  private long _numGroupsTrimmed = 0;
+  private double[] _trimBounds;
+
+  // Broker side: sum of the trim bounds reported by the servers, for each function.
+  private double[] _errorBounds;
+
   public AggregationGroupByOperatorService(List<AggregationInfo> aggregationInfos, GroupBy groupByQuery) {
+    this(aggregationInfos, groupByQuery, DEFAULT_TRIM_SIZE_FACTOR, DEFAULT_MIN_TRIM_SIZE);
+  }
+
+  /**
+   * Constructor for the class with the trim configuration of the server.
+   * Results are trimmed to the larger of trimSizeFactor times TOP N or minTrimSize groups per aggregation function (the
+   * top K kept per server). If the result size is not larger than 4 times the trim size, the results are returned
+   * without sorting or trimming.
+   *
+   * @param aggregationInfos
+   * @param groupByQuery
+   * @param trimSizeFactor Safety factor applied to TOP N.
+   * @param minTrimSize Minimum number of groups kept.
+   */
+  public AggregationGroupByOperatorService(List<AggregationInfo> aggregationInfos, GroupBy groupByQuery,
+      int trimSizeFactor, int minTrimSize) {
+    Preconditions.checkArgument(trimSizeFactor > 0, "Trim size factor should be positive: " + trimSizeFactor);
+    Preconditions.checkArgument(minTrimSize > 0, "Min trim size should be positive: " + minTrimSize);
     _aggregationFunctionList = AggregationFunctionFactory.getAggregationFunction(aggregationInfos);
     _groupByColumns = groupByQuery.getColumns();
     _groupByTopN = (int) groupByQuery.getTopN();
 
-    // _minTrimSize is the larger of _groupByTopN or 1000.
-    // _trimThreshold determines whether or not results should be trimmed and is 20 times of _minTrimSize.
-    // If result size is < _trimThreshold, return the results without sorting or trimming.
-    // Else, sort the results, and trim the result set size to 5 times of _minTrimSize.
-    int minTrimSize = Math.max(_groupByTopN, 1000);
-
     // In case of int overflow, default to Integer.MAX_VALUE. These cannot be long because MinMaxPriorityQueue class
     // can only handle int size.
-    boolean overFlow = (Integer.MAX_VALUE / 20) <= minTrimSize;
-    _trimThreshold = overFlow ? Integer.MAX_VALUE : (minTrimSize * 20);
-
-    overFlow = (Integer.MAX_VALUE / 5) <= minTrimSize;
-    _trimSize = overFlow ? Integer.MAX_VALUE : (minTrimSize * 5);
+    long trimSize = Math.max((long) _groupByTopN * trimSizeFactor, minTrimSize);
+    _trimSize = (int) Math.min(trimSize, Integer.MAX_VALUE);
+    _trimThreshold = (int) Math.min(trimSize * TRIM_THRESHOLD_FACTOR, Integer.MAX_VALUE);
   }
 
   public static List<Map<String, Serializable>> transformDataTableToGroupByResult(DataTable dataTable) {
@@ -90,31 +117,99 @@ public class AggregationGroupByOperatorService {
     return _aggregationFunctionList;
   }
 
+  /**
+   * Returns the number of groups dropped by the last trim of partitioned results, 0 if they were not trimmed.
+   */
+  public long getNumGroupsTrimmed() {
+    return _numGroupsTrimmed;
+  }
+
+  /**
+   * Returns, for each aggregation function, the value of the last group kept by the last trim of partitioned results,
+   * or null if they were not trimmed. Any group dropped by the trim has a value not better than this bound (NaN if the
+   * values are not numbers).
+   */
+  public double[] getTrimBounds() {
+    return _trimBounds;
+  }
+
+  /**
+   * Merge the trim bounds reported by one server into the error bounds of the group by results.
+   *
+   * @param trimBounds Trim bounds of one server, one for each aggregation function.
+   */
+  public void mergeTrimBounds(double[] trimBounds) {
+    Preconditions.checkArgument(trimBounds.length == _aggregationFunctionList.size());
+    if (_errorBounds == null) {
+      _errorBounds = new double[trimBounds.length];
+    }
+    for (int i = 0; i < trimBounds.length; i++) {
+      // A group dropped by a server is missing at most the server's trim bound (a non-positive bound adds nothing).
+      if (Double.isNaN(trimBounds[i])) {
+        _errorBounds[i] = Double.NaN;
+      } else if (trimBounds[i] > 0) {
+        _errorBounds[i] += trimBounds[i];
+      }
+    }
+  }
+
+  private static boolean isAdditive(AggregationFunction aggregationFunction) {
+    String functionName = aggregationFunction.getFunctionName();
+    for (String prefix : ADDITIVE_PREFIXES) {
+      if (functionName.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public List<Map<String, Serializable>> reduceGroupByOperators(Map<ServerInstance, DataTable> instanceResponseMap) {
     if ((instanceResponseMap == null) || instanceResponseMap.isEmpty()) {
       return null;
     }
     List<Map<String, Serializable>> reducedResult = null;
     for (DataTable toBeReducedGroupByResults : instanceResponseMap.values()) {
-      if (reducedResult == null) {
-        if (toBeReducedGroupByResults != null) {
-          reducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        }
-      } else {
-        List<Map<String, Serializable>> toBeReducedResult =
-            transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        for (int i = 0; i < reducedResult.size(); ++i) {
-          for (String key : toBeReducedResult.get(i).keySet()) {
-            if (reducedResult.get(i).containsKey(key)) {
-              reducedResult.get(i).put(key, _aggregationFunctionList.get(i)
-                  .combineTwoValues(reducedResult.get(i).get(key), toBeReducedResult.get(i).get(key)));
-            } else {
-              reducedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
-            }
+      reducedResult = mergeGroupByResult(reducedResult, toBeReducedGroupByResults);
+    }
+    finalizeGroupByResult(reducedResult);
+    return reducedResult;
+  }
+
+  /**
+   * Merge the group by results of one server into the results merged so far, without reducing them.
+   *
+   * @param reducedResult results merged so far, null if nothing has been merged yet.
+   * @param toBeReducedGroupByResults group by results of one server.
+   * @return merged results.
+   */
+  public List<Map<String, Serializable>> mergeGroupByResult(List<Map<String, Serializable>> reducedResult,
+      DataTable toBeReducedGroupByResults) {
+    if (reducedResult == null) {
+      if (toBeReducedGroupByResults != null) {
+        reducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
+      }
+    } else {
+      List<Map<String, Serializable>> toBeReducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
+      for (int i = 0; i < reducedResult.size(); ++i) {
+        for (String key : toBeReducedResult.get(i).keySet()) {
+          if (reducedResult.get(i).containsKey(key)) {
+            reducedResult.get(i).put(key, _aggregationFunctionList.get(i)
+                .combineTwoValues(reducedResult.get(i).get(key), toBeReducedResult.get(i).get(key)));
+          } else {
+            reducedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
           }
         }
       }
     }
+    return reducedResult;
+  }
+
+  /**
+   * Reduce the merged value of each group in place, once all server results have been merged.
+   *
+   * @param reducedResult merged results, may be null.
+   */
+  public void finalizeGroupByResult(List<Map<String, Serializable>> reducedResult) {
     if (reducedResult != null) {
       for (int i = 0; i < reducedResult.size(); ++i) {
         Map<String, Serializable> functionLevelReducedResult = reducedResult.get(i);
@@ -126,7 +221,6 @@ public class AggregationGroupByOperatorService {
         }
       }
     }
-    return reducedResult;
   }
 
   public List<JSONObject> renderGroupByOperators(List<Map<String, Serializable>> finalAggregationResult) {
@@ -237,6 +331,10 @@ public class AggregationGroupByOperatorService {
       }
 
       AggregationResult aggregationResult = new AggregationResult(groupByResults, _groupByColumns, functionName);
+      // The values of the groups returned may be under-estimated by at most the error bound, if servers trimmed them.
+      if (_errorBounds != null && !Double.isNaN(_errorBounds[i]) && isAdditive(aggregationFunction)) {
+        aggregationResult.setGroupByErrorBound(formatValue(_errorBounds[i]).toString());
+      }
       aggregationResults.add(aggregationResult);
     }
 
@@ -284,80 +382,126 @@ public class AggregationGroupByOperatorService {
   public List<Map<String, Serializable>> trimToSize(Map<String, Serializable[]> aggrGroupByResults,
       int numAggrFunctions) {
     Preconditions.checkNotNull(aggrGroupByResults);
+    return trimToSize(Collections.singletonList(aggrGroupByResults), numAggrFunctions);
+  }
+
+  /**
+   * Same as {@link #trimToSize(Map, int)}, for group by results partitioned into multiple maps with disjoint keys. The
+   * keys can be of any type, and are converted to string group by keys using {@link Object#toString()} only for the
+   * groups that are kept.
+   *
+   * @param aggrGroupByResultPartitions Maps from group by keys to result arrays.
+   * @param numAggrFunctions Number of aggregation functions.
+   * @return Trimmed list of maps containing group by results.
+   */
+  public List<Map<String, Serializable>> trimToSize(List<? extends Map<?, Serializable[]>> aggrGroupByResultPartitions,
+      int numAggrFunctions) {
+    Preconditions.checkNotNull(aggrGroupByResultPartitions);
 
     List<Map<String, Serializable>> trimmedResults = new ArrayList<>(numAggrFunctions);
     for (int i = 0; i < numAggrFunctions; i++) {
       trimmedResults.add(new HashMap<String, Serializable>());
     }
 
-    if (aggrGroupByResults.size() > _trimThreshold) {
-      trimToSize(_aggregationFunctionList, aggrGroupByResults, trimmedResults, numAggrFunctions, _trimSize);
+    int numGroups = 0;
+    for (Map<?, Serializable[]> partition : aggrGroupByResultPartitions) {
+      numGroups += partition.size();
+    }
+    if (numGroups > _trimThreshold) {
+      _trimBounds = trimToSize(_aggregationFunctionList, aggrGroupByResultPartitions, trimmedResults, numAggrFunctions,
+          _trimSize);
+      _numGroupsTrimmed = numGroups - _trimSize;
     } else {
-      convertGroupByResultsFromMapToList(aggrGroupByResults, trimmedResults, numAggrFunctions);
+      convertGroupByResultsFromMapToList(aggrGroupByResultPartitions, trimmedResults, numAggrFunctions);
     }
 
     return trimmedResults;
   }
 
   /**
-   * Given a map from group by keys to results for multiple aggregation functions, convert it to a list of group by
+   * Given maps from group by keys to results for multiple aggregation functions, convert them to a list of group by
    * results, each of them according to one aggregation function.
    *
-   * @param aggrGroupByResults Map from group by keys to result arrays.
+   * @param aggrGroupByResultPartitions Maps from group by keys to result arrays.
    * @param aggrGroupByResultList List of maps containing group by results returned.
    * @param numAggrFunctions Number of aggregation functions.
    */
-  private static void convertGroupByResultsFromMapToList(Map<String, Serializable[]> aggrGroupByResults,
+  private static void convertGroupByResultsFromMapToList(
+      List<? extends Map<?, Serializable[]>> aggrGroupByResultPartitions,
       List<Map<String, Serializable>> aggrGroupByResultList, int numAggrFunctions) {
-    for (String key : aggrGroupByResults.keySet()) {
-      Serializable[] results = aggrGroupByResults.get(key);
-      for (int i = 0; i < numAggrFunctions; i++) {
-        aggrGroupByResultList.get(i).put(key, results[i]);
+    for (Map<?, Serializable[]> aggrGroupByResults : aggrGroupByResultPartitions) {
+      for (Map.Entry<?, Serializable[]> entry : aggrGroupByResults.entrySet()) {
+        String key = entry.getKey().toString();
+        Serializable[] results = entry.getValue();
+        for (int i = 0; i < numAggrFunctions; i++) {
+          aggrGroupByResultList.get(i).put(key, results[i]);
+        }
       }
     }
   }
 
   /**
-   * Given a map from group by keys to results for multiple aggregation functions, trim the results to desired size and
+   * Given maps from group by keys to results for multiple aggregation functions, trim the results to desired size and
    * put them into a list of group by results.
    *
    * @param aggrFuncList List of aggregation functions.
-   * @param aggrGroupByResults Map from group by keys to result arrays.
+   * @param aggrGroupByResultPartitions Maps from group by keys to result arrays.
    * @param trimmedGroupByResultList List of maps containing group by results returned.
    * @param numAggrFunctions Number of aggregation functions.
    * @param trimSize Desired trim size.
+   * @return Value of the last group kept for each aggregation function, NaN if it is not a number.
    */
   @SuppressWarnings("unchecked")
-  private static void trimToSize(List<AggregationFunction> aggrFuncList, Map<String, Serializable[]> aggrGroupByResults,
+  private static double[] trimToSize(List<AggregationFunction> aggrFuncList,
+      List<? extends Map<?, Serializable[]>> aggrGroupByResultPartitions,
       List<Map<String, Serializable>> trimmedGroupByResultList, int numAggrFunctions, int trimSize) {
-    MinMaxPriorityQueue<ImmutablePair<Serializable, String>>[] heaps = new MinMaxPriorityQueue[numAggrFunctions];
+    Serializable[] sampleResults = null;
+    for (Map<?, Serializable[]> aggrGroupByResults : aggrGroupByResultPartitions) {
+      if (!aggrGroupByResults.isEmpty()) {
+        sampleResults = aggrGroupByResults.values().iterator().next();
+        break;
+      }
+    }
+
+    MinMaxPriorityQueue<ImmutablePair<Serializable, Object>>[] heaps = new MinMaxPriorityQueue[numAggrFunctions];
     for (int i = 0; i < numAggrFunctions; i++) {
       boolean reverseOrder = aggrFuncList.get(i).getFunctionName().startsWith(MIN_PREFIX);
-      heaps[i] = getMinMaxPriorityQueue(aggrGroupByResults.values().iterator().next()[i], trimSize, reverseOrder);
+      heaps[i] = getMinMaxPriorityQueue(sampleResults[i], trimSize, reverseOrder);
     }
 
-    for (String key : aggrGroupByResults.keySet()) {
-      Serializable[] results = aggrGroupByResults.get(key);
-      for (int i = 0; i < numAggrFunctions; i++) {
-        Serializable result = results[i];
-        MinMaxPriorityQueue<ImmutablePair<Serializable, String>> heap = heaps[i];
-        if (heap == null) {
-          trimmedGroupByResultList.get(i).put(key, result);
-        } else {
-          heap.add(new ImmutablePair(result, key));
+    for (Map<?, Serializable[]> aggrGroupByResults : aggrGroupByResultPartitions) {
+      for (Map.Entry<?, Serializable[]> entry : aggrGroupByResults.entrySet()) {
+        Object key = entry.getKey();
+        Serializable[] results = entry.getValue();
+        for (int i = 0; i < numAggrFunctions; i++) {
+          Serializable result = results[i];
+          MinMaxPriorityQueue<ImmutablePair<Serializable, Object>> heap = heaps[i];
+          if (heap == null) {
+            trimmedGroupByResultList.get(i).put(key.toString(), result);
+          } else {
+            heap.add(new ImmutablePair(result, key));
+          }
         }
       }
     }
 
+    double[] trimBounds = new double[numAggrFunctions];
+    Arrays.fill(trimBounds, Double.NaN);
     for (int i = 0; i < numAggrFunctions; i++) {
-      MinMaxPriorityQueue<ImmutablePair<Serializable, String>> heap = heaps[i];
-      ImmutablePair<Serializable, String> pair;
+      MinMaxPriorityQueue<ImmutablePair<Serializable, Object>> heap = heaps[i];
+      ImmutablePair<Serializable, Object> pair;
       if (heap != null) {
+        Serializable lastKept = null;
         while ((pair = heap.pollFirst()) != null) {
-          trimmedGroupByResultList.get(i).put(pair.getRight(), pair.getLeft());
+          trimmedGroupByResultList.get(i).put(pair.getRight().toString(), pair.getLeft());
+          lastKept = pair.getLeft();
+        }
+        if (lastKept instanceof Number) {
+          trimBounds[i] = ((Number) lastKept).doubleValue();
         }
       }
     }
+    return trimBounds;
   }
 
   /**
@@ -402,16 +546,16 @@ public class AggregationGroupByOperatorService {
    * @param reverseOrder True if sorting order to be reversed.
    * @return
    */
-  private static MinMaxPriorityQueue<ImmutablePair<Serializable, String>> getMinMaxPriorityQueue(Serializable sampleObject,
-      int maxSize, boolean reverseOrder) {
+  private static <K> MinMaxPriorityQueue<ImmutablePair<Serializable, K>> getMinMaxPriorityQueue(
+      Serializable sampleObject, int maxSize, boolean reverseOrder) {
     if (!(sampleObject instanceof Comparable)) {
       return null;
     }
 
-    Comparator<ImmutablePair<Serializable, String>> comparator =
-        new GroupByResultComparator<ImmutablePair<Serializable, String>>().newComparator(reverseOrder);
+    Comparator<ImmutablePair<Serializable, K>> comparator =
+        new GroupByResultComparator<ImmutablePair<Serializable, K>>().newComparator(reverseOrder);
 
-    MinMaxPriorityQueue.Builder<ImmutablePair<Serializable, String>> minMaxPriorityQueueBuilder =
+    MinMaxPriorityQueue.Builder<ImmutablePair<Serializable, K>> minMaxPriorityQueueBuilder =
         MinMaxPriorityQueue.orderedBy(comparator).maximumSize(maxSize);
 
     return minMaxPriorityQueueBuilder.create();
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Bounded cache of per-segment query results for immutable segments.
+ *
+ * <p>Entries are keyed by table name, segment name, segment CRC and a fingerprint of the query (see
+ * {@link com.linkedin.pinot.common.utils.request.RequestUtils#getFingerprint}), and hold the serialized
+ * {@link com.linkedin.pinot.common.utils.DataTable} of the segment level result. Results are kept serialized because
+ * the combine phase merges into the per-segment result blocks, and because the serialized size gives a good estimate
+ * of the memory held by the entry. The cache is bounded by the total size of the entries and evicts the least
+ * recently used ones first.
+ *
+ * <p>Entries of a segment are invalidated when the segment is replaced or removed, see
+ * {@link #invalidateSegment(String, String)}. Since the CRC is part of the key, a result computed on an older copy of
+ * a segment is never served for a newer one even before the invalidation happens. The keys of each segment are
+ * indexed so that the invalidation does not scan the whole cache.
+ *
+ * <p>Results larger than 1/{@value #MAX_ENTRY_SIZE_FRACTION} of the max size are not cached, a single entry should
+ * not flush the rest of the cache.
+ */
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+
+  // Rough per entry overhead (key, fingerprint and cache bookkeeping) on top of the serialized result
+  private static final int ENTRY_OVERHEAD_IN_BYTES = 128;
+  static final int MAX_ENTRY_SIZE_FRACTION = 16;
+
+  private final Cache<Key, byte[]> _cache;
+  // Keys of the cached entries per segment, maintained on put and removal
+  private final ConcurrentMap<SegmentId, Set<Key>> _segmentKeys = new ConcurrentHashMap<>();
+  private final long _maxEntrySizeInBytes;
+  private final ServerMetrics _serverMetrics;
+
+  public SegmentResultCache(long maxSizeInBytes, @Nullable ServerMetrics serverMetrics) {
+    Preconditions.checkArgument(maxSizeInBytes > 0, "Max size of segment result cache must be positive");
+    _maxEntrySizeInBytes = maxSizeInBytes / MAX_ENTRY_SIZE_FRACTION;
+    _serverMetrics = serverMetrics;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeInBytes)
+        .weigher(new Weigher<Key, byte[]>() {
+          @Override
+          public int weigh(Key key, byte[] value) {
+            return getEntrySizeInBytes(key, value);
+          }
+        })
+        .removalListener(new RemovalListener<Key, byte[]>() {
+          @Override
+          public void onRemoval(RemovalNotification<Key, byte[]> notification) {
+            if (notification.getCause() != RemovalCause.REPLACED) {
+              removeFromSegmentKeys(notification.getKey());
+            }
+            if (notification.getCause() == RemovalCause.SIZE && _serverMetrics != null) {
+              _serverMetrics.addMeteredGlobalValue(ServerMeter.SEGMENT_RESULT_CACHE_EVICTIONS, 1L);
+            }
+          }
+        })
+        .build();
+    LOGGER.info("Initialized segment result cache with max size {} bytes", maxSizeInBytes);
+  }
+
+  /**
+   * Returns the serialized result cached for the given key, or <code>null</code> if there is none. Updates the
+   * hit/miss meters of the table.
+   */
+  @Nullable
+  public byte[] get(Key key) {
+    byte[] result = _cache.getIfPresent(key);
+    if (_serverMetrics != null) {
+      if (result != null) {
+        _serverMetrics.addMeteredTableValue(key._tableName, ServerMeter.SEGMENT_RESULT_CACHE_HITS, 1L);
+      } else {
+        _serverMetrics.addMeteredTableValue(key._tableName, ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1L);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds the serialized result to the cache, unless it is larger than the max entry size.
+   */
+  public void put(Key key, byte[] serializedResult) {
+    if (getEntrySizeInBytes(key, serializedResult) > _maxEntrySizeInBytes) {
+      LOGGER.debug("Skipping caching result of {} bytes for segment {} of table {}", serializedResult.length,
+          key._segmentName, key._tableName);
+      return;
+    }
+    addToSegmentKeys(key);
+    _cache.put(key, serializedResult);
+  }
+
+  /**
+   * Drops all the entries of the given segment, called when the segment is reloaded, replaced or removed.
+   */
+  public void invalidateSegment(String tableName, String segmentName) {
+    Set<Key> keys = _segmentKeys.remove(new SegmentId(tableName, segmentName));
+    if (keys != null) {
+      List<Key> keysToInvalidate;
+      synchronized (keys) {
+        keysToInvalidate = new ArrayList<>(keys);
+      }
+      _cache.invalidateAll(keysToInvalidate);
+    }
+  }
+
+  private void addToSegmentKeys(Key key) {
+    SegmentId segmentId = key._segmentId;
+    while (true) {
+      Set<Key> keys = _segmentKeys.get(segmentId);
+      if (keys == null) {
+        Set<Key> newKeys = new HashSet<>();
+        keys = _segmentKeys.putIfAbsent(segmentId, newKeys);
+        if (keys == null) {
+          keys = newKeys;
+        }
+      }
+      synchronized (keys) {
+        // The set may have been dropped by an invalidation or by the last removal in the meantime
+        if (_segmentKeys.get(segmentId) == keys) {
+          keys.add(key);
+          return;
+        }
+      }
+    }
+  }
+
+  private void removeFromSegmentKeys(Key key) {
+    Set<Key> keys = _segmentKeys.get(key._segmentId);
+    if (keys != null) {
+      synchronized (keys) {
+        // The key may have been put again after the removed entry
+        if (!_cache.asMap().containsKey(key)) {
+          keys.remove(key);
+          if (keys.isEmpty()) {
+            _segmentKeys.remove(key._segmentId, keys);
+          }
+        }
+      }
+    }
+  }
+
+  private static int getEntrySizeInBytes(Key key, byte[] serializedResult) {
+    return key._fingerprint.length + serializedResult.length + ENTRY_OVERHEAD_IN_BYTES;
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  /**
+   * Key of a cache entry.
+   */
+  public static final class Key {
+    private final String _tableName;
+    private final String _segmentName;
+    private final SegmentId _segmentId;
+    private final String _crc;
+    private final byte[] _fingerprint;
+    private final int _hashCode;
+
+    public Key(String tableName, String segmentName, String crc, byte[] fingerprint) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _segmentId = new SegmentId(tableName, segmentName);
+      _crc = crc;
+      _fingerprint = fingerprint;
+      _hashCode = 31 * (31 * (31 * tableName.hashCode() + segmentName.hashCode()) + crc.hashCode())
+          + Arrays.hashCode(fingerprint);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _hashCode == that._hashCode && _segmentName.equals(that._segmentName) && _crc.equals(that._crc)
+          && _tableName.equals(that._tableName) && Arrays.equals(_fingerprint, that._fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  private static final class SegmentId {
+    private final String _tableName;
+    private final String _segmentName;
+
+    private SegmentId(String tableName, String segmentName) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SegmentId)) {
+        return false;
+      }
+      SegmentId that = (SegmentId) o;
+      return _segmentName.equals(that._segmentName) && _tableName.equals(that._tableName);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * _tableName.hashCode() + _segmentName.hashCode();
+    }
+  }
+}
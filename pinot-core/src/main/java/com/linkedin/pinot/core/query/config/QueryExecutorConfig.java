@@ -32,6 +32,8 @@ public class QueryExecutorConfig {
   public static final String QUERY_PLANNER = "queryPlanner";
   // Prefix key of TimeOut
   public static final String TIME_OUT = "timeout";
+  // Max size in bytes of the segment level result cache, 0 disables the cache
+  public static final String SEGMENT_RESULT_CACHE_MAX_SIZE = "segmentResultCache.maxSizeInBytes";
 
   private static final String[] REQUIRED_KEYS = {};
 
@@ -39,6 +41,7 @@ public class QueryExecutorConfig {
   private SegmentPrunerConfig _segmentPrunerConfig;
   private QueryPlannerConfig _queryPlannerConfig;
   private final long _timeOutMs;
+  private final long _segmentResultCacheMaxSizeInBytes;
 
   public QueryExecutorConfig(Configuration config) throws ConfigurationException {
     _queryExecutorConfig = config;
@@ -46,6 +49,7 @@ public class QueryExecutorConfig {
     _segmentPrunerConfig = new SegmentPrunerConfig(_queryExecutorConfig.subset(QUERY_PRUNER));
     _queryPlannerConfig = new QueryPlannerConfig(_queryExecutorConfig.subset(QUERY_PLANNER));
     _timeOutMs = _queryExecutorConfig.getLong(TIME_OUT, -1);
+    _segmentResultCacheMaxSizeInBytes = _queryExecutorConfig.getLong(SEGMENT_RESULT_CACHE_MAX_SIZE, 0L);
   }
 
   private void checkRequiredKeys() throws ConfigurationException {
@@ -71,4 +75,8 @@ public class QueryExecutorConfig {
   public long getTimeOut() {
     return _timeOutMs;
   }
+
+  public long getSegmentResultCacheMaxSizeInBytes() {
+    return _segmentResultCacheMaxSizeInBytes;
+  }
 }
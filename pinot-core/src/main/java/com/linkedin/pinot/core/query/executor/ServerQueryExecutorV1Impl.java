@@ -28,13 +28,16 @@ import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.core.data.manager.offline.InstanceDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
+import com.linkedin.pinot.core.data.manager.offline.TableDataManagerProvider;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerService;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerServiceImpl;
+import com.linkedin.pinot.core.util.trace.QueryResourceUsage;
 import com.linkedin.pinot.core.util.trace.TraceContext;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -81,8 +84,15 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     if (_segmentPrunerService == null) {
       _segmentPrunerService = new SegmentPrunerServiceImpl(_queryExecutorConfig.getPrunerConfig());
     }
+    SegmentResultCache segmentResultCache = null;
+    long segmentResultCacheMaxSizeInBytes = _queryExecutorConfig.getSegmentResultCacheMaxSizeInBytes();
+    if (segmentResultCacheMaxSizeInBytes > 0) {
+      LOGGER.info("Trying to build SegmentResultCache");
+      segmentResultCache = new SegmentResultCache(segmentResultCacheMaxSizeInBytes, _serverMetrics);
+    }
+    TableDataManagerProvider.setSegmentResultCache(segmentResultCache);
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2(_queryExecutorConfig);
+    _planMaker = new InstancePlanMakerImplV2(_queryExecutorConfig, segmentResultCache);
     LOGGER.info("Trying to build QueryExecutorTimer");
   }
 
@@ -95,18 +105,34 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     final long requestId = instanceRequest.getRequestId();
     final long nSegmentsInQuery = instanceRequest.getSearchSegmentsSize();
     long nPrunedSegments = -1;
+    long numSegmentsQueried = 0;
+    long numSegmentsPruned = 0;
+    final QueryResourceUsage resourceUsage = QueryResourceUsage.register();
+    final long startCpuTimeNs = QueryResourceUsage.getCurrentThreadCpuTimeNs();
+    final long startAllocatedBytes = QueryResourceUsage.getCurrentThreadAllocatedBytes();
     try {
       TraceContext.register(instanceRequest);
       final BrokerRequest brokerRequest = instanceRequest.getQuery();
       LOGGER.debug("Incoming query is : {}", brokerRequest);
       long startPruningTime = System.nanoTime();
-      queryableSegmentDataManagerList = getPrunedQueryableSegments(instanceRequest);
+      queryableSegmentDataManagerList = acquireQueryableSegments(instanceRequest);
+      numSegmentsQueried = queryableSegmentDataManagerList.size();
+      numSegmentsPruned = pruneSegments(instanceRequest, queryableSegmentDataManagerList);
       long pruningTime = System.nanoTime() - startPruningTime;
       _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.SEGMENT_PRUNING, pruningTime);
+      _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.NUM_SEGMENTS_PRUNED, numSegmentsPruned);
       nPrunedSegments = queryableSegmentDataManagerList.size();
       LOGGER.debug("Matched {} segments! ", nPrunedSegments);
       if (queryableSegmentDataManagerList.isEmpty()) {
-        return null;
+        if (numSegmentsQueried == 0) {
+          return null;
+        }
+        // Every segment got pruned, return an empty response so that the broker still sees the pruning statistics.
+        instanceResponse = new DataTable();
+        instanceResponse.getMetadata().put("requestId", Long.toString(requestId));
+        addSegmentCounts(instanceResponse, numSegmentsQueried, numSegmentsPruned);
+        addResourceUsage(brokerRequest, instanceResponse, resourceUsage, startCpuTimeNs, startAllocatedBytes);
+        return instanceResponse;
       }
       final long startPlanTime = System.nanoTime();
       final Plan globalQueryPlan = _planMaker.makeInterSegmentPlan(
@@ -137,6 +163,8 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       instanceResponse.getMetadata().put("timeUsedMs", Long.toString((end - start)));
       instanceResponse.getMetadata().put("requestId", Long.toString(instanceRequest.getRequestId()));
       instanceResponse.getMetadata().put("traceInfo", TraceContext.getTraceInfoOfRequestId(instanceRequest.getRequestId()));
+      addSegmentCounts(instanceResponse, numSegmentsQueried, numSegmentsPruned);
+      addResourceUsage(instanceRequest.getQuery(), instanceResponse, resourceUsage, startCpuTimeNs, startAllocatedBytes);
       LOGGER.info("Processed requestId {},reqSegments={},prunedSegments={},planTime={},timeUsed={},executeTime={},broker={}",
           requestId, nSegmentsInQuery, nPrunedSegments, TimeUnit.MILLISECONDS.convert(planTime, TimeUnit.NANOSECONDS),
           (end-start), TimeUnit.MILLISECONDS.convert(executeTime, TimeUnit.NANOSECONDS),
@@ -154,6 +182,8 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       instanceResponse.getMetadata().put("timeUsedMs", Long.toString((end - start)));
       instanceResponse.getMetadata().put("requestId", Long.toString(instanceRequest.getRequestId()));
       instanceResponse.getMetadata().put("traceInfo", TraceContext.getTraceInfoOfRequestId(instanceRequest.getRequestId()));
+      addSegmentCounts(instanceResponse, numSegmentsQueried, numSegmentsPruned);
+      addResourceUsage(instanceRequest.getQuery(), instanceResponse, resourceUsage, startCpuTimeNs, startAllocatedBytes);
       return instanceResponse;
     } finally {
       if (_instanceDataManager.getTableDataManager(instanceRequest.getQuery().getQuerySource().getTableName()) != null) {
@@ -165,10 +195,37 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
         }
       }
       TraceContext.unregister(instanceRequest);
+      QueryResourceUsage.unregister();
     }
   }
 
-  private List<SegmentDataManager> getPrunedQueryableSegments(final InstanceRequest instanceRequest) {
+  /**
+   * Adds the resources used by the request handler thread to the query resource usage, then puts the totals into the
+   * instance response metadata and the per-table meters.
+   */
+  private void addResourceUsage(BrokerRequest brokerRequest, DataTable instanceResponse,
+      QueryResourceUsage resourceUsage, long startCpuTimeNs, long startAllocatedBytes) {
+    resourceUsage.add(QueryResourceUsage.getCurrentThreadCpuTimeNs() - startCpuTimeNs,
+        QueryResourceUsage.getCurrentThreadAllocatedBytes() - startAllocatedBytes, 0L);
+    long threadCpuTimeNs = resourceUsage.getThreadCpuTimeNs();
+    long allocatedBytes = resourceUsage.getAllocatedBytes();
+    long queueWaitTimeNs = resourceUsage.getQueueWaitTimeNs();
+    Map<String, String> metadata = instanceResponse.getMetadata();
+    metadata.put(DataTable.THREAD_CPU_TIME_NS_METADATA_KEY, Long.toString(threadCpuTimeNs));
+    metadata.put(DataTable.ALLOCATED_BYTES_METADATA_KEY, Long.toString(allocatedBytes));
+    metadata.put(DataTable.QUEUE_WAIT_TIME_NS_METADATA_KEY, Long.toString(queueWaitTimeNs));
+    _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERY_THREAD_CPU_TIME_NS, threadCpuTimeNs);
+    _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERY_ALLOCATED_BYTES, allocatedBytes);
+    _serverMetrics.addMeteredQueryValue(brokerRequest, ServerMeter.QUERY_QUEUE_WAIT_TIME_NS, queueWaitTimeNs);
+  }
+
+  private static void addSegmentCounts(DataTable instanceResponse, long numSegmentsQueried, long numSegmentsPruned) {
+    Map<String, String> metadata = instanceResponse.getMetadata();
+    metadata.put(DataTable.NUM_SEGMENTS_QUERIED_METADATA_KEY, Long.toString(numSegmentsQueried));
+    metadata.put(DataTable.NUM_SEGMENTS_PRUNED_METADATA_KEY, Long.toString(numSegmentsPruned));
+  }
+
+  private List<SegmentDataManager> acquireQueryableSegments(final InstanceRequest instanceRequest) {
     LOGGER.debug("InstanceRequest contains {} segments", instanceRequest.getSearchSegments().size());
 
     final String tableName = instanceRequest.getQuery().getQuerySource().getTableName();
@@ -179,17 +236,32 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     List<SegmentDataManager> listOfQueryableSegments = tableDataManager.acquireSegments(
         instanceRequest.getSearchSegments());
     LOGGER.debug("TableDataManager found {} segments before pruning", listOfQueryableSegments.size());
+    return listOfQueryableSegments;
+  }
 
-    Iterator<SegmentDataManager> it = listOfQueryableSegments.iterator();
+  /**
+   * Removes the segments that cannot match the query from the given list and releases them.
+   *
+   * @return number of pruned segments
+   */
+  private int pruneSegments(final InstanceRequest instanceRequest, List<SegmentDataManager> queryableSegments) {
+    if (queryableSegments.isEmpty()) {
+      return 0;
+    }
+    final String tableName = instanceRequest.getQuery().getQuerySource().getTableName();
+    final TableDataManager tableDataManager = _instanceDataManager.getTableDataManager(tableName);
+    int numPrunedSegments = 0;
+    Iterator<SegmentDataManager> it = queryableSegments.iterator();
     while (it.hasNext()) {
       SegmentDataManager segmentDataManager = it.next();
       final IndexSegment indexSegment = segmentDataManager.getSegment();
       if (_segmentPrunerService.prune(indexSegment, instanceRequest.getQuery())) {
         it.remove();
         tableDataManager.releaseSegment(segmentDataManager);
+        numPrunedSegments++;
       }
     }
-    return listOfQueryableSegments;
+    return numPrunedSegments;
   }
 
   @Override
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.common.predicate.InPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.readers.BloomFilterReader;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+import java.math.BigDecimal;
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Pruner will prune segment if the values of an EQ, IN or RANGE predicate fall outside the [min, max] interval of the
+ * column in the segment, or if the bloom filter of the column rules out all the values of an EQ or IN predicate.
+ * <p>Only immutable segments are pruned, consuming segments keep changing their values.
+ */
+public class ColumnValueSegmentPruner implements SegmentPruner {
+  private static final String UNBOUNDED = "*";
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+    if (!(segment instanceof IndexSegmentImpl) || brokerRequest.getFilterQuery() == null) {
+      return false;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    if (filterQueryTree == null) {
+      return false;
+    }
+    return pruneSegment((IndexSegmentImpl) segment, filterQueryTree);
+  }
+
+  private boolean pruneSegment(IndexSegmentImpl segment, FilterQueryTree filterQueryTree) {
+    if (filterQueryTree.getChildren() != null && !filterQueryTree.getChildren().isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          // Prune if any of the children cannot match.
+          for (FilterQueryTree child : filterQueryTree.getChildren()) {
+            if (pruneSegment(segment, child)) {
+              return true;
+            }
+          }
+          return false;
+        case OR:
+          // Prune only if none of the children can match.
+          for (FilterQueryTree child : filterQueryTree.getChildren()) {
+            if (!pruneSegment(segment, child)) {
+              return false;
+            }
+          }
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    String column = filterQueryTree.getColumn();
+    ColumnMetadata columnMetadata = ((SegmentMetadataImpl) segment.getSegmentMetadata()).getColumnMetadataFor(column);
+    if (columnMetadata == null) {
+      // Missing columns are handled by DataSchemaSegmentPruner.
+      return false;
+    }
+
+    try {
+      switch (filterQueryTree.getOperator()) {
+        case EQUALITY:
+          return pruneValues(segment, columnMetadata,
+              new String[]{((EqPredicate) Predicate.newPredicate(filterQueryTree)).getEqualsValue()});
+        case IN:
+          return pruneValues(segment, columnMetadata,
+              ((InPredicate) Predicate.newPredicate(filterQueryTree)).getInRange());
+        case RANGE:
+          return pruneRange(segment, columnMetadata, (RangePredicate) Predicate.newPredicate(filterQueryTree));
+        default:
+          return false;
+      }
+    } catch (NumberFormatException e) {
+      // Values that cannot be parsed as the column type are left to the query execution.
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if none of the given values can be in the column, based on its min/max values and bloom filter.
+   */
+  private boolean pruneValues(IndexSegmentImpl segment, ColumnMetadata columnMetadata, String[] values) {
+    String column = columnMetadata.getColumnName();
+    DataType dataType = columnMetadata.getDataType();
+    String[] minMax = getMinMaxValues(segment, columnMetadata);
+    BloomFilterReader bloomFilter = segment.getBloomFilterFor(column);
+    for (String rawValue : values) {
+      String value = normalize(dataType, rawValue);
+      if (minMax != null && (compare(dataType, value, minMax[0]) < 0 || compare(dataType, value, minMax[1]) > 0)) {
+        continue;
+      }
+      if (bloomFilter != null && !bloomFilter.mightContain(value)) {
+        continue;
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the range does not overlap with the [min, max] interval of the column.
+   */
+  private boolean pruneRange(IndexSegmentImpl segment, ColumnMetadata columnMetadata, RangePredicate predicate) {
+    String[] minMax = getMinMaxValues(segment, columnMetadata);
+    if (minMax == null) {
+      return false;
+    }
+    DataType dataType = columnMetadata.getDataType();
+
+    String lower = predicate.getLowerBoundary();
+    if (!lower.equals(UNBOUNDED)) {
+      int result = compare(dataType, normalize(dataType, lower), minMax[1]);
+      if (result > 0 || (result == 0 && !predicate.includeLowerBoundary())) {
+        return true;
+      }
+    }
+    String upper = predicate.getUpperBoundary();
+    if (!upper.equals(UNBOUNDED)) {
+      int result = compare(dataType, normalize(dataType, upper), minMax[0]);
+      if (result < 0 || (result == 0 && !predicate.includeUpperBoundary())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the min and max values of the column from the segment metadata, or from the dictionary for columns (and
+   * older segments) that do not record them in the metadata.
+   */
+  private static String[] getMinMaxValues(IndexSegmentImpl segment, ColumnMetadata columnMetadata) {
+    if (columnMetadata.getMinValue() != null && columnMetadata.getMaxValue() != null) {
+      return new String[]{columnMetadata.getMinValue(), columnMetadata.getMaxValue()};
+    }
+    // Dictionaries are sorted on the padded strings, which only matches the natural order with the default padding.
+    if (!columnMetadata.getDataType().isNumber()
+        && columnMetadata.getPaddingCharacter() != V1Constants.Str.DEFAULT_STRING_PAD_CHAR) {
+      return null;
+    }
+    ImmutableDictionaryReader dictionary = segment.getDictionaryFor(columnMetadata.getColumnName());
+    if (dictionary == null || dictionary.length() == 0) {
+      return null;
+    }
+    return new String[]{dictionary.get(0).toString(), dictionary.get(dictionary.length() - 1).toString()};
+  }
+
+  private static int compare(DataType dataType, String left, String right) {
+    if (dataType.isNumber()) {
+      return new BigDecimal(left.trim()).compareTo(new BigDecimal(right.trim()));
+    }
+    return left.compareTo(right);
+  }
+
+  /**
+   * Converts a value from the query to the column type and back, which gives the string representation used for the
+   * min/max values and the bloom filter. Floating point values are compared after rounding them to the column type, the
+   * same way the predicate evaluators do.
+   */
+  private static String normalize(DataType dataType, String value) {
+    switch (dataType) {
+      case INT:
+        return Integer.toString(Integer.parseInt(value.trim()));
+      case LONG:
+        return Long.toString(Long.parseLong(value.trim()));
+      case FLOAT:
+        return Float.toString(Float.parseFloat(value.trim()));
+      case DOUBLE:
+        return Double.toString(Double.parseDouble(value.trim()));
+      default:
+        return value;
+    }
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueSegmentPruner";
+  }
+}
@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.reduce;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.query.IncrementalReducer;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.QueryProcessingException;
+import com.linkedin.pinot.common.response.broker.SelectionResults;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * IncrementalBrokerReducer merges the DataTables of the servers into a running result one at a time, in the order
+ * they arrive, and renders the BrokerResponseNative once all responses are in:
+ * <ul>
+ *   <li>Selection queries keep the top rows in a bounded priority queue (with <code>ORDER BY</code>) or the first
+ *   rows (without <code>ORDER BY</code>).</li>
+ *   <li>Aggregation queries keep one combined value per aggregation function.</li>
+ *   <li>Aggregation group by queries keep one map of combined values per aggregation function.</li>
+ * </ul>
+ * Only one DataTable is referenced at a time, so responses can be released as soon as they are merged.
+ */
+public class IncrementalBrokerReducer implements IncrementalReducer<BrokerResponseNative> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalBrokerReducer.class);
+
+  private static final String NUM_DOCS_SCANNED = "numDocsScanned";
+  private static final String TIME_USED_MS = "timeUsedMs";
+  private static final String TOTAL_DOCS = "totalDocs";
+
+  private final BrokerRequest _brokerRequest;
+  private final BrokerResponseNative _brokerResponseNative = new BrokerResponseNative();
+  private final boolean _isSelection;
+  private int _numServersResponded = 0;
+  private boolean _hasResults = false;
+
+  // Selection state
+  private DataSchema _selectionDataSchema;
+  private boolean _selectionHasRows = false;
+  private SelectionOperatorService _selectionService;
+  private Collection<Serializable[]> _selectionRows;
+  private final List<ServerInstance> _droppedServers = new ArrayList<ServerInstance>();
+
+  // Aggregation state
+  private List<AggregationFunction> _aggregationFunctions;
+  private Serializable[] _aggregationResults;
+
+  // Aggregation group by state
+  private AggregationGroupByOperatorService _aggregationGroupByOperatorService;
+  private List<Map<String, Serializable>> _groupByResults;
+
+  public IncrementalBrokerReducer(BrokerRequest brokerRequest) {
+    _brokerRequest = brokerRequest;
+    _isSelection = brokerRequest.isSetSelections() && (brokerRequest.getSelections().getSelectionColumns() != null);
+    if (!_isSelection && brokerRequest.isSetAggregationsInfo()) {
+      if (!brokerRequest.isSetGroupBy()) {
+        _aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(brokerRequest);
+        _aggregationResults = new Serializable[_aggregationFunctions.size()];
+      } else {
+        _aggregationGroupByOperatorService =
+            new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
+      }
+    }
+  }
+
+  @Override
+  public void setNumServersQueried(int numServersQueried) {
+    _brokerResponseNative.setNumServersQueried(numServersQueried);
+  }
+
+  private static long getLongMetadata(Map<String, String> metadata, String key) {
+    String value = metadata.get(key);
+    return (value == null) ? 0L : Long.parseLong(value);
+  }
+
+  @Override
+  public void add(ServerInstance serverInstance, DataTable instanceResponse) {
+    if (instanceResponse == null) {
+      return;
+    }
+    _numServersResponded++;
+
+    // reduceOnTraceInfo (put it here so that trace info can show up even exception happens)
+    if (_brokerRequest.isEnableTrace() && instanceResponse.getMetadata() != null) {
+      _brokerResponseNative.getTraceInfo()
+          .put(serverInstance.getHostname(), instanceResponse.getMetadata().get("traceInfo"));
+    }
+
+    // Reduce on resource usage and segment counts (servers report them on exceptions as well, older servers do not
+    // report them at all)
+    if (instanceResponse.getMetadata() != null) {
+      Map<String, String> metadata = instanceResponse.getMetadata();
+      _brokerResponseNative.setThreadCpuTimeNs(_brokerResponseNative.getThreadCpuTimeNs() + getLongMetadata(metadata,
+          DataTable.THREAD_CPU_TIME_NS_METADATA_KEY));
+      _brokerResponseNative.setAllocatedBytes(
+          _brokerResponseNative.getAllocatedBytes() + getLongMetadata(metadata, DataTable.ALLOCATED_BYTES_METADATA_KEY));
+      _brokerResponseNative.setQueueWaitTimeNs(_brokerResponseNative.getQueueWaitTimeNs() + getLongMetadata(metadata,
+          DataTable.QUEUE_WAIT_TIME_NS_METADATA_KEY));
+      _brokerResponseNative.setNumSegmentsQueried(_brokerResponseNative.getNumSegmentsQueried() + getLongMetadata(
+          metadata, DataTable.NUM_SEGMENTS_QUERIED_METADATA_KEY));
+      _brokerResponseNative.setNumSegmentsPruned(_brokerResponseNative.getNumSegmentsPruned() + getLongMetadata(
+          metadata, DataTable.NUM_SEGMENTS_PRUNED_METADATA_KEY));
+      _brokerResponseNative.setNumGroupsTrimmed(_brokerResponseNative.getNumGroupsTrimmed() + getLongMetadata(
+          metadata, DataTable.NUM_GROUPS_TRIMMED_METADATA_KEY));
+    }
+
+    if (instanceResponse.getDataSchema() == null && instanceResponse.getMetadata() != null) {
+      for (String key : instanceResponse.getMetadata().keySet()) {
+        if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+          QueryProcessingException processingException = new QueryProcessingException();
+          processingException.setErrorCode(Integer.parseInt(key.substring(9)));
+          processingException.setMessage(instanceResponse.getMetadata().get(key));
+          _brokerResponseNative.getProcessingExceptions().add(processingException);
+        }
+      }
+      return;
+    }
+
+    // Reduce on numDocsScanned
+    _brokerResponseNative.setNumDocsScanned(_brokerResponseNative.getNumDocsScanned() + Long
+        .parseLong(instanceResponse.getMetadata().get(NUM_DOCS_SCANNED)));
+
+    // Reduce on totaDocs
+    _brokerResponseNative.setTotalDocs(
+        _brokerResponseNative.getTotalDocs() + Long.parseLong(instanceResponse.getMetadata().get(TOTAL_DOCS)));
+
+    if (Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)) > _brokerResponseNative.getTimeUsedMs()) {
+      _brokerResponseNative.setTimeUsedMs(Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)));
+    }
+
+    try {
+      if (_isSelection) {
+        mergeSelectionResults(serverInstance, instanceResponse);
+      } else if (_aggregationFunctions != null) {
+        mergeAggregationResults(instanceResponse);
+      } else if (_aggregationGroupByOperatorService != null) {
+        _groupByResults = _aggregationGroupByOperatorService.mergeGroupByResult(_groupByResults, instanceResponse);
+        mergeGroupByTrimBounds(instanceResponse);
+      }
+      _hasResults = true;
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while merging results from server: {}", serverInstance, e);
+      QueryProcessingException processingException = new QueryProcessingException();
+      processingException.setMessage(e.getMessage());
+      processingException.setErrorCode(QueryException.BROKER_GATHER_ERROR_CODE);
+      _brokerResponseNative.getProcessingExceptions().add(processingException);
+    }
+  }
+
+  @Override
+  public void addMissingServer(ServerInstance serverInstance, int errorCode, String message) {
+    QueryProcessingException processingException = new QueryProcessingException(errorCode);
+    processingException.setMessage(serverInstance + ": " + message);
+    _brokerResponseNative.getProcessingExceptions().add(processingException);
+  }
+
+  @Override
+  public BrokerResponseNative getResult() {
+    _brokerResponseNative.setNumServersResponded(_numServersResponded);
+    if (_numServersResponded == 0) {
+      // Same as BrokerReduceService on an empty response map: no results, only the exceptions of the missing servers
+      return _brokerResponseNative;
+    }
+    try {
+      if (_isSelection) {
+        if (_hasResults) {
+          _brokerResponseNative.setSelectionResults(renderSelectionResults());
+        }
+        return _brokerResponseNative;
+      }
+
+      if (_aggregationFunctions != null) {
+        _brokerResponseNative.setAggregationResults(renderAggregationResults());
+        return _brokerResponseNative;
+      }
+
+      if (_aggregationGroupByOperatorService != null) {
+        _aggregationGroupByOperatorService.finalizeGroupByResult(_groupByResults);
+        _brokerResponseNative.setAggregationResults(
+            _aggregationGroupByOperatorService.renderAggregationGroupByResult(_groupByResults));
+        return _brokerResponseNative;
+      }
+    } catch (Exception e) {
+      QueryProcessingException processingException = new QueryProcessingException();
+      processingException.setMessage(e.getMessage());
+      processingException.setErrorCode(QueryException.BROKER_GATHER_ERROR_CODE);
+      _brokerResponseNative.getProcessingExceptions().add(processingException);
+      return _brokerResponseNative;
+    }
+
+    throw new UnsupportedOperationException(
+        "Should not reach here, the query has no attributes of selection or aggregation!");
+  }
+
+  /**
+   * Merge the trim bounds reported by a server that trimmed its group by results, which bound the error of the group
+   * values.
+   */
+  private void mergeGroupByTrimBounds(DataTable dataTable) {
+    String trimBoundsString = dataTable.getMetadata().get(DataTable.GROUP_BY_TRIM_BOUNDS_METADATA_KEY);
+    if (trimBoundsString == null) {
+      return;
+    }
+    String[] values = trimBoundsString.split(",");
+    double[] trimBounds = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      trimBounds[i] = Double.parseDouble(values[i]);
+    }
+    _aggregationGroupByOperatorService.mergeTrimBounds(trimBounds);
+  }
+
+  /**
+   * Merge the rows of one server into the selection results. The schema of the first response with rows is the
+   * master schema, rows from responses with a different schema are dropped.
+   */
+  private void mergeSelectionResults(ServerInstance serverInstance, DataTable dataTable) {
+    DataSchema dataSchema = dataTable.getDataSchema();
+    int numRows = dataTable.getNumberOfRows();
+    if (numRows == 0) {
+      // Empty responses only provide the schema to render if no server returns rows
+      if (_selectionDataSchema == null) {
+        _selectionDataSchema = dataSchema;
+      }
+      return;
+    }
+    if (!_selectionHasRows) {
+      _selectionDataSchema = dataSchema;
+      _selectionHasRows = true;
+    } else if (!_selectionDataSchema.equals(dataSchema)) {
+      _droppedServers.add(serverInstance);
+      return;
+    }
+
+    if (_brokerRequest.getSelections().isSetSelectionSortSequence()) {
+      if (_selectionService == null) {
+        _selectionService = new SelectionOperatorService(_brokerRequest.getSelections(), _selectionDataSchema);
+      }
+      _selectionService.reduceWithOrdering(dataTable);
+    } else {
+      int maxRowSize = _brokerRequest.getSelections().getSize();
+      if (_selectionRows == null) {
+        _selectionRows = new ArrayList<Serializable[]>(maxRowSize);
+      }
+      for (int rowId = 0; rowId < numRows && _selectionRows.size() < maxRowSize; rowId++) {
+        _selectionRows.add(SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId));
+      }
+    }
+  }
+
+  private SelectionResults renderSelectionResults() {
+    // To log once per query
+    if (!_droppedServers.isEmpty()) {
+      LOGGER.error("SCHEMA-MISMATCH: Dropping responses from servers: {}", _droppedServers);
+    }
+
+    if (_brokerRequest.getSelections().isSetSelectionSortSequence()) {
+      if (_selectionService == null) {
+        _selectionService = new SelectionOperatorService(_brokerRequest.getSelections(), _selectionDataSchema);
+      }
+      return _selectionService.renderSelectionResultsWithOrdering(_selectionService.getRowEventsSet());
+    } else {
+      Collection<Serializable[]> rows =
+          (_selectionRows != null) ? _selectionRows : Collections.<Serializable[]>emptyList();
+      return SelectionOperatorUtils.renderSelectionResultsWithoutOrdering(rows,
+          _brokerRequest.getSelections().getSelectionColumns(), _selectionDataSchema);
+    }
+  }
+
+  /**
+   * Combine the aggregation results of one server into the running aggregation results.
+   */
+  private void mergeAggregationResults(DataTable dataTable) {
+    DataSchema aggregationResultSchema = dataTable.getDataSchema();
+    for (int rowId = 0; rowId < dataTable.getNumberOfRows(); ++rowId) {
+      for (int colId = 0; colId < _aggregationResults.length; ++colId) {
+        Serializable value;
+        switch (aggregationResultSchema.getColumnType(colId)) {
+          case INT:
+            value = dataTable.getInt(rowId, colId);
+            break;
+          case SHORT:
+            value = dataTable.getShort(rowId, colId);
+            break;
+          case FLOAT:
+            value = dataTable.getFloat(rowId, colId);
+            break;
+          case LONG:
+            value = dataTable.getLong(rowId, colId);
+            break;
+          case DOUBLE:
+            value = dataTable.getDouble(rowId, colId);
+            break;
+          case STRING:
+            value = dataTable.getString(rowId, colId);
+            break;
+          default:
+            value = dataTable.getObject(rowId, colId);
+            break;
+        }
+        if (_aggregationResults[colId] == null) {
+          _aggregationResults[colId] = value;
+        } else {
+          _aggregationResults[colId] =
+              _aggregationFunctions.get(colId).combineTwoValues(_aggregationResults[colId], value);
+        }
+      }
+    }
+  }
+
+  private List<AggregationResult> renderAggregationResults() {
+    List<AggregationResult> aggregationResults = new ArrayList<AggregationResult>();
+    for (int i = 0; i < _aggregationFunctions.size(); ++i) {
+      List<Serializable> combinedResults = new ArrayList<Serializable>(1);
+      if (_aggregationResults[i] != null) {
+        combinedResults.add(_aggregationResults[i]);
+      }
+      AggregationFunction aggregationFunction = _aggregationFunctions.get(i);
+      Serializable value = formatValue(aggregationFunction.reduce(combinedResults));
+      aggregationResults.add(new AggregationResult(aggregationFunction.getFunctionName(), value));
+    }
+    return aggregationResults;
+  }
+
+  /**
+   * Format the input float/double value to be of the form #####.#####.
+   * If the input is not float or double, return the value as is.
+   *
+   * @param value
+   * @return
+   */
+  private static Serializable formatValue(Serializable value) {
+    return (value instanceof Float || value instanceof Double) ? String.format(Locale.US, "%1.5f", value)
+        : value.toString();
+  }
+}
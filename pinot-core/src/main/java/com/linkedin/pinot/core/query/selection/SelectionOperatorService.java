@@ -262,13 +262,24 @@ public class SelectionOperatorService {
    * @return reduced results.
    */
   public PriorityQueue<Serializable[]> reduceWithOrdering(@Nonnull Map<ServerInstance, DataTable> selectionResults) {
+    for (DataTable dataTable : selectionResults.values()) {
+      reduceWithOrdering(dataTable);
+    }
+    return _rowEventsSet;
+  }
+
+  /**
+   * Reduce a single {@link DataTable} to selection results for selection queries with <code>ORDER BY</code>.
+   *
+   * @param dataTable {@link DataTable} containing the selection rows.
+   * @return reduced results.
+   */
+  public PriorityQueue<Serializable[]> reduceWithOrdering(@Nonnull DataTable dataTable) {
     if (_maxRowSize > 0) {
-      for (DataTable dataTable : selectionResults.values()) {
-        int numRows = dataTable.getNumberOfRows();
-        for (int rowId = 0; rowId < numRows; rowId++) {
-          Serializable[] row = SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId);
-          addToPriorityQueue(row, _rowEventsSet);
-        }
+      int numRows = dataTable.getNumberOfRows();
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        Serializable[] row = SelectionOperatorUtils.extractRowFromDataTable(dataTable, rowId);
+        addToPriorityQueue(row, _rowEventsSet);
       }
     }
     return _rowEventsSet;
@@ -15,10 +15,20 @@
  */
 package com.linkedin.pinot.core.realtime.converter;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.TimeFieldSpec;
 import com.linkedin.pinot.common.data.TimeGranularitySpec;
@@ -26,12 +36,21 @@ import com.linkedin.pinot.core.data.readers.RecordReader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
+import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.ForwardIndexType;
+import com.linkedin.pinot.core.segment.creator.InvertedIndexType;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentColumnarIndexCreator;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentDictionaryCreator;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 
 
 public class RealtimeSegmentConverter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentConverter.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
 
   private RealtimeSegmentImpl realtimeSegmentImpl;
+  private Schema realtimeSchema;
   private String outputPath;
   private Schema dataSchema;
   private String tableName;
@@ -60,6 +79,7 @@ public class RealtimeSegmentConverter {
 
     newSchema.addField(newTimeSpec);
     this.realtimeSegmentImpl = realtimeSegment;
+    this.realtimeSchema = schema;
     this.outputPath = outputPath;
     this.invertedIndexColumns = invertedIndexColumns;
     this.dataSchema = newSchema;
@@ -74,14 +94,6 @@ public class RealtimeSegmentConverter {
   }
 
   public void build(SegmentVersion segmentVersion) throws Exception {
-    // lets create a record reader
-    RecordReader reader;
-
-    if (sortedColumn == null) {
-      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema);
-    } else {
-      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema, sortedColumn);
-    }
     SegmentGeneratorConfig genConfig = new SegmentGeneratorConfig(dataSchema);
     if (invertedIndexColumns != null && !invertedIndexColumns.isEmpty()) {
       for (String column : invertedIndexColumns) {
@@ -95,7 +107,264 @@ public class RealtimeSegmentConverter {
     genConfig.setOutDir(outputPath);
     genConfig.setSegmentName(segmentName);
     final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+
+    if (canReuseDictionaries()) {
+      // The reader is only used for the schema, rows are not read
+      driver.init(genConfig, new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema));
+      buildFromDictionaries(driver, genConfig.getPaddingCharacter());
+      return;
+    }
+
+    // lets create a record reader
+    RecordReader reader;
+
+    if (sortedColumn == null) {
+      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema);
+    } else {
+      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema, sortedColumn);
+    }
     driver.init(genConfig, reader);
     driver.build();
   }
+
+  /**
+   * The consuming segment's dictionaries and forward indexes can be used as is when every column is stored with the
+   * same name, type and arity as in the segment to build (this is not the case e.g. when the incoming and outgoing
+   * time columns differ).
+   */
+  private boolean canReuseDictionaries() {
+    if (realtimeSegmentImpl.getAggregateDocumentCount() == 0) {
+      return false;
+    }
+    for (FieldSpec fieldSpec : dataSchema.getAllFieldSpecs()) {
+      String column = fieldSpec.getName();
+      FieldSpec realtimeFieldSpec = realtimeSchema.getFieldSpecFor(column);
+      if (realtimeFieldSpec == null || !realtimeSegmentImpl.hasDictionary(column)
+          || realtimeFieldSpec.getDataType() != fieldSpec.getDataType()
+          || realtimeFieldSpec.isSingleValueField() != fieldSpec.isSingleValueField()) {
+        return false;
+      }
+    }
+    return sortedColumn == null || dataSchema.getFieldSpecFor(sortedColumn).isSingleValueField();
+  }
+
+  /**
+   * Builds the segment from the consuming segment's dictionaries: each dictionary is sorted once to get the values of
+   * the new dictionary along with a mapping from the mutable dictionary ids, and the forward index of each column is
+   * then remapped and streamed into the forward and inverted index creators, in sorted column order if any.
+   */
+  private void buildFromDictionaries(SegmentIndexCreationDriverImpl driver, char paddingChar) throws Exception {
+    long start = System.currentTimeMillis();
+    final int numDocs = realtimeSegmentImpl.getAggregateDocumentCount();
+    List<FieldSpec> fieldSpecs = new ArrayList<>(dataSchema.getAllFieldSpecs());
+
+    Map<String, int[]> dictionaryIdMappings = new HashMap<>();
+    for (FieldSpec fieldSpec : fieldSpecs) {
+      String column = fieldSpec.getName();
+      dictionaryIdMappings.put(column,
+          sortDictionary(realtimeSegmentImpl.getDictionaryFor(column), fieldSpec.getDataType(), paddingChar));
+    }
+
+    // Order of the documents in the new segment
+    int[] sortedDocIds = null;
+    if (sortedColumn != null) {
+      sortedDocIds = getSortedDocIds(dictionaryIdMappings.get(sortedColumn), numDocs);
+    }
+
+    Map<String, ColumnIndexCreationInfo> indexCreationInfoMap = new HashMap<>();
+    for (FieldSpec fieldSpec : fieldSpecs) {
+      String column = fieldSpec.getName();
+      indexCreationInfoMap.put(column,
+          getIndexCreationInfo(fieldSpec, dictionaryIdMappings.get(column), sortedDocIds, numDocs));
+    }
+    long statsTime = System.currentTimeMillis();
+
+    SegmentColumnarIndexCreator indexCreator = driver.initDictionaryEncodedBuild(indexCreationInfoMap, numDocs);
+    for (FieldSpec fieldSpec : fieldSpecs) {
+      String column = fieldSpec.getName();
+      int[] dictionaryIdMapping = dictionaryIdMappings.get(column);
+      if (fieldSpec.isSingleValueField()) {
+        for (int docId = 0; docId < numDocs; docId++) {
+          int realtimeDocId = sortedDocIds == null ? docId : sortedDocIds[docId];
+          indexCreator.indexSingleValue(column, docId,
+              dictionaryIdMapping[realtimeSegmentImpl.getDictionaryIdAt(column, realtimeDocId)]);
+        }
+      } else {
+        int[] buffer = new int[realtimeSegmentImpl.getMaxNumberOfMultiValues(column)];
+        for (int docId = 0; docId < numDocs; docId++) {
+          int realtimeDocId = sortedDocIds == null ? docId : sortedDocIds[docId];
+          int numValues = realtimeSegmentImpl.getDictionaryIdsAt(column, realtimeDocId, buffer);
+          int[] dictionaryIds = new int[numValues];
+          for (int i = 0; i < numValues; i++) {
+            dictionaryIds[i] = dictionaryIdMapping[buffer[i]];
+          }
+          indexCreator.indexMultiValue(column, docId, dictionaryIds);
+        }
+      }
+    }
+    driver.sealDictionaryEncodedBuild();
+    LOGGER.info("Built segment {} with {} docs from dictionaries in {} ms (stats: {} ms)", segmentName, numDocs,
+        System.currentTimeMillis() - start, statsTime - start);
+  }
+
+  /**
+   * Returns the mapping from the ids of the given dictionary to the ids of its values in the dictionary of the new
+   * segment. String values are ordered on their padded form, the same way as {@link SegmentDictionaryCreator} orders
+   * them, which differs from their natural order unless the padding character is '\0' [PINOT-2730].
+   */
+  @VisibleForTesting
+  static int[] sortDictionary(MutableDictionaryReader dictionary, FieldSpec.DataType dataType,
+      char paddingChar) {
+    int cardinality = dictionary.length();
+    final Comparable[] values = new Comparable[cardinality];
+    Integer[] sortedIds = new Integer[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      values[i] = (Comparable) dictionary.get(i);
+      sortedIds[i] = i;
+    }
+    if (dataType == FieldSpec.DataType.STRING || dataType == FieldSpec.DataType.BOOLEAN) {
+      // Same length as the dictionary entries written by SegmentDictionaryCreator
+      int maxLength = 1;
+      for (int i = 0; i < cardinality; i++) {
+        maxLength = Math.max(maxLength, values[i].toString().getBytes(UTF_8).length);
+      }
+      for (int i = 0; i < cardinality; i++) {
+        values[i] = SegmentDictionaryCreator.getPaddedString(values[i].toString(), maxLength, paddingChar);
+      }
+    }
+    Arrays.sort(sortedIds, new Comparator<Integer>() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return values[o1].compareTo(values[o2]);
+      }
+    });
+    int[] dictionaryIdMapping = new int[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      dictionaryIdMapping[sortedIds[i]] = i;
+    }
+    return dictionaryIdMapping;
+  }
+
+  /**
+   * Counting sort of the document ids on the (remapped) dictionary ids of the sorted column, keeping the documents with
+   * the same value in ingestion order.
+   */
+  private int[] getSortedDocIds(int[] dictionaryIdMapping, int numDocs) {
+    int[] offsets = new int[dictionaryIdMapping.length + 1];
+    for (int docId = 0; docId < numDocs; docId++) {
+      offsets[dictionaryIdMapping[realtimeSegmentImpl.getDictionaryIdAt(sortedColumn, docId)] + 1]++;
+    }
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+    int[] sortedDocIds = new int[numDocs];
+    for (int docId = 0; docId < numDocs; docId++) {
+      sortedDocIds[offsets[dictionaryIdMapping[realtimeSegmentImpl.getDictionaryIdAt(sortedColumn, docId)]]++] = docId;
+    }
+    return sortedDocIds;
+  }
+
+  private ColumnIndexCreationInfo getIndexCreationInfo(FieldSpec fieldSpec, int[] dictionaryIdMapping,
+      int[] sortedDocIds, int numDocs) {
+    String column = fieldSpec.getName();
+    MutableDictionaryReader dictionary = realtimeSegmentImpl.getDictionaryFor(column);
+    int cardinality = dictionary.length();
+    int[] sortedIds = new int[cardinality];
+    for (int i = 0; i < cardinality; i++) {
+      sortedIds[dictionaryIdMapping[i]] = i;
+    }
+
+    // Same representation as the unique values from the stats collectors
+    Object sortedValues;
+    switch (fieldSpec.getDataType()) {
+      case INT:
+        int[] intValues = new int[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+          intValues[i] = dictionary.getIntValue(sortedIds[i]);
+        }
+        sortedValues = intValues;
+        break;
+      case LONG:
+        long[] longValues = new long[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+          longValues[i] = dictionary.getLongValue(sortedIds[i]);
+        }
+        sortedValues = longValues;
+        break;
+      case FLOAT:
+        float[] floatValues = new float[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+          floatValues[i] = dictionary.getFloatValue(sortedIds[i]);
+        }
+        sortedValues = floatValues;
+        break;
+      case DOUBLE:
+        double[] doubleValues = new double[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+          doubleValues[i] = dictionary.getDoubleValue(sortedIds[i]);
+        }
+        sortedValues = doubleValues;
+        break;
+      case STRING:
+      case BOOLEAN:
+        String[] stringValues = new String[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+          stringValues[i] = dictionary.get(sortedIds[i]).toString();
+        }
+        sortedValues = stringValues;
+        break;
+      default:
+        throw new UnsupportedOperationException("Unsupported data type " + fieldSpec.getDataType() + " for column "
+            + column);
+    }
+    Object min;
+    Object max;
+    if (sortedValues instanceof String[]) {
+      // The dictionary order of strings may differ from their natural order, used for the min and max values
+      String[] stringValues = (String[]) sortedValues;
+      min = stringValues[0];
+      max = stringValues[0];
+      for (String value : stringValues) {
+        if (value.compareTo((String) min) < 0) {
+          min = value;
+        } else if (value.compareTo((String) max) > 0) {
+          max = value;
+        }
+      }
+    } else {
+      min = dictionary.get(sortedIds[0]);
+      max = dictionary.get(sortedIds[cardinality - 1]);
+    }
+
+    boolean isSorted;
+    int totalNumberOfEntries;
+    int maxNumberOfMultiValues;
+    if (fieldSpec.isSingleValueField()) {
+      isSorted = true;
+      int previousDictionaryId = -1;
+      for (int docId = 0; docId < numDocs && isSorted; docId++) {
+        int realtimeDocId = sortedDocIds == null ? docId : sortedDocIds[docId];
+        int dictionaryId = dictionaryIdMapping[realtimeSegmentImpl.getDictionaryIdAt(column, realtimeDocId)];
+        isSorted = dictionaryId >= previousDictionaryId;
+        previousDictionaryId = dictionaryId;
+      }
+      totalNumberOfEntries = numDocs;
+      maxNumberOfMultiValues = 0;
+    } else {
+      isSorted = false;
+      totalNumberOfEntries = 0;
+      maxNumberOfMultiValues = 0;
+      int[] buffer = new int[realtimeSegmentImpl.getMaxNumberOfMultiValues(column)];
+      for (int docId = 0; docId < numDocs; docId++) {
+        int numValues = realtimeSegmentImpl.getDictionaryIdsAt(column, docId, buffer);
+        totalNumberOfEntries += numValues;
+        maxNumberOfMultiValues = Math.max(maxNumberOfMultiValues, numValues);
+      }
+    }
+
+    return new ColumnIndexCreationInfo(true/*createDictionary*/, min, max, sortedValues,
+        ForwardIndexType.FIXED_BIT_COMPRESSED, InvertedIndexType.ROARING_BITMAPS, isSorted, false/*hasNulls*/,
+        totalNumberOfEntries, maxNumberOfMultiValues, false/*isAutoGenerated*/, fieldSpec.getDefaultNullValue());
+  }
 }
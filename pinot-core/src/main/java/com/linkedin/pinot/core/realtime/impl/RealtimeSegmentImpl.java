@@ -62,6 +62,8 @@ import com.linkedin.pinot.core.startree.StarTree;
 public class RealtimeSegmentImpl implements RealtimeSegment {
   private final Logger LOGGER;
   public static final int[] EMPTY_DICTIONARY_IDS_ARRAY = new int[0];
+  // Upper bound on the number of rows per chunk of forward index memory
+  private static final int MAX_NUM_ROWS_PER_CHUNK = 10000;
 
   private SegmentMetadataImpl _segmentMetadata;
   private final Schema dataSchema;
@@ -79,7 +81,9 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   private Map<String, Integer> maxNumberOfMultivaluesMap;
 
-  private int docIdSearchableOffset = -1;
+  // Largest docId that is fully indexed (forward and inverted indexes), published after each row is indexed so that
+  // queries never see partially indexed rows
+  private volatile int docIdSearchableOffset = -1;
   private int numDocsIndexed = 0;
   private int numSuccessIndexed = 0;
 
@@ -96,6 +100,15 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   public RealtimeSegmentImpl(Schema schema, int capacity, String tableName, String segmentName, String streamName,
       ServerMetrics serverMetrics, List<String> invertedIndexColumns) throws IOException {
+    this(schema, capacity, tableName, segmentName, streamName, serverMetrics, invertedIndexColumns, false);
+  }
+
+  /**
+   * @param offHeapDictionary whether to keep the dictionaries of numeric columns off-heap, see
+   *                          {@link RealtimeDictionaryProvider#getDictionaryFor(FieldSpec, boolean)}
+   */
+  public RealtimeSegmentImpl(Schema schema, int capacity, String tableName, String segmentName, String streamName,
+      ServerMetrics serverMetrics, List<String> invertedIndexColumns, boolean offHeapDictionary) throws IOException {
     // initial variable setup
     this.segmentName = segmentName;
     this.serverMetrics = serverMetrics;
@@ -111,14 +124,17 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     }
     // dictionary assignment for dimensions and time column
     for (String column : dataSchema.getDimensionNames()) {
-      dictionaryMap.put(column, RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(column)));
+      dictionaryMap.put(column, RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(column),
+          offHeapDictionary));
     }
 
     dictionaryMap.put(outgoingTimeColumnName,
-        RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(outgoingTimeColumnName)));
+        RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(outgoingTimeColumnName),
+            offHeapDictionary));
 
     for (String metric : dataSchema.getMetricNames()) {
-      dictionaryMap.put(metric, RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(metric)));
+      dictionaryMap.put(metric, RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(metric),
+          offHeapDictionary));
     }
 
     // docId generator and time granularity converter
@@ -127,7 +143,8 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     outgoingGranularitySpec = schema.getTimeFieldSpec().getOutgoingGranularitySpec();
     timeConverter = TimeConverterProvider.getTimeConverter(incomingGranularitySpec, outgoingGranularitySpec);
 
-    // forward index and inverted index setup
+    // forward index and inverted index setup, the forward index memory is allocated in chunks as rows are indexed
+    int numRowsPerChunk = Math.min(capacity, MAX_NUM_ROWS_PER_CHUNK);
     columnIndexReaderWriterMap = new HashMap<String, DataFileReader>();
     invertedIndexMap = new HashMap<String, RealtimeInvertedIndex>();
 
@@ -136,10 +153,10 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
         invertedIndexMap.put(dimension, new DimensionInvertertedIndex(dimension));
       }
       if (schema.getFieldSpecFor(dimension).isSingleValueField()) {
-        columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
+        columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnSingleValueReaderWriter(numRowsPerChunk,
             V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
       } else {
-        columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnMultiValueReaderWriter(capacity,
+        columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnMultiValueReaderWriter(numRowsPerChunk,
             Integer.SIZE / 8, FixedByteSingleColumnMultiValueReaderWriter.DEFAULT_MAX_NUMBER_OF_MULTIVALUES));
       }
     }
@@ -148,14 +165,14 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       if (invertedIndexColumns.contains(metric)) {
         invertedIndexMap.put(metric, new MetricInvertedIndex(metric));
       }
-      columnIndexReaderWriterMap.put(metric, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
+      columnIndexReaderWriterMap.put(metric, new FixedByteSingleColumnSingleValueReaderWriter(numRowsPerChunk,
           V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
     }
 
     if (invertedIndexColumns.contains(outgoingTimeColumnName)) {
       invertedIndexMap.put(outgoingTimeColumnName, new TimeInvertedIndex(outgoingTimeColumnName));
     }
-    columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
+    columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteSingleColumnSingleValueReaderWriter(numRowsPerChunk,
         V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
 
     tableAndStreamName = tableName + "-" + streamName;
@@ -258,17 +275,18 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     minTimeVal = Math.min(minTimeVal, timeValue);
     maxTimeVal = Math.max(maxTimeVal, timeValue);
 
-    // also lets collect all dicIds to update inverted index later
-    Map<String, Object> rawRowToDicIdMap = new HashMap<String, Object>();
-
-    // lets update forward index now
+    // lets update the forward index, and the inverted index along with it; rows only become visible to queries
+    // once docIdSearchableOffset is published below
     int docId = docIdGenerator.incrementAndGet();
 
     for (String dimension : dataSchema.getDimensionNames()) {
+      RealtimeInvertedIndex invertedIndex = invertedIndexMap.get(dimension);
       if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
         int dicId = dictionaryMap.get(dimension).indexOf(row.getValue(dimension));
         ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setInt(docId, dicId);
-        rawRowToDicIdMap.put(dimension, dicId);
+        if (invertedIndex != null) {
+          invertedIndex.add(dicId, docId);
+        }
       } else {
         Object[] mValues = (Object[]) row.getValue(dimension);
         int[] dicIds;
@@ -284,7 +302,11 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
         ((FixedByteSingleColumnMultiValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setIntArray(docId,
             dicIds);
-        rawRowToDicIdMap.put(dimension, dicIds);
+        if (invertedIndex != null) {
+          for (int dicId : dicIds) {
+            invertedIndex.add(dicId, docId);
+          }
+        }
       }
     }
 
@@ -293,39 +315,19 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
           (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric);
       int dicId = dictionaryMap.get(metric).indexOf(row.getValue(metric));
       readerWriter.setInt(docId, dicId);
-      rawRowToDicIdMap.put(metric, dicId);
+      RealtimeInvertedIndex invertedIndex = invertedIndexMap.get(metric);
+      if (invertedIndex != null) {
+        invertedIndex.add(dicId, docId);
+      }
     }
 
     int timeDicId = dictionaryMap.get(outgoingTimeColumnName).indexOf(timeValueObj);
 
     ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName)).setInt(
         docId, timeDicId);
-    rawRowToDicIdMap.put(outgoingTimeColumnName, timeDicId);
-
-    // lets update the inverted index now
-    // metrics
-    for (String metric : dataSchema.getMetricNames()) {
-      if (invertedIndexMap.containsKey(metric)) {
-        invertedIndexMap.get(metric).add(rawRowToDicIdMap.get(metric), docId);
-      }
-    }
-
-    // dimension
-    for (String dimension : dataSchema.getDimensionNames()) {
-      if (invertedIndexMap.containsKey(dimension)) {
-        if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-          invertedIndexMap.get(dimension).add(rawRowToDicIdMap.get(dimension), docId);
-        } else {
-          int[] dicIds = (int[]) rawRowToDicIdMap.get(dimension);
-          for (int dicId : dicIds) {
-            invertedIndexMap.get(dimension).add(dicId, docId);
-          }
-        }
-      }
-    }
-    // time
-    if (invertedIndexMap.containsKey(outgoingTimeColumnName)) {
-      invertedIndexMap.get(outgoingTimeColumnName).add(rawRowToDicIdMap.get(outgoingTimeColumnName), docId);
+    RealtimeInvertedIndex timeInvertedIndex = invertedIndexMap.get(outgoingTimeColumnName);
+    if (timeInvertedIndex != null) {
+      timeInvertedIndex.add(timeDicId, docId);
     }
     docIdSearchableOffset = docId;
     numDocsIndexed += 1;
@@ -357,14 +359,15 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
   @Override
   public DataSource getDataSource(String columnName) {
     FieldSpec fieldSpec = dataSchema.getFieldSpecFor(columnName);
+    int searchableOffset = docIdSearchableOffset;
 
     if (fieldSpec.getFieldType() == FieldType.METRIC) {
       return new RealtimeColumnDataSource(fieldSpec, columnIndexReaderWriterMap.get(columnName),
-          invertedIndexMap.get(columnName), docIdSearchableOffset, -1, dataSchema, dictionaryMap.get(columnName));
+          invertedIndexMap.get(columnName), searchableOffset, -1, dataSchema, dictionaryMap.get(columnName));
     }
 
     return new RealtimeColumnDataSource(fieldSpec, columnIndexReaderWriterMap.get(columnName),
-        invertedIndexMap.get(columnName), docIdSearchableOffset, maxNumberOfMultivaluesMap.get(columnName), dataSchema,
+        invertedIndexMap.get(columnName), searchableOffset, maxNumberOfMultivaluesMap.get(columnName), dataSchema,
         dictionaryMap.get(columnName));
   }
 
@@ -431,6 +434,11 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
     }
     invertedIndexMap.clear();
+
+    for (MutableDictionaryReader dictionary : dictionaryMap.values()) {
+      dictionary.close();
+    }
+    dictionaryMap.clear();
     _segmentMetadata.close();
   }
 
@@ -679,6 +687,30 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     return dictionaryMap.containsKey(columnName);
   }
 
+  public MutableDictionaryReader getDictionaryFor(String columnName) {
+    return dictionaryMap.get(columnName);
+  }
+
+  /**
+   * Returns the dictionary id of a single-value column for the given document.
+   */
+  public int getDictionaryIdAt(String columnName, int docId) {
+    return ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(columnName)).getInt(docId);
+  }
+
+  /**
+   * Reads the dictionary ids of a multi-value column for the given document into the buffer, which must be able to
+   * hold {@link #getMaxNumberOfMultiValues(String)} values, and returns the number of values.
+   */
+  public int getDictionaryIdsAt(String columnName, int docId, int[] dictionaryIds) {
+    return ((FixedByteSingleColumnMultiValueReaderWriter) columnIndexReaderWriterMap.get(columnName)).getIntArray(
+        docId, dictionaryIds);
+  }
+
+  public int getMaxNumberOfMultiValues(String columnName) {
+    return maxNumberOfMultivaluesMap.get(columnName);
+  }
+
   @Override
   public StarTree getStarTree() {
     return null;
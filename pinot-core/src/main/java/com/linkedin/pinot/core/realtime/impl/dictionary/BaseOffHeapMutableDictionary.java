@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Base class for mutable dictionaries of numeric columns that keep their entries off-heap.
+ *
+ * <p>Every value is mapped to a primitive <code>long</code> key (the value itself for INT/LONG, the raw bits for
+ * FLOAT/DOUBLE). Keys are stored by dictionary id in a value buffer, and looked up through an open addressing hash
+ * table with linear probing, so neither indexing nor lookups box values.
+ *
+ * <p>There is a single writer (the consumer thread calling {@link #index(Object)}) and any number of readers. Readers
+ * never lock:
+ * <ul>
+ *   <li>An entry is written into the value buffer and the hash table before the dictionary length is published
+ *   through a volatile write; readers only trust dictionary ids smaller than the length they read.</li>
+ *   <li>When a buffer needs to grow, a bigger copy is built and then published through a volatile reference. The old
+ *   buffers are kept alive until {@link #close()}, since readers may still hold on to them.</li>
+ * </ul>
+ */
+public abstract class BaseOffHeapMutableDictionary extends MutableDictionaryReader {
+  private static final int INITIAL_HASH_TABLE_CAPACITY = 1024;
+  private static final int INITIAL_VALUE_CAPACITY = INITIAL_HASH_TABLE_CAPACITY / 2;
+
+  // Each hash table slot holds (dictId + 1) as an int followed by the key as a long, 0 marks an empty slot
+  private static final int SLOT_SIZE = (Integer.SIZE + Long.SIZE) / Byte.SIZE;
+  private static final int KEY_OFFSET_IN_SLOT = Integer.SIZE / Byte.SIZE;
+
+  private final int _keySize;
+  private final List<PinotDataBuffer> _retiredBuffers = new ArrayList<PinotDataBuffer>();
+
+  private volatile PinotDataBuffer _hashTable;
+  private volatile PinotDataBuffer _valueBuffer;
+  private volatile int _length = 0;
+
+  // Only accessed by the writer thread
+  private int _hashTableCapacity;
+  private int _valueCapacity;
+
+  /**
+   * @param spec field spec of the column
+   * @param keySize size in bytes of the key stored for each dictionary entry, 4 for INT/FLOAT and 8 for LONG/DOUBLE
+   */
+  protected BaseOffHeapMutableDictionary(FieldSpec spec, int keySize) {
+    super(spec);
+    _keySize = keySize;
+    _hashTableCapacity = INITIAL_HASH_TABLE_CAPACITY;
+    _hashTable = allocate(_hashTableCapacity * SLOT_SIZE);
+    _valueCapacity = INITIAL_VALUE_CAPACITY;
+    _valueBuffer = PinotDataBuffer.allocateDirect(_valueCapacity * _keySize);
+  }
+
+  /**
+   * Returns the dictionary id for the given key, or {@link #NULL_VALUE_INDEX} if the key has not been indexed. Safe to
+   * call concurrently with {@link #indexKey(long)}.
+   */
+  protected int getDictIdForKey(long key) {
+    PinotDataBuffer hashTable = _hashTable;
+    int mask = (int) (hashTable.size() / SLOT_SIZE) - 1;
+    int slot = hash(key) & mask;
+    while (true) {
+      int offset = slot * SLOT_SIZE;
+      int dictId = hashTable.getInt(offset) - 1;
+      if (dictId < 0 || dictId >= _length) {
+        // Either an empty slot, or an entry that is still being added; the key is not (yet) in the dictionary
+        return NULL_VALUE_INDEX;
+      }
+      if (hashTable.getLong(offset + KEY_OFFSET_IN_SLOT) == key) {
+        return dictId;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Adds the key to the dictionary if it is not there yet, and returns its dictionary id. Must only be called from the
+   * writer thread.
+   */
+  protected int indexKey(long key) {
+    int dictId = getDictIdForKey(key);
+    if (dictId != NULL_VALUE_INDEX) {
+      return dictId;
+    }
+
+    dictId = _length;
+    if (dictId == _valueCapacity) {
+      expandValueBuffer();
+    }
+    if (_keySize == Integer.SIZE / Byte.SIZE) {
+      _valueBuffer.putInt(dictId * _keySize, (int) key);
+    } else {
+      _valueBuffer.putLong(dictId * _keySize, key);
+    }
+    if ((dictId + 1) * 2 > _hashTableCapacity) {
+      expandHashTable();
+    }
+    putIntoHashTable(_hashTable, _hashTableCapacity - 1, key, dictId);
+
+    // Publish the new entry to the readers
+    _length = dictId + 1;
+    return dictId;
+  }
+
+  /**
+   * Returns the key stored for the given dictionary id of a dictionary with 4 bytes keys.
+   */
+  protected int getIntKey(int dictId) {
+    return _valueBuffer.getInt(dictId * _keySize);
+  }
+
+  /**
+   * Returns the key stored for the given dictionary id of a dictionary with 8 bytes keys.
+   */
+  protected long getLongKey(int dictId) {
+    return _valueBuffer.getLong(dictId * _keySize);
+  }
+
+  private void expandValueBuffer() {
+    PinotDataBuffer oldValueBuffer = _valueBuffer;
+    PinotDataBuffer newValueBuffer = PinotDataBuffer.allocateDirect(_valueCapacity * 2 * _keySize);
+    int size = _valueCapacity * _keySize;
+    for (int offset = 0; offset < size; offset += Long.SIZE / Byte.SIZE) {
+      newValueBuffer.putLong(offset, oldValueBuffer.getLong(offset));
+    }
+    _valueBuffer = newValueBuffer;
+    _retiredBuffers.add(oldValueBuffer);
+    _valueCapacity *= 2;
+  }
+
+  private void expandHashTable() {
+    PinotDataBuffer oldHashTable = _hashTable;
+    int newCapacity = _hashTableCapacity * 2;
+    PinotDataBuffer newHashTable = allocate(newCapacity * SLOT_SIZE);
+    int length = _length;
+    for (int dictId = 0; dictId < length; dictId++) {
+      long key = (_keySize == Integer.SIZE / Byte.SIZE) ? getIntKey(dictId) : getLongKey(dictId);
+      putIntoHashTable(newHashTable, newCapacity - 1, key, dictId);
+    }
+    _hashTable = newHashTable;
+    _retiredBuffers.add(oldHashTable);
+    _hashTableCapacity = newCapacity;
+  }
+
+  private static void putIntoHashTable(PinotDataBuffer hashTable, int mask, long key, int dictId) {
+    int slot = hash(key) & mask;
+    while (hashTable.getInt(slot * SLOT_SIZE) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    int offset = slot * SLOT_SIZE;
+    hashTable.putLong(offset + KEY_OFFSET_IN_SLOT, key);
+    hashTable.putInt(offset, dictId + 1);
+  }
+
+  private static PinotDataBuffer allocate(int size) {
+    PinotDataBuffer buffer = PinotDataBuffer.allocateDirect(size);
+    for (int offset = 0; offset < size; offset += Integer.SIZE / Byte.SIZE) {
+      buffer.putInt(offset, 0);
+    }
+    return buffer;
+  }
+
+  /**
+   * Murmur3 finalizer, spreads sequential keys (e.g. time values) over the hash table.
+   */
+  private static int hash(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  /**
+   * Parses a single raw value (a {@link Number} or its string representation) into the key of the dictionary.
+   */
+  protected abstract long toKey(Object rawValue);
+
+  /**
+   * Updates the min/max values with the value of the given key.
+   */
+  protected abstract void updateMinMax(long key);
+
+  @Override
+  public void index(Object rawValue) {
+    if (rawValue == null) {
+      hasNull = true;
+      return;
+    }
+
+    if (rawValue instanceof Object[]) {
+      for (Object value : (Object[]) rawValue) {
+        if (value != null) {
+          long key = toKey(value);
+          indexKey(key);
+          updateMinMax(key);
+        }
+      }
+      return;
+    }
+
+    long key = toKey(rawValue);
+    indexKey(key);
+    updateMinMax(key);
+  }
+
+  @Override
+  public int indexOf(Object rawValue) {
+    if (rawValue == null) {
+      return NULL_VALUE_INDEX;
+    }
+    return getDictIdForKey(toKey(rawValue));
+  }
+
+  @Override
+  public boolean contains(Object rawValue) {
+    if (rawValue == null) {
+      return hasNull;
+    }
+    return indexOf(rawValue) != NULL_VALUE_INDEX;
+  }
+
+  @Override
+  public String toString(int dictionaryId) {
+    return getStringValue(dictionaryId);
+  }
+
+  @Override
+  public int length() {
+    return _length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return _length == 0;
+  }
+
+  @Override
+  public void print() {
+    System.out.println("************* printing dictionary for column : " + spec.getName() + " ***************");
+    int length = _length;
+    for (int dictId = 0; dictId < length; dictId++) {
+      System.out.println(dictId + "," + get(dictId));
+    }
+    System.out.println("************************************");
+  }
+
+  @Override
+  public void close() {
+    _hashTable.close();
+    _valueBuffer.close();
+    for (PinotDataBuffer buffer : _retiredBuffers) {
+      buffer.close();
+    }
+    _retiredBuffers.clear();
+  }
+}
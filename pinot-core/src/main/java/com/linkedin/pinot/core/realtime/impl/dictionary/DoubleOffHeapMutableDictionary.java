@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+
+/**
+ * Off-heap mutable dictionary for DOUBLE columns.
+ */
+public class DoubleOffHeapMutableDictionary extends BaseOffHeapMutableDictionary {
+  private volatile double _min = Double.POSITIVE_INFINITY;
+  private volatile double _max = Double.NEGATIVE_INFINITY;
+
+  public DoubleOffHeapMutableDictionary(FieldSpec spec) {
+    super(spec, Long.SIZE / Byte.SIZE);
+  }
+
+  @Override
+  protected long toKey(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return Double.doubleToLongBits(((Number) rawValue).doubleValue());
+    }
+    return Double.doubleToLongBits(Double.parseDouble(rawValue.toString()));
+  }
+
+  @Override
+  protected void updateMinMax(long key) {
+    double value = Double.longBitsToDouble(key);
+    if (value < _min) {
+      _min = value;
+    }
+    if (value > _max) {
+      _max = value;
+    }
+  }
+
+  public double getDouble(int dictionaryId) {
+    return Double.longBitsToDouble(getLongKey(dictionaryId));
+  }
+
+  @Override
+  public Object get(int dictionaryId) {
+    return getDouble(dictionaryId);
+  }
+
+  @Override
+  public long getLongValue(int dictionaryId) {
+    return (long) getDouble(dictionaryId);
+  }
+
+  @Override
+  public double getDoubleValue(int dictionaryId) {
+    return getDouble(dictionaryId);
+  }
+
+  @Override
+  public int getIntValue(int dictionaryId) {
+    return (int) getDouble(dictionaryId);
+  }
+
+  @Override
+  public float getFloatValue(int dictionaryId) {
+    return (float) getDouble(dictionaryId);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Double.toString(getDouble(dictionaryId));
+  }
+
+  @Override
+  public boolean inRange(String lower, String upper, int indexOfValueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    return inRange(Double.parseDouble(lower), Double.parseDouble(upper), getDouble(indexOfValueToCompare), includeLower,
+        includeUpper);
+  }
+
+  @Override
+  public int[] getDictIdsInRange(String lower, String upper, boolean includeLower, boolean includeUpper) {
+    double lowerInDouble = Double.parseDouble(lower);
+    double upperInDouble = Double.parseDouble(upper);
+    IntArrayList dictIds = new IntArrayList();
+    int length = length();
+    for (int dictId = 0; dictId < length; dictId++) {
+      if (inRange(lowerInDouble, upperInDouble, getDouble(dictId), includeLower, includeUpper)) {
+        dictIds.add(dictId);
+      }
+    }
+    return dictIds.toIntArray();
+  }
+
+  private static boolean inRange(double lower, double upper, double valueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    if (includeLower ? valueToCompare < lower : valueToCompare <= lower) {
+      return false;
+    }
+    return includeUpper ? valueToCompare <= upper : valueToCompare < upper;
+  }
+
+  @Override
+  public Object getMinVal() {
+    return _min;
+  }
+
+  @Override
+  public Object getMaxVal() {
+    return _max;
+  }
+}
@@ -18,7 +18,7 @@ package com.linkedin.pinot.core.realtime.impl.dictionary;
 import com.linkedin.pinot.common.data.FieldSpec;
 
 
-public class FloatMutableDictionary extends MutableDictionaryReader {
+public class FloatMutableDictionary extends BaseOnHeapMutableDictionary {
 
   private Float min = Float.MAX_VALUE;
   private Float max = Float.MIN_VALUE;
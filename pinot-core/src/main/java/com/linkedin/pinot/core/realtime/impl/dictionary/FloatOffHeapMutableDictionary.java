@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+
+/**
+ * Off-heap mutable dictionary for FLOAT columns.
+ */
+public class FloatOffHeapMutableDictionary extends BaseOffHeapMutableDictionary {
+  private volatile float _min = Float.POSITIVE_INFINITY;
+  private volatile float _max = Float.NEGATIVE_INFINITY;
+
+  public FloatOffHeapMutableDictionary(FieldSpec spec) {
+    super(spec, Integer.SIZE / Byte.SIZE);
+  }
+
+  @Override
+  protected long toKey(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return Float.floatToIntBits(((Number) rawValue).floatValue());
+    }
+    return Float.floatToIntBits(Float.parseFloat(rawValue.toString()));
+  }
+
+  @Override
+  protected void updateMinMax(long key) {
+    float value = Float.intBitsToFloat((int) key);
+    if (value < _min) {
+      _min = value;
+    }
+    if (value > _max) {
+      _max = value;
+    }
+  }
+
+  public float getFloat(int dictionaryId) {
+    return Float.intBitsToFloat(getIntKey(dictionaryId));
+  }
+
+  @Override
+  public Object get(int dictionaryId) {
+    return getFloat(dictionaryId);
+  }
+
+  @Override
+  public long getLongValue(int dictionaryId) {
+    return (long) getFloat(dictionaryId);
+  }
+
+  @Override
+  public double getDoubleValue(int dictionaryId) {
+    return getFloat(dictionaryId);
+  }
+
+  @Override
+  public int getIntValue(int dictionaryId) {
+    return (int) getFloat(dictionaryId);
+  }
+
+  @Override
+  public float getFloatValue(int dictionaryId) {
+    return getFloat(dictionaryId);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Float.toString(getFloat(dictionaryId));
+  }
+
+  @Override
+  public boolean inRange(String lower, String upper, int indexOfValueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    return inRange(Float.parseFloat(lower), Float.parseFloat(upper), getFloat(indexOfValueToCompare), includeLower,
+        includeUpper);
+  }
+
+  @Override
+  public int[] getDictIdsInRange(String lower, String upper, boolean includeLower, boolean includeUpper) {
+    float lowerInFloat = Float.parseFloat(lower);
+    float upperInFloat = Float.parseFloat(upper);
+    IntArrayList dictIds = new IntArrayList();
+    int length = length();
+    for (int dictId = 0; dictId < length; dictId++) {
+      if (inRange(lowerInFloat, upperInFloat, getFloat(dictId), includeLower, includeUpper)) {
+        dictIds.add(dictId);
+      }
+    }
+    return dictIds.toIntArray();
+  }
+
+  private static boolean inRange(float lower, float upper, float valueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    if (includeLower ? valueToCompare < lower : valueToCompare <= lower) {
+      return false;
+    }
+    return includeUpper ? valueToCompare <= upper : valueToCompare < upper;
+  }
+
+  @Override
+  public Object getMinVal() {
+    return _min;
+  }
+
+  @Override
+  public Object getMaxVal() {
+    return _max;
+  }
+}
@@ -18,7 +18,7 @@ package com.linkedin.pinot.core.realtime.impl.dictionary;
 import com.linkedin.pinot.common.data.FieldSpec;
 
 
-public class IntMutableDictionary extends MutableDictionaryReader {
+public class IntMutableDictionary extends BaseOnHeapMutableDictionary {
 
   private Integer min = Integer.MAX_VALUE;
   private Integer max = Integer.MIN_VALUE;
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+
+/**
+ * Off-heap mutable dictionary for INT columns.
+ */
+public class IntOffHeapMutableDictionary extends BaseOffHeapMutableDictionary {
+  private volatile int _min = Integer.MAX_VALUE;
+  private volatile int _max = Integer.MIN_VALUE;
+
+  public IntOffHeapMutableDictionary(FieldSpec spec) {
+    super(spec, Integer.SIZE / Byte.SIZE);
+  }
+
+  @Override
+  protected long toKey(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return ((Number) rawValue).intValue();
+    }
+    return Integer.parseInt(rawValue.toString());
+  }
+
+  @Override
+  protected void updateMinMax(long key) {
+    int value = (int) key;
+    if (value < _min) {
+      _min = value;
+    }
+    if (value > _max) {
+      _max = value;
+    }
+  }
+
+  public int getInt(int dictionaryId) {
+    return getIntKey(dictionaryId);
+  }
+
+  @Override
+  public Object get(int dictionaryId) {
+    return getInt(dictionaryId);
+  }
+
+  @Override
+  public long getLongValue(int dictionaryId) {
+    return getInt(dictionaryId);
+  }
+
+  @Override
+  public double getDoubleValue(int dictionaryId) {
+    return getInt(dictionaryId);
+  }
+
+  @Override
+  public int getIntValue(int dictionaryId) {
+    return getInt(dictionaryId);
+  }
+
+  @Override
+  public float getFloatValue(int dictionaryId) {
+    return getInt(dictionaryId);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Integer.toString(getInt(dictionaryId));
+  }
+
+  @Override
+  public void readIntValues(int[] dictionaryIds, int startPos, int limit, int[] outValues, int outStartPos) {
+    int endPos = startPos + limit;
+    for (int iter = startPos; iter < endPos; ++iter) {
+      outValues[outStartPos++] = getInt(dictionaryIds[iter]);
+    }
+  }
+
+  @Override
+  public boolean inRange(String lower, String upper, int indexOfValueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    return inRange(Integer.parseInt(lower), Integer.parseInt(upper), getInt(indexOfValueToCompare), includeLower,
+        includeUpper);
+  }
+
+  @Override
+  public int[] getDictIdsInRange(String lower, String upper, boolean includeLower, boolean includeUpper) {
+    int lowerInInt = Integer.parseInt(lower);
+    int upperInInt = Integer.parseInt(upper);
+    IntArrayList dictIds = new IntArrayList();
+    int length = length();
+    for (int dictId = 0; dictId < length; dictId++) {
+      if (inRange(lowerInInt, upperInInt, getInt(dictId), includeLower, includeUpper)) {
+        dictIds.add(dictId);
+      }
+    }
+    return dictIds.toIntArray();
+  }
+
+  private static boolean inRange(int lower, int upper, int valueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    if (includeLower ? valueToCompare < lower : valueToCompare <= lower) {
+      return false;
+    }
+    return includeUpper ? valueToCompare <= upper : valueToCompare < upper;
+  }
+
+  @Override
+  public Object getMinVal() {
+    return _min;
+  }
+
+  @Override
+  public Object getMaxVal() {
+    return _max;
+  }
+}
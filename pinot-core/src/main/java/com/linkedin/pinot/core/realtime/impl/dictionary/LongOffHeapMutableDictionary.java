@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+
+/**
+ * Off-heap mutable dictionary for LONG columns.
+ */
+public class LongOffHeapMutableDictionary extends BaseOffHeapMutableDictionary {
+  private volatile long _min = Long.MAX_VALUE;
+  private volatile long _max = Long.MIN_VALUE;
+
+  public LongOffHeapMutableDictionary(FieldSpec spec) {
+    super(spec, Long.SIZE / Byte.SIZE);
+  }
+
+  @Override
+  protected long toKey(Object rawValue) {
+    if (rawValue instanceof Number) {
+      return ((Number) rawValue).longValue();
+    }
+    return Long.parseLong(rawValue.toString());
+  }
+
+  @Override
+  protected void updateMinMax(long key) {
+    long value = key;
+    if (value < _min) {
+      _min = value;
+    }
+    if (value > _max) {
+      _max = value;
+    }
+  }
+
+  public long getLong(int dictionaryId) {
+    return getLongKey(dictionaryId);
+  }
+
+  @Override
+  public Object get(int dictionaryId) {
+    return getLong(dictionaryId);
+  }
+
+  @Override
+  public long getLongValue(int dictionaryId) {
+    return getLong(dictionaryId);
+  }
+
+  @Override
+  public double getDoubleValue(int dictionaryId) {
+    return getLong(dictionaryId);
+  }
+
+  @Override
+  public int getIntValue(int dictionaryId) {
+    return (int) getLong(dictionaryId);
+  }
+
+  @Override
+  public float getFloatValue(int dictionaryId) {
+    return (float) getLong(dictionaryId);
+  }
+
+  @Override
+  public String getStringValue(int dictionaryId) {
+    return Long.toString(getLong(dictionaryId));
+  }
+
+  @Override
+  public boolean inRange(String lower, String upper, int indexOfValueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    return inRange(Long.parseLong(lower), Long.parseLong(upper), getLong(indexOfValueToCompare), includeLower,
+        includeUpper);
+  }
+
+  @Override
+  public int[] getDictIdsInRange(String lower, String upper, boolean includeLower, boolean includeUpper) {
+    long lowerInLong = Long.parseLong(lower);
+    long upperInLong = Long.parseLong(upper);
+    IntArrayList dictIds = new IntArrayList();
+    int length = length();
+    for (int dictId = 0; dictId < length; dictId++) {
+      if (inRange(lowerInLong, upperInLong, getLong(dictId), includeLower, includeUpper)) {
+        dictIds.add(dictId);
+      }
+    }
+    return dictIds.toIntArray();
+  }
+
+  private static boolean inRange(long lower, long upper, long valueToCompare, boolean includeLower,
+      boolean includeUpper) {
+    if (includeLower ? valueToCompare < lower : valueToCompare <= lower) {
+      return false;
+    }
+    return includeUpper ? valueToCompare <= upper : valueToCompare < upper;
+  }
+
+  @Override
+  public Object getMinVal() {
+    return _min;
+  }
+
+  @Override
+  public Object getMaxVal() {
+    return _max;
+  }
+}
@@ -15,35 +15,23 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
-import java.util.concurrent.atomic.AtomicInteger;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 
+/**
+ * Base class for the dictionaries of realtime segments, which grow as rows are indexed.
+ *
+ * <p>The entries are kept by the implementations, on-heap (see {@link BaseOnHeapMutableDictionary} and
+ * {@link StringMutableDictionary}) or off-heap (see {@link BaseOffHeapMutableDictionary}).
+ */
 public abstract class MutableDictionaryReader implements Dictionary {
-  protected BiMap<Integer, Object> dictionaryIdBiMap;
   protected FieldSpec spec;
   protected boolean hasNull = false;
-  private final AtomicInteger dictionaryIdGenerator;
 
   public MutableDictionaryReader(FieldSpec spec) {
     this.spec = spec;
-    this.dictionaryIdBiMap = HashBiMap.<Integer, Object> create();
-    dictionaryIdGenerator = new AtomicInteger(-1);
-  }
-
-  protected void addToDictionaryBiMap(Object val) {
-    if (!dictionaryIdBiMap.inverse().containsKey(val)) {
-      dictionaryIdBiMap.put(new Integer(dictionaryIdGenerator.incrementAndGet()), val);
-      return;
-    }
-  }
-
-  @Override
-  public int length() {
-    return dictionaryIdGenerator.get() + 1;
   }
 
   @Override
@@ -122,18 +110,6 @@ public abstract class MutableDictionaryReader implements Dictionary {
 
   }
 
-  protected Integer getIndexOfFromBiMap(Object val) {
-    Integer ret = dictionaryIdBiMap.inverse().get(val);
-    if (ret == null) {
-      ret = -1;
-    }
-    return ret;
-  }
-
-  protected Object getRawValueFromBiMap(int dictionaryId) {
-    return dictionaryIdBiMap.get(new Integer(dictionaryId));
-  }
-
   public boolean hasNull() {
     return hasNull;
   }
@@ -159,6 +135,26 @@ public abstract class MutableDictionaryReader implements Dictionary {
     return inRange(lower, upper, valueToCompare, true, true);
   }
 
+  /**
+   * Returns the ids of all the dictionary entries within the given range.
+   *
+   * @param lower lower bound of the range
+   * @param upper upper bound of the range
+   * @param includeLower whether the lower bound is inclusive
+   * @param includeUpper whether the upper bound is inclusive
+   * @return sorted array of matching dictionary ids
+   */
+  public int[] getDictIdsInRange(String lower, String upper, boolean includeLower, boolean includeUpper) {
+    IntArrayList dictIds = new IntArrayList();
+    int length = length();
+    for (int dictId = 0; dictId < length; dictId++) {
+      if (inRange(lower, upper, dictId, includeLower, includeUpper)) {
+        dictIds.add(dictId);
+      }
+    }
+    return dictIds.toIntArray();
+  }
+
   @Override
   public abstract long getLongValue(int dictionaryId);
 
@@ -174,15 +170,13 @@ public abstract class MutableDictionaryReader implements Dictionary {
   @Override
   public abstract String toString(int dictionaryId);
 
-  public void print() {
-    System.out.println("************* printing dictionary for column : " + spec.getName() + " ***************");
-    for (Integer key : dictionaryIdBiMap.keySet()) {
-      System.out.println(key + "," + dictionaryIdBiMap.get(key));
-    }
-    System.out.println("************************************");
-  }
+  public abstract void print();
+
+  public abstract boolean isEmpty();
 
-  public boolean isEmpty() {
-    return dictionaryIdBiMap.isEmpty();
+  /**
+   * Releases the resources held by the dictionary, it must not be accessed afterwards.
+   */
+  public void close() {
   }
 }
@@ -21,6 +21,32 @@ import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 public class RealtimeDictionaryProvider {
 
   public static MutableDictionaryReader getDictionaryFor(FieldSpec spec) {
+    return getDictionaryFor(spec, false);
+  }
+
+  /**
+   * Returns a mutable dictionary for the given field.
+   *
+   * @param spec field spec of the column
+   * @param offHeap whether to use the off-heap dictionaries for numeric columns, STRING and BOOLEAN columns always use
+   *                the on-heap dictionary
+   * @return mutable dictionary for the column
+   */
+  public static MutableDictionaryReader getDictionaryFor(FieldSpec spec, boolean offHeap) {
+    if (offHeap) {
+      switch (spec.getDataType()) {
+        case INT:
+          return new IntOffHeapMutableDictionary(spec);
+        case LONG:
+          return new LongOffHeapMutableDictionary(spec);
+        case FLOAT:
+          return new FloatOffHeapMutableDictionary(spec);
+        case DOUBLE:
+          return new DoubleOffHeapMutableDictionary(spec);
+        default:
+          break;
+      }
+    }
     switch (spec.getDataType()) {
       case INT:
         return new IntMutableDictionary(spec);
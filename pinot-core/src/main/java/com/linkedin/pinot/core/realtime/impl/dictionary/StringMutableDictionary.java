@@ -16,9 +16,29 @@
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
 import com.linkedin.pinot.common.data.FieldSpec;
+import java.util.Arrays;
 
 
+/**
+ * On-heap mutable dictionary for STRING and BOOLEAN columns.
+ *
+ * <p>Values are stored by dictionary id in an array, and looked up through an open addressing hash table with linear
+ * probing that holds the dictionary ids, so that indexing and lookups neither box the ids nor go through a map entry
+ * per value.
+ *
+ * <p>There is a single writer (the consumer thread calling {@link #index(Object)}) and any number of readers, which
+ * never lock, the same way as {@link BaseOffHeapMutableDictionary}: an entry is written into the value array and the
+ * hash table before the dictionary length is published through a volatile write, and the arrays are grown by
+ * publishing a bigger copy through a volatile reference.
+ */
 public class StringMutableDictionary extends MutableDictionaryReader {
+  private static final int INITIAL_HASH_TABLE_CAPACITY = 1024;
+  private static final int INITIAL_VALUE_CAPACITY = INITIAL_HASH_TABLE_CAPACITY / 2;
+
+  // Each hash table slot holds (dictId + 1), 0 marks an empty slot
+  private volatile int[] _hashTable = new int[INITIAL_HASH_TABLE_CAPACITY];
+  private volatile String[] _values = new String[INITIAL_VALUE_CAPACITY];
+  private volatile int _length = 0;
 
   private String min = null;
   private String max = null;
@@ -31,16 +51,87 @@ public class StringMutableDictionary extends MutableDictionaryReader {
   public void index(Object rawValue) {
     if (rawValue instanceof Object[]) {
       for (Object o : (Object[]) rawValue) {
-        addToDictionaryBiMap(o.toString());
+        indexValue(o.toString());
         updateMinMax(o.toString());
       }
       return;
     }
 
-    addToDictionaryBiMap(rawValue.toString());
+    indexValue(rawValue.toString());
     updateMinMax(rawValue.toString());
   }
 
+  /**
+   * Returns the dictionary id for the given value, or {@link #NULL_VALUE_INDEX} if the value has not been indexed. Safe
+   * to call concurrently with {@link #indexValue(String)}.
+   */
+  private int getDictIdForValue(String value) {
+    int[] hashTable = _hashTable;
+    int mask = hashTable.length - 1;
+    int slot = hash(value) & mask;
+    while (true) {
+      int dictId = hashTable[slot] - 1;
+      if (dictId < 0 || dictId >= _length) {
+        // Either an empty slot, or an entry that is still being added; the value is not (yet) in the dictionary
+        return NULL_VALUE_INDEX;
+      }
+      // The values array is read after the length, so that the entry is visible
+      if (_values[dictId].equals(value)) {
+        return dictId;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Adds the value to the dictionary if it is not there yet. Must only be called from the writer thread.
+   */
+  private void indexValue(String value) {
+    if (getDictIdForValue(value) != NULL_VALUE_INDEX) {
+      return;
+    }
+
+    int dictId = _length;
+    if (dictId == _values.length) {
+      _values = Arrays.copyOf(_values, dictId * 2);
+    }
+    _values[dictId] = value;
+    if ((dictId + 1) * 2 > _hashTable.length) {
+      expandHashTable();
+    }
+    putIntoHashTable(_hashTable, value, dictId);
+
+    // Publish the new entry to the readers
+    _length = dictId + 1;
+  }
+
+  private void expandHashTable() {
+    int[] newHashTable = new int[_hashTable.length * 2];
+    String[] values = _values;
+    int length = _length;
+    for (int dictId = 0; dictId < length; dictId++) {
+      putIntoHashTable(newHashTable, values[dictId], dictId);
+    }
+    _hashTable = newHashTable;
+  }
+
+  private static void putIntoHashTable(int[] hashTable, String value, int dictId) {
+    int mask = hashTable.length - 1;
+    int slot = hash(value) & mask;
+    while (hashTable[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    hashTable[slot] = dictId + 1;
+  }
+
+  /**
+   * Spreads the bits of the string hash code, whose low bits are close for values with a common prefix.
+   */
+  private static int hash(String value) {
+    int h = value.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
   private void updateMinMax(String entry) {
     if (min == null && max == null) {
       min = entry;
@@ -62,17 +153,20 @@ public class StringMutableDictionary extends MutableDictionaryReader {
     if (rawValue == null) {
       return hasNull;
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue.toString());
+    return getDictIdForValue(rawValue.toString()) != NULL_VALUE_INDEX;
   }
 
   @Override
   public int indexOf(Object rawValue) {
-    return getIndexOfFromBiMap(rawValue.toString());
+    return getDictIdForValue(rawValue.toString());
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    if (dictionaryId < 0 || dictionaryId >= _length) {
+      return null;
+    }
+    return _values[dictionaryId];
   }
 
   @Override
@@ -97,12 +191,12 @@ public class StringMutableDictionary extends MutableDictionaryReader {
 
   @Override
   public String toString(int dictionaryId) {
-    return (String) getRawValueFromBiMap(dictionaryId);
+    return (String) get(dictionaryId);
   }
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return (String) getRawValueFromBiMap(dictionaryId);
+    return (String) get(dictionaryId);
   }
 
   @Override
@@ -136,7 +230,27 @@ public class StringMutableDictionary extends MutableDictionaryReader {
   }
 
   private String getString(int dictionaryId) {
-    return dictionaryIdBiMap.get(new Integer(dictionaryId)).toString();
+    return get(dictionaryId).toString();
+  }
+
+  @Override
+  public int length() {
+    return _length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return _length == 0;
+  }
+
+  @Override
+  public void print() {
+    System.out.println("************* printing dictionary for column : " + spec.getName() + " ***************");
+    int length = _length;
+    for (int dictId = 0; dictId < length; dictId++) {
+      System.out.println(dictId + "," + get(dictId));
+    }
+    System.out.println("************************************");
   }
 
   @Override
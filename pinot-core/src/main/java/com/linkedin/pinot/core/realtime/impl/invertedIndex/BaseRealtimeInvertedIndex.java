@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.invertedIndex;
+
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Realtime inverted index that can be read by query threads while the consumer thread keeps adding documents.
+ *
+ * The bitmaps are stored in an array indexed by dictionary id, which is grown (copied) by the single writer thread and
+ * published through a volatile reference, so looking up the bitmap of a dictionary id does not need any lock. Query
+ * threads get a snapshot of the bitmap, which is cached until the next document is added to the bitmap, so the bitmaps
+ * of values that are not being ingested are only copied once. Queries are bounded by the number of searchable
+ * documents of the segment, which is published after all the indexes have been updated for a document, so they never
+ * see documents that are only partially indexed.
+ */
+public abstract class BaseRealtimeInvertedIndex implements RealtimeInvertedIndex {
+  private static final int INITIAL_CAPACITY = 256;
+  private static final ImmutableRoaringBitmap EMPTY_BITMAP = new MutableRoaringBitmap();
+
+  private volatile AtomicReferenceArray<DocIdBitmap> _bitmaps =
+      new AtomicReferenceArray<DocIdBitmap>(INITIAL_CAPACITY);
+
+  /**
+   * Adds the document to the bitmap of the dictionary id. Must only be called by the consumer thread.
+   */
+  @Override
+  public void add(Object dictId, int docId) {
+    int id = (Integer) dictId;
+    AtomicReferenceArray<DocIdBitmap> bitmaps = _bitmaps;
+    if (id >= bitmaps.length()) {
+      bitmaps = grow(bitmaps, id);
+    }
+    DocIdBitmap bitmap = bitmaps.get(id);
+    if (bitmap == null) {
+      bitmap = new DocIdBitmap();
+      bitmap.add(docId);
+      bitmaps.set(id, bitmap);
+    } else {
+      bitmap.add(docId);
+    }
+  }
+
+  private AtomicReferenceArray<DocIdBitmap> grow(AtomicReferenceArray<DocIdBitmap> bitmaps, int dictId) {
+    int length = bitmaps.length();
+    int newLength = Math.max(length * 2, dictId + 1);
+    AtomicReferenceArray<DocIdBitmap> newBitmaps = new AtomicReferenceArray<DocIdBitmap>(newLength);
+    for (int i = 0; i < length; i++) {
+      newBitmaps.set(i, bitmaps.get(i));
+    }
+    _bitmaps = newBitmaps;
+    return newBitmaps;
+  }
+
+  /**
+   * Returns the live bitmap of the dictionary id, or null if no document has been added for it. The returned bitmap is
+   * modified as documents are added, so this must only be used once the consumer thread stopped adding documents.
+   */
+  @Override
+  public MutableRoaringBitmap getDocIdSetFor(Object dictId) {
+    int id = (Integer) dictId;
+    AtomicReferenceArray<DocIdBitmap> bitmaps = _bitmaps;
+    if (id >= bitmaps.length()) {
+      return null;
+    }
+    DocIdBitmap bitmap = bitmaps.get(id);
+    return bitmap == null ? null : bitmap._bitmap;
+  }
+
+  /**
+   * Returns a snapshot of the bitmap of the dictionary id, which is safe to read concurrently with the consumer
+   * thread. Dictionary ids that are not indexed yet (e.g. values added to the dictionary of a document still being
+   * indexed) get an empty bitmap.
+   */
+  @Override
+  public ImmutableRoaringBitmap getImmutable(int dictId) {
+    AtomicReferenceArray<DocIdBitmap> bitmaps = _bitmaps;
+    if (dictId >= bitmaps.length()) {
+      return EMPTY_BITMAP;
+    }
+    DocIdBitmap bitmap = bitmaps.get(dictId);
+    return bitmap == null ? EMPTY_BITMAP : bitmap.getSnapshot();
+  }
+
+  @Override
+  public IntPair getMinMaxRangeFor(int docId) {
+    throw new UnsupportedOperationException("");
+  }
+
+  @Override
+  public void close() throws IOException {
+  }
+
+  /**
+   * Bitmap of a dictionary id along with its last snapshot taken by a query. Adding a document invalidates the
+   * snapshot, the next query copies the bitmap again.
+   */
+  private static class DocIdBitmap {
+    private final MutableRoaringBitmap _bitmap = new MutableRoaringBitmap();
+    private volatile ImmutableRoaringBitmap _snapshot;
+
+    synchronized void add(int docId) {
+      _bitmap.add(docId);
+      _snapshot = null;
+    }
+
+    ImmutableRoaringBitmap getSnapshot() {
+      ImmutableRoaringBitmap snapshot = _snapshot;
+      if (snapshot == null) {
+        synchronized (this) {
+          snapshot = _snapshot;
+          if (snapshot == null) {
+            snapshot = _bitmap.clone();
+            _snapshot = snapshot;
+          }
+        }
+      }
+      return snapshot;
+    }
+  }
+}
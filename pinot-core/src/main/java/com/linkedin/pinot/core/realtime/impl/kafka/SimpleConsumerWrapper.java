@@ -70,6 +70,7 @@ public class SimpleConsumerWrapper implements Closeable {
   private final boolean _metadataOnlyConsumer;
   private final String _topic;
   private final int _partition;
+  private volatile long _highWatermark = -1L;
   private final KafkaSimpleConsumerFactory _simpleConsumerFactory;
   private String[] _bootstrapHosts;
   private int[] _bootstrapPorts;
@@ -401,12 +402,20 @@ public class SimpleConsumerWrapper implements Closeable {
         .build());
 
     if (!fetchResponse.hasError()) {
+      _highWatermark = fetchResponse.highWatermark(_topic, _partition);
       return buildOffsetFilteringIterable(fetchResponse.messageSet(_topic, _partition), startOffset, endOffset);
     } else {
       throw Errors.forCode(fetchResponse.errorCode(_topic, _partition)).exception();
     }
   }
 
+  /**
+   * Returns the high watermark of the partition as of the last successful fetch, or -1 if nothing was fetched yet.
+   */
+  public long getHighWatermark() {
+    return _highWatermark;
+  }
+
   /**
    * Fetches the numeric Kafka offset for this partition for a symbolic name ("largest" or "smallest").
    *
@@ -15,7 +15,11 @@
  */
 package com.linkedin.pinot.core.segment.creator.impl;
 
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
 import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.partition.PartitionFunctionFactory;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.StarTreeIndexSpec;
 import com.linkedin.pinot.core.data.GenericRow;
@@ -27,15 +31,22 @@ import com.linkedin.pinot.core.segment.creator.MultiValueForwardIndexCreator;
 import com.linkedin.pinot.core.segment.creator.SegmentCreator;
 import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationInfo;
 import com.linkedin.pinot.core.segment.creator.SingleValueForwardIndexCreator;
+import com.linkedin.pinot.core.segment.creator.impl.bloom.BloomFilterCreator;
 import com.linkedin.pinot.core.segment.creator.impl.fwd.MultiValueUnsortedForwardIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.fwd.SingleValueSortedForwardIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.fwd.SingleValueUnsortedForwardIndexCreator;
+import com.linkedin.pinot.core.segment.creator.impl.inv.BitmapRangeIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.inv.OffHeapBitmapInvertedIndexCreator;
 import com.linkedin.pinot.core.startree.hll.HllConfig;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.StringEscapeUtils;
@@ -62,6 +73,8 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
   private Map<String, SegmentDictionaryCreator> dictionaryCreatorMap;
   private Map<String, ForwardIndexCreator> forwardIndexCreatorMap;
   private Map<String, InvertedIndexCreator> invertedIndexCreatorMap;
+  private Map<String, InvertedIndexCreator> rangeIndexCreatorMap;
+  private Map<String, BloomFilterCreator> bloomFilterCreatorMap;
   private String segmentName;
 
   private Schema schema;
@@ -87,6 +100,8 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     forwardIndexCreatorMap = new HashMap<String, ForwardIndexCreator>();
     this.indexCreationInfoMap = indexCreationInfoMap;
     invertedIndexCreatorMap = new HashMap<String, InvertedIndexCreator>();
+    rangeIndexCreatorMap = new HashMap<String, InvertedIndexCreator>();
+    bloomFilterCreatorMap = new HashMap<String, BloomFilterCreator>();
     file = outDir;
 
     // Check that the output directory does not exist
@@ -155,6 +170,37 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
           uniqueValueCount, totalDocs, indexCreationInfo.getTotalNumberOfEntries(), schema.getFieldSpecFor(column));
       invertedIndexCreatorMap.put(column, invertedIndexCreator);
     }
+
+    for (String column : config.getRangeIndexCreationColumns()) {
+      if (!schema.hasColumn(column)) {
+        LOGGER.warn("Skipping range index on column:{} since its missing in schema", column);
+        continue;
+      }
+      ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
+      // Sorted columns already resolve ranges to a contiguous docId range through the forward index.
+      if (indexCreationInfo.isSorted() && schema.getFieldSpecFor(column).isSingleValueField()) {
+        continue;
+      }
+      rangeIndexCreatorMap.put(column, new BitmapRangeIndexCreator(file, indexCreationInfo.getDistinctValueCount(),
+          schema.getFieldSpecFor(column)));
+    }
+
+    for (String column : config.getBloomFilterCreationColumns()) {
+      if (!schema.hasColumn(column)) {
+        LOGGER.warn("Skipping bloom filter on column:{} since its missing in schema", column);
+        continue;
+      }
+      ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
+      BloomFilterCreator bloomFilterCreator =
+          new BloomFilterCreator(file, column, indexCreationInfo.getDistinctValueCount());
+      // The bloom filter only depends on the distinct values, which are already known from the stats collection.
+      Object sortedValues = indexCreationInfo.getSortedUniqueElementsArray();
+      int numValues = Array.getLength(sortedValues);
+      for (int i = 0; i < numValues; i++) {
+        bloomFilterCreator.add(Array.get(sortedValues, i));
+      }
+      bloomFilterCreatorMap.put(column, bloomFilterCreator);
+    }
   }
 
   @Override
@@ -166,21 +212,9 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
           throw new RuntimeException("Null value for column:" + column);
         }
         if (schema.getFieldSpecFor(column).isSingleValueField()) {
-          int dictionaryIndex = dictionaryCreatorMap.get(column).indexOfSV(columnValueToIndex);
-          ((SingleValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docIdCounter, dictionaryIndex);
-
-          // TODO : {refactor inverted index addition}
-          if (invertedIndexCreatorMap.containsKey(column)) {
-            invertedIndexCreatorMap.get(column).add(docIdCounter, dictionaryIndex);
-          }
+          indexSingleValue(column, docIdCounter, dictionaryCreatorMap.get(column).indexOfSV(columnValueToIndex));
         } else {
-          int[] dictionaryIndex = dictionaryCreatorMap.get(column).indexOfMV(columnValueToIndex);
-          ((MultiValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docIdCounter, dictionaryIndex);
-
-          // TODO : {refactor inverted index addition}
-          if (invertedIndexCreatorMap.containsKey(column)) {
-            invertedIndexCreatorMap.get(column).add(docIdCounter, dictionaryIndex);
-          }
+          indexMultiValue(column, docIdCounter, dictionaryCreatorMap.get(column).indexOfMV(columnValueToIndex));
         }
       } catch (Exception e) {
         throw new RuntimeException("Exception while indexing column:"+ column, e);
@@ -189,6 +223,43 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     docIdCounter++;
   }
 
+  /**
+   * Indexes the value of a single-value column for a document, given as its id in the dictionary written for the
+   * column. This lets callers that already hold dictionary encoded data index a column at a time without going through
+   * rows. Documents of a column must be indexed in docId order.
+   *
+   * The id is not checked against the dictionary. Strings are stored in the order of their padded values (see
+   * {@link SegmentDictionaryCreator#getPaddedString(String, int, char)}), which differs from the order of the unique
+   * values passed to init() unless the padding character is '\0' [PINOT-2730], so callers have to derive the ids of
+   * string values from the padded order.
+   */
+  public void indexSingleValue(String column, int docId, int dictionaryIndex) {
+    ((SingleValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictionaryIndex);
+
+    // TODO : {refactor inverted index addition}
+    if (invertedIndexCreatorMap.containsKey(column)) {
+      invertedIndexCreatorMap.get(column).add(docId, dictionaryIndex);
+    }
+    if (rangeIndexCreatorMap.containsKey(column)) {
+      rangeIndexCreatorMap.get(column).add(docId, dictionaryIndex);
+    }
+  }
+
+  /**
+   * Multi-value counterpart of {@link #indexSingleValue(String, int, int)}.
+   */
+  public void indexMultiValue(String column, int docId, int[] dictionaryIndex) {
+    ((MultiValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictionaryIndex);
+
+    // TODO : {refactor inverted index addition}
+    if (invertedIndexCreatorMap.containsKey(column)) {
+      invertedIndexCreatorMap.get(column).add(docId, dictionaryIndex);
+    }
+    if (rangeIndexCreatorMap.containsKey(column)) {
+      rangeIndexCreatorMap.get(column).add(docId, dictionaryIndex);
+    }
+  }
+
   @Override
   public void setSegmentName(String segmentName) {
     this.segmentName = segmentName;
@@ -205,6 +276,12 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     for (final String invertedColumn : invertedIndexCreatorMap.keySet()) {
       invertedIndexCreatorMap.get(invertedColumn).seal();
     }
+    for (final String rangeColumn : rangeIndexCreatorMap.keySet()) {
+      rangeIndexCreatorMap.get(rangeColumn).seal();
+    }
+    for (final BloomFilterCreator bloomFilterCreator : bloomFilterCreatorMap.values()) {
+      bloomFilterCreator.seal();
+    }
     writeMetadata();
   }
 
@@ -243,10 +320,15 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     }
 
     HllConfig hllConfig = config.getHllConfig();
-    Map<String, String> derivedHllFieldToOriginMap = null;
+    Map<String, String> derivedFieldToOriginMap = new HashMap<>();
     if (hllConfig != null) {
       properties.setProperty(SEGMENT_HLL_LOG2M, hllConfig.getHllLog2m());
-      derivedHllFieldToOriginMap = hllConfig.getDerivedHllFieldToOriginMap();
+      derivedFieldToOriginMap.putAll(hllConfig.getDerivedHllFieldToOriginMap());
+    }
+    StarTreeSketchConfig starTreeSketchConfig = config.getStarTreeSketchConfig();
+    if (starTreeSketchConfig != null) {
+      derivedFieldToOriginMap.putAll(starTreeSketchConfig.getDerivedDistinctCountHllFieldToOriginMap());
+      derivedFieldToOriginMap.putAll(starTreeSketchConfig.getDerivedTDigestFieldToOriginMap());
     }
 
     String timeColumn = config.getTimeColumnName();
@@ -284,22 +366,57 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
 //    boolean hasInvertedIndex = invertedIndexCreatorMap.containsKey();
       boolean hasInvertedIndex = true;
 
-      String hllOriginColumn = null;
-      if (derivedHllFieldToOriginMap != null) {
-        hllOriginColumn = derivedHllFieldToOriginMap.get(column);
-      }
+      String derivedOriginColumn = derivedFieldToOriginMap.get(column);
 
       addColumnMetadataInfo(properties, column, columnIndexCreationInfo, totalDocs, totalRawDocs, totalAggDocs,
-          schema.getFieldSpecFor(column), dictionaryElementSize, hasInvertedIndex, hllOriginColumn);
+          schema.getFieldSpecFor(column), dictionaryElementSize, hasInvertedIndex, derivedOriginColumn);
     }
 
+    addPartitionMetadataInfo(properties);
+
     properties.save();
   }
 
+  /**
+   * Records the partition function and the ids of the partitions the values of the partition column belong to, so
+   * that queries on the partition column can be routed to the matching segments only.
+   */
+  private void addPartitionMetadataInfo(PropertiesConfiguration properties) {
+    SegmentPartitionConfig partitionConfig = config.getSegmentPartitionConfig();
+    if (partitionConfig == null) {
+      return;
+    }
+    String column = partitionConfig.getColumnName();
+    ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
+    if (indexCreationInfo == null) {
+      LOGGER.warn("Skipping partition metadata on column:{} since its missing in schema", column);
+      return;
+    }
+
+    PartitionFunction partitionFunction = PartitionFunctionFactory.getPartitionFunction(
+        partitionConfig.getFunctionName(), partitionConfig.getNumPartitions());
+    Set<Integer> partitions = new TreeSet<Integer>();
+    Object sortedValues = indexCreationInfo.getSortedUniqueElementsArray();
+    int numValues = Array.getLength(sortedValues);
+    try {
+      for (int i = 0; i < numValues; i++) {
+        partitions.add(partitionFunction.getPartition(String.valueOf(Array.get(sortedValues, i))));
+      }
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Skipping partition metadata on column:{} since its values cannot be partitioned with {}", column,
+          partitionFunction, e);
+      return;
+    }
+
+    properties.setProperty(getKeyFor(column, PARTITION_FUNCTION), partitionFunction.toString());
+    properties.setProperty(getKeyFor(column, NUM_PARTITIONS), String.valueOf(partitionFunction.getNumPartitions()));
+    properties.setProperty(getKeyFor(column, PARTITION_VALUES), new ArrayList<Integer>(partitions));
+  }
+
   public static void addColumnMetadataInfo(PropertiesConfiguration properties, String column,
       ColumnIndexCreationInfo columnIndexCreationInfo, int totalDocs, int totalRawDocs,
       int totalAggDocs, FieldSpec fieldSpec, int dictionaryElementSize, boolean hasInvertedIndex,
-      String hllOriginColumn) {
+      String derivedOriginColumn) {
     int distinctValueCount = columnIndexCreationInfo.getDistinctValueCount();
     properties.setProperty(getKeyFor(column, CARDINALITY), String.valueOf(distinctValueCount));
     properties.setProperty(getKeyFor(column, TOTAL_DOCS), String.valueOf(totalDocs));
@@ -325,10 +442,21 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, IS_AUTO_GENERATED),
         String.valueOf(columnIndexCreationInfo.isAutoGenerated()));
 
-    // HLL derived fields
-    if (hllOriginColumn != null) {
-      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, ORIGIN_COLUMN), hllOriginColumn);
-      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, DERIVED_METRIC_TYPE), "HLL");
+    // Min/max values are only persisted for numeric columns, string values may contain the list delimiter of the
+    // properties file. They are used by the server to prune segments for EQ/IN/RANGE predicates.
+    if (fieldSpec.getDataType().isNumber() && columnIndexCreationInfo.getMin() != null
+        && columnIndexCreationInfo.getMax() != null) {
+      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, MIN_VALUE),
+          String.valueOf(columnIndexCreationInfo.getMin()));
+      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, MAX_VALUE),
+          String.valueOf(columnIndexCreationInfo.getMax()));
+    }
+
+    // Derived fields (HLL and star tree sketches)
+    if (derivedOriginColumn != null) {
+      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, ORIGIN_COLUMN), derivedOriginColumn);
+      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, DERIVED_METRIC_TYPE),
+          String.valueOf(((MetricFieldSpec) fieldSpec).getDerivedMetricType()));
     }
 
     Object defaultNullValue = columnIndexCreationInfo.getDefaultNullValue();
@@ -357,5 +485,10 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     properties.clearProperty(getKeyFor(column, TOTAL_NUMBER_OF_ENTRIES));
     properties.clearProperty(getKeyFor(column, IS_AUTO_GENERATED));
     properties.clearProperty(getKeyFor(column, DEFAULT_NULL_VALUE));
+    properties.clearProperty(getKeyFor(column, MIN_VALUE));
+    properties.clearProperty(getKeyFor(column, MAX_VALUE));
+    properties.clearProperty(getKeyFor(column, PARTITION_FUNCTION));
+    properties.clearProperty(getKeyFor(column, NUM_PARTITIONS));
+    properties.clearProperty(getKeyFor(column, PARTITION_VALUES));
   }
 }
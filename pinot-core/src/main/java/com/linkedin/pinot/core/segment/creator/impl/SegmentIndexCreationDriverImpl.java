@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.core.segment.creator.impl;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashBiMap;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
@@ -38,6 +39,7 @@ import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationInfo;
 import com.linkedin.pinot.core.segment.creator.SegmentPreIndexStatsCollector;
 import com.linkedin.pinot.core.segment.creator.impl.stats.SegmentPreIndexStatsCollectorImpl;
 import com.linkedin.pinot.core.startree.OffHeapStarTreeBuilder;
+import com.linkedin.pinot.core.startree.ParallelStarTreeBuilder;
 import com.linkedin.pinot.core.startree.StarTree;
 import com.linkedin.pinot.core.startree.StarTreeBuilder;
 import com.linkedin.pinot.core.startree.StarTreeBuilderConfig;
@@ -46,6 +48,8 @@ import com.linkedin.pinot.core.startree.StarTreeIndexNodeInterf;
 import com.linkedin.pinot.core.startree.StarTreeSerDe;
 import com.linkedin.pinot.core.startree.hll.HllConfig;
 import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
 import com.linkedin.pinot.core.util.CrcUtils;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -90,6 +94,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   long totalStatsCollectorTime = 0;
   boolean createStarTree = false;
   boolean enableHllIndex = false;
+  boolean enableStarTreeSketches = false;
 
   private File starTreeTempDir;
 
@@ -114,6 +119,15 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
       }
     }
 
+    if (config.getStarTreeSketchConfig() != null) {
+      if (!createStarTree) {
+        throw new IllegalArgumentException(
+            "Derived sketch fields generation will not work if StarTree is not enabled.");
+      } else {
+        enableStarTreeSketches = true;
+      }
+    }
+
     addDerivedFieldsInSchema();
 
     extractor = (PlainFieldExtractor) FieldExtractorFactory.getPlainFieldExtractor(dataSchema);
@@ -156,6 +170,33 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
         }
       }
     }
+    if (enableStarTreeSketches) {
+      StarTreeSketchConfig starTreeSketchConfig = config.getStarTreeSketchConfig();
+      addDerivedSketchFieldsInSchema(starTreeSketchConfig.getDerivedDistinctCountHllFieldToOriginMap(),
+          MetricFieldSpec.DerivedMetricType.DISTINCTCOUNTHLL);
+      addDerivedSketchFieldsInSchema(starTreeSketchConfig.getDerivedTDigestFieldToOriginMap(),
+          MetricFieldSpec.DerivedMetricType.TDIGEST);
+    }
+  }
+
+  private void addDerivedSketchFieldsInSchema(Map<String, String> derivedFieldToOriginMap,
+      MetricFieldSpec.DerivedMetricType derivedMetricType) {
+    for (Entry<String, String> entry : derivedFieldToOriginMap.entrySet()) {
+      String derivedFieldName = entry.getKey();
+      FieldSpec originFieldSpec = dataSchema.getFieldSpecFor(entry.getValue());
+      Preconditions.checkArgument(originFieldSpec != null && originFieldSpec.isSingleValueField(),
+          "Cannot derive field: %s from: %s which is not a single-value column of the schema.", derivedFieldName,
+          entry.getValue());
+      Preconditions.checkArgument(
+          derivedMetricType != MetricFieldSpec.DerivedMetricType.TDIGEST || originFieldSpec.getDataType().isNumber(),
+          "Cannot derive t-digest field: %s from non-numeric column: %s.", derivedFieldName, entry.getValue());
+      if (dataSchema.hasColumn(derivedFieldName)) {
+        throw new IllegalArgumentException(
+            "Cannot add derived field: " + derivedFieldName + " since it already exists in schema.");
+      }
+      dataSchema.addField(new MetricFieldSpec(derivedFieldName, FieldSpec.DataType.STRING,
+          StarTreeSketchUtil.getFieldSize(derivedMetricType), derivedMetricType));
+    }
   }
 
   private void populateDefaultDerivedColumnValues(GenericRow row)
@@ -170,6 +211,17 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
             HllUtil.singleValueHllAsString(hllConfig.getHllLog2m(), row.getValue(originFieldName)));
       }
     }
+    //add default sketch values in each row
+    if (enableStarTreeSketches) {
+      StarTreeSketchConfig starTreeSketchConfig = config.getStarTreeSketchConfig();
+      for (Entry<String, String> entry : starTreeSketchConfig.getDerivedDistinctCountHllFieldToOriginMap().entrySet()) {
+        row.putField(entry.getKey(),
+            StarTreeSketchUtil.singleValueDistinctCountHllAsString(row.getValue(entry.getValue())));
+      }
+      for (Entry<String, String> entry : starTreeSketchConfig.getDerivedTDigestFieldToOriginMap().entrySet()) {
+        row.putField(entry.getKey(), StarTreeSketchUtil.singleValueTDigestAsString(row.getValue(entry.getValue())));
+      }
+    }
   }
 
   @Override
@@ -210,9 +262,15 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
     boolean enableOffHeapFormat = starTreeIndexSpec.isEnableOffHeapFormat();
     starTreeBuilderConfig.setEnableOffHealpFormat(enableOffHeapFormat);
+    starTreeBuilderConfig.setNumBuildThreads(starTreeIndexSpec.getNumBuildThreads());
 
     //initialize star tree builder
-    StarTreeBuilder starTreeBuilder = new OffHeapStarTreeBuilder();
+    StarTreeBuilder starTreeBuilder;
+    if (starTreeIndexSpec.getNumBuildThreads() > 1) {
+      starTreeBuilder = new ParallelStarTreeBuilder();
+    } else {
+      starTreeBuilder = new OffHeapStarTreeBuilder();
+    }
     starTreeBuilder.init(starTreeBuilderConfig);
     //build star tree along with collecting stats
     recordReader.rewind();
@@ -397,6 +455,40 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     handlePostCreation();
   }
 
+  /**
+   * Alternative to {@link #build()} for callers that already know the per-column statistics and dictionary encode the
+   * values themselves, e.g. the realtime segment converter which reuses the dictionaries of the consuming segment.
+   * This skips reading the rows for stats collection, and the value to dictionary id lookups while indexing.
+   * <p>The caller indexes every column through the returned creator, using ids into the dictionaries built from the
+   * sorted unique values of the creation infos, then calls {@link #sealDictionaryEncodedBuild()}.
+   *
+   * @param columnIndexCreationInfoMap Statistics for every column of the schema
+   * @param numDocs Number of documents in the segment
+   */
+  public SegmentColumnarIndexCreator initDictionaryEncodedBuild(
+      Map<String, ColumnIndexCreationInfo> columnIndexCreationInfoMap, int numDocs) throws Exception {
+    if (createStarTree) {
+      throw new UnsupportedOperationException("Star tree creation requires the rows to be read");
+    }
+    indexCreationInfoMap.putAll(columnIndexCreationInfoMap);
+    totalDocs = numDocs;
+    totalRawDocs = numDocs;
+    segmentIndexCreationInfo.setTotalDocs(totalDocs);
+    segmentIndexCreationInfo.setTotalRawDocs(totalRawDocs);
+    segmentIndexCreationInfo.setTotalAggDocs(totalAggDocs);
+    segmentIndexCreationInfo.setStarTreeEnabled(false);
+    indexCreator.init(config, segmentIndexCreationInfo, indexCreationInfoMap, dataSchema, tempIndexDir);
+    return (SegmentColumnarIndexCreator) indexCreator;
+  }
+
+  /**
+   * Completes a build started with {@link #initDictionaryEncodedBuild(Map, int)}.
+   */
+  public void sealDictionaryEncodedBuild() throws Exception {
+    recordReader.close();
+    handlePostCreation();
+  }
+
   private void handlePostCreation() throws Exception {
     // Build the segment name, if necessary
     final String timeColumn = config.getTimeColumnName();
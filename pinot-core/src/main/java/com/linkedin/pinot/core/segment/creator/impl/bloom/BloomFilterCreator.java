@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl.bloom;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Creates a bloom filter over the distinct values of a column, keyed by the string representation of each value. It
+ * is used on the server to prune segments that cannot contain the value of an EQ or IN predicate.
+ */
+public class BloomFilterCreator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BloomFilterCreator.class);
+
+  public static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(Charsets.UTF_8);
+  public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.05;
+
+  private final File bloomFilterFile;
+  private final BloomFilter<CharSequence> bloomFilter;
+
+  public BloomFilterCreator(File indexDir, String column, int cardinality) {
+    bloomFilterFile = new File(indexDir, column + V1Constants.Indexes.BLOOM_FILTER_FILE_EXTENSION);
+    bloomFilter = BloomFilter.create(FUNNEL, Math.max(cardinality, 1), DEFAULT_FALSE_POSITIVE_PROBABILITY);
+  }
+
+  public void add(Object value) {
+    bloomFilter.put(value.toString());
+  }
+
+  public void seal() throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(bloomFilterFile))) {
+      bloomFilter.writeTo(out);
+    }
+    LOGGER.debug("persisted bloom filter in {}", bloomFilterFile.getAbsolutePath());
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl.inv;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.segment.creator.InvertedIndexCreator;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Creates a range index: the sorted dictionary ids of a column are split into buckets of consecutive ids, and one
+ * bitmap of matching docIds is kept per bucket. A range predicate then becomes an OR over the bitmaps of the buckets
+ * it fully covers, plus a check of the docs in at most two partially covered buckets.
+ *
+ * Layout of the index file:
+ * <ul>
+ *   <li>bucket size (int): number of consecutive dictionary ids per bucket.</li>
+ *   <li>number of buckets (int).</li>
+ *   <li>(number of buckets + 1) offsets (int), the last one being the end of the last bitmap.</li>
+ *   <li>serialized bitmaps, one per bucket.</li>
+ * </ul>
+ */
+public class BitmapRangeIndexCreator implements InvertedIndexCreator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BitmapRangeIndexCreator.class);
+
+  public static final int DEFAULT_NUM_BUCKETS = 128;
+  public static final int HEADER_SIZE_IN_BYTES = 8;
+
+  private final File rangeIndexFile;
+  private final FieldSpec spec;
+  private final int bucketSize;
+  private final MutableRoaringBitmap[] buckets;
+  private final long start;
+
+  public BitmapRangeIndexCreator(File indexDir, int cardinality, FieldSpec spec) {
+    this(indexDir, cardinality, DEFAULT_NUM_BUCKETS, spec);
+  }
+
+  public BitmapRangeIndexCreator(File indexDir, int cardinality, int maxNumBuckets, FieldSpec spec) {
+    this.spec = spec;
+    rangeIndexFile = new File(indexDir, spec.getName() + V1Constants.Indexes.BITMAP_RANGE_INDEX_FILE_EXTENSION);
+    bucketSize = getBucketSize(cardinality, maxNumBuckets);
+    int numBuckets = Math.max(1, (cardinality + bucketSize - 1) / bucketSize);
+    buckets = new MutableRoaringBitmap[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new MutableRoaringBitmap();
+    }
+    start = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the number of consecutive dictionary ids per bucket, so that at most <code>maxNumBuckets</code> buckets
+   * cover the whole dictionary.
+   */
+  public static int getBucketSize(int cardinality, int maxNumBuckets) {
+    return Math.max(1, (cardinality + maxNumBuckets - 1) / maxNumBuckets);
+  }
+
+  @Override
+  public void add(int docId, int dictionaryId) {
+    if (dictionaryId < 0) {
+      return;
+    }
+    buckets[dictionaryId / bucketSize].add(docId);
+  }
+
+  @Override
+  public void add(int docId, int[] dictionaryIds) {
+    add(docId, dictionaryIds, dictionaryIds.length);
+  }
+
+  @Override
+  public void add(int docId, int[] dictionaryIds, int length) {
+    if (spec.isSingleValueField()) {
+      throw new RuntimeException("Method not applicable to single value fields");
+    }
+    for (int i = 0; i < length; i++) {
+      add(docId, dictionaryIds[i]);
+    }
+  }
+
+  @Override
+  public long totalTimeTakeSoFar() {
+    return (System.currentTimeMillis() - start);
+  }
+
+  @Override
+  public void seal() throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rangeIndexFile)))) {
+      out.writeInt(bucketSize);
+      out.writeInt(buckets.length);
+      int offset = HEADER_SIZE_IN_BYTES + 4 * (buckets.length + 1);
+      out.writeInt(offset);
+      for (MutableRoaringBitmap bucket : buckets) {
+        bucket.runOptimize();
+        offset += bucket.serializedSizeInBytes();
+        out.writeInt(offset);
+      }
+      for (MutableRoaringBitmap bucket : buckets) {
+        bucket.serialize(out);
+      }
+    }
+    LOGGER.debug("persisted bitmap range index for column : " + spec.getName() + " in "
+        + rangeIndexFile.getAbsolutePath());
+  }
+}
@@ -24,7 +24,10 @@ import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
 import com.linkedin.pinot.common.data.TimeFieldSpec;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
 import java.lang.reflect.Field;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.StringEscapeUtils;
@@ -63,6 +66,11 @@ public class ColumnMetadata {
   private final DerivedMetricType derivedMetricType;
   private final int fieldSize;
   private final String originColumnName;
+  private final String minValue;
+  private final String maxValue;
+  private final String partitionFunction;
+  private final int numPartitions;
+  private final Set<Integer> partitions;
 
   public static ColumnMetadata fromPropertiesConfiguration(String column, PropertiesConfiguration config) {
     Builder builder = new Builder();
@@ -93,6 +101,18 @@ public class ColumnMetadata {
       paddingCharacter = StringEscapeUtils.unescapeJava(padding).charAt(0);
     }
     builder.setPaddingCharacter(paddingCharacter);
+    builder.setMinValue(config.getString(getKeyFor(column, MIN_VALUE), null));
+    builder.setMaxValue(config.getString(getKeyFor(column, MAX_VALUE), null));
+    String partitionFunction = config.getString(getKeyFor(column, PARTITION_FUNCTION), null);
+    if (partitionFunction != null) {
+      builder.setPartitionFunction(partitionFunction);
+      builder.setNumPartitions(config.getInt(getKeyFor(column, NUM_PARTITIONS)));
+      Set<Integer> partitions = new TreeSet<Integer>();
+      for (Object partition : config.getList(getKeyFor(column, PARTITION_VALUES))) {
+        partitions.add(Integer.valueOf(partition.toString()));
+      }
+      builder.setPartitions(partitions);
+    }
 
     // DERIVED_METRIC_TYPE property is used to check whether this field is derived or not
     // ORIGIN_COLUMN property is used to indicate the origin field of this derived metric
@@ -112,6 +132,11 @@ public class ColumnMetadata {
             throw e;
           }
           break;
+        case DISTINCTCOUNTHLL:
+        case TDIGEST:
+          builder.setFieldSize(StarTreeSketchUtil.getFieldSize(derivedMetricType));
+          builder.setOriginColumnName(config.getString(getKeyFor(column, ORIGIN_COLUMN)));
+          break;
         default:
           throw new IllegalArgumentException("Column: " + column + " with derived metric Type: " + derivedMetricType
               + " is not supported in building column metadata.");
@@ -146,6 +171,11 @@ public class ColumnMetadata {
     private DerivedMetricType derivedMetricType;
     private int fieldSize;
     private String originColumnName;
+    private String minValue;
+    private String maxValue;
+    private String partitionFunction;
+    private int numPartitions;
+    private Set<Integer> partitions;
 
     public Builder setColumnName(String columnName) {
       this.columnName = columnName;
@@ -262,11 +292,37 @@ public class ColumnMetadata {
       return this;
     }
 
+    public Builder setMinValue(String minValue) {
+      this.minValue = minValue;
+      return this;
+    }
+
+    public Builder setMaxValue(String maxValue) {
+      this.maxValue = maxValue;
+      return this;
+    }
+
+    public Builder setPartitionFunction(String partitionFunction) {
+      this.partitionFunction = partitionFunction;
+      return this;
+    }
+
+    public Builder setNumPartitions(int numPartitions) {
+      this.numPartitions = numPartitions;
+      return this;
+    }
+
+    public Builder setPartitions(Set<Integer> partitions) {
+      this.partitions = partitions;
+      return this;
+    }
+
     public ColumnMetadata build() {
       return new ColumnMetadata(columnName, cardinality, totalDocs, totalRawDocs, totalAggDocs, dataType,
           bitsPerElement, stringColumnMaxLength, fieldType, isSorted, containsNulls, hasDictionary, hasInvertedIndex,
           isSingleValue, maxNumberOfMultiValues, totalNumberOfEntries, isAutoGenerated, defaultNullValueString,
-          timeUnit, paddingCharacter, derivedMetricType, fieldSize, originColumnName);
+          timeUnit, paddingCharacter, derivedMetricType, fieldSize, originColumnName, minValue, maxValue,
+          partitionFunction, numPartitions, partitions);
     }
   }
 
@@ -275,7 +331,8 @@ public class ColumnMetadata {
       boolean hasNulls, boolean hasDictionary, boolean hasInvertedIndex, boolean isSingleValue,
       int maxNumberOfMultiValues, int totalNumberOfEntries, boolean isAutoGenerated, String defaultNullValueString,
       TimeUnit timeUnit, char paddingCharacter, DerivedMetricType derivedMetricType, int fieldSize,
-      String originColumnName) {
+      String originColumnName, String minValue, String maxValue, String partitionFunction, int numPartitions,
+      Set<Integer> partitions) {
     this.columnName = columnName;
     this.cardinality = cardinality;
     this.totalDocs = totalDocs;
@@ -299,6 +356,11 @@ public class ColumnMetadata {
     this.derivedMetricType = derivedMetricType;
     this.fieldSize = fieldSize;
     this.originColumnName = originColumnName;
+    this.minValue = minValue;
+    this.maxValue = maxValue;
+    this.partitionFunction = partitionFunction;
+    this.numPartitions = numPartitions;
+    this.partitions = partitions;
 
     switch (fieldType) {
       case DIMENSION:
@@ -407,6 +469,38 @@ public class ColumnMetadata {
     return originColumnName;
   }
 
+  /**
+   * @return string representation of the minimum value of the column, or null if it is not recorded in the metadata
+   */
+  public String getMinValue() {
+    return minValue;
+  }
+
+  /**
+   * @return string representation of the maximum value of the column, or null if it is not recorded in the metadata
+   */
+  public String getMaxValue() {
+    return maxValue;
+  }
+
+  /**
+   * @return name of the function the column is partitioned with, or null if the column is not partitioned
+   */
+  public String getPartitionFunction() {
+    return partitionFunction;
+  }
+
+  public int getNumPartitions() {
+    return numPartitions;
+  }
+
+  /**
+   * @return ids of the partitions the values of the column belong to, or null if the column is not partitioned
+   */
+  public Set<Integer> getPartitions() {
+    return partitions;
+  }
+
   public FieldSpec getFieldSpec() {
     return fieldSpec;
   }
@@ -27,6 +27,7 @@ import com.linkedin.pinot.core.indexsegment.IndexType;
 import com.linkedin.pinot.core.io.reader.DataFileReader;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
 import com.linkedin.pinot.core.segment.index.data.source.ColumnDataSourceImpl;
+import com.linkedin.pinot.core.segment.index.readers.BloomFilterReader;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
@@ -59,6 +60,10 @@ public class IndexSegmentImpl implements IndexSegment {
     return indexContainerMap.get(column).getDictionary();
   }
 
+  public BloomFilterReader getBloomFilterFor(String column) {
+    return indexContainerMap.get(column).getBloomFilter();
+  }
+
   public DataFileReader getForwardIndexReaderFor(String column) {
     return indexContainerMap.get(column).getForwardIndex();
   }
@@ -301,8 +301,10 @@ public class SegmentMetadataImpl implements SegmentMetadata {
   private void initStarTreeMetadata() {
     _starTreeMetadata = new StarTreeMetadata();
 
-    // Build Derived Column Map
+    // Build Derived Column Maps
     Map<String, String> hllOriginToDerivedColumnMap = new HashMap<>();
+    Map<String, String> distinctCountHllOriginToDerivedColumnMap = new HashMap<>();
+    Map<String, String> tDigestOriginToDerivedColumnMap = new HashMap<>();
     for (final ColumnMetadata columnMetadata : _columnMetadataMap.values()) {
       MetricFieldSpec.DerivedMetricType derivedMetricType = columnMetadata.getDerivedMetricType();
       if (derivedMetricType != null) {
@@ -310,6 +312,13 @@ public class SegmentMetadataImpl implements SegmentMetadata {
           case HLL:
             hllOriginToDerivedColumnMap.put(columnMetadata.getOriginColumnName(), columnMetadata.getColumnName());
             break;
+          case DISTINCTCOUNTHLL:
+            distinctCountHllOriginToDerivedColumnMap.put(columnMetadata.getOriginColumnName(),
+                columnMetadata.getColumnName());
+            break;
+          case TDIGEST:
+            tDigestOriginToDerivedColumnMap.put(columnMetadata.getOriginColumnName(), columnMetadata.getColumnName());
+            break;
           default:
             throw new IllegalArgumentException(
                 columnMetadata.getDerivedMetricType() + " type is not supported in building derived columns.");
@@ -317,6 +326,10 @@ public class SegmentMetadataImpl implements SegmentMetadata {
       }
     }
     _starTreeMetadata.setHllOriginToDerivedColumnMap(hllOriginToDerivedColumnMap);
+    _starTreeMetadata.setOriginToDerivedColumnMap(MetricFieldSpec.DerivedMetricType.DISTINCTCOUNTHLL,
+        distinctCountHllOriginToDerivedColumnMap);
+    _starTreeMetadata.setOriginToDerivedColumnMap(MetricFieldSpec.DerivedMetricType.TDIGEST,
+        tDigestOriginToDerivedColumnMap);
 
     // Set the maxLeafRecords
     String maxLeafRecordsString =
@@ -554,6 +567,14 @@ public class SegmentMetadataImpl implements SegmentMetadata {
     return column + V1Constants.Indexes.BITMAP_INVERTED_INDEX_FILE_EXTENSION;
   }
 
+  public String getBitmapRangeIndexFileName(String column, String segmentVersion) {
+    return column + V1Constants.Indexes.BITMAP_RANGE_INDEX_FILE_EXTENSION;
+  }
+
+  public String getBloomFilterFileName(String column, String segmentVersion) {
+    return column + V1Constants.Indexes.BLOOM_FILTER_FILE_EXTENSION;
+  }
+
   @Nullable @Override public String getCreatorName() {
     return _creatorName;
   }
@@ -25,6 +25,8 @@ import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitMultiValueReader;
 import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitSingleValueReader;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
 import com.linkedin.pinot.core.segment.index.readers.BitmapInvertedIndexReader;
+import com.linkedin.pinot.core.segment.index.readers.BitmapRangeIndexReader;
+import com.linkedin.pinot.core.segment.index.readers.BloomFilterReader;
 import com.linkedin.pinot.core.segment.index.readers.DoubleDictionary;
 import com.linkedin.pinot.core.segment.index.readers.FloatDictionary;
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
@@ -42,34 +44,46 @@ import org.slf4j.LoggerFactory;
 public abstract class ColumnIndexContainer {
   private static final Logger LOGGER = LoggerFactory.getLogger(ColumnIndexContainer.class);
 
+  private BloomFilterReader bloomFilter;
+
   public static ColumnIndexContainer init(SegmentDirectory.Reader segmentReader, ColumnMetadata metadata,
       IndexLoadingConfigMetadata indexLoadingConfigMetadata)
       throws IOException {
     String column = metadata.getColumnName();
     boolean loadInverted = false;
+    boolean loadRange = false;
     if (indexLoadingConfigMetadata != null) {
       if (indexLoadingConfigMetadata.getLoadingInvertedIndexColumns() != null) {
         loadInverted = indexLoadingConfigMetadata.getLoadingInvertedIndexColumns().contains(metadata.getColumnName());
       }
+      loadRange = indexLoadingConfigMetadata.isLoadingRangeIndexForColumn(column)
+          && segmentReader.hasIndexFor(column, ColumnIndexType.RANGE_INDEX);
     }
     PinotDataBuffer dictionaryBuffer = segmentReader.getIndexFor(column, ColumnIndexType.DICTIONARY);
-    ImmutableDictionaryReader dictionary = load(metadata, dictionaryBuffer);
+    ImmutableDictionaryReader dictionary = loadDictionary(metadata, dictionaryBuffer);
 
+    ColumnIndexContainer indexContainer;
     if (metadata.isSorted() && metadata.isSingleValue()) {
-      return loadSorted(column, segmentReader, metadata, dictionary);
+      indexContainer = loadSorted(column, segmentReader, metadata, dictionary);
       //return loadSorted(column, indexDir, metadata, dictionary, mode);
+    } else if (metadata.isSingleValue()) {
+      indexContainer = loadUnsorted(column, segmentReader, metadata, dictionary, loadInverted, loadRange);
+      //return loadUnsorted(column, indexDir, metadata, dictionary, mode, loadInverted);
+    } else {
+      //return loadMultiValue(column, indexDir, metadata, dictionary, mode, loadInverted);
+      indexContainer = loadMultiValue(column, segmentReader, metadata, dictionary, loadInverted, loadRange);
     }
 
-    if (metadata.isSingleValue()) {
-      return loadUnsorted(column, segmentReader, metadata, dictionary, loadInverted);
-      //return loadUnsorted(column, indexDir, metadata, dictionary, mode, loadInverted);
+    // Bloom filters are only used for segment pruning and are small enough to always load when present.
+    if (segmentReader.hasIndexFor(column, ColumnIndexType.BLOOM_FILTER)) {
+      indexContainer.bloomFilter =
+          new BloomFilterReader(segmentReader.getIndexFor(column, ColumnIndexType.BLOOM_FILTER));
     }
-    //return loadMultiValue(column, indexDir, metadata, dictionary, mode, loadInverted);
-    return loadMultiValue(column, segmentReader, metadata, dictionary, loadInverted);
+    return indexContainer;
   }
 
   private static ColumnIndexContainer loadMultiValue(String column, SegmentDirectory.Reader segmentReader,
-      ColumnMetadata metadata, ImmutableDictionaryReader dictionary, boolean loadInverted)
+      ColumnMetadata metadata, ImmutableDictionaryReader dictionary, boolean loadInverted, boolean loadRange)
       throws IOException {
 
     PinotDataBuffer fwdIndexBuffer = segmentReader.getIndexFor(column, ColumnIndexType.FORWARD_INDEX);
@@ -86,11 +100,11 @@ public abstract class ColumnIndexContainer {
     }
 
     return new UnSortedMVColumnIndexContainer(column, metadata, fwdIndexReader, dictionary,
-        invertedIndex);
+        invertedIndex, loadRangeIndex(column, segmentReader, loadRange));
   }
 
   private static ColumnIndexContainer loadUnsorted(String column, SegmentDirectory.Reader segmentReader, ColumnMetadata metadata,
-      ImmutableDictionaryReader dictionary, boolean loadInverted)
+      ImmutableDictionaryReader dictionary, boolean loadInverted, boolean loadRange)
       throws IOException {
 
     PinotDataBuffer fwdIndexBuffer = segmentReader.getIndexFor(column, ColumnIndexType.FORWARD_INDEX);
@@ -106,7 +120,7 @@ public abstract class ColumnIndexContainer {
     }
 
     return new UnsortedSVColumnIndexContainer(column, metadata, fwdIndexReader, dictionary,
-        invertedIndex);
+        invertedIndex, loadRangeIndex(column, segmentReader, loadRange));
   }
 
   private static ColumnIndexContainer loadSorted(String column, SegmentDirectory.Reader segmentReader, ColumnMetadata metadata,
@@ -120,7 +134,16 @@ public abstract class ColumnIndexContainer {
     return new SortedSVColumnIndexContainer(column, metadata, indexReader, dictionary);
   }
 
-  private static ImmutableDictionaryReader load(ColumnMetadata metadata, PinotDataBuffer dictionaryBuffer) {
+  private static BitmapRangeIndexReader loadRangeIndex(String column, SegmentDirectory.Reader segmentReader,
+      boolean loadRange)
+      throws IOException {
+    if (!loadRange) {
+      return null;
+    }
+    return new BitmapRangeIndexReader(segmentReader.getIndexFor(column, ColumnIndexType.RANGE_INDEX));
+  }
+
+  public static ImmutableDictionaryReader loadDictionary(ColumnMetadata metadata, PinotDataBuffer dictionaryBuffer) {
     switch (metadata.getDataType()) {
       case INT:
         return new IntDictionary(dictionaryBuffer, metadata);
@@ -143,6 +166,20 @@ public abstract class ColumnIndexContainer {
    */
   public abstract InvertedIndexReader getInvertedIndex();
 
+  /**
+   * @return the range index of the column, or null if it has not been loaded
+   */
+  public BitmapRangeIndexReader getRangeIndex() {
+    return null;
+  }
+
+  /**
+   * @return the bloom filter of the column, or null if the segment does not have one
+   */
+  public BloomFilterReader getBloomFilter() {
+    return bloomFilter;
+  }
+
   /**
    * @return
    */
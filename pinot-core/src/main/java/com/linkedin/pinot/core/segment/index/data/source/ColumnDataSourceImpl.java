@@ -31,6 +31,7 @@ import com.linkedin.pinot.core.io.reader.impl.SortedForwardIndexReader;
 import com.linkedin.pinot.core.operator.blocks.MultiValueBlock;
 import com.linkedin.pinot.core.operator.blocks.SortedSingleValueBlock;
 import com.linkedin.pinot.core.operator.blocks.UnSortedSingleValueBlock;
+import com.linkedin.pinot.core.segment.index.readers.BitmapRangeIndexReader;
 import com.linkedin.pinot.core.segment.index.readers.InvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
@@ -160,4 +161,9 @@ public class ColumnDataSourceImpl extends DataSource {
   public Dictionary getDictionary() {
     return indexContainer.getDictionary();
   }
+
+  @Override
+  public BitmapRangeIndexReader getRangeIndex() {
+    return indexContainer.getRangeIndex();
+  }
 }
@@ -22,7 +22,9 @@ import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.loader.defaultcolumn.DefaultColumnHandler;
 import com.linkedin.pinot.core.segment.index.loader.defaultcolumn.DefaultColumnHandlerFactory;
+import com.linkedin.pinot.core.segment.index.loader.bloomfilter.BloomFilterHandler;
 import com.linkedin.pinot.core.segment.index.loader.invertedindex.InvertedIndexHandler;
+import com.linkedin.pinot.core.segment.index.loader.rangeindex.RangeIndexHandler;
 import com.linkedin.pinot.core.segment.store.SegmentDirectory;
 import java.io.File;
 
@@ -31,6 +33,8 @@ import java.io.File;
  * Use mmap to load the segment and perform all pre-processing steps. (This can be slow)
  * <p>Pre-processing steps include:
  * <p>- Use {@link InvertedIndexHandler} to create inverted indices.
+ * <p>- Use {@link RangeIndexHandler} to create range indices.
+ * <p>- Use {@link BloomFilterHandler} to create bloom filters.
  * <p>- Use {@link DefaultColumnHandler} to update auto-generated default columns.
  */
 public class SegmentPreProcessor implements AutoCloseable {
@@ -72,6 +76,16 @@ public class SegmentPreProcessor implements AutoCloseable {
           new InvertedIndexHandler(indexDir, segmentMetadata, indexConfig, segmentWriter);
       invertedIndexHandler.createInvertedIndices();
 
+      // Create column range indices according to the index config.
+      RangeIndexHandler rangeIndexHandler =
+          new RangeIndexHandler(indexDir, segmentMetadata, indexConfig, segmentWriter);
+      rangeIndexHandler.createRangeIndices();
+
+      // Create column bloom filters according to the index config.
+      BloomFilterHandler bloomFilterHandler =
+          new BloomFilterHandler(indexDir, segmentMetadata, indexConfig, segmentWriter);
+      bloomFilterHandler.createBloomFilters();
+
       if (enableDefaultColumns) {
         // Update default columns according to the schema.
         // NOTE: This step may modify the segment metadata. When adding new steps after this, reload the metadata.
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index.readers;
+
+import com.linkedin.pinot.core.segment.creator.impl.inv.BitmapRangeIndexCreator;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+
+/**
+ * Reader for the range index written by {@link BitmapRangeIndexCreator}. Bucket <code>i</code> holds the docIds of all
+ * the values whose dictionary id is in <code>[i * bucketSize, (i + 1) * bucketSize)</code>.
+ */
+public class BitmapRangeIndexReader implements Closeable {
+  private static final int INT_SIZE_IN_BYTES = Integer.SIZE / Byte.SIZE;
+
+  private final PinotDataBuffer buffer;
+  private final int bucketSize;
+  private final ImmutableRoaringBitmap[] buckets;
+
+  public BitmapRangeIndexReader(PinotDataBuffer indexDataBuffer) {
+    buffer = indexDataBuffer;
+    bucketSize = buffer.getInt(0);
+    int numBuckets = buffer.getInt(INT_SIZE_IN_BYTES);
+    // The number of buckets is bounded by the creator, so all the bitmaps are mapped up front.
+    buckets = new ImmutableRoaringBitmap[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      int offset = getOffset(i);
+      int length = getOffset(i + 1) - offset;
+      buckets[i] = new ImmutableRoaringBitmap(buffer.toDirectByteBuffer(offset, length));
+    }
+  }
+
+  private int getOffset(int bucketId) {
+    return buffer.getInt(BitmapRangeIndexCreator.HEADER_SIZE_IN_BYTES + bucketId * INT_SIZE_IN_BYTES);
+  }
+
+  public int getBucketSize() {
+    return bucketSize;
+  }
+
+  public int getNumBuckets() {
+    return buckets.length;
+  }
+
+  public int getBucketId(int dictId) {
+    return dictId / bucketSize;
+  }
+
+  /**
+   * Returns the first dictionary id covered by the given bucket.
+   */
+  public int getBucketStart(int bucketId) {
+    return bucketId * bucketSize;
+  }
+
+  /**
+   * Returns the docIds whose value falls into the given bucket.
+   */
+  public ImmutableRoaringBitmap getBucket(int bucketId) {
+    return buckets[bucketId];
+  }
+
+  @Override
+  public void close() throws IOException {
+    buffer.close();
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.core.segment.index.readers;
 
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
 import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
 import java.nio.charset.Charset;
@@ -42,6 +43,38 @@ public class StringDictionary extends ImmutableDictionaryReader {
     return stringIndexOf(bld.toString());
   }
 
+  /**
+   * Returns the inclusive range of dictionary ids whose padded values start with the given prefix. As the padded values
+   * are sorted, they form a contiguous range that is located with two binary searches. The range is empty (left > right)
+   * if no value starts with the prefix.
+   * <p>The range contains all the values starting with the prefix, but may also contain values that only match once
+   * padded (when the prefix contains the padding character), so callers still need to check each value.
+   */
+  public IntPair getPrefixRange(String prefix) {
+    return new IntPair(prefixSearch(prefix, false), prefixSearch(prefix, true) - 1);
+  }
+
+  /**
+   * Returns the first dictionary id whose padded value is greater than or equal to the prefix (or strictly after the
+   * values starting with the prefix if afterPrefix is true). The comparison has to be done on the padded values, as the
+   * dictionary is sorted on them: with a padding character such as '%', "ab c" sorts before "ab%%" (i.e. "ab").
+   */
+  private int prefixSearch(String prefix, boolean afterPrefix) {
+    int low = 0;
+    int high = length();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      String value = getString(middle);
+      int compare = value.startsWith(prefix) ? 0 : value.compareTo(prefix);
+      if (compare < 0 || (afterPrefix && compare == 0)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
   @Override
   public String get(int dictionaryId) {
     if ((dictionaryId == -1) || (dictionaryId >= length())) {
@@ -82,6 +115,25 @@ public class StringDictionary extends ImmutableDictionaryReader {
     return getString(dictionaryId);
   }
 
+  /**
+   * Returns the length in bytes of the (padded) dictionary entries.
+   */
+  public int getMaxEntryLengthInBytes() {
+    return lengthofMaxEntry;
+  }
+
+  /**
+   * Reads the raw UTF-8 bytes of the dictionary entry, including the padding, into the given buffer of at least
+   * {@link #getMaxEntryLengthInBytes()} bytes. This avoids decoding the entry into a string for callers that can work on
+   * the bytes directly.
+   *
+   * @param dictionaryId
+   * @param outBytes
+   */
+  public void readPaddedBytes(int dictionaryId, byte[] outBytes) {
+    dataFileReader.getBytes(dictionaryId, 0, outBytes);
+  }
+
   @Override
   public String toString(int dictionaryId) {
     return get(dictionaryId);
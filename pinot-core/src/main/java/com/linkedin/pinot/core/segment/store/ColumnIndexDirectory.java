@@ -93,6 +93,24 @@ abstract class ColumnIndexDirectory implements AutoCloseable {
   public abstract PinotDataBuffer getInvertedIndexBufferFor(String column)
       throws IOException;
 
+  /**
+   * Get range index data buffer for a column
+   * @param column column name
+   * @return in-memory ByteBuffer like buffer for data
+   * @throws IOException
+   */
+  public abstract PinotDataBuffer getRangeIndexBufferFor(String column)
+      throws IOException;
+
+  /**
+   * Get bloom filter data buffer for a column
+   * @param column column name
+   * @return in-memory ByteBuffer like buffer for data
+   * @throws IOException
+   */
+  public abstract PinotDataBuffer getBloomFilterBufferFor(String column)
+      throws IOException;
+
   /**
    * Allocate a new data buffer of specified sizeBytes in the columnar index directory
    * @param column column name
@@ -120,6 +138,25 @@ abstract class ColumnIndexDirectory implements AutoCloseable {
    */
   public abstract PinotDataBuffer newInvertedIndexBuffer(String column, int sizeBytes)
       throws IOException;
+  /**
+   * Allocate a new data buffer of specified sizeBytes in the columnar index directory
+   * @param column column name
+   * @param sizeBytes sizeBytes for the buffer allocation
+   * @return in-memory ByteBuffer like buffer for data
+   * @throws IOException
+   */
+  public abstract PinotDataBuffer newRangeIndexBuffer(String column, int sizeBytes)
+      throws IOException;
+
+  /**
+   * Allocate a new data buffer of specified sizeBytes in the columnar index directory
+   * @param column column name
+   * @param sizeBytes sizeBytes for the buffer allocation
+   * @return in-memory ByteBuffer like buffer for data
+   * @throws IOException
+   */
+  public abstract PinotDataBuffer newBloomFilterBuffer(String column, int sizeBytes)
+      throws IOException;
 
   /**
    * Check if an index exists for a column
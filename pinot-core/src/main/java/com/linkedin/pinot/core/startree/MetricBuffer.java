@@ -19,7 +19,9 @@ import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
 import com.clearspring.analytics.stream.cardinality.HyperLogLog;
 import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
 import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -28,12 +30,13 @@ import java.util.List;
 
 /**
  * fromBytes and toBytes methods are used only in {@link OffHeapStarTreeBuilder}, as read and write to temp files.
- * Thus no serialization of hll type to string is necessary at these steps.
+ * Thus no serialization of hll and t-digest types to string is necessary at these steps, they are read and written as
+ * fixed-size binary values.
  */
 public class MetricBuffer {
 
   /**
-   * stored as number or hyperLogLog, but serialized out as number or string
+   * stored as number, hyperLogLog or t-digest, but serialized out as number or string
    */
   private final Object[] values;
   private final List<MetricFieldSpec> metricFieldSpecs;
@@ -51,6 +54,9 @@ public class MetricBuffer {
         // deep copy of hll field
         this.values[i] = HllUtil.clone((HyperLogLog)copyValue,
             HllUtil.getLog2mFromHllFieldSize(copy.metricFieldSpecs.get(i).getFieldSize()));
+      } else if (copyValue instanceof TDigestSketch) {
+        // deep copy of t-digest field
+        this.values[i] = StarTreeSketchUtil.clone((TDigestSketch) copyValue);
       } else if (copyValue instanceof Number) {
         // number field is immutable
         this.values[i] = copyValue;
@@ -67,10 +73,13 @@ public class MetricBuffer {
 
     for (int i = 0; i < metricFieldSpecs.size(); i++) {
       MetricFieldSpec metric = metricFieldSpecs.get(i);
-      if (metric.getDerivedMetricType() == DerivedMetricType.HLL) {
+      if (isHll(metric)) {
         byte[] hllBytes = new byte[metric.getFieldSize()]; // TODO: buffer reuse
         buffer.get(hllBytes);
         values[i] = HllUtil.buildHllFromBytes(hllBytes);
+      } else if (metric.getDerivedMetricType() == DerivedMetricType.TDIGEST) {
+        values[i] = StarTreeSketchUtil.buildTDigestFromBytes(bytes, buffer.position());
+        buffer.position(buffer.position() + metric.getFieldSize());
       } else {
         switch (metric.getDataType()) {
           case SHORT:
@@ -102,8 +111,10 @@ public class MetricBuffer {
 
     for (int i = 0; i < metricFieldSpecs.size(); i++) {
       MetricFieldSpec metric = metricFieldSpecs.get(i);
-      if (metric.getDerivedMetricType() == DerivedMetricType.HLL) {
+      if (isHll(metric)) {
         buffer.put(((HyperLogLog)values[i]).getBytes());
+      } else if (metric.getDerivedMetricType() == DerivedMetricType.TDIGEST) {
+        StarTreeSketchUtil.serializeTDigest((TDigestSketch) values[i], buffer);
       } else {
         switch (metric.getDataType()) {
           case SHORT:
@@ -132,12 +143,14 @@ public class MetricBuffer {
   public void aggregate(MetricBuffer metrics) {
     for (int i = 0; i < metricFieldSpecs.size(); i++) {
       MetricFieldSpec metric = metricFieldSpecs.get(i);
-      if (metric.getDerivedMetricType() == DerivedMetricType.HLL) {
+      if (isHll(metric)) {
         try {
           ((HyperLogLog) values[i]).addAll((HyperLogLog) metrics.values[i]);
         } catch (CardinalityMergeException e) {
           throw new RuntimeException(e);
         }
+      } else if (metric.getDerivedMetricType() == DerivedMetricType.TDIGEST) {
+        ((TDigestSketch) values[i]).merge((TDigestSketch) metrics.values[i]);
       } else {
         switch (metric.getDataType()) {
           case SHORT:
@@ -168,13 +181,24 @@ public class MetricBuffer {
    * @return
    */
   public Object getValueConformToDataType(int index) {
-    if (metricFieldSpecs.get(index).getDerivedMetricType() == DerivedMetricType.HLL) {
+    MetricFieldSpec metric = metricFieldSpecs.get(index);
+    if (isHll(metric)) {
       return HllUtil.convertHllToString((HyperLogLog) values[index]);
+    } else if (metric.getDerivedMetricType() == DerivedMetricType.TDIGEST) {
+      return StarTreeSketchUtil.convertTDigestToString((TDigestSketch) values[index]);
     } else {
       return values[index];
     }
   }
 
+  /**
+   * Returns true if the metric holds a serialized hll ('fasthll' or 'distinctcounthll' derived field).
+   */
+  public static boolean isHll(MetricFieldSpec metric) {
+    DerivedMetricType derivedMetricType = metric.getDerivedMetricType();
+    return derivedMetricType == DerivedMetricType.HLL || derivedMetricType == DerivedMetricType.DISTINCTCOUNTHLL;
+  }
+
   @Override
   public String toString() {
     return Arrays.toString(values);
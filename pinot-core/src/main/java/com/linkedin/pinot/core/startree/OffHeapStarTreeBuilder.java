@@ -46,6 +46,7 @@ import java.util.Queue;
 import java.util.Set;
 
 import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.joda.time.DateTime;
@@ -95,29 +96,29 @@ import org.slf4j.LoggerFactory;
 public class OffHeapStarTreeBuilder implements StarTreeBuilder {
   private static final Logger LOG = LoggerFactory.getLogger(OffHeapStarTreeBuilder.class);
   File dataFile;
-  private Schema schema;
-  private DataOutputStream dataBuffer;
+  Schema schema;
+  DataOutputStream dataBuffer;
   int rawRecordCount = 0;
   int aggRecordCount = 0;
-  private List<String> dimensionsSplitOrder;
-  private Set<String> skipStarNodeCreationForDimensions;
-  private Set<String> skipMaterializationForDimensions;
+  List<String> dimensionsSplitOrder;
+  Set<String> skipStarNodeCreationForDimensions;
+  Set<String> skipMaterializationForDimensions;
 
-  private int maxLeafRecords;
+  int maxLeafRecords;
   private StarTree starTree;
-  private StarTreeIndexNode starTreeRootIndexNode;
-  private int numDimensions;
-  private int numMetrics;
+  StarTreeIndexNode starTreeRootIndexNode;
+  int numDimensions;
+  int numMetrics;
   private List<String> dimensionNames;
   private List<String> metricNames;
-  private String timeColumnName;
+  String timeColumnName;
   private List<DataType> dimensionTypes;
   private Map<String, Object> dimensionNameToStarValueMap;
-  private HashBiMap<String, Integer> dimensionNameToIndexMap;
+  HashBiMap<String, Integer> dimensionNameToIndexMap;
   private Map<String, Integer> metricNameToIndexMap;
-  private int dimensionSizeBytes;
-  private int metricSizeBytes;
-  private File outDir;
+  int dimensionSizeBytes;
+  int metricSizeBytes;
+  File outDir;
   private Map<String, HashBiMap<Object, Integer>> dictionaryMap;
 
   boolean debugMode = false;
@@ -275,9 +276,13 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
     Object[] metrics = new Object[numMetrics];
     for (int i = 0; i < numMetrics; i++) {
       String metName = metricNames.get(i);
-      if (schema.getMetricFieldSpecs().get(i).getDerivedMetricType() == MetricFieldSpec.DerivedMetricType.HLL) {
+      MetricFieldSpec metricFieldSpec = schema.getMetricFieldSpecs().get(i);
+      if (MetricBuffer.isHll(metricFieldSpec)) {
         // hll field is in string format, convert it to hll data type first
         metrics[i] = HllUtil.convertStringToHll((String) row.getValue(metName));
+      } else if (metricFieldSpec.getDerivedMetricType() == MetricFieldSpec.DerivedMetricType.TDIGEST) {
+        // t-digest field is in string format, convert it to t-digest data type first
+        metrics[i] = StarTreeSketchUtil.convertStringToTDigest((String) row.getValue(metName));
       } else {
         // no conversion for standard data types
         metrics[i] = row.getValue(metName);
@@ -306,21 +311,7 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
   }
 
   public void build() throws Exception {
-    if (skipMaterializationForDimensions == null || skipMaterializationForDimensions.isEmpty()) {
-      skipMaterializationForDimensions = computeDefaultDimensionsToSkipMaterialization();
-    }
-
-    // For default split order, give preference to skipMaterializationForDimensions.
-    // For user-defined split order, give preference to split-order.
-    if (dimensionsSplitOrder == null || dimensionsSplitOrder.isEmpty()) {
-      dimensionsSplitOrder = computeDefaultSplitOrder();
-      dimensionsSplitOrder.removeAll(skipMaterializationForDimensions);
-    } else {
-      skipMaterializationForDimensions.removeAll(dimensionsSplitOrder);
-    }
-
-    LOG.info("Split order: {}", dimensionsSplitOrder);
-    LOG.info("Skip Materilazitaion For Dimensions: {}", skipMaterializationForDimensions);
+    initSplitOrder();
 
     long start = System.currentTimeMillis();
     dataBuffer.flush();
@@ -331,8 +322,7 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
 
     // Split the leaf nodes on time column. This is only possible if we have not split on time-column name
     // yet, and time column is still preserved (ie not replaced by StarTreeNode.all()).
-    if (timeColumnName != null && !skipMaterializationForDimensions.contains(timeColumnName) &&
-        !dimensionsSplitOrder.contains(timeColumnName)) {
+    if (shouldSplitLeafNodesOnTimeColumn()) {
       splitLeafNodesOnTimeColumn();
     }
 
@@ -341,6 +331,43 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
     long end = System.currentTimeMillis();
     LOG.info("Took {} ms to build star tree index. Original records:{} Materialized record:{}",
         (end - start), rawRecordCount, aggRecordCount);
+    serializeTree();
+  }
+
+  /**
+   * Computes the dimensions to skip materialization for and the split order, when they are not specified.
+   */
+  void initSplitOrder() {
+    if (skipMaterializationForDimensions == null || skipMaterializationForDimensions.isEmpty()) {
+      skipMaterializationForDimensions = computeDefaultDimensionsToSkipMaterialization();
+    }
+
+    // For default split order, give preference to skipMaterializationForDimensions.
+    // For user-defined split order, give preference to split-order.
+    if (dimensionsSplitOrder == null || dimensionsSplitOrder.isEmpty()) {
+      dimensionsSplitOrder = computeDefaultSplitOrder();
+      dimensionsSplitOrder.removeAll(skipMaterializationForDimensions);
+    } else {
+      skipMaterializationForDimensions.removeAll(dimensionsSplitOrder);
+    }
+
+    LOG.info("Split order: {}", dimensionsSplitOrder);
+    LOG.info("Skip Materilazitaion For Dimensions: {}", skipMaterializationForDimensions);
+  }
+
+  /**
+   * Returns true if the leaf nodes should be split on the time column, i.e. the time column was neither
+   * part of the split order nor skipped from materialization.
+   */
+  boolean shouldSplitLeafNodesOnTimeColumn() {
+    return timeColumnName != null && !skipMaterializationForDimensions.contains(timeColumnName)
+        && !dimensionsSplitOrder.contains(timeColumnName);
+  }
+
+  /**
+   * Creates the star tree from the root node, writes it out in the configured format and closes the data file.
+   */
+  void serializeTree() throws IOException {
     starTree = new StarTree(starTreeRootIndexNode, dimensionNameToIndexMap);
     File treeBinary = new File(outDir, "star-tree.bin");
 
@@ -467,7 +494,7 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
    * @param newPositionForTimeColumn
    * @return
    */
-  private int[] moveColumnInSortOrder(String columnToMove, int[] origSortOrder,
+  int[] moveColumnInSortOrder(String columnToMove, int[] origSortOrder,
       int newPositionForTimeColumn) {
     Preconditions.checkArgument(columnToMove != null);
     Preconditions.checkArgument(
@@ -581,7 +608,7 @@ public class OffHeapStarTreeBuilder implements StarTreeBuilder {
     }
   }
 
-  private int[] getSortOrder() {
+  int[] getSortOrder() {
     if (sortOrder == null) {
       sortOrder = new int[dimensionNames.size()];
       for (int i = 0; i < dimensionsSplitOrder.size(); i++) {
@@ -0,0 +1,981 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.startree.hll.HllUtil;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Star tree builder that generates exactly the same data file and tree as {@link OffHeapStarTreeBuilder}, but is
+ * meant for large segments:
+ * <ul>
+ *   <li>Records are sorted in chunks of {@link #DEFAULT_NUM_RECORDS_PER_SORT_CHUNK} records, which are sorted in
+ *   parallel and then k-way merged, instead of sorting a list of boxed record ids over a memory mapped file.</li>
+ *   <li>The sub-trees of the children of a node are independent and are built in parallel on a {@link ForkJoinPool}.
+ *   The records generated for a star node are written to a temporary block, and the blocks are appended to the data
+ *   file in the order the sequential builder would have generated them, so that document ids are identical.</li>
+ *   <li>Metrics are aggregated into primitive arrays instead of {@link MetricBuffer} objects.</li>
+ * </ul>
+ * Sorting is stable and metrics are aggregated in the same order as in {@link OffHeapStarTreeBuilder}, which keeps the
+ * serialized tree and the aggregated floating point metrics byte for byte identical.
+ */
+public class ParallelStarTreeBuilder extends OffHeapStarTreeBuilder {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelStarTreeBuilder.class);
+
+  static final int DEFAULT_NUM_RECORDS_PER_SORT_CHUNK = 1 << 18;
+  private static final int NUM_RECORDS_PER_READ = 1 << 14;
+
+  int numRecordsPerSortChunk = DEFAULT_NUM_RECORDS_PER_SORT_CHUNK;
+  private int numBuildThreads;
+  private int recordSizeBytes;
+  private boolean[] skipMaterialization;
+  private DataType[] metricTypes;
+  private boolean[] hllMetrics;
+  private boolean[] tDigestMetrics;
+  private int[] metricSizes;
+  private FileChannel dataChannel;
+  private final AtomicInteger tempFileId = new AtomicInteger();
+
+  @Override
+  public void init(StarTreeBuilderConfig builderConfig) throws Exception {
+    super.init(builderConfig);
+    numBuildThreads = builderConfig.getNumBuildThreads();
+    if (numBuildThreads <= 0) {
+      numBuildThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    recordSizeBytes = dimensionSizeBytes + metricSizeBytes;
+    List<MetricFieldSpec> metricFieldSpecs = schema.getMetricFieldSpecs();
+    metricTypes = new DataType[numMetrics];
+    hllMetrics = new boolean[numMetrics];
+    tDigestMetrics = new boolean[numMetrics];
+    metricSizes = new int[numMetrics];
+    for (int i = 0; i < numMetrics; i++) {
+      MetricFieldSpec spec = metricFieldSpecs.get(i);
+      metricTypes[i] = spec.getDataType();
+      hllMetrics[i] = MetricBuffer.isHll(spec);
+      tDigestMetrics[i] = spec.getDerivedMetricType() == MetricFieldSpec.DerivedMetricType.TDIGEST;
+      metricSizes[i] = spec.getFieldSize();
+    }
+  }
+
+  @Override
+  public void build() throws Exception {
+    initSplitOrder();
+    skipMaterialization = new boolean[numDimensions];
+    for (int i = 0; i < numDimensions; i++) {
+      skipMaterialization[i] = skipMaterializationForDimensions.contains(dimensionNameToIndexMap.inverse().get(i));
+    }
+
+    long start = System.currentTimeMillis();
+    dataBuffer.flush();
+    ForkJoinPool pool = new ForkJoinPool(numBuildThreads);
+    RandomAccessFile randomAccessFile = new RandomAccessFile(dataFile, "rw");
+    dataChannel = randomAccessFile.getChannel();
+    try {
+      pool.invoke(ForkJoinTask.adapt(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          buildInPool();
+          return null;
+        }
+      }));
+    } finally {
+      pool.shutdown();
+      randomAccessFile.close();
+    }
+    long end = System.currentTimeMillis();
+    LOG.info("Took {} ms to build star tree index with {} threads. Original records:{} Materialized record:{}",
+        (end - start), numBuildThreads, rawRecordCount, aggRecordCount);
+    serializeTree();
+  }
+
+  /**
+   * Runs all the build steps, must be called from within the fork-join pool.
+   */
+  private void buildInPool() throws IOException {
+    // Sort the raw data based on default sort order (split order + remaining dimensions)
+    int[] sortOrder = getSortOrder();
+    ChannelRecordWriter rawWriter = new ChannelRecordWriter(dataChannel, 0);
+    sortRecords(dataChannel, 0, rawRecordCount, sortOrder, null, rawWriter);
+    rawWriter.flush();
+
+    // Construct the star tree, and append the records generated for star nodes in the sequential order
+    List<Block> blocks = new ConstructStarTreeTask(starTreeRootIndexNode, dataChannel, null, 0, rawRecordCount, 0).invoke();
+    appendBlocks(blocks);
+
+    if (shouldSplitLeafNodesOnTimeColumn()) {
+      splitLeafNodesOnTimeColumn();
+    }
+
+    createAggDocForAllNodes();
+  }
+
+  /**
+   * A range of records generated for a star node, held in a temporary file until its position in the data file is
+   * known. The document ids of the nodes in {@link #nodes} are relative to the start of the block until then.
+   */
+  private static class Block {
+    final File file;
+    final int numRecords;
+    final Queue<StarTreeIndexNode> nodes = new ConcurrentLinkedQueue<>();
+
+    Block(File file, int numRecords) {
+      this.file = file;
+      this.numRecords = numRecords;
+    }
+  }
+
+  /**
+   * Builds the sub-tree under a node, and returns the blocks of star records generated for it in the order
+   * {@link OffHeapStarTreeBuilder} appends them to the data file.
+   */
+  private class ConstructStarTreeTask extends RecursiveTask<List<Block>> {
+    private final StarTreeIndexNode node;
+    private final FileChannel channel;
+    private final Block block;
+    private final int startDocId;
+    private final int endDocId;
+    private final int level;
+
+    /**
+     * @param block block the records belong to, or null for the raw records of the data file
+     */
+    ConstructStarTreeTask(StarTreeIndexNode node, FileChannel channel, Block block, int startDocId, int endDocId,
+        int level) {
+      this.node = node;
+      this.channel = channel;
+      this.block = block;
+      this.startDocId = startDocId;
+      this.endDocId = endDocId;
+      this.level = level;
+    }
+
+    @Override
+    protected List<Block> compute() {
+      try {
+        return constructStarTree();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private List<Block> constructStarTree() throws IOException {
+      if (level == dimensionsSplitOrder.size()) {
+        return Collections.emptyList();
+      }
+      String splitDimensionName = dimensionsSplitOrder.get(level);
+      int splitDimensionId = dimensionNameToIndexMap.get(splitDimensionName);
+      Map<Integer, IntPair> sortGroupBy = groupBy(channel, startDocId, endDocId, splitDimensionId);
+      node.setChildDimensionName(splitDimensionId);
+      node.setChildren(new HashMap<Integer, StarTreeIndexNode>());
+
+      // Children are added in the same order as the sequential builder, their sub-trees are built in parallel
+      List<StarTreeIndexNode> children = new ArrayList<>(sortGroupBy.size());
+      List<ConstructStarTreeTask> childTasks = new ArrayList<>(sortGroupBy.size());
+      for (Map.Entry<Integer, IntPair> entry : sortGroupBy.entrySet()) {
+        int childDimensionValue = entry.getKey();
+        IntPair range = entry.getValue();
+        StarTreeIndexNode child = new StarTreeIndexNode();
+        child.setDimensionName(splitDimensionId);
+        child.setDimensionValue(childDimensionValue);
+        child.setParent(node);
+        child.setLevel(node.getLevel() + 1);
+        node.addChild(child, childDimensionValue);
+        children.add(child);
+
+        ConstructStarTreeTask childTask = null;
+        if (range.getRight() - range.getLeft() > maxLeafRecords) {
+          childTask = new ConstructStarTreeTask(child, channel, block, range.getLeft(), range.getRight(), level + 1);
+          childTask.fork();
+        }
+        childTasks.add(childTask);
+      }
+
+      StarTreeIndexNode starChild = null;
+      Block starBlock = null;
+      List<Block> starChildBlocks = Collections.emptyList();
+      if (skipStarNodeCreationForDimensions == null
+          || !skipStarNodeCreationForDimensions.contains(splitDimensionName)) {
+        starChild = new StarTreeIndexNode();
+        starChild.setDimensionName(splitDimensionId);
+        starChild.setDimensionValue(StarTreeIndexNodeInterf.ALL);
+        starChild.setParent(node);
+        starChild.setLevel(node.getLevel() + 1);
+        node.addChild(starChild, StarTreeIndexNodeInterf.ALL);
+
+        starBlock = createStarBlock(channel, startDocId, endDocId, splitDimensionId);
+        if (starBlock.numRecords >= maxLeafRecords) {
+          RandomAccessFile starFile = new RandomAccessFile(starBlock.file, "r");
+          try {
+            starChildBlocks = new ConstructStarTreeTask(starChild, starFile.getChannel(), starBlock, 0,
+                starBlock.numRecords, level + 1).invoke();
+          } finally {
+            starFile.close();
+          }
+        }
+      }
+
+      List<Block> blocks = new ArrayList<>();
+      for (int i = 0; i < children.size(); i++) {
+        ConstructStarTreeTask childTask = childTasks.get(i);
+        List<Block> childBlocks = (childTask == null) ? Collections.<Block>emptyList() : childTask.join();
+        // Either range <= maxLeafRecords, or we did not split further (last level).
+        if (getNumRecords(childBlocks) == 0) {
+          IntPair range = sortGroupBy.get(children.get(i).getDimensionValue());
+          setDocumentRange(children.get(i), block, range.getLeft(), range.getRight());
+        }
+        blocks.addAll(childBlocks);
+      }
+
+      if (starChild != null) {
+        blocks.add(starBlock);
+        // Either the star records < maxLeafRecords, or we did not split further (last level).
+        if (getNumRecords(starChildBlocks) == 0) {
+          setDocumentRange(starChild, starBlock, 0, starBlock.numRecords);
+        }
+        blocks.addAll(starChildBlocks);
+      }
+      return blocks;
+    }
+  }
+
+  private static int getNumRecords(List<Block> blocks) {
+    int numRecords = 0;
+    for (Block block : blocks) {
+      numRecords += block.numRecords;
+    }
+    return numRecords;
+  }
+
+  private static void setDocumentRange(StarTreeIndexNode node, Block block, int startDocId, int endDocId) {
+    node.setStartDocumentId(startDocId);
+    node.setEndDocumentId(endDocId);
+    if (block != null) {
+      block.nodes.add(node);
+    }
+  }
+
+  /**
+   * Generates the records for the star node of the given range: the split dimension and the dimensions to skip
+   * materialization for are replaced by ALL, and records with the same dimensions are aggregated.
+   */
+  private Block createStarBlock(FileChannel channel, int startDocId, int endDocId, int splitDimensionId)
+      throws IOException {
+    boolean[] dimensionsToMask = Arrays.copyOf(skipMaterialization, numDimensions);
+    dimensionsToMask[splitDimensionId] = true;
+
+    File file = createTempFile("star");
+    OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      AggregatingRecordWriter writer = new AggregatingRecordWriter(outputStream);
+      sortRecords(channel, startDocId, endDocId - startDocId, getSortOrder(), dimensionsToMask, writer);
+      writer.flush();
+      return new Block(file, writer.numRecords);
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Appends the blocks to the data file, and offsets the document ids of the nodes within them.
+   */
+  private void appendBlocks(List<Block> blocks) throws IOException {
+    for (Block block : blocks) {
+      int offset = rawRecordCount + aggRecordCount;
+      for (StarTreeIndexNode node : block.nodes) {
+        node.setStartDocumentId(offset + node.getStartDocumentId());
+        node.setEndDocumentId(offset + node.getEndDocumentId());
+      }
+      Files.copy(block.file.toPath(), dataBuffer);
+      aggRecordCount += block.numRecords;
+      Files.delete(block.file.toPath());
+    }
+    dataBuffer.flush();
+  }
+
+  /**
+   * Re-orders the records of each leaf node on the time column, and creates a child for each time value. Leaf nodes
+   * cover disjoint ranges of the data file, and are processed in parallel.
+   */
+  private void splitLeafNodesOnTimeColumn() {
+    final int timeColIndex = dimensionNameToIndexMap.get(timeColumnName);
+    List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+    for (final StarTreeIndexNode node : getLeafNodes()) {
+      tasks.add(ForkJoinTask.adapt(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          int[] newSortOrder = moveColumnInSortOrder(timeColumnName, getSortOrder(), node.getLevel());
+          int startDocId = node.getStartDocumentId();
+          int endDocId = node.getEndDocumentId();
+          ChannelRecordWriter writer = new ChannelRecordWriter(dataChannel, startDocId);
+          sortRecords(dataChannel, startDocId, endDocId - startDocId, newSortOrder, null, writer);
+          writer.flush();
+          Map<Integer, IntPair> timeColumnRangeMap = groupBy(dataChannel, startDocId, endDocId, timeColIndex);
+
+          node.setChildDimensionName(timeColIndex);
+          node.setChildren(new HashMap<Integer, StarTreeIndexNode>());
+          for (Map.Entry<Integer, IntPair> entry : timeColumnRangeMap.entrySet()) {
+            int timeValue = entry.getKey();
+            IntPair range = entry.getValue();
+            StarTreeIndexNode child = new StarTreeIndexNode();
+            child.setDimensionName(timeColIndex);
+            child.setDimensionValue(timeValue);
+            child.setParent(node);
+            child.setLevel(node.getLevel() + 1);
+            child.setStartDocumentId(range.getLeft());
+            child.setEndDocumentId(range.getRight());
+            node.addChild(child, timeValue);
+          }
+          return null;
+        }
+      }));
+    }
+    ForkJoinTask.invokeAll(tasks);
+  }
+
+  /**
+   * Creates the aggregated record for every node. Records of the leaf nodes are aggregated in parallel, the records
+   * are then appended in post-order, as in {@link OffHeapStarTreeBuilder}.
+   */
+  private void createAggDocForAllNodes() throws IOException {
+    List<StarTreeIndexNode> leafNodes = getLeafNodes();
+    List<ForkJoinTask<MetricAccumulator>> tasks = new ArrayList<>(leafNodes.size());
+    for (final StarTreeIndexNode node : leafNodes) {
+      tasks.add(ForkJoinTask.adapt(new Callable<MetricAccumulator>() {
+        @Override
+        public MetricAccumulator call() throws Exception {
+          return aggregate(dataChannel, node.getStartDocumentId(), node.getEndDocumentId());
+        }
+      }));
+    }
+    ForkJoinTask.invokeAll(tasks);
+
+    Map<StarTreeIndexNode, MetricAccumulator> leafAggregates = new IdentityHashMap<>(leafNodes.size());
+    for (int i = 0; i < leafNodes.size(); i++) {
+      leafAggregates.put(leafNodes.get(i), tasks.get(i).join());
+    }
+    ByteBuffer record = ByteBuffer.allocate(recordSizeBytes);
+    createAggDocForAllNodes(starTreeRootIndexNode, leafAggregates, record);
+    dataBuffer.flush();
+  }
+
+  private MetricAccumulator createAggDocForAllNodes(StarTreeIndexNode node,
+      Map<StarTreeIndexNode, MetricAccumulator> leafAggregates, ByteBuffer record) throws IOException {
+    MetricAccumulator aggMetrics = null;
+    if (node.isLeaf()) {
+      aggMetrics = leafAggregates.get(node);
+    } else {
+      Iterator<StarTreeIndexNode> childrenIterator = node.getChildrenIterator();
+      while (childrenIterator.hasNext()) {
+        StarTreeIndexNode child = childrenIterator.next();
+        MetricAccumulator childMetrics = createAggDocForAllNodes(child, leafAggregates, record);
+        // don't use the star node value to compute aggregate for the parent
+        if (child.getDimensionValue() == StarTreeIndexNodeInterf.ALL) {
+          continue;
+        }
+        if (aggMetrics == null) {
+          aggMetrics = new MetricAccumulator(childMetrics);
+        } else {
+          aggMetrics.aggregate(childMetrics);
+        }
+      }
+    }
+
+    Map<Integer, Integer> pathValues = node.getPathValues();
+    record.clear();
+    for (int i = 0; i < numDimensions; i++) {
+      Integer pathValue = pathValues.get(i);
+      record.putInt(pathValue != null ? pathValue : StarTreeIndexNodeInterf.ALL);
+    }
+    aggMetrics.write(record);
+    node.setAggregatedDocumentId(rawRecordCount + aggRecordCount);
+    dataBuffer.write(record.array(), 0, recordSizeBytes);
+    aggRecordCount++;
+    return aggMetrics;
+  }
+
+  /**
+   * Returns the leaf nodes of the tree in BFS order.
+   */
+  private List<StarTreeIndexNode> getLeafNodes() {
+    List<StarTreeIndexNode> leafNodes = new ArrayList<>();
+    Queue<StarTreeIndexNode> nodes = new LinkedList<>();
+    nodes.add(starTreeRootIndexNode);
+    while (!nodes.isEmpty()) {
+      StarTreeIndexNode node = nodes.remove();
+      if (node.isLeaf()) {
+        leafNodes.add(node);
+      } else {
+        Iterator<StarTreeIndexNode> childrenIterator = node.getChildrenIterator();
+        while (childrenIterator.hasNext()) {
+          nodes.add(childrenIterator.next());
+        }
+      }
+    }
+    return leafNodes;
+  }
+
+  /**
+   * Group by on dimension column, assumes data is already sorted on this dimension from start to end doc id.
+   * Mirrors {@link StarTreeDataTable#groupByIntColumnCount(int, int, Integer)}.
+   *
+   * @return start (inclusive), end (exclusive) for each value
+   */
+  private Map<Integer, IntPair> groupBy(FileChannel channel, int startDocId, int endDocId, int dimensionId)
+      throws IOException {
+    Map<Integer, IntPair> rangeMap = new LinkedHashMap<>();
+    int prevValue = -1;
+    int prevStart = startDocId;
+    byte[] records = new byte[Math.min(endDocId - startDocId, NUM_RECORDS_PER_READ) * recordSizeBytes];
+    ByteBuffer buffer = ByteBuffer.wrap(records);
+    for (int docId = startDocId; docId < endDocId; docId += NUM_RECORDS_PER_READ) {
+      int numDocs = Math.min(endDocId - docId, NUM_RECORDS_PER_READ);
+      readRecords(channel, docId, numDocs, records);
+      for (int i = 0; i < numDocs; i++) {
+        int value = buffer.getInt(i * recordSizeBytes + dimensionId * 4);
+        if (prevValue != -1 && prevValue != value) {
+          rangeMap.put(prevValue, new IntPair(prevStart, docId + i));
+          prevStart = docId + i;
+        }
+        prevValue = value;
+      }
+    }
+    rangeMap.put(prevValue, new IntPair(prevStart, endDocId));
+    return rangeMap;
+  }
+
+  /**
+   * Aggregates the metrics of the records from start to end doc id, in order.
+   */
+  private MetricAccumulator aggregate(FileChannel channel, int startDocId, int endDocId) throws IOException {
+    MetricAccumulator metrics = null;
+    byte[] records = new byte[Math.min(endDocId - startDocId, NUM_RECORDS_PER_READ) * recordSizeBytes];
+    for (int docId = startDocId; docId < endDocId; docId += NUM_RECORDS_PER_READ) {
+      int numDocs = Math.min(endDocId - docId, NUM_RECORDS_PER_READ);
+      readRecords(channel, docId, numDocs, records);
+      for (int i = 0; i < numDocs; i++) {
+        int metricOffset = i * recordSizeBytes + dimensionSizeBytes;
+        if (metrics == null) {
+          metrics = new MetricAccumulator(records, metricOffset);
+        } else {
+          metrics.aggregate(records, metricOffset);
+        }
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Sorts the given range of records on the given sort order (stable), and passes them in order to the sink. The
+   * range is sorted in chunks of {@link #numRecordsPerSortChunk} records in parallel, multiple chunks are written
+   * out as sorted runs and k-way merged. The sink may write back to the same range, as all records are read first.
+   *
+   * @param dimensionsToMask dimensions to replace by ALL before sorting, or null
+   */
+  private void sortRecords(final FileChannel channel, final long startDocId, final int numDocs, final int[] sortOrder,
+      final boolean[] dimensionsToMask, RecordSink sink) throws IOException {
+    if (numDocs <= numRecordsPerSortChunk) {
+      byte[] records = new byte[numDocs * recordSizeBytes];
+      readRecords(channel, startDocId, numDocs, records);
+      for (int docId : sortChunk(records, numDocs, sortOrder, dimensionsToMask)) {
+        sink.add(records, docId * recordSizeBytes);
+      }
+      return;
+    }
+
+    List<ForkJoinTask<File>> tasks = new ArrayList<>();
+    for (int offset = 0; offset < numDocs; offset += numRecordsPerSortChunk) {
+      final long chunkStartDocId = startDocId + offset;
+      final int chunkNumDocs = Math.min(numDocs - offset, numRecordsPerSortChunk);
+      tasks.add(ForkJoinTask.adapt(new Callable<File>() {
+        @Override
+        public File call() throws Exception {
+          return writeSortedRun(channel, chunkStartDocId, chunkNumDocs, sortOrder, dimensionsToMask);
+        }
+      }));
+    }
+    ForkJoinTask.invokeAll(tasks);
+
+    final int numKeys = sortOrder.length;
+    PriorityQueue<SortedRun> queue = new PriorityQueue<>(tasks.size(), new Comparator<SortedRun>() {
+      @Override
+      public int compare(SortedRun o1, SortedRun o2) {
+        for (int i = 0; i < numKeys; i++) {
+          if (o1.keys[i] != o2.keys[i]) {
+            return (o1.keys[i] < o2.keys[i]) ? -1 : 1;
+          }
+        }
+        // Ties are resolved on the run index to keep the sort stable
+        return o1.index - o2.index;
+      }
+    });
+    List<SortedRun> runs = new ArrayList<>(tasks.size());
+    try {
+      for (int i = 0; i < tasks.size(); i++) {
+        int runNumDocs = Math.min(numDocs - i * numRecordsPerSortChunk, numRecordsPerSortChunk);
+        SortedRun run = new SortedRun(i, tasks.get(i).join(), runNumDocs, sortOrder);
+        runs.add(run);
+        if (run.next()) {
+          queue.add(run);
+        }
+      }
+      while (!queue.isEmpty()) {
+        SortedRun run = queue.poll();
+        sink.add(run.record, 0);
+        if (run.next()) {
+          queue.add(run);
+        }
+      }
+    } finally {
+      for (SortedRun run : runs) {
+        run.close();
+      }
+    }
+  }
+
+  private File writeSortedRun(FileChannel channel, long startDocId, int numDocs, int[] sortOrder,
+      boolean[] dimensionsToMask) throws IOException {
+    byte[] records = new byte[numDocs * recordSizeBytes];
+    readRecords(channel, startDocId, numDocs, records);
+    int[] sortedDocIds = sortChunk(records, numDocs, sortOrder, dimensionsToMask);
+    File file = createTempFile("run");
+    OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      for (int docId : sortedDocIds) {
+        outputStream.write(records, docId * recordSizeBytes, recordSizeBytes);
+      }
+    } finally {
+      outputStream.close();
+    }
+    return file;
+  }
+
+  /**
+   * Masks the given dimensions of the records, and returns the record ids in sorted order.
+   */
+  private int[] sortChunk(byte[] records, int numDocs, int[] sortOrder, boolean[] dimensionsToMask) {
+    ByteBuffer buffer = ByteBuffer.wrap(records);
+    int numKeys = sortOrder.length;
+    int[] keys = new int[numDocs * numKeys];
+    for (int docId = 0; docId < numDocs; docId++) {
+      int recordOffset = docId * recordSizeBytes;
+      if (dimensionsToMask != null) {
+        for (int i = 0; i < numDimensions; i++) {
+          if (dimensionsToMask[i]) {
+            buffer.putInt(recordOffset + i * 4, StarTreeIndexNodeInterf.ALL);
+          }
+        }
+      }
+      for (int i = 0; i < numKeys; i++) {
+        keys[docId * numKeys + i] = buffer.getInt(recordOffset + sortOrder[i] * 4);
+      }
+    }
+    int[] docIds = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      docIds[i] = i;
+    }
+    mergeSort(docIds, new int[numDocs], 0, numDocs, keys, numKeys);
+    return docIds;
+  }
+
+  /**
+   * Stable merge sort of the record ids from (inclusive) to to (exclusive), on their keys.
+   */
+  private static void mergeSort(int[] docIds, int[] temp, int from, int to, int[] keys, int numKeys) {
+    if (to - from <= 16) {
+      for (int i = from + 1; i < to; i++) {
+        int docId = docIds[i];
+        int j = i - 1;
+        while (j >= from && compareKeys(keys, numKeys, docIds[j], docId) > 0) {
+          docIds[j + 1] = docIds[j];
+          j--;
+        }
+        docIds[j + 1] = docId;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(docIds, temp, from, mid, keys, numKeys);
+    mergeSort(docIds, temp, mid, to, keys, numKeys);
+    if (compareKeys(keys, numKeys, docIds[mid - 1], docIds[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(docIds, from, temp, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < mid && compareKeys(keys, numKeys, temp[left], temp[right]) <= 0)) {
+        docIds[i] = temp[left++];
+      } else {
+        docIds[i] = temp[right++];
+      }
+    }
+  }
+
+  private static int compareKeys(int[] keys, int numKeys, int docId1, int docId2) {
+    int offset1 = docId1 * numKeys;
+    int offset2 = docId2 * numKeys;
+    for (int i = 0; i < numKeys; i++) {
+      int v1 = keys[offset1 + i];
+      int v2 = keys[offset2 + i];
+      if (v1 != v2) {
+        return (v1 < v2) ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private void readRecords(FileChannel channel, long startDocId, int numDocs, byte[] records) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(records, 0, numDocs * recordSizeBytes);
+    long position = startDocId * recordSizeBytes;
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of file while reading " + numDocs + " records from " + startDocId);
+      }
+    }
+  }
+
+  private File createTempFile(String prefix) {
+    return new File(outDir, prefix + "_" + tempFileId.getAndIncrement() + ".tmp");
+  }
+
+  private interface RecordSink {
+    void add(byte[] records, int offset) throws IOException;
+  }
+
+  /**
+   * Writes records to the file channel starting at the given document id.
+   */
+  private class ChannelRecordWriter implements RecordSink {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(NUM_RECORDS_PER_READ * recordSizeBytes);
+    private long position;
+
+    ChannelRecordWriter(FileChannel channel, long startDocId) {
+      this.channel = channel;
+      this.position = startDocId * recordSizeBytes;
+    }
+
+    @Override
+    public void add(byte[] records, int offset) throws IOException {
+      if (buffer.remaining() < recordSizeBytes) {
+        flush();
+      }
+      buffer.put(records, offset, recordSizeBytes);
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      buffer.clear();
+    }
+  }
+
+  /**
+   * Aggregates consecutive records with identical dimensions, and writes the unique records to the output stream.
+   */
+  private class AggregatingRecordWriter implements RecordSink {
+    private final OutputStream outputStream;
+    private final byte[] record = new byte[recordSizeBytes];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private MetricAccumulator metrics;
+    int numRecords = 0;
+
+    AggregatingRecordWriter(OutputStream outputStream) {
+      this.outputStream = outputStream;
+    }
+
+    @Override
+    public void add(byte[] records, int offset) throws IOException {
+      if (metrics != null && equalDimensions(records, offset)) {
+        metrics.aggregate(records, offset + dimensionSizeBytes);
+        return;
+      }
+      flush();
+      System.arraycopy(records, offset, record, 0, dimensionSizeBytes);
+      metrics = new MetricAccumulator(records, offset + dimensionSizeBytes);
+    }
+
+    private boolean equalDimensions(byte[] records, int offset) {
+      for (int i = 0; i < dimensionSizeBytes; i++) {
+        if (record[i] != records[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void flush() throws IOException {
+      if (metrics != null) {
+        recordBuffer.position(dimensionSizeBytes);
+        metrics.write(recordBuffer);
+        outputStream.write(record);
+        numRecords++;
+        metrics = null;
+      }
+    }
+  }
+
+  /**
+   * Sequential reader over a sorted run file, used for the k-way merge.
+   */
+  private class SortedRun {
+    final int index;
+    final File file;
+    final DataInputStream inputStream;
+    final byte[] record = new byte[recordSizeBytes];
+    final int[] keys;
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final int[] sortOrder;
+    private int remaining;
+
+    SortedRun(int index, File file, int numDocs, int[] sortOrder) throws IOException {
+      this.index = index;
+      this.file = file;
+      this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      this.keys = new int[sortOrder.length];
+      this.sortOrder = sortOrder;
+      this.remaining = numDocs;
+    }
+
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      inputStream.readFully(record);
+      for (int i = 0; i < sortOrder.length; i++) {
+        keys[i] = recordBuffer.getInt(sortOrder[i] * 4);
+      }
+      remaining--;
+      return true;
+    }
+
+    void close() throws IOException {
+      inputStream.close();
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  /**
+   * Metric values of an aggregated record held in primitive arrays. Values are aggregated with the same arithmetic
+   * as {@link MetricBuffer}, including the overflow of short and int metrics, so the serialized bytes are identical.
+   */
+  private class MetricAccumulator {
+    private final long[] longValues = new long[numMetrics];
+    private final double[] doubleValues = new double[numMetrics];
+    private final HyperLogLog[] hllValues = new HyperLogLog[numMetrics];
+    private final TDigestSketch[] tDigestValues = new TDigestSketch[numMetrics];
+
+    MetricAccumulator(byte[] buffer, int offset) {
+      for (int i = 0; i < numMetrics; i++) {
+        if (hllMetrics[i]) {
+          hllValues[i] = HllUtil.buildHllFromBytes(Arrays.copyOfRange(buffer, offset, offset + metricSizes[i]));
+        } else if (tDigestMetrics[i]) {
+          tDigestValues[i] = StarTreeSketchUtil.buildTDigestFromBytes(buffer, offset);
+        } else {
+          switch (metricTypes[i]) {
+            case SHORT:
+              longValues[i] = getShort(buffer, offset);
+              break;
+            case INT:
+              longValues[i] = getInt(buffer, offset);
+              break;
+            case LONG:
+              longValues[i] = getLong(buffer, offset);
+              break;
+            case FLOAT:
+              doubleValues[i] = Float.intBitsToFloat(getInt(buffer, offset));
+              break;
+            case DOUBLE:
+              doubleValues[i] = Double.longBitsToDouble(getLong(buffer, offset));
+              break;
+            default:
+              throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+          }
+        }
+        offset += metricSizes[i];
+      }
+    }
+
+    MetricAccumulator(MetricAccumulator copy) {
+      System.arraycopy(copy.longValues, 0, longValues, 0, numMetrics);
+      System.arraycopy(copy.doubleValues, 0, doubleValues, 0, numMetrics);
+      for (int i = 0; i < numMetrics; i++) {
+        if (hllMetrics[i]) {
+          hllValues[i] = HllUtil.clone(copy.hllValues[i], HllUtil.getLog2mFromHllFieldSize(metricSizes[i]));
+        } else if (tDigestMetrics[i]) {
+          tDigestValues[i] = StarTreeSketchUtil.clone(copy.tDigestValues[i]);
+        }
+      }
+    }
+
+    void aggregate(byte[] buffer, int offset) {
+      for (int i = 0; i < numMetrics; i++) {
+        if (hllMetrics[i]) {
+          aggregateHll(i, HllUtil.buildHllFromBytes(Arrays.copyOfRange(buffer, offset, offset + metricSizes[i])));
+        } else if (tDigestMetrics[i]) {
+          tDigestValues[i].merge(ByteBuffer.wrap(buffer, offset, metricSizes[i]));
+        } else {
+          switch (metricTypes[i]) {
+            case SHORT:
+              longValues[i] = (short) (longValues[i] + getShort(buffer, offset));
+              break;
+            case INT:
+              longValues[i] = (int) (longValues[i] + getInt(buffer, offset));
+              break;
+            case LONG:
+              longValues[i] += getLong(buffer, offset);
+              break;
+            case FLOAT:
+              doubleValues[i] = (float) doubleValues[i] + Float.intBitsToFloat(getInt(buffer, offset));
+              break;
+            case DOUBLE:
+              doubleValues[i] += Double.longBitsToDouble(getLong(buffer, offset));
+              break;
+            default:
+              throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+          }
+        }
+        offset += metricSizes[i];
+      }
+    }
+
+    void aggregate(MetricAccumulator metrics) {
+      for (int i = 0; i < numMetrics; i++) {
+        if (hllMetrics[i]) {
+          aggregateHll(i, metrics.hllValues[i]);
+        } else if (tDigestMetrics[i]) {
+          tDigestValues[i].merge(metrics.tDigestValues[i]);
+        } else {
+          switch (metricTypes[i]) {
+            case SHORT:
+              longValues[i] = (short) (longValues[i] + metrics.longValues[i]);
+              break;
+            case INT:
+              longValues[i] = (int) (longValues[i] + metrics.longValues[i]);
+              break;
+            case LONG:
+              longValues[i] += metrics.longValues[i];
+              break;
+            case FLOAT:
+              doubleValues[i] = (float) doubleValues[i] + (float) metrics.doubleValues[i];
+              break;
+            case DOUBLE:
+              doubleValues[i] += metrics.doubleValues[i];
+              break;
+            default:
+              throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+          }
+        }
+      }
+    }
+
+    private void aggregateHll(int index, HyperLogLog hll) {
+      try {
+        hllValues[index].addAll(hll);
+      } catch (CardinalityMergeException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    void write(ByteBuffer buffer) throws IOException {
+      for (int i = 0; i < numMetrics; i++) {
+        if (hllMetrics[i]) {
+          buffer.put(hllValues[i].getBytes());
+        } else if (tDigestMetrics[i]) {
+          StarTreeSketchUtil.serializeTDigest(tDigestValues[i], buffer);
+        } else {
+          switch (metricTypes[i]) {
+            case SHORT:
+              buffer.putShort((short) longValues[i]);
+              break;
+            case INT:
+              buffer.putInt((int) longValues[i]);
+              break;
+            case LONG:
+              buffer.putLong(longValues[i]);
+              break;
+            case FLOAT:
+              buffer.putFloat((float) doubleValues[i]);
+              break;
+            case DOUBLE:
+              buffer.putDouble(doubleValues[i]);
+              break;
+            default:
+              throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+          }
+        }
+      }
+    }
+  }
+
+  private static short getShort(byte[] buffer, int offset) {
+    return (short) (((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF));
+  }
+
+  private static int getInt(byte[] buffer, int offset) {
+    return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) | ((buffer[offset + 2] & 0xFF) << 8)
+        | (buffer[offset + 3] & 0xFF);
+  }
+
+  private static long getLong(byte[] buffer, int offset) {
+    return ((long) getInt(buffer, offset) << 32) | (getInt(buffer, offset + 4) & 0xFFFFFFFFL);
+  }
+}
@@ -38,6 +38,7 @@ public class StarTreeBuilderConfig {
   private int skipMaterializationCardinalityThreshold =
       StarTreeIndexSpec.DEFAULT_SKIP_MATERIALIZATION_CARDINALITY_THRESHOLD;
   private boolean enableOffHealpFormat;
+  private int numBuildThreads = StarTreeIndexSpec.DEFAULT_NUM_BUILD_THREADS;
 
   public StarTreeBuilderConfig() {
   }
@@ -124,4 +125,20 @@ public class StarTreeBuilderConfig {
   public void setEnableOffHealpFormat(boolean enableOffHealpFormat) {
     this.enableOffHealpFormat = enableOffHealpFormat;
   }
+
+  /**
+   * Returns the number of threads to use for building the star tree.
+   * @return
+   */
+  public int getNumBuildThreads() {
+    return numBuildThreads;
+  }
+
+  /**
+   * Set the number of threads to use for building the star tree.
+   * @param numBuildThreads
+   */
+  public void setNumBuildThreads(int numBuildThreads) {
+    this.numBuildThreads = numBuildThreads;
+  }
 }
@@ -28,6 +28,10 @@ import org.codehaus.jackson.annotate.JsonIgnore;
  *
  * If columnsToDeriveHllFields are specified and not empty,
  * segment builder will generate corresponding hll derived fields on the fly.
+ *
+ * Only 'fasthll' queries are answered from the derived fields (including the star-tree aggregated documents).
+ * 'distinctcounthll' hashes the raw values differently, its pre-aggregated fields (and the ones of 'percentileest')
+ * are configured with {@link com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig}.
  */
 public class HllConfig {
   private int hllLog2m = HllConstants.DEFAULT_LOG2M;
@@ -17,6 +17,7 @@ package com.linkedin.pinot.core.startree.hll;
 
 import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
 import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.clearspring.analytics.stream.cardinality.RegisterSet;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableBiMap;
 import com.linkedin.pinot.common.Utils;
@@ -36,6 +37,9 @@ public class HllUtil {
   private static final ImmutableBiMap<Integer, Integer> LOG2M_TO_SIZE_IN_BYTES =
       ImmutableBiMap.of(5, 32, 6, 52, 7, 96, 8, 180, 9, 352);
 
+  // Serialized hll starts with two ints: log2m and the size in bytes of the register set.
+  private static final int HEADER_SIZE_IN_BYTES = 8;
+
   private static final Charset charset = Charset.forName("UTF-8");
 
   /**
@@ -86,8 +90,61 @@ public class HllUtil {
     }
   }
 
+  /**
+   * Build the hll from its string representation. The registers are read from the chars directly, which is the same
+   * as {@link #buildHllFromBytes(byte[])} on the converted byte array, without the intermediate copies and streams.
+   *
+   * @param s string from {@link #convertHllToString(HyperLogLog)}
+   * @return hll
+   */
   public static HyperLogLog convertStringToHll(String s) {
-    return buildHllFromBytes(SerializationConverter.charsToByteArray(s.toCharArray()));
+    int log2m = readInt(s, 0);
+    int[] registerWords = new int[readInt(s, 4) / 4];
+    for (int i = 0; i < registerWords.length; i++) {
+      registerWords[i] = readInt(s, HEADER_SIZE_IN_BYTES + (i << 2));
+    }
+    return new HyperLogLog(log2m, new RegisterSet(1 << log2m, registerWords));
+  }
+
+  private static int readInt(String s, int offset) {
+    int value = 0;
+    for (int i = offset; i < offset + 4; i++) {
+      value = (value << 8) | (SerializationConverter.charToByte(s.charAt(i)) & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * Decode the registers of a serialized hll from the UTF-8 bytes of its string representation, e.g. the raw bytes of
+   * a dictionary entry, which may be followed by padding. The string is never built: each char (1 or 2 bytes under
+   * UTF-8) is mapped back to its byte, and the bytes are assembled into the register words.
+   *
+   * Callers can wrap the register words into a {@link RegisterSet} once and merge it for every decoded entry, so no
+   * object is allocated per entry.
+   *
+   * @param utf8Bytes UTF-8 bytes of a string from {@link #convertHllToString(HyperLogLog)}
+   * @param registerWords destination of the register words, of the register set size of the serialized hll
+   */
+  public static void decodeRegistersFromUtf8Bytes(byte[] utf8Bytes, int[] registerWords) {
+    int numBytes = HEADER_SIZE_IN_BYTES + (registerWords.length << 2);
+    int position = 0;
+    int value = 0;
+    for (int i = 0; i < numBytes; i++) {
+      int c = utf8Bytes[position++] & 0xFF;
+      if (c >= 0x80) {
+        // Two bytes sequence: 110xxxxx 10xxxxxx (mapped chars never need more than two bytes).
+        c = ((c & 0x1F) << 6) | (utf8Bytes[position++] & 0x3F);
+      }
+      value = (value << 8) | (SerializationConverter.charToByte((char) c) & 0xFF);
+      if ((i & 3) == 3) {
+        if (i >= HEADER_SIZE_IN_BYTES) {
+          registerWords[(i - HEADER_SIZE_IN_BYTES) >> 2] = value;
+        } else if (i == HEADER_SIZE_IN_BYTES - 1) {
+          Preconditions.checkState(value == registerWords.length << 2,
+              "Register set size in bytes: " + value + " does not match: " + (registerWords.length << 2));
+        }
+      }
+    }
   }
 
   /**
@@ -161,6 +218,26 @@ public class HllUtil {
       return ret;
     }
 
+    /**
+     * Decode the bytes of a string from {@link #byteArrayToChars(byte[])} from its UTF-8 bytes, e.g. the raw bytes of a
+     * dictionary entry, which may be followed by padding. Each char (1 or 2 bytes under UTF-8) is mapped back to its
+     * byte, until the byte array is filled.
+     *
+     * @param utf8Bytes UTF-8 bytes of the string
+     * @param byteArray destination of the decoded bytes
+     */
+    public static void utf8BytesToByteArray(byte[] utf8Bytes, byte[] byteArray) {
+      int position = 0;
+      for (int i = 0; i < byteArray.length; i++) {
+        int c = utf8Bytes[position++] & 0xFF;
+        if (c >= 0x80) {
+          // Two bytes sequence: 110xxxxx 10xxxxxx (mapped chars never need more than two bytes).
+          c = ((c & 0x1F) << 6) | (utf8Bytes[position++] & 0x3F);
+        }
+        byteArray[i] = charToByte((char) c);
+      }
+    }
+
     public static char byteToChar(byte b) {
       return (char)(((int)b) + BYTE_TO_CHAR_OFFSET);
     }
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree.sketch;
+
+import com.google.common.base.Preconditions;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.codehaus.jackson.annotate.JsonIgnore;
+
+
+/**
+ * StarTreeSketchConfig is used at segment generation, along with the star tree.
+ *
+ * For each column in columnsToDeriveDistinctCountHllFields (resp. columnsToDeriveTDigestFields), the segment builder
+ * generates a derived field holding a serialized hll (resp. t-digest) sketch of fixed size. The sketches are merged
+ * into the star tree aggregated documents, so that 'distinctcounthll' (resp. 'percentileest' and
+ * 'percentiletdigest') queries fit for the star tree are answered from them instead of the raw documents.
+ *
+ * Unlike the fields derived with {@link com.linkedin.pinot.core.startree.hll.HllConfig} (for 'fasthll'), the sketch
+ * parameters are fixed and the values are added the same way as the aggregation functions do, so that the results
+ * merge with the ones of the segments without star tree. See {@link StarTreeSketchUtil}.
+ */
+public class StarTreeSketchConfig {
+  public static final String DISTINCTCOUNTHLL_DERIVE_COLUMN_SUFFIX = "_distinctcounthll";
+  public static final String TDIGEST_DERIVE_COLUMN_SUFFIX = "_tdigest";
+
+  private Set<String> columnsToDeriveDistinctCountHllFields = new HashSet<>();
+  private Set<String> columnsToDeriveTDigestFields = new HashSet<>();
+
+  /**
+   * StarTreeSketchConfig with no derived field. Required by JSON de-serializer.
+   */
+  public StarTreeSketchConfig() {
+  }
+
+  /**
+   * @param columnsToDeriveDistinctCountHllFields columns to generate 'distinctcounthll' sketches for
+   * @param columnsToDeriveTDigestFields numeric columns to generate 'percentileest'/'percentiletdigest' sketches for
+   */
+  public StarTreeSketchConfig(Set<String> columnsToDeriveDistinctCountHllFields,
+      Set<String> columnsToDeriveTDigestFields) {
+    Preconditions.checkNotNull(columnsToDeriveDistinctCountHllFields,
+        "ColumnsToDeriveDistinctCountHllFields should not be null.");
+    Preconditions.checkNotNull(columnsToDeriveTDigestFields, "ColumnsToDeriveTDigestFields should not be null.");
+    this.columnsToDeriveDistinctCountHllFields = columnsToDeriveDistinctCountHllFields;
+    this.columnsToDeriveTDigestFields = columnsToDeriveTDigestFields;
+  }
+
+  public Set<String> getColumnsToDeriveDistinctCountHllFields() {
+    return columnsToDeriveDistinctCountHllFields;
+  }
+
+  public void setColumnsToDeriveDistinctCountHllFields(Set<String> columnsToDeriveDistinctCountHllFields) {
+    this.columnsToDeriveDistinctCountHllFields = columnsToDeriveDistinctCountHllFields;
+  }
+
+  public Set<String> getColumnsToDeriveTDigestFields() {
+    return columnsToDeriveTDigestFields;
+  }
+
+  public void setColumnsToDeriveTDigestFields(Set<String> columnsToDeriveTDigestFields) {
+    this.columnsToDeriveTDigestFields = columnsToDeriveTDigestFields;
+  }
+
+  @JsonIgnore
+  public Map<String, String> getDerivedDistinctCountHllFieldToOriginMap() {
+    return getDerivedFieldToOriginMap(columnsToDeriveDistinctCountHllFields, DISTINCTCOUNTHLL_DERIVE_COLUMN_SUFFIX);
+  }
+
+  @JsonIgnore
+  public Map<String, String> getDerivedTDigestFieldToOriginMap() {
+    return getDerivedFieldToOriginMap(columnsToDeriveTDigestFields, TDIGEST_DERIVE_COLUMN_SUFFIX);
+  }
+
+  private static Map<String, String> getDerivedFieldToOriginMap(Set<String> columns, String suffix) {
+    Map<String, String> derivedFieldToOriginMap = new HashMap<>();
+    for (String column : columns) {
+      derivedFieldToOriginMap.put(column + suffix, column);
+    }
+    return derivedFieldToOriginMap;
+  }
+}
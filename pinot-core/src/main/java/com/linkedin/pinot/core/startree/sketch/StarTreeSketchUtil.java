@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree.sketch;
+
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.google.common.base.Preconditions;
+import com.linkedin.pinot.common.data.MetricFieldSpec.DerivedMetricType;
+import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.startree.hll.HllConstants;
+import com.linkedin.pinot.core.startree.hll.HllUtil;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Utility functions for the sketch fields derived with {@link StarTreeSketchConfig}.
+ *
+ * The sketches are stored as fixed-size binary values: in the star tree builder records, and as strings of one char per
+ * byte (see {@link HllUtil.SerializationConverter}) in the segment, so that every dictionary entry has the same length.
+ * - DISTINCTCOUNTHLL: hll with log2m {@link HllConstants#DEFAULT_LOG2M}, offered the hash code of the value as an int,
+ *   the same as the 'distinctcounthll' aggregation function.
+ * - TDIGEST: t-digest with the default compression, serialized and zero padded to its maximum serialized size.
+ */
+public class StarTreeSketchUtil {
+  public static final int DISTINCTCOUNTHLL_LOG2M = HllConstants.DEFAULT_LOG2M;
+  public static final int DISTINCTCOUNTHLL_FIELD_SIZE = HllUtil.getHllFieldSizeFromLog2m(DISTINCTCOUNTHLL_LOG2M);
+  public static final double TDIGEST_COMPRESSION = TDigestSketch.DEFAULT_COMPRESSION;
+  public static final int TDIGEST_FIELD_SIZE = TDigestSketch.getMaxSerializedSizeInBytes(TDIGEST_COMPRESSION);
+
+  private StarTreeSketchUtil() {
+  }
+
+  /**
+   * Returns the fixed size in bytes of the derived sketch field of the given type.
+   */
+  public static int getFieldSize(DerivedMetricType derivedMetricType) {
+    switch (derivedMetricType) {
+      case DISTINCTCOUNTHLL:
+        return DISTINCTCOUNTHLL_FIELD_SIZE;
+      case TDIGEST:
+        return TDIGEST_FIELD_SIZE;
+      default:
+        throw new IllegalArgumentException("Unsupported derived sketch type: " + derivedMetricType);
+    }
+  }
+
+  /**
+   * Generate a 'distinctcounthll' compatible hll from a single value, and convert it to string type.
+   * It is used for default derived field value.
+   */
+  public static String singleValueDistinctCountHllAsString(Object value) {
+    HyperLogLog hll = new HyperLogLog(DISTINCTCOUNTHLL_LOG2M);
+    hll.offer(value.hashCode());
+    return HllUtil.convertHllToString(hll);
+  }
+
+  /**
+   * Generate a t-digest from a single numeric value, and convert it to string type.
+   * It is used for default derived field value.
+   */
+  public static String singleValueTDigestAsString(Object value) {
+    TDigestSketch tDigest = new TDigestSketch(TDIGEST_COMPRESSION);
+    tDigest.add(((Number) value).doubleValue());
+    return convertTDigestToString(tDigest);
+  }
+
+  public static String convertTDigestToString(TDigestSketch tDigest) {
+    byte[] bytes = new byte[TDIGEST_FIELD_SIZE];
+    serializeTDigest(tDigest, ByteBuffer.wrap(bytes));
+    return new String(HllUtil.SerializationConverter.byteArrayToChars(bytes));
+  }
+
+  public static TDigestSketch convertStringToTDigest(String s) {
+    return TDigestSketch.fromByteBuffer(
+        ByteBuffer.wrap(HllUtil.SerializationConverter.charsToByteArray(s.toCharArray())));
+  }
+
+  /**
+   * Serialize the t-digest into exactly {@link #TDIGEST_FIELD_SIZE} bytes of the buffer, zero padded, so that equal
+   * sketches always have the same bytes.
+   */
+  public static void serializeTDigest(TDigestSketch tDigest, ByteBuffer buffer) {
+    int serializedSize = tDigest.getSerializedSizeInBytes();
+    Preconditions.checkState(serializedSize <= TDIGEST_FIELD_SIZE,
+        "Serialized t-digest size: " + serializedSize + " exceeds the field size: " + TDIGEST_FIELD_SIZE);
+    tDigest.serialize(buffer);
+    for (int i = serializedSize; i < TDIGEST_FIELD_SIZE; i++) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  public static TDigestSketch buildTDigestFromBytes(byte[] bytes, int offset) {
+    return TDigestSketch.fromByteBuffer(ByteBuffer.wrap(bytes, offset, TDIGEST_FIELD_SIZE));
+  }
+
+  public static TDigestSketch clone(TDigestSketch tDigest) {
+    TDigestSketch ret = new TDigestSketch(tDigest.getCompression());
+    ret.merge(tDigest);
+    return ret;
+  }
+
+  /**
+   * Add the centroids of the t-digest into the quantile digest used by 'percentileest'. Each centroid is added as its
+   * weight of values at its mean rounded to long, which is exact for the centroids of a single value.
+   */
+  public static void mergeIntoQuantileDigest(TDigestSketch tDigest, QuantileDigest quantileDigest) {
+    int numCentroids = tDigest.getNumCentroids();
+    for (int i = 0; i < numCentroids; i++) {
+      quantileDigest.add(Math.round(tDigest.getCentroidMean(i)), Math.round(tDigest.getCentroidWeight(i)));
+    }
+  }
+}
@@ -23,8 +23,11 @@ import com.linkedin.pinot.common.utils.DataTableJavaSerDe;
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.quantile.digest.QuantileDigest;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.SketchSerDe;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -145,6 +148,9 @@ public class DataTableCustomSerDe extends DataTableJavaSerDe {
       case IntOpenHashSet:
         return (T) deserializeIntOpenHashSet(bytes);
 
+      case Sketch:
+        return (T) SketchSerDe.deserialize(bytes);
+
       case Object:
         return (T) deserializeJavaObject(bytes);
 
@@ -213,6 +219,9 @@ public class DataTableCustomSerDe extends DataTableJavaSerDe {
       IntOpenHashSet hashSet = (IntOpenHashSet) object;
       return serializeIntOpenHashSet(hashSet);
 
+    } else if (object instanceof Sketch) {
+      return SketchSerDe.serialize((Sketch) object);
+
     } else {
       return serializeJavaObject(object);
     }
@@ -264,6 +273,9 @@ public class DataTableCustomSerDe extends DataTableJavaSerDe {
     } else if (object instanceof IntOpenHashSet) {
       return DataType.IntOpenHashSet;
 
+    } else if (object instanceof Sketch) {
+      return DataType.Sketch;
+
     } else {
       return DataType.Object;
     }
@@ -405,7 +417,8 @@ public class DataTableCustomSerDe extends DataTableJavaSerDe {
    * @return Serialized byte-array for the QuantileDigest.
    */
   public static byte[] serializeQuantileDigest(QuantileDigest quantileDigest) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    ByteArrayOutputStream byteArrayOutputStream =
+        new ByteArrayOutputStream(quantileDigest.estimatedSerializedSizeInBytes());
 
     try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
       quantileDigest.serialize(dataOutputStream);
@@ -442,20 +455,15 @@ public class DataTableCustomSerDe extends DataTableJavaSerDe {
    * @return Serialized byte-array for the IntOpenHashSet
    */
   private static byte[] serializeIntOpenHashSet(IntOpenHashSet set) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-
-    try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
-      // Write the size of the set.
-      dataOutputStream.writeInt(set.size());
-      for (Integer value : set) {
-        dataOutputStream.writeInt(value);
-      }
-      return byteArrayOutputStream.toByteArray();
-
-    } catch (IOException e) {
-      LOGGER.error("Exception caught while serializing IntOpenHashSet", e);
-      throw new RuntimeException("HashMap serialization error", e);
+    // Size of the set followed by the values, written into an exactly sized buffer without boxing the values.
+    int size = set.size();
+    ByteBuffer byteBuffer = ByteBuffer.allocate((size + 1) * V1Constants.Numbers.INTEGER_SIZE);
+    byteBuffer.putInt(size);
+    IntIterator iterator = set.iterator();
+    while (iterator.hasNext()) {
+      byteBuffer.putInt(iterator.nextInt());
     }
+    return byteBuffer.array();
   }
 
   /**
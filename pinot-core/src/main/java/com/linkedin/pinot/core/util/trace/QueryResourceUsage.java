@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.util.trace;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Accumulates the resources used by all the threads working on a query: thread CPU time, allocated bytes, and time
+ * spent by the query tasks waiting in the executor queue.
+ *
+ * The request handler thread should call {@link #register()} before processing the query, and {@link #unregister()}
+ * once done. Jobs wrapped in {@link TraceRunnable} or {@link TraceCallable} and created by the request handler thread
+ * (directly or through other jobs) are accounted for automatically.
+ */
+public class QueryResourceUsage {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryResourceUsage.class);
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final boolean IS_THREAD_CPU_TIME_SUPPORTED;
+  private static final boolean IS_THREAD_ALLOCATED_BYTES_SUPPORTED;
+
+  static {
+    boolean isThreadCpuTimeSupported = false;
+    try {
+      isThreadCpuTimeSupported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+      if (isThreadCpuTimeSupported && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+        THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while enabling thread CPU time measurement", e);
+      isThreadCpuTimeSupported = false;
+    }
+    IS_THREAD_CPU_TIME_SUPPORTED = isThreadCpuTimeSupported;
+
+    boolean isThreadAllocatedBytesSupported = false;
+    try {
+      if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        isThreadAllocatedBytesSupported = threadMXBean.isThreadAllocatedMemorySupported();
+        if (isThreadAllocatedBytesSupported && !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+          threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while enabling thread allocated memory measurement", e);
+      isThreadAllocatedBytesSupported = false;
+    }
+    IS_THREAD_ALLOCATED_BYTES_SUPPORTED = isThreadAllocatedBytesSupported;
+  }
+
+  private static final ThreadLocal<QueryResourceUsage> _current = new ThreadLocal<>();
+
+  private final AtomicLong _threadCpuTimeNs = new AtomicLong();
+  private final AtomicLong _allocatedBytes = new AtomicLong();
+  private final AtomicLong _queueWaitTimeNs = new AtomicLong();
+
+  /**
+   * Starts accounting the resources of a query processed by the current thread.
+   *
+   * @return resource usage of the query.
+   */
+  public static QueryResourceUsage register() {
+    QueryResourceUsage resourceUsage = new QueryResourceUsage();
+    _current.set(resourceUsage);
+    return resourceUsage;
+  }
+
+  /**
+   * Stops accounting the resources of the query processed by the current thread.
+   */
+  public static void unregister() {
+    _current.remove();
+  }
+
+  /**
+   * Returns the resource usage of the query processed by the current thread, or null if there is none.
+   */
+  public static QueryResourceUsage getForCurrentThread() {
+    return _current.get();
+  }
+
+  /**
+   * Set the resource usage of the query processed by the current thread, and returns the previous one.
+   */
+  static QueryResourceUsage setForCurrentThread(QueryResourceUsage resourceUsage) {
+    QueryResourceUsage previous = _current.get();
+    if (resourceUsage == null) {
+      _current.remove();
+    } else {
+      _current.set(resourceUsage);
+    }
+    return previous;
+  }
+
+  /**
+   * Returns the CPU time of the current thread in nanoseconds, or 0 if not supported.
+   */
+  public static long getCurrentThreadCpuTimeNs() {
+    return IS_THREAD_CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+  }
+
+  /**
+   * Returns the bytes allocated by the current thread, or 0 if not supported.
+   */
+  public static long getCurrentThreadAllocatedBytes() {
+    if (IS_THREAD_ALLOCATED_BYTES_SUPPORTED) {
+      return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(
+          Thread.currentThread().getId());
+    }
+    return 0L;
+  }
+
+  public void add(long threadCpuTimeNs, long allocatedBytes, long queueWaitTimeNs) {
+    _threadCpuTimeNs.addAndGet(threadCpuTimeNs);
+    _allocatedBytes.addAndGet(allocatedBytes);
+    _queueWaitTimeNs.addAndGet(queueWaitTimeNs);
+  }
+
+  public long getThreadCpuTimeNs() {
+    return _threadCpuTimeNs.get();
+  }
+
+  public long getAllocatedBytes() {
+    return _allocatedBytes.get();
+  }
+
+  public long getQueueWaitTimeNs() {
+    return _queueWaitTimeNs.get();
+  }
+
+  /**
+   * Accounts the resources used by a job running on the current thread. Jobs running on the thread that created them
+   * are already accounted for by the creating thread, and are ignored.
+   */
+  static class JobAccounting {
+    private final QueryResourceUsage _resourceUsage;
+    private final long _creationTimeNs;
+    private QueryResourceUsage _previousResourceUsage;
+    private boolean _isAccounted;
+    private long _startCpuTimeNs;
+    private long _startAllocatedBytes;
+
+    /**
+     * Must be called on the thread creating the job.
+     */
+    JobAccounting() {
+      _resourceUsage = getForCurrentThread();
+      _creationTimeNs = System.nanoTime();
+    }
+
+    /**
+     * Must be called on the thread running the job, before running it.
+     */
+    void start() {
+      if (_resourceUsage == null) {
+        return;
+      }
+      _previousResourceUsage = setForCurrentThread(_resourceUsage);
+      _isAccounted = (_previousResourceUsage != _resourceUsage);
+      if (_isAccounted) {
+        _resourceUsage.add(0L, 0L, System.nanoTime() - _creationTimeNs);
+        _startCpuTimeNs = getCurrentThreadCpuTimeNs();
+        _startAllocatedBytes = getCurrentThreadAllocatedBytes();
+      }
+    }
+
+    /**
+     * Must be called on the thread running the job, after running it.
+     */
+    void finish() {
+      if (_resourceUsage == null) {
+        return;
+      }
+      if (_isAccounted) {
+        _resourceUsage.add(getCurrentThreadCpuTimeNs() - _startCpuTimeNs,
+            getCurrentThreadAllocatedBytes() - _startAllocatedBytes, 0L);
+      }
+      setForCurrentThread(_previousResourceUsage);
+    }
+  }
+}
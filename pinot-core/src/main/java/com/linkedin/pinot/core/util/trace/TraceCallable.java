@@ -23,7 +23,8 @@ import java.util.concurrent.Callable;
 
 /**
  * Wrap a {@link Callable} so that the thread executes this job
- * will be automatically registered/unregistered to/from a request.
+ * will be automatically registered/unregistered to/from a request, and its
+ * resource usage accounted to the query (see {@link QueryResourceUsage}).
  *
  */
 public abstract class TraceCallable<V> implements Callable<V> {
@@ -32,6 +33,7 @@ public abstract class TraceCallable<V> implements Callable<V> {
 
   private final InstanceRequest request;
   private final Trace parent;
+  private final QueryResourceUsage.JobAccounting jobAccounting = new QueryResourceUsage.JobAccounting();
 
   public TraceCallable(InstanceRequest request, Trace parent) {
     if (request == null) {
@@ -51,9 +53,11 @@ public abstract class TraceCallable<V> implements Callable<V> {
   @Override
   public V call() throws Exception {
     if (request != null) TraceContext.registerThreadToRequest(request, parent);
+    jobAccounting.start();
     try {
       return callJob();
     } finally {
+      jobAccounting.finish();
       if (request != null) TraceContext.unregisterThreadFromRequest();
     }
   }
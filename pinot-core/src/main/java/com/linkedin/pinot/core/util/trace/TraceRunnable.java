@@ -21,7 +21,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Wrap a {@link Runnable} so that the thread executes this job
- * will be automatically registered/unregistered to/from a request.
+ * will be automatically registered/unregistered to/from a request, and its
+ * resource usage accounted to the query (see {@link QueryResourceUsage}).
  *
  */
 public abstract class TraceRunnable implements Runnable {
@@ -30,6 +31,7 @@ public abstract class TraceRunnable implements Runnable {
 
   private final InstanceRequest request;
   private final Trace parent;
+  private final QueryResourceUsage.JobAccounting jobAccounting = new QueryResourceUsage.JobAccounting();
 
   private TraceRunnable(InstanceRequest request, Trace parent) {
     if (request == null) {
@@ -49,9 +51,11 @@ public abstract class TraceRunnable implements Runnable {
   @Override
   public void run() {
     if (request != null) TraceContext.registerThreadToRequest(request, parent);
+    jobAccounting.start();
     try {
       runJob();
     } finally {
+      jobAccounting.finish();
       if (request != null) TraceContext.unregisterThreadFromRequest();
     }
   }
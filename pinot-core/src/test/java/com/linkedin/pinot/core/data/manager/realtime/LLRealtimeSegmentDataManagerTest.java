@@ -19,9 +19,21 @@ package com.linkedin.pinot.core.data.manager.realtime;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import kafka.message.Message;
+import kafka.message.MessageAndOffset;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
@@ -29,11 +41,18 @@ import com.linkedin.pinot.common.metadata.segment.LLCRealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.protocols.SegmentCompletionProtocol;
+import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.LLCSegmentName;
+import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
 import com.linkedin.pinot.core.realtime.impl.kafka.KafkaHighLevelStreamProviderConfig;
+import com.linkedin.pinot.core.realtime.impl.kafka.KafkaMessageDecoder;
+import com.linkedin.pinot.core.realtime.impl.kafka.SimpleConsumerWrapper;
+import com.yammer.metrics.core.MetricsRegistry;
 import junit.framework.Assert;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -466,6 +485,237 @@ public class LLRealtimeSegmentDataManagerTest {
     }
   }
 
+  private static final int NUM_DECODER_THREADS = 3;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // Rows of the pipelined consumption tests carry the offset of their message in column 'd'.
+  private static String rowValue(long offset) {
+    return "v" + offset;
+  }
+
+  private static List<MessageAndOffset> makeMessages(long startOffset, long endOffset) {
+    List<MessageAndOffset> messages = new ArrayList<>();
+    for (long offset = startOffset; offset < endOffset; offset++) {
+      messages.add(new MessageAndOffset(new Message(rowValue(offset).getBytes(UTF_8)), offset));
+    }
+    return messages;
+  }
+
+  private static List<String> expectedRows(long startOffset, long endOffset, long... skippedOffsets) {
+    List<String> rows = new ArrayList<>();
+    outer:
+    for (long offset = startOffset; offset < endOffset; offset++) {
+      for (long skippedOffset : skippedOffsets) {
+        if (offset == skippedOffset) {
+          continue outer;
+        }
+      }
+      rows.add(rowValue(offset));
+    }
+    return rows;
+  }
+
+  /**
+   * Decodes the message payload into column 'd'. Payloads starting with "bad" cannot be decoded, and payloads
+   * starting with "fail" make the decoder throw.
+   */
+  private static class TestMessageDecoder implements KafkaMessageDecoder {
+    @Override
+    public void init(Map<String, String> props, Schema indexingSchema, String kafkaTopicName) {
+    }
+
+    @Override
+    public GenericRow decode(byte[] payload) {
+      return decode(payload, 0, payload.length);
+    }
+
+    @Override
+    public GenericRow decode(byte[] payload, int offset, int length) {
+      String value = new String(payload, offset, length, UTF_8);
+      if (value.startsWith("bad")) {
+        return null;
+      }
+      if (value.startsWith("fail")) {
+        throw new RuntimeException("Cannot decode " + value);
+      }
+      Map<String, Object> fields = new HashMap<>();
+      fields.put("d", value);
+      fields.put("m", 1L);
+      fields.put("time", 12345L);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      return row;
+    }
+  }
+
+  /**
+   * Creates a segment manager in pipelined mode, consuming in CATCHING_UP state up to the final offset. Kafka returns
+   * the batch registered for the fetch offset (or nothing), and the indexed rows are collected in indexedRows.
+   */
+  private FakeLLRealtimeSegmentDataManager createPipelinedSegmentManager(
+      final Map<Long, List<MessageAndOffset>> batches, final List<Long> fetchOffsets, final List<String> indexedRows,
+      long finalOffset) throws Exception {
+    AbstractTableConfig tableConfig = createTableConfig();
+    tableConfig.getIndexingConfig().getStreamConfigs().put(CommonConstants.Helix.DataSource.STREAM_PREFIX + "."
+        + CommonConstants.Helix.DataSource.Realtime.Kafka.LowLevelConsumer.DECODER_THREADS,
+        String.valueOf(NUM_DECODER_THREADS));
+    final FakeLLRealtimeSegmentDataManager segmentDataManager = new FakeLLRealtimeSegmentDataManager(
+        createZkMetadata(), tableConfig, new InstanceZKMetadata(), createTableDataManager(), _segmentDir,
+        Schema.fromString(makeSchema()), new ServerMetrics(new MetricsRegistry()));
+    KafkaMessageDecoder[] messageDecoders =
+        (KafkaMessageDecoder[]) segmentDataManager.getField("_messageDecoders");
+    Assert.assertEquals(NUM_DECODER_THREADS, messageDecoders.length);
+    for (int i = 0; i < messageDecoders.length; i++) {
+      messageDecoders[i] = new TestMessageDecoder();
+    }
+
+    SimpleConsumerWrapper consumerWrapper = mock(SimpleConsumerWrapper.class);
+    when(consumerWrapper.fetchMessages(anyLong(), anyLong(), anyInt())).thenAnswer(
+        new Answer<Iterable<MessageAndOffset>>() {
+          @Override
+          public Iterable<MessageAndOffset> answer(InvocationOnMock invocation) {
+            Long startOffset = (Long) invocation.getArguments()[0];
+            fetchOffsets.add(startOffset);
+            List<MessageAndOffset> batch = batches.get(startOffset);
+            return batch == null ? Collections.<MessageAndOffset>emptyList() : batch;
+          }
+        });
+    when(consumerWrapper.getHighWatermark()).thenReturn(-1L);
+    segmentDataManager.setField("_consumerWrapper", consumerWrapper);
+
+    RealtimeSegmentImpl realtimeSegment = mock(RealtimeSegmentImpl.class);
+    when(realtimeSegment.index(any(GenericRow.class))).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) {
+        indexedRows.add((String) ((GenericRow) invocation.getArguments()[0]).getValue("d"));
+        return true;
+      }
+    });
+    segmentDataManager.setField("_realtimeSegment", realtimeSegment);
+
+    segmentDataManager._state.set(segmentDataManager, LLRealtimeSegmentDataManager.State.CATCHING_UP);
+    segmentDataManager.setFinalOffset(finalOffset);
+    return segmentDataManager;
+  }
+
+  // Rows are indexed in offset order across the decode tasks of a batch and across batches.
+  @Test
+  public void testPipelinedConsumeLoopKeepsOffsetOrder() throws Exception {
+    Map<Long, List<MessageAndOffset>> batches = new HashMap<>();
+    batches.put(_startOffset, makeMessages(_startOffset, _startOffset + 1000));
+    batches.put(_startOffset + 1000, makeMessages(_startOffset + 1000, _startOffset + 1250));
+    List<Long> fetchOffsets = Collections.synchronizedList(new ArrayList<Long>());
+    List<String> indexedRows = new ArrayList<>();
+    FakeLLRealtimeSegmentDataManager segmentDataManager =
+        createPipelinedSegmentManager(batches, fetchOffsets, indexedRows, _startOffset + 1250);
+
+    segmentDataManager.invokeConsumeLoop();
+
+    Assert.assertEquals(expectedRows(_startOffset, _startOffset + 1250), indexedRows);
+    Assert.assertEquals(_startOffset + 1250, segmentDataManager.getField("_currentOffset"));
+    Assert.assertEquals(1250, segmentDataManager.getField("_numRowsConsumed"));
+    Assert.assertEquals(_startOffset, (long) fetchOffsets.get(0));
+    Assert.assertEquals(_startOffset + 1000, (long) fetchOffsets.get(1));
+  }
+
+  // When the end criteria are reached within a batch, the rest of the batch and the prefetched batch are dropped, and
+  // consumption resumes from the current offset.
+  @Test
+  public void testPipelinedConsumeLoopEndsMidBatch() throws Exception {
+    Map<Long, List<MessageAndOffset>> batches = new HashMap<>();
+    batches.put(_startOffset, makeMessages(_startOffset, _startOffset + 500));
+    batches.put(_startOffset + 500, makeMessages(_startOffset + 500, _startOffset + 1000));
+    batches.put(_startOffset + 320, makeMessages(_startOffset + 320, _startOffset + 500));
+    List<Long> fetchOffsets = Collections.synchronizedList(new ArrayList<Long>());
+    List<String> indexedRows = new ArrayList<>();
+    FakeLLRealtimeSegmentDataManager segmentDataManager =
+        createPipelinedSegmentManager(batches, fetchOffsets, indexedRows, _startOffset + 320);
+
+    segmentDataManager.invokeConsumeLoop();
+    Assert.assertEquals(expectedRows(_startOffset, _startOffset + 320), indexedRows);
+    Assert.assertEquals(_startOffset + 320, segmentDataManager.getField("_currentOffset"));
+
+    // Catch up further, which has to fetch again from the current offset rather than use the prefetched batch
+    fetchOffsets.clear();
+    segmentDataManager.setFinalOffset(_startOffset + 1000);
+    segmentDataManager.invokeConsumeLoop();
+    Assert.assertEquals(expectedRows(_startOffset, _startOffset + 1000), indexedRows);
+    Assert.assertEquals(_startOffset + 1000, segmentDataManager.getField("_currentOffset"));
+    Assert.assertEquals(_startOffset + 320, (long) fetchOffsets.get(0));
+  }
+
+  // A stop received within a batch does not wait for the prefetch in flight.
+  @Test(timeOut = 10000)
+  public void testPipelinedConsumeLoopDropsPrefetchOnStop() throws Exception {
+    final CountDownLatch prefetchLatch = new CountDownLatch(1);
+    final Map<Long, List<MessageAndOffset>> batches = new HashMap<>();
+    batches.put(_startOffset, makeMessages(_startOffset, _startOffset + 500));
+    List<Long> fetchOffsets = Collections.synchronizedList(new ArrayList<Long>());
+    final List<String> indexedRows = new ArrayList<>();
+    final FakeLLRealtimeSegmentDataManager segmentDataManager =
+        createPipelinedSegmentManager(batches, fetchOffsets, indexedRows, _startOffset + 1000);
+    // The fetch of the next batch blocks until the end of the test, and the stop arrives after 50 rows
+    SimpleConsumerWrapper consumerWrapper = (SimpleConsumerWrapper) segmentDataManager.getField("_consumerWrapper");
+    Mockito.doAnswer(
+        new Answer<Iterable<MessageAndOffset>>() {
+          @Override
+          public Iterable<MessageAndOffset> answer(InvocationOnMock invocation) {
+            Long startOffset = (Long) invocation.getArguments()[0];
+            if (!batches.containsKey(startOffset)) {
+              Uninterruptibles.awaitUninterruptibly(prefetchLatch);
+              return Collections.emptyList();
+            }
+            return batches.get(startOffset);
+          }
+        }).when(consumerWrapper).fetchMessages(anyLong(), anyLong(), anyInt());
+    RealtimeSegmentImpl realtimeSegment = (RealtimeSegmentImpl) segmentDataManager.getField("_realtimeSegment");
+    Mockito.doAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Exception {
+        indexedRows.add((String) ((GenericRow) invocation.getArguments()[0]).getValue("d"));
+        if (indexedRows.size() == 50) {
+          segmentDataManager._receivedStop.set(segmentDataManager, true);
+        }
+        return true;
+      }
+    }).when(realtimeSegment).index(any(GenericRow.class));
+
+    try {
+      segmentDataManager.invokeConsumeLoop();
+      Assert.assertEquals(expectedRows(_startOffset, _startOffset + 50), indexedRows);
+      Assert.assertEquals(_startOffset + 50, segmentDataManager.getField("_currentOffset"));
+    } finally {
+      prefetchLatch.countDown();
+    }
+  }
+
+  // Messages that cannot be decoded are skipped but still advance the offset. When a decoder fails, nothing of its
+  // batch is indexed and the offset stays at the start of the batch.
+  @Test
+  public void testPipelinedConsumeLoopOffsetsAfterDecodeFailure() throws Exception {
+    Map<Long, List<MessageAndOffset>> batches = new HashMap<>();
+    List<MessageAndOffset> firstBatch = makeMessages(_startOffset, _startOffset + 500);
+    firstBatch.set(120, new MessageAndOffset(new Message("bad".getBytes(UTF_8)), _startOffset + 120));
+    batches.put(_startOffset, firstBatch);
+    List<MessageAndOffset> secondBatch = makeMessages(_startOffset + 500, _startOffset + 1000);
+    secondBatch.set(300, new MessageAndOffset(new Message("fail".getBytes(UTF_8)), _startOffset + 800));
+    batches.put(_startOffset + 500, secondBatch);
+    List<Long> fetchOffsets = Collections.synchronizedList(new ArrayList<Long>());
+    List<String> indexedRows = new ArrayList<>();
+    FakeLLRealtimeSegmentDataManager segmentDataManager =
+        createPipelinedSegmentManager(batches, fetchOffsets, indexedRows, _startOffset + 1000);
+
+    try {
+      segmentDataManager.invokeConsumeLoop();
+      Assert.fail("Decoder failure should stop consumption");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+    Assert.assertEquals(expectedRows(_startOffset, _startOffset + 500, _startOffset + 120), indexedRows);
+    Assert.assertEquals(_startOffset + 500, segmentDataManager.getField("_currentOffset"));
+    Assert.assertEquals(500, segmentDataManager.getField("_numRowsConsumed"));
+  }
+
   // Replace the realtime segment with a mock that returns numDocs for raw doc count.
   private void replaceRealtimeSegment(FakeLLRealtimeSegmentDataManager segmentDataManager, int numDocs) throws Exception {
     RealtimeSegmentImpl mockSegmentImpl = mock(RealtimeSegmentImpl.class);
@@ -587,6 +837,30 @@ public class LLRealtimeSegmentDataManagerTest {
       _timeNow += _stopWaitTimeMs;
     }
 
+    public void invokeConsumeLoop() {
+      super.consumeLoop();
+    }
+
+    public Object getField(String fieldName) {
+      try {
+        Field field = LLRealtimeSegmentDataManager.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(this);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void setField(String fieldName, Object value) {
+      try {
+        Field field = LLRealtimeSegmentDataManager.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(this, value);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
     public void setCurrentOffset(long offset) {
       setLong(offset, "_currentOffset");
     }
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.util.TestDataRecordReader;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that RANGE predicates on columns with a range index, built either at segment creation or on load, match the
+ * same documents as a brute force evaluation.
+ */
+public class RangeIndexBasedFilterOperatorTest {
+  private static final String INDEX_DIR_PATH =
+      FileUtils.getTempDirectoryPath() + File.separator + "RangeIndexBasedFilterOperatorTest";
+  private static final int NUM_ROWS = 20000;
+  private static final int MAX_VALUE = 5000;
+  private static final int MAX_MV_VALUE = 997;
+  // Range index built by the segment creator
+  private static final String SV_COLUMN = "svInt";
+  private static final String MV_COLUMN = "mvInt";
+  // Range index built by the segment pre-processor on load
+  private static final String LOAD_COLUMN = "loadDouble";
+  private static final List<String> CREATION_COLUMNS = Arrays.asList(SV_COLUMN, MV_COLUMN);
+  private static final List<String> LOADING_COLUMNS = Arrays.asList(SV_COLUMN, MV_COLUMN, LOAD_COLUMN);
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private final int[] _svValues = new int[NUM_ROWS];
+  private final int[][] _mvValues = new int[NUM_ROWS][];
+  private final double[] _doubleValues = new double[NUM_ROWS];
+  private IndexSegment _v1Segment;
+  private IndexSegment _v3Segment;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    Random random = new Random(17);
+    GenericRow[] segmentData = new GenericRow[NUM_ROWS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      _svValues[i] = random.nextInt(MAX_VALUE);
+      int numValues = 1 + random.nextInt(3);
+      _mvValues[i] = new int[numValues];
+      Object[] mvValues = new Object[numValues];
+      for (int j = 0; j < numValues; j++) {
+        _mvValues[i][j] = random.nextInt(MAX_MV_VALUE);
+        mvValues[j] = _mvValues[i][j];
+      }
+      _doubleValues[i] = random.nextInt(MAX_VALUE) / 4.0;
+
+      HashMap<String, Object> map = new HashMap<>();
+      map.put(SV_COLUMN, _svValues[i]);
+      map.put(MV_COLUMN, mvValues);
+      map.put(LOAD_COLUMN, _doubleValues[i]);
+      GenericRow genericRow = new GenericRow();
+      genericRow.init(map);
+      segmentData[i] = genericRow;
+    }
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec(SV_COLUMN, FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec(MV_COLUMN, FieldSpec.DataType.INT, false));
+    schema.addField(new DimensionFieldSpec(LOAD_COLUMN, FieldSpec.DataType.DOUBLE, true));
+
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+    _v1Segment = buildAndLoad(schema, segmentData, "v1Segment", "v1", ReadMode.heap);
+    _v3Segment = buildAndLoad(schema, segmentData, "v3Segment", "v3", ReadMode.mmap);
+  }
+
+  private IndexSegment buildAndLoad(Schema schema, GenericRow[] segmentData, String segmentName, String version,
+      ReadMode readMode)
+      throws Exception {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setOutDir(INDEX_DIR_PATH);
+    config.setSegmentName(segmentName);
+    config.setRangeIndexCreationColumns(CREATION_COLUMNS);
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestDataRecordReader(schema, segmentData));
+    driver.build();
+
+    PropertiesConfiguration tableDataManagerConfig = new PropertiesConfiguration();
+    tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_LOADING_RANGE_INDEX, LOADING_COLUMNS);
+    tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_SEGMENT_FORMAT_VERSION, version);
+    return Loaders.IndexSegment.load(new File(INDEX_DIR_PATH, segmentName), readMode,
+        new IndexLoadingConfigMetadata(tableDataManagerConfig));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _v1Segment.destroy();
+    _v3Segment.destroy();
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+  }
+
+  @Test
+  public void testSingleValueRanges() {
+    int[][] ranges = {{0, MAX_VALUE}, {-10, 3}, {1000, 1000}, {1234, 1300}, {17, 4000}, {4990, 6000}, {6000, 7000}};
+    for (int[] range : ranges) {
+      final int lower = range[0];
+      final int upper = range[1];
+      testFilter(SV_COLUMN + " BETWEEN " + lower + " AND " + upper, new RowFilter() {
+        @Override
+        public boolean matches(int row) {
+          return _svValues[row] >= lower && _svValues[row] <= upper;
+        }
+      });
+      testFilter(SV_COLUMN + " > " + lower, new RowFilter() {
+        @Override
+        public boolean matches(int row) {
+          return _svValues[row] > lower;
+        }
+      });
+      testFilter(SV_COLUMN + " < " + upper, new RowFilter() {
+        @Override
+        public boolean matches(int row) {
+          return _svValues[row] < upper;
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testMultiValueRanges() {
+    int[][] ranges = {{0, MAX_MV_VALUE}, {3, 5}, {100, 101}, {250, 700}, {990, 2000}};
+    for (int[] range : ranges) {
+      final int lower = range[0];
+      final int upper = range[1];
+      testFilter(MV_COLUMN + " BETWEEN " + lower + " AND " + upper, new RowFilter() {
+        @Override
+        public boolean matches(int row) {
+          for (int value : _mvValues[row]) {
+            if (value >= lower && value <= upper) {
+              return true;
+            }
+          }
+          return false;
+        }
+      });
+    }
+  }
+
+  @Test
+  public void testRangeIndexCreatedOnLoad() {
+    double[][] ranges = {{0.5, 10.25}, {300, 300.75}, {-1, 2000}, {1249.5, 1250}};
+    for (double[] range : ranges) {
+      final double lower = range[0];
+      final double upper = range[1];
+      testFilter(LOAD_COLUMN + " >= " + lower + " AND " + LOAD_COLUMN + " < " + upper, new RowFilter() {
+        @Override
+        public boolean matches(int row) {
+          return _doubleValues[row] >= lower && _doubleValues[row] < upper;
+        }
+      });
+    }
+  }
+
+  private interface RowFilter {
+    boolean matches(int row);
+  }
+
+  private void testFilter(String filter, RowFilter rowFilter) {
+    testFilter(_v1Segment, filter, rowFilter);
+    testFilter(_v3Segment, filter, rowFilter);
+  }
+
+  private void testFilter(IndexSegment indexSegment, String filter, RowFilter rowFilter) {
+    BrokerRequest brokerRequest = _compiler.compileToBrokerRequest("SELECT * FROM table WHERE " + filter);
+    Operator filterOperator = new FilterPlanNode(indexSegment, brokerRequest).run();
+    if (!(filterOperator instanceof AndOperator)) {
+      Assert.assertTrue(filterOperator instanceof RangeIndexBasedFilterOperator, filter);
+    }
+    filterOperator.open();
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+
+    int expectedDocId = 0;
+    int docId;
+    while ((docId = iterator.next()) != Constants.EOF) {
+      while (!rowFilter.matches(expectedDocId)) {
+        expectedDocId++;
+      }
+      Assert.assertEquals(docId, expectedDocId, filter);
+      expectedDocId++;
+    }
+    for (; expectedDocId < NUM_ROWS; expectedDocId++) {
+      Assert.assertFalse(rowFilter.matches(expectedDocId), filter + " missed docId " + expectedDocId);
+    }
+    filterOperator.close();
+  }
+}
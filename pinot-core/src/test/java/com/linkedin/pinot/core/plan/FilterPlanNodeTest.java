@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.filter.BaseFilterOperator;
+import com.linkedin.pinot.core.operator.filter.BitmapBasedFilterOperator;
+import com.linkedin.pinot.core.operator.filter.ScanBasedFilterOperator;
+import com.linkedin.pinot.core.operator.filter.SortedInvertedIndexBasedFilterOperator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import com.linkedin.pinot.core.operator.filter.predicate.RangeOfflineDictionaryPredicateEvaluator;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.util.TestDataRecordReader;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that filters evaluate to the same documents whatever the order picked for the children of AND operators, and
+ * the estimates used to pick that order.
+ */
+public class FilterPlanNodeTest {
+  private static final String INDEX_DIR_PATH = FileUtils.getTempDirectoryPath() + File.separator + "FilterPlanNodeTest";
+  private static final String SEGMENT_NAME = "filterPlanNodeTestSegment";
+  private static final int NUM_ROWS = 10000;
+  private static final List<String> INVERTED_INDEX_COLUMNS = Arrays.asList("invertedInt", "invertedString");
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private IndexSegment _indexSegment;
+
+  private interface RowFilter {
+    boolean matches(int row);
+  }
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    GenericRow[] segmentData = new GenericRow[NUM_ROWS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      HashMap<String, Object> map = new HashMap<>();
+      map.put("sortedInt", i / 100);
+      map.put("invertedInt", i % 50);
+      map.put("invertedString", "v" + (i % 7));
+      map.put("scanInt", i % 13);
+      map.put("scanHighCardinality", i % 1000);
+      GenericRow genericRow = new GenericRow();
+      genericRow.init(map);
+      segmentData[i] = genericRow;
+    }
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec("sortedInt", FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec("invertedInt", FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec("invertedString", FieldSpec.DataType.STRING, true));
+    schema.addField(new DimensionFieldSpec("scanInt", FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec("scanHighCardinality", FieldSpec.DataType.INT, true));
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+    config.setOutDir(INDEX_DIR_PATH);
+    config.setSegmentName(SEGMENT_NAME);
+    config.setInvertedIndexCreationColumns(INVERTED_INDEX_COLUMNS);
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestDataRecordReader(schema, segmentData));
+    driver.build();
+
+    PropertiesConfiguration tableDataManagerConfig = new PropertiesConfiguration();
+    tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_LOADING_INVERTED_INDEX,
+        INVERTED_INDEX_COLUMNS);
+    _indexSegment = Loaders.IndexSegment.load(new File(INDEX_DIR_PATH, SEGMENT_NAME), ReadMode.heap,
+        new IndexLoadingConfigMetadata(tableDataManagerConfig));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+  }
+
+  @Test
+  public void testAndFilters() {
+    testFilter("sortedInt = 3 AND invertedInt = 7", new RowFilter() {
+      @Override
+      public boolean matches(int row) {
+        return row / 100 == 3 && row % 50 == 7;
+      }
+    });
+    testFilter("invertedString = 'v2' AND scanInt = 4 AND scanHighCardinality < 500", new RowFilter() {
+      @Override
+      public boolean matches(int row) {
+        return row % 7 == 2 && row % 13 == 4 && row % 1000 < 500;
+      }
+    });
+    testFilter("scanInt <> 4 AND scanHighCardinality IN (1, 14, 27, 300) AND invertedString NOT IN ('v1', 'v3')",
+        new RowFilter() {
+          @Override
+          public boolean matches(int row) {
+            int scanHighCardinality = row % 1000;
+            return row % 13 != 4 && (scanHighCardinality == 1 || scanHighCardinality == 14
+                || scanHighCardinality == 27 || scanHighCardinality == 300) && row % 7 != 1 && row % 7 != 3;
+          }
+        });
+    testFilter("scanHighCardinality BETWEEN 10 AND 20 AND scanInt = 3", new RowFilter() {
+      @Override
+      public boolean matches(int row) {
+        return row % 1000 >= 10 && row % 1000 <= 20 && row % 13 == 3;
+      }
+    });
+    testFilter("(invertedInt = 1 OR scanInt = 2) AND scanHighCardinality < 100 AND sortedInt > 10", new RowFilter() {
+      @Override
+      public boolean matches(int row) {
+        return (row % 50 == 1 || row % 13 == 2) && row % 1000 < 100 && row / 100 > 10;
+      }
+    });
+    testFilter("scanInt = 5 AND (invertedString = 'v0' AND scanHighCardinality > 900) AND invertedInt = 12",
+        new RowFilter() {
+          @Override
+          public boolean matches(int row) {
+            return row % 13 == 5 && row % 7 == 0 && row % 1000 > 900 && row % 50 == 12;
+          }
+        });
+    testFilter("scanInt = 5 AND invertedInt = 1000", new RowFilter() {
+      @Override
+      public boolean matches(int row) {
+        return false;
+      }
+    });
+  }
+
+  @Test
+  public void testEstimates() {
+    Assert.assertEquals(estimate("sortedInt = 3", SortedInvertedIndexBasedFilterOperator.class), 100.0);
+    Assert.assertEquals(estimate("sortedInt IN (3, 4, 1000)", SortedInvertedIndexBasedFilterOperator.class), 200.0);
+    Assert.assertEquals(estimate("invertedInt = 7", BitmapBasedFilterOperator.class), 200.0);
+    Assert.assertEquals(estimate("invertedInt <> 7", BitmapBasedFilterOperator.class), 9800.0);
+    Assert.assertEquals(estimate("invertedString = 'v9'", BitmapBasedFilterOperator.class), 0.0);
+    // More dictionary ids than bitmaps to count, the sampled cardinalities are extrapolated
+    Assert.assertEquals(estimate("invertedInt < 40", BitmapBasedFilterOperator.class), 8000.0, 1e-9);
+    Assert.assertEquals(estimate("invertedInt NOT IN (1, 2)", BitmapBasedFilterOperator.class), 9600.0, 1e-9);
+    Assert.assertEquals(estimate("scanInt = 5", ScanBasedFilterOperator.class), NUM_ROWS / 13.0, 1e-9);
+    Assert.assertEquals(estimate("scanInt NOT IN (1, 2)", ScanBasedFilterOperator.class), NUM_ROWS * 11 / 13.0, 1e-9);
+    Assert.assertEquals(estimate("scanHighCardinality < 500", ScanBasedFilterOperator.class), NUM_ROWS / 2.0, 1e-9);
+
+    Assert.assertEquals(FilterCostEstimator.estimateAnd(Arrays.asList(100.0, 5000.0), NUM_ROWS), 50.0, 1e-9);
+    Assert.assertEquals(FilterCostEstimator.estimateOr(Arrays.asList(100.0, 5000.0), NUM_ROWS), 5100.0, 1e-9);
+    Assert.assertEquals(FilterCostEstimator.estimateOr(Arrays.asList(8000.0, 5000.0), NUM_ROWS), (double) NUM_ROWS);
+  }
+
+  @Test
+  public void testRangeEstimateDoesNotBuildDictionaryIds()
+      throws Exception {
+    BrokerRequest brokerRequest =
+        _compiler.compileToBrokerRequest("SELECT * FROM table WHERE scanHighCardinality BETWEEN 100 AND 399");
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    Predicate predicate = Predicate.newPredicate(filterQueryTree);
+    DataSource dataSource = _indexSegment.getDataSource(filterQueryTree.getColumn());
+    BaseFilterOperator operator = new ScanBasedFilterOperator(dataSource, 0, NUM_ROWS - 1);
+    operator.setPredicate(predicate);
+    PredicateEvaluator evaluator =
+        PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, dataSource.getDictionary());
+    Assert.assertTrue(evaluator instanceof RangeOfflineDictionaryPredicateEvaluator);
+
+    Assert.assertEquals(FilterCostEstimator.estimateLeaf(operator, dataSource, evaluator, NUM_ROWS), 3000.0, 1e-9);
+    Field matchingIds = RangeOfflineDictionaryPredicateEvaluator.class.getDeclaredField("matchingIds");
+    matchingIds.setAccessible(true);
+    Assert.assertNull(matchingIds.get(evaluator));
+  }
+
+  private void testFilter(String filter, RowFilter rowFilter) {
+    BrokerRequest brokerRequest = _compiler.compileToBrokerRequest("SELECT * FROM table WHERE " + filter);
+    Operator filterOperator = new FilterPlanNode(_indexSegment, brokerRequest).run();
+    filterOperator.open();
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+
+    int expectedDocId = 0;
+    int docId;
+    while ((docId = iterator.next()) != Constants.EOF) {
+      while (!rowFilter.matches(expectedDocId)) {
+        expectedDocId++;
+      }
+      Assert.assertEquals(docId, expectedDocId, filter);
+      expectedDocId++;
+    }
+    for (; expectedDocId < NUM_ROWS; expectedDocId++) {
+      Assert.assertFalse(rowFilter.matches(expectedDocId), filter + " missed docId " + expectedDocId);
+    }
+    filterOperator.close();
+  }
+
+  private double estimate(String filter, Class<? extends BaseFilterOperator> operatorClass) {
+    BrokerRequest brokerRequest = _compiler.compileToBrokerRequest("SELECT * FROM table WHERE " + filter);
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    Predicate predicate = Predicate.newPredicate(filterQueryTree);
+    DataSource dataSource = _indexSegment.getDataSource(filterQueryTree.getColumn());
+    int endDocId = NUM_ROWS - 1;
+
+    BaseFilterOperator operator;
+    if (operatorClass == SortedInvertedIndexBasedFilterOperator.class) {
+      operator = new SortedInvertedIndexBasedFilterOperator(dataSource, 0, endDocId);
+    } else if (operatorClass == BitmapBasedFilterOperator.class) {
+      operator = new BitmapBasedFilterOperator(dataSource, 0, endDocId);
+    } else {
+      operator = new ScanBasedFilterOperator(dataSource, 0, endDocId);
+    }
+    operator.setPredicate(predicate);
+    return FilterCostEstimator.estimateLeaf(operator, dataSource,
+        PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, dataSource.getDictionary()), NUM_ROWS);
+  }
+}
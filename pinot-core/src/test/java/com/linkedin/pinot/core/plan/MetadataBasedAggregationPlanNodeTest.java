@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.aggregation.MetadataBasedAggregationOperator;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction.MinMaxRangePair;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.util.TestDataRecordReader;
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that aggregations answered from the segment metadata and dictionaries match the ones computed by scanning,
+ * and that they are only used when every document matches the filter.
+ */
+public class MetadataBasedAggregationPlanNodeTest {
+  private static final String INDEX_DIR_PATH =
+      FileUtils.getTempDirectoryPath() + File.separator + "MetadataBasedAggregationPlanNodeTest";
+  private static final String SEGMENT_NAME = "metadataBasedAggregationTestSegment";
+  private static final int NUM_ROWS = 10000;
+  private static final String AGGREGATIONS =
+      "SELECT count(*), min(metric), max(metric), minmaxrange(metric), distinctcount(name), distinctcount(metric)"
+          + " FROM table";
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    GenericRow[] segmentData = new GenericRow[NUM_ROWS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      HashMap<String, Object> map = new HashMap<>();
+      map.put("daysSinceEpoch", 100 + i / 1000);
+      map.put("name", "n" + (i % 37));
+      map.put("metric", (i * 7919) % 1013 - 500);
+      GenericRow genericRow = new GenericRow();
+      genericRow.init(map);
+      segmentData[i] = genericRow;
+    }
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec("daysSinceEpoch", FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec("name", FieldSpec.DataType.STRING, true));
+    schema.addField(new MetricFieldSpec("metric", FieldSpec.DataType.INT));
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+    config.setOutDir(INDEX_DIR_PATH);
+    config.setSegmentName(SEGMENT_NAME);
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestDataRecordReader(schema, segmentData));
+    driver.build();
+    _indexSegment = Loaders.IndexSegment.load(new File(INDEX_DIR_PATH, SEGMENT_NAME), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+  }
+
+  @Test
+  public void testMetadataBasedAggregation() {
+    testSameResults(AGGREGATIONS);
+    testSameResults(AGGREGATIONS + " WHERE daysSinceEpoch BETWEEN 100 AND 109");
+    testSameResults(AGGREGATIONS + " WHERE daysSinceEpoch >= 90");
+    testSameResults(AGGREGATIONS + " WHERE daysSinceEpoch < 200 AND name <> 'foo'");
+    testSameResults(AGGREGATIONS + " WHERE daysSinceEpoch > 105 OR daysSinceEpoch <= 120");
+  }
+
+  @Test
+  public void testNotFitForMetadataBasedAggregation() {
+    assertNotFit(AGGREGATIONS + " WHERE daysSinceEpoch BETWEEN 101 AND 109");
+    assertNotFit(AGGREGATIONS + " WHERE daysSinceEpoch > 100");
+    assertNotFit(AGGREGATIONS + " WHERE name = 'n3'");
+    assertNotFit(AGGREGATIONS + " WHERE daysSinceEpoch < 200 AND name <> 'n3'");
+    assertNotFit("SELECT sum(metric) FROM table");
+    assertNotFit("SELECT count(*) FROM table GROUP BY name");
+  }
+
+  private void testSameResults(String query) {
+    BrokerRequest brokerRequest = _compiler.compileToBrokerRequest(query);
+    PlanNode planNode = new InstancePlanMakerImplV2().makeInnerSegmentPlan(_indexSegment, brokerRequest, true);
+    Assert.assertTrue(planNode instanceof MetadataBasedAggregationPlanNode, query);
+
+    MetadataBasedAggregationOperator metadataOperator = (MetadataBasedAggregationOperator) planNode.run();
+    IntermediateResultsBlock metadataBlock = (IntermediateResultsBlock) metadataOperator.nextBlock();
+    IntermediateResultsBlock scanBlock =
+        (IntermediateResultsBlock) new AggregationPlanNode(_indexSegment, brokerRequest).run().nextBlock();
+
+    List<Serializable> expected = scanBlock.getAggregationResult();
+    List<Serializable> actual = metadataBlock.getAggregationResult();
+    Assert.assertEquals(((Number) actual.get(0)).longValue(), NUM_ROWS);
+    Assert.assertEquals(((Number) actual.get(0)).longValue(), ((Number) expected.get(0)).longValue());
+    Assert.assertEquals(actual.get(1), expected.get(1));
+    Assert.assertEquals(actual.get(2), expected.get(2));
+    MinMaxRangePair actualMinMaxRange = (MinMaxRangePair) actual.get(3);
+    MinMaxRangePair expectedMinMaxRange = (MinMaxRangePair) expected.get(3);
+    Assert.assertEquals(actualMinMaxRange.getFirst(), expectedMinMaxRange.getFirst());
+    Assert.assertEquals(actualMinMaxRange.getSecond(), expectedMinMaxRange.getSecond());
+    Assert.assertEquals(actual.get(4), expected.get(4));
+    Assert.assertEquals(actual.get(5), expected.get(5));
+    Assert.assertEquals(metadataBlock.getNumDocsScanned(), scanBlock.getNumDocsScanned());
+    Assert.assertEquals(metadataBlock.getTotalRawDocs(), scanBlock.getTotalRawDocs());
+  }
+
+  private void assertNotFit(String query) {
+    BrokerRequest brokerRequest = _compiler.compileToBrokerRequest(query);
+    Assert.assertFalse(MetadataBasedAggregationPlanNode.isFitForMetadataBasedPlan(_indexSegment, brokerRequest),
+        query);
+    Assert.assertFalse(new InstancePlanMakerImplV2().makeInnerSegmentPlan(_indexSegment, brokerRequest, true)
+        instanceof MetadataBasedAggregationPlanNode, query);
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.predicate;
+
+import com.linkedin.pinot.common.utils.Pairs.IntPair;
+import com.linkedin.pinot.core.common.predicate.RegexPredicate;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.RegexPredicateEvaluator;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentDictionaryCreator;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import com.linkedin.pinot.pql.parsers.pql2.ast.LikePredicateAstNode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class RegexPredicateEvaluatorTest {
+  private static final String[] VALUES =
+      {"http://a.com/", "http://a.com/index", "http://b.com/", "http://b.com/about", "http://b.com/index",
+          "https://a.com/", "mailto:foo", "mailto:foo.bar", "news"};
+  private static final char PADDING_CHAR = '%';
+
+  private StringDictionary _dictionary;
+
+  @BeforeClass
+  public void setUp() {
+    _dictionary = createDictionary(VALUES);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws Exception {
+    _dictionary.close();
+  }
+
+  /**
+   * Creates a dictionary the same way as the segment creator does, i.e. sorted on the padded values.
+   */
+  private static StringDictionary createDictionary(String[] values) {
+    int maxLength = 0;
+    for (String value : values) {
+      maxLength = Math.max(maxLength, value.length());
+    }
+    String[] paddedValues = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      paddedValues[i] = SegmentDictionaryCreator.getPaddedString(values[i], maxLength, PADDING_CHAR);
+    }
+    Arrays.sort(paddedValues);
+    PinotDataBuffer dictionaryBuffer = PinotDataBuffer.allocateDirect(values.length * maxLength);
+    for (int i = 0; i < values.length; i++) {
+      dictionaryBuffer.readFrom(paddedValues[i].getBytes(Charset.forName("UTF-8")), i * maxLength);
+    }
+
+    ColumnMetadata columnMetadata = mock(ColumnMetadata.class);
+    when(columnMetadata.getCardinality()).thenReturn(values.length);
+    when(columnMetadata.getStringColumnMaxLength()).thenReturn(maxLength);
+    when(columnMetadata.getPaddingCharacter()).thenReturn(PADDING_CHAR);
+    return new StringDictionary(dictionaryBuffer, columnMetadata);
+  }
+
+  @Test
+  public void testLiteralPrefix() {
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^http://b\\.com/.*$"), "http://b.com/");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^abc$"), "abc");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^ab?c"), "a");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^ab{2}"), "a");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^ab\\d"), "ab");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^a[bc]"), "a");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("abc"), "");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^abc|def"), "");
+    Assert.assertEquals(RegexPredicateEvaluator.getLiteralPrefix("^(?i)abc"), "");
+  }
+
+  @Test
+  public void testPrefixRange() {
+    IntPair range = _dictionary.getPrefixRange("http://b.com/");
+    Assert.assertEquals(range.getLeft(), 2);
+    Assert.assertEquals(range.getRight(), 4);
+
+    range = _dictionary.getPrefixRange("mailto:");
+    Assert.assertEquals(range.getLeft(), 6);
+    Assert.assertEquals(range.getRight(), 7);
+
+    range = _dictionary.getPrefixRange("");
+    Assert.assertEquals(range.getLeft(), 0);
+    Assert.assertEquals(range.getRight(), VALUES.length - 1);
+
+    range = _dictionary.getPrefixRange("ftp://");
+    Assert.assertTrue(range.getLeft() > range.getRight());
+    range = _dictionary.getPrefixRange("zzz");
+    Assert.assertTrue(range.getLeft() > range.getRight());
+  }
+
+  @Test
+  public void testPrefixRangeWithCharactersSortingBeforePadding()
+      throws Exception {
+    // ' ' and '!' sort before the '%' padding, so "ab c" and "ab!x" come before "ab" in the dictionary
+    StringDictionary dictionary = createDictionary(new String[]{"ab", "ab c", "ab!x", "abc", "b"});
+    try {
+      Assert.assertEquals(dictionary.get(0), "ab c");
+      Assert.assertEquals(dictionary.get(1), "ab!x");
+      Assert.assertEquals(dictionary.get(2), "ab");
+
+      IntPair range = dictionary.getPrefixRange("ab!");
+      Assert.assertEquals(range.getLeft(), 1);
+      Assert.assertEquals(range.getRight(), 1);
+
+      range = dictionary.getPrefixRange("ab ");
+      Assert.assertEquals(range.getLeft(), 0);
+      Assert.assertEquals(range.getRight(), 0);
+
+      range = dictionary.getPrefixRange("ab");
+      Assert.assertEquals(range.getLeft(), 0);
+      Assert.assertEquals(range.getRight(), 3);
+
+      PredicateEvaluator evaluator = new RegexPredicateEvaluator(
+          new RegexPredicate("column", Collections.singletonList(LikePredicateAstNode.likeToRegex("ab!%"))),
+          dictionary);
+      Assert.assertEquals(evaluator.getMatchingDictionaryIds(), new int[]{1});
+      evaluator = new RegexPredicateEvaluator(
+          new RegexPredicate("column", Collections.singletonList(LikePredicateAstNode.likeToRegex("ab%"))),
+          dictionary);
+      Assert.assertEquals(evaluator.getMatchingDictionaryIds(), new int[]{0, 1, 2, 3});
+    } finally {
+      dictionary.close();
+    }
+  }
+
+  @Test
+  public void testMatchingDictionaryIds() {
+    String[] regexes =
+        {"^http://b\\.com/.*$", "index", "^https?://a\\.com/", "^mailto:foo$", "^ftp://", "\\.com/$", "o\\.b",
+            LikePredicateAstNode.likeToRegex("http://_.com/%"), LikePredicateAstNode.likeToRegex("%index"),
+            LikePredicateAstNode.likeToRegex("news")};
+    for (String regex : regexes) {
+      PredicateEvaluator evaluator = new RegexPredicateEvaluator(
+          new RegexPredicate("column", Collections.singletonList(regex)), _dictionary);
+
+      List<Integer> expected = new ArrayList<>();
+      Pattern pattern = Pattern.compile(regex);
+      for (int i = 0; i < VALUES.length; i++) {
+        boolean matches = pattern.matcher(VALUES[i]).find();
+        if (matches) {
+          expected.add(i);
+        }
+        Assert.assertEquals(evaluator.apply(i), matches, regex);
+      }
+
+      int[] matchingIds = evaluator.getMatchingDictionaryIds();
+      Assert.assertEquals(matchingIds.length, expected.size(), regex);
+      for (int i = 0; i < matchingIds.length; i++) {
+        Assert.assertEquals(matchingIds[i], (int) expected.get(i), regex);
+      }
+      Assert.assertEquals(evaluator.alwaysFalse(), expected.isEmpty(), regex);
+    }
+  }
+}
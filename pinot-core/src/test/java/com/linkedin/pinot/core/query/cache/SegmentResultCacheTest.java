@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.BaseOperator;
+import com.linkedin.pinot.core.operator.SegmentResultCacheOperator;
+import com.linkedin.pinot.core.operator.aggregation.groupby.AggregationGroupByResult;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyTuple;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SegmentResultCacheTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final String CRC = "12345";
+
+  @Test
+  public void testFingerprint() {
+    String query = "select count(*) from testTable where dim1 = 'a' and dim2 in ('b', 'c') group by dim3 top 5";
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+    BrokerRequest tracedBrokerRequest = COMPILER.compileToBrokerRequest(query);
+    tracedBrokerRequest.setEnableTrace(true);
+    tracedBrokerRequest.setResponseFormat("json");
+    Assert.assertTrue(Arrays.equals(RequestUtils.getFingerprint(brokerRequest),
+        RequestUtils.getFingerprint(tracedBrokerRequest)));
+
+    BrokerRequest otherBrokerRequest = COMPILER.compileToBrokerRequest(
+        "select count(*) from testTable where dim1 = 'a' and dim2 in ('b', 'd') group by dim3 top 5");
+    Assert.assertFalse(Arrays.equals(RequestUtils.getFingerprint(brokerRequest),
+        RequestUtils.getFingerprint(otherBrokerRequest)));
+  }
+
+  @Test
+  public void testAggregation() {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest("select count(*), sum(met) from testTable");
+    List<Serializable> aggregationResults = new ArrayList<>();
+    aggregationResults.add(100L);
+    aggregationResults.add(10.5);
+    IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+            aggregationResults);
+    resultBlock.setNumDocsScanned(100L);
+    resultBlock.setTotalRawDocs(1000L);
+
+    IntermediateResultsBlock cachedBlock = runTwice(brokerRequest, resultBlock);
+    Assert.assertEquals(cachedBlock.getAggregationResult(), aggregationResults);
+    Assert.assertEquals(cachedBlock.getNumDocsScanned(), 100L);
+    Assert.assertEquals(cachedBlock.getTotalRawDocs(), 1000L);
+  }
+
+  @Test
+  public void testAggregationGroupBy() {
+    BrokerRequest brokerRequest =
+        COMPILER.compileToBrokerRequest("select count(*), max(met) from testTable group by dim top 10");
+    Map<String, Serializable> countMap = new HashMap<>();
+    countMap.put("a", 3L);
+    countMap.put("b", 5L);
+    Map<String, Serializable> maxMap = new HashMap<>();
+    maxMap.put("a", 1.5);
+    maxMap.put("b", 2.5);
+    List<Map<String, Serializable>> groupByResults = new ArrayList<>();
+    groupByResults.add(countMap);
+    groupByResults.add(maxMap);
+    IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+            groupByResults, true);
+    resultBlock.setNumDocsScanned(8L);
+    resultBlock.setTotalRawDocs(20L);
+
+    IntermediateResultsBlock cachedBlock = runTwice(brokerRequest, resultBlock);
+    Assert.assertEquals(cachedBlock.getAggregationGroupByOperatorResult(), groupByResults);
+    Assert.assertEquals(cachedBlock.getNumDocsScanned(), 8L);
+    Assert.assertEquals(cachedBlock.getTotalRawDocs(), 20L);
+  }
+
+  @Test
+  public void testInvalidation() {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, null);
+    byte[] fingerprint = RequestUtils.getFingerprint(COMPILER.compileToBrokerRequest("select count(*) from t"));
+    cache.put(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, fingerprint), new byte[10]);
+    cache.put(new SegmentResultCache.Key(TABLE_NAME, "otherSegment", CRC, fingerprint), new byte[10]);
+    cache.put(new SegmentResultCache.Key("otherTable_OFFLINE", SEGMENT_NAME, CRC, fingerprint), new byte[10]);
+
+    // Entries computed on another copy of the segment are not served
+    Assert.assertNull(cache.get(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, "54321", fingerprint)));
+    Assert.assertNotNull(cache.get(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, fingerprint)));
+
+    cache.invalidateSegment(TABLE_NAME, SEGMENT_NAME);
+    Assert.assertEquals(cache.size(), 2L);
+    Assert.assertNull(cache.get(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, fingerprint)));
+
+    // Entries replaced or added back after an invalidation are still tracked for the segment
+    SegmentResultCache.Key key = new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, fingerprint);
+    cache.put(key, new byte[10]);
+    cache.put(key, new byte[20]);
+    Assert.assertEquals(cache.size(), 3L);
+    cache.invalidateSegment(TABLE_NAME, SEGMENT_NAME);
+    Assert.assertEquals(cache.size(), 2L);
+    Assert.assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testInvalidationAfterEviction() {
+    SegmentResultCache cache = new SegmentResultCache(100 * 1024, null);
+    byte[] fingerprint = RequestUtils.getFingerprint(COMPILER.compileToBrokerRequest("select count(*) from t"));
+    for (int i = 0; i < 100; i++) {
+      cache.put(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, Integer.toString(i), fingerprint),
+          new byte[1024]);
+    }
+    Assert.assertTrue(cache.size() < 100L);
+    Assert.assertTrue(cache.size() > 0L);
+    cache.invalidateSegment(TABLE_NAME, SEGMENT_NAME);
+    Assert.assertEquals(cache.size(), 0L);
+  }
+
+  @Test
+  public void testMaxSize() {
+    SegmentResultCache cache = new SegmentResultCache(100 * 1024, null);
+    byte[] fingerprint = RequestUtils.getFingerprint(COMPILER.compileToBrokerRequest("select count(*) from t"));
+    for (int i = 0; i < 100; i++) {
+      cache.put(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME + i, CRC, fingerprint), new byte[4 * 1024]);
+    }
+    Assert.assertTrue(cache.size() < 25L);
+    Assert.assertNotNull(cache.get(new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME + 99, CRC, fingerprint)));
+  }
+
+  @Test
+  public void testMaxEntrySize() {
+    long maxSizeInBytes = 1024 * 1024;
+    SegmentResultCache cache = new SegmentResultCache(maxSizeInBytes, null);
+    byte[] fingerprint = RequestUtils.getFingerprint(COMPILER.compileToBrokerRequest("select count(*) from t"));
+    SegmentResultCache.Key key = new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, fingerprint);
+    cache.put(key, new byte[(int) (maxSizeInBytes / SegmentResultCache.MAX_ENTRY_SIZE_FRACTION)]);
+    Assert.assertEquals(cache.size(), 0L);
+    cache.put(key, new byte[1024]);
+    Assert.assertEquals(cache.size(), 1L);
+  }
+
+  @Test
+  public void testMaxNumGroups() {
+    BrokerRequest brokerRequest =
+        COMPILER.compileToBrokerRequest("select count(*) from testTable group by dim top 10");
+    List<GroupKeyGenerator.GroupKey> groupKeys = new ArrayList<>();
+    for (int i = 0; i <= SegmentResultCacheOperator.MAX_NUM_GROUPS_TO_CACHE; i++) {
+      final String stringKey = Integer.toString(i);
+      groupKeys.add(new GroupKeyGenerator.GroupKey() {
+        @Override
+        public String getStringKey() {
+          return stringKey;
+        }
+
+        @Override
+        public GroupKeyTuple getKeyTuple() {
+          throw new UnsupportedOperationException();
+        }
+      });
+    }
+    AggregationGroupByResult aggregationGroupByResult = Mockito.mock(AggregationGroupByResult.class);
+    Mockito.when(aggregationGroupByResult.getGroupKeyIterator()).thenReturn(groupKeys.iterator());
+    Mockito.when(aggregationGroupByResult.getResultForKey(Matchers.any(GroupKeyGenerator.GroupKey.class),
+        Matchers.anyInt())).thenReturn(1L);
+    IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(null, aggregationGroupByResult);
+
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, null);
+    SegmentResultCache.Key key =
+        new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, RequestUtils.getFingerprint(brokerRequest));
+    Operator missOperator =
+        new SegmentResultCacheOperator(brokerRequest, cache, key, null, new ResultBlockOperator(resultBlock));
+    Assert.assertSame(missOperator.nextBlock(), resultBlock);
+    Assert.assertEquals(cache.size(), 0L);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testUnsupportedCachedColumnType()
+      throws Exception {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest("select count(*) from testTable");
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(
+        new DataTableBuilder.DataSchema(new String[]{"count_star"}, new FieldSpec.DataType[]{FieldSpec.DataType.INT}));
+    dataTableBuilder.open();
+    dataTableBuilder.startRow();
+    dataTableBuilder.setColumn(0, 1);
+    dataTableBuilder.finishRow();
+    dataTableBuilder.seal();
+    DataTable dataTable = dataTableBuilder.build();
+
+    SegmentResultCache.Key key =
+        new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, RequestUtils.getFingerprint(brokerRequest));
+    new SegmentResultCacheOperator(brokerRequest, new SegmentResultCache(1024 * 1024, null), key, dataTable.toBytes(),
+        null).nextBlock();
+  }
+
+  /**
+   * Runs the query once with a cache miss, then once with a cache hit, and returns the block served from the cache.
+   */
+  private static IntermediateResultsBlock runTwice(BrokerRequest brokerRequest,
+      IntermediateResultsBlock resultBlock) {
+    SegmentResultCache cache = new SegmentResultCache(1024 * 1024, null);
+    SegmentResultCache.Key key =
+        new SegmentResultCache.Key(TABLE_NAME, SEGMENT_NAME, CRC, RequestUtils.getFingerprint(brokerRequest));
+    Assert.assertNull(cache.get(key));
+
+    Operator missOperator = new SegmentResultCacheOperator(brokerRequest, cache, key, null, new ResultBlockOperator(resultBlock));
+    Assert.assertSame(missOperator.nextBlock(), resultBlock);
+    Assert.assertEquals(cache.size(), 1L);
+
+    byte[] cachedResult = cache.get(key);
+    Assert.assertNotNull(cachedResult);
+    Operator hitOperator = new SegmentResultCacheOperator(brokerRequest, cache, key, cachedResult, null);
+    IntermediateResultsBlock cachedBlock = (IntermediateResultsBlock) hitOperator.nextBlock();
+    Assert.assertNotSame(cachedBlock, resultBlock);
+    return cachedBlock;
+  }
+
+  /**
+   * Operator returning the given result block.
+   */
+  private static class ResultBlockOperator extends BaseOperator {
+    private final IntermediateResultsBlock _resultBlock;
+
+    private ResultBlockOperator(IntermediateResultsBlock resultBlock) {
+      _resultBlock = resultBlock;
+    }
+
+    @Override
+    public Block getNextBlock() {
+      return _resultBlock;
+    }
+
+    @Override
+    public Block getNextBlock(BlockId BlockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getOperatorName() {
+      return "ResultBlockOperator";
+    }
+
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+  }
+}
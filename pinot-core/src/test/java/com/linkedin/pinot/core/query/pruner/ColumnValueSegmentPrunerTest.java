@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.util.TestDataRecordReader;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that {@link ColumnValueSegmentPruner} only prunes segments that cannot match the filter, using the min/max
+ * values of the columns and the bloom filters built either at segment creation or on load.
+ */
+public class ColumnValueSegmentPrunerTest {
+  private static final String INDEX_DIR_PATH =
+      FileUtils.getTempDirectoryPath() + File.separator + "ColumnValueSegmentPrunerTest";
+  private static final int NUM_ROWS = 1000;
+  // Even values in [100, 298], bloom filter built by the segment creator
+  private static final String INT_COLUMN = "intColumn";
+  // Values in ["b", "y"], min/max values read from the dictionary
+  private static final String STRING_COLUMN = "stringColumn";
+  // Multiples of 1000 in [0, 99000], bloom filter built by the segment pre-processor on load
+  private static final String LONG_COLUMN = "longColumn";
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private final ColumnValueSegmentPruner _pruner = new ColumnValueSegmentPruner();
+  private IndexSegment _v1Segment;
+  private IndexSegment _v3Segment;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    GenericRow[] segmentData = new GenericRow[NUM_ROWS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      HashMap<String, Object> map = new HashMap<>();
+      map.put(INT_COLUMN, 100 + 2 * (i % 100));
+      map.put(STRING_COLUMN, String.valueOf((char) ('b' + i % 24)));
+      map.put(LONG_COLUMN, 1000L * (i % 100));
+      GenericRow genericRow = new GenericRow();
+      genericRow.init(map);
+      segmentData[i] = genericRow;
+    }
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec(INT_COLUMN, FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec(STRING_COLUMN, FieldSpec.DataType.STRING, true));
+    schema.addField(new DimensionFieldSpec(LONG_COLUMN, FieldSpec.DataType.LONG, true));
+
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+    _v1Segment = buildAndLoad(schema, segmentData, "v1Segment", "v1", ReadMode.heap);
+    _v3Segment = buildAndLoad(schema, segmentData, "v3Segment", "v3", ReadMode.mmap);
+  }
+
+  private IndexSegment buildAndLoad(Schema schema, GenericRow[] segmentData, String segmentName, String version,
+      ReadMode readMode)
+      throws Exception {
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setOutDir(INDEX_DIR_PATH);
+    config.setSegmentName(segmentName);
+    config.setBloomFilterCreationColumns(Collections.singletonList(INT_COLUMN));
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new TestDataRecordReader(schema, segmentData));
+    driver.build();
+
+    PropertiesConfiguration tableDataManagerConfig = new PropertiesConfiguration();
+    tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_LOADING_BLOOM_FILTER,
+        Collections.singletonList(LONG_COLUMN));
+    tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_SEGMENT_FORMAT_VERSION, version);
+    return Loaders.IndexSegment.load(new File(INDEX_DIR_PATH, segmentName), readMode,
+        new IndexLoadingConfigMetadata(tableDataManagerConfig));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _v1Segment.destroy();
+    _v3Segment.destroy();
+    FileUtils.deleteQuietly(new File(INDEX_DIR_PATH));
+  }
+
+  @Test
+  public void testMetadata() {
+    for (IndexSegment segment : new IndexSegment[]{_v1Segment, _v3Segment}) {
+      SegmentMetadataImpl segmentMetadata = (SegmentMetadataImpl) segment.getSegmentMetadata();
+      Assert.assertEquals(segmentMetadata.getColumnMetadataFor(INT_COLUMN).getMinValue(), "100");
+      Assert.assertEquals(segmentMetadata.getColumnMetadataFor(INT_COLUMN).getMaxValue(), "298");
+      Assert.assertNull(segmentMetadata.getColumnMetadataFor(STRING_COLUMN).getMinValue());
+      Assert.assertNull(segmentMetadata.getColumnMetadataFor(STRING_COLUMN).getMaxValue());
+
+      IndexSegmentImpl indexSegment = (IndexSegmentImpl) segment;
+      Assert.assertNotNull(indexSegment.getBloomFilterFor(INT_COLUMN));
+      Assert.assertNotNull(indexSegment.getBloomFilterFor(LONG_COLUMN));
+      Assert.assertNull(indexSegment.getBloomFilterFor(STRING_COLUMN));
+    }
+  }
+
+  @Test
+  public void testMinMaxPruning() {
+    assertPruned("intColumn = 99", true);
+    assertPruned("intColumn = 100", false);
+    assertPruned("intColumn = 298", false);
+    assertPruned("intColumn = 300", true);
+    assertPruned("intColumn IN (10, 20, 500)", true);
+    assertPruned("intColumn IN (10, 200, 500)", false);
+
+    assertPruned("intColumn > 298", true);
+    assertPruned("intColumn >= 298", false);
+    assertPruned("intColumn < 100", true);
+    assertPruned("intColumn <= 100", false);
+    assertPruned("intColumn BETWEEN 300 AND 400", true);
+    assertPruned("intColumn BETWEEN 0 AND 100", false);
+
+    assertPruned("stringColumn = 'a'", true);
+    assertPruned("stringColumn = 'b'", false);
+    assertPruned("stringColumn = 'z'", true);
+    assertPruned("stringColumn IN ('a', 'z')", true);
+  }
+
+  @Test
+  public void testBloomFilterPruning() {
+    // Odd values are within [min, max] but are not in the segment
+    assertPruned("intColumn = 151", true);
+    assertPruned("intColumn = 150", false);
+    assertPruned("intColumn IN (151, 153)", true);
+    assertPruned("intColumn IN (151, 152)", false);
+
+    assertPruned("longColumn = 1500", true);
+    assertPruned("longColumn = 2000", false);
+  }
+
+  @Test
+  public void testFilterTree() {
+    assertPruned("intColumn = 99 AND stringColumn = 'b'", true);
+    assertPruned("intColumn = 100 AND stringColumn = 'z'", true);
+    assertPruned("intColumn = 100 AND stringColumn = 'b'", false);
+    assertPruned("intColumn = 99 OR stringColumn = 'z'", true);
+    assertPruned("intColumn = 99 OR stringColumn = 'b'", false);
+    assertPruned("(intColumn = 99 OR stringColumn = 'z') AND longColumn = 2000", true);
+
+    // Predicates that cannot be evaluated against min/max values never prune
+    assertPruned("intColumn <> 100", false);
+    assertPruned("intColumn = 'abc'", false);
+    assertPruned("unknownColumn = 1", false);
+  }
+
+  private void assertPruned(String filter, boolean expected) {
+    for (IndexSegment segment : new IndexSegment[]{_v1Segment, _v3Segment}) {
+      BrokerRequest brokerRequest = _compiler.compileToBrokerRequest("SELECT * FROM table WHERE " + filter);
+      Assert.assertEquals(_pruner.prune(segment, brokerRequest), expected, filter + " on " + segment.getSegmentName());
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.reduce;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.QueryProcessingException;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.operator.blocks.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class IncrementalBrokerReducerTest {
+  private static final Pql2Compiler COMPILER = new Pql2Compiler();
+
+  @Test
+  public void testAggregation()
+      throws Exception {
+    BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest("select count(*), sum(met) from testTable");
+    DataSchema dataSchema =
+        new DataSchema(new String[]{"count_star", "sum_met"}, new DataType[]{DataType.LONG, DataType.DOUBLE});
+
+    IncrementalBrokerReducer reducer = new BrokerReduceService().createIncrementalReducer(brokerRequest);
+    reducer.setNumServersQueried(3);
+    for (int i = 0; i < 2; i++) {
+      DataTableBuilder builder = new DataTableBuilder(dataSchema);
+      builder.open();
+      builder.startRow();
+      builder.setColumn(0, 100L * (i + 1));
+      builder.setColumn(1, 10.5 * (i + 1));
+      builder.finishRow();
+      addMetadata(builder, 100L * (i + 1), 5 + i);
+      builder.seal();
+      reducer.add(new ServerInstance("localhost", 8000 + i), serDe(builder.build()));
+    }
+    reducer.addMissingServer(new ServerInstance("localhost", 8002), QueryException.BROKER_TIMEOUT_ERROR_CODE,
+        "Server did not respond");
+
+    BrokerResponseNative brokerResponse = reducer.getResult();
+    Assert.assertEquals(brokerResponse.getAggregationResults().get(0).getValue(), "300");
+    Assert.assertEquals(brokerResponse.getAggregationResults().get(1).getValue(), "31.50000");
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 300L);
+    Assert.assertEquals(brokerResponse.getTotalDocs(), 300L);
+    Assert.assertEquals(brokerResponse.getTimeUsedMs(), 6L);
+    Assert.assertEquals(brokerResponse.getNumServersQueried(), 3);
+    Assert.assertEquals(brokerResponse.getNumServersResponded(), 2);
+
+    List<QueryProcessingException> processingExceptions = brokerResponse.getProcessingExceptions();
+    Assert.assertEquals(processingExceptions.size(), 1);
+    Assert.assertEquals(processingExceptions.get(0).getErrorCode(), QueryException.BROKER_TIMEOUT_ERROR_CODE);
+    Assert.assertTrue(processingExceptions.get(0).getMessage().startsWith("localhost_8002"));
+  }
+
+  @Test
+  public void testSelectionWithOrdering()
+      throws Exception {
+    BrokerRequest brokerRequest =
+        COMPILER.compileToBrokerRequest("select dim from testTable order by dim desc limit 3");
+    DataSchema dataSchema = new DataSchema(new String[]{"dim"}, new DataType[]{DataType.INT});
+
+    IncrementalBrokerReducer reducer = new BrokerReduceService().createIncrementalReducer(brokerRequest);
+    int[][] serverValues = new int[][]{{5, 1, 9}, {}, {7, 3, 8}};
+    for (int i = 0; i < serverValues.length; i++) {
+      DataTableBuilder builder = new DataTableBuilder(dataSchema);
+      builder.open();
+      for (int value : serverValues[i]) {
+        builder.startRow();
+        builder.setColumn(0, value);
+        builder.finishRow();
+      }
+      addMetadata(builder, serverValues[i].length, 1);
+      builder.seal();
+      reducer.add(new ServerInstance("localhost", 8000 + i), serDe(builder.build()));
+    }
+
+    BrokerResponseNative brokerResponse = reducer.getResult();
+    List<Serializable[]> rows = brokerResponse.getSelectionResults().getRows();
+    Assert.assertEquals(rows.size(), 3);
+    Assert.assertEquals(rows.get(0)[0], "9");
+    Assert.assertEquals(rows.get(1)[0], "8");
+    Assert.assertEquals(rows.get(2)[0], "7");
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 6L);
+    Assert.assertTrue(brokerResponse.getProcessingExceptions().isEmpty());
+  }
+
+  @Test
+  public void testGroupByWithTrimmedServerResults()
+      throws Exception {
+    BrokerRequest brokerRequest =
+        COMPILER.compileToBrokerRequest("select sum(met), count(*) from testTable group by dim top 2");
+
+    // Server 0 keeps max(2 * 2, 1) = 4 of its 20 groups, as there are more than 16 of them
+    AggregationGroupByOperatorService serverService =
+        new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy(), 2, 1);
+    Map<Object, Serializable[]> serverGroups = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      serverGroups.put("g" + i, new Serializable[]{(double) i, 10L * i});
+    }
+    List<Map<String, Serializable>> trimmedResults =
+        serverService.trimToSize(Collections.singletonList(serverGroups), 2);
+    Assert.assertEquals(trimmedResults.get(0).size(), 4);
+    Assert.assertEquals(serverService.getNumGroupsTrimmed(), 16L);
+    Assert.assertEquals(serverService.getTrimBounds()[0], 16.0);
+    Assert.assertEquals(serverService.getTrimBounds()[1], 160.0);
+
+    IntermediateResultsBlock block =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest), trimmedResults,
+            true);
+    block.setGroupByTrimStats(serverService.getNumGroupsTrimmed(), serverService.getTrimBounds());
+    block.setNumDocsScanned(200);
+    block.setTotalRawDocs(200);
+
+    // Server 1 has few groups, which are not trimmed
+    AggregationGroupByOperatorService otherServerService =
+        new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy(), 2, 1);
+    Map<Object, Serializable[]> otherServerGroups = new HashMap<>();
+    otherServerGroups.put("g0", new Serializable[]{100.0, 1L});
+    otherServerGroups.put("g19", new Serializable[]{1.0, 1L});
+    IntermediateResultsBlock otherBlock =
+        new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+            otherServerService.trimToSize(Collections.singletonList(otherServerGroups), 2), true);
+    Assert.assertNull(otherServerService.getTrimBounds());
+
+    IncrementalBrokerReducer reducer = new BrokerReduceService().createIncrementalReducer(brokerRequest);
+    reducer.add(new ServerInstance("localhost", 8000), serDe(block.getDataTable()));
+    reducer.add(new ServerInstance("localhost", 8001), serDe(otherBlock.getDataTable()));
+
+    BrokerResponseNative brokerResponse = reducer.getResult();
+    Assert.assertEquals(brokerResponse.getNumGroupsTrimmed(), 16L);
+    AggregationResult sumResult = brokerResponse.getAggregationResults().get(0);
+    Assert.assertEquals(sumResult.getGroupByResult().get(0).getGroup(), Collections.singletonList("g0"));
+    Assert.assertEquals(sumResult.getGroupByResult().get(0).getValue(), "100.00000");
+    Assert.assertEquals(sumResult.getGroupByResult().get(1).getGroup(), Collections.singletonList("g19"));
+    Assert.assertEquals(sumResult.getGroupByResult().get(1).getValue(), "20.00000");
+    // Group g0 was dropped by server 0, where its value is at most the one of the last group kept
+    Assert.assertEquals(sumResult.getGroupByErrorBound(), "16.00000");
+    Assert.assertEquals(brokerResponse.getAggregationResults().get(1).getGroupByErrorBound(), "160.00000");
+  }
+
+  @Test
+  public void testNoServerResponded()
+      throws Exception {
+    String[] queries = new String[]{
+        "select dim from testTable limit 3", "select dim from testTable order by dim desc limit 3",
+        "select count(*), sum(met) from testTable", "select sum(met) from testTable group by dim top 2"
+    };
+    for (String query : queries) {
+      BrokerRequest brokerRequest = COMPILER.compileToBrokerRequest(query);
+      BrokerReduceService brokerReduceService = new BrokerReduceService();
+      BrokerResponseNative expected =
+          brokerReduceService.reduceOnDataTable(brokerRequest, new HashMap<ServerInstance, DataTable>());
+
+      // No server queried
+      BrokerResponseNative empty = brokerReduceService.createIncrementalReducer(brokerRequest).getResult();
+      assertSameResults(empty, expected, query);
+      Assert.assertTrue(empty.getProcessingExceptions().isEmpty(), query);
+      Assert.assertEquals(empty.getNumServersQueried(), 0, query);
+      Assert.assertEquals(empty.getNumServersResponded(), 0, query);
+
+      // All servers missing, only their exceptions are reported
+      IncrementalBrokerReducer reducer = brokerReduceService.createIncrementalReducer(brokerRequest);
+      reducer.setNumServersQueried(2);
+      for (int i = 0; i < 2; i++) {
+        reducer.addMissingServer(new ServerInstance("localhost", 8000 + i), QueryException.BROKER_TIMEOUT_ERROR_CODE,
+            "Server did not respond");
+      }
+      BrokerResponseNative allMissing = reducer.getResult();
+      assertSameResults(allMissing, expected, query);
+      Assert.assertEquals(allMissing.getProcessingExceptions().size(), 2, query);
+      Assert.assertEquals(allMissing.getNumServersQueried(), 2, query);
+      Assert.assertEquals(allMissing.getNumServersResponded(), 0, query);
+    }
+  }
+
+  private static void assertSameResults(BrokerResponseNative actual, BrokerResponseNative expected, String query) {
+    Assert.assertEquals(actual.getSelectionResults(), expected.getSelectionResults(), query);
+    Assert.assertEquals(actual.getAggregationResults(), expected.getAggregationResults(), query);
+    Assert.assertEquals(actual.getNumDocsScanned(), expected.getNumDocsScanned(), query);
+    Assert.assertEquals(actual.getTotalDocs(), expected.getTotalDocs(), query);
+    Assert.assertEquals(actual.getTimeUsedMs(), expected.getTimeUsedMs(), query);
+  }
+
+  private static void addMetadata(DataTableBuilder builder, long numDocs, long timeUsedMs) {
+    builder.addMetaData("numDocsScanned", Long.toString(numDocs));
+    builder.addMetaData("totalDocs", Long.toString(numDocs));
+    builder.addMetaData("timeUsedMs", Long.toString(timeUsedMs));
+  }
+
+  private static DataTable serDe(DataTable dataTable)
+      throws Exception {
+    return new DataTable(dataTable.toBytes());
+  }
+}
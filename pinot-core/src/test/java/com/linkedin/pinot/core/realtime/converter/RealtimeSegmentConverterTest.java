@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.converter;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.PinotSegmentRecordReader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.dictionary.StringMutableDictionary;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.yammer.metrics.core.MetricsRegistry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that converting a consuming segment by reusing its dictionaries produces the rows that were indexed, ordered on
+ * the sorted column.
+ */
+public class RealtimeSegmentConverterTest {
+  private static final File OUTPUT_DIR =
+      new File(FileUtils.getTempDirectory(), RealtimeSegmentConverterTest.class.getSimpleName());
+  private static final int NUM_ROWS = 1000;
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(OUTPUT_DIR);
+  }
+
+  @Test
+  public void testBuildFromDictionaries() throws Exception {
+    FileUtils.deleteQuietly(OUTPUT_DIR);
+    Schema schema = new Schema.SchemaBuilder()
+        .setSchemaName("testSchema")
+        .addSingleValueDimension("country", FieldSpec.DataType.STRING)
+        .addSingleValueDimension("memberId", FieldSpec.DataType.INT)
+        .addMetric("clicks", FieldSpec.DataType.LONG)
+        .addTime("daysSinceEpoch", TimeUnit.DAYS, FieldSpec.DataType.LONG)
+        .build();
+
+    RealtimeSegmentImpl realtimeSegment = new RealtimeSegmentImpl(schema, NUM_ROWS, "testTable", "testSegment",
+        schema.getSchemaName(), new ServerMetrics(new MetricsRegistry()));
+
+    Random random = new Random(7);
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Map<String, Object> fields = new HashMap<>();
+      fields.put("country", "country_" + random.nextInt(20));
+      fields.put("memberId", random.nextInt(500));
+      fields.put("clicks", (long) random.nextInt(10));
+      fields.put("daysSinceEpoch", 17000L + random.nextInt(3));
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      realtimeSegment.index(row);
+      rows.add(fields);
+    }
+
+    List<String> invertedIndexColumns = new ArrayList<>();
+    invertedIndexColumns.add("memberId");
+    RealtimeSegmentConverter converter = new RealtimeSegmentConverter(realtimeSegment, OUTPUT_DIR.getAbsolutePath(),
+        schema, "testTable", "testSegment", "country", invertedIndexColumns);
+    converter.build(SegmentVersion.v1);
+
+    File segmentDir = new File(OUTPUT_DIR, "testSegment");
+    SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(segmentDir);
+    Assert.assertEquals(segmentMetadata.getTotalDocs(), NUM_ROWS);
+    Assert.assertTrue(segmentMetadata.getColumnMetadataFor("country").isSorted());
+    Assert.assertEquals(segmentMetadata.getColumnMetadataFor("country").getCardinality(), 20);
+
+    // Expected order: sorted on country, ingestion order otherwise
+    Collections.sort(rows, new Comparator<Map<String, Object>>() {
+      @Override
+      public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+        return ((String) o1.get("country")).compareTo((String) o2.get("country"));
+      }
+    });
+
+    PinotSegmentRecordReader recordReader = new PinotSegmentRecordReader(segmentDir);
+    recordReader.init();
+    for (Map<String, Object> expected : rows) {
+      Assert.assertTrue(recordReader.hasNext());
+      GenericRow actual = recordReader.next();
+      for (String column : expected.keySet()) {
+        Assert.assertEquals(actual.getValue(column), expected.get(column), column);
+      }
+    }
+    Assert.assertFalse(recordReader.hasNext());
+    recordReader.close();
+  }
+
+  /**
+   * String dictionary ids have to follow the order of the padded values written in the segment dictionary, which only
+   * matches the natural order of the values with the '\0' padding character.
+   */
+  @Test
+  public void testStringDictionaryOrder() {
+    StringMutableDictionary dictionary =
+        new StringMutableDictionary(new DimensionFieldSpec("column", FieldSpec.DataType.STRING, true));
+    dictionary.index("a");
+    dictionary.index("a!");
+    dictionary.index("b");
+
+    Assert.assertEquals(RealtimeSegmentConverter.sortDictionary(dictionary, FieldSpec.DataType.STRING, '\0'),
+        new int[]{0, 1, 2});
+    // Padded values: "a%", "a!", "b%"
+    Assert.assertEquals(RealtimeSegmentConverter.sortDictionary(dictionary, FieldSpec.DataType.STRING, '%'),
+        new int[]{1, 0, 2});
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+public class OffHeapMutableDictionaryTest {
+  private static final int NUM_ENTRIES = 100000;
+  private static final int CARDINALITY = 10000;
+  private static final long RANDOM_SEED = System.nanoTime();
+
+  @Test
+  public void testSameIdsAsOnHeapDictionary() {
+    for (FieldSpec.DataType dataType : new FieldSpec.DataType[]{FieldSpec.DataType.INT, FieldSpec.DataType.LONG,
+        FieldSpec.DataType.FLOAT, FieldSpec.DataType.DOUBLE}) {
+      FieldSpec fieldSpec = new DimensionFieldSpec("column", dataType, true);
+      MutableDictionaryReader onHeapDictionary = RealtimeDictionaryProvider.getDictionaryFor(fieldSpec, false);
+      MutableDictionaryReader offHeapDictionary = RealtimeDictionaryProvider.getDictionaryFor(fieldSpec, true);
+      Assert.assertTrue(offHeapDictionary instanceof BaseOffHeapMutableDictionary);
+      Assert.assertTrue(offHeapDictionary.isEmpty());
+
+      Random random = new Random(RANDOM_SEED);
+      for (int i = 0; i < NUM_ENTRIES; i++) {
+        Object value = randomValue(dataType, random);
+        onHeapDictionary.index(value);
+        offHeapDictionary.index(value);
+        Assert.assertEquals(offHeapDictionary.indexOf(value), onHeapDictionary.indexOf(value),
+            "Dictionary id mismatch for " + dataType + ", random seed is: " + RANDOM_SEED);
+        Assert.assertEquals(offHeapDictionary.indexOf(value.toString()), onHeapDictionary.indexOf(value));
+      }
+
+      Assert.assertEquals(offHeapDictionary.length(), onHeapDictionary.length());
+      Assert.assertEquals(offHeapDictionary.getMinVal(), onHeapDictionary.getMinVal());
+      Assert.assertEquals(offHeapDictionary.getMaxVal(), onHeapDictionary.getMaxVal());
+      for (int dictId = 0; dictId < offHeapDictionary.length(); dictId++) {
+        Assert.assertEquals(offHeapDictionary.get(dictId), onHeapDictionary.get(dictId));
+        Assert.assertEquals(offHeapDictionary.getDoubleValue(dictId), onHeapDictionary.getDoubleValue(dictId));
+      }
+      Assert.assertEquals(offHeapDictionary.indexOf(Integer.toString(CARDINALITY)), Dictionary.NULL_VALUE_INDEX);
+      Assert.assertFalse(offHeapDictionary.contains(Integer.toString(CARDINALITY)));
+
+      String lower = onHeapDictionary.getMinVal().toString();
+      String upper = onHeapDictionary.get(onHeapDictionary.length() / 2).toString();
+      Assert.assertTrue(Arrays.equals(offHeapDictionary.getDictIdsInRange(lower, upper, false, true),
+          onHeapDictionary.getDictIdsInRange(lower, upper, false, true)));
+
+      offHeapDictionary.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentReads()
+      throws Exception {
+    FieldSpec fieldSpec = new DimensionFieldSpec("column", FieldSpec.DataType.LONG, true);
+    final LongOffHeapMutableDictionary dictionary = new LongOffHeapMutableDictionary(fieldSpec);
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Future<?> reader = executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        // Values are indexed in increasing order, so every published id must map back to its own value
+        while (dictionary.length() < NUM_ENTRIES) {
+          int length = dictionary.length();
+          for (int dictId = 0; dictId < length; dictId++) {
+            long value = dictionary.getLong(dictId);
+            Assert.assertEquals(value, dictId * 3L);
+            Assert.assertEquals(dictionary.indexOf(value), dictId);
+          }
+        }
+      }
+    });
+
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      dictionary.index(i * 3L);
+    }
+    reader.get(30, TimeUnit.SECONDS);
+    executorService.shutdown();
+    dictionary.close();
+  }
+
+  private static Object randomValue(FieldSpec.DataType dataType, Random random) {
+    int value = random.nextInt(CARDINALITY) - CARDINALITY / 2;
+    switch (dataType) {
+      case INT:
+        return value;
+      case LONG:
+        return value * (long) Integer.MAX_VALUE;
+      case FLOAT:
+        return value / 7f;
+      case DOUBLE:
+        return value / 7d;
+      default:
+        throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.dictionary;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class StringMutableDictionaryTest {
+  private static final int NUM_ENTRIES = 100000;
+  private static final int CARDINALITY = 10000;
+  private static final long RANDOM_SEED = System.nanoTime();
+
+  @Test
+  public void testIndexAndLookup() {
+    StringMutableDictionary dictionary =
+        new StringMutableDictionary(new DimensionFieldSpec("column", FieldSpec.DataType.STRING, true));
+    Assert.assertTrue(dictionary.isEmpty());
+
+    // Dictionary ids are assigned in the order the values are first indexed
+    Map<String, Integer> expectedDictIds = new HashMap<>();
+    String min = null;
+    String max = null;
+    Random random = new Random(RANDOM_SEED);
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      String value = "value_" + random.nextInt(CARDINALITY);
+      if (random.nextBoolean()) {
+        dictionary.index(value);
+      } else {
+        dictionary.index(new Object[]{value, value});
+      }
+      if (!expectedDictIds.containsKey(value)) {
+        expectedDictIds.put(value, expectedDictIds.size());
+      }
+      if (min == null || value.compareTo(min) < 0) {
+        min = value;
+      }
+      if (max == null || value.compareTo(max) > 0) {
+        max = value;
+      }
+    }
+
+    Assert.assertEquals(dictionary.length(), expectedDictIds.size(), "Random seed is: " + RANDOM_SEED);
+    for (Map.Entry<String, Integer> entry : expectedDictIds.entrySet()) {
+      int dictId = entry.getValue();
+      Assert.assertEquals(dictionary.indexOf(entry.getKey()), dictId);
+      Assert.assertTrue(dictionary.contains(entry.getKey()));
+      Assert.assertEquals(dictionary.get(dictId), entry.getKey());
+      Assert.assertEquals(dictionary.getStringValue(dictId), entry.getKey());
+    }
+    Assert.assertEquals(dictionary.indexOf("value_" + CARDINALITY), Dictionary.NULL_VALUE_INDEX);
+    Assert.assertFalse(dictionary.contains("value_" + CARDINALITY));
+    Assert.assertNull(dictionary.get(dictionary.length()));
+    Assert.assertEquals(dictionary.getMinVal(), min);
+    Assert.assertEquals(dictionary.getMaxVal(), max);
+  }
+
+  @Test
+  public void testConcurrentReads()
+      throws Exception {
+    final StringMutableDictionary dictionary =
+        new StringMutableDictionary(new DimensionFieldSpec("column", FieldSpec.DataType.STRING, true));
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Future<?> reader = executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        // Every published id must map back to its own value
+        while (dictionary.length() < NUM_ENTRIES) {
+          int length = dictionary.length();
+          for (int dictId = 0; dictId < length; dictId++) {
+            String value = dictionary.getStringValue(dictId);
+            Assert.assertEquals(value, Integer.toString(dictId));
+            Assert.assertEquals(dictionary.indexOf(value), dictId);
+          }
+        }
+      }
+    });
+
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      dictionary.index(Integer.toString(i));
+    }
+    reader.get(30, TimeUnit.SECONDS);
+    executorService.shutdown();
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.invertedIndex;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RealtimeInvertedIndexTest {
+  private static final int NUM_VALUES = 10;
+  private static final int NUM_DOCS = 200_000;
+  private static final int NUM_READERS = 4;
+
+  @Test
+  public void testAddAndGet() {
+    RealtimeInvertedIndex invertedIndex = new DimensionInvertertedIndex("column");
+    // Grow past the initial capacity
+    for (int docId = 0; docId < 1000; docId++) {
+      invertedIndex.add(docId % 500, docId);
+    }
+
+    ImmutableRoaringBitmap bitmap = invertedIndex.getImmutable(7);
+    Assert.assertEquals(bitmap.getCardinality(), 2);
+    Assert.assertTrue(bitmap.contains(7));
+    Assert.assertTrue(bitmap.contains(507));
+    Assert.assertEquals(invertedIndex.getDocIdSetFor(499).getCardinality(), 2);
+
+    // Snapshots do not change when documents are added afterwards
+    invertedIndex.add(7, 1000);
+    Assert.assertEquals(bitmap.getCardinality(), 2);
+    Assert.assertEquals(invertedIndex.getImmutable(7).getCardinality(), 3);
+
+    // Dictionary ids without documents get an empty bitmap
+    Assert.assertTrue(invertedIndex.getImmutable(500).isEmpty());
+    Assert.assertTrue(invertedIndex.getImmutable(100_000).isEmpty());
+    Assert.assertNull(invertedIndex.getDocIdSetFor(100_000));
+  }
+
+  @Test
+  public void testConcurrentReads()
+      throws Exception {
+    final RealtimeInvertedIndex invertedIndex = new DimensionInvertertedIndex("column");
+    final int[] searchableDocId = new int[]{-1};
+    final Object lock = new Object();
+    final AtomicBoolean done = new AtomicBoolean(false);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(NUM_READERS);
+    Future[] futures = new Future[NUM_READERS];
+    for (int i = 0; i < NUM_READERS; i++) {
+      futures[i] = executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          while (!done.get()) {
+            int maxDocId;
+            synchronized (lock) {
+              maxDocId = searchableDocId[0];
+            }
+            for (int dictId = 0; dictId < NUM_VALUES; dictId++) {
+              // All the searchable documents of the value must be in the bitmap, in order
+              ImmutableRoaringBitmap bitmap = invertedIndex.getImmutable(dictId);
+              IntIterator iterator = bitmap.getIntIterator();
+              for (int docId = dictId; docId <= maxDocId; docId += NUM_VALUES) {
+                Assert.assertTrue(iterator.hasNext());
+                Assert.assertEquals(iterator.next(), docId);
+              }
+            }
+          }
+        }
+      });
+    }
+
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      invertedIndex.add(docId % NUM_VALUES, docId);
+      synchronized (lock) {
+        searchableDocId[0] = docId;
+      }
+    }
+    done.set(true);
+
+    for (Future future : futures) {
+      future.get();
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(10, TimeUnit.SECONDS);
+  }
+}
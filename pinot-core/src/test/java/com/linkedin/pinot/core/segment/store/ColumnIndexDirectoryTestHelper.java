@@ -51,6 +51,12 @@ public class ColumnIndexDirectoryTestHelper {
       case INVERTED_INDEX:
         buf = columnDirectory.newInvertedIndexBuffer(columnName, size);
         break;
+      case RANGE_INDEX:
+        buf = columnDirectory.newRangeIndexBuffer(columnName, size);
+        break;
+      case BLOOM_FILTER:
+        buf = columnDirectory.newBloomFilterBuffer(columnName, size);
+        break;
     }
     return buf;
   }
@@ -71,6 +77,12 @@ public class ColumnIndexDirectoryTestHelper {
       case INVERTED_INDEX:
         buf = columnDirectory.getInvertedIndexBufferFor(columnName);
         break;
+      case RANGE_INDEX:
+        buf = columnDirectory.getRangeIndexBufferFor(columnName);
+        break;
+      case BLOOM_FILTER:
+        buf = columnDirectory.getBloomFilterBufferFor(columnName);
+        break;
     }
     return buf;
   }
@@ -130,6 +142,24 @@ public class ColumnIndexDirectoryTestHelper {
             return invocationOnMock.getArguments()[0] + ".ii";
           }
         });
+
+    when(meta.getBitmapRangeIndexFileName(anyString(), anyString()))
+        .thenAnswer(new Answer<String>() {
+          @Override
+          public String answer(InvocationOnMock invocationOnMock)
+              throws Throwable {
+            return invocationOnMock.getArguments()[0] + ".range";
+          }
+        });
+
+    when(meta.getBloomFilterFileName(anyString(), anyString()))
+        .thenAnswer(new Answer<String>() {
+          @Override
+          public String answer(InvocationOnMock invocationOnMock)
+              throws Throwable {
+            return invocationOnMock.getArguments()[0] + ".bloom";
+          }
+        });
     return meta;
   }
 }
@@ -25,6 +25,7 @@ import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import com.linkedin.pinot.core.startree.hll.HllConfig;
+import com.linkedin.pinot.core.startree.sketch.StarTreeSketchConfig;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.apache.commons.math.util.MathUtils;
 import org.slf4j.Logger;
@@ -55,16 +56,22 @@ public class StarTreeIndexTestSegmentHelper {
    */
   public static Schema buildSegment(String segmentDirName, String segmentName, boolean enableOffHeapFormat)
       throws Exception {
-    return buildSegment(segmentDirName, segmentName, null, enableOffHeapFormat);
+    return buildSegment(segmentDirName, segmentName, null, null, enableOffHeapFormat);
   }
 
   public static Schema buildSegmentWithHll(String segmentDirName, String segmentName, HllConfig hllConfig)
       throws Exception {
-    return buildSegment(segmentDirName, segmentName, hllConfig, false);
+    return buildSegment(segmentDirName, segmentName, hllConfig, null, false);
+  }
+
+  public static Schema buildSegmentWithSketches(String segmentDirName, String segmentName,
+      StarTreeSketchConfig starTreeSketchConfig)
+      throws Exception {
+    return buildSegment(segmentDirName, segmentName, null, starTreeSketchConfig, false);
   }
 
   private static Schema buildSegment(String segmentDirName, String segmentName, HllConfig hllConfig,
-      boolean enableOffHeapFormat)
+      StarTreeSketchConfig starTreeSketchConfig, boolean enableOffHeapFormat)
       throws Exception {
     final int rows = (int) MathUtils.factorial(NUM_DIMENSIONS) * 100;
     Schema schema = new Schema();
@@ -88,6 +95,7 @@ public class StarTreeIndexTestSegmentHelper {
     config.setFormat(FileFormat.AVRO);
     config.setSegmentName(segmentName);
     config.setHllConfig(hllConfig);
+    config.setStarTreeSketchConfig(starTreeSketchConfig);
     config.setStarTreeIndexSpec(buildStarTreeIndexSpec(enableOffHeapFormat));
 
     Random random = new Random(RANDOM_SEED);
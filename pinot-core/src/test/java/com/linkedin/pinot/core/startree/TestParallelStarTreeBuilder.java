@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.startree.hll.HllUtil;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Checks that {@link ParallelStarTreeBuilder} generates the same data file and tree as {@link OffHeapStarTreeBuilder}.
+ */
+public class TestParallelStarTreeBuilder {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "TestParallelStarTreeBuilder");
+  private static final int NUM_ROWS = 5000;
+  private static final int LOG2M = 8;
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testOnHeapFormat() throws Exception {
+    testSameOutput(false, false);
+  }
+
+  @Test
+  public void testOffHeapFormat() throws Exception {
+    testSameOutput(true, false);
+  }
+
+  @Test
+  public void testSkipStarNodeCreation() throws Exception {
+    testSameOutput(true, true);
+  }
+
+  private void testSameOutput(boolean enableOffHeapFormat, boolean skipStarNodeCreation) throws Exception {
+    Schema schema = new Schema();
+    for (int i = 0; i < 4; i++) {
+      schema.addField(new DimensionFieldSpec("d" + i, DataType.STRING, true));
+    }
+    schema.setTimeFieldSpec(new TimeFieldSpec("daysSinceEpoch", DataType.INT, TimeUnit.DAYS));
+    schema.addField(new MetricFieldSpec("intMetric", DataType.INT));
+    schema.addField(new MetricFieldSpec("longMetric", DataType.LONG));
+    schema.addField(new MetricFieldSpec("floatMetric", DataType.FLOAT));
+    schema.addField(new MetricFieldSpec("doubleMetric", DataType.DOUBLE));
+    schema.addField(new MetricFieldSpec("hllMetric", DataType.STRING, HllUtil.getHllFieldSizeFromLog2m(LOG2M),
+        MetricFieldSpec.DerivedMetricType.HLL));
+
+    OffHeapStarTreeBuilder sequentialBuilder = new OffHeapStarTreeBuilder();
+    sequentialBuilder.init(getBuilderConfig(schema, "sequential", enableOffHeapFormat, skipStarNodeCreation, 1));
+    ParallelStarTreeBuilder parallelBuilder = new ParallelStarTreeBuilder();
+    parallelBuilder.init(getBuilderConfig(schema, "parallel", enableOffHeapFormat, skipStarNodeCreation, 4));
+    // Force the k-way merge of sorted runs
+    parallelBuilder.numRecordsPerSortChunk = 100;
+
+    Random random = new Random(1234);
+    HashMap<String, Object> map = new HashMap<>();
+    for (int row = 0; row < NUM_ROWS; row++) {
+      for (int i = 0; i < 4; i++) {
+        map.put("d" + i, "d" + i + "-v" + random.nextInt(2 + 3 * i));
+      }
+      map.put("daysSinceEpoch", random.nextInt(5));
+      map.put("intMetric", random.nextInt(100));
+      map.put("longMetric", random.nextLong());
+      map.put("floatMetric", random.nextFloat());
+      map.put("doubleMetric", random.nextDouble());
+      map.put("hllMetric", HllUtil.singleValueHllAsString(LOG2M, random.nextInt(1000)));
+      GenericRow genericRow = new GenericRow();
+      genericRow.init(map);
+      sequentialBuilder.append(genericRow);
+      parallelBuilder.append(genericRow);
+    }
+    sequentialBuilder.build();
+    parallelBuilder.build();
+
+    Assert.assertEquals(parallelBuilder.getDimensionsSplitOrder(), sequentialBuilder.getDimensionsSplitOrder());
+    Assert.assertEquals(parallelBuilder.getTotalRawDocumentCount(), sequentialBuilder.getTotalRawDocumentCount());
+    Assert.assertEquals(parallelBuilder.getTotalAggregateDocumentCount(),
+        sequentialBuilder.getTotalAggregateDocumentCount());
+    Assert.assertTrue(sequentialBuilder.getTotalAggregateDocumentCount() > 0);
+    Assert.assertEquals(FileUtils.readFileToByteArray(parallelBuilder.dataFile),
+        FileUtils.readFileToByteArray(sequentialBuilder.dataFile));
+    Assert.assertEquals(FileUtils.readFileToByteArray(new File(parallelBuilder.dataFile.getParentFile(), "star-tree.bin")),
+        FileUtils.readFileToByteArray(new File(sequentialBuilder.dataFile.getParentFile(), "star-tree.bin")));
+
+    sequentialBuilder.cleanup();
+    parallelBuilder.cleanup();
+  }
+
+  private StarTreeBuilderConfig getBuilderConfig(Schema schema, String name, boolean enableOffHeapFormat,
+      boolean skipStarNodeCreation, int numBuildThreads) {
+    StarTreeBuilderConfig builderConfig = new StarTreeBuilderConfig();
+    builderConfig.setSchema(schema);
+    builderConfig.setDimensionsSplitOrder(new ArrayList<String>());
+    builderConfig.setMaxLeafRecords(10);
+    builderConfig.setSkipMaterializationCardinalityThreshold(10);
+    if (skipStarNodeCreation) {
+      builderConfig.setSkipStarNodeCreationForDimensions(Collections.singleton("d2"));
+    }
+    builderConfig.setEnableOffHealpFormat(enableOffHeapFormat);
+    builderConfig.setNumBuildThreads(numBuildThreads);
+    builderConfig.setOutDir(new File(TEMP_DIR, name));
+    return builderConfig;
+  }
+}
@@ -18,20 +18,37 @@ package com.linkedin.pinot.core.startree.hll;
 import com.clearspring.analytics.stream.cardinality.HyperLogLog;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.GroupByResult;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
 import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.common.*;
+import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.aggregation.AggregationFunctionContext;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedFastHllAggregationFunction;
 import com.linkedin.pinot.core.operator.filter.StarTreeIndexOperator;
 import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.plan.Plan;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.query.reduce.BrokerReduceService;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -110,6 +127,72 @@ public class BaseHllStarTreeIndexTest {
     }
   }
 
+  /**
+   * Runs the hard-coded queries the way the server and the broker do, and checks the fasthll results against the ones
+   * computed by scanning raw docs. On the star-tree segment, fasthll is served by the dictionary based function, which
+   * merges the serialized hll entries of the aggregated docs.
+   */
+  void testHardCodedQueriesThroughQueryExecution(IndexSegment segment) throws Exception {
+    String metricName = "d4" + HLL_CONFIG.getHllDeriveColumnSuffix();
+    AggregationFunctionContext aggregationFunctionContext =
+        new AggregationFunctionContext("fasthll", new String[]{metricName}, segment);
+    Assert.assertTrue(
+        aggregationFunctionContext.getAggregationFunction() instanceof DictionaryBasedFastHllAggregationFunction);
+
+    List<SegmentDataManager> segmentDataManagers =
+        Collections.<SegmentDataManager>singletonList(new OfflineSegmentDataManager(segment));
+    InstancePlanMakerImplV2 planMaker =
+        new InstancePlanMakerImplV2(new QueryExecutorConfig(new PropertiesConfiguration()));
+    ServerInstance serverInstance = new ServerInstance("localhost", 8098);
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      for (String query : _hardCodedQueries) {
+        Pql2Compiler compiler = new Pql2Compiler();
+        // Filter planning rewrites the fasthll column of the request, so each side gets its own request.
+        Map<String, long[]> rawResult = computeHllUsingRawDocs(segment, Collections.singletonList(metricName),
+            compiler.compileToBrokerRequest(query));
+        // The group values read from the raw docs keep the dictionary padding, which the server strips.
+        Map<String, long[]> expectedResult = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : rawResult.entrySet()) {
+          expectedResult.put(entry.getKey().replace(String.valueOf(V1Constants.Str.DEFAULT_STRING_PAD_CHAR), ""),
+              entry.getValue());
+        }
+
+        BrokerRequest brokerRequest = compiler.compileToBrokerRequest(query);
+        Plan plan = planMaker.makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, 60000L);
+        plan.execute();
+        DataTable instanceResponse = new DataTable(plan.getInstanceResponse().toBytes());
+        BrokerResponseNative brokerResponse = new BrokerReduceService().reduceOnDataTable(brokerRequest,
+            Collections.singletonMap(serverInstance, instanceResponse));
+        Assert.assertEquals(brokerResponse.getExceptionsSize(), 0, query);
+
+        AggregationResult aggregationResult = brokerResponse.getAggregationResults().get(0);
+        if (aggregationResult.getGroupByResult() == null) {
+          Assert.assertEquals(toLong(aggregationResult.getValue()), expectedResult.get("")[0], query);
+        } else {
+          List<GroupByResult> groupByResults = aggregationResult.getGroupByResult();
+          Assert.assertEquals(groupByResults.size(), Math.min(expectedResult.size(), 10), query);
+          for (GroupByResult groupByResult : groupByResults) {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (String group : groupByResult.getGroup()) {
+              stringBuilder.append(group);
+              stringBuilder.append("_");
+            }
+            long[] expectedValues = expectedResult.get(stringBuilder.toString());
+            Assert.assertNotNull(expectedValues, query);
+            Assert.assertEquals(toLong(groupByResult.getValue()), expectedValues[0], query);
+          }
+        }
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  private static long toLong(Object value) {
+    return (long) Double.parseDouble(value.toString());
+  }
+
   /**
    * Helper method to compute the sums using raw index.
    *  @param metricNames
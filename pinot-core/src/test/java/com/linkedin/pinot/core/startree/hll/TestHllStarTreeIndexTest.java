@@ -60,4 +60,15 @@ public class TestHllStarTreeIndexTest extends BaseHllStarTreeIndexTest {
   public void test() throws Exception {
     testHardCodedQueries(_segment, _schema);
   }
+
+  /**
+   * This test ensures that the fasthll results of the hard-coded queries, executed through the server plan and the
+   * broker reduce, are the same as computed by scanning raw-docs.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testQueryExecution() throws Exception {
+    testHardCodedQueriesThroughQueryExecution(_segment);
+  }
 }
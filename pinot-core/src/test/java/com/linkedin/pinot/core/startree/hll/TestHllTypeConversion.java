@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.core.startree.hll;
 
+import com.clearspring.analytics.stream.cardinality.HyperLogLog;
+import com.clearspring.analytics.stream.cardinality.RegisterSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -67,4 +69,42 @@ public class TestHllTypeConversion {
       }
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testConvertStringToHll()
+      throws Exception {
+    for (int log2m = 5; log2m <= 9; log2m++) {
+      HyperLogLog hll = randomHll(log2m);
+      String s = HllUtil.convertHllToString(hll);
+      Assert.assertEquals(s.length(), HllUtil.getHllFieldSizeFromLog2m(log2m));
+      HyperLogLog converted = HllUtil.convertStringToHll(s);
+      Assert.assertTrue(Arrays.equals(converted.getBytes(), hll.getBytes()));
+      Assert.assertEquals(converted.cardinality(), hll.cardinality());
+    }
+  }
+
+  @Test
+  public void testDecodeRegistersFromUtf8Bytes()
+      throws Exception {
+    for (int log2m = 5; log2m <= 9; log2m++) {
+      HyperLogLog hll = randomHll(log2m);
+      // Padded UTF-8 bytes, as stored in the dictionary.
+      byte[] stringBytes = HllUtil.convertHllToString(hll).getBytes(charset);
+      byte[] utf8Bytes = Arrays.copyOf(stringBytes, stringBytes.length + 10);
+
+      int[] registerWords = new int[RegisterSet.getSizeForCount(1 << log2m)];
+      HllUtil.decodeRegistersFromUtf8Bytes(utf8Bytes, registerWords);
+      HyperLogLog decoded = new HyperLogLog(log2m, new RegisterSet(1 << log2m, registerWords));
+      Assert.assertTrue(Arrays.equals(decoded.getBytes(), hll.getBytes()));
+    }
+  }
+
+  private HyperLogLog randomHll(int log2m) {
+    HyperLogLog hll = new HyperLogLog(log2m);
+    int numValues = rand.nextInt(10000);
+    for (int i = 0; i < numValues; i++) {
+      hll.offer(rand.nextLong());
+    }
+    return hll;
+  }
+}
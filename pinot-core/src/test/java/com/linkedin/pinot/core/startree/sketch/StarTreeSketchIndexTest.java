@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree.sketch;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.response.broker.AggregationResult;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.response.broker.GroupByResult;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.aggregation.AggregationFunctionContext;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedDistinctCountHLLAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedPercentileTDigestAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedPercentileestAggregationFunction;
+import com.linkedin.pinot.core.plan.Plan;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.query.reduce.BrokerReduceService;
+import com.linkedin.pinot.core.startree.StarTreeIndexTestSegmentHelper;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * This test builds two star tree segments with the same random data, one of them with the sketch fields derived with
+ * {@link StarTreeSketchConfig}, and ensures that the 'distinctcounthll', 'percentileest' and 'percentiletdigest'
+ * results computed from the pre-aggregated sketches match the ones computed by scanning the raw docs.
+ */
+public class StarTreeSketchIndexTest {
+  private static final String SEGMENT_DIR_NAME = "/tmp/star-tree-sketch-index";
+  private static final String SKETCH_SEGMENT_NAME = "starTreeSketchSegment";
+  private static final String RAW_SEGMENT_NAME = "starTreeSegment";
+
+  // Metric values are in [0, 10000), allow the error of the 5% quantile digest plus the t-digest approximation.
+  private static final double PERCENTILE_DELTA = 1000;
+
+  private static final String[] DISTINCT_COUNT_HLL_QUERIES = new String[]{
+      "select distinctcounthll(d4) from T",
+      "select distinctcounthll(d4) from T where d1 = 'd1-v1'",
+      "select distinctcounthll(d4) from T where d1 in ('d1-v1', 'd1-v2') and d2 not in ('d2-v1')",
+      "select distinctcounthll(d4) from T group by d1",
+      "select distinctcounthll(d4) from T where d1 <> 'd1-v1' group by d2, d3"
+  };
+
+  private static final String[] PERCENTILE_QUERIES = new String[]{
+      "select percentileest50(m1), percentiletdigest90(m1) from T",
+      "select percentileest90(m1), percentiletdigest50(m1) from T where d1 = 'd1-v1'",
+      "select percentileest95(m1), percentiletdigest99(m1) from T group by d1",
+      "select percentileest99(m1), percentiletdigest95(m1) from T where d1 in ('d1-v1', 'd1-v2') group by d2"
+  };
+
+  private IndexSegment _sketchSegment;
+  private IndexSegment _rawSegment;
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    StarTreeSketchConfig starTreeSketchConfig = new StarTreeSketchConfig(Collections.singleton("d4"),
+        Collections.singleton("m1"));
+    // Both segments get the same data, generated with the same random seed.
+    StarTreeIndexTestSegmentHelper.buildSegmentWithSketches(SEGMENT_DIR_NAME, SKETCH_SEGMENT_NAME,
+        starTreeSketchConfig);
+    StarTreeIndexTestSegmentHelper.buildSegment(SEGMENT_DIR_NAME, RAW_SEGMENT_NAME, false);
+    _sketchSegment = StarTreeIndexTestSegmentHelper.loadSegment(SEGMENT_DIR_NAME, SKETCH_SEGMENT_NAME);
+    _rawSegment = StarTreeIndexTestSegmentHelper.loadSegment(SEGMENT_DIR_NAME, RAW_SEGMENT_NAME);
+    _executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws Exception {
+    _executorService.shutdown();
+    _sketchSegment.destroy();
+    _rawSegment.destroy();
+    FileUtils.deleteDirectory(new File(SEGMENT_DIR_NAME));
+  }
+
+  @Test
+  public void testStarTreeSketchRewriting()
+      throws Exception {
+    Pql2Compiler compiler = new Pql2Compiler();
+    BrokerRequest brokerRequest =
+        compiler.compileToBrokerRequest("select distinctcounthll(d4), percentileest50(m1) from T group by d1");
+
+    BrokerRequest rewrittenBrokerRequest =
+        RequestUtils.performStarTreeSketchRewriting(_sketchSegment.getSegmentMetadata(), brokerRequest);
+    Assert.assertEquals(rewrittenBrokerRequest.getAggregationsInfo().get(0).getAggregationParams().get("column"),
+        "d4" + StarTreeSketchConfig.DISTINCTCOUNTHLL_DERIVE_COLUMN_SUFFIX);
+    Assert.assertEquals(rewrittenBrokerRequest.getAggregationsInfo().get(1).getAggregationParams().get("column"),
+        "m1" + StarTreeSketchConfig.TDIGEST_DERIVE_COLUMN_SUFFIX);
+    // The broker request is shared by all the segments, so it must not be modified.
+    Assert.assertEquals(brokerRequest.getAggregationsInfo().get(0).getAggregationParams().get("column"), "d4");
+    Assert.assertEquals(brokerRequest.getAggregationsInfo().get(1).getAggregationParams().get("column"), "m1");
+
+    // No rewriting without the derived columns, or when the star tree cannot be used.
+    Assert.assertSame(RequestUtils.performStarTreeSketchRewriting(_rawSegment.getSegmentMetadata(), brokerRequest),
+        brokerRequest);
+    BrokerRequest unfitBrokerRequest =
+        compiler.compileToBrokerRequest("select distinctcounthll(d4) from T where d1 = 'd1-v1' or d2 = 'd2-v1'");
+    Assert.assertSame(
+        RequestUtils.performStarTreeSketchRewriting(_sketchSegment.getSegmentMetadata(), unfitBrokerRequest),
+        unfitBrokerRequest);
+
+    // The derived columns are aggregated by the dictionary based functions.
+    Assert.assertTrue(getAggregationFunction("distinctcounthll", "d4_distinctcounthll")
+        instanceof DictionaryBasedDistinctCountHLLAggregationFunction);
+    Assert.assertTrue(getAggregationFunction("percentileest50", "m1_tdigest")
+        instanceof DictionaryBasedPercentileestAggregationFunction);
+    Assert.assertTrue(getAggregationFunction("percentiletdigest90", "m1_tdigest")
+        instanceof DictionaryBasedPercentileTDigestAggregationFunction);
+  }
+
+  /**
+   * The hll sketches are merged without loss, so the results must be identical.
+   */
+  @Test
+  public void testDistinctCountHll()
+      throws Exception {
+    for (String query : DISTINCT_COUNT_HLL_QUERIES) {
+      Map<String, double[]> expectedResults = executeQuery(_rawSegment, query);
+      Map<String, double[]> actualResults = executeQuery(_sketchSegment, query);
+      Assert.assertEquals(actualResults.keySet(), expectedResults.keySet(), query);
+      for (Map.Entry<String, double[]> entry : expectedResults.entrySet()) {
+        Assert.assertEquals(actualResults.get(entry.getKey())[0], entry.getValue()[0], query);
+      }
+    }
+  }
+
+  @Test
+  public void testPercentiles()
+      throws Exception {
+    for (String query : PERCENTILE_QUERIES) {
+      Map<String, double[]> expectedResults = executeQuery(_rawSegment, query);
+      Map<String, double[]> actualResults = executeQuery(_sketchSegment, query);
+      Assert.assertEquals(actualResults.keySet(), expectedResults.keySet(), query);
+      for (Map.Entry<String, double[]> entry : expectedResults.entrySet()) {
+        double[] expectedValues = entry.getValue();
+        double[] actualValues = actualResults.get(entry.getKey());
+        for (int i = 0; i < expectedValues.length; i++) {
+          Assert.assertEquals(actualValues[i], expectedValues[i], PERCENTILE_DELTA, query);
+        }
+      }
+    }
+  }
+
+  /**
+   * The t-digest sketches of the star tree docs are serialized into a fixed number of bytes, whatever the number of
+   * merged values.
+   */
+  @Test
+  public void testTDigestSerializedSize() {
+    Random random = new Random();
+    TDigestSketch tDigest = new TDigestSketch(StarTreeSketchUtil.TDIGEST_COMPRESSION);
+    for (int i = 0; i < 100000; i++) {
+      tDigest.add(random.nextGaussian());
+      if (i % 1000 == 0) {
+        ByteBuffer buffer = ByteBuffer.allocate(StarTreeSketchUtil.TDIGEST_FIELD_SIZE);
+        StarTreeSketchUtil.serializeTDigest(tDigest, buffer);
+        Assert.assertEquals(buffer.position(), StarTreeSketchUtil.TDIGEST_FIELD_SIZE);
+      }
+    }
+
+    TDigestSketch deserialized =
+        StarTreeSketchUtil.convertStringToTDigest(StarTreeSketchUtil.convertTDigestToString(tDigest));
+    Assert.assertEquals(deserialized.getTotalWeight(), tDigest.getTotalWeight());
+    for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+      Assert.assertEquals(deserialized.getQuantile(quantile), tDigest.getQuantile(quantile), 1e-9);
+    }
+  }
+
+  private Object getAggregationFunction(String functionName, String column) {
+    return new AggregationFunctionContext(functionName, new String[]{column}, _sketchSegment).getAggregationFunction();
+  }
+
+  /**
+   * Executes the query the way the server and the broker do, and returns the values of the aggregations keyed by
+   * group.
+   */
+  private Map<String, double[]> executeQuery(IndexSegment segment, String query)
+      throws Exception {
+    List<SegmentDataManager> segmentDataManagers =
+        Collections.<SegmentDataManager>singletonList(new OfflineSegmentDataManager(segment));
+    InstancePlanMakerImplV2 planMaker =
+        new InstancePlanMakerImplV2(new QueryExecutorConfig(new PropertiesConfiguration()));
+    BrokerRequest brokerRequest = new Pql2Compiler().compileToBrokerRequest(query);
+    Plan plan = planMaker.makeInterSegmentPlan(segmentDataManagers, brokerRequest, _executorService, 60000L);
+    plan.execute();
+    DataTable instanceResponse = new DataTable(plan.getInstanceResponse().toBytes());
+    BrokerResponseNative brokerResponse = new BrokerReduceService().reduceOnDataTable(brokerRequest,
+        Collections.singletonMap(new ServerInstance("localhost", 8098), instanceResponse));
+    Assert.assertEquals(brokerResponse.getExceptionsSize(), 0, query);
+
+    Map<String, double[]> results = new HashMap<>();
+    List<AggregationResult> aggregationResults = brokerResponse.getAggregationResults();
+    int numAggregations = aggregationResults.size();
+    for (int i = 0; i < numAggregations; i++) {
+      AggregationResult aggregationResult = aggregationResults.get(i);
+      if (aggregationResult.getGroupByResult() == null) {
+        getValues(results, "", numAggregations)[i] = Double.parseDouble(aggregationResult.getValue().toString());
+      } else {
+        for (GroupByResult groupByResult : aggregationResult.getGroupByResult()) {
+          getValues(results, groupByResult.getGroup().toString(), numAggregations)[i] =
+              Double.parseDouble(groupByResult.getValue().toString());
+        }
+      }
+    }
+    return results;
+  }
+
+  private static double[] getValues(Map<String, double[]> results, String key, int numAggregations) {
+    double[] values = results.get(key);
+    if (values == null) {
+      values = new double[numAggregations];
+      results.put(key, values);
+    }
+    return values;
+  }
+}
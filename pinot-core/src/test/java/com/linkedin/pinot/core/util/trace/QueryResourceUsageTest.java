@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.util.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class QueryResourceUsageTest {
+  private static final int NUM_JOBS = 10;
+  private static final int ARRAY_SIZE = 1024 * 1024;
+
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setUp() {
+    _executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @Test
+  public void testAccounting()
+      throws Exception {
+    final QueryResourceUsage resourceUsage = QueryResourceUsage.register();
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (int i = 0; i < NUM_JOBS; i++) {
+        futures.add(_executorService.submit(new TraceCallable<Long>() {
+          @Override
+          public Long callJob()
+              throws Exception {
+            // Jobs account to the query of the thread creating them
+            Assert.assertSame(QueryResourceUsage.getForCurrentThread(), resourceUsage);
+            long[] values = new long[ARRAY_SIZE];
+            long sum = 0;
+            for (int j = 0; j < values.length; j++) {
+              values[j] = j;
+              sum += values[j];
+            }
+            return sum;
+          }
+        }));
+      }
+      for (Future<Long> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      QueryResourceUsage.unregister();
+    }
+
+    Assert.assertNull(QueryResourceUsage.getForCurrentThread());
+    Assert.assertTrue(resourceUsage.getThreadCpuTimeNs() >= 0);
+    Assert.assertTrue(resourceUsage.getQueueWaitTimeNs() > 0);
+    if (QueryResourceUsage.getCurrentThreadAllocatedBytes() > 0) {
+      Assert.assertTrue(resourceUsage.getAllocatedBytes() >= (long) NUM_JOBS * ARRAY_SIZE * 8);
+    }
+  }
+
+  @Test
+  public void testJobOnRegisteringThreadNotAccounted()
+      throws Exception {
+    final QueryResourceUsage resourceUsage = QueryResourceUsage.register();
+    try {
+      TraceRunnable runnable = new TraceRunnable() {
+        @Override
+        public void runJob() {
+          Assert.assertSame(QueryResourceUsage.getForCurrentThread(), resourceUsage);
+        }
+      };
+      Thread.sleep(10);
+      runnable.run();
+      Assert.assertSame(QueryResourceUsage.getForCurrentThread(), resourceUsage);
+    } finally {
+      QueryResourceUsage.unregister();
+    }
+    Assert.assertEquals(resourceUsage.getThreadCpuTimeNs(), 0L);
+    Assert.assertEquals(resourceUsage.getAllocatedBytes(), 0L);
+    Assert.assertEquals(resourceUsage.getQueueWaitTimeNs(), 0L);
+  }
+
+  @Test
+  public void testNoRegisteredQuery()
+      throws Exception {
+    _executorService.submit(new TraceRunnable() {
+      @Override
+      public void runJob() {
+        Assert.assertNull(QueryResourceUsage.getForCurrentThread());
+      }
+    }).get(10, TimeUnit.SECONDS);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdown();
+  }
+}
@@ -53,4 +53,33 @@ public class FixedByteSingleColumnMultiValueReaderWriterTest {
     }
     readerWriter.close();
   }
+
+  @Test
+  public void testIntArrayMultipleChunks()
+      throws IOException {
+    FixedByteSingleColumnMultiValueReaderWriter readerWriter;
+    int numRowsPerChunk = 16;
+    int rows = 1000;
+    int columnSizeInBytes = Integer.SIZE / 8;
+    int maxNumberOfMultiValuesPerRow = 100;
+    readerWriter =
+        new FixedByteSingleColumnMultiValueReaderWriter(numRowsPerChunk, columnSizeInBytes, maxNumberOfMultiValuesPerRow);
+
+    Random r = new Random();
+    int[][] data = new int[rows][];
+    for (int i = 0; i < rows; i++) {
+      data[i] = new int[r.nextInt(maxNumberOfMultiValuesPerRow + 1)];
+      for (int j = 0; j < data[i].length; j++) {
+        data[i][j] = r.nextInt();
+      }
+      readerWriter.setIntArray(i, data[i]);
+    }
+    int[] ret = new int[maxNumberOfMultiValuesPerRow];
+    for (int i = 0; i < rows; i++) {
+      int length = readerWriter.getIntArray(i, ret);
+      Assert.assertEquals(data[i].length, length);
+      Assert.assertTrue(Arrays.equals(data[i], Arrays.copyOf(ret, length)));
+    }
+    readerWriter.close();
+  }
 }
@@ -58,4 +58,28 @@ public class FixedByteSingleColumnSingleValueReaderWriterTest {
     }
     readerWriter.close();
   }
+
+  @Test
+  public void testIntMultipleChunks() throws IOException {
+    FixedByteSingleColumnSingleValueReaderWriter readerWriter;
+    int numRowsPerChunk = 10;
+    int rows = 1000;
+    readerWriter = new FixedByteSingleColumnSingleValueReaderWriter(numRowsPerChunk, Integer.SIZE / 8);
+    Random r = new Random();
+    int[] data = new int[rows];
+    for (int i = 0; i < rows; i++) {
+      data[i] = r.nextInt();
+      readerWriter.setInt(i, data[i]);
+    }
+    for (int i = 0; i < rows; i++) {
+      Assert.assertEquals(data[i], readerWriter.getInt(i));
+    }
+    int[] docIds = new int[]{rows - 1, 0, 17, 500};
+    int[] values = new int[docIds.length];
+    readerWriter.readValues(docIds, 0, docIds.length, values, 0);
+    for (int i = 0; i < docIds.length; i++) {
+      Assert.assertEquals(values[i], data[docIds[i]]);
+    }
+    readerWriter.close();
+  }
 }
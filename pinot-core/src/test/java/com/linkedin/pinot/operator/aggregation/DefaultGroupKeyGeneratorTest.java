@@ -25,6 +25,7 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.operator.aggregation.groupby.DefaultGroupKeyGenerator;
 import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyTuple;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import com.linkedin.pinot.util.TestDataRecordReader;
@@ -281,17 +282,23 @@ public class DefaultGroupKeyGeneratorTest {
     int count = 0;
     Set<Integer> idSet = new HashSet<>();
     Set<String> groupKeySet = new HashSet<>();
+    Set<GroupKeyTuple> groupKeyTupleSet = new HashSet<>();
 
     while (groupKeyIterator.hasNext()) {
       count++;
       GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
-      idSet.add(groupKey.getFirst());
-      groupKeySet.add(groupKey.getStringKey());
+      idSet.add(groupKey.getGroupId());
+      String stringKey = groupKey.getStringKey();
+      groupKeySet.add(stringKey);
+      GroupKeyTuple groupKeyTuple = groupKey.getKeyTuple();
+      groupKeyTupleSet.add(groupKeyTuple);
+      Assert.assertEquals(groupKeyTuple.toString(), stringKey, _errorMessage);
     }
 
     Assert.assertEquals(count, numUniqueKeys, _errorMessage);
     Assert.assertEquals(idSet.size(), numUniqueKeys, _errorMessage);
     Assert.assertEquals(groupKeySet.size(), numUniqueKeys, _errorMessage);
+    Assert.assertEquals(groupKeyTupleSet.size(), numUniqueKeys, _errorMessage);
   }
 
   @AfterClass
@@ -20,12 +20,17 @@ import com.linkedin.pinot.common.data.MetricFieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.readers.RecordReader;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
 import com.linkedin.pinot.core.operator.aggregation.AggregationExecutor;
 import com.linkedin.pinot.core.operator.aggregation.DefaultAggregationExecutor;
+import com.linkedin.pinot.core.operator.filter.MatchEntireSegmentOperator;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import java.io.File;
@@ -133,6 +138,41 @@ public class DefaultAggregationExecutorTest {
     }
   }
 
+  /**
+   * Runs 'sum', 'min' & 'max' aggregation functions on the DefaultAggregationExecutor, reading the values in batch
+   * from the projection blocks.
+   * Asserts that the aggregation results returned by the executor are as expected.
+   */
+  @Test
+  void testAggregationOnProjectionBlocks() {
+    Map<String, DataSource> dataSourceMap = new HashMap<>();
+    for (String column : _columns) {
+      dataSourceMap.put(column, _indexSegment.getDataSource(column));
+    }
+    Operator filterOperator = new MatchEntireSegmentOperator(NUM_ROWS);
+    BReusableFilteredDocIdSetOperator docIdSetOperator =
+        new BReusableFilteredDocIdSetOperator(filterOperator, NUM_ROWS, 100);
+    MProjectionOperator projectionOperator = new MProjectionOperator(dataSourceMap, docIdSetOperator);
+    projectionOperator.open();
+
+    AggregationExecutor aggregationExecutor = new DefaultAggregationExecutor(_indexSegment, _aggregationInfoList);
+    aggregationExecutor.init();
+    while (projectionOperator.nextBlock() != null) {
+      aggregationExecutor.aggregate(projectionOperator.getCurrentBlock());
+    }
+    aggregationExecutor.finish();
+    projectionOperator.close();
+
+    List<Serializable> result = aggregationExecutor.getResult();
+    for (int i = 0; i < result.size(); i++) {
+      double actual = (double) result.get(i);
+      double expected = computeAggregation(AGGREGATION_FUNCTIONS[i], _inputData[i]);
+      Assert.assertEquals(actual, expected, 1e-5 * Math.abs(expected),
+          "Aggregation mis-match for function " + AGGREGATION_FUNCTIONS[i] + ", Expected: " + expected + " Actual: "
+              + actual);
+    }
+  }
+
   /**
    * Clean up the temporary data (segment).
    *
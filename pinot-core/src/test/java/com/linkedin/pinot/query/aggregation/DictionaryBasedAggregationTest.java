@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.aggregation.AggregationExecutor;
+import com.linkedin.pinot.core.operator.aggregation.AggregationFunctionContext;
+import com.linkedin.pinot.core.operator.aggregation.DefaultAggregationExecutor;
+import com.linkedin.pinot.core.operator.aggregation.function.DictionaryBasedAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.groupby.AggregationGroupByResult;
+import com.linkedin.pinot.core.operator.aggregation.groupby.DefaultGroupByExecutor;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByExecutor;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.query.aggregation.function.MinMaxRangeAggregationFunction.MinMaxRangePair;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.mutable.MutableLong;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+/**
+ * Unit test for the dictionary based 'min', 'max', 'minmaxrange' and 'distinctcount' aggregation functions.
+ * - Builds a segment with random data.
+ * - Asserts that the dictionary based functions are picked for the columns with sorted dictionary.
+ * - Asserts that aggregation and aggregation group by results are the same as the ones computed locally.
+ */
+public class DictionaryBasedAggregationTest {
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory() + File.separator + "DictionaryBasedAggregationTest");
+  private static final String SEGMENT_NAME = "DictionaryBasedAggregation";
+
+  private static final String GROUP_BY_COLUMN = "groupByColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+  private static final String METRIC_COLUMN = "metricColumn";
+  private static final String[] AGGREGATION_FUNCTIONS = {"min", "max", "minmaxrange", "distinctcount", "distinctcount"};
+  private static final String[] AGGREGATION_COLUMNS =
+      {METRIC_COLUMN, METRIC_COLUMN, METRIC_COLUMN, METRIC_COLUMN, STRING_COLUMN};
+
+  private static final int NUM_ROWS = 10000;
+  private static final int NUM_GROUPS = 20;
+  private static final int METRIC_CARDINALITY = 500;
+  private static final int STRING_CARDINALITY = 300;
+
+  private IndexSegment _indexSegment;
+  private List<AggregationInfo> _aggregationInfoList;
+  private int[] _docIdSet;
+  private int[] _groupByValues;
+  private double[] _metricValues;
+  private String[] _stringValues;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec(GROUP_BY_COLUMN, FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec(STRING_COLUMN, FieldSpec.DataType.STRING, true));
+    schema.addField(new MetricFieldSpec(METRIC_COLUMN, FieldSpec.DataType.DOUBLE));
+
+    Random random = new Random();
+    _docIdSet = new int[NUM_ROWS];
+    _groupByValues = new int[NUM_ROWS];
+    _metricValues = new double[NUM_ROWS];
+    _stringValues = new String[NUM_ROWS];
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      _docIdSet[i] = i;
+      _groupByValues[i] = random.nextInt(NUM_GROUPS);
+      _metricValues[i] = random.nextInt(METRIC_CARDINALITY) - METRIC_CARDINALITY / 2 + 0.5;
+      _stringValues[i] = "value_" + random.nextInt(STRING_CARDINALITY);
+
+      Map<String, Object> map = new HashMap<>();
+      map.put(GROUP_BY_COLUMN, _groupByValues[i]);
+      map.put(STRING_COLUMN, _stringValues[i]);
+      map.put(METRIC_COLUMN, _metricValues[i]);
+      GenericRow row = new GenericRow();
+      row.init(map);
+      rows.add(row);
+    }
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig();
+    config.setSegmentName(SEGMENT_NAME);
+    config.setOutDir(INDEX_DIR.getAbsolutePath());
+    config.setSchema(schema);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, createReader(schema, rows));
+    driver.build();
+    _indexSegment = Loaders.IndexSegment.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+
+    _aggregationInfoList = new ArrayList<>();
+    for (int i = 0; i < AGGREGATION_FUNCTIONS.length; i++) {
+      AggregationInfo aggregationInfo = new AggregationInfo();
+      aggregationInfo.setAggregationType(AGGREGATION_FUNCTIONS[i]);
+      aggregationInfo.setAggregationParams(Collections.singletonMap("column", AGGREGATION_COLUMNS[i]));
+      _aggregationInfoList.add(aggregationInfo);
+    }
+  }
+
+  @Test
+  public void testFunctionSelection() {
+    for (int i = 0; i < AGGREGATION_FUNCTIONS.length; i++) {
+      AggregationFunctionContext context =
+          new AggregationFunctionContext(AGGREGATION_FUNCTIONS[i], new String[]{AGGREGATION_COLUMNS[i]}, _indexSegment);
+      Assert.assertTrue(context.getAggregationFunction() instanceof DictionaryBasedAggregationFunction);
+      Assert.assertEquals(context.getAggregationFunction().getName(), AGGREGATION_FUNCTIONS[i]);
+    }
+
+    // Sum is not dictionary based, and min/max on string columns fall back to the value based functions.
+    Assert.assertFalse(new AggregationFunctionContext("sum", new String[]{METRIC_COLUMN},
+        _indexSegment).getAggregationFunction() instanceof DictionaryBasedAggregationFunction);
+    Assert.assertFalse(new AggregationFunctionContext("max", new String[]{STRING_COLUMN},
+        _indexSegment).getAggregationFunction() instanceof DictionaryBasedAggregationFunction);
+  }
+
+  @Test
+  public void testAggregation() {
+    AggregationExecutor aggregationExecutor = new DefaultAggregationExecutor(_indexSegment, _aggregationInfoList);
+    aggregationExecutor.init();
+    aggregationExecutor.aggregate(_docIdSet, 0, NUM_ROWS / 2);
+    aggregationExecutor.aggregate(_docIdSet, NUM_ROWS / 2, NUM_ROWS - NUM_ROWS / 2);
+    aggregationExecutor.finish();
+
+    List<Serializable> result = aggregationExecutor.getResult();
+    Assert.assertEquals(result.size(), AGGREGATION_FUNCTIONS.length);
+    for (int i = 0; i < AGGREGATION_FUNCTIONS.length; i++) {
+      assertResult(result.get(i), computeExpected(i, -1), AGGREGATION_FUNCTIONS[i]);
+    }
+  }
+
+  @Test
+  public void testEmptyAggregation() {
+    AggregationExecutor aggregationExecutor = new DefaultAggregationExecutor(_indexSegment, _aggregationInfoList);
+    aggregationExecutor.init();
+    aggregationExecutor.finish();
+
+    List<Serializable> result = aggregationExecutor.getResult();
+    Assert.assertEquals(result.get(0), Double.POSITIVE_INFINITY);
+    Assert.assertEquals(result.get(1), Double.NEGATIVE_INFINITY);
+    MinMaxRangePair minMaxRangePair = (MinMaxRangePair) result.get(2);
+    Assert.assertEquals(minMaxRangePair.getFirst(), Double.POSITIVE_INFINITY);
+    Assert.assertEquals(minMaxRangePair.getSecond(), Double.NEGATIVE_INFINITY);
+    Assert.assertTrue(((IntOpenHashSet) result.get(3)).isEmpty());
+  }
+
+  @Test
+  public void testAggregationGroupBy() {
+    GroupBy groupBy = new GroupBy();
+    groupBy.setColumns(Collections.singletonList(GROUP_BY_COLUMN));
+    GroupByExecutor groupByExecutor = new DefaultGroupByExecutor(_indexSegment, _aggregationInfoList, groupBy);
+    groupByExecutor.init();
+    groupByExecutor.process(_docIdSet, 0, NUM_ROWS);
+    groupByExecutor.finish();
+
+    AggregationGroupByResult result = groupByExecutor.getResult();
+    Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = result.getGroupKeyIterator();
+    int numGroups = 0;
+    while (groupKeyIterator.hasNext()) {
+      GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+      int groupValue = Integer.parseInt(groupKey.getStringKey());
+      for (int i = 0; i < AGGREGATION_FUNCTIONS.length; i++) {
+        assertResult(result.getResultForKey(groupKey, i), computeExpected(i, groupValue),
+            AGGREGATION_FUNCTIONS[i] + " for group " + groupValue);
+      }
+      numGroups++;
+    }
+    Assert.assertEquals(numGroups, NUM_GROUPS);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    if (_indexSegment != null) {
+      _indexSegment.destroy();
+    }
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  private static void assertResult(Serializable actual, Serializable expected, String message) {
+    if (expected instanceof MinMaxRangePair) {
+      MinMaxRangePair actualPair = (MinMaxRangePair) actual;
+      MinMaxRangePair expectedPair = (MinMaxRangePair) expected;
+      Assert.assertEquals(actualPair.getFirst(), expectedPair.getFirst(), message);
+      Assert.assertEquals(actualPair.getSecond(), expectedPair.getSecond(), message);
+    } else {
+      Assert.assertEquals(actual, expected, message);
+    }
+  }
+
+  /**
+   * Helper method to compute the expected result of the aggregation at the given index, over the given group (or all
+   * documents if group value is -1).
+   */
+  private Serializable computeExpected(int index, int groupValue) {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    IntOpenHashSet valueSet = new IntOpenHashSet();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      if (groupValue != -1 && _groupByValues[i] != groupValue) {
+        continue;
+      }
+      min = Math.min(min, _metricValues[i]);
+      max = Math.max(max, _metricValues[i]);
+      if (AGGREGATION_COLUMNS[index].equals(STRING_COLUMN)) {
+        valueSet.add(_stringValues[i].hashCode());
+      } else {
+        valueSet.add(Double.valueOf(_metricValues[i]).hashCode());
+      }
+    }
+
+    switch (AGGREGATION_FUNCTIONS[index]) {
+      case "min":
+        return min;
+      case "max":
+        return max;
+      case "minmaxrange":
+        return new MinMaxRangePair(min, max);
+      case "distinctcount":
+        return valueSet;
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  private static RecordReader createReader(final Schema schema, final List<GenericRow> rows) {
+    return new RecordReader() {
+      int _counter = 0;
+
+      @Override
+      public void init() {
+      }
+
+      @Override
+      public void rewind() {
+        _counter = 0;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return _counter < rows.size();
+      }
+
+      @Override
+      public Schema getSchema() {
+        return schema;
+      }
+
+      @Override
+      public GenericRow next() {
+        return rows.get(_counter++);
+      }
+
+      @Override
+      public Map<String, MutableLong> getNullCountMap() {
+        return null;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import com.linkedin.pinot.common.utils.DataTableSerDe;
+import com.linkedin.pinot.core.operator.aggregation.function.DistinctCountThetaAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.PercentileTDigestAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.SketchAggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.ObjectGroupByResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.groupby.OffHeapSketchGroupByResultHolder;
+import com.linkedin.pinot.core.query.aggregation.function.quantile.tdigest.TDigestAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.Sketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.SketchSerDe;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.TDigestSketch;
+import com.linkedin.pinot.core.query.aggregation.function.sketch.ThetaSketch;
+import com.linkedin.pinot.core.util.DataTableCustomSerDe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests for the {@link Sketch} implementations, their ser/de, and the sketch based aggregation functions with the
+ * {@link OffHeapSketchGroupByResultHolder}.
+ */
+public class SketchTest {
+  private static final int NUM_VALUES = 100000;
+  private static final double[] QUANTILES = {0.0, 0.01, 0.1, 0.5, 0.9, 0.99, 1.0};
+  private static final Random RANDOM = new Random();
+
+  @Test
+  public void testTDigestAccuracy() {
+    double[] values = new double[NUM_VALUES];
+    TDigestSketch tDigest = new TDigestSketch();
+    for (int i = 0; i < NUM_VALUES; i++) {
+      values[i] = RANDOM.nextGaussian() * 1000;
+      tDigest.add(values[i]);
+    }
+    Arrays.sort(values);
+
+    Assert.assertEquals(tDigest.getTotalWeight(), (double) NUM_VALUES);
+    for (double quantile : QUANTILES) {
+      assertQuantile(tDigest, values, quantile);
+    }
+  }
+
+  @Test
+  public void testTDigestMergeAndSerDe() {
+    double[] values = new double[NUM_VALUES];
+    TDigestSketch[] tDigests = new TDigestSketch[10];
+    for (int i = 0; i < tDigests.length; i++) {
+      tDigests[i] = new TDigestSketch();
+    }
+    for (int i = 0; i < NUM_VALUES; i++) {
+      values[i] = RANDOM.nextDouble();
+      tDigests[i % tDigests.length].add(values[i]);
+    }
+    Arrays.sort(values);
+
+    // Merge half of the digests as objects, and the other half from the serialized bytes.
+    TDigestSketch merged = new TDigestSketch();
+    for (int i = 0; i < tDigests.length; i++) {
+      if (i % 2 == 0) {
+        merged.merge(tDigests[i]);
+      } else {
+        merged.merge((TDigestSketch) SketchSerDe.deserialize(SketchSerDe.serialize(tDigests[i])));
+      }
+    }
+    for (double quantile : QUANTILES) {
+      assertQuantile(merged, values, quantile);
+    }
+
+    DataTableCustomSerDe serDe = new DataTableCustomSerDe();
+    Assert.assertEquals(serDe.getObjectType(merged), DataTableSerDe.DataType.Sketch);
+    TDigestSketch deserialized = serDe.deserialize(serDe.serialize(merged), DataTableSerDe.DataType.Sketch);
+    for (double quantile : QUANTILES) {
+      Assert.assertEquals(deserialized.getQuantile(quantile), merged.getQuantile(quantile));
+    }
+
+    TDigestSketch empty = (TDigestSketch) SketchSerDe.deserialize(SketchSerDe.serialize(new TDigestSketch()));
+    Assert.assertTrue(empty.isEmpty());
+    Assert.assertTrue(Double.isNaN(empty.getQuantile(0.5)));
+  }
+
+  @Test
+  public void testThetaSketch() {
+    // Exact below the nominal entries.
+    ThetaSketch small = new ThetaSketch();
+    for (int i = 0; i < 3 * ThetaSketch.DEFAULT_NOMINAL_ENTRIES; i++) {
+      small.update("value_" + (i % 1000));
+    }
+    Assert.assertEquals(small.getEstimate(), 1000.0);
+
+    // Values [0, 60000) and [40000, 100000).
+    ThetaSketch sketch0 = new ThetaSketch();
+    ThetaSketch sketch1 = new ThetaSketch();
+    for (int i = 0; i < 60000; i++) {
+      sketch0.update(Integer.toString(i));
+      sketch1.update(Integer.toString(i + 40000));
+    }
+    assertEstimate(sketch0.getEstimate(), 60000);
+
+    ThetaSketch union = (ThetaSketch) SketchSerDe.deserialize(SketchSerDe.serialize(sketch0));
+    union.merge(sketch1);
+    assertEstimate(union.getEstimate(), 100000);
+
+    ThetaSketch intersection = (ThetaSketch) SketchSerDe.deserialize(SketchSerDe.serialize(sketch0));
+    intersection.intersect(sketch1);
+    assertEstimate(intersection.getEstimate(), 20000);
+
+    ThetaSketch difference = (ThetaSketch) SketchSerDe.deserialize(SketchSerDe.serialize(sketch0));
+    difference.subtract(sketch1);
+    assertEstimate(difference.getEstimate(), 40000);
+
+    DataTableCustomSerDe serDe = new DataTableCustomSerDe();
+    ThetaSketch deserialized = serDe.deserialize(serDe.serialize(union), DataTableSerDe.DataType.Sketch);
+    Assert.assertEquals(deserialized.getEstimate(), union.getEstimate());
+  }
+
+  @Test
+  public void testOffHeapGroupBy() {
+    int numGroups = 500;
+    int blockSize = 10000;
+    int numBlocks = 10;
+
+    PercentileTDigestAggregationFunction tDigestFunction = new PercentileTDigestAggregationFunction(90);
+    DistinctCountThetaAggregationFunction thetaFunction = new DistinctCountThetaAggregationFunction();
+    GroupByResultHolder tDigestOnHeap = new ObjectGroupByResultHolder(numGroups, numGroups);
+    GroupByResultHolder thetaOnHeap = new ObjectGroupByResultHolder(numGroups, numGroups);
+    OffHeapSketchGroupByResultHolder tDigestOffHeap =
+        new OffHeapSketchGroupByResultHolder(tDigestFunction, numGroups / 10, numGroups);
+    OffHeapSketchGroupByResultHolder thetaOffHeap =
+        new OffHeapSketchGroupByResultHolder(thetaFunction, numGroups / 10, numGroups);
+    tDigestOffHeap.ensureCapacity(numGroups);
+    thetaOffHeap.ensureCapacity(numGroups);
+
+    int[] groupKeys = new int[blockSize];
+    double[] doubleValues = new double[blockSize];
+    String[] stringValues = new String[blockSize];
+    for (int block = 0; block < numBlocks; block++) {
+      for (int i = 0; i < blockSize; i++) {
+        groupKeys[i] = RANDOM.nextInt(numGroups);
+        doubleValues[i] = RANDOM.nextDouble();
+        stringValues[i] = Integer.toString(RANDOM.nextInt(100));
+      }
+      tDigestFunction.aggregateGroupBySV(blockSize, groupKeys, tDigestOnHeap, (Object) doubleValues);
+      tDigestFunction.aggregateGroupBySV(blockSize, groupKeys, tDigestOffHeap, (Object) doubleValues);
+      thetaFunction.aggregateGroupBySV(blockSize, groupKeys, thetaOnHeap, (Object) stringValues);
+      thetaFunction.aggregateGroupBySV(blockSize, groupKeys, thetaOffHeap, (Object) stringValues);
+    }
+
+    for (int groupKey = 0; groupKey < numGroups; groupKey++) {
+      assertSameResult(tDigestFunction, tDigestOnHeap, tDigestOffHeap, groupKey, 0.02);
+      assertSameResult(thetaFunction, thetaOnHeap, thetaOffHeap, groupKey, 0);
+    }
+    Assert.assertTrue(tDigestOffHeap.getOffHeapMemoryAllocated() > 0);
+    Assert.assertNull(new OffHeapSketchGroupByResultHolder(thetaFunction, 1, 1).getResult(0));
+  }
+
+  /**
+   * Checks that a few groups only reserve a small chunk, and that closing the result holder releases the off-heap
+   * memory while keeping the results readable.
+   */
+  @Test
+  public void testOffHeapChunkGrowthAndClose() {
+    int numGroups = 10;
+    PercentileTDigestAggregationFunction function = new PercentileTDigestAggregationFunction(50);
+    OffHeapSketchGroupByResultHolder resultHolder = new OffHeapSketchGroupByResultHolder(function, numGroups, numGroups);
+    int[] groupKeys = new int[numGroups];
+    double[] values = new double[numGroups];
+    for (int i = 0; i < numGroups; i++) {
+      groupKeys[i] = i;
+      values[i] = i;
+    }
+    function.aggregateGroupBySV(numGroups, groupKeys, resultHolder, (Object) values);
+    long offHeapMemoryAllocated = resultHolder.getOffHeapMemoryAllocated();
+    Assert.assertTrue(offHeapMemoryAllocated > 0 && offHeapMemoryAllocated <= 16 * 1024,
+        "Off-heap memory allocated: " + offHeapMemoryAllocated);
+
+    List<Double> expectedResults = new ArrayList<>();
+    for (int groupKey = 0; groupKey < numGroups; groupKey++) {
+      expectedResults.add(function.reduce(Collections.<Object>singletonList(resultHolder.getResult(groupKey))));
+    }
+    resultHolder.close();
+    resultHolder.close();
+    Assert.assertEquals(resultHolder.getOffHeapMemoryAllocated(), 0L);
+    for (int groupKey = 0; groupKey < numGroups; groupKey++) {
+      Assert.assertEquals(function.reduce(Collections.<Object>singletonList(resultHolder.getResult(groupKey))),
+          expectedResults.get(groupKey));
+    }
+
+    try {
+      function.aggregateGroupBySV(numGroups, groupKeys, resultHolder, (Object) values);
+      Assert.fail("Closed result holder should not be updated");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * Combines the per-group t-digests of two segments the same way as the combine operator, and checks the heap used by
+   * the combined results: each group should only hold its serialized sketch, not a full sketch with its buffers.
+   */
+  @Test
+  public void testCombineHeapUsagePerGroup() {
+    int numGroups = 10000;
+    int numValuesPerGroup = 5;
+    PercentileTDigestAggregationFunction function = new PercentileTDigestAggregationFunction(50);
+    TDigestAggregationFunction combineFunction = new TDigestAggregationFunction(50);
+    OffHeapSketchGroupByResultHolder[] segmentResults = new OffHeapSketchGroupByResultHolder[2];
+    int[] groupKeys = new int[numGroups * numValuesPerGroup];
+    double[] values = new double[groupKeys.length];
+    for (int i = 0; i < groupKeys.length; i++) {
+      groupKeys[i] = i % numGroups;
+      values[i] = i;
+    }
+    for (int i = 0; i < segmentResults.length; i++) {
+      segmentResults[i] = new OffHeapSketchGroupByResultHolder(function, numGroups, numGroups);
+      function.aggregateGroupBySV(groupKeys.length, groupKeys, segmentResults[i], (Object) values);
+    }
+
+    long heapBefore = getUsedHeapMemory();
+    Map<Integer, Sketch> combinedResults = new HashMap<>(numGroups);
+    for (OffHeapSketchGroupByResultHolder segmentResult : segmentResults) {
+      for (int groupKey = 0; groupKey < numGroups; groupKey++) {
+        Sketch sketch = segmentResult.getResult(groupKey);
+        Sketch combined = combinedResults.get(groupKey);
+        combinedResults.put(groupKey, combined == null ? sketch : combineFunction.combineTwoValues(combined, sketch));
+      }
+    }
+    long heapPerGroup = (getUsedHeapMemory() - heapBefore) / numGroups;
+    Assert.assertTrue(heapPerGroup < 1024, "Heap used per group: " + heapPerGroup);
+
+    for (int groupKey = 0; groupKey < numGroups; groupKey++) {
+      Sketch combined = combinedResults.get(groupKey);
+      Assert.assertEquals(((TDigestSketch) SketchSerDe.deserialize(SketchSerDe.serialize(combined))).getTotalWeight(),
+          2.0 * numValuesPerGroup);
+      Assert.assertEquals(combineFunction.reduce(Collections.singletonList(combined)),
+          (double) (groupKey + numGroups * (numValuesPerGroup / 2)), numGroups);
+    }
+  }
+
+  /**
+   * Returns the used heap memory once it is stable across garbage collections.
+   */
+  private static long getUsedHeapMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    long usedMemory = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      long newUsedMemory = runtime.totalMemory() - runtime.freeMemory();
+      if (newUsedMemory >= usedMemory) {
+        break;
+      }
+      usedMemory = newUsedMemory;
+    }
+    return usedMemory;
+  }
+
+  private static void assertSameResult(SketchAggregationFunction function, GroupByResultHolder onHeap,
+      GroupByResultHolder offHeap, int groupKey, double delta) {
+    Sketch onHeapSketch = onHeap.getResult(groupKey);
+    Sketch offHeapSketch = offHeap.getResult(groupKey);
+    Assert.assertNotNull(onHeapSketch);
+    Assert.assertNotNull(offHeapSketch);
+    Assert.assertEquals(function.reduce(Collections.<Object>singletonList(offHeapSketch)),
+        function.reduce(Collections.<Object>singletonList(onHeapSketch)), delta);
+  }
+
+  /**
+   * Asserts the estimated quantile is within 1% of the rank of the actual quantile.
+   */
+  private static void assertQuantile(TDigestSketch tDigest, double[] sortedValues, double quantile) {
+    double estimate = tDigest.getQuantile(quantile);
+    int maxIndex = sortedValues.length - 1;
+    double lower = sortedValues[(int) Math.max(0, Math.floor((quantile - 0.01) * maxIndex))];
+    double upper = sortedValues[(int) Math.min(maxIndex, Math.ceil((quantile + 0.01) * maxIndex))];
+    Assert.assertTrue(estimate >= lower && estimate <= upper,
+        "Quantile " + quantile + " estimate " + estimate + " not in [" + lower + ", " + upper + "]");
+  }
+
+  private static void assertEstimate(double estimate, int actual) {
+    Assert.assertEquals(estimate, actual, 0.05 * actual);
+  }
+}
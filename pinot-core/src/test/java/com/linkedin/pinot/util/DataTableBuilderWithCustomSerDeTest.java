@@ -15,11 +15,26 @@
  */
 package com.linkedin.pinot.util;
 
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 import com.linkedin.pinot.common.utils.DataTableBuilderTest;
 import com.linkedin.pinot.common.utils.DataTableJavaSerDe;
 import com.linkedin.pinot.common.utils.DataTableSerDe;
 import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
 import com.linkedin.pinot.core.util.DataTableCustomSerDe;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -91,4 +106,126 @@ public class DataTableBuilderWithCustomSerDeTest extends DataTableBuilderTest {
     super.setDataTableSerDe(javaSerDe);
     super.testSerDeserSpeed();
   }
+
+  @Test
+  public void testVersion3()
+      throws Exception {
+    DataTableSerDeRegistry.getInstance().setVersion(DataTable.Version.V3);
+    try {
+      super.setDataTableSerDe(customSerDe);
+      super.testSimple();
+      super.testStringArray();
+      super.testComplexDataTypes();
+
+      DataSchema schema = new DataSchema(new String[]{"string", "object"},
+          new DataType[]{DataType.STRING, DataType.OBJECT});
+      DataTableBuilder builder = new DataTableBuilder(schema);
+      builder.open();
+      for (int rowId = 0; rowId < 10; rowId++) {
+        builder.startRow();
+        builder.setColumn(0, "value" + (rowId % 3));
+        IntOpenHashSet set = new IntOpenHashSet();
+        set.add(rowId);
+        builder.setColumn(1, set);
+        builder.finishRow();
+      }
+      builder.addMetaData("numDocsScanned", "10");
+      builder.seal();
+      byte[] bytes = builder.build().toBytes();
+      Assert.assertEquals(ByteBuffer.wrap(bytes).getInt(), DataTable.Version.V3.getValue());
+
+      // Read in place from a direct buffer, the way responses are received from the network.
+      ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length + 4);
+      directBuffer.putInt(0);
+      directBuffer.put(bytes);
+      directBuffer.position(4);
+      DataTable dataTable = new DataTable(directBuffer);
+      Assert.assertEquals(dataTable.getMetadata().get("numDocsScanned"), "10");
+      for (int rowId = 0; rowId < 10; rowId++) {
+        Assert.assertEquals(dataTable.getString(rowId, 0), "value" + (rowId % 3));
+        Assert.assertTrue(((IntOpenHashSet) dataTable.getObject(rowId, 1)).contains(rowId));
+      }
+
+      // Re-serializing without accessing the data table must not change it.
+      Assert.assertEquals(new DataTable(bytes).toBytes(), bytes);
+
+      // Conversion to V2 for brokers that do not support V3 yet.
+      DataTable v2DataTable = new DataTable(new DataTable(bytes).toBytes(DataTable.Version.V2));
+      Assert.assertEquals(v2DataTable.getMetadata().get("numDocsScanned"), "10");
+      for (int rowId = 0; rowId < 10; rowId++) {
+        Assert.assertEquals(v2DataTable.getString(rowId, 0), "value" + (rowId % 3));
+        Assert.assertTrue(((IntOpenHashSet) v2DataTable.getObject(rowId, 1)).contains(rowId));
+      }
+    } finally {
+      DataTableSerDeRegistry.getInstance().setVersion(DataTable.Version.V2);
+    }
+  }
+
+  @Test
+  public void testIntOpenHashSetSerDe() {
+    IntOpenHashSet set = new IntOpenHashSet();
+    for (int i = -5; i < 1000; i += 7) {
+      set.add(i);
+    }
+    byte[] bytes = DataTableCustomSerDe.serializeObject(set);
+    Assert.assertEquals(bytes.length, 4 * (set.size() + 1));
+    Assert.assertEquals(DataTableCustomSerDe.deserializeObject(bytes, DataTableSerDe.DataType.IntOpenHashSet), set);
+  }
+
+  /**
+   * Metadata and dictionary of a received data table are de-serialized on first access, which may happen from
+   * several threads at the same time.
+   */
+  @Test
+  public void testConcurrentLazyDeserialization()
+      throws Exception {
+    DataTableSerDeRegistry.getInstance().setVersion(DataTable.Version.V3);
+    final byte[] bytes;
+    try {
+      DataSchema schema = new DataSchema(new String[]{"string"}, new DataType[]{DataType.STRING});
+      DataTableBuilder builder = new DataTableBuilder(schema);
+      builder.open();
+      for (int rowId = 0; rowId < 100; rowId++) {
+        builder.startRow();
+        builder.setColumn(0, "value" + rowId);
+        builder.finishRow();
+      }
+      builder.addMetaData("numDocsScanned", "100");
+      builder.seal();
+      bytes = builder.build().toBytes();
+    } finally {
+      DataTableSerDeRegistry.getInstance().setVersion(DataTable.Version.V2);
+    }
+    final byte[] expectedV2Bytes = new DataTable(bytes).toBytes(DataTable.Version.V2);
+
+    int numThreads = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int iteration = 0; iteration < 100; iteration++) {
+        final DataTable dataTable = new DataTable(bytes);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Map<String, String>>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+          futures.add(executorService.submit(new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call()
+                throws Exception {
+              startLatch.await();
+              // Converting to V2 reads the V3 dictionary
+              Assert.assertEquals(dataTable.toBytes(DataTable.Version.V2), expectedV2Bytes);
+              return dataTable.getMetadata();
+            }
+          }));
+        }
+        startLatch.countDown();
+        Map<String, String> metadata = futures.get(0).get();
+        Assert.assertEquals(metadata.get("numDocsScanned"), "100");
+        for (Future<Map<String, String>> future : futures) {
+          Assert.assertSame(future.get(), metadata);
+        }
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
 }
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.operator.aggregation.AggregationResultHolder;
+import com.linkedin.pinot.core.operator.aggregation.ResultHolderFactory;
+import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunction;
+import com.linkedin.pinot.core.operator.aggregation.function.AggregationFunctionFactory;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupByResultHolder;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks the aggregation functions on blocks of values, with and without group-by, independently of the
+ * projection and the group key generation. Values and group keys come from the synthetic segment data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkAggregationFunctions {
+  private static final int NUM_BLOCKS = 100;
+  private static final int BLOCK_SIZE = DocIdSetPlanNode.MAX_DOC_PER_CALL;
+
+  @Param({"sum", "min", "max", "avg", "minmaxrange", "distinctcount", "distinctcounthll", "percentile50",
+      "percentileest50"})
+  public String _functionName;
+
+  private AggregationFunction _aggregationFunction;
+  private double[][] _values;
+  private int[][] _groupKeys;
+
+  @Setup
+  public void setUp() {
+    _aggregationFunction = AggregationFunctionFactory.getAggregationFunction(_functionName, null);
+    List<GenericRow> rows = SyntheticSegmentGenerator.generateRows(NUM_BLOCKS * BLOCK_SIZE, 0L);
+    _values = new double[NUM_BLOCKS][BLOCK_SIZE];
+    _groupKeys = new int[NUM_BLOCKS][BLOCK_SIZE];
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      for (int j = 0; j < BLOCK_SIZE; j++) {
+        GenericRow row = rows.get(i * BLOCK_SIZE + j);
+        _values[i][j] = ((Number) row.getValue(SyntheticSegmentGenerator.LONG_METRIC)).doubleValue();
+        _groupKeys[i][j] = (Integer) row.getValue(SyntheticSegmentGenerator.INT_DIMENSION);
+      }
+    }
+  }
+
+  @Benchmark
+  public Object aggregate() {
+    AggregationResultHolder resultHolder = ResultHolderFactory.getAggregationResultHolder(_aggregationFunction);
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      _aggregationFunction.aggregate(BLOCK_SIZE, resultHolder, (Object) _values[i]);
+    }
+    return resultHolder.getResult();
+  }
+
+  @Benchmark
+  public Object aggregateGroupBySV() {
+    GroupByResultHolder resultHolder = ResultHolderFactory.getGroupByResultHolder(_aggregationFunction,
+        SyntheticSegmentGenerator.INT_DIMENSION_CARDINALITY);
+    resultHolder.ensureCapacity(SyntheticSegmentGenerator.INT_DIMENSION_CARDINALITY);
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      _aggregationFunction.aggregateGroupBySV(BLOCK_SIZE, _groupKeys[i], resultHolder, (Object) _values[i]);
+    }
+    return resultHolder.getResult(0);
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkAggregationFunctions.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.query.reduce.BrokerReduceService;
+import com.linkedin.pinot.core.query.reduce.IncrementalBrokerReducer;
+import com.linkedin.pinot.core.util.DataTableCustomSerDe;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks reducing the serialized responses of several servers with {@link BrokerReduceService}, for each shape of
+ * response. Each server response comes from a segment generated with a different seed.
+ *
+ * <p>{@link #reduce()} goes through the map based {@link BrokerReduceService#reduceOnDataTable} entry point, which
+ * needs all the responses before reducing. {@link #reduceIncrementally()} merges the responses one at a time as the
+ * broker does when they arrive, and {@link #addIncrementally()} isolates the merge cost from building the final
+ * response in {@link IncrementalBrokerReducer#getResult()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkBrokerReduce {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkBrokerReduce");
+  private static final int NUM_ROWS_PER_SERVER = 200000;
+
+  @Param({"selection", "aggregation", "groupBy"})
+  public String _queryType;
+
+  @Param({"1", "8"})
+  public int _numServers;
+
+  private final BrokerReduceService _brokerReduceService = new BrokerReduceService();
+  private BrokerRequest _brokerRequest;
+  private byte[][] _serverResponses;
+  private ServerInstance[] _serverInstances;
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    DataTableSerDeRegistry.getInstance().register(new DataTableCustomSerDe());
+    _brokerRequest = SyntheticSegmentGenerator.compileQuery(SyntheticSegmentGenerator.QUERIES.get(_queryType));
+    _serverResponses = new byte[_numServers][];
+    _serverInstances = new ServerInstance[_numServers];
+
+    FileUtils.deleteQuietly(INDEX_DIR);
+    try {
+      for (int i = 0; i < _numServers; i++) {
+        File segmentDir =
+            SyntheticSegmentGenerator.generateSegment(INDEX_DIR, "reduceSegment_" + i, NUM_ROWS_PER_SERVER, i);
+        IndexSegment indexSegment = SyntheticSegmentGenerator.loadSegment(segmentDir, ReadMode.heap);
+        _serverResponses[i] = SyntheticSegmentGenerator.executeQuery(indexSegment, _brokerRequest).toBytes();
+        indexSegment.destroy();
+        _serverInstances[i] = new ServerInstance("localhost", 8098 + i);
+      }
+    } finally {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+  }
+
+  @Benchmark
+  public BrokerResponseNative reduce() {
+    Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<>();
+    for (int i = 0; i < _numServers; i++) {
+      instanceResponseMap.put(_serverInstances[i], new DataTable(_serverResponses[i]));
+    }
+    return _brokerReduceService.reduceOnDataTable(_brokerRequest, instanceResponseMap);
+  }
+
+  @Benchmark
+  public BrokerResponseNative reduceIncrementally() {
+    return addResponses().getResult();
+  }
+
+  @Benchmark
+  public IncrementalBrokerReducer addIncrementally() {
+    return addResponses();
+  }
+
+  private IncrementalBrokerReducer addResponses() {
+    IncrementalBrokerReducer reducer = _brokerReduceService.createIncrementalReducer(_brokerRequest);
+    reducer.setNumServersQueried(_numServers);
+    for (int i = 0; i < _numServers; i++) {
+      reducer.add(_serverInstances[i], new DataTable(_serverResponses[i]));
+    }
+    return reducer;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkBrokerReduce.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
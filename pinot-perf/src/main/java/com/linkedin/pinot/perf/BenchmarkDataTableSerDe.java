@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.util.DataTableCustomSerDe;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks serializing the instance responses on the server, and de-serializing and reading them on the broker, for
+ * each shape of response and DataTable version.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkDataTableSerDe {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkDataTableSerDe");
+  private static final int NUM_ROWS = 1000000;
+
+  @Param({"selection", "aggregation", "groupBy"})
+  public String _queryType;
+
+  @Param({"V2", "V3"})
+  public String _version;
+
+  private DataTable.Version _dataTableVersion;
+  private DataTable _dataTable;
+  private byte[] _bytes;
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    DataTableSerDeRegistry.getInstance().register(new DataTableCustomSerDe());
+    _dataTableVersion = DataTable.Version.valueOf(_version);
+
+    FileUtils.deleteQuietly(INDEX_DIR);
+    try {
+      File segmentDir = SyntheticSegmentGenerator.generateSegment(INDEX_DIR, "dataTableSegment", NUM_ROWS, 0L);
+      IndexSegment indexSegment = SyntheticSegmentGenerator.loadSegment(segmentDir, ReadMode.heap);
+      _dataTable = SyntheticSegmentGenerator.executeQuery(indexSegment,
+          SyntheticSegmentGenerator.compileQuery(SyntheticSegmentGenerator.QUERIES.get(_queryType)));
+      indexSegment.destroy();
+    } finally {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+    _bytes = _dataTable.toBytes(_dataTableVersion);
+  }
+
+  @Benchmark
+  public byte[] serialize()
+      throws Exception {
+    return _dataTable.toBytes(_dataTableVersion);
+  }
+
+  @Benchmark
+  public DataTable deserialize() {
+    return new DataTable(_bytes);
+  }
+
+  @Benchmark
+  public long deserializeAndRead() {
+    return readAll(new DataTable(_bytes));
+  }
+
+  /**
+   * Reads all the values of a data table, as the broker does while reducing it.
+   */
+  static long readAll(DataTable dataTable) {
+    long result = 0;
+    DataSchema dataSchema = dataTable.getDataSchema();
+    int numRows = dataTable.getNumberOfRows();
+    int numColumns = dataSchema.size();
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      for (int colId = 0; colId < numColumns; colId++) {
+        switch (dataSchema.getColumnType(colId)) {
+          case INT:
+            result += dataTable.getInt(rowId, colId);
+            break;
+          case LONG:
+            result += dataTable.getLong(rowId, colId);
+            break;
+          case DOUBLE:
+            result += (long) dataTable.getDouble(rowId, colId);
+            break;
+          case STRING:
+            result += dataTable.getString(rowId, colId).length();
+            break;
+          case OBJECT:
+            result += dataTable.getObject(rowId, colId).hashCode();
+            break;
+          default:
+            throw new UnsupportedOperationException(
+                "Unsupported column type: " + dataSchema.getColumnType(colId));
+        }
+      }
+    }
+    return result;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkDataTableSerDe.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
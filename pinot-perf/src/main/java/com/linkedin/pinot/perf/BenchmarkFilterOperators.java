@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.FilterPlanNode;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks building the filter operator tree of a segment with {@link FilterPlanNode}, and iterating over all the
+ * matching documents, for the different kinds of predicates and indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkFilterOperators {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkFilterOperators");
+  private static final int NUM_ROWS = 1000000;
+
+  @Param({
+      // Inverted index
+      "intDim = 10",
+      "stringDim IN ('value_1', 'value_2', 'value_3')",
+      // Sorted index
+      "sortedDim BETWEEN 1000 AND 2000",
+      // Scan
+      "highCardinalityDim > 90000",
+      // Combinations
+      "intDim < 100 AND stringDim = 'value_5'",
+      "intDim = 10 OR highCardinalityDim < 1000"
+  })
+  public String _filter;
+
+  private IndexSegment _indexSegment;
+  private BrokerRequest _brokerRequest;
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    File segmentDir = SyntheticSegmentGenerator.generateSegment(INDEX_DIR, "filterSegment", NUM_ROWS, 0L);
+    _indexSegment = SyntheticSegmentGenerator.loadSegment(segmentDir, ReadMode.mmap);
+    _brokerRequest = SyntheticSegmentGenerator.compileQuery(
+        "SELECT COUNT(*) FROM " + SyntheticSegmentGenerator.TABLE_NAME + " WHERE " + _filter);
+  }
+
+  @TearDown
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Benchmark
+  public int filter() {
+    Operator filterOperator = new FilterPlanNode(_indexSegment, _brokerRequest).run();
+    filterOperator.open();
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+    int numMatchedDocs = 0;
+    while (iterator.next() != Constants.EOF) {
+      numMatchedDocs++;
+    }
+    filterOperator.close();
+    return numMatchedDocs;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkFilterOperators.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
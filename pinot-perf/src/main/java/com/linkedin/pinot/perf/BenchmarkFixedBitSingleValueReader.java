@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.io.reader.impl.v1.FixedBitSingleValueReader;
+import com.linkedin.pinot.core.io.writer.impl.v1.FixedBitSingleValueWriter;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import com.linkedin.pinot.core.segment.memory.PinotDataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks decoding the fixed bit forward index used for dictionary encoded single value columns, value by value
+ * and in blocks of contiguous or sparse rows, for different numbers of bits per value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkFixedBitSingleValueReader {
+  private static final File INDEX_FILE =
+      new File(FileUtils.getTempDirectory(), "BenchmarkFixedBitSingleValueReader.sv.unsorted.fwd");
+  private static final int NUM_ROWS = 2500000;
+  private static final int BLOCK_SIZE = DocIdSetPlanNode.MAX_DOC_PER_CALL;
+  private static final int SPARSE_STEP = 7;
+
+  @Param({"1", "7", "10", "17", "24"})
+  public int _numBits;
+
+  private PinotDataBuffer _dataBuffer;
+  private FixedBitSingleValueReader _reader;
+  private final int[] _rows = new int[BLOCK_SIZE];
+  private final int[] _values = new int[BLOCK_SIZE];
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_FILE);
+    FixedBitSingleValueWriter writer = new FixedBitSingleValueWriter(INDEX_FILE, NUM_ROWS, _numBits);
+    Random random = new Random(0);
+    int maxValue = 1 << _numBits;
+    for (int i = 0; i < NUM_ROWS; i++) {
+      writer.setInt(i, random.nextInt(maxValue));
+    }
+    writer.close();
+
+    _dataBuffer = PinotDataBuffer.fromFile(INDEX_FILE, ReadMode.mmap, FileChannel.MapMode.READ_ONLY, "benchmark");
+    _reader = new FixedBitSingleValueReader(_dataBuffer, NUM_ROWS, _numBits, false);
+  }
+
+  @TearDown
+  public void tearDown()
+      throws IOException {
+    _reader.close();
+    _dataBuffer.close();
+    FileUtils.deleteQuietly(INDEX_FILE);
+  }
+
+  @Benchmark
+  public long getInt() {
+    long result = 0;
+    for (int i = 0; i < NUM_ROWS; i++) {
+      result += _reader.getInt(i);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long readValuesContiguous() {
+    long result = 0;
+    for (int startRow = 0; startRow < NUM_ROWS; startRow += BLOCK_SIZE) {
+      int length = Math.min(BLOCK_SIZE, NUM_ROWS - startRow);
+      for (int i = 0; i < length; i++) {
+        _rows[i] = startRow + i;
+      }
+      _reader.readValues(_rows, 0, length, _values, 0);
+      result += _values[length - 1];
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long readValuesSparse() {
+    long result = 0;
+    int length = 0;
+    for (int row = 0; row < NUM_ROWS; row += SPARSE_STEP) {
+      _rows[length++] = row;
+      if (length == BLOCK_SIZE) {
+        _reader.readValues(_rows, 0, length, _values, 0);
+        result += _values[length - 1];
+        length = 0;
+      }
+    }
+    if (length > 0) {
+      _reader.readValues(_rows, 0, length, _values, 0);
+      result += _values[length - 1];
+    }
+    return result;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkFixedBitSingleValueReader.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
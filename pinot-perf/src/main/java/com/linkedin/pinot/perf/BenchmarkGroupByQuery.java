@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.Plan;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.query.reduce.BrokerReduceService;
+import com.linkedin.pinot.core.util.DataTableCustomSerDe;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks a group-by query end to end without a cluster: the server executes the query on several segments and
+ * combines their group-by results with {@link com.linkedin.pinot.core.operator.MCombineGroupByOperator}, then the
+ * broker reduces the serialized response. This is the path {@link BenchmarkQueryEngine} exercises through a running
+ * cluster, on generated data so that runs against different revisions are comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkGroupByQuery {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkGroupByQuery");
+  private static final int NUM_SEGMENTS = 8;
+  private static final int NUM_ROWS_PER_SEGMENT = 200000;
+  private static final int NUM_THREADS = 4;
+  private static final long TIMEOUT_MS = 600000L;
+
+  @Param({"intDim", "intDim,stringDim", "highCardinalityDim,intDim"})
+  public String _groupByColumns;
+
+  private final BrokerReduceService _brokerReduceService = new BrokerReduceService();
+  private final ServerInstance _serverInstance = new ServerInstance("localhost", 8098);
+  private final List<IndexSegment> _indexSegments = new ArrayList<>();
+  private final List<SegmentDataManager> _segmentDataManagers = new ArrayList<>();
+  private BrokerRequest _brokerRequest;
+  private InstancePlanMakerImplV2 _planMaker;
+  private ExecutorService _executorService;
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    DataTableSerDeRegistry.getInstance().register(new DataTableCustomSerDe());
+    _brokerRequest = SyntheticSegmentGenerator.compileQuery(
+        "SELECT SUM(longMetric), COUNT(*) FROM " + SyntheticSegmentGenerator.TABLE_NAME + " GROUP BY "
+            + _groupByColumns + " TOP 100");
+    // Default server configuration, which plans group-bys with MCombineGroupByOperator.
+    _planMaker = new InstancePlanMakerImplV2(new QueryExecutorConfig(new PropertiesConfiguration()));
+    _executorService = Executors.newFixedThreadPool(NUM_THREADS);
+
+    FileUtils.deleteQuietly(INDEX_DIR);
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      File segmentDir =
+          SyntheticSegmentGenerator.generateSegment(INDEX_DIR, "groupBySegment_" + i, NUM_ROWS_PER_SEGMENT, i);
+      IndexSegment indexSegment = SyntheticSegmentGenerator.loadSegment(segmentDir, ReadMode.mmap);
+      _indexSegments.add(indexSegment);
+      _segmentDataManagers.add(new OfflineSegmentDataManager(indexSegment));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    _executorService.shutdown();
+    for (IndexSegment indexSegment : _indexSegments) {
+      indexSegment.destroy();
+    }
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Benchmark
+  public BrokerResponseNative executeAndReduce()
+      throws Exception {
+    Plan plan =
+        _planMaker.makeInterSegmentPlan(_segmentDataManagers, _brokerRequest, _executorService, TIMEOUT_MS);
+    plan.execute();
+    DataTable instanceResponse = new DataTable(plan.getInstanceResponse().toBytes());
+    return _brokerReduceService.reduceOnDataTable(_brokerRequest,
+        Collections.singletonMap(_serverInstance, instanceResponse));
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkGroupByQuery.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.DataFetcher;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.aggregation.groupby.DefaultGroupKeyGenerator;
+import com.linkedin.pinot.core.operator.aggregation.groupby.GroupKeyGenerator;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmarks generating the group keys of all the documents of a segment with {@link DefaultGroupKeyGenerator}, and
+ * iterating over the unique group keys, for the array based (single column) and long map based (two columns) storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkGroupKeyGenerator {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkGroupKeyGenerator");
+  private static final int NUM_ROWS = 1000000;
+
+  @Param({"intDim", "intDim,stringDim", "highCardinalityDim,intDim"})
+  public String _groupByColumns;
+
+  private IndexSegment _indexSegment;
+  private DataFetcher _dataFetcher;
+  private String[] _groupByColumnArray;
+  private final int[] _docIds = new int[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+  private final int[] _docIdToGroupKey = new int[DocIdSetPlanNode.MAX_DOC_PER_CALL];
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    File segmentDir = SyntheticSegmentGenerator.generateSegment(INDEX_DIR, "groupKeySegment", NUM_ROWS, 0L);
+    _indexSegment = SyntheticSegmentGenerator.loadSegment(segmentDir, ReadMode.mmap);
+    _dataFetcher = new DataFetcher(_indexSegment);
+    _groupByColumnArray = _groupByColumns.split(",");
+  }
+
+  @TearDown
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Benchmark
+  public int generateGroupKeys() {
+    return generateGroupKeys(new DefaultGroupKeyGenerator(_dataFetcher, _groupByColumnArray));
+  }
+
+  @Benchmark
+  public int generateAndIterateGroupKeys() {
+    DefaultGroupKeyGenerator groupKeyGenerator = new DefaultGroupKeyGenerator(_dataFetcher, _groupByColumnArray);
+    int result = generateGroupKeys(groupKeyGenerator);
+    Iterator<GroupKeyGenerator.GroupKey> iterator = groupKeyGenerator.getUniqueGroupKeys();
+    while (iterator.hasNext()) {
+      result += iterator.next().getStringKey().length();
+    }
+    return result;
+  }
+
+  private int generateGroupKeys(DefaultGroupKeyGenerator groupKeyGenerator) {
+    int result = 0;
+    for (int startDocId = 0; startDocId < NUM_ROWS; startDocId += DocIdSetPlanNode.MAX_DOC_PER_CALL) {
+      int length = Math.min(DocIdSetPlanNode.MAX_DOC_PER_CALL, NUM_ROWS - startDocId);
+      for (int i = 0; i < length; i++) {
+        _docIds[i] = startDocId + i;
+      }
+      groupKeyGenerator.generateKeysForDocIdSet(_docIds, 0, length, _docIdToGroupKey);
+      result += _docIdToGroupKey[length - 1];
+    }
+    return result + groupKeyGenerator.getCurrentGroupKeyUpperBound();
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkGroupKeyGenerator.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
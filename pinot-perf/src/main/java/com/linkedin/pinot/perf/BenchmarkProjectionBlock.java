@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.operator.blocks.ProjectionBlock;
+import com.linkedin.pinot.core.operator.docidsets.DocIdSetBlock;
+import com.linkedin.pinot.core.operator.filter.MatchEntireSegmentOperator;
+import com.linkedin.pinot.core.plan.DocIdSetPlanNode;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares reading a dimension and a metric column value by value through {@link BlockSingleValIterator} against
+ * reading them in batch through the primitive arrays of {@link ProjectionBlock}.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkProjectionBlock {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkProjectionBlock");
+  private static final String SEGMENT_NAME = "benchmarkProjectionBlock";
+  private static final String DIMENSION_COLUMN = "dimension";
+  private static final String METRIC_COLUMN = "metric";
+  private static final int NUM_ROWS = 2500000;
+  private static final int DIMENSION_CARDINALITY = 1000;
+  private static final int METRIC_CARDINALITY = 100000;
+
+  private IndexSegment _indexSegment;
+  private Map<String, DataSource> _dataSourceMap;
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    Schema schema = new Schema();
+    schema.addField(new DimensionFieldSpec(DIMENSION_COLUMN, FieldSpec.DataType.INT, true));
+    schema.addField(new MetricFieldSpec(METRIC_COLUMN, FieldSpec.DataType.LONG));
+
+    Random random = new Random(0);
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Map<String, Object> map = new HashMap<>();
+      map.put(DIMENSION_COLUMN, random.nextInt(DIMENSION_CARDINALITY));
+      map.put(METRIC_COLUMN, (long) random.nextInt(METRIC_CARDINALITY));
+      GenericRow row = new GenericRow();
+      row.init(map);
+      rows.add(row);
+    }
+
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setSegmentName(SEGMENT_NAME);
+    config.setOutDir(INDEX_DIR.getAbsolutePath());
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new ListRecordReader(schema, rows));
+    driver.build();
+
+    _indexSegment = Loaders.IndexSegment.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.mmap);
+    _dataSourceMap = new HashMap<>();
+    _dataSourceMap.put(DIMENSION_COLUMN, _indexSegment.getDataSource(DIMENSION_COLUMN));
+    _dataSourceMap.put(METRIC_COLUMN, _indexSegment.getDataSource(METRIC_COLUMN));
+  }
+
+  @TearDown
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  private MProjectionOperator buildProjectionOperator() {
+    int totalDocs = _indexSegment.getSegmentMetadata().getTotalDocs();
+    Operator filterOperator = new MatchEntireSegmentOperator(totalDocs);
+    BReusableFilteredDocIdSetOperator docIdSetOperator =
+        new BReusableFilteredDocIdSetOperator(filterOperator, totalDocs, DocIdSetPlanNode.MAX_DOC_PER_CALL);
+    MProjectionOperator projectionOperator = new MProjectionOperator(_dataSourceMap, docIdSetOperator);
+    projectionOperator.open();
+    return projectionOperator;
+  }
+
+  /**
+   * Per-value path: one iterator call and one dictionary lookup per document and column.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public double iteratorPath() {
+    MProjectionOperator projectionOperator = buildProjectionOperator();
+    Dictionary dimensionDictionary = _dataSourceMap.get(DIMENSION_COLUMN).getDictionary();
+    Dictionary metricDictionary = _dataSourceMap.get(METRIC_COLUMN).getDictionary();
+    BlockSingleValIterator dimensionIterator = (BlockSingleValIterator) _dataSourceMap.get(DIMENSION_COLUMN)
+        .nextBlock(new BlockId(0)).getBlockValueSet().iterator();
+    BlockSingleValIterator metricIterator = (BlockSingleValIterator) _dataSourceMap.get(METRIC_COLUMN)
+        .nextBlock(new BlockId(0)).getBlockValueSet().iterator();
+
+    double result = 0;
+    while (projectionOperator.nextBlock() != null) {
+      DocIdSetBlock docIdSetBlock = (DocIdSetBlock) projectionOperator.getCurrentBlock().getDocIdSetBlock();
+      int[] docIds = docIdSetBlock.getDocIdSet();
+      int length = docIdSetBlock.getSearchableLength();
+      for (int i = 0; i < length; i++) {
+        int docId = docIds[i];
+        dimensionIterator.skipTo(docId);
+        metricIterator.skipTo(docId);
+        result += dimensionDictionary.getDoubleValue(dimensionIterator.nextIntVal());
+        result += metricDictionary.getDoubleValue(metricIterator.nextIntVal());
+      }
+    }
+    projectionOperator.close();
+    return result;
+  }
+
+  /**
+   * Batch path: dictionary ids and values are fetched for the whole doc id block into reusable primitive arrays.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public double projectionBlockPath() {
+    MProjectionOperator projectionOperator = buildProjectionOperator();
+
+    double result = 0;
+    while (projectionOperator.nextBlock() != null) {
+      ProjectionBlock projectionBlock = projectionOperator.getCurrentBlock();
+      int length = projectionBlock.getNumDocs();
+      double[] dimensionValues = projectionBlock.getDoubleValuesForSVColumn(DIMENSION_COLUMN);
+      long[] metricValues = projectionBlock.getLongValuesForSVColumn(METRIC_COLUMN);
+      for (int i = 0; i < length; i++) {
+        result += dimensionValues[i];
+        result += metricValues[i];
+      }
+    }
+    projectionOperator.close();
+    return result;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    Options opt = new OptionsBuilder().include(BenchmarkProjectionBlock.class.getSimpleName())
+        .warmupIterations(3)
+        .measurementIterations(5)
+        .forks(1)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
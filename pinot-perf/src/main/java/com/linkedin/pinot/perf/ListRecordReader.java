@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.mutable.MutableLong;
+
+
+/**
+ * Record reader over an in-memory list of rows, used to build benchmark segments.
+ */
+public class ListRecordReader implements RecordReader {
+  private final Schema _schema;
+  private final List<GenericRow> _rows;
+  private int _index = 0;
+
+  public ListRecordReader(Schema schema, List<GenericRow> rows) {
+    _schema = schema;
+    _rows = rows;
+  }
+
+  @Override
+  public void init() {
+  }
+
+  @Override
+  public void rewind() {
+    _index = 0;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return _index < _rows.size();
+  }
+
+  @Override
+  public Schema getSchema() {
+    return _schema;
+  }
+
+  @Override
+  public GenericRow next() {
+    return _rows.get(_index++);
+  }
+
+  @Override
+  public Map<String, MutableLong> getNullCountMap() {
+    return null;
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the query engine micro benchmarks and writes the results as JSON, so that runs against different revisions
+ * can be compared.
+ *
+ * <p>All standard JMH command line options are accepted. When no benchmark is selected, every query engine benchmark
+ * is run; when no result file is given, results go to {@value #DEFAULT_RESULT_FILE}.
+ */
+public class QueryEngineBenchmarkRunner {
+  private static final String DEFAULT_RESULT_FILE = "pinot-query-engine-benchmarks.json";
+  private static final Class<?>[] BENCHMARKS =
+      new Class<?>[]{BenchmarkFilterOperators.class, BenchmarkGroupKeyGenerator.class,
+          BenchmarkAggregationFunctions.class, BenchmarkFixedBitSingleValueReader.class,
+          BenchmarkDataTableSerDe.class, BenchmarkBrokerReduce.class, BenchmarkGroupByQuery.class};
+
+  private QueryEngineBenchmarkRunner() {
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    if (commandLineOptions.shouldHelp()) {
+      commandLineOptions.showHelp();
+      return;
+    }
+
+    ChainedOptionsBuilder optionsBuilder = new OptionsBuilder().parent(commandLineOptions);
+    if (commandLineOptions.getIncludes().isEmpty()) {
+      for (Class<?> benchmark : BENCHMARKS) {
+        optionsBuilder.include(benchmark.getSimpleName());
+      }
+    }
+    if (!commandLineOptions.getResult().hasValue()) {
+      optionsBuilder.result(DEFAULT_RESULT_FILE);
+    }
+    if (!commandLineOptions.getResultFormat().hasValue()) {
+      optionsBuilder.resultFormat(ResultFormatType.JSON);
+    }
+    new Runner(optionsBuilder.build()).run();
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.perf;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.manager.offline.OfflineSegmentDataManager;
+import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.plan.Plan;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.loader.Loaders;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+
+
+/**
+ * Generates segments with random data for the query engine benchmarks, using {@link SegmentIndexCreationDriverImpl}.
+ *
+ * <ul>
+ *   <li>{@link #INT_DIMENSION}: INT dimension with cardinality 1000 and an inverted index.</li>
+ *   <li>{@link #STRING_DIMENSION}: STRING dimension with cardinality 100 and an inverted index.</li>
+ *   <li>{@link #HIGH_CARDINALITY_DIMENSION}: INT dimension with cardinality 100000.</li>
+ *   <li>{@link #SORTED_DIMENSION}: sorted INT dimension, with 100 documents per value.</li>
+ *   <li>{@link #LONG_METRIC} and {@link #DOUBLE_METRIC}: metrics with cardinality 100000.</li>
+ * </ul>
+ *
+ * Data only depends on the number of rows and the seed, so that results are comparable across runs and releases.
+ */
+public class SyntheticSegmentGenerator {
+  public static final String TABLE_NAME = "benchmarkTable";
+  public static final String INT_DIMENSION = "intDim";
+  public static final String STRING_DIMENSION = "stringDim";
+  public static final String HIGH_CARDINALITY_DIMENSION = "highCardinalityDim";
+  public static final String SORTED_DIMENSION = "sortedDim";
+  public static final String LONG_METRIC = "longMetric";
+  public static final String DOUBLE_METRIC = "doubleMetric";
+
+  public static final int INT_DIMENSION_CARDINALITY = 1000;
+  public static final int STRING_DIMENSION_CARDINALITY = 100;
+  public static final int HIGH_CARDINALITY_DIMENSION_CARDINALITY = 100000;
+  public static final int SORTED_DIMENSION_DOCS_PER_VALUE = 100;
+  public static final int METRIC_CARDINALITY = 100000;
+  public static final String STRING_VALUE_PREFIX = "value_";
+
+  /**
+   * Queries on the generated segments for each shape of instance response: selection, aggregation and group-by.
+   */
+  public static final Map<String, String> QUERIES;
+
+  static {
+    Map<String, String> queries = new HashMap<>();
+    queries.put("selection", "SELECT intDim, stringDim, longMetric FROM " + TABLE_NAME
+        + " ORDER BY longMetric DESC LIMIT 1000");
+    queries.put("aggregation", "SELECT SUM(longMetric), MAX(doubleMetric), DISTINCTCOUNT(intDim) FROM " + TABLE_NAME);
+    queries.put("groupBy", "SELECT SUM(longMetric), COUNT(*) FROM " + TABLE_NAME + " GROUP BY intDim, stringDim TOP 100");
+    QUERIES = Collections.unmodifiableMap(queries);
+  }
+
+  private static final List<String> INVERTED_INDEX_COLUMNS = Arrays.asList(INT_DIMENSION, STRING_DIMENSION);
+
+  private SyntheticSegmentGenerator() {
+  }
+
+  public static Schema getSchema() {
+    Schema schema = new Schema();
+    schema.setSchemaName(TABLE_NAME);
+    schema.addField(new DimensionFieldSpec(INT_DIMENSION, FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec(STRING_DIMENSION, FieldSpec.DataType.STRING, true));
+    schema.addField(new DimensionFieldSpec(HIGH_CARDINALITY_DIMENSION, FieldSpec.DataType.INT, true));
+    schema.addField(new DimensionFieldSpec(SORTED_DIMENSION, FieldSpec.DataType.INT, true));
+    schema.addField(new MetricFieldSpec(LONG_METRIC, FieldSpec.DataType.LONG));
+    schema.addField(new MetricFieldSpec(DOUBLE_METRIC, FieldSpec.DataType.DOUBLE));
+    return schema;
+  }
+
+  /**
+   * Generates the rows of a segment.
+   */
+  public static List<GenericRow> generateRows(int numRows, long seed) {
+    Random random = new Random(seed);
+    List<GenericRow> rows = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      Map<String, Object> map = new HashMap<>();
+      map.put(INT_DIMENSION, random.nextInt(INT_DIMENSION_CARDINALITY));
+      map.put(STRING_DIMENSION, STRING_VALUE_PREFIX + random.nextInt(STRING_DIMENSION_CARDINALITY));
+      map.put(HIGH_CARDINALITY_DIMENSION, random.nextInt(HIGH_CARDINALITY_DIMENSION_CARDINALITY));
+      map.put(SORTED_DIMENSION, i / SORTED_DIMENSION_DOCS_PER_VALUE);
+      map.put(LONG_METRIC, (long) random.nextInt(METRIC_CARDINALITY));
+      map.put(DOUBLE_METRIC, random.nextInt(METRIC_CARDINALITY) / 10.0);
+      GenericRow row = new GenericRow();
+      row.init(map);
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  /**
+   * Generates a segment under the given directory, and returns the segment directory.
+   */
+  public static File generateSegment(File outDir, String segmentName, int numRows, long seed)
+      throws Exception {
+    Schema schema = getSchema();
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(schema);
+    config.setTableName(TABLE_NAME);
+    config.setSegmentName(segmentName);
+    config.setOutDir(outDir.getAbsolutePath());
+    config.setInvertedIndexCreationColumns(INVERTED_INDEX_COLUMNS);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new ListRecordReader(schema, generateRows(numRows, seed)));
+    driver.build();
+    return new File(outDir, driver.getSegmentName());
+  }
+
+  /**
+   * Loads a generated segment along with its inverted indexes.
+   */
+  public static IndexSegment loadSegment(File segmentDir, ReadMode readMode)
+      throws Exception {
+    PropertiesConfiguration tableDataManagerConfig = new PropertiesConfiguration();
+    tableDataManagerConfig.setProperty(IndexLoadingConfigMetadata.KEY_OF_LOADING_INVERTED_INDEX,
+        INVERTED_INDEX_COLUMNS);
+    return Loaders.IndexSegment.load(segmentDir, readMode, new IndexLoadingConfigMetadata(tableDataManagerConfig));
+  }
+
+  public static BrokerRequest compileQuery(String query) {
+    return new Pql2Compiler().compileToBrokerRequest(query);
+  }
+
+  /**
+   * Executes a query on a segment the same way the server does, and returns the instance response.
+   */
+  public static DataTable executeQuery(IndexSegment indexSegment, BrokerRequest brokerRequest)
+      throws ConfigurationException {
+    List<SegmentDataManager> segmentDataManagers =
+        Collections.<SegmentDataManager>singletonList(new OfflineSegmentDataManager(indexSegment));
+    // Same plan maker configuration as the server, the default constructor uses the old aggregation operators
+    InstancePlanMakerImplV2 planMaker =
+        new InstancePlanMakerImplV2(new QueryExecutorConfig(new PropertiesConfiguration()));
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      Plan plan = planMaker.makeInterSegmentPlan(segmentDataManagers, brokerRequest, executorService, 600000L);
+      plan.execute();
+      return plan.getInstanceResponse();
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
@@ -30,11 +30,14 @@ public class ServerConf {
   private static String PINOT_SERVER_INSTANCE = "pinot.server.instance";
   private static String PINOT_SERVER_METRICS = "pinot.server.metrics";
   private static String PINOT_SERVER_QUERY = "pinot.server.query.executor";
+  private static String PINOT_SERVER_QUERY_SCHEDULER = "pinot.server.query.scheduler";
   private static String PINOT_SERVER_REQUEST = "pinot.server.request";
   private static String PINOT_SERVER_NETTY = "pinot.server.netty";
   private static String PINOT_SERVER_INSTANCE_DATA_MANAGER_CLASS = "pinot.server.instance.data.manager.class";
   private static String PINOT_SERVER_QUERY_EXECUTOR_CLASS = "pinot.server.query.executor.class";
   private static String PINOT_SERVER_REQUEST_HANDLER_FACTORY_CLASS = "pinot.server.requestHandlerFactory.class";
+  private static String PINOT_SERVER_DATA_TABLE_VERSION = "pinot.server.dataTable.version";
+  private static int DEFAULT_DATA_TABLE_VERSION = 2;
 
   private Configuration _serverConf;
 
@@ -54,6 +57,10 @@ public class ServerConf {
     return _serverConf.subset(PINOT_SERVER_QUERY);
   }
 
+  public Configuration getQuerySchedulerConfig() {
+    return _serverConf.subset(PINOT_SERVER_QUERY_SCHEDULER);
+  }
+
   public Configuration getRequestConfig() {
     return _serverConf.subset(PINOT_SERVER_REQUEST);
   }
@@ -82,4 +89,8 @@ public class ServerConf {
     return _serverConf.getString(PINOT_SERVER_REQUEST_HANDLER_FACTORY_CLASS);
   }
 
+  public int getDataTableVersion() {
+    return _serverConf.getInt(PINOT_SERVER_DATA_TABLE_VERSION, DEFAULT_DATA_TABLE_VERSION);
+  }
+
 }
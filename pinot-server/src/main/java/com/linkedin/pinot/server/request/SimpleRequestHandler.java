@@ -15,6 +15,10 @@
  */
 package com.linkedin.pinot.server.request;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.ServerMeter;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
@@ -26,6 +30,8 @@ import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.DataTableBuilder;
 import com.linkedin.pinot.common.query.QueryRequest;
+import com.linkedin.pinot.server.request.scheduler.FCFSQueryScheduler;
+import com.linkedin.pinot.server.request.scheduler.QueryScheduler;
 import com.linkedin.pinot.serde.SerDe;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import io.netty.buffer.ByteBuf;
@@ -46,23 +52,25 @@ public class SimpleRequestHandler implements RequestHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleRequestHandler.class);
 
   private ServerMetrics _serverMetrics;
-  QueryExecutor _queryExecutor = null;
+  QueryScheduler _queryScheduler = null;
 
   public SimpleRequestHandler(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
-    _queryExecutor = queryExecutor;
+    this(new FCFSQueryScheduler(queryExecutor, serverMetrics), serverMetrics);
+  }
+
+  public SimpleRequestHandler(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryScheduler = queryScheduler;
     _serverMetrics = serverMetrics;
   }
 
   @Override
-  public byte[] processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request) {
+  public ListenableFuture<byte[]> processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request) {
 
-    long queryStartTime = System.nanoTime();
+    final long queryStartTime = System.nanoTime();
     _serverMetrics.addMeteredGlobalValue(ServerMeter.QUERIES, 1);
 
     LOGGER.debug("processing request : {}", request);
 
-    DataTable instanceResponse = null;
-
     byte[] byteArray = new byte[request.readableBytes()];
     request.readBytes(byteArray);
     SerDe serDe = new SerDe(new TCompactProtocol.Factory());
@@ -75,7 +83,7 @@ public class SimpleRequestHandler implements RequestHandler {
         DataTable result = new DataTable();
         result.addException(QueryException.INTERNAL_ERROR);
         _serverMetrics.addMeteredGlobalValue(ServerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
-        return serializeDataTable(brokerRequest, instanceResponse, queryStartTime);
+        return Futures.immediateFuture(serializeDataTable(brokerRequest, null, queryStartTime));
       }
       long deserRequestTime = System.nanoTime();
       brokerRequest = instanceRequest.getQuery();
@@ -89,21 +97,39 @@ public class SimpleRequestHandler implements RequestHandler {
       // Ideally, broker should send it's identity as part of the request
       queryRequest.setClientId(brokerId);
 
-      long startTime = System.nanoTime();
-      instanceResponse = _queryExecutor.processQuery(queryRequest);
-      long totalNanos = System.nanoTime() - startTime;
-      _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.QUERY_PROCESSING, totalNanos);
+      // The response gets serialized on the thread completing the query, so that the Netty worker thread is not
+      // parked while the query is queued or running.
+      final BrokerRequest finalBrokerRequest = brokerRequest;
+      final long startTime = System.nanoTime();
+      final SettableFuture<byte[]> responseFuture = SettableFuture.create();
+      Futures.addCallback(_queryScheduler.submit(queryRequest), new FutureCallback<DataTable>() {
+        @Override
+        public void onSuccess(DataTable instanceResponse) {
+          _serverMetrics.addPhaseTiming(finalBrokerRequest, ServerQueryPhase.QUERY_PROCESSING,
+              System.nanoTime() - startTime);
+          responseFuture.set(serializeDataTable(finalBrokerRequest, instanceResponse, queryStartTime));
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          responseFuture.set(serializeDataTable(finalBrokerRequest, buildErrorResponse(t), queryStartTime));
+        }
+      });
+      return responseFuture;
     } catch (Exception e) {
-      LOGGER.error("Got exception while processing request. Returning error response", e);
-      _serverMetrics.addMeteredGlobalValue(ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
-      DataTableBuilder dataTableBuilder = new DataTableBuilder(null);
-      List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
-      ProcessingException exception = QueryException.INTERNAL_ERROR.deepCopy();
-      exception.setMessage(e.getMessage());
-      exceptions.add(exception);
-      instanceResponse = dataTableBuilder.buildExceptions();
+      return Futures.immediateFuture(serializeDataTable(brokerRequest, buildErrorResponse(e), queryStartTime));
     }
-    return serializeDataTable(brokerRequest, instanceResponse, queryStartTime);
+  }
+
+  private DataTable buildErrorResponse(Throwable t) {
+    LOGGER.error("Got exception while processing request. Returning error response", t);
+    _serverMetrics.addMeteredGlobalValue(ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(null);
+    List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
+    ProcessingException exception = QueryException.INTERNAL_ERROR.deepCopy();
+    exception.setMessage(t.getMessage());
+    exceptions.add(exception);
+    return dataTableBuilder.buildExceptions();
   }
 
   private byte[] serializeDataTable(BrokerRequest brokerRequest, DataTable instanceResponse, long queryStartTime) {
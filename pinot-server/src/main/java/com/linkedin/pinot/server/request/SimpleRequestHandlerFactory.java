@@ -17,6 +17,8 @@ package com.linkedin.pinot.server.request;
 
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.server.request.scheduler.FCFSQueryScheduler;
+import com.linkedin.pinot.server.request.scheduler.QueryScheduler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 
@@ -29,7 +31,7 @@ import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
  */
 public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
 
-  private QueryExecutor _queryExecutor;
+  private QueryScheduler _queryScheduler;
 
   private ServerMetrics _serverMetrics;
 
@@ -38,17 +40,25 @@ public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
   }
 
   public SimpleRequestHandlerFactory(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
-    _queryExecutor = queryExecutor;
+    this(new FCFSQueryScheduler(queryExecutor, serverMetrics), serverMetrics);
+  }
+
+  public SimpleRequestHandlerFactory(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryScheduler = queryScheduler;
     _serverMetrics = serverMetrics;
   }
 
   public void init(QueryExecutor queryExecutor) {
-    _queryExecutor = queryExecutor;
+    _queryScheduler = new FCFSQueryScheduler(queryExecutor, _serverMetrics);
+  }
+
+  public QueryScheduler getQueryScheduler() {
+    return _queryScheduler;
   }
 
   @Override
   public RequestHandler createNewRequestHandler() {
-    return new SimpleRequestHandler(_queryExecutor, _serverMetrics);
+    return new SimpleRequestHandler(_queryScheduler, _serverMetrics);
   }
 
 }
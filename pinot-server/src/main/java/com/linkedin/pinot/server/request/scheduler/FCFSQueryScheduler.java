@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.query.QueryRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * Scheduler executing the queries right away on the thread submitting them, in the order they arrive, without any
+ * admission control.
+ */
+public class FCFSQueryScheduler extends QueryScheduler {
+
+  public FCFSQueryScheduler(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    super(queryExecutor, serverMetrics);
+  }
+
+  public FCFSQueryScheduler(Configuration config, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    this(queryExecutor, serverMetrics);
+  }
+
+  @Override
+  public ListenableFuture<DataTable> submit(QueryRequest queryRequest) {
+    return Futures.immediateFuture(_queryExecutor.processQuery(queryRequest));
+  }
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerGauge;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.query.QueryRequest;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Scheduler isolating the tables served by the server from each other.
+ *
+ * <ul>
+ *   <li>Queries are executed by a fixed pool of worker threads, and wait in a bounded queue per table.</li>
+ *   <li>Queries for a table whose queue is full are rejected right away with a
+ *   {@link QueryException#SERVER_OUT_OF_CAPACITY_ERROR}.</li>
+ *   <li>Each table can run at most a configured number of queries concurrently.</li>
+ *   <li>When a worker thread frees up, it is given to the table with the smallest number of running queries relative
+ *   to its weight, so that worker threads are shared between busy tables in proportion to their weights.</li>
+ *   <li>Queries which waited in the queue longer than the max queue wait time are rejected with a
+ *   {@link QueryException#QUERY_SCHEDULING_TIMEOUT_ERROR} instead of being executed.</li>
+ * </ul>
+ *
+ * Per-table settings default to the scheduler wide ones, and can be overridden through "table.[tableName].[setting]".
+ */
+public class FairShareQueryScheduler extends QueryScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FairShareQueryScheduler.class);
+
+  public static final String NUM_WORKER_THREADS_CONFIG = "numWorkerThreads";
+  public static final String MAX_PENDING_QUERIES_CONFIG = "maxPendingQueries";
+  public static final String MAX_RUNNING_QUERIES_CONFIG = "maxRunningQueries";
+  public static final String MAX_QUEUE_WAIT_MS_CONFIG = "maxQueueWaitMs";
+  public static final String WEIGHT_CONFIG = "weight";
+  public static final String TABLE_CONFIG_PREFIX = "table.";
+
+  public static final int DEFAULT_NUM_WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+  public static final int DEFAULT_MAX_PENDING_QUERIES = 64;
+  public static final long DEFAULT_MAX_QUEUE_WAIT_MS = 15000L;
+  public static final int DEFAULT_WEIGHT = 1;
+
+  private final Configuration _config;
+  private final int _numWorkerThreads;
+  private final int _maxPendingQueries;
+  private final int _maxRunningQueries;
+  private final long _maxQueueWaitNs;
+  private final ExecutorService _workerExecutorService;
+
+  // All below fields are guarded by this
+  private final Map<String, TableQueue> _tableQueues = new HashMap<>();
+  private int _numRunningQueries = 0;
+  private boolean _isShutDown = false;
+
+  public FairShareQueryScheduler(Configuration config, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    super(queryExecutor, serverMetrics);
+    _config = config;
+    _numWorkerThreads = config.getInt(NUM_WORKER_THREADS_CONFIG, DEFAULT_NUM_WORKER_THREADS);
+    _maxPendingQueries = config.getInt(MAX_PENDING_QUERIES_CONFIG, DEFAULT_MAX_PENDING_QUERIES);
+    _maxRunningQueries = config.getInt(MAX_RUNNING_QUERIES_CONFIG, _numWorkerThreads);
+    _maxQueueWaitNs =
+        TimeUnit.MILLISECONDS.toNanos(config.getLong(MAX_QUEUE_WAIT_MS_CONFIG, DEFAULT_MAX_QUEUE_WAIT_MS));
+    _workerExecutorService =
+        Executors.newFixedThreadPool(_numWorkerThreads, new NamedThreadFactory("query-scheduler-worker"));
+    LOGGER.info("Initialized fair share query scheduler with {} worker threads, max {} pending and {} running queries "
+        + "per table, max queue wait {}ms", _numWorkerThreads, _maxPendingQueries, _maxRunningQueries,
+        TimeUnit.NANOSECONDS.toMillis(_maxQueueWaitNs));
+  }
+
+  @Override
+  public ListenableFuture<DataTable> submit(QueryRequest queryRequest) {
+    String tableName = getTableName(queryRequest);
+    QueryTask queryTask;
+    int numPendingQueries;
+    synchronized (this) {
+      if (_isShutDown) {
+        return Futures.immediateFuture(buildErrorResponse(queryRequest, QueryException.SERVER_OUT_OF_CAPACITY_ERROR,
+            "Query scheduler is shut down"));
+      }
+      TableQueue tableQueue = getTableQueue(tableName);
+      numPendingQueries = tableQueue._pendingQueries.size();
+      if (numPendingQueries >= tableQueue._maxPendingQueries) {
+        queryTask = null;
+      } else {
+        queryTask = new QueryTask(queryRequest, tableQueue);
+        tableQueue._pendingQueries.addLast(queryTask);
+        updateGauges(tableQueue);
+        scheduleQueries();
+      }
+    }
+
+    if (queryTask == null) {
+      _serverMetrics.addMeteredTableValue(tableName, ServerMeter.SCHEDULER_REJECTED_QUERIES, 1L);
+      LOGGER.warn("Rejecting requestId {} for table {} with {} pending queries",
+          queryRequest.getInstanceRequest().getRequestId(), tableName, numPendingQueries);
+      return Futures.immediateFuture(buildErrorResponse(queryRequest, QueryException.SERVER_OUT_OF_CAPACITY_ERROR,
+          "Too many pending queries for table: " + tableName));
+    }
+    return queryTask._future;
+  }
+
+  @Override
+  public void shutDown() {
+    synchronized (this) {
+      _isShutDown = true;
+      for (TableQueue tableQueue : _tableQueues.values()) {
+        for (QueryTask queryTask : tableQueue._pendingQueries) {
+          queryTask._future.set(buildErrorResponse(queryTask._queryRequest,
+              QueryException.SERVER_OUT_OF_CAPACITY_ERROR, "Query scheduler is shut down"));
+        }
+        tableQueue._pendingQueries.clear();
+        updateGauges(tableQueue);
+      }
+    }
+    _workerExecutorService.shutdown();
+  }
+
+  private static String getTableName(QueryRequest queryRequest) {
+    BrokerRequest brokerRequest = queryRequest.getInstanceRequest().getQuery();
+    if (brokerRequest != null && brokerRequest.getQuerySource() != null) {
+      return brokerRequest.getQuerySource().getTableName();
+    }
+    return "unknown";
+  }
+
+  private TableQueue getTableQueue(String tableName) {
+    TableQueue tableQueue = _tableQueues.get(tableName);
+    if (tableQueue == null) {
+      String tablePrefix = TABLE_CONFIG_PREFIX + tableName + ".";
+      int weight = _config.getInt(tablePrefix + WEIGHT_CONFIG, DEFAULT_WEIGHT);
+      if (weight <= 0) {
+        LOGGER.warn("Invalid weight {} for table {}, using {}", weight, tableName, DEFAULT_WEIGHT);
+        weight = DEFAULT_WEIGHT;
+      }
+      tableQueue = new TableQueue(tableName, weight, _config.getInt(tablePrefix + MAX_PENDING_QUERIES_CONFIG,
+          _maxPendingQueries), _config.getInt(tablePrefix + MAX_RUNNING_QUERIES_CONFIG, _maxRunningQueries));
+      _tableQueues.put(tableName, tableQueue);
+    }
+    return tableQueue;
+  }
+
+  /**
+   * Hands the free worker threads to the pending queries. Must be called while holding the lock.
+   */
+  private void scheduleQueries() {
+    while (_numRunningQueries < _numWorkerThreads) {
+      TableQueue tableQueue = pickTableQueue();
+      if (tableQueue == null) {
+        return;
+      }
+      final QueryTask queryTask = tableQueue._pendingQueries.removeFirst();
+      tableQueue._numRunningQueries++;
+      _numRunningQueries++;
+      updateGauges(tableQueue);
+      _workerExecutorService.execute(new Runnable() {
+        @Override
+        public void run() {
+          runQuery(queryTask);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns the table with pending queries, below its concurrency limit, that has the smallest number of running
+   * queries relative to its weight, or null if there is none. Ties go to the table with the oldest pending query.
+   */
+  private TableQueue pickTableQueue() {
+    TableQueue selectedTableQueue = null;
+    for (TableQueue tableQueue : _tableQueues.values()) {
+      if (tableQueue._pendingQueries.isEmpty() || tableQueue._numRunningQueries >= tableQueue._maxRunningQueries) {
+        continue;
+      }
+      if (selectedTableQueue == null) {
+        selectedTableQueue = tableQueue;
+        continue;
+      }
+      long usage = (long) tableQueue._numRunningQueries * selectedTableQueue._weight;
+      long selectedUsage = (long) selectedTableQueue._numRunningQueries * tableQueue._weight;
+      if (usage < selectedUsage || (usage == selectedUsage
+          && tableQueue._pendingQueries.peekFirst()._arrivalTimeNs
+          < selectedTableQueue._pendingQueries.peekFirst()._arrivalTimeNs)) {
+        selectedTableQueue = tableQueue;
+      }
+    }
+    return selectedTableQueue;
+  }
+
+  private void runQuery(QueryTask queryTask) {
+    QueryRequest queryRequest = queryTask._queryRequest;
+    TableQueue tableQueue = queryTask._tableQueue;
+    DataTable response = null;
+    Throwable throwable = null;
+    try {
+      long queueWaitNs = System.nanoTime() - queryTask._arrivalTimeNs;
+      _serverMetrics.addPhaseTiming(queryRequest.getInstanceRequest().getQuery(), ServerQueryPhase.SCHEDULER_WAIT,
+          queueWaitNs);
+      if (queueWaitNs > _maxQueueWaitNs) {
+        _serverMetrics.addMeteredTableValue(tableQueue._tableName, ServerMeter.SCHEDULER_TIMED_OUT_QUERIES, 1L);
+        LOGGER.warn("Rejecting requestId {} for table {} after waiting {}ms in the queue",
+            queryRequest.getInstanceRequest().getRequestId(), tableQueue._tableName,
+            TimeUnit.NANOSECONDS.toMillis(queueWaitNs));
+        response = buildErrorResponse(queryRequest, QueryException.QUERY_SCHEDULING_TIMEOUT_ERROR,
+            "Query waited " + TimeUnit.NANOSECONDS.toMillis(queueWaitNs) + "ms in the queue of table: "
+                + tableQueue._tableName);
+      } else {
+        response = _queryExecutor.processQuery(queryRequest);
+      }
+    } catch (Throwable t) {
+      throwable = t;
+    } finally {
+      synchronized (this) {
+        tableQueue._numRunningQueries--;
+        _numRunningQueries--;
+        updateGauges(tableQueue);
+        if (!_isShutDown) {
+          scheduleQueries();
+        }
+      }
+    }
+    if (throwable == null) {
+      queryTask._future.set(response);
+    } else {
+      queryTask._future.setException(throwable);
+    }
+  }
+
+  private void updateGauges(TableQueue tableQueue) {
+    _serverMetrics.setValueOfTableGauge(tableQueue._tableName, ServerGauge.SCHEDULER_PENDING_QUERIES,
+        tableQueue._pendingQueries.size());
+    _serverMetrics.setValueOfTableGauge(tableQueue._tableName, ServerGauge.SCHEDULER_RUNNING_QUERIES,
+        tableQueue._numRunningQueries);
+  }
+
+  private static class TableQueue {
+    private final String _tableName;
+    private final int _weight;
+    private final int _maxPendingQueries;
+    private final int _maxRunningQueries;
+    private final ArrayDeque<QueryTask> _pendingQueries = new ArrayDeque<>();
+    private int _numRunningQueries = 0;
+
+    private TableQueue(String tableName, int weight, int maxPendingQueries, int maxRunningQueries) {
+      _tableName = tableName;
+      _weight = weight;
+      _maxPendingQueries = maxPendingQueries;
+      _maxRunningQueries = maxRunningQueries;
+    }
+  }
+
+  private static class QueryTask {
+    private final QueryRequest _queryRequest;
+    private final TableQueue _tableQueue;
+    private final long _arrivalTimeNs = System.nanoTime();
+    private final SettableFuture<DataTable> _future = SettableFuture.create();
+
+    private QueryTask(QueryRequest queryRequest, TableQueue tableQueue) {
+      _queryRequest = queryRequest;
+      _tableQueue = tableQueue;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.query.QueryRequest;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Decides when, and on which thread, the queries received by the server get executed.
+ *
+ * Implementations are created through {@link QuerySchedulerFactory}, and custom implementations must provide a public
+ * constructor taking ({@link org.apache.commons.configuration.Configuration}, {@link QueryExecutor},
+ * {@link ServerMetrics}).
+ */
+public abstract class QueryScheduler {
+  protected final QueryExecutor _queryExecutor;
+  protected final ServerMetrics _serverMetrics;
+
+  public QueryScheduler(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    _queryExecutor = queryExecutor;
+    _serverMetrics = serverMetrics;
+  }
+
+  /**
+   * Schedules the query for execution.
+   *
+   * Queries rejected by the scheduler are not failed through the future, instead the future holds a response
+   * containing the reason of the rejection, so that it can be returned to the broker as is.
+   *
+   * @param queryRequest query to execute.
+   * @return future of the instance response, which may hold null if no segment was queried.
+   */
+  public abstract ListenableFuture<DataTable> submit(QueryRequest queryRequest);
+
+  /**
+   * Stops the scheduler. Pending queries may get rejected.
+   */
+  public void shutDown() {
+  }
+
+  public QueryExecutor getQueryExecutor() {
+    return _queryExecutor;
+  }
+
+  protected static DataTable buildErrorResponse(QueryRequest queryRequest, ProcessingException processingException,
+      String message) {
+    ProcessingException exception = processingException.deepCopy();
+    exception.setMessage(message);
+    DataTable response = new DataTable();
+    response.addException(exception);
+    response.getMetadata().put("requestId", Long.toString(queryRequest.getInstanceRequest().getRequestId()));
+    return response;
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Creates the query scheduler configured by the "name" key of the scheduler config, which is either one of the
+ * built-in scheduler names ("fcfs", "fairshare") or the class name of a custom {@link QueryScheduler}.
+ */
+public class QuerySchedulerFactory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuerySchedulerFactory.class);
+
+  public static final String SCHEDULER_NAME_CONFIG = "name";
+  public static final String FCFS_SCHEDULER_NAME = "fcfs";
+  public static final String FAIR_SHARE_SCHEDULER_NAME = "fairshare";
+
+  private QuerySchedulerFactory() {
+  }
+
+  public static QueryScheduler create(Configuration schedulerConfig, QueryExecutor queryExecutor,
+      ServerMetrics serverMetrics) {
+    String schedulerName = schedulerConfig.getString(SCHEDULER_NAME_CONFIG, FCFS_SCHEDULER_NAME);
+    LOGGER.info("Creating query scheduler: {}", schedulerName);
+    if (schedulerName.equalsIgnoreCase(FCFS_SCHEDULER_NAME)) {
+      return new FCFSQueryScheduler(schedulerConfig, queryExecutor, serverMetrics);
+    }
+    if (schedulerName.equalsIgnoreCase(FAIR_SHARE_SCHEDULER_NAME)) {
+      return new FairShareQueryScheduler(schedulerConfig, queryExecutor, serverMetrics);
+    }
+    try {
+      return (QueryScheduler) Class.forName(schedulerName)
+          .getConstructor(Configuration.class, QueryExecutor.class, ServerMetrics.class)
+          .newInstance(schedulerConfig, queryExecutor, serverMetrics);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while creating query scheduler: {}, falling back to {}", schedulerName,
+          FCFS_SCHEDULER_NAME, e);
+      return new FCFSQueryScheduler(schedulerConfig, queryExecutor, serverMetrics);
+    }
+  }
+}
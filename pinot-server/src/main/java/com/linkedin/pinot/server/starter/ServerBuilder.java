@@ -17,6 +17,7 @@ package com.linkedin.pinot.server.starter;
 
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManagerProvider;
 import com.linkedin.pinot.core.util.DataTableCustomSerDe;
@@ -34,6 +35,8 @@ import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.server.conf.NettyServerConfig;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.server.request.SimpleRequestHandlerFactory;
+import com.linkedin.pinot.server.request.scheduler.QueryScheduler;
+import com.linkedin.pinot.server.request.scheduler.QuerySchedulerFactory;
 import com.linkedin.pinot.transport.netty.NettyServer;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 import com.linkedin.pinot.transport.netty.NettyTCPServer;
@@ -139,6 +142,7 @@ public class ServerBuilder {
 
     // Register the custom ser/de for DataTable on the server side.
     DataTableSerDeRegistry.getInstance().register(new DataTableCustomSerDe());
+    DataTableSerDeRegistry.getInstance().setVersion(DataTable.Version.valueOf(_serverConf.getDataTableVersion()));
     return instanceDataManager;
   }
 
@@ -170,12 +174,30 @@ public class ServerBuilder {
    */
   public RequestHandlerFactory buildRequestHandlerFactory(QueryExecutor queryExecutor) throws InstantiationException,
       IllegalAccessException, ClassNotFoundException {
+    return buildRequestHandlerFactory(buildQueryScheduler(queryExecutor));
+  }
+
+  /**
+   * Build RequestHandlerFactory
+   * @param queryScheduler
+   * @return
+   */
+  public RequestHandlerFactory buildRequestHandlerFactory(QueryScheduler queryScheduler) {
     String className = _serverConf.getRequestHandlerFactoryClassName();
     LOGGER.info("Trying to Load Request Handler Factory by Class : " + className);
-    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryExecutor, _serverMetrics);
+    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryScheduler, _serverMetrics);
     return requestHandlerFactory;
   }
 
+  /**
+   * Build QueryScheduler
+   * @param queryExecutor
+   * @return
+   */
+  public QueryScheduler buildQueryScheduler(QueryExecutor queryExecutor) {
+    return QuerySchedulerFactory.create(_serverConf.getQuerySchedulerConfig(), queryExecutor, _serverMetrics);
+  }
+
   public NettyServer buildNettyServer(NettyServerConfig nettyServerConfig, RequestHandlerFactory requestHandlerFactory) {
     LOGGER.info("Trying to build NettyTCPServer with port : " + nettyServerConfig.getPort());
     NettyServer nettyServer = new NettyTCPServer(nettyServerConfig.getPort(), requestHandlerFactory, null);
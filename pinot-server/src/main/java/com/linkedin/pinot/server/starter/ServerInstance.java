@@ -24,6 +24,7 @@ import com.linkedin.pinot.common.data.DataManager;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.server.conf.ServerConf;
+import com.linkedin.pinot.server.request.scheduler.QueryScheduler;
 import com.linkedin.pinot.transport.netty.NettyServer;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 
@@ -42,6 +43,7 @@ public class ServerInstance {
   private ServerConf _serverConf;
   private DataManager _instanceDataManager;
   private QueryExecutor _queryExecutor;
+  private QueryScheduler _queryScheduler;
   private RequestHandlerFactory _requestHandlerFactory;
   private NettyServer _nettyServer;
   private ServerMetrics _serverMetrics;
@@ -71,8 +73,10 @@ public class ServerInstance {
     _instanceDataManager = serverBuilder.buildInstanceDataManager();
     LOGGER.info("Trying to build QueryExecutor");
     _queryExecutor = serverBuilder.buildQueryExecutor(_instanceDataManager);
+    LOGGER.info("Trying to build QueryScheduler");
+    _queryScheduler = serverBuilder.buildQueryScheduler(_queryExecutor);
     LOGGER.info("Trying to build RequestHandlerFactory");
-    setRequestHandlerFactory(serverBuilder.buildRequestHandlerFactory(_queryExecutor));
+    setRequestHandlerFactory(serverBuilder.buildRequestHandlerFactory(_queryScheduler));
     LOGGER.info("Trying to build NettyServer");
     _nettyServer = serverBuilder.buildNettyServer(_serverConf.getNettyConfig(), _requestHandlerFactory);
     setServerThread(new Thread(_nettyServer));
@@ -99,6 +103,7 @@ public class ServerInstance {
    */
   public void shutDown() {
     if (isStarted()) {
+      _queryScheduler.shutDown();
       _queryExecutor.shutDown();
       _instanceDataManager.shutDown();
       _nettyServer.shutdownGracefully();
@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request.scheduler;
+
+import com.linkedin.pinot.common.data.DataManager;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerGauge;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.query.QueryRequest;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.serde.SerDe;
+import com.linkedin.pinot.server.request.SimpleRequestHandler;
+import com.yammer.metrics.core.MetricsRegistry;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class FairShareQuerySchedulerTest {
+  private static final long TIMEOUT_MS = 10000L;
+
+  private final ServerMetrics _serverMetrics = new ServerMetrics(new MetricsRegistry());
+
+  @Test
+  public void testRejectWhenQueueFull()
+      throws Exception {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(FairShareQueryScheduler.NUM_WORKER_THREADS_CONFIG, 1);
+    config.setProperty(FairShareQueryScheduler.MAX_PENDING_QUERIES_CONFIG, 1);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    FairShareQueryScheduler scheduler = new FairShareQueryScheduler(config, queryExecutor, _serverMetrics);
+    try {
+      Future<DataTable> running = scheduler.submit(getQueryRequest(1, "rejectTable"));
+      queryExecutor.waitForRunningQueries("rejectTable", 1);
+      Future<DataTable> pending = scheduler.submit(getQueryRequest(2, "rejectTable"));
+      Assert.assertEquals(_serverMetrics.getValueOfTableGauge("rejectTable", ServerGauge.SCHEDULER_PENDING_QUERIES), 1L);
+
+      // Rejected right away, without waiting for the running query
+      DataTable rejected = scheduler.submit(getQueryRequest(3, "rejectTable")).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      Assert.assertTrue(hasException(rejected, QueryException.SERVER_OUT_OF_CAPACITY_ERROR_CODE));
+
+      // Other tables have their own queue
+      Future<DataTable> otherTable = scheduler.submit(getQueryRequest(4, "otherTable"));
+
+      queryExecutor.release("rejectTable", 2);
+      queryExecutor.release("otherTable", 1);
+      Assert.assertFalse(hasException(running.get(TIMEOUT_MS, TimeUnit.MILLISECONDS),
+          QueryException.SERVER_OUT_OF_CAPACITY_ERROR_CODE));
+      Assert.assertFalse(hasException(pending.get(TIMEOUT_MS, TimeUnit.MILLISECONDS),
+          QueryException.SERVER_OUT_OF_CAPACITY_ERROR_CODE));
+      Assert.assertFalse(hasException(otherTable.get(TIMEOUT_MS, TimeUnit.MILLISECONDS),
+          QueryException.SERVER_OUT_OF_CAPACITY_ERROR_CODE));
+    } finally {
+      scheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testWeightedFairShare()
+      throws Exception {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(FairShareQueryScheduler.NUM_WORKER_THREADS_CONFIG, 3);
+    config.setProperty("table.heavyTable.weight", 2);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    FairShareQueryScheduler scheduler = new FairShareQueryScheduler(config, queryExecutor, _serverMetrics);
+    try {
+      List<Future<DataTable>> futures = new ArrayList<>();
+      // Occupy all the worker threads
+      for (int i = 0; i < 3; i++) {
+        futures.add(scheduler.submit(getQueryRequest(i, "blockingTable")));
+      }
+      queryExecutor.waitForRunningQueries("blockingTable", 3);
+      for (int i = 0; i < 6; i++) {
+        futures.add(scheduler.submit(getQueryRequest(10 + i, "heavyTable")));
+        futures.add(scheduler.submit(getQueryRequest(20 + i, "lightTable")));
+      }
+
+      // Once the worker threads free up, heavyTable gets twice as many of them as lightTable
+      queryExecutor.release("blockingTable", 3);
+      queryExecutor.waitForRunningQueries("heavyTable", 2);
+      queryExecutor.waitForRunningQueries("lightTable", 1);
+      Assert.assertEquals(queryExecutor.getNumRunningQueries("heavyTable"), 2);
+      Assert.assertEquals(queryExecutor.getNumRunningQueries("lightTable"), 1);
+      Assert.assertEquals(_serverMetrics.getValueOfTableGauge("heavyTable", ServerGauge.SCHEDULER_RUNNING_QUERIES), 2L);
+
+      queryExecutor.release("heavyTable", 6);
+      queryExecutor.release("lightTable", 6);
+      for (Future<DataTable> future : futures) {
+        Assert.assertNotNull(future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      }
+    } finally {
+      scheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testMaxRunningQueries()
+      throws Exception {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(FairShareQueryScheduler.NUM_WORKER_THREADS_CONFIG, 3);
+    config.setProperty("table.limitedTable.maxRunningQueries", 1);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    FairShareQueryScheduler scheduler = new FairShareQueryScheduler(config, queryExecutor, _serverMetrics);
+    try {
+      List<Future<DataTable>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        futures.add(scheduler.submit(getQueryRequest(i, "limitedTable")));
+      }
+      futures.add(scheduler.submit(getQueryRequest(10, "unlimitedTable")));
+      futures.add(scheduler.submit(getQueryRequest(11, "unlimitedTable")));
+      queryExecutor.waitForRunningQueries("unlimitedTable", 2);
+      Assert.assertEquals(queryExecutor.getNumRunningQueries("limitedTable"), 1);
+
+      queryExecutor.release("limitedTable", 3);
+      queryExecutor.release("unlimitedTable", 2);
+      for (Future<DataTable> future : futures) {
+        Assert.assertNotNull(future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      }
+      Assert.assertEquals(queryExecutor.getMaxRunningQueries("limitedTable"), 1);
+    } finally {
+      scheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testQueueWaitTimeout()
+      throws Exception {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(FairShareQueryScheduler.NUM_WORKER_THREADS_CONFIG, 1);
+    config.setProperty(FairShareQueryScheduler.MAX_QUEUE_WAIT_MS_CONFIG, 10);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    FairShareQueryScheduler scheduler = new FairShareQueryScheduler(config, queryExecutor, _serverMetrics);
+    try {
+      Future<DataTable> running = scheduler.submit(getQueryRequest(1, "timeoutTable"));
+      queryExecutor.waitForRunningQueries("timeoutTable", 1);
+      Future<DataTable> pending = scheduler.submit(getQueryRequest(2, "timeoutTable"));
+      Thread.sleep(100);
+      queryExecutor.release("timeoutTable", 2);
+      Assert.assertFalse(hasException(running.get(TIMEOUT_MS, TimeUnit.MILLISECONDS),
+          QueryException.QUERY_SCHEDULING_TIMEOUT_ERROR_CODE));
+      Assert.assertTrue(hasException(pending.get(TIMEOUT_MS, TimeUnit.MILLISECONDS),
+          QueryException.QUERY_SCHEDULING_TIMEOUT_ERROR_CODE));
+    } finally {
+      scheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testRequestHandlerDoesNotWaitForQuery()
+      throws Exception {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(FairShareQueryScheduler.NUM_WORKER_THREADS_CONFIG, 1);
+    BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    FairShareQueryScheduler scheduler = new FairShareQueryScheduler(config, queryExecutor, _serverMetrics);
+    try {
+      SimpleRequestHandler requestHandler = new SimpleRequestHandler(scheduler, _serverMetrics);
+      InstanceRequest instanceRequest = getQueryRequest(1, "handlerTable").getInstanceRequest();
+      instanceRequest.setBrokerId("broker");
+      byte[] requestBytes = new SerDe(new TCompactProtocol.Factory()).serialize(instanceRequest);
+
+      // The handler returns while the query is still running
+      Future<byte[]> response = requestHandler.processRequest(null, Unpooled.wrappedBuffer(requestBytes));
+      queryExecutor.waitForRunningQueries("handlerTable", 1);
+      Assert.assertFalse(response.isDone());
+
+      queryExecutor.release("handlerTable", 1);
+      DataTable dataTable = new DataTable(response.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(dataTable.getMetadata().get("tableName"), "handlerTable");
+    } finally {
+      scheduler.shutDown();
+    }
+  }
+
+  private static QueryRequest getQueryRequest(long requestId, String tableName) {
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setQuerySource(querySource);
+    InstanceRequest instanceRequest = new InstanceRequest();
+    instanceRequest.setRequestId(requestId);
+    instanceRequest.setQuery(brokerRequest);
+    return new QueryRequest(instanceRequest);
+  }
+
+  private static boolean hasException(DataTable dataTable, int errorCode) {
+    return dataTable.getMetadata().containsKey(DataTable.EXCEPTION_METADATA_KEY + errorCode);
+  }
+
+  /**
+   * Query executor blocking each query until released, and keeping track of the running queries per table.
+   */
+  private static class BlockingQueryExecutor implements QueryExecutor {
+    private final Map<String, Semaphore> _permits = new HashMap<>();
+    private final Map<String, Integer> _numRunningQueries = new HashMap<>();
+    private final Map<String, Integer> _maxRunningQueries = new HashMap<>();
+
+    @Override
+    public DataTable processQuery(QueryRequest queryRequest) {
+      String tableName = queryRequest.getInstanceRequest().getQuery().getQuerySource().getTableName();
+      Semaphore permits;
+      synchronized (this) {
+        permits = getPermits(tableName);
+        int numRunningQueries = getNumRunningQueries(tableName) + 1;
+        _numRunningQueries.put(tableName, numRunningQueries);
+        if (numRunningQueries > getMaxRunningQueries(tableName)) {
+          _maxRunningQueries.put(tableName, numRunningQueries);
+        }
+        notifyAll();
+      }
+      try {
+        if (!permits.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          throw new RuntimeException("Timed out waiting for the query to be released");
+        }
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      } finally {
+        synchronized (this) {
+          _numRunningQueries.put(tableName, getNumRunningQueries(tableName) - 1);
+          notifyAll();
+        }
+      }
+      DataTable dataTable = new DataTable();
+      dataTable.getMetadata().put("tableName", tableName);
+      return dataTable;
+    }
+
+    private synchronized Semaphore getPermits(String tableName) {
+      Semaphore permits = _permits.get(tableName);
+      if (permits == null) {
+        permits = new Semaphore(0);
+        _permits.put(tableName, permits);
+      }
+      return permits;
+    }
+
+    synchronized int getNumRunningQueries(String tableName) {
+      Integer numRunningQueries = _numRunningQueries.get(tableName);
+      return (numRunningQueries == null) ? 0 : numRunningQueries;
+    }
+
+    synchronized int getMaxRunningQueries(String tableName) {
+      Integer maxRunningQueries = _maxRunningQueries.get(tableName);
+      return (maxRunningQueries == null) ? 0 : maxRunningQueries;
+    }
+
+    synchronized void waitForRunningQueries(String tableName, int numRunningQueries)
+        throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (getNumRunningQueries(tableName) < numRunningQueries) {
+        long waitMs = deadline - System.currentTimeMillis();
+        if (waitMs <= 0) {
+          Assert.fail("Timed out waiting for " + numRunningQueries + " running queries for table: " + tableName);
+        }
+        wait(waitMs);
+      }
+    }
+
+    void release(String tableName, int numQueries) {
+      getPermits(tableName).release(numQueries);
+    }
+
+    @Override
+    public void init(Configuration queryExecutorConfig, DataManager dataManager, ServerMetrics serverMetrics) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutDown() {
+    }
+
+    @Override
+    public boolean isStarted() {
+      return true;
+    }
+
+    @Override
+    public void updateResourceTimeOutInMs(String resource, long timeOutMs) {
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.BrokerQueryPhase;
+import com.linkedin.pinot.common.query.IncrementalReducer;
 import com.linkedin.pinot.common.query.ReduceService;
 import com.linkedin.pinot.common.query.ReduceServiceRegistry;
 import com.linkedin.pinot.common.request.BrokerRequest;
@@ -34,7 +35,9 @@ import com.linkedin.pinot.common.response.BrokerResponseFactory.ResponseType;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.response.broker.BrokerResponseNative;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.pql.parsers.Pql2Compiler;
 import com.linkedin.pinot.routing.RoutingTable;
 import com.linkedin.pinot.routing.RoutingTableLookupRequest;
@@ -56,12 +59,15 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -92,6 +98,7 @@ public class BrokerRequestHandler {
   private final long _brokerTimeOutMs;
   private final BrokerRequestOptimizer _optimizer;
   private final int _queryResponseLimit;
+  private final BrokerResultCache _resultCache;
   private AtomicLong _requestIdGenerator;
   private Configuration _config;
   private final String _brokerId;
@@ -129,11 +136,19 @@ public class BrokerRequestHandler {
     _queryResponseLimit = _config.getInt(BROKER_QUERY_RESPONSE_LIMIT_CONFIG, DEFAULT_BROKER_QUERY_RESPONSE_LIMIT);
     _brokerTimeOutMs = _config.getLong(BROKER_TIME_OUT_CONFIG, DEFAULT_BROKER_TIME_OUT_MS);
     _brokerId = _config.getString(BROKER_ID_CONFIG_KEY, DEFAULT_BROKER_ID);
+    _resultCache = BrokerResultCache.fromConfig(_config, _brokerMetrics);
     LOGGER.info("Broker response limit is: " + _queryResponseLimit);
     LOGGER.info("Broker timeout is - " + _brokerTimeOutMs + " ms");
     LOGGER.info("Broker id: " + _brokerId);
   }
 
+  /**
+   * Returns the cache of server responses, or <code>null</code> if it is disabled.
+   */
+  public BrokerResultCache getResultCache() {
+    return _resultCache;
+  }
+
   public BrokerResponse handleRequest(JSONObject request) throws Exception {
     final String pql = request.getString("pql");
     final long requestId = _requestIdGenerator.incrementAndGet();
@@ -391,7 +406,8 @@ public class BrokerRequestHandler {
       throws InterruptedException {
     // Step1
     final long routingStartTime = System.nanoTime();
-    RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
+    RoutingTableLookupRequest rtRequest =
+        new RoutingTableLookupRequest(request.getQuerySource().getTableName(), request);
     Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
     if (segmentServices == null || segmentServices.isEmpty()) {
       LOGGER.warn("Not found ServerInstances to Segments Mapping:");
@@ -402,8 +418,31 @@ public class BrokerRequestHandler {
     final long queryRoutingTime = System.nanoTime() - routingStartTime;
     _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
+    // Serve the query from the cached server responses if possible
+    final String tableName = request.getQuerySource().getTableName();
+    byte[] fingerprint = null;
+    long cacheGeneration = 0;
+    if (isCacheable(request)) {
+      cacheGeneration = _resultCache.getGeneration(tableName);
+      fingerprint = RequestUtils.getFingerprint(request);
+      Map<ServerInstance, byte[]> cachedResponses = _resultCache.get(tableName, fingerprint);
+      if (cachedResponses != null) {
+        IncrementalReducer<? extends BrokerResponse> reducer = reduceService.createIncrementalReducer(request);
+        reducer.setNumServersQueried(cachedResponses.size());
+        GatherTimes gatherTimes = new GatherTimes();
+        addCachedResponses(request, cachedResponses, reducer, null, gatherTimes);
+        _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, gatherTimes._deserializationTime);
+        final long reduceStartTime = System.nanoTime();
+        BrokerResponse returnValue = reducer.getResult();
+        _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.REDUCE,
+            gatherTimes._reduceTime + System.nanoTime() - reduceStartTime);
+        return returnValue;
+      }
+    }
+
     // Step 2-4
     final long scatterGatherStartTime = System.nanoTime();
+    final long deadlineMillis = System.currentTimeMillis() + _brokerTimeOutMs;
     ScatterGatherRequestImpl scatterRequest = new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
         ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0,
         //TODO: Speculative Requests not yet supported
@@ -411,71 +450,31 @@ public class BrokerRequestHandler {
     CompositeFuture<ServerInstance, ByteBuf> response =
         _scatterGatherer.scatterGather(scatterRequest, scatterGatherStats, _brokerMetrics);
 
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
-    {
-      Map<ServerInstance, ByteBuf> responses = null;
-      try {
-        responses = response.get();
-        // The call above should have waited for all the responses to come in.
-        Map<String, Long> responseTimes = response.getResponseTimes();
-        scatterGatherStats.setResponseTimeMillis(responseTimes);
-      } catch (ExecutionException e) {
-        LOGGER.warn("Caught exception while fetching response", e);
-        _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-      }
-
-      final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-
-      final long deserializationStartTime = System.nanoTime();
-
-      Map<ServerInstance, Throwable> errors = response.getError();
-
-      if (null != responses) {
-        for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
-          try {
-            ByteBuf b = e.getValue();
-            byte[] b2 = new byte[b.readableBytes()];
-            if (b2 == null || b2.length == 0) {
-              continue;
-            }
-            b.readBytes(b2);
-            DataTable r2 = new DataTable(b2);
-            if (errors != null && errors.containsKey(e.getKey())) {
-              Throwable throwable = errors.get(e.getKey());
-              r2.getMetadata().put(DataTable.EXCEPTION_METADATA_KEY, new RequestProcessingException(throwable).toString());
-              _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-            }
-            instanceResponseMap.put(e.getKey(), r2);
-          } catch (Exception ex) {
-            LOGGER.error(
-                "Got exceptions in collect query result for instance " + e.getKey() + ", error: " + ex.getMessage(),
-                ex);
-            _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
-          }
-        }
-      }
-      final long deserializationTime = System.nanoTime() - deserializationStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
-    }
-
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timeQueryPhase(request, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = reduceService.reduceOnDataTable(request, instanceResponseMap);
-          _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
-          return returnValue;
-        }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timeQueryPhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing return", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
-    }
+    //Step 5 - Deserialize each response as soon as it arrives and merge it into the running result
+    IncrementalReducer<? extends BrokerResponse> reducer = reduceService.createIncrementalReducer(request);
+    reducer.setNumServersQueried(segmentServices.size());
+    GatherTimes gatherTimes = new GatherTimes();
+    Map<ServerInstance, byte[]> responsesToCache =
+        (fingerprint != null) ? new LinkedHashMap<ServerInstance, byte[]>() : null;
+    boolean complete = gatherResponses(request, response, segmentServices.keySet(), reducer, deadlineMillis, null,
+        responsesToCache, gatherTimes);
+    if (complete && responsesToCache != null) {
+      _resultCache.put(tableName, fingerprint, cacheGeneration, responsesToCache);
+    }
+    scatterGatherStats.setResponseTimeMillis(response.getResponseTimes());
+
+    final long scatterGatherTime =
+        System.nanoTime() - scatterGatherStartTime - gatherTimes._deserializationTime - gatherTimes._reduceTime;
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, gatherTimes._deserializationTime);
+
+    // Step 6 : Build the final result and return
+    final long reduceStartTime = System.nanoTime();
+    BrokerResponse returnValue = reducer.getResult();
+    _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.REDUCE,
+        gatherTimes._reduceTime + System.nanoTime() - reduceStartTime);
+    return returnValue;
   }
 
   private Object getDataTableFromBrokerRequestList(final BrokerRequest federatedBrokerRequest,
@@ -483,119 +482,286 @@ public class BrokerRequestHandler {
       final ScatterGatherStats scatterGatherStats, final long requestId)
       throws InterruptedException {
     // Step1
-    long scatterGatherStartTime = System.nanoTime();
+    final long scatterGatherStartTime = System.nanoTime();
+    final long deadlineMillis = System.currentTimeMillis() + _brokerTimeOutMs;
     long queryRoutingTime = 0;
-    Map<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats>> responseFuturesList =
-        new HashMap<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, ScatterGatherStats>>();
+    int numServersQueried = 0;
+    Map<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, Set<ServerInstance>>> responseFuturesList =
+        new HashMap<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, Set<ServerInstance>>>();
+    // Only the offline request is cacheable, the realtime request is always sent to the servers
+    List<Map<ServerInstance, byte[]>> cachedResponsesList = new ArrayList<Map<ServerInstance, byte[]>>();
+    Map<BrokerRequest, byte[]> fingerprints = new HashMap<BrokerRequest, byte[]>();
+    Map<BrokerRequest, Long> cacheGenerations = new HashMap<BrokerRequest, Long>();
     for (BrokerRequest request : requests) {
       final long routingStartTime = System.nanoTime();
-      RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
+      RoutingTableLookupRequest rtRequest =
+          new RoutingTableLookupRequest(request.getQuerySource().getTableName(), request);
       Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
       if (segmentServices == null || segmentServices.isEmpty()) {
         LOGGER.info("Not found ServerInstances to Segments Mapping for Table - {}", rtRequest.getTableName());
         continue;
       }
+      if (isCacheable(request)) {
+        String tableName = rtRequest.getTableName();
+        long cacheGeneration = _resultCache.getGeneration(tableName);
+        byte[] fingerprint = RequestUtils.getFingerprint(request);
+        Map<ServerInstance, byte[]> cachedResponses = _resultCache.get(tableName, fingerprint);
+        if (cachedResponses != null) {
+          queryRoutingTime += System.nanoTime() - routingStartTime;
+          numServersQueried += cachedResponses.size();
+          cachedResponsesList.add(cachedResponses);
+          continue;
+        }
+        fingerprints.put(request, fingerprint);
+        cacheGenerations.put(request, cacheGeneration);
+      }
       LOGGER.debug("Find ServerInstances to Segments Mapping for table - {}", rtRequest.getTableName());
       for (ServerInstance serverInstance : segmentServices.keySet()) {
         LOGGER.debug("{} : {}", serverInstance, segmentServices.get(serverInstance));
       }
       queryRoutingTime += System.nanoTime() - routingStartTime;
-      ScatterGatherStats respStats = new ScatterGatherStats();
+      numServersQueried += segmentServices.size();
 
       // Step 2-4
-      scatterGatherStartTime = System.nanoTime();
       ScatterGatherRequestImpl scatterRequest =
           new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
               ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0,
               //TODO: Speculative Requests not yet supported
               overriddenSelection, requestId, _brokerTimeOutMs, _brokerId);
       responseFuturesList.put(request,
-          Pair.of(_scatterGatherer.scatterGather(scatterRequest, scatterGatherStats, _brokerMetrics), respStats));
+          Pair.of(_scatterGatherer.scatterGather(scatterRequest, scatterGatherStats, _brokerMetrics),
+              segmentServices.keySet()));
     }
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
-    long scatterGatherTime = 0;
-    long deserializationTime = 0;
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    if (responseFuturesList.isEmpty() && cachedResponsesList.isEmpty()) {
+      ResponseType responseType = BrokerResponseFactory.getResponseType(federatedBrokerRequest.getResponseFormat());
+      return BrokerResponseFactory.getEmptyBrokerResponse(responseType);
+    }
+
+    //Step 5 - Deserialize each response as soon as it arrives and merge it into the running result
+    IncrementalReducer<? extends BrokerResponse> reducer =
+        reduceService.createIncrementalReducer(federatedBrokerRequest);
+    reducer.setNumServersQueried(numServersQueried);
+    GatherTimes gatherTimes = new GatherTimes();
+    // Hybrid requests may get response from same instance, so we need to distinguish them.
     final AtomicInteger responseSeq = new AtomicInteger(-1);
-    {
-      for (BrokerRequest request : responseFuturesList.keySet()) {
-        CompositeFuture<ServerInstance, ByteBuf> compositeFuture = responseFuturesList.get(request).getKey();
-        ScatterGatherStats respStats = responseFuturesList.get(request).getValue();
+    for (Map<ServerInstance, byte[]> cachedResponses : cachedResponsesList) {
+      addCachedResponses(federatedBrokerRequest, cachedResponses, reducer, responseSeq, gatherTimes);
+    }
+    for (Entry<BrokerRequest, Pair<CompositeFuture<ServerInstance, ByteBuf>, Set<ServerInstance>>> entry
+        : responseFuturesList.entrySet()) {
+      BrokerRequest request = entry.getKey();
+      CompositeFuture<ServerInstance, ByteBuf> compositeFuture = entry.getValue().getKey();
+      byte[] fingerprint = fingerprints.get(request);
+      Map<ServerInstance, byte[]> responsesToCache =
+          (fingerprint != null) ? new LinkedHashMap<ServerInstance, byte[]>() : null;
+      boolean complete = gatherResponses(federatedBrokerRequest, compositeFuture, entry.getValue().getValue(), reducer,
+          deadlineMillis, responseSeq, responsesToCache, gatherTimes);
+      if (complete && responsesToCache != null) {
+        _resultCache.put(request.getQuerySource().getTableName(), fingerprint, cacheGenerations.get(request),
+            responsesToCache);
+      }
+      // compositeFuture has the individual response times of each underlying future.
+      ScatterGatherStats respStats = new ScatterGatherStats();
+      respStats.setResponseTimeMillis(compositeFuture.getResponseTimes());
+      scatterGatherStats.merge(respStats);
+    }
 
-        Map<ServerInstance, ByteBuf> responseMap = null;
-        try {
-          responseMap = compositeFuture.get();
-          // The 'get' call above waits for all the responses to come in before returning.
-          // compositeFuture has the individual response times of each underlying future.
-          // We get a map of server to the response time of the server here.
-          Map<String, Long> responseTimeMap = compositeFuture.getResponseTimes();
-          respStats.setResponseTimeMillis(responseTimeMap);
-          scatterGatherStats.merge(respStats);
-        } catch (ExecutionException e) {
-          LOGGER.warn("Caught exception while fetching response", e);
-          _brokerMetrics.addMeteredQueryValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-        }
+    final long scatterGatherTime =
+        System.nanoTime() - scatterGatherStartTime - gatherTimes._deserializationTime - gatherTimes._reduceTime;
+    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.DESERIALIZATION,
+        gatherTimes._deserializationTime);
+
+    // Step 6 : Build the final result and return
+    final long reduceStartTime = System.nanoTime();
+    BrokerResponse returnValue = reducer.getResult();
+    _brokerMetrics.addMeteredQueryValue(federatedBrokerRequest, BrokerMeter.DOCUMENTS_SCANNED,
+        returnValue.getNumDocsScanned());
+    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.REDUCE,
+        gatherTimes._reduceTime + System.nanoTime() - reduceStartTime);
+    return returnValue;
+  }
 
-        scatterGatherTime += System.nanoTime() - scatterGatherStartTime;
+  /**
+   * Deserialize the server responses of a scatter gather call in the order they arrive, and merge each one into the
+   * reducer right away. Stops once every server responded or failed, or when the deadline is reached. Servers that
+   * failed or did not respond in time are reported to the reducer instead of holding up the merge, and the pending
+   * requests are cancelled.
+   *
+   * @param request broker request, used for metrics
+   * @param compositeFuture future of the scatter gather call
+   * @param servers servers the request was sent to
+   * @param reducer reducer to merge the responses into
+   * @param deadlineMillis time after which servers that did not respond are considered late
+   * @param responseSeq sequence to decorate the server instances with, or null to use them as is
+   * @param responsesToCache collects a copy of the serialized responses, or null to not collect them
+   * @param gatherTimes accumulates the time spent on deserialization and reduce
+   * @return true if every server returned a response without exception, in which case the collected responses can be
+   *         cached
+   */
+  private boolean gatherResponses(BrokerRequest request, CompositeFuture<ServerInstance, ByteBuf> compositeFuture,
+      Collection<ServerInstance> servers, IncrementalReducer<? extends BrokerResponse> reducer, long deadlineMillis,
+      AtomicInteger responseSeq, Map<ServerInstance, byte[]> responsesToCache, GatherTimes gatherTimes)
+      throws InterruptedException {
+    Set<ServerInstance> pendingServers = new HashSet<ServerInstance>(servers);
+    boolean complete = true;
+    int numPendingFutures = compositeFuture.getNumFutures();
+    boolean timedOut = false;
+    while (numPendingFutures > 0) {
+      // Once the composite future is done (e.g. short-circuited on error), only drain what has already completed
+      long timeRemainingMs = compositeFuture.isDone() ? 0 : deadlineMillis - System.currentTimeMillis();
+      Collection<ServerInstance> completedServers =
+          compositeFuture.pollCompleted(Math.max(timeRemainingMs, 0), TimeUnit.MILLISECONDS);
+      if (completedServers == null) {
+        timedOut = !compositeFuture.isDone();
+        break;
+      }
+      numPendingFutures--;
+
+      Map<ServerInstance, Throwable> errors = compositeFuture.getError();
+      for (ServerInstance serverInstance : completedServers) {
+        pendingServers.remove(serverInstance);
+        Throwable throwable = (errors != null) ? errors.get(serverInstance) : null;
+        ByteBuf b = compositeFuture.getResponse(serverInstance);
+        if (b == null) {
+          LOGGER.warn("Caught exception while fetching response from server: {}", serverInstance, throwable);
+          _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+          reducer.addMissingServer(serverInstance, QueryException.BROKER_GATHER_ERROR_CODE,
+              (throwable != null) ? throwable.toString() : "No response");
+          complete = false;
+          continue;
+        }
+        if (b.readableBytes() == 0) {
+          if (responsesToCache != null) {
+            responsesToCache.put(serverInstance, new byte[0]);
+          }
+          continue;
+        }
 
         final long deserializationStartTime = System.nanoTime();
-
-        Map<ServerInstance, Throwable> errors = compositeFuture.getError();
-
-        if (null != responseMap) {
-          for (Entry<ServerInstance, ByteBuf> responseEntry : responseMap.entrySet()) {
-            try {
-              ByteBuf b = responseEntry.getValue();
-              byte[] b2 = new byte[b.readableBytes()];
-              if (b2 == null || b2.length == 0) {
-                continue;
-              }
-              b.readBytes(b2);
-              DataTable r2 = new DataTable(b2);
-              // Hybrid requests may get response from same instance, so we need to distinguish them.
-              ServerInstance decoratedServerInstance = new ServerInstance(responseEntry.getKey().getHostname(),
-                  responseEntry.getKey().getPort(), responseSeq.incrementAndGet());
-              if (errors != null && errors.containsKey(responseEntry.getKey())) {
-                Throwable throwable = errors.get(responseEntry.getKey());
-                if (throwable != null) {
-                  r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
-                  _brokerMetrics.addMeteredQueryValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-                }
-              }
-              instanceResponseMap.put(decoratedServerInstance, r2);
-            } catch (Exception ex) {
-              LOGGER.error(
-                  "Got exceptions in collect query result for instance " + responseEntry.getKey() + ", error: " + ex
-                      .getMessage(), ex);
-              _brokerMetrics.addMeteredQueryValue(federatedBrokerRequest, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
-            }
+        DataTable r2;
+        try {
+          r2 = new DataTable(b.nioBuffer());
+          if (throwable != null) {
+            r2.getMetadata().put(DataTable.EXCEPTION_METADATA_KEY, new RequestProcessingException(throwable).toString());
+            _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+            complete = false;
           }
+        } catch (Exception ex) {
+          LOGGER.error(
+              "Got exceptions in collect query result for instance " + serverInstance + ", error: " + ex.getMessage(),
+              ex);
+          _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+          complete = false;
+          continue;
+        } finally {
+          gatherTimes._deserializationTime += System.nanoTime() - deserializationStartTime;
         }
-        deserializationTime += System.nanoTime() - deserializationStartTime;
+        if (complete && responsesToCache != null) {
+          if (hasException(r2)) {
+            complete = false;
+          } else {
+            // The data table reads from the network buffer in place, so the bytes must be copied to be cached
+            byte[] bytes = new byte[b.readableBytes()];
+            b.getBytes(b.readerIndex(), bytes);
+            responsesToCache.put(serverInstance, bytes);
+          }
+        }
+
+        final long reduceStartTime = System.nanoTime();
+        if (responseSeq != null) {
+          reducer.add(new ServerInstance(serverInstance.getHostname(), serverInstance.getPort(),
+              responseSeq.incrementAndGet()), r2);
+        } else {
+          reducer.add(serverInstance, r2);
+        }
+        gatherTimes._reduceTime += System.nanoTime() - reduceStartTime;
       }
     }
-    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
 
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timeQueryPhase(federatedBrokerRequest, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = reduceService.reduceOnDataTable(federatedBrokerRequest, instanceResponseMap);
-          _brokerMetrics
-              .addMeteredQueryValue(federatedBrokerRequest, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
-          return returnValue;
+    if (!pendingServers.isEmpty()) {
+      complete = false;
+      for (ServerInstance serverInstance : pendingServers) {
+        if (timedOut) {
+          reducer.addMissingServer(serverInstance, QueryException.BROKER_TIMEOUT_ERROR_CODE,
+              "Server did not respond within " + _brokerTimeOutMs + "ms");
+        } else {
+          reducer.addMissingServer(serverInstance, QueryException.BROKER_GATHER_ERROR_CODE,
+              "Request to server was cancelled before it responded");
         }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timeQueryPhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing query", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
+      }
+      if (timedOut) {
+        LOGGER.warn("Merged partial results, servers {} did not respond within {}ms", pendingServers,
+            _brokerTimeOutMs);
+        _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_TIMED_OUT_SERVERS, pendingServers.size());
+      }
+      compositeFuture.cancel(true);
     }
+    return complete;
+  }
+
+  /**
+   * Deserialize the cached server responses and merge them into the reducer.
+   */
+  private void addCachedResponses(BrokerRequest request, Map<ServerInstance, byte[]> cachedResponses,
+      IncrementalReducer<? extends BrokerResponse> reducer, AtomicInteger responseSeq, GatherTimes gatherTimes) {
+    for (Entry<ServerInstance, byte[]> entry : cachedResponses.entrySet()) {
+      byte[] bytes = entry.getValue();
+      if (bytes.length == 0) {
+        continue;
+      }
+      ServerInstance serverInstance = entry.getKey();
+      final long deserializationStartTime = System.nanoTime();
+      DataTable dataTable;
+      try {
+        dataTable = new DataTable(bytes);
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while deserializing cached response of server: {}", serverInstance, e);
+        _brokerMetrics.addMeteredQueryValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+        continue;
+      } finally {
+        gatherTimes._deserializationTime += System.nanoTime() - deserializationStartTime;
+      }
+
+      final long reduceStartTime = System.nanoTime();
+      if (responseSeq != null) {
+        reducer.add(new ServerInstance(serverInstance.getHostname(), serverInstance.getPort(),
+            responseSeq.incrementAndGet()), dataTable);
+      } else {
+        reducer.add(serverInstance, dataTable);
+      }
+      gatherTimes._reduceTime += System.nanoTime() - reduceStartTime;
+    }
+  }
+
+  /**
+   * Only the server responses to queries on offline tables are cached, as realtime segments keep changing.
+   */
+  private boolean isCacheable(BrokerRequest request) {
+    return _resultCache != null && !request.isEnableTrace()
+        && TableNameBuilder.getTableTypeFromTableName(request.getQuerySource().getTableName()) == TableType.OFFLINE;
+  }
+
+  private static boolean hasException(DataTable dataTable) {
+    Map<String, String> metadata = dataTable.getMetadata();
+    if (metadata != null) {
+      for (String key : metadata.keySet()) {
+        if (key.startsWith(DataTable.EXCEPTION_METADATA_KEY)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Time spent on deserialization and reduce while gathering responses, in nanoseconds.
+   */
+  private static class GatherTimes {
+    private long _deserializationTime = 0;
+    private long _reduceTime = 0;
   }
 
   public static class ScatterGatherRequestImpl implements ScatterGatherRequest {
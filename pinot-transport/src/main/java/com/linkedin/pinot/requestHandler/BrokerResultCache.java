@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.linkedin.pinot.common.metrics.BrokerMeter;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.routing.RoutingTableChangeListener;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Cache of the server responses to a query on an offline table, on the broker.
+ *
+ * <p>Entries are keyed by the table name and the fingerprint of the optimized broker request sent to the servers (see
+ * {@link com.linkedin.pinot.common.utils.request.RequestUtils#getFingerprint}), and hold the serialized data table
+ * returned by each server. Caching the responses rather than the final broker response lets the offline part of a
+ * hybrid table query be served from the cache while the realtime part is still sent to the servers. Since the time
+ * boundary is part of the offline request, moving the time boundary does not serve stale entries.
+ *
+ * <p>All the entries of a table are invalidated when its routing changes (external view change) or one of its
+ * segments is refreshed. Entries also expire after a configurable amount of time.
+ */
+public class BrokerResultCache implements RoutingTableChangeListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerResultCache.class);
+
+  public static final String MAX_SIZE_CONFIG = "pinot.broker.resultCache.maxSizeInBytes";
+  public static final String EXPIRE_AFTER_WRITE_MS_CONFIG = "pinot.broker.resultCache.expireAfterWriteMs";
+  public static final long DEFAULT_EXPIRE_AFTER_WRITE_MS = 10 * 60 * 1000L;
+
+  // Rough per server response overhead (server instance and map entry) on top of the serialized data table
+  private static final int RESPONSE_OVERHEAD_IN_BYTES = 64;
+
+  private final Cache<Key, Map<ServerInstance, byte[]>> _cache;
+  private final ConcurrentHashMap<String, AtomicLong> _tableGenerations = new ConcurrentHashMap<>();
+  private final BrokerMetrics _brokerMetrics;
+
+  /**
+   * Returns the cache configured in the given broker config, or <code>null</code> if the cache is disabled.
+   */
+  @Nullable
+  public static BrokerResultCache fromConfig(Configuration config, @Nullable BrokerMetrics brokerMetrics) {
+    long maxSizeInBytes = config.getLong(MAX_SIZE_CONFIG, 0L);
+    if (maxSizeInBytes <= 0) {
+      return null;
+    }
+    return new BrokerResultCache(maxSizeInBytes,
+        config.getLong(EXPIRE_AFTER_WRITE_MS_CONFIG, DEFAULT_EXPIRE_AFTER_WRITE_MS), brokerMetrics);
+  }
+
+  public BrokerResultCache(long maxSizeInBytes, long expireAfterWriteMs, @Nullable BrokerMetrics brokerMetrics) {
+    Preconditions.checkArgument(maxSizeInBytes > 0, "Max size of broker result cache must be positive");
+    Preconditions.checkArgument(expireAfterWriteMs > 0, "Expiration time of broker result cache must be positive");
+    _brokerMetrics = brokerMetrics;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeInBytes)
+        .expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+        .weigher(new Weigher<Key, Map<ServerInstance, byte[]>>() {
+          @Override
+          public int weigh(Key key, Map<ServerInstance, byte[]> responses) {
+            int weight = key._fingerprint.length;
+            for (byte[] response : responses.values()) {
+              weight += response.length + RESPONSE_OVERHEAD_IN_BYTES;
+            }
+            return weight;
+          }
+        })
+        .removalListener(new RemovalListener<Key, Map<ServerInstance, byte[]>>() {
+          @Override
+          public void onRemoval(RemovalNotification<Key, Map<ServerInstance, byte[]>> notification) {
+            if (notification.getCause() == RemovalCause.SIZE && _brokerMetrics != null) {
+              _brokerMetrics.addMeteredGlobalValue(BrokerMeter.RESULT_CACHE_EVICTIONS, 1L);
+            }
+          }
+        })
+        .build();
+    LOGGER.info("Initialized broker result cache with max size {} bytes and expiration time {}ms", maxSizeInBytes,
+        expireAfterWriteMs);
+  }
+
+  /**
+   * Returns the current generation of the table, which changes every time the entries of the table are invalidated.
+   * It must be read before sending the request to the servers, and passed to
+   * {@link #put(String, byte[], long, Map)} with the responses.
+   */
+  public long getGeneration(String tableName) {
+    return getGenerationCounter(tableName).get();
+  }
+
+  /**
+   * Returns the cached server responses, or <code>null</code> if there is none. Updates the hit/miss meters of the
+   * table.
+   */
+  @Nullable
+  public Map<ServerInstance, byte[]> get(String tableName, byte[] fingerprint) {
+    Map<ServerInstance, byte[]> responses = _cache.getIfPresent(new Key(tableName, fingerprint));
+    if (_brokerMetrics != null) {
+      if (responses != null) {
+        _brokerMetrics.addMeteredTableValue(tableName, BrokerMeter.RESULT_CACHE_HITS, 1L);
+      } else {
+        _brokerMetrics.addMeteredTableValue(tableName, BrokerMeter.RESULT_CACHE_MISSES, 1L);
+      }
+    }
+    return responses;
+  }
+
+  /**
+   * Adds the responses of all the servers a query was sent to. The responses are dropped if the entries of the table
+   * were invalidated since the given generation was read, as they may have been computed on the old segments.
+   */
+  public void put(String tableName, byte[] fingerprint, long generation, Map<ServerInstance, byte[]> responses) {
+    AtomicLong generationCounter = getGenerationCounter(tableName);
+    if (generationCounter.get() != generation) {
+      return;
+    }
+    Key key = new Key(tableName, fingerprint);
+    _cache.put(key, responses);
+    // Re-check in case the table got invalidated concurrently
+    if (generationCounter.get() != generation) {
+      _cache.invalidate(key);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Drops all the entries of the table, as they may have been computed on other segments.
+   */
+  @Override
+  public void onRoutingTableChange(String tableName) {
+    invalidateTable(tableName);
+  }
+
+  /**
+   * Drops all the entries of the given table.
+   */
+  public void invalidateTable(String tableName) {
+    getGenerationCounter(tableName).incrementAndGet();
+    Iterator<Key> iterator = _cache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next()._tableName.equals(tableName)) {
+        iterator.remove();
+      }
+    }
+    LOGGER.debug("Invalidated broker result cache entries of table {}", tableName);
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  private AtomicLong getGenerationCounter(String tableName) {
+    AtomicLong generationCounter = _tableGenerations.get(tableName);
+    if (generationCounter == null) {
+      generationCounter = new AtomicLong();
+      AtomicLong existingGenerationCounter = _tableGenerations.putIfAbsent(tableName, generationCounter);
+      if (existingGenerationCounter != null) {
+        generationCounter = existingGenerationCounter;
+      }
+    }
+    return generationCounter;
+  }
+
+  private static final class Key {
+    private final String _tableName;
+    private final byte[] _fingerprint;
+    private final int _hashCode;
+
+    private Key(String tableName, byte[] fingerprint) {
+      _tableName = tableName;
+      _fingerprint = fingerprint;
+      _hashCode = 31 * tableName.hashCode() + Arrays.hashCode(fingerprint);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _hashCode == that._hashCode && _tableName.equals(that._tableName)
+          && Arrays.equals(_fingerprint, that._fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+}
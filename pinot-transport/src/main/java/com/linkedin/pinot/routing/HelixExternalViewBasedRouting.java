@@ -16,11 +16,15 @@
 
 package com.linkedin.pinot.routing;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.apache.helix.ZNRecord;
 import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.InstanceConfig;
@@ -29,10 +33,21 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.SegmentPartitionConfig;
 import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.partition.PartitionFunctionFactory;
+import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.NetUtil;
+import com.linkedin.pinot.common.utils.SchemaUtils;
+import com.linkedin.pinot.common.utils.helix.PinotHelixPropertyStoreZnRecordProvider;
 import com.linkedin.pinot.routing.builder.BalancedRandomRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.KafkaHighLevelConsumerBasedRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.KafkaLowLevelConsumerRoutingTableBuilder;
@@ -63,13 +78,23 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       new ConcurrentHashMap<String, List<ServerToSegmentSetMap>>();
   private final Map<String, List<ServerToSegmentSetMap>> _llcBrokerRoutingTable =
       new ConcurrentHashMap<String, List<ServerToSegmentSetMap>>();
+  /*
+   * _partitionRoutingTable has entries for the tables partitioned on a column, and is used to route queries on the
+   * partition column only to the segments holding the matching partitions.
+   */
+  private final Map<String, PartitionRoutingTable> _partitionRoutingTable =
+      new ConcurrentHashMap<String, PartitionRoutingTable>();
   private final Map<String, Integer> _routingTableLastKnownZkVersionMap = new ConcurrentHashMap<>();
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
   private final Random _random = new Random(System.currentTimeMillis());
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
   private final RoutingTableSelector _routingTableSelector;
+  private final List<RoutingTableChangeListener> _routingTableChangeListeners =
+      new CopyOnWriteArrayList<RoutingTableChangeListener>();
 
   public HelixExternalViewBasedRouting(ZkHelixPropertyStore<ZNRecord> propertyStore,
       RoutingTableSelector routingTableSelector) {
+    _propertyStore = propertyStore;
     _timeBoundaryService = new HelixExternalViewBasedTimeBoundaryService(propertyStore);
     _offlineRoutingTableBuilder = new BalancedRandomRoutingTableBuilder();
     _realtimeHLCRoutingTableBuilder = new KafkaHighLevelConsumerBasedRoutingTableBuilder();
@@ -113,7 +138,21 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     if ( serverToSegmentSetMaps == null || serverToSegmentSetMaps.isEmpty()) {
       return Collections.emptyMap();
     }
-    return serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    ServerToSegmentSetMap serverToSegmentSetMap =
+        serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size()));
+    BrokerRequest brokerRequest = request.getBrokerRequest();
+    PartitionRoutingTable partitionRoutingTable = _partitionRoutingTable.get(tableName);
+    if (brokerRequest != null && partitionRoutingTable != null) {
+      return partitionRoutingTable.getRouting(serverToSegmentSetMap, brokerRequest);
+    }
+    return serverToSegmentSetMap.getRouting();
+  }
+
+  /**
+   * Registers a listener to notify when the routing of a table changes.
+   */
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    _routingTableChangeListeners.add(listener);
   }
 
   @Override
@@ -163,15 +202,23 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
           routingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
 
       _brokerRoutingTable.put(tableName, serverToSegmentSetMap);
+      List<ServerToSegmentSetMap> llcserverToSegmentSetMap = null;
       if (CommonConstants.Helix.TableType.REALTIME.equals(tableType)) {
         try {
-          List<ServerToSegmentSetMap> llcserverToSegmentSetMap = _realtimeLLCRoutingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
+          llcserverToSegmentSetMap = _realtimeLLCRoutingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
 
           _llcBrokerRoutingTable.put(tableName, llcserverToSegmentSetMap);
         } catch (Exception e) {
           LOGGER.error("Failed to compute LLC routing table for {}. Ignoring", tableName, e);
         }
       }
+
+      try {
+        updatePartitionRoutingTable(tableName, tableType, serverToSegmentSetMap, llcserverToSegmentSetMap);
+      } catch (Exception e) {
+        LOGGER.error("Failed to compute partition routing table for {}. Ignoring", tableName, e);
+        _partitionRoutingTable.remove(tableName);
+      }
     } catch (Exception e) {
       LOGGER.error("Failed to compute/update the routing table", e);
     }
@@ -182,13 +229,98 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     } catch (Exception e) {
       LOGGER.error("Failed to update the TimeBoundaryService", e);
     }
+
+    notifyRoutingTableChange(tableName);
+  }
+
+  /**
+   * Builds the partition routing table of the table if it is partitioned on a column, from the partitions of the
+   * segments recorded in the segment ZK metadata. Segments partitioned differently than the table config are routed
+   * to regardless of the partition column filter.
+   */
+  private void updatePartitionRoutingTable(String tableName, CommonConstants.Helix.TableType tableType,
+      List<ServerToSegmentSetMap> serverToSegmentSetMaps, List<ServerToSegmentSetMap> llcServerToSegmentSetMaps) {
+    if (_propertyStore == null) {
+      return;
+    }
+    AbstractTableConfig tableConfig;
+    List<? extends SegmentZKMetadata> segmentZKMetadataList;
+    if (CommonConstants.Helix.TableType.REALTIME.equals(tableType)) {
+      tableConfig = ZKMetadataProvider.getRealtimeTableConfig(_propertyStore, tableName);
+    } else {
+      tableConfig = ZKMetadataProvider.getOfflineTableConfig(_propertyStore, tableName);
+    }
+    SegmentPartitionConfig partitionConfig =
+        tableConfig == null ? null : tableConfig.getIndexingConfig().getSegmentPartitionConfig();
+    if (partitionConfig == null) {
+      _partitionRoutingTable.remove(tableName);
+      return;
+    }
+    if (CommonConstants.Helix.TableType.REALTIME.equals(tableType)) {
+      segmentZKMetadataList = ZKMetadataProvider.getRealtimeSegmentZKMetadataListForTable(_propertyStore, tableName);
+    } else {
+      segmentZKMetadataList = ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(_propertyStore, tableName);
+    }
+
+    String partitionColumn = partitionConfig.getColumnName();
+    DataType partitionColumnDataType = getColumnDataType(tableConfig, partitionColumn);
+    if (partitionColumnDataType == null) {
+      LOGGER.warn("Cannot find the data type of partition column {} in the schema of table {}, skipping partition "
+          + "routing", partitionColumn, tableName);
+      _partitionRoutingTable.remove(tableName);
+      return;
+    }
+    PartitionFunction partitionFunction = PartitionFunctionFactory.getPartitionFunction(
+        partitionConfig.getFunctionName(), partitionConfig.getNumPartitions());
+    Map<String, Set<Integer>> segmentToPartitions = new HashMap<String, Set<Integer>>();
+    for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+      if (partitionColumn.equals(segmentZKMetadata.getPartitionColumn())
+          && partitionFunction.toString().equalsIgnoreCase(segmentZKMetadata.getPartitionFunction())
+          && partitionFunction.getNumPartitions() == segmentZKMetadata.getNumPartitions()
+          && segmentZKMetadata.getPartitionIds() != null) {
+        segmentToPartitions.put(segmentZKMetadata.getSegmentName(), segmentZKMetadata.getPartitionIds());
+      }
+    }
+
+    List<ServerToSegmentSetMap> allServerToSegmentSetMaps = new ArrayList<ServerToSegmentSetMap>();
+    allServerToSegmentSetMaps.addAll(serverToSegmentSetMaps);
+    if (llcServerToSegmentSetMaps != null) {
+      allServerToSegmentSetMaps.addAll(llcServerToSegmentSetMaps);
+    }
+    LOGGER.info("Computed partition routing table for table {} on column {} with {} partitioned segments", tableName,
+        partitionColumn, segmentToPartitions.size());
+    _partitionRoutingTable.put(tableName, new PartitionRoutingTable(partitionColumn, partitionColumnDataType,
+        partitionFunction, segmentToPartitions, allServerToSegmentSetMaps));
+  }
+
+  private DataType getColumnDataType(AbstractTableConfig tableConfig, String columnName) {
+    ZNRecord schemaRecord = PinotHelixPropertyStoreZnRecordProvider.forSchema(_propertyStore)
+        .get(tableConfig.getValidationConfig().getSchemaName());
+    if (schemaRecord == null) {
+      return null;
+    }
+    try {
+      FieldSpec fieldSpec = SchemaUtils.fromZNRecord(schemaRecord).getFieldSpecFor(columnName);
+      return fieldSpec == null ? null : fieldSpec.getDataType();
+    } catch (Exception e) {
+      LOGGER.warn("Failed to read schema {}", tableConfig.getValidationConfig().getSchemaName(), e);
+      return null;
+    }
   }
 
   public void markDataResourceOffline(String tableName) {
     LOGGER.info("Trying to remove data table from broker for {}", tableName);
     _brokerRoutingTable.remove(tableName);
+    _partitionRoutingTable.remove(tableName);
     _routingTableLastKnownZkVersionMap.remove(tableName);
     _timeBoundaryService.remove(tableName);
+    notifyRoutingTableChange(tableName);
+  }
+
+  private void notifyRoutingTableChange(String tableName) {
+    for (RoutingTableChangeListener listener : _routingTableChangeListeners) {
+      listener.onRoutingTableChange(tableName);
+    }
   }
 
   public TimeBoundaryService getTimeBoundaryService() {
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Partition aware routing for a table partitioned on a column.
+ *
+ * For each routing table computed from the external view, the segments are grouped by the partitions of the partition
+ * column they contain, so that queries with EQUALITY or IN predicates on the partition column are only routed to the
+ * segments (and servers) holding the matching partitions. Segments without partition metadata are always routed to.
+ *
+ * The values from the query are converted to the type of the partition column before being mapped to partitions, as
+ * the segment creator maps the string representation of the typed values (e.g. "1.0" for a FLOAT column and "7" for a
+ * LONG column, for which the query may contain "1" and "007").
+ */
+public class PartitionRoutingTable {
+  private final String _partitionColumn;
+  private final DataType _partitionColumnDataType;
+  private final PartitionFunction _partitionFunction;
+  private final Map<ServerToSegmentSetMap, PartitionedRouting> _partitionedRoutings =
+      new IdentityHashMap<ServerToSegmentSetMap, PartitionedRouting>();
+
+  /**
+   * @param partitionColumn Column the table is partitioned on
+   * @param partitionColumnDataType Data type of the partition column
+   * @param partitionFunction Function mapping the values of the partition column to partitions
+   * @param segmentToPartitions Map from segment name to the partitions of the segment
+   * @param serverToSegmentSetMaps Routing tables of the table
+   */
+  public PartitionRoutingTable(String partitionColumn, DataType partitionColumnDataType,
+      PartitionFunction partitionFunction, Map<String, Set<Integer>> segmentToPartitions,
+      Collection<ServerToSegmentSetMap> serverToSegmentSetMaps) {
+    _partitionColumn = partitionColumn;
+    _partitionColumnDataType = partitionColumnDataType;
+    _partitionFunction = partitionFunction;
+    for (ServerToSegmentSetMap serverToSegmentSetMap : serverToSegmentSetMaps) {
+      _partitionedRoutings.put(serverToSegmentSetMap,
+          new PartitionedRouting(serverToSegmentSetMap.getRouting(), segmentToPartitions));
+    }
+  }
+
+  public String getPartitionColumn() {
+    return _partitionColumn;
+  }
+
+  /**
+   * Returns the routing for the given broker request out of the given routing table, only containing the segments
+   * that can match the filter of the request on the partition column.
+   */
+  public Map<ServerInstance, SegmentIdSet> getRouting(ServerToSegmentSetMap serverToSegmentSetMap,
+      BrokerRequest brokerRequest) {
+    PartitionedRouting partitionedRouting = _partitionedRoutings.get(serverToSegmentSetMap);
+    if (partitionedRouting == null) {
+      // Routing table was recomputed after this partition routing table was built
+      return serverToSegmentSetMap.getRouting();
+    }
+    Set<Integer> partitions = getPartitions(RequestUtils.generateFilterQueryTree(brokerRequest));
+    if (partitions == null) {
+      return serverToSegmentSetMap.getRouting();
+    }
+    return partitionedRouting.getRouting(partitions);
+  }
+
+  /**
+   * Returns the partitions matching the given filter, or null if the filter does not restrict the partition column.
+   */
+  Set<Integer> getPartitions(FilterQueryTree filterQueryTree) {
+    if (filterQueryTree == null) {
+      return null;
+    }
+    switch (filterQueryTree.getOperator()) {
+      case AND:
+        Set<Integer> intersection = null;
+        for (FilterQueryTree child : filterQueryTree.getChildren()) {
+          Set<Integer> partitions = getPartitions(child);
+          if (partitions != null) {
+            if (intersection == null) {
+              intersection = partitions;
+            } else {
+              intersection.retainAll(partitions);
+            }
+          }
+        }
+        return intersection;
+      case OR:
+        Set<Integer> union = new HashSet<Integer>();
+        for (FilterQueryTree child : filterQueryTree.getChildren()) {
+          Set<Integer> partitions = getPartitions(child);
+          if (partitions == null) {
+            return null;
+          }
+          union.addAll(partitions);
+        }
+        return union;
+      case EQUALITY:
+      case IN:
+        if (!_partitionColumn.equals(filterQueryTree.getColumn())) {
+          return null;
+        }
+        Set<Integer> partitions = new HashSet<Integer>();
+        try {
+          for (String value : filterQueryTree.getValue()) {
+            for (String inValue : value.split("\t\t")) {
+              partitions.add(_partitionFunction.getPartition(normalize(_partitionColumnDataType, inValue)));
+            }
+          }
+        } catch (NumberFormatException e) {
+          // Value cannot be mapped to a partition, do not prune
+          return null;
+        }
+        return partitions;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Converts a value from the query to the column type and back, which gives the string representation the segment
+   * creator computed the partitions on.
+   */
+  private static String normalize(DataType dataType, String value) {
+    switch (dataType) {
+      case INT:
+        return Integer.toString(Integer.parseInt(value.trim()));
+      case LONG:
+        return Long.toString(Long.parseLong(value.trim()));
+      case FLOAT:
+        return Float.toString(Float.parseFloat(value.trim()));
+      case DOUBLE:
+        return Double.toString(Double.parseDouble(value.trim()));
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Routing of one routing table keyed by partition.
+   */
+  private static class PartitionedRouting {
+    private final Map<Integer, Map<ServerInstance, SegmentIdSet>> _partitionToRouting =
+        new HashMap<Integer, Map<ServerInstance, SegmentIdSet>>();
+    private final Map<ServerInstance, SegmentIdSet> _unpartitionedRouting = new HashMap<ServerInstance, SegmentIdSet>();
+
+    PartitionedRouting(Map<ServerInstance, SegmentIdSet> routing, Map<String, Set<Integer>> segmentToPartitions) {
+      for (Map.Entry<ServerInstance, SegmentIdSet> entry : routing.entrySet()) {
+        ServerInstance serverInstance = entry.getKey();
+        for (SegmentId segmentId : entry.getValue().getSegments()) {
+          Set<Integer> partitions = segmentToPartitions.get(segmentId.getSegmentId());
+          if (partitions == null) {
+            addSegment(_unpartitionedRouting, serverInstance, segmentId);
+          } else {
+            for (Integer partition : partitions) {
+              Map<ServerInstance, SegmentIdSet> partitionRouting = _partitionToRouting.get(partition);
+              if (partitionRouting == null) {
+                partitionRouting = new HashMap<ServerInstance, SegmentIdSet>();
+                _partitionToRouting.put(partition, partitionRouting);
+              }
+              addSegment(partitionRouting, serverInstance, segmentId);
+            }
+          }
+        }
+      }
+    }
+
+    Map<ServerInstance, SegmentIdSet> getRouting(Set<Integer> partitions) {
+      if (partitions.size() == 1 && _unpartitionedRouting.isEmpty()) {
+        Map<ServerInstance, SegmentIdSet> partitionRouting = _partitionToRouting.get(partitions.iterator().next());
+        if (partitionRouting == null) {
+          return Collections.emptyMap();
+        }
+        return partitionRouting;
+      }
+
+      Map<ServerInstance, SegmentIdSet> routing = new HashMap<ServerInstance, SegmentIdSet>();
+      addRouting(routing, _unpartitionedRouting);
+      for (Integer partition : partitions) {
+        Map<ServerInstance, SegmentIdSet> partitionRouting = _partitionToRouting.get(partition);
+        if (partitionRouting != null) {
+          addRouting(routing, partitionRouting);
+        }
+      }
+      return routing;
+    }
+
+    private static void addSegment(Map<ServerInstance, SegmentIdSet> routing, ServerInstance serverInstance,
+        SegmentId segmentId) {
+      SegmentIdSet segmentIdSet = routing.get(serverInstance);
+      if (segmentIdSet == null) {
+        segmentIdSet = new SegmentIdSet();
+        routing.put(serverInstance, segmentIdSet);
+      }
+      segmentIdSet.addSegment(segmentId);
+    }
+
+    private static void addRouting(Map<ServerInstance, SegmentIdSet> routing,
+        Map<ServerInstance, SegmentIdSet> routingToAdd) {
+      for (Map.Entry<ServerInstance, SegmentIdSet> entry : routingToAdd.entrySet()) {
+        SegmentIdSet segmentIdSet = routing.get(entry.getKey());
+        if (segmentIdSet == null) {
+          segmentIdSet = new SegmentIdSet();
+          routing.put(entry.getKey(), segmentIdSet);
+        }
+        segmentIdSet.addSegments(entry.getValue().getSegments());
+      }
+    }
+  }
+}
@@ -15,6 +15,9 @@
  */
 package com.linkedin.pinot.routing;
 
+import com.linkedin.pinot.common.request.BrokerRequest;
+
+
 /**
  * Routing table lookup request. Future filtering parameters for lookup needs to be added here.
  *
@@ -23,13 +26,26 @@ package com.linkedin.pinot.routing;
 public class RoutingTableLookupRequest {
 
   private final String tableName;
+  private final BrokerRequest brokerRequest;
 
   public String getTableName() {
     return tableName;
   }
 
+  /**
+   * Returns the broker request to route, or null if the lookup is not for a specific query.
+   */
+  public BrokerRequest getBrokerRequest() {
+    return brokerRequest;
+  }
+
   public RoutingTableLookupRequest(String tableName) {
+    this(tableName, null);
+  }
+
+  public RoutingTableLookupRequest(String tableName, BrokerRequest brokerRequest) {
     super();
     this.tableName = tableName;
+    this.brokerRequest = brokerRequest;
   }
 }
@@ -19,10 +19,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
@@ -68,6 +70,9 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
 
   private final GatherModeOnError _gatherMode;
 
+  // Keys of each underlying future, queued as soon as the future completes (successfully or with error)
+  private final BlockingQueue<Collection<K>> _completionQueue = new LinkedBlockingQueue<Collection<K>>();
+
   // Descriptive name of the future
   private final String _name;
 
@@ -174,6 +179,32 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     return _delayedResponseMap;
   }
 
+  /**
+   * Returns the number of underlying futures.
+   */
+  public int getNumFutures() {
+    return _futures.size();
+  }
+
+  /**
+   * Waits for at most the given time for the next underlying future to complete, and returns the keys of its
+   * response/error. The response for each key can then be fetched with {@link #getResponse(Object)} and the error with
+   * {@link #getError()}. Each underlying future is returned exactly once, in completion order, so that callers can
+   * process responses as they arrive instead of waiting for all of them.
+   *
+   * @return keys of the completed underlying future (may be empty), or null if the wait timed out
+   */
+  public Collection<K> pollCompleted(long timeout, TimeUnit unit) throws InterruptedException {
+    return _completionQueue.poll(timeout, unit);
+  }
+
+  /**
+   * Non-blocking call that returns the response received so far for the given key, or null if there is none.
+   */
+  public V getResponse(K key) {
+    return _delayedResponseMap.get(key);
+  }
+
   /**
    * This method must be called after the 'get' is called, so that all response times are recorded.
    * For now, this method has not been added to the interface.
@@ -186,12 +217,15 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
   protected boolean processFutureResult(String name, Map<K, V> response, Map<K, Throwable> error, long durationMillis) {
     // Get the response time and create another map that can be invoked to get the end time when responses were received for each server.
     boolean ret = false;
+    Collection<K> keys = Collections.emptyList();
     if (null != response) {
       LOGGER.debug("Response from {} is {}", name, response);
       _delayedResponseMap.putAll(response);
+      keys = response.keySet();
     } else if (null != error) {
       LOGGER.debug("Error from {} is : {}", name, error);
       _errorMap.putAll(error);
+      keys = error.keySet();
 
       if (_gatherMode == GatherModeOnError.SHORTCIRCUIT_AND) {
         ret = true; // We are done as we got an error
@@ -199,6 +233,7 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     }
     // TODO May be limit the number of entries here to 10? We don't want to create too much garbage on the broker.
     _responseTimeMap.put(name, durationMillis);
+    _completionQueue.add(new ArrayList<K>(keys));
     return ret;
   }
 
@@ -15,6 +15,9 @@
  */
 package com.linkedin.pinot.transport.netty;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -62,17 +65,22 @@ public abstract class NettyServer implements Runnable {
      * This callback is not expected to call {@link ByteBuf#release()} on request
      * The ownership of the request byteBuf lies with the caller.
      *
-     * The implementation MUST not throw any runtime exceptions. In case of errors,
-     * the implementation is expected to construct and return an error response.
-     * If the implementation throws runtime exceptions, then the underlying connection
-     * will be terminated.
+     * The request must be fully consumed before this method returns, as it is released
+     * right after. The response is written to the channel once the returned future
+     * completes, so the implementation should hand long running work off to another
+     * thread instead of blocking the Netty worker thread on it.
+     *
+     * The implementation MUST not throw any runtime exceptions nor fail the returned
+     * future. In case of errors, the implementation is expected to construct and return
+     * an error response. If the implementation throws runtime exceptions or fails the
+     * future, then the underlying connection will be terminated.
      *
      *
      * @param channelHandlerContext
      * @param request Serialized request
-     * @return Serialized response
+     * @return Future of the serialized response
      */
-    byte[] processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request);
+    ListenableFuture<byte[]> processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request);
   }
 
   public interface RequestHandlerFactory {
@@ -207,7 +215,7 @@ public abstract class NettyServer implements Runnable {
     private State _state = State.INIT;
 
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) {
       _requestStartTime = System.currentTimeMillis();
       LOGGER.debug("Request received by server !!");
       _state = State.REQUEST_RECEIVED;
@@ -216,16 +224,34 @@ public abstract class NettyServer implements Runnable {
 
       //Call processing handler
       _lastProcessingLatency = MetricsHelper.startTimer();
-      byte[] response = _handler.processRequest(ctx, request);
-      _lastProcessingLatency.stop();
+      ListenableFuture<byte[]> responseFuture;
+      try {
+        responseFuture = _handler.processRequest(ctx, request);
+      } finally {
+        request.release();
+      }
 
-      // Send Response
+      // Send Response once it is available, from the event loop of the channel
+      Futures.addCallback(responseFuture, new FutureCallback<byte[]>() {
+        @Override
+        public void onSuccess(byte[] response) {
+          sendResponse(ctx, response);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          exceptionCaught(ctx, t);
+        }
+      }, ctx.executor());
+    }
+
+    private void sendResponse(ChannelHandlerContext ctx, byte[] response) {
+      _lastProcessingLatency.stop();
       ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
       _lastSendResponseLatency = MetricsHelper.startTimer();
       ChannelFuture f = ctx.writeAndFlush(responseBuf);
       _state = State.RESPONSE_WRITTEN;
       f.addListener(this);
-      request.release();
     }
 
     @Override
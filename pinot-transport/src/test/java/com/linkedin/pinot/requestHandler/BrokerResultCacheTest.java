@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class BrokerResultCacheTest {
+  private static final String TABLE_NAME = "myTable_OFFLINE";
+  private static final String OTHER_TABLE_NAME = "otherTable_OFFLINE";
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+  private final BrokerRequestOptimizer _optimizer = new BrokerRequestOptimizer();
+
+  @Test
+  public void testGetPut() {
+    BrokerResultCache cache = new BrokerResultCache(1024 * 1024, 60000L, null);
+    byte[] fingerprint = getFingerprint("SELECT COUNT(*) FROM myTable WHERE a = 1 AND b = 2");
+    Assert.assertNull(cache.get(TABLE_NAME, fingerprint));
+
+    Map<ServerInstance, byte[]> responses = getResponses(10);
+    cache.put(TABLE_NAME, fingerprint, cache.getGeneration(TABLE_NAME), responses);
+    Assert.assertSame(cache.get(TABLE_NAME, fingerprint), responses);
+
+    // Same query compiled again must hit the cache, while a different query or table must not
+    Assert.assertSame(cache.get(TABLE_NAME, getFingerprint("SELECT COUNT(*) FROM myTable WHERE a = 1 AND b = 2")),
+        responses);
+    Assert.assertNull(cache.get(TABLE_NAME, getFingerprint("SELECT COUNT(*) FROM myTable WHERE a = 1 AND b = 3")));
+    Assert.assertNull(cache.get(OTHER_TABLE_NAME, fingerprint));
+  }
+
+  @Test
+  public void testInvalidateTable() {
+    BrokerResultCache cache = new BrokerResultCache(1024 * 1024, 60000L, null);
+    byte[] fingerprint1 = getFingerprint("SELECT COUNT(*) FROM myTable");
+    byte[] fingerprint2 = getFingerprint("SELECT SUM(m) FROM myTable GROUP BY d");
+    cache.put(TABLE_NAME, fingerprint1, cache.getGeneration(TABLE_NAME), getResponses(10));
+    cache.put(TABLE_NAME, fingerprint2, cache.getGeneration(TABLE_NAME), getResponses(10));
+    cache.put(OTHER_TABLE_NAME, fingerprint1, cache.getGeneration(OTHER_TABLE_NAME), getResponses(10));
+    Assert.assertEquals(cache.size(), 3);
+
+    cache.invalidateTable(TABLE_NAME);
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertNull(cache.get(TABLE_NAME, fingerprint1));
+    Assert.assertNull(cache.get(TABLE_NAME, fingerprint2));
+    Assert.assertNotNull(cache.get(OTHER_TABLE_NAME, fingerprint1));
+  }
+
+  @Test
+  public void testRoutingTableChange() {
+    BrokerResultCache cache = new BrokerResultCache(1024 * 1024, 60000L, null);
+    HelixExternalViewBasedRouting routing = new HelixExternalViewBasedRouting(null, null);
+    routing.addRoutingTableChangeListener(cache);
+    byte[] fingerprint = getFingerprint("SELECT COUNT(*) FROM myTable");
+    cache.put(TABLE_NAME, fingerprint, cache.getGeneration(TABLE_NAME), getResponses(10));
+    cache.put(OTHER_TABLE_NAME, fingerprint, cache.getGeneration(OTHER_TABLE_NAME), getResponses(10));
+
+    routing.markDataResourceOffline(TABLE_NAME);
+    Assert.assertNull(cache.get(TABLE_NAME, fingerprint));
+    Assert.assertNotNull(cache.get(OTHER_TABLE_NAME, fingerprint));
+  }
+
+  @Test
+  public void testStaleGeneration() {
+    BrokerResultCache cache = new BrokerResultCache(1024 * 1024, 60000L, null);
+    byte[] fingerprint = getFingerprint("SELECT COUNT(*) FROM myTable");
+
+    // Responses gathered across an invalidation must not be cached
+    long generation = cache.getGeneration(TABLE_NAME);
+    cache.invalidateTable(TABLE_NAME);
+    cache.put(TABLE_NAME, fingerprint, generation, getResponses(10));
+    Assert.assertNull(cache.get(TABLE_NAME, fingerprint));
+
+    cache.put(TABLE_NAME, fingerprint, cache.getGeneration(TABLE_NAME), getResponses(10));
+    Assert.assertNotNull(cache.get(TABLE_NAME, fingerprint));
+  }
+
+  @Test
+  public void testMaxSize() {
+    BrokerResultCache cache = new BrokerResultCache(64 * 1024, 60000L, null);
+    for (int i = 0; i < 100; i++) {
+      byte[] fingerprint = getFingerprint("SELECT COUNT(*) FROM myTable WHERE a = " + i);
+      cache.put(TABLE_NAME, fingerprint, cache.getGeneration(TABLE_NAME), getResponses(4096));
+    }
+    Assert.assertTrue(cache.size() < 16);
+    Assert.assertNotNull(cache.get(TABLE_NAME, getFingerprint("SELECT COUNT(*) FROM myTable WHERE a = 99")));
+  }
+
+  private byte[] getFingerprint(String query) {
+    BrokerRequest brokerRequest = _compiler.compileToBrokerRequest(query);
+    brokerRequest.getQuerySource().setTableName(TABLE_NAME);
+    return RequestUtils.getFingerprint(_optimizer.optimize(brokerRequest));
+  }
+
+  private static Map<ServerInstance, byte[]> getResponses(int responseSize) {
+    Map<ServerInstance, byte[]> responses = new LinkedHashMap<>();
+    responses.put(new ServerInstance("localhost", 1234), new byte[responseSize]);
+    responses.put(new ServerInstance("localhost", 1235), new byte[responseSize]);
+    return responses;
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2014-2016 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.partition.HashCodePartitionFunction;
+import com.linkedin.pinot.common.partition.ModuloPartitionFunction;
+import com.linkedin.pinot.common.partition.PartitionFunction;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class PartitionRoutingTableTest {
+  private static final String PARTITION_COLUMN = "memberId";
+
+  private final Pql2Compiler _compiler = new Pql2Compiler();
+
+  @Test
+  public void testRoutingWithUnpartitionedSegment() {
+    // seg3 has no partition metadata, so it is always routed to
+    Map<String, Set<String>> serverToSegments = new HashMap<String, Set<String>>();
+    serverToSegments.put("Server_host1_8000", new HashSet<String>(Arrays.asList("seg0", "seg1")));
+    serverToSegments.put("Server_host2_8000", new HashSet<String>(Arrays.asList("seg2", "seg3")));
+    ServerToSegmentSetMap serverToSegmentSetMap = new ServerToSegmentSetMap(serverToSegments);
+    PartitionRoutingTable partitionRoutingTable = buildPartitionRoutingTable(serverToSegmentSetMap);
+
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T",
+        serverToSegmentSetMap.getRouting());
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 4",
+        routing(Arrays.asList("seg1"), Arrays.asList("seg3")));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId IN (3, 5)",
+        routing(Arrays.asList("seg0"), Arrays.asList("seg2", "seg3")));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap,
+        "SELECT * FROM T WHERE memberId = 4 AND country = 'us'",
+        routing(Arrays.asList("seg1"), Arrays.asList("seg3")));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap,
+        "SELECT * FROM T WHERE memberId = 3 OR memberId = 5",
+        routing(Arrays.asList("seg0"), Arrays.asList("seg2", "seg3")));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap,
+        "SELECT * FROM T WHERE memberId = 4 OR country = 'us'", serverToSegmentSetMap.getRouting());
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap,
+        "SELECT * FROM T WHERE memberId = 4 AND memberId = 5",
+        routing(Collections.<String>emptyList(), Arrays.asList("seg3")));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId > 4",
+        serverToSegmentSetMap.getRouting());
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE country = 'us'",
+        serverToSegmentSetMap.getRouting());
+  }
+
+  @Test
+  public void testRoutingWithPartitionedSegments() {
+    Map<String, Set<String>> serverToSegments = new HashMap<String, Set<String>>();
+    serverToSegments.put("Server_host1_8000", new HashSet<String>(Arrays.asList("seg0", "seg1")));
+    serverToSegments.put("Server_host2_8000", new HashSet<String>(Arrays.asList("seg2")));
+    ServerToSegmentSetMap serverToSegmentSetMap = new ServerToSegmentSetMap(serverToSegments);
+    PartitionRoutingTable partitionRoutingTable = buildPartitionRoutingTable(serverToSegmentSetMap);
+
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 2",
+        routing(Collections.<String>emptyList(), Arrays.asList("seg2")));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 7",
+        routing(Arrays.asList("seg1"), Collections.<String>emptyList()));
+    assertRouting(partitionRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 'abc'",
+        serverToSegmentSetMap.getRouting());
+
+    // Routing tables unknown to the partition routing table are not pruned
+    ServerToSegmentSetMap newServerToSegmentSetMap = new ServerToSegmentSetMap(serverToSegments);
+    assertRouting(partitionRoutingTable, newServerToSegmentSetMap, "SELECT * FROM T WHERE memberId = 2",
+        newServerToSegmentSetMap.getRouting());
+  }
+
+  @Test
+  public void testRoutingOnNormalizedValues() {
+    // Segment creator computes the partitions on the string representation of the typed values
+    PartitionFunction partitionFunction = new HashCodePartitionFunction(1000);
+    int floatPartition = partitionFunction.getPartition(String.valueOf(1.0f));
+    int longPartition = partitionFunction.getPartition(String.valueOf(7L));
+    Assert.assertTrue(partitionFunction.getPartition("1") != floatPartition);
+    Assert.assertTrue(partitionFunction.getPartition("007") != longPartition);
+
+    Map<String, Set<String>> serverToSegments = new HashMap<String, Set<String>>();
+    serverToSegments.put("Server_host1_8000", new HashSet<String>(Arrays.asList("seg0")));
+    serverToSegments.put("Server_host2_8000", new HashSet<String>(Arrays.asList("seg1")));
+    ServerToSegmentSetMap serverToSegmentSetMap = new ServerToSegmentSetMap(serverToSegments);
+    Map<String, Set<Integer>> segmentToPartitions = new HashMap<String, Set<Integer>>();
+    segmentToPartitions.put("seg0", Collections.singleton(floatPartition));
+    segmentToPartitions.put("seg1", Collections.singleton(longPartition));
+
+    PartitionRoutingTable floatRoutingTable = new PartitionRoutingTable(PARTITION_COLUMN, DataType.FLOAT,
+        partitionFunction, segmentToPartitions, Collections.singletonList(serverToSegmentSetMap));
+    assertRouting(floatRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 1",
+        routing(Arrays.asList("seg0"), Collections.<String>emptyList()));
+    assertRouting(floatRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId IN (1.0, 7)",
+        routing(Arrays.asList("seg0"), Collections.<String>emptyList()));
+
+    PartitionRoutingTable longRoutingTable = new PartitionRoutingTable(PARTITION_COLUMN, DataType.LONG,
+        partitionFunction, segmentToPartitions, Collections.singletonList(serverToSegmentSetMap));
+    assertRouting(longRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 007",
+        routing(Collections.<String>emptyList(), Arrays.asList("seg1")));
+    assertRouting(longRoutingTable, serverToSegmentSetMap, "SELECT * FROM T WHERE memberId = 7.5",
+        serverToSegmentSetMap.getRouting());
+  }
+
+  private static PartitionRoutingTable buildPartitionRoutingTable(ServerToSegmentSetMap serverToSegmentSetMap) {
+    Map<String, Set<Integer>> segmentToPartitions = new HashMap<String, Set<Integer>>();
+    segmentToPartitions.put("seg0", Collections.singleton(0));
+    segmentToPartitions.put("seg1", Collections.singleton(1));
+    segmentToPartitions.put("seg2", Collections.singleton(2));
+    return new PartitionRoutingTable(PARTITION_COLUMN, DataType.LONG, new ModuloPartitionFunction(3),
+        segmentToPartitions, Collections.singletonList(serverToSegmentSetMap));
+  }
+
+  private void assertRouting(PartitionRoutingTable partitionRoutingTable, ServerToSegmentSetMap serverToSegmentSetMap,
+      String query, Map<ServerInstance, SegmentIdSet> expected) {
+    Map<ServerInstance, SegmentIdSet> routing =
+        partitionRoutingTable.getRouting(serverToSegmentSetMap, _compiler.compileToBrokerRequest(query));
+    Assert.assertEquals(routing, expected, query);
+  }
+
+  private static Map<ServerInstance, SegmentIdSet> routing(Iterable<String> server1Segments,
+      Iterable<String> server2Segments) {
+    Map<String, Set<String>> serverToSegments = new HashMap<String, Set<String>>();
+    for (String segment : server1Segments) {
+      addSegment(serverToSegments, "Server_host1_8000", segment);
+    }
+    for (String segment : server2Segments) {
+      addSegment(serverToSegments, "Server_host2_8000", segment);
+    }
+    return new ServerToSegmentSetMap(serverToSegments).getRouting();
+  }
+
+  private static void addSegment(Map<String, Set<String>> serverToSegments, String server, String segment) {
+    Set<String> segments = serverToSegments.get(server);
+    if (segments == null) {
+      segments = new HashSet<String>();
+      serverToSegments.put(server, segments);
+    }
+    segments.add(segment);
+  }
+}
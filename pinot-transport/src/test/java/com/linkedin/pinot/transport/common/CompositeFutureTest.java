@@ -16,6 +16,7 @@
 package com.linkedin.pinot.transport.common;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -328,6 +329,41 @@ public class CompositeFutureTest {
     executor.shutdown();
   }
 
+  @Test
+  /**
+   * Responses and errors can be consumed one at a time, in the order the underlying futures complete.
+   * @throws Exception
+   */
+  public void testPollCompleted() throws Exception {
+    List<KeyedFuture<String, String>> futures = new ArrayList<KeyedFuture<String, String>>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(new AsyncResponseFuture<String, String>("key_" + i, ""));
+    }
+    CompositeFuture<String, String> compositeFuture =
+        new CompositeFuture<String, String>("test", GatherModeOnError.AND);
+    compositeFuture.start(futures);
+    Assert.assertEquals(compositeFuture.getNumFutures(), 3);
+    Assert.assertNull(compositeFuture.pollCompleted(10, TimeUnit.MILLISECONDS));
+
+    ((AsyncResponseFuture<String, String>) futures.get(1)).onSuccess("message_1");
+    Assert.assertEquals(compositeFuture.pollCompleted(1, TimeUnit.SECONDS), Collections.singletonList("key_1"));
+    Assert.assertEquals(compositeFuture.getResponse("key_1"), "message_1");
+
+    Exception expectedError = new Exception("error_0");
+    ((AsyncResponseFuture<String, String>) futures.get(0)).onError(expectedError);
+    Assert.assertEquals(compositeFuture.pollCompleted(1, TimeUnit.SECONDS), Collections.singletonList("key_0"));
+    Assert.assertNull(compositeFuture.getResponse("key_0"));
+    Assert.assertEquals(compositeFuture.getError().get("key_0"), expectedError);
+
+    // The last future is still pending
+    Assert.assertNull(compositeFuture.pollCompleted(10, TimeUnit.MILLISECONDS));
+    Assert.assertFalse(compositeFuture.isDone());
+
+    ((AsyncResponseFuture<String, String>) futures.get(2)).onSuccess("message_2");
+    Assert.assertEquals(compositeFuture.pollCompleted(1, TimeUnit.SECONDS), Collections.singletonList("key_2"));
+    Assert.assertTrue(compositeFuture.isDone());
+  }
+
   @Test
   /**
    * Tests Composite future with one underlying future.
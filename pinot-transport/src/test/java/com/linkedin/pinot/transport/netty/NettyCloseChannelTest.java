@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.transport.netty;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
@@ -190,7 +192,7 @@ public class NettyCloseChannelTest {
     }
 
     @Override
-    public byte[] processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request) {
+    public ListenableFuture<byte[]> processRequest(ChannelHandlerContext channelHandlerContext, ByteBuf request) {
       byte[] b = new byte[request.readableBytes()];
       request.readBytes(b);
       if (null != _responseHandlingLatch) {
@@ -203,7 +205,7 @@ public class NettyCloseChannelTest {
       _request = new String(b);
 
       //LOG.info("Server got the request (" + _request + ")");
-      return _response.getBytes();
+      return Futures.immediateFuture(_response.getBytes());
     }
 
     public String getRequest() {